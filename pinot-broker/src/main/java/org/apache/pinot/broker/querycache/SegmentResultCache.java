@@ -0,0 +1,458 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.querycache;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.datatable.DataTable.MetadataKey;
+import org.apache.pinot.common.datatable.DataTableFactory;
+import org.apache.pinot.common.metrics.BrokerMeter;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The {@code SegmentResultCache} caches the partial results (serialized {@link DataTable}s) returned by a server for
+ * a set of immutable segments, so that repeated queries over the same segments can skip the scatter to that server.
+ * <p>Each entry is keyed by:
+ * <ul>
+ *   <li>The table name with type</li>
+ *   <li>The normalized query fingerprint (the server query with request specific query options removed)</li>
+ *   <li>The server instance id</li>
+ *   <li>The sorted segments (and optional segments) queried on the server, along with the segment CRCs</li>
+ *   <li>Whether the results are streamed (gRPC) as multiple data tables</li>
+ * </ul>
+ * <p>The cache is bounded by the total size of the serialized data tables and evicts the least recently used entries
+ * first. Entries are invalidated when a segment is refreshed/replaced or removed, and when the routing of the table
+ * is rebuilt or removed. Each invalidation bumps the generation of the table, and the results of the queries looked
+ * up before the invalidation are not cached so that an in-flight query cannot cache stale results.
+ * <p>The execution stats (e.g. docs scanned, time used) of the original run are removed from the cached data tables
+ * because no work is done on the servers when the cache is hit.
+ * <p>NOTE: Data tables are cached in serialized format because deserialized data tables are not thread-safe to read.
+ */
+@ThreadSafe
+public class SegmentResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCache.class);
+
+  // Query options that do not affect the partial results returned by the servers
+  private static final Set<String> VOLATILE_QUERY_OPTIONS =
+      Set.of(QueryOptionKey.TIMEOUT_MS, QueryOptionKey.USE_RESULT_CACHE, QueryOptionKey.MAX_SERVER_RESPONSE_SIZE_BYTES,
+          QueryOptionKey.MAX_QUERY_RESPONSE_SIZE_BYTES, QueryOptionKey.SKIP_UNAVAILABLE_SERVERS,
+          QueryOptionKey.IS_SECONDARY_WORKLOAD, QueryOptionKey.APPLICATION_NAME);
+
+  // Metadata describing the execution of the original run, which should not be reported when the cache is hit
+  private static final Set<String> EXECUTION_STATS_METADATA_KEYS =
+      Set.of(MetadataKey.NUM_DOCS_SCANNED.getName(), MetadataKey.NUM_ENTRIES_SCANNED_IN_FILTER.getName(),
+          MetadataKey.NUM_ENTRIES_SCANNED_POST_FILTER.getName(), MetadataKey.NUM_SEGMENTS_PROCESSED.getName(),
+          MetadataKey.NUM_SEGMENTS_MATCHED.getName(), MetadataKey.TIME_USED_MS.getName(),
+          MetadataKey.TRACE_INFO.getName(), MetadataKey.REQUEST_ID.getName(), MetadataKey.NUM_RESIZES.getName(),
+          MetadataKey.RESIZE_TIME_MS.getName(), MetadataKey.THREAD_CPU_TIME_NS.getName(),
+          MetadataKey.SYSTEM_ACTIVITIES_CPU_TIME_NS.getName(), MetadataKey.RESPONSE_SER_CPU_TIME_NS.getName(),
+          MetadataKey.NUM_SEGMENTS_PRUNED_BY_SERVER.getName(), MetadataKey.NUM_SEGMENTS_PRUNED_INVALID.getName(),
+          MetadataKey.NUM_SEGMENTS_PRUNED_BY_LIMIT.getName(), MetadataKey.NUM_SEGMENTS_PRUNED_BY_VALUE.getName(),
+          MetadataKey.NUM_GROUP_BY_SPILLS.getName(), MetadataKey.GROUP_BY_SPILLED_BYTES.getName());
+
+  private final long _maxSizeInBytes;
+  private final BrokerMetrics _brokerMetrics;
+
+  // NOTE: All the following fields are guarded by the lock of this object
+  private final LinkedHashMap<CacheKey, byte[][]> _entries = new LinkedHashMap<>(16, 0.75f, true);
+  // Map from table name with type to segment to the cache keys containing the segment
+  private final Map<String, Map<String, Set<CacheKey>>> _segmentToKeysMap = new HashMap<>();
+  // Map from table name with type to the generation of the table, which is bumped on each invalidation
+  private final Map<String, Long> _generationMap = new HashMap<>();
+  private long _sizeInBytes;
+
+  public SegmentResultCache(long maxSizeInBytes, BrokerMetrics brokerMetrics) {
+    _maxSizeInBytes = maxSizeInBytes;
+    _brokerMetrics = brokerMetrics;
+  }
+
+  /**
+   * Returns the normalized query fingerprint for the given server query, which can be used to build the cache key.
+   */
+  public static PinotQuery getQueryFingerprint(PinotQuery pinotQuery) {
+    PinotQuery fingerprint = pinotQuery.deepCopy();
+    Map<String, String> queryOptions = fingerprint.getQueryOptions();
+    if (queryOptions != null) {
+      queryOptions.keySet().removeAll(VOLATILE_QUERY_OPTIONS);
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Looks up the cached partial results of the servers in the given routing table.
+   *
+   * @param streamed whether the partial results are streamed (gRPC) as multiple data tables
+   */
+  public Lookup lookup(String tableNameWithType, PinotQuery serverQuery,
+      Map<ServerInstance, Pair<List<String>, List<String>>> routingTable, SegmentCrcProvider segmentCrcProvider,
+      boolean streamed) {
+    // Read the generation before the segment CRCs so that the results are not cached if the segments are refreshed
+    // while the query is running
+    long generation = getGeneration(tableNameWithType);
+    PinotQuery queryFingerprint = getQueryFingerprint(serverQuery);
+    Map<ServerInstance, List<DataTable>> cachedDataTablesMap = new HashMap<>();
+    Map<ServerInstance, Pair<List<String>, List<String>>> missedRoutingTable = new HashMap<>();
+    Map<String, CacheKey> missedKeyMap = new HashMap<>();
+    for (Map.Entry<ServerInstance, Pair<List<String>, List<String>>> entry : routingTable.entrySet()) {
+      ServerInstance serverInstance = entry.getKey();
+      Pair<List<String>, List<String>> segments = entry.getValue();
+      CacheKey key = createKey(tableNameWithType, queryFingerprint, serverInstance.getInstanceId(), segments.getLeft(),
+          segments.getRight(), segmentCrcProvider, streamed);
+      List<DataTable> cachedDataTables = key != null ? get(key) : null;
+      if (cachedDataTables != null) {
+        cachedDataTablesMap.put(serverInstance, cachedDataTables);
+      } else {
+        missedRoutingTable.put(serverInstance, segments);
+        if (key != null) {
+          missedKeyMap.put(serverInstance.getInstanceId(), key);
+        }
+      }
+    }
+    return new Lookup(generation, cachedDataTablesMap, missedRoutingTable, missedKeyMap);
+  }
+
+  /**
+   * Returns the current generation of the given table, which is bumped each time entries of the table are invalidated.
+   */
+  public synchronized long getGeneration(String tableNameWithType) {
+    return _generationMap.getOrDefault(tableNameWithType, 0L);
+  }
+
+  /**
+   * Returns the cached data tables for the given key, or {@code null} if they are not cached. The execution stats of
+   * the original run are removed from the returned data tables.
+   */
+  @Nullable
+  public List<DataTable> get(CacheKey key) {
+    byte[][] entry;
+    synchronized (this) {
+      entry = _entries.get(key);
+    }
+    if (entry == null) {
+      _brokerMetrics.addMeteredTableValue(key._tableNameWithType, BrokerMeter.SEGMENT_RESULT_CACHE_MISSES, 1);
+      return null;
+    }
+    try {
+      List<DataTable> dataTables = new ArrayList<>(entry.length);
+      for (byte[] bytes : entry) {
+        DataTable dataTable = DataTableFactory.getDataTable(bytes);
+        dataTable.getMetadata().keySet().removeAll(EXECUTION_STATS_METADATA_KEYS);
+        dataTables.add(dataTable);
+      }
+      _brokerMetrics.addMeteredTableValue(key._tableNameWithType, BrokerMeter.SEGMENT_RESULT_CACHE_HITS, 1);
+      return dataTables;
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while deserializing cached data table for table: {}, invalidating the entry",
+          key._tableNameWithType, e);
+      synchronized (this) {
+        removeEntry(key);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Caches the data tables for the given key if the table is not invalidated since the given generation was read.
+   * Data tables with exceptions or larger than the cache size are not cached.
+   */
+  public void put(CacheKey key, List<DataTable> dataTables, long generation) {
+    int numDataTables = dataTables.size();
+    byte[][] entry = new byte[numDataTables][];
+    long entrySize = 0;
+    for (int i = 0; i < numDataTables; i++) {
+      DataTable dataTable = dataTables.get(i);
+      if (!dataTable.getExceptions().isEmpty()) {
+        return;
+      }
+      try {
+        entry[i] = dataTable.toBytes();
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while serializing data table for table: {}, skipping caching it",
+            key._tableNameWithType, e);
+        return;
+      }
+      entrySize += entry[i].length;
+    }
+    if (entrySize > _maxSizeInBytes) {
+      return;
+    }
+    synchronized (this) {
+      if (getGeneration(key._tableNameWithType) != generation) {
+        return;
+      }
+      removeEntry(key);
+      _entries.put(key, entry);
+      _sizeInBytes += entrySize;
+      Map<String, Set<CacheKey>> segmentToKeys =
+          _segmentToKeysMap.computeIfAbsent(key._tableNameWithType, k -> new HashMap<>());
+      for (String segment : key._segments) {
+        segmentToKeys.computeIfAbsent(segment, k -> new HashSet<>()).add(key);
+      }
+      int numEvicted = 0;
+      Iterator<Map.Entry<CacheKey, byte[][]>> iterator = _entries.entrySet().iterator();
+      while (_sizeInBytes > _maxSizeInBytes && iterator.hasNext()) {
+        Map.Entry<CacheKey, byte[][]> eldestEntry = iterator.next();
+        iterator.remove();
+        onEntryRemoved(eldestEntry.getKey(), eldestEntry.getValue());
+        numEvicted++;
+      }
+      if (numEvicted > 0) {
+        _brokerMetrics.addMeteredGlobalValue(BrokerMeter.SEGMENT_RESULT_CACHE_EVICTIONS, numEvicted);
+      }
+    }
+  }
+
+  /**
+   * Invalidates all the entries containing the given segment (called when the segment is refreshed or removed).
+   */
+  public synchronized void invalidateSegment(String tableNameWithType, String segment) {
+    _generationMap.merge(tableNameWithType, 1L, Long::sum);
+    Map<String, Set<CacheKey>> segmentToKeys = _segmentToKeysMap.get(tableNameWithType);
+    if (segmentToKeys == null) {
+      return;
+    }
+    Set<CacheKey> keys = segmentToKeys.get(segment);
+    if (keys != null) {
+      for (CacheKey key : new ArrayList<>(keys)) {
+        removeEntry(key);
+      }
+    }
+  }
+
+  /**
+   * Invalidates all the entries for the given table (called when the routing of the table is rebuilt or removed).
+   */
+  public synchronized void invalidateTable(String tableNameWithType) {
+    _generationMap.merge(tableNameWithType, 1L, Long::sum);
+    Map<String, Set<CacheKey>> segmentToKeys = _segmentToKeysMap.get(tableNameWithType);
+    if (segmentToKeys == null) {
+      return;
+    }
+    Set<CacheKey> keys = new HashSet<>();
+    for (Set<CacheKey> segmentKeys : segmentToKeys.values()) {
+      keys.addAll(segmentKeys);
+    }
+    for (CacheKey key : keys) {
+      removeEntry(key);
+    }
+    _segmentToKeysMap.remove(tableNameWithType);
+  }
+
+  @VisibleForTesting
+  public synchronized int getNumEntries() {
+    return _entries.size();
+  }
+
+  @VisibleForTesting
+  public synchronized long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  private void removeEntry(CacheKey key) {
+    byte[][] entry = _entries.remove(key);
+    if (entry != null) {
+      onEntryRemoved(key, entry);
+    }
+  }
+
+  /**
+   * Updates the size and the segment index after the entry is removed from the entries map.
+   */
+  private void onEntryRemoved(CacheKey key, byte[][] entry) {
+    for (byte[] bytes : entry) {
+      _sizeInBytes -= bytes.length;
+    }
+    Map<String, Set<CacheKey>> segmentToKeys = _segmentToKeysMap.get(key._tableNameWithType);
+    if (segmentToKeys != null) {
+      for (String segment : key._segments) {
+        Set<CacheKey> keys = segmentToKeys.get(segment);
+        if (keys != null) {
+          keys.remove(key);
+          if (keys.isEmpty()) {
+            segmentToKeys.remove(segment);
+          }
+        }
+      }
+      if (segmentToKeys.isEmpty()) {
+        _segmentToKeysMap.remove(key._tableNameWithType);
+      }
+    }
+  }
+
+  /**
+   * Key of the cache entry. The segments are sorted so that the key does not depend on the routing order.
+   */
+  public static class CacheKey {
+    private final String _tableNameWithType;
+    private final PinotQuery _queryFingerprint;
+    private final String _instanceId;
+    private final List<String> _segments;
+    private final int _numRequiredSegments;
+    private final long[] _segmentCrcs;
+    private final boolean _streamed;
+    private final int _hashCode;
+
+    /**
+     * @param segmentCrcs CRCs of the segments in the same order as the sorted segments followed by the sorted optional
+     *                    segments
+     */
+    private CacheKey(String tableNameWithType, PinotQuery queryFingerprint, String instanceId, List<String> segments,
+        int numRequiredSegments, long[] segmentCrcs, boolean streamed) {
+      _tableNameWithType = tableNameWithType;
+      _queryFingerprint = queryFingerprint;
+      _instanceId = instanceId;
+      _segments = segments;
+      _numRequiredSegments = numRequiredSegments;
+      _segmentCrcs = segmentCrcs;
+      _streamed = streamed;
+      _hashCode = Objects.hash(_tableNameWithType, _queryFingerprint, _instanceId, _segments, _numRequiredSegments,
+          Arrays.hashCode(_segmentCrcs), _streamed);
+    }
+
+    public List<String> getSegments() {
+      return Collections.unmodifiableList(_segments);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey that = (CacheKey) o;
+      return _hashCode == that._hashCode && _numRequiredSegments == that._numRequiredSegments
+          && _streamed == that._streamed && _tableNameWithType.equals(that._tableNameWithType)
+          && _instanceId.equals(that._instanceId)
+          && _segments.equals(that._segments) && Arrays.equals(_segmentCrcs, that._segmentCrcs)
+          && _queryFingerprint.equals(that._queryFingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  /**
+   * Provides the CRC of the segments, or {@code null} if the CRC is not available.
+   */
+  public interface SegmentCrcProvider {
+    @Nullable
+    Long getSegmentCrc(String segment);
+  }
+
+  /**
+   * Creates the cache key for the given server and segments, or returns {@code null} if the CRC is not available for
+   * any of the segments (e.g. segment ZK metadata is not fetched yet), in which case the result should not be cached.
+   */
+  @Nullable
+  public static CacheKey createKey(String tableNameWithType, PinotQuery queryFingerprint, String instanceId,
+      List<String> segments, List<String> optionalSegments, SegmentCrcProvider segmentCrcProvider, boolean streamed) {
+    List<String> sortedSegments = new ArrayList<>(segments.size() + optionalSegments.size());
+    sortedSegments.addAll(segments);
+    Collections.sort(sortedSegments);
+    List<String> sortedOptionalSegments = new ArrayList<>(optionalSegments);
+    Collections.sort(sortedOptionalSegments);
+    sortedSegments.addAll(sortedOptionalSegments);
+    int numSegments = sortedSegments.size();
+    long[] segmentCrcs = new long[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      Long crc = segmentCrcProvider.getSegmentCrc(sortedSegments.get(i));
+      if (crc == null) {
+        return null;
+      }
+      segmentCrcs[i] = crc;
+    }
+    return new CacheKey(tableNameWithType, queryFingerprint, instanceId, sortedSegments, segments.size(),
+        segmentCrcs, streamed);
+  }
+
+  /**
+   * Result of looking up the partial results of the servers of a query. Holds the cached data tables of the servers
+   * that hit the cache, and the routing table of the servers that missed it, whose results can be cached once received.
+   */
+  public class Lookup {
+    private final long _generation;
+    private final Map<ServerInstance, List<DataTable>> _cachedDataTablesMap;
+    private final Map<ServerInstance, Pair<List<String>, List<String>>> _missedRoutingTable;
+    private final Map<String, CacheKey> _missedKeyMap;
+
+    private Lookup(long generation, Map<ServerInstance, List<DataTable>> cachedDataTablesMap,
+        Map<ServerInstance, Pair<List<String>, List<String>>> missedRoutingTable, Map<String, CacheKey> missedKeyMap) {
+      _generation = generation;
+      _cachedDataTablesMap = cachedDataTablesMap;
+      _missedRoutingTable = missedRoutingTable;
+      _missedKeyMap = missedKeyMap;
+    }
+
+    public Map<ServerInstance, List<DataTable>> getCachedDataTablesMap() {
+      return _cachedDataTablesMap;
+    }
+
+    public Map<ServerInstance, Pair<List<String>, List<String>>> getMissedRoutingTable() {
+      return _missedRoutingTable;
+    }
+
+    /**
+     * Returns the max size of the serialized data tables that can be cached for a server.
+     */
+    public long getMaxEntrySizeInBytes() {
+      return _maxSizeInBytes;
+    }
+
+    /**
+     * Returns whether the results of the given server can be cached.
+     */
+    public boolean isCacheable(String instanceId) {
+      return _missedKeyMap.containsKey(instanceId);
+    }
+
+    /**
+     * Caches the data tables received from the given server if it missed the cache.
+     */
+    public void cacheDataTables(String instanceId, List<DataTable> dataTables) {
+      CacheKey key = _missedKeyMap.get(instanceId);
+      if (key != null) {
+        put(key, dataTables, _generation);
+      }
+    }
+  }
+}
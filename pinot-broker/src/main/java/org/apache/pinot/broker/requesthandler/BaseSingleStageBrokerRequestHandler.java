@@ -53,6 +53,7 @@ import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.pinot.broker.api.AccessControl;
 import org.apache.pinot.broker.api.RequesterIdentity;
 import org.apache.pinot.broker.broker.AccessControlFactory;
+import org.apache.pinot.broker.querycache.SegmentResultCache;
 import org.apache.pinot.broker.querylog.QueryLogger;
 import org.apache.pinot.broker.queryquota.QueryQuotaManager;
 import org.apache.pinot.broker.routing.BrokerRoutingManager;
@@ -1877,6 +1878,45 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
     }
   }
 
+  /**
+   * Looks up the partial results of the offline servers in the segment result cache, or returns {@code null} if the
+   * cache is not enabled or cannot be used for the query. Traced queries are not cached because the trace info is per
+   * request.
+   *
+   * @param streamed whether the partial results are streamed (gRPC) as multiple data tables
+   */
+  @Nullable
+  protected SegmentResultCache.Lookup lookupSegmentResultCache(BrokerRequest serverBrokerRequest,
+      @Nullable BrokerRequest offlineBrokerRequest,
+      @Nullable Map<ServerInstance, Pair<List<String>, List<String>>> offlineRoutingTable,
+      RequestContext requestContext, boolean streamed) {
+    if (_routingManager == null || offlineBrokerRequest == null || offlineRoutingTable == null
+        || requestContext.isSampledRequest()) {
+      return null;
+    }
+    Map<String, String> queryOptions = offlineBrokerRequest.getPinotQuery().getQueryOptions();
+    if (queryOptions == null || !QueryOptionsUtils.isUseResultCache(queryOptions)
+        || isTraceEnabled(serverBrokerRequest) || isTraceEnabled(offlineBrokerRequest)) {
+      return null;
+    }
+    SegmentResultCache segmentResultCache = _routingManager.getSegmentResultCache();
+    if (segmentResultCache == null) {
+      return null;
+    }
+    String offlineTableName = offlineBrokerRequest.getQuerySource().getTableName();
+    SegmentResultCache.SegmentCrcProvider segmentCrcProvider = _routingManager.getSegmentCrcProvider(offlineTableName);
+    if (segmentCrcProvider == null) {
+      return null;
+    }
+    return segmentResultCache.lookup(offlineTableName, offlineBrokerRequest.getPinotQuery(), offlineRoutingTable,
+        segmentCrcProvider, streamed);
+  }
+
+  private static boolean isTraceEnabled(BrokerRequest brokerRequest) {
+    Map<String, String> queryOptions = brokerRequest.getPinotQuery().getQueryOptions();
+    return queryOptions != null && Boolean.parseBoolean(queryOptions.get(CommonConstants.Broker.Request.TRACE));
+  }
+
   /**
    * Processes the optimized broker requests for both OFFLINE and REALTIME table.
    * TODO: Directly take PinotQuery
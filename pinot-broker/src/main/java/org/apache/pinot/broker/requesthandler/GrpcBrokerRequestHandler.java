@@ -18,6 +18,9 @@
  */
 package org.apache.pinot.broker.requesthandler;
 
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -28,15 +31,19 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pinot.broker.broker.AccessControlFactory;
+import org.apache.pinot.broker.querycache.SegmentResultCache;
 import org.apache.pinot.broker.queryquota.QueryQuotaManager;
 import org.apache.pinot.broker.routing.BrokerRoutingManager;
 import org.apache.pinot.common.config.GrpcConfig;
 import org.apache.pinot.common.config.provider.TableCache;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.datatable.DataTableFactory;
 import org.apache.pinot.common.proto.Server;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.response.broker.BrokerResponseNative;
 import org.apache.pinot.common.utils.grpc.GrpcQueryClient;
 import org.apache.pinot.common.utils.grpc.GrpcRequestBuilder;
+import org.apache.pinot.core.operator.streaming.StreamingResponseUtils;
 import org.apache.pinot.core.query.reduce.StreamingReduceService;
 import org.apache.pinot.core.transport.ServerInstance;
 import org.apache.pinot.core.transport.ServerRoutingInstance;
@@ -87,13 +94,24 @@ public class GrpcBrokerRequestHandler extends BaseSingleStageBrokerRequestHandle
     Map<ServerRoutingInstance, Iterator<Server.ServerResponse>> responseMap = new HashMap<>();
     if (offlineBrokerRequest != null) {
       assert offlineRoutingTable != null;
+      // Serve the partial results of the offline servers from the segment result cache when possible, and only send
+      // the query to the servers that missed the cache
+      SegmentResultCache.Lookup cacheLookup = lookupSegmentResultCache(serverBrokerRequest, offlineBrokerRequest,
+          offlineRoutingTable, requestContext, true);
+      if (cacheLookup != null) {
+        offlineRoutingTable = cacheLookup.getMissedRoutingTable();
+        for (Map.Entry<ServerInstance, List<DataTable>> entry : cacheLookup.getCachedDataTablesMap().entrySet()) {
+          responseMap.put(entry.getKey().toServerRoutingInstance(TableType.OFFLINE, ServerInstance.RoutingType.GRPC),
+              getServerResponses(entry.getValue()));
+        }
+      }
       sendRequest(requestId, TableType.OFFLINE, offlineBrokerRequest, offlineRoutingTable, responseMap,
-          requestContext.isSampledRequest());
+          requestContext.isSampledRequest(), cacheLookup);
     }
     if (realtimeBrokerRequest != null) {
       assert realtimeRoutingTable != null;
       sendRequest(requestId, TableType.REALTIME, realtimeBrokerRequest, realtimeRoutingTable, responseMap,
-          requestContext.isSampledRequest());
+          requestContext.isSampledRequest(), null);
     }
     long reduceStartTimeNs = System.nanoTime();
     BrokerResponseNative brokerResponse =
@@ -107,7 +125,8 @@ public class GrpcBrokerRequestHandler extends BaseSingleStageBrokerRequestHandle
    */
   private void sendRequest(long requestId, TableType tableType, BrokerRequest brokerRequest,
       Map<ServerInstance, Pair<List<String>, List<String>>> routingTable,
-      Map<ServerRoutingInstance, Iterator<Server.ServerResponse>> responseMap, boolean trace) {
+      Map<ServerRoutingInstance, Iterator<Server.ServerResponse>> responseMap, boolean trace,
+      @Nullable SegmentResultCache.Lookup cacheLookup) {
     for (Map.Entry<ServerInstance, Pair<List<String>, List<String>>> routingEntry : routingTable.entrySet()) {
       ServerInstance serverInstance = routingEntry.getKey();
       // TODO: support optional segments for GrpcQueryServer.
@@ -118,11 +137,90 @@ public class GrpcBrokerRequestHandler extends BaseSingleStageBrokerRequestHandle
       Iterator<Server.ServerResponse> streamingResponse = _streamingQueryClient.submit(serverHost, port,
           new GrpcRequestBuilder().setRequestId(requestId).setBrokerId(_brokerId).setEnableTrace(trace)
               .setEnableStreaming(true).setBrokerRequest(brokerRequest).setSegments(segments).build());
+      if (cacheLookup != null && cacheLookup.isCacheable(serverInstance.getInstanceId())) {
+        streamingResponse = new CachingServerResponseIterator(streamingResponse, cacheLookup,
+            serverInstance.getInstanceId());
+      }
       responseMap.put(serverInstance.toServerRoutingInstance(tableType, ServerInstance.RoutingType.GRPC),
           streamingResponse);
     }
   }
 
+  /**
+   * Returns the streaming responses replaying the given cached data tables, where the metadata-only data table (without
+   * data schema) is sent as the metadata response.
+   */
+  private static Iterator<Server.ServerResponse> getServerResponses(List<DataTable> dataTables)
+      throws IOException {
+    List<Server.ServerResponse> serverResponses = new ArrayList<>(dataTables.size());
+    for (DataTable dataTable : dataTables) {
+      serverResponses.add(dataTable.getDataSchema() != null ? StreamingResponseUtils.getDataResponse(dataTable)
+          : StreamingResponseUtils.getMetadataResponse(dataTable));
+    }
+    return serverResponses.iterator();
+  }
+
+  /**
+   * Iterator over the streaming responses of a server, which caches the received data tables once all the responses
+   * are consumed. The responses are not cached if they exceed the max entry size of the cache.
+   */
+  private static class CachingServerResponseIterator implements Iterator<Server.ServerResponse> {
+    private final Iterator<Server.ServerResponse> _serverResponses;
+    private final SegmentResultCache.Lookup _cacheLookup;
+    private final String _instanceId;
+    private final List<ByteString> _payloads = new ArrayList<>();
+    private long _payloadsSize;
+    private boolean _done;
+
+    CachingServerResponseIterator(Iterator<Server.ServerResponse> serverResponses,
+        SegmentResultCache.Lookup cacheLookup, String instanceId) {
+      _serverResponses = serverResponses;
+      _cacheLookup = cacheLookup;
+      _instanceId = instanceId;
+    }
+
+    @Override
+    public boolean hasNext() {
+      boolean hasNext = _serverResponses.hasNext();
+      if (!hasNext && !_done) {
+        _done = true;
+        cacheDataTables();
+      }
+      return hasNext;
+    }
+
+    @Override
+    public Server.ServerResponse next() {
+      Server.ServerResponse serverResponse = _serverResponses.next();
+      if (!_done) {
+        ByteString payload = serverResponse.getPayload();
+        _payloadsSize += payload.size();
+        if (_payloadsSize <= _cacheLookup.getMaxEntrySizeInBytes()) {
+          _payloads.add(payload);
+        } else {
+          _done = true;
+          _payloads.clear();
+        }
+      }
+      return serverResponse;
+    }
+
+    private void cacheDataTables() {
+      List<DataTable> dataTables = new ArrayList<>(_payloads.size());
+      try {
+        for (ByteString payload : _payloads) {
+          dataTables.add(DataTableFactory.getDataTable(payload.asReadOnlyByteBuffer()));
+        }
+      } catch (Exception e) {
+        // Do not cache the responses that cannot be deserialized, which will fail the reduce anyway
+        return;
+      } finally {
+        _payloads.clear();
+      }
+      _cacheLookup.cacheDataTables(_instanceId, dataTables);
+    }
+  }
+
   public static class PinotStreamingQueryClient {
     private final Map<String, GrpcQueryClient> _grpcQueryClientMap = new ConcurrentHashMap<>();
     private final GrpcConfig _config;
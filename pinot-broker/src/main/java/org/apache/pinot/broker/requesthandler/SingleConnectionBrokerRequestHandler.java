@@ -18,6 +18,7 @@
  */
 package org.apache.pinot.broker.requesthandler;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +30,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pinot.broker.broker.AccessControlFactory;
 import org.apache.pinot.broker.failuredetector.FailureDetector;
 import org.apache.pinot.broker.failuredetector.FailureDetectorFactory;
+import org.apache.pinot.broker.querycache.SegmentResultCache;
 import org.apache.pinot.broker.queryquota.QueryQuotaManager;
 import org.apache.pinot.broker.routing.BrokerRoutingManager;
 import org.apache.pinot.common.config.NettyConfig;
@@ -37,6 +39,7 @@ import org.apache.pinot.common.config.provider.TableCache;
 import org.apache.pinot.common.datatable.DataTable;
 import org.apache.pinot.common.exception.QueryException;
 import org.apache.pinot.common.metrics.BrokerMeter;
+import org.apache.pinot.common.metrics.BrokerMetrics;
 import org.apache.pinot.common.metrics.BrokerQueryPhase;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.response.broker.BrokerResponseNative;
@@ -50,6 +53,7 @@ import org.apache.pinot.core.transport.ServerInstance;
 import org.apache.pinot.core.transport.ServerResponse;
 import org.apache.pinot.core.transport.ServerRoutingInstance;
 import org.apache.pinot.core.transport.server.routing.stats.ServerRoutingStatsManager;
+import org.apache.pinot.spi.config.table.TableType;
 import org.apache.pinot.spi.env.PinotConfiguration;
 import org.apache.pinot.spi.trace.RequestContext;
 import org.apache.pinot.spi.utils.CommonConstants;
@@ -75,9 +79,17 @@ public class SingleConnectionBrokerRequestHandler extends BaseSingleStageBrokerR
       BrokerRoutingManager routingManager, AccessControlFactory accessControlFactory,
       QueryQuotaManager queryQuotaManager, TableCache tableCache, NettyConfig nettyConfig, TlsConfig tlsConfig,
       ServerRoutingStatsManager serverRoutingStatsManager) {
+    this(config, brokerId, routingManager, accessControlFactory, queryQuotaManager, tableCache,
+        new QueryRouter(brokerId, BrokerMetrics.get(), nettyConfig, tlsConfig, serverRoutingStatsManager));
+  }
+
+  @VisibleForTesting
+  SingleConnectionBrokerRequestHandler(PinotConfiguration config, String brokerId,
+      BrokerRoutingManager routingManager, AccessControlFactory accessControlFactory,
+      QueryQuotaManager queryQuotaManager, TableCache tableCache, QueryRouter queryRouter) {
     super(config, brokerId, routingManager, accessControlFactory, queryQuotaManager, tableCache);
     _brokerReduceService = new BrokerReduceService(_config);
-    _queryRouter = new QueryRouter(_brokerId, _brokerMetrics, nettyConfig, tlsConfig, serverRoutingStatsManager);
+    _queryRouter = queryRouter;
     _failureDetector = FailureDetectorFactory.getFailureDetector(config, _brokerMetrics);
   }
 
@@ -110,6 +122,17 @@ public class SingleConnectionBrokerRequestHandler extends BaseSingleStageBrokerR
     }
 
     String rawTableName = TableNameBuilder.extractRawTableName(serverBrokerRequest.getQuerySource().getTableName());
+
+    // Serve the partial results of the offline servers from the segment result cache when possible, and only scatter
+    // the query to the servers that missed the cache
+    SegmentResultCache.Lookup cacheLookup =
+        lookupSegmentResultCache(serverBrokerRequest, offlineBrokerRequest, offlineRoutingTable, requestContext, false);
+    int numCachedServers = 0;
+    if (cacheLookup != null) {
+      offlineRoutingTable = cacheLookup.getMissedRoutingTable();
+      numCachedServers = cacheLookup.getCachedDataTablesMap().size();
+    }
+
     long scatterGatherStartTimeNs = System.nanoTime();
     AsyncQueryResponse asyncQueryResponse =
         _queryRouter.submitQuery(requestId, rawTableName, offlineBrokerRequest, offlineRoutingTable,
@@ -127,18 +150,27 @@ public class SingleConnectionBrokerRequestHandler extends BaseSingleStageBrokerR
     // TODO Use scatterGatherStats as serverStats
     serverStats.setServerStats(asyncQueryResponse.getServerStats());
 
-    int numServersQueried = finalResponses.size();
+    int numServersQueried = finalResponses.size() + numCachedServers;
     long totalResponseSize = 0;
     Map<ServerRoutingInstance, DataTable> dataTableMap = Maps.newHashMapWithExpectedSize(numServersQueried);
     List<ServerRoutingInstance> serversNotResponded = new ArrayList<>();
     for (Map.Entry<ServerRoutingInstance, ServerResponse> entry : finalResponses.entrySet()) {
+      ServerRoutingInstance serverRoutingInstance = entry.getKey();
       ServerResponse serverResponse = entry.getValue();
       DataTable dataTable = serverResponse.getDataTable();
       if (dataTable != null) {
-        dataTableMap.put(entry.getKey(), dataTable);
+        dataTableMap.put(serverRoutingInstance, dataTable);
         totalResponseSize += serverResponse.getResponseSize();
+        if (cacheLookup != null && serverRoutingInstance.getTableType() == TableType.OFFLINE) {
+          cacheLookup.cacheDataTables(serverRoutingInstance.getInstanceId(), List.of(dataTable));
+        }
       } else {
-        serversNotResponded.add(entry.getKey());
+        serversNotResponded.add(serverRoutingInstance);
+      }
+    }
+    if (cacheLookup != null) {
+      for (Map.Entry<ServerInstance, List<DataTable>> entry : cacheLookup.getCachedDataTablesMap().entrySet()) {
+        dataTableMap.put(entry.getKey().toServerRoutingInstance(TableType.OFFLINE, false), entry.getValue().get(0));
       }
     }
     int numServersResponded = dataTableMap.size();
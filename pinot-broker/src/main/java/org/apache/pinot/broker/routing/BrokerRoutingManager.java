@@ -40,10 +40,12 @@ import org.apache.helix.model.InstanceConfig;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.apache.helix.zookeeper.datamodel.ZNRecord;
 import org.apache.pinot.broker.broker.helix.ClusterChangeHandler;
+import org.apache.pinot.broker.querycache.SegmentResultCache;
 import org.apache.pinot.broker.routing.adaptiveserverselector.AdaptiveServerSelector;
 import org.apache.pinot.broker.routing.adaptiveserverselector.AdaptiveServerSelectorFactory;
 import org.apache.pinot.broker.routing.instanceselector.InstanceSelector;
 import org.apache.pinot.broker.routing.instanceselector.InstanceSelectorFactory;
+import org.apache.pinot.broker.routing.segmentmetadata.SegmentCrcTracker;
 import org.apache.pinot.broker.routing.segmentmetadata.SegmentZkMetadataFetchListener;
 import org.apache.pinot.broker.routing.segmentmetadata.SegmentZkMetadataFetcher;
 import org.apache.pinot.broker.routing.segmentpartition.SegmentPartitionMetadataManager;
@@ -92,6 +94,7 @@ import org.slf4j.LoggerFactory;
  *   <li>{@link #getRoutingTable(BrokerRequest, long)}: Returns the routing table for a query</li>
  *   <li>{@link #getTimeBoundaryInfo(String)}: Returns the time boundary info for a table</li>
  *   <li>{@link #getQueryTimeoutMs(String)}: Returns the table-level query timeout in milliseconds for a table</li>
+ *   <li>{@link #getSegmentResultCache()}: Returns the segment result cache if enabled</li>
  * </ul>
  *
  * TODO: Expose RoutingEntry class to get a consistent view in the broker request handler and save the redundant map
@@ -107,6 +110,7 @@ public class BrokerRoutingManager implements RoutingManager, ClusterChangeHandle
   private final Set<String> _excludedServers = new HashSet<>();
   private final ServerRoutingStatsManager _serverRoutingStatsManager;
   private final PinotConfiguration _pinotConfig;
+  private final SegmentResultCache _segmentResultCache;
 
   private BaseDataAccessor<ZNRecord> _zkDataAccessor;
   private String _externalViewPathPrefix;
@@ -121,6 +125,15 @@ public class BrokerRoutingManager implements RoutingManager, ClusterChangeHandle
     _brokerMetrics = brokerMetrics;
     _serverRoutingStatsManager = serverRoutingStatsManager;
     _pinotConfig = pinotConfig;
+    long segmentResultCacheMaxSizeBytes =
+        pinotConfig.getProperty(CommonConstants.Broker.CONFIG_OF_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES,
+            CommonConstants.Broker.DEFAULT_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES);
+    if (segmentResultCacheMaxSizeBytes > 0) {
+      LOGGER.info("Enabling segment result cache with max size: {} bytes", segmentResultCacheMaxSizeBytes);
+      _segmentResultCache = new SegmentResultCache(segmentResultCacheMaxSizeBytes, brokerMetrics);
+    } else {
+      _segmentResultCache = null;
+    }
   }
 
   @Override
@@ -528,12 +541,22 @@ public class BrokerRoutingManager implements RoutingManager, ClusterChangeHandle
     if (partitionMetadataManager != null) {
       segmentZkMetadataFetcher.register(partitionMetadataManager);
     }
+    // Only cache the results for the offline table because real-time table has mutable (consuming) segments
+    SegmentCrcTracker segmentCrcTracker = null;
+    if (_segmentResultCache != null) {
+      _segmentResultCache.invalidateTable(tableNameWithType);
+      if (TableNameBuilder.isOfflineTableResource(tableNameWithType)) {
+        segmentCrcTracker = new SegmentCrcTracker(tableNameWithType, _segmentResultCache);
+        segmentZkMetadataFetcher.register(segmentCrcTracker);
+      }
+    }
     segmentZkMetadataFetcher.init(idealState, externalView, preSelectedOnlineSegments);
 
     RoutingEntry routingEntry =
         new RoutingEntry(tableNameWithType, idealStatePath, externalViewPath, segmentPreSelector, segmentSelector,
             segmentPruners, instanceSelector, idealStateVersion, externalViewVersion, segmentZkMetadataFetcher,
-            timeBoundaryManager, partitionMetadataManager, queryTimeoutMs, !idealState.isEnabled());
+            timeBoundaryManager, partitionMetadataManager, segmentCrcTracker, queryTimeoutMs,
+            !idealState.isEnabled());
     if (_routingEntryMap.put(tableNameWithType, routingEntry) == null) {
       LOGGER.info("Built routing for table: {}", tableNameWithType);
     } else {
@@ -564,6 +587,9 @@ public class BrokerRoutingManager implements RoutingManager, ClusterChangeHandle
     LOGGER.info("Removing routing for table: {}", tableNameWithType);
     if (_routingEntryMap.remove(tableNameWithType) != null) {
       LOGGER.info("Removed routing for table: {}", tableNameWithType);
+      if (_segmentResultCache != null) {
+        _segmentResultCache.invalidateTable(tableNameWithType);
+      }
 
       // Remove time boundary manager for the offline part routing if the removed routing is the real-time part of a
       // hybrid table
@@ -725,6 +751,24 @@ public class BrokerRoutingManager implements RoutingManager, ClusterChangeHandle
     return routingEntry != null ? routingEntry.getQueryTimeoutMs() : null;
   }
 
+  /**
+   * Returns the segment result cache, or {@code null} if the cache is not enabled.
+   */
+  @Nullable
+  public SegmentResultCache getSegmentResultCache() {
+    return _segmentResultCache;
+  }
+
+  /**
+   * Returns the segment CRC provider for the given table, or {@code null} if the results of the table cannot be cached
+   * (cache not enabled, routing does not exist or not an offline table).
+   */
+  @Nullable
+  public SegmentResultCache.SegmentCrcProvider getSegmentCrcProvider(String tableNameWithType) {
+    RoutingEntry routingEntry = _routingEntryMap.get(tableNameWithType);
+    return routingEntry != null ? routingEntry._segmentCrcTracker : null;
+  }
+
   private static class RoutingEntry {
     final String _tableNameWithType;
     final String _idealStatePath;
@@ -736,6 +780,7 @@ public class BrokerRoutingManager implements RoutingManager, ClusterChangeHandle
     final InstanceSelector _instanceSelector;
     final Long _queryTimeoutMs;
     final SegmentZkMetadataFetcher _segmentZkMetadataFetcher;
+    final SegmentCrcTracker _segmentCrcTracker;
 
     // Cache IdealState and ExternalView version for the last update
     transient int _lastUpdateIdealStateVersion;
@@ -749,8 +794,8 @@ public class BrokerRoutingManager implements RoutingManager, ClusterChangeHandle
         SegmentPreSelector segmentPreSelector, SegmentSelector segmentSelector, List<SegmentPruner> segmentPruners,
         InstanceSelector instanceSelector, int lastUpdateIdealStateVersion, int lastUpdateExternalViewVersion,
         SegmentZkMetadataFetcher segmentZkMetadataFetcher, @Nullable TimeBoundaryManager timeBoundaryManager,
-        @Nullable SegmentPartitionMetadataManager partitionMetadataManager, @Nullable Long queryTimeoutMs,
-        boolean disabled) {
+        @Nullable SegmentPartitionMetadataManager partitionMetadataManager,
+        @Nullable SegmentCrcTracker segmentCrcTracker, @Nullable Long queryTimeoutMs, boolean disabled) {
       _tableNameWithType = tableNameWithType;
       _idealStatePath = idealStatePath;
       _externalViewPath = externalViewPath;
@@ -764,6 +809,7 @@ public class BrokerRoutingManager implements RoutingManager, ClusterChangeHandle
       _partitionMetadataManager = partitionMetadataManager;
       _queryTimeoutMs = queryTimeoutMs;
       _segmentZkMetadataFetcher = segmentZkMetadataFetcher;
+      _segmentCrcTracker = segmentCrcTracker;
       _disabled = disabled;
     }
 
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.routing.segmentmetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.broker.querycache.SegmentResultCache;
+import org.apache.pinot.spi.utils.CommonConstants;
+
+
+/**
+ * The {@code SegmentCrcTracker} tracks the CRC of the online segments from the segment ZK metadata, and invalidates the
+ * {@link SegmentResultCache} entries when a segment is replaced (CRC changed) or removed.
+ */
+public class SegmentCrcTracker implements SegmentZkMetadataFetchListener, SegmentResultCache.SegmentCrcProvider {
+  private final String _tableNameWithType;
+  private final SegmentResultCache _segmentResultCache;
+  private final Map<String, Long> _segmentCrcMap = new ConcurrentHashMap<>();
+
+  public SegmentCrcTracker(String tableNameWithType, SegmentResultCache segmentResultCache) {
+    _tableNameWithType = tableNameWithType;
+    _segmentResultCache = segmentResultCache;
+  }
+
+  @Override
+  public void init(IdealState idealState, ExternalView externalView, List<String> onlineSegments,
+      List<ZNRecord> znRecords) {
+    int numSegments = onlineSegments.size();
+    for (int i = 0; i < numSegments; i++) {
+      updateSegmentCrc(onlineSegments.get(i), znRecords.get(i));
+    }
+  }
+
+  @Override
+  public synchronized void onAssignmentChange(IdealState idealState, ExternalView externalView,
+      Set<String> onlineSegments, List<String> pulledSegments, List<ZNRecord> znRecords) {
+    int numSegments = pulledSegments.size();
+    for (int i = 0; i < numSegments; i++) {
+      updateSegmentCrc(pulledSegments.get(i), znRecords.get(i));
+    }
+    for (String segment : new ArrayList<>(_segmentCrcMap.keySet())) {
+      if (!onlineSegments.contains(segment)) {
+        _segmentCrcMap.remove(segment);
+        _segmentResultCache.invalidateSegment(_tableNameWithType, segment);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void refreshSegment(String segment, @Nullable ZNRecord znRecord) {
+    updateSegmentCrc(segment, znRecord);
+    // Always invalidate on refresh since the segment might be reloaded on the servers even if the CRC is the same
+    _segmentResultCache.invalidateSegment(_tableNameWithType, segment);
+  }
+
+  @Nullable
+  @Override
+  public Long getSegmentCrc(String segment) {
+    return _segmentCrcMap.get(segment);
+  }
+
+  private void updateSegmentCrc(String segment, @Nullable ZNRecord znRecord) {
+    long crc = znRecord != null ? znRecord.getLongField(CommonConstants.Segment.CRC, -1L) : -1L;
+    if (crc >= 0) {
+      Long previousCrc = _segmentCrcMap.put(segment, crc);
+      if (previousCrc != null && previousCrc != crc) {
+        _segmentResultCache.invalidateSegment(_tableNameWithType, segment);
+      }
+    } else {
+      _segmentCrcMap.remove(segment);
+      _segmentResultCache.invalidateSegment(_tableNameWithType, segment);
+    }
+  }
+}
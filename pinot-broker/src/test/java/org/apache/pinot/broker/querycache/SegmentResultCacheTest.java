@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.querycache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.datatable.DataTable.MetadataKey;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.core.common.datatable.DataTableBuilderFactory;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+
+public class SegmentResultCacheTest {
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final String INSTANCE_ID = "Server_localhost_1234";
+
+  @Test
+  public void testQueryFingerprint() {
+    PinotQuery pinotQuery = new PinotQuery();
+    Map<String, String> queryOptions = new HashMap<>();
+    queryOptions.put(QueryOptionKey.TIMEOUT_MS, "1000");
+    queryOptions.put(QueryOptionKey.USE_RESULT_CACHE, "true");
+    queryOptions.put(QueryOptionKey.NUM_GROUPS_LIMIT, "10");
+    pinotQuery.setQueryOptions(queryOptions);
+    PinotQuery otherPinotQuery = pinotQuery.deepCopy();
+    otherPinotQuery.getQueryOptions().put(QueryOptionKey.TIMEOUT_MS, "2000");
+
+    PinotQuery fingerprint = SegmentResultCache.getQueryFingerprint(pinotQuery);
+    assertEquals(fingerprint.getQueryOptions(), Map.of(QueryOptionKey.NUM_GROUPS_LIMIT, "10"));
+    assertEquals(SegmentResultCache.getQueryFingerprint(otherPinotQuery), fingerprint);
+    // Original query should not be modified
+    assertEquals(pinotQuery.getQueryOptions().size(), 3);
+  }
+
+  @Test
+  public void testCreateKey() {
+    PinotQuery fingerprint = new PinotQuery();
+    Map<String, Long> segmentCrcs = new HashMap<>();
+    segmentCrcs.put("s1", 1L);
+    segmentCrcs.put("s2", 2L);
+
+    SegmentResultCache.CacheKey key =
+        SegmentResultCache.createKey(TABLE_NAME, fingerprint, INSTANCE_ID, List.of("s2", "s1"), List.of(),
+            segmentCrcs::get, false);
+    assertNotNull(key);
+    assertEquals(key.getSegments(), List.of("s1", "s2"));
+    assertEquals(SegmentResultCache.createKey(TABLE_NAME, fingerprint, INSTANCE_ID, List.of("s1", "s2"), List.of(),
+        segmentCrcs::get, false), key);
+
+    // Different CRC should result in different key
+    Map<String, Long> newSegmentCrcs = new HashMap<>(segmentCrcs);
+    newSegmentCrcs.put("s2", 3L);
+    assertNotEquals(SegmentResultCache.createKey(TABLE_NAME, fingerprint, INSTANCE_ID, List.of("s1", "s2"), List.of(),
+        newSegmentCrcs::get, false), key);
+
+    // Streamed results should be cached separately
+    assertNotEquals(SegmentResultCache.createKey(TABLE_NAME, fingerprint, INSTANCE_ID, List.of("s1", "s2"), List.of(),
+        segmentCrcs::get, true), key);
+
+    // Missing CRC should not be cached
+    assertNull(SegmentResultCache.createKey(TABLE_NAME, fingerprint, INSTANCE_ID, List.of("s1", "s3"), List.of(),
+        segmentCrcs::get, false));
+  }
+
+  @Test
+  public void testPutGetAndInvalidate()
+      throws Exception {
+    DataTable dataTable = DataTableBuilderFactory.getEmptyDataTable();
+    int dataTableSize = dataTable.toBytes().length;
+    SegmentResultCache cache = new SegmentResultCache(2L * dataTableSize, mock(BrokerMetrics.class));
+    Map<String, Long> segmentCrcs = Map.of("s1", 1L, "s2", 2L, "s3", 3L);
+    PinotQuery fingerprint = new PinotQuery();
+    SegmentResultCache.CacheKey key1 =
+        SegmentResultCache.createKey(TABLE_NAME, fingerprint, INSTANCE_ID, List.of("s1"), List.of(),
+            segmentCrcs::get, false);
+    SegmentResultCache.CacheKey key2 =
+        SegmentResultCache.createKey(TABLE_NAME, fingerprint, INSTANCE_ID, List.of("s2"), List.of(),
+            segmentCrcs::get, false);
+    SegmentResultCache.CacheKey key3 =
+        SegmentResultCache.createKey(TABLE_NAME, fingerprint, INSTANCE_ID, List.of("s3"), List.of(),
+            segmentCrcs::get, false);
+    assertNotNull(key1);
+    assertNotNull(key2);
+    assertNotNull(key3);
+
+    assertNull(cache.get(key1));
+    cache.put(key1, List.of(dataTable), cache.getGeneration(TABLE_NAME));
+    cache.put(key2, List.of(dataTable), cache.getGeneration(TABLE_NAME));
+    assertEquals(cache.getNumEntries(), 2);
+    assertEquals(cache.getSizeInBytes(), 2L * dataTableSize);
+    assertNotNull(cache.get(key1));
+
+    // key2 is the least recently used entry, and should be evicted
+    cache.put(key3, List.of(dataTable), cache.getGeneration(TABLE_NAME));
+    assertEquals(cache.getNumEntries(), 2);
+    assertNull(cache.get(key2));
+    assertNotNull(cache.get(key1));
+    assertNotNull(cache.get(key3));
+
+    cache.invalidateSegment(TABLE_NAME, "s1");
+    assertNull(cache.get(key1));
+    assertEquals(cache.getNumEntries(), 1);
+    assertEquals(cache.getSizeInBytes(), dataTableSize);
+
+    cache.invalidateTable(TABLE_NAME);
+    assertNull(cache.get(key3));
+    assertEquals(cache.getNumEntries(), 0);
+    assertEquals(cache.getSizeInBytes(), 0);
+  }
+
+  @Test
+  public void testPutAfterInvalidation() {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, mock(BrokerMetrics.class));
+    SegmentResultCache.CacheKey key =
+        SegmentResultCache.createKey(TABLE_NAME, new PinotQuery(), INSTANCE_ID, List.of("s1"), List.of(),
+            segment -> 1L, false);
+    assertNotNull(key);
+
+    // Results of the query looked up before the invalidation should not be cached
+    long generation = cache.getGeneration(TABLE_NAME);
+    cache.invalidateSegment(TABLE_NAME, "s1");
+    cache.put(key, List.of(DataTableBuilderFactory.getEmptyDataTable()), generation);
+    assertNull(cache.get(key));
+    assertEquals(cache.getNumEntries(), 0);
+
+    cache.put(key, List.of(DataTableBuilderFactory.getEmptyDataTable()), cache.getGeneration(TABLE_NAME));
+    assertNotNull(cache.get(key));
+  }
+
+  @Test
+  public void testExecutionStatsRemoved() {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, mock(BrokerMetrics.class));
+    SegmentResultCache.CacheKey key =
+        SegmentResultCache.createKey(TABLE_NAME, new PinotQuery(), INSTANCE_ID, List.of("s1"), List.of(),
+            segment -> 1L, true);
+    assertNotNull(key);
+
+    DataTable dataTable = DataTableBuilderFactory.getEmptyDataTable();
+    DataTable metadataTable = DataTableBuilderFactory.getEmptyDataTable();
+    Map<String, String> metadata = metadataTable.getMetadata();
+    metadata.put(MetadataKey.NUM_DOCS_SCANNED.getName(), "100");
+    metadata.put(MetadataKey.TIME_USED_MS.getName(), "10");
+    metadata.put(MetadataKey.TOTAL_DOCS.getName(), "1000");
+    cache.put(key, List.of(dataTable, metadataTable), cache.getGeneration(TABLE_NAME));
+
+    List<DataTable> cachedDataTables = cache.get(key);
+    assertNotNull(cachedDataTables);
+    assertEquals(cachedDataTables.size(), 2);
+    assertEquals(cachedDataTables.get(1).getMetadata(), Map.of(MetadataKey.TOTAL_DOCS.getName(), "1000"));
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.pinot.broker.broker.AllowAllAccessControlFactory;
+import org.apache.pinot.broker.querycache.SegmentResultCache;
+import org.apache.pinot.broker.queryquota.QueryQuotaManager;
+import org.apache.pinot.broker.routing.BrokerRoutingManager;
+import org.apache.pinot.common.config.provider.TableCache;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.response.BrokerResponse;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.common.datatable.DataTableBuilder;
+import org.apache.pinot.core.common.datatable.DataTableBuilderFactory;
+import org.apache.pinot.core.routing.RoutingTable;
+import org.apache.pinot.core.transport.AsyncQueryResponse;
+import org.apache.pinot.core.transport.QueryResponse;
+import org.apache.pinot.core.transport.QueryRouter;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.core.transport.ServerResponse;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.config.table.TenantConfig;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.eventlistener.query.BrokerQueryEventListenerFactory;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class SingleConnectionBrokerRequestHandlerTest {
+  private static final String TABLE_NAME = "myTable_OFFLINE";
+  private static final String SEGMENT_NAME = "segment01";
+  private static final String QUERY = "SET useResultCache=true; SELECT col FROM myTable_OFFLINE LIMIT 10";
+
+  @Test
+  public void testSegmentResultCache()
+      throws Exception {
+    TableCache tableCache = mock(TableCache.class);
+    TableConfig tableConfig = mock(TableConfig.class);
+    when(tableCache.getActualTableName(anyString())).thenReturn(TABLE_NAME);
+    when(tableConfig.getTenantConfig()).thenReturn(new TenantConfig("tier_BROKER", "tier_SERVER", null));
+    when(tableCache.getTableConfig(TABLE_NAME)).thenReturn(tableConfig);
+
+    ServerInstance serverInstance = new ServerInstance(new InstanceConfig("server01_9000"));
+    Map<ServerInstance, Pair<List<String>, List<String>>> serverInstanceToSegmentsMap =
+        Map.of(serverInstance, Pair.of(List.of(SEGMENT_NAME), List.of()));
+    RoutingTable routingTable = mock(RoutingTable.class);
+    when(routingTable.getServerInstanceToSegmentsMap()).thenReturn(serverInstanceToSegmentsMap);
+    SegmentResultCache segmentResultCache = new SegmentResultCache(1024 * 1024, mock(BrokerMetrics.class));
+    BrokerRoutingManager routingManager = mock(BrokerRoutingManager.class);
+    when(routingManager.routingExists(TABLE_NAME)).thenReturn(true);
+    when(routingManager.getQueryTimeoutMs(TABLE_NAME)).thenReturn(10000L);
+    when(routingManager.getRoutingTable(any(), anyLong())).thenReturn(routingTable);
+    when(routingManager.getSegmentResultCache()).thenReturn(segmentResultCache);
+    when(routingManager.getSegmentCrcProvider(TABLE_NAME)).thenReturn(segment -> 1L);
+    QueryQuotaManager queryQuotaManager = mock(QueryQuotaManager.class);
+    when(queryQuotaManager.acquire(anyString())).thenReturn(true);
+    when(queryQuotaManager.acquireDatabase(anyString())).thenReturn(true);
+    when(queryQuotaManager.acquireApplication(anyString())).thenReturn(true);
+
+    // The server returns a single row
+    DataTableBuilder dataTableBuilder = DataTableBuilderFactory.getDataTableBuilder(
+        new DataSchema(new String[]{"col"}, new ColumnDataType[]{ColumnDataType.INT}));
+    dataTableBuilder.startRow();
+    dataTableBuilder.setColumn(0, 123);
+    dataTableBuilder.finishRow();
+    DataTable dataTable = dataTableBuilder.build();
+    ServerResponse serverResponse = mock(ServerResponse.class);
+    when(serverResponse.getDataTable()).thenReturn(dataTable);
+    AsyncQueryResponse serverQueryResponse = mock(AsyncQueryResponse.class);
+    when(serverQueryResponse.getStatus()).thenReturn(QueryResponse.Status.COMPLETED);
+    when(serverQueryResponse.getFinalResponses()).thenReturn(
+        Map.of(serverInstance.toServerRoutingInstance(TableType.OFFLINE, false), serverResponse));
+    // No server is queried when all of them hit the cache
+    AsyncQueryResponse emptyQueryResponse = mock(AsyncQueryResponse.class);
+    when(emptyQueryResponse.getStatus()).thenReturn(QueryResponse.Status.COMPLETED);
+    when(emptyQueryResponse.getFinalResponses()).thenReturn(Map.of());
+    QueryRouter queryRouter = mock(QueryRouter.class);
+    when(queryRouter.submitQuery(anyLong(), anyString(), any(), any(), any(), any(), anyLong())).thenAnswer(
+        invocation -> ((Map<?, ?>) invocation.getArgument(3)).isEmpty() ? emptyQueryResponse : serverQueryResponse);
+
+    BrokerMetrics.register(mock(BrokerMetrics.class));
+    PinotConfiguration config = new PinotConfiguration();
+    BrokerQueryEventListenerFactory.init(config);
+    SingleConnectionBrokerRequestHandler requestHandler =
+        new SingleConnectionBrokerRequestHandler(config, "testBrokerId", routingManager,
+            new AllowAllAccessControlFactory(), queryQuotaManager, tableCache, queryRouter);
+
+    // Cache miss, where the query is sent to the server and the result is cached
+    assertResult(requestHandler.handleRequest(QUERY));
+    assertEquals(getSubmittedRoutingTable(queryRouter), serverInstanceToSegmentsMap);
+    assertEquals(segmentResultCache.getNumEntries(), 1);
+
+    // Cache hit, where the query is not sent to the server
+    clearInvocations(queryRouter);
+    assertResult(requestHandler.handleRequest(QUERY));
+    assertTrue(getSubmittedRoutingTable(queryRouter).isEmpty());
+
+    // Cache miss after the segment is refreshed
+    segmentResultCache.invalidateSegment(TABLE_NAME, SEGMENT_NAME);
+    assertEquals(segmentResultCache.getNumEntries(), 0);
+    clearInvocations(queryRouter);
+    assertResult(requestHandler.handleRequest(QUERY));
+    assertEquals(getSubmittedRoutingTable(queryRouter), serverInstanceToSegmentsMap);
+    assertEquals(segmentResultCache.getNumEntries(), 1);
+  }
+
+  private static void assertResult(BrokerResponse brokerResponse) {
+    assertTrue(brokerResponse.getExceptions().isEmpty(), brokerResponse.getExceptions().toString());
+    assertEquals(brokerResponse.getNumServersQueried(), 1);
+    assertEquals(brokerResponse.getNumServersResponded(), 1);
+    List<Object[]> rows = brokerResponse.getResultTable().getRows();
+    assertEquals(rows.size(), 1);
+    assertEquals(rows.get(0), new Object[]{123});
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<ServerInstance, Pair<List<String>, List<String>>> getSubmittedRoutingTable(
+      QueryRouter queryRouter) {
+    ArgumentCaptor<Map<ServerInstance, Pair<List<String>, List<String>>>> routingTableCaptor =
+        ArgumentCaptor.forClass(Map.class);
+    verify(queryRouter).submitQuery(anyLong(), anyString(), any(), routingTableCaptor.capture(), any(), any(),
+        anyLong());
+    return routingTableCaptor.getValue();
+  }
+}
@@ -19,16 +19,24 @@
 package org.apache.pinot.common.function;
 
 import com.google.common.base.Preconditions;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.Arrays;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.utils.PinotDataType;
 
 
 /**
  * The {@code FunctionInvoker} is a wrapper on a java method which supports arguments type conversion and method
- * invocation via reflection.
+ * invocation. The method is invoked through a {@link MethodHandle} adapted to take the arguments as an array, which
+ * skips the per-call access checks and argument validation of the reflective calls. The handle is held per instance,
+ * so the JIT compiler does not treat it as a constant, and the call is not inlined into the caller. Reflection is used
+ * when the method is not accessible through a {@link MethodHandle}.
  */
 public class FunctionInvoker {
   private final Method _method;
@@ -39,6 +47,8 @@ public class FunctionInvoker {
   private final Class<?>[] _parameterClasses;
   private final PinotDataType[] _parameterTypes;
   private final Object _instance;
+  // (Object[])Object method handle, or null if the method should be invoked via reflection
+  private final MethodHandle _methodHandle;
 
   public FunctionInvoker(FunctionInfo functionInfo) {
     _method = functionInfo.getMethod();
@@ -63,6 +73,24 @@ public class FunctionInvoker {
         throw new IllegalStateException("Caught exception while constructing class: " + clazz, e);
       }
     }
+    _methodHandle = createMethodHandle(_method, _instance);
+  }
+
+  @Nullable
+  private static MethodHandle createMethodHandle(Method method, @Nullable Object instance) {
+    MethodHandle methodHandle;
+    try {
+      methodHandle = MethodHandles.publicLookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+    // Var-arg methods take the var-args as an array, same as invoking them via reflection
+    methodHandle = methodHandle.asFixedArity();
+    if (instance != null) {
+      methodHandle = methodHandle.bindTo(instance);
+    }
+    return methodHandle.asSpreader(Object[].class, method.getParameterCount())
+        .asType(MethodType.methodType(Object.class, Object[].class));
   }
 
   /**
@@ -136,10 +164,26 @@ public class FunctionInvoker {
       }
     }
     try {
-      return _method.invoke(_instance, arguments);
+      if (_methodHandle != null) {
+        return invokeMethodHandle(arguments);
+      } else {
+        return _method.invoke(_instance, arguments);
+      }
     } catch (Exception e) {
       throw new IllegalStateException(
           "Caught exception while invoking method: " + _method + " with arguments: " + Arrays.toString(arguments), e);
     }
   }
+
+  private Object invokeMethodHandle(Object[] arguments)
+      throws Exception {
+    try {
+      return (Object) _methodHandle.invokeExact(arguments);
+    } catch (Exception | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      // Not expected as all the throwables are either exceptions or errors
+      throw new UndeclaredThrowableException(t);
+    }
+  }
 }
@@ -137,6 +137,11 @@ public enum BrokerMeter implements AbstractMetrics.Meter {
   // Track the case where selected server is missing in RoutingManager
   SERVER_MISSING_FOR_ROUTING("badResponses", false),
 
+  // Segment result cache metrics, tracked per server partial result
+  SEGMENT_RESULT_CACHE_HITS("hits", false),
+  SEGMENT_RESULT_CACHE_MISSES("misses", false),
+  SEGMENT_RESULT_CACHE_EVICTIONS("evictions", true),
+
   // Netty connection metrics
   NETTY_CONNECTION_REQUESTS_SENT("nettyConnection", true),
   NETTY_CONNECTION_BYTES_SENT("nettyConnection", true),
@@ -46,6 +46,10 @@ public enum ServerGauge implements AbstractMetrics.Gauge {
   // Dedup metrics
   DEDUP_PRIMARY_KEYS_COUNT("dedupPrimaryKeysCount", false),
   CONSUMPTION_QUOTA_UTILIZATION("ratio", false),
+  // Effective server consumption rate limit, and bitmask of the resource pressure signals lowering it, when the
+  // adaptive consumption rate limit is enabled
+  ADAPTIVE_CONSUMPTION_RATE_LIMIT("messagesPerSecond", true),
+  ADAPTIVE_CONSUMPTION_RESOURCE_PRESSURE("pressure", true),
   JVM_HEAP_USED_BYTES("bytes", true),
   NETTY_POOLED_USED_DIRECT_MEMORY("bytes", true),
   NETTY_POOLED_USED_HEAP_MEMORY("bytes", true),
@@ -79,7 +83,9 @@ public enum ServerGauge implements AbstractMetrics.Gauge {
   REALTIME_INGESTION_OFFSET_LAG("offsetLag", false),
   REALTIME_INGESTION_UPSTREAM_OFFSET("upstreamOffset", false),
   REALTIME_INGESTION_CONSUMING_OFFSET("consumingOffset", false),
-  REALTIME_CONSUMER_DIR_USAGE("bytes", true);
+  REALTIME_CONSUMER_DIR_USAGE("bytes", true),
+  // Off-heap memory held by the segment results cache
+  SEGMENT_RESULTS_CACHE_SIZE_BYTES("bytes", true);
 
   private final String _gaugeName;
   private final String _unit;
@@ -35,6 +35,10 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   SERVER_OUT_OF_CAPACITY_EXCEPTIONS("exceptions", false),
 
   QUERY_EXECUTION_EXCEPTIONS("exceptions", false),
+  // Segment results cache metrics, tracked per segment
+  SEGMENT_RESULTS_CACHE_HITS("hits", true),
+  SEGMENT_RESULTS_CACHE_MISSES("misses", true),
+  SEGMENT_RESULTS_CACHE_EVICTIONS("evictions", true),
   HELIX_ZOOKEEPER_RECONNECTS("reconnects", true),
   DELETED_SEGMENT_COUNT("segments", false),
   DELETE_TABLE_FAILURES("tables", false),
@@ -104,6 +108,8 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   SEGMENT_UPLOAD_TIMEOUT("segments", false),
   NUM_RESIZES("numResizes", false),
   RESIZE_TIME_MS("resizeTimeMs", false),
+  NUM_GROUP_BY_SPILLS("numGroupBySpills", false),
+  GROUP_BY_SPILLED_BYTES("bytes", false),
   NO_TABLE_ACCESS("tables", true),
   INDEXING_FAILURES("attributeValues", true),
 
@@ -169,7 +175,11 @@ public enum ServerMeter implements AbstractMetrics.Meter {
    * That means that if a stage has 10 workers and all of them reach the limit, this will be increased by 1.
    * But if a single query has 2 different window operators and each one reaches the limit, this will be increased by 2.
    */
-  WINDOW_TIMES_MAX_ROWS_REACHED("times", true);
+  WINDOW_TIMES_MAX_ROWS_REACHED("times", true),
+  /**
+   * The number of bytes of the mmapped index buffers read ahead by the query prefetch hooks.
+   */
+  INDEX_BUFFER_PREFETCHED_BYTES("bytes", true);
 
   private final String _meterName;
   private final String _unit;
@@ -117,6 +117,10 @@ public class QueryOptionsUtils {
     return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.AND_SCAN_REORDERING));
   }
 
+  public static boolean isAdaptiveAndScanReorderingEnabled(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.ADAPTIVE_AND_SCAN_REORDERING));
+  }
+
   public static boolean isSkipUpsert(Map<String, String> queryOptions) {
     return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.SKIP_UPSERT));
   }
@@ -241,6 +245,17 @@ public class QueryOptionsUtils {
     return uncheckedParseInt(QueryOptionKey.GROUP_TRIM_THRESHOLD, groupByTrimThreshold);
   }
 
+  @Nullable
+  public static Integer getGroupBySpillThreshold(Map<String, String> queryOptions) {
+    String groupBySpillThreshold = queryOptions.get(QueryOptionKey.GROUP_BY_SPILL_THRESHOLD);
+    // NOTE: Non-positive value means turning off the spilling
+    return uncheckedParseInt(QueryOptionKey.GROUP_BY_SPILL_THRESHOLD, groupBySpillThreshold);
+  }
+
+  public static boolean isUseOffHeapIndexedTable(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.USE_OFF_HEAP_INDEXED_TABLE));
+  }
+
   public static boolean isNullHandlingEnabled(Map<String, String> queryOptions) {
     return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.ENABLE_NULL_HANDLING));
   }
@@ -274,6 +289,12 @@ public class QueryOptionsUtils {
     return checkedParseIntPositive(QueryOptionKey.NUM_GROUPS_LIMIT, maxNumGroupLimit);
   }
 
+  @Nullable
+  public static Integer getVectorNprobe(Map<String, String> queryOptions) {
+    String vectorNprobe = queryOptions.get(QueryOptionKey.VECTOR_NPROBE);
+    return checkedParseIntPositive(QueryOptionKey.VECTOR_NPROBE, vectorNprobe);
+  }
+
   @Nullable
   public static Integer getMaxInitialResultHolderCapacity(Map<String, String> queryOptions) {
     String maxInitialResultHolderCapacity = queryOptions.get(QueryOptionKey.MAX_INITIAL_RESULT_HOLDER_CAPACITY);
@@ -312,6 +333,19 @@ public class QueryOptionsUtils {
     return joinOverflowModeStr != null ? JoinOverFlowMode.valueOf(joinOverflowModeStr) : null;
   }
 
+  @Nullable
+  public static Integer getJoinSpillThreshold(Map<String, String> queryOptions) {
+    String joinSpillThreshold = queryOptions.get(QueryOptionKey.JOIN_SPILL_THRESHOLD);
+    // NOTE: Non-positive value means turning off the spilling
+    return uncheckedParseInt(QueryOptionKey.JOIN_SPILL_THRESHOLD, joinSpillThreshold);
+  }
+
+  @Nullable
+  public static Integer getDynamicFilterMaxInListSize(Map<String, String> queryOptions) {
+    String maxInListSize = queryOptions.get(QueryOptionKey.DYNAMIC_FILTER_MAX_IN_LIST_SIZE);
+    return checkedParseIntNonNegative(QueryOptionKey.DYNAMIC_FILTER_MAX_IN_LIST_SIZE, maxInListSize);
+  }
+
   @Nullable
   public static Integer getMaxRowsInWindow(Map<String, String> queryOptions) {
     String maxRowsInWindow = queryOptions.get(QueryOptionKey.MAX_ROWS_IN_WINDOW);
@@ -332,6 +366,10 @@ public class QueryOptionsUtils {
     return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.IS_SECONDARY_WORKLOAD));
   }
 
+  public static boolean isUseResultCache(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.USE_RESULT_CACHE));
+  }
+
   @Nullable
   private static Integer uncheckedParseInt(String optionName, @Nullable String optionValue) {
     if (optionValue == null) {
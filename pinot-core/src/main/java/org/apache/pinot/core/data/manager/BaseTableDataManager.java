@@ -60,6 +60,7 @@ import org.apache.pinot.common.utils.TarCompressionUtils;
 import org.apache.pinot.common.utils.config.TierConfigUtils;
 import org.apache.pinot.common.utils.fetcher.SegmentFetcherFactory;
 import org.apache.pinot.core.data.manager.offline.ImmutableSegmentDataManager;
+import org.apache.pinot.core.query.executor.SegmentResultsCache;
 import org.apache.pinot.core.util.PeerServerSegmentFinder;
 import org.apache.pinot.segment.local.data.manager.SegmentDataManager;
 import org.apache.pinot.segment.local.data.manager.StaleSegment;
@@ -726,6 +727,9 @@ public abstract class BaseTableDataManager implements TableDataManager {
       oldSegmentDataManager = _segmentDataManagerMap.put(segmentName, segmentDataManager);
     }
     _recentlyDeletedSegments.invalidate(segmentName);
+    if (oldSegmentDataManager != null) {
+      invalidateSegmentResultsCache(segmentName);
+    }
     return oldSegmentDataManager;
   }
 
@@ -739,11 +743,23 @@ public abstract class BaseTableDataManager implements TableDataManager {
   @Nullable
   protected SegmentDataManager unregisterSegment(String segmentName) {
     _recentlyDeletedSegments.put(segmentName, segmentName);
+    invalidateSegmentResultsCache(segmentName);
     synchronized (_segmentDataManagerMap) {
       return _segmentDataManagerMap.remove(segmentName);
     }
   }
 
+  /**
+   * Releases the cached segment-level results for a segment that is replaced or offloaded. The cache key contains the
+   * segment CRC so stale results are never served, but the off-heap memory should be released eagerly.
+   */
+  private void invalidateSegmentResultsCache(String segmentName) {
+    SegmentResultsCache segmentResultsCache = SegmentResultsCache.get();
+    if (segmentResultsCache != null) {
+      segmentResultsCache.invalidateSegment(_tableNameWithType, segmentName);
+    }
+  }
+
   /**
    * Downloads an immutable segment into the index directory.
    * Segment can be downloaded from deep store or from peer servers. Downloaded segment might be compressed or
@@ -1334,7 +1350,7 @@ public abstract class BaseTableDataManager implements TableDataManager {
     return new StaleSegment(segmentName, false, null);
   }
 
-  private SegmentDirectory initSegmentDirectory(String segmentName, String segmentCrc,
+  protected SegmentDirectory initSegmentDirectory(String segmentName, String segmentCrc,
       IndexLoadingConfig indexLoadingConfig)
       throws Exception {
     SegmentDirectoryLoaderContext loaderContext =
@@ -1364,7 +1380,7 @@ public abstract class BaseTableDataManager implements TableDataManager {
     }
   }
 
-  private static void closeSegmentDirectoryQuietly(SegmentDirectory segmentDirectory) {
+  protected static void closeSegmentDirectoryQuietly(SegmentDirectory segmentDirectory) {
     if (segmentDirectory != null) {
       try {
         segmentDirectory.close();
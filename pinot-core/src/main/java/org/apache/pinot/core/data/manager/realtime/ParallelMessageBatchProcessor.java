@@ -0,0 +1,267 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.manager.realtime;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.segment.creator.TransformPipeline;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.StreamDataDecoder;
+import org.apache.pinot.spi.stream.StreamDataDecoderResult;
+
+
+/**
+ * Decodes and transforms the messages of a {@link MessageBatch} in parallel on a bounded thread pool, so that the
+ * consumer thread only needs to index the transformed rows. The thread pool is shared by the consuming segments of the
+ * table and owned by the {@link RealtimeTableDataManager}.
+ *
+ * <p>The batch is split into contiguous slices, one per thread. The slices are processed in parallel, and the
+ * processed messages are returned in offset order: the consumer thread can index the messages of the first slice
+ * while the following slices are still being processed.
+ *
+ * <p>Decoders and transform pipelines are not thread-safe, so each thread works with its own decoder and transform
+ * pipeline. The decoder must not reuse the decoded row across messages because the rows are buffered before being
+ * transformed and indexed.
+ */
+public class ParallelMessageBatchProcessor {
+  // Do not split the batch into slices smaller than this to amortize the task scheduling overhead
+  static final int MIN_MESSAGES_PER_SLICE = 100;
+  // Max number of messages transformed together as a batch
+  static final int MAX_MESSAGES_PER_TRANSFORM_BATCH = 100;
+
+  private final int _numThreads;
+  private final ExecutorService _executorService;
+  private final BlockingQueue<MessageProcessor> _messageProcessors;
+  private volatile boolean _shutDown;
+
+  /**
+   * @param numThreads Max number of slices of a batch processed in parallel
+   * @param executorService Thread pool to process the slices, which is not shut down with this processor
+   */
+  public ParallelMessageBatchProcessor(int numThreads, ExecutorService executorService,
+      Supplier<StreamDataDecoder> decoderSupplier, Supplier<TransformPipeline> transformPipelineSupplier) {
+    Preconditions.checkArgument(numThreads > 0, "Number of threads must be positive, got: %s", numThreads);
+    _numThreads = numThreads;
+    _executorService = executorService;
+    _messageProcessors = new ArrayBlockingQueue<>(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      _messageProcessors.add(new MessageProcessor(decoderSupplier.get(), transformPipelineSupplier.get()));
+    }
+  }
+
+  /**
+   * Submits the messages of the given batch for processing, or returns {@code null} when the batch is too small to be
+   * processed in parallel, in which case the messages should be processed by the caller thread.
+   */
+  @Nullable
+  public ProcessedMessageBatch submit(MessageBatch messageBatch) {
+    int numMessages = messageBatch.getMessageCount();
+    int numSlices = Math.min(_numThreads, numMessages / MIN_MESSAGES_PER_SLICE);
+    if (numSlices <= 1) {
+      return null;
+    }
+    int sliceSize = (numMessages + numSlices - 1) / numSlices;
+    ProcessedMessageBatch processedMessageBatch = new ProcessedMessageBatch(numSlices, sliceSize);
+    for (int startIndex = 0; startIndex < numMessages; startIndex += sliceSize) {
+      int from = startIndex;
+      int to = Math.min(startIndex + sliceSize, numMessages);
+      processedMessageBatch._slices.add(
+          _executorService.submit(() -> processSlice(messageBatch, from, to, processedMessageBatch)));
+    }
+    return processedMessageBatch;
+  }
+
+  private ProcessedMessage[] processSlice(MessageBatch messageBatch, int from, int to,
+      ProcessedMessageBatch processedMessageBatch)
+      throws InterruptedException {
+    // The slices of a cancelled batch might still hold the message processors, in which case this blocks until they
+    // stop at the next message
+    MessageProcessor messageProcessor = _messageProcessors.take();
+    try {
+      ProcessedMessage[] processedMessages = new ProcessedMessage[to - from];
+      for (int i = from; i < to; i += MAX_MESSAGES_PER_TRANSFORM_BATCH) {
+        // Stop processing the remaining messages of a running slice when the batch is cancelled, as the thread pool is
+        // shared with the other consuming segments of the table
+        if (processedMessageBatch._cancelled || _shutDown) {
+          break;
+        }
+        int end = Math.min(i + MAX_MESSAGES_PER_TRANSFORM_BATCH, to);
+        System.arraycopy(messageProcessor.process(messageBatch, i, end), 0, processedMessages, i - from, end - i);
+      }
+      return processedMessages;
+    } finally {
+      _messageProcessors.add(messageProcessor);
+    }
+  }
+
+  /**
+   * Stops processing the submitted batches. The batches should not be read after this call.
+   */
+  public void shutDown() {
+    _shutDown = true;
+  }
+
+  /**
+   * Handle to the messages of a batch being processed in parallel.
+   */
+  public static class ProcessedMessageBatch {
+    private final List<Future<ProcessedMessage[]>> _slices;
+    private final int _sliceSize;
+    private volatile boolean _cancelled;
+
+    private ProcessedMessageBatch(int numSlices, int sliceSize) {
+      _slices = new ArrayList<>(numSlices);
+      _sliceSize = sliceSize;
+    }
+
+    /**
+     * Returns the processed message at the given index of the batch, waiting for its slice to be processed if needed.
+     */
+    public ProcessedMessage getProcessedMessage(int index) {
+      ProcessedMessage[] slice;
+      try {
+        slice = _slices.get(index / _sliceSize).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for the messages to be decoded and transformed", e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Caught exception while decoding and transforming the messages", e.getCause());
+      }
+      return slice[index % _sliceSize];
+    }
+
+    /**
+     * Cancels the processing of the remaining messages, e.g. when the consumer stops before the end of the batch. The
+     * slices not started yet are skipped, and the running slices stop at the next transform batch. The batch should not
+     * be read after this call.
+     */
+    public void cancel() {
+      _cancelled = true;
+      for (Future<ProcessedMessage[]> slice : _slices) {
+        slice.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Result of decoding and transforming a message. The transform result is only set when the message is decoded
+   * successfully, and the transform exception is only set when the transform fails.
+   */
+  public static class ProcessedMessage {
+    private final StreamDataDecoderResult _decodedRow;
+    private final TransformPipeline.Result _transformResult;
+    private final Exception _transformException;
+
+    ProcessedMessage(StreamDataDecoderResult decodedRow, @Nullable TransformPipeline.Result transformResult,
+        @Nullable Exception transformException) {
+      _decodedRow = decodedRow;
+      _transformResult = transformResult;
+      _transformException = transformException;
+    }
+
+    public StreamDataDecoderResult getDecodedRow() {
+      return _decodedRow;
+    }
+
+    @Nullable
+    public TransformPipeline.Result getTransformResult() {
+      return _transformResult;
+    }
+
+    @Nullable
+    public Exception getTransformException() {
+      return _transformException;
+    }
+  }
+
+  /**
+   * Decodes and transforms the messages with a decoder and a transform pipeline, which is not thread-safe.
+   */
+  static class MessageProcessor {
+    final StreamDataDecoder _decoder;
+    final TransformPipeline _transformPipeline;
+
+    MessageProcessor(StreamDataDecoder decoder, TransformPipeline transformPipeline) {
+      _decoder = decoder;
+      _transformPipeline = transformPipeline;
+    }
+
+    /**
+     * Decodes the messages within the given range, and transforms the decoded rows together as a batch. When the batch
+     * cannot be transformed together (e.g. some rows fail the transformation or are unnested into multiple rows), the
+     * messages are decoded again and processed one by one, so that a failure only abandons the rows of its own message.
+     */
+    ProcessedMessage[] process(MessageBatch messageBatch, int from, int to) {
+      int numMessages = to - from;
+      ProcessedMessage[] processedMessages = new ProcessedMessage[numMessages];
+      StreamDataDecoderResult[] decodedRows = new StreamDataDecoderResult[numMessages];
+      List<GenericRow> rows = new ArrayList<>(numMessages);
+      for (int i = 0; i < numMessages; i++) {
+        StreamDataDecoderResult decodedRow = _decoder.decode(messageBatch.getStreamMessage(from + i));
+        if (decodedRow.getException() == null) {
+          decodedRows[i] = decodedRow;
+          rows.add(decodedRow.getResult());
+        } else {
+          processedMessages[i] = new ProcessedMessage(decodedRow, null, null);
+        }
+      }
+      TransformPipeline.Result[] transformResults = new TransformPipeline.Result[rows.size()];
+      boolean transformed;
+      try {
+        transformed = _transformPipeline.processRows(rows, transformResults);
+      } catch (Exception e) {
+        transformed = false;
+      }
+      int resultIndex = 0;
+      for (int i = 0; i < numMessages; i++) {
+        if (processedMessages[i] == null) {
+          processedMessages[i] =
+              transformed ? new ProcessedMessage(decodedRows[i], transformResults[resultIndex++], null)
+                  : process(messageBatch, from + i);
+        }
+      }
+      return processedMessages;
+    }
+
+    ProcessedMessage process(MessageBatch messageBatch, int index) {
+      StreamDataDecoderResult decodedRow = _decoder.decode(messageBatch.getStreamMessage(index));
+      if (decodedRow.getException() != null) {
+        return new ProcessedMessage(decodedRow, null, null);
+      }
+      TransformPipeline.Result transformResult = new TransformPipeline.Result();
+      try {
+        // The rows unnested from the message are transformed as a batch, and are abandoned together on failure
+        _transformPipeline.processRows(Collections.singletonList(decodedRow.getResult()), transformResult);
+        return new ProcessedMessage(decodedRow, transformResult, null);
+      } catch (Exception e) {
+        return new ProcessedMessage(decodedRow, transformResult, e);
+      }
+    }
+  }
+}
@@ -19,19 +19,32 @@
 package org.apache.pinot.core.data.manager.realtime;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.RateLimiter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.time.Clock;
 import java.time.Instant;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.metrics.ServerGauge;
 import org.apache.pinot.common.metrics.ServerMeter;
 import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.core.query.scheduler.QueryLatencyTracker;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 import org.apache.pinot.spi.env.PinotConfiguration;
 import org.apache.pinot.spi.stream.StreamConfig;
 import org.apache.pinot.spi.stream.StreamConsumerFactory;
@@ -46,7 +59,9 @@ import org.slf4j.LoggerFactory;
  * This class is responsible for creating realtime consumption rate limiters.
  * It contains one rate limiter for the entire server and multiple table partition level rate limiters.
  * Server rate limiter is used to throttle the overall consumption rate of the server and configured via
- * cluster or server config.
+ * cluster or server config. When adaptive rate limit is enabled, the configured server rate limit is the max rate, and
+ * the effective rate is lowered when the server is under resource pressure (query latency, heap usage or direct memory
+ * usage above the thresholds) so that ingestion yields to queries, and raised back when the pressure is gone.
  * For table partition level rate limiter, the rate limit value specified in StreamConfig of table config, is for the
  * entire topic. The effective rate limit for each partition is simply the specified rate limit divided by the
  * partition count.
@@ -88,9 +103,14 @@ public class RealtimeConsumptionRateManager {
         serverConfig.getProperty(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT,
             CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT);
     if (serverRateLimit > 0) {
-      LOGGER.info("Set up ConsumptionRateLimiter with rate limit: {}", serverRateLimit);
       MetricEmitter metricEmitter = new MetricEmitter(serverMetrics, SERVER_CONSUMPTION_RATE_METRIC_KEY_NAME);
-      _serverRateLimiter = new RateLimiterImpl(serverRateLimit, metricEmitter);
+      if (serverConfig.getProperty(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ENABLED,
+          CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ENABLED)) {
+        _serverRateLimiter = createAdaptiveRateLimiter(serverConfig, serverRateLimit, serverMetrics, metricEmitter);
+      } else {
+        LOGGER.info("Set up ConsumptionRateLimiter with rate limit: {}", serverRateLimit);
+        _serverRateLimiter = new RateLimiterImpl(serverRateLimit, metricEmitter);
+      }
     } else {
       LOGGER.info("ConsumptionRateLimiter is disabled");
       _serverRateLimiter = NOOP_RATE_LIMITER;
@@ -98,6 +118,71 @@ public class RealtimeConsumptionRateManager {
     return _serverRateLimiter;
   }
 
+  private static AdaptiveRateLimiterImpl createAdaptiveRateLimiter(PinotConfiguration serverConfig, double maxRate,
+      ServerMetrics serverMetrics, MetricEmitter metricEmitter) {
+    double minRate = maxRate * serverConfig.getProperty(
+        CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_MIN_RATIO,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_MIN_RATIO);
+    double decreaseFactor = serverConfig.getProperty(
+        CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_DECREASE_FACTOR,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_DECREASE_FACTOR);
+    double increaseStep = maxRate * serverConfig.getProperty(
+        CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_INCREASE_RATIO,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_INCREASE_RATIO);
+    long adjustmentIntervalMs = serverConfig.getProperty(
+        CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ADJUSTMENT_INTERVAL_MS,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ADJUSTMENT_INTERVAL_MS);
+    long queryLatencyThresholdMs = serverConfig.getProperty(
+        CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_QUERY_LATENCY_THRESHOLD_MS,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_QUERY_LATENCY_THRESHOLD_MS);
+    double heapUsageRatioThreshold = serverConfig.getProperty(
+        CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_HEAP_USAGE_RATIO_THRESHOLD,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_HEAP_USAGE_RATIO_THRESHOLD);
+    long directMemoryThresholdBytes = serverConfig.getProperty(
+        CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_DIRECT_MEMORY_THRESHOLD_BYTES,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_DIRECT_MEMORY_THRESHOLD_BYTES);
+    Preconditions.checkState(minRate > 0 && minRate <= maxRate,
+        "Invalid min rate: %s for adaptive consumption rate limit with max rate: %s", minRate, maxRate);
+    Preconditions.checkState(decreaseFactor > 0 && decreaseFactor < 1,
+        "Invalid decrease factor: %s for adaptive consumption rate limit", decreaseFactor);
+    Preconditions.checkState(increaseStep > 0 && adjustmentIntervalMs > 0,
+        "Invalid increase ratio or adjustment interval for adaptive consumption rate limit");
+    LOGGER.info("Set up adaptive ConsumptionRateLimiter with max rate: {}, min rate: {}, decrease factor: {}, "
+            + "increase step: {}, adjustment interval: {}ms, query latency threshold: {}ms, heap usage ratio "
+            + "threshold: {}, direct memory threshold: {} bytes", maxRate, minRate, decreaseFactor, increaseStep,
+        adjustmentIntervalMs, queryLatencyThresholdMs, heapUsageRatioThreshold, directMemoryThresholdBytes);
+    ResourcePressureSampler resourcePressureSampler =
+        new ResourcePressureSampler(queryLatencyThresholdMs, QueryLatencyTracker.getInstance(),
+            heapUsageRatioThreshold, RealtimeConsumptionRateManager::getHeapUsageRatio, directMemoryThresholdBytes,
+            PinotDataBuffer::getDirectBufferUsage);
+    return new AdaptiveRateLimiterImpl(maxRate, minRate, decreaseFactor, increaseStep, adjustmentIntervalMs,
+        resourcePressureSampler, serverMetrics, metricEmitter);
+  }
+
+  /**
+   * Returns the ratio of the old generation occupied after the last GC, which reflects the live data rather than the
+   * garbage not collected yet (the instantaneous heap usage routinely goes above any threshold between the GCs). The
+   * old generation is the heap memory pool supporting usage threshold (the young generation pools don't). Returns 0
+   * when it cannot be determined, e.g. before the first GC of the old generation.
+   */
+  private static double getHeapUsageRatio() {
+    for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (memoryPoolMXBean.getType() != MemoryType.HEAP || !memoryPoolMXBean.isUsageThresholdSupported()) {
+        continue;
+      }
+      MemoryUsage collectionUsage = memoryPoolMXBean.getCollectionUsage();
+      if (collectionUsage == null) {
+        return 0;
+      }
+      long maxSize = collectionUsage.getMax();
+      if (maxSize <= 0) {
+        maxSize = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+      }
+      return maxSize > 0 ? (double) collectionUsage.getUsed() / maxSize : 0;
+    }
+    return 0;
+  }
+
   public ConsumptionRateLimiter getServerRateLimiter() {
     return _serverRateLimiter;
   }
@@ -193,6 +278,180 @@ public class RealtimeConsumptionRateManager {
     }
   }
 
+  /**
+   * Server rate limiter whose rate is adjusted periodically based on the resource pressure of the server, in an
+   * additive increase / multiplicative decrease fashion:
+   * <ul>
+   *   <li>Under pressure, the rate is multiplied by the decrease factor, starting from the actual consumption rate if
+   *   it is lower than the rate limit so that the decrease takes effect immediately, but no lower than the min rate.
+   *   </li>
+   *   <li>Without pressure, the rate is increased by the increase step, up to the max rate.</li>
+   * </ul>
+   * The adjustment is done by the first consuming thread calling {@link #throttle(int)} after each adjustment interval,
+   * so no extra thread is needed.
+   */
+  @VisibleForTesting
+  static class AdaptiveRateLimiterImpl implements ConsumptionRateLimiter {
+    private final double _maxRate;
+    private final double _minRate;
+    private final double _decreaseFactor;
+    private final double _increaseStep;
+    private final long _adjustmentIntervalMs;
+    private final IntSupplier _resourcePressureSupplier;
+    private final ServerMetrics _serverMetrics;
+    private final MetricEmitter _metricEmitter;
+    private final RateLimiter _rateLimiter;
+    private final LongAdder _numMsgsSinceLastAdjustment = new LongAdder();
+    private final AtomicLong _lastAdjustmentTimeMs;
+
+    private volatile double _rate;
+    private volatile int _resourcePressure;
+
+    @VisibleForTesting
+    AdaptiveRateLimiterImpl(double maxRate, double minRate, double decreaseFactor, double increaseStep,
+        long adjustmentIntervalMs, IntSupplier resourcePressureSupplier, @Nullable ServerMetrics serverMetrics,
+        MetricEmitter metricEmitter) {
+      _maxRate = maxRate;
+      _minRate = minRate;
+      _decreaseFactor = decreaseFactor;
+      _increaseStep = increaseStep;
+      _adjustmentIntervalMs = adjustmentIntervalMs;
+      _resourcePressureSupplier = resourcePressureSupplier;
+      _serverMetrics = serverMetrics;
+      _metricEmitter = metricEmitter;
+      _rateLimiter = RateLimiter.create(maxRate);
+      _lastAdjustmentTimeMs = new AtomicLong(System.currentTimeMillis());
+      _rate = maxRate;
+      emitAdaptiveMetrics();
+    }
+
+    @Override
+    public void throttle(int numMsgs) {
+      _numMsgsSinceLastAdjustment.add(numMsgs);
+      if (InstanceHolder.INSTANCE._isThrottlingAllowed) {
+        long nowMs = System.currentTimeMillis();
+        long lastAdjustmentTimeMs = _lastAdjustmentTimeMs.get();
+        long elapsedMs = nowMs - lastAdjustmentTimeMs;
+        if (elapsedMs >= _adjustmentIntervalMs && _lastAdjustmentTimeMs.compareAndSet(lastAdjustmentTimeMs, nowMs)) {
+          adjustRate(elapsedMs);
+        }
+        _metricEmitter.emitMetric(numMsgs, _rate, Instant.ofEpochMilli(nowMs));
+        if (numMsgs > 0) {
+          _rateLimiter.acquire(numMsgs);
+        }
+      }
+    }
+
+    /**
+     * Adjusts the rate based on the current resource pressure. Should only be called by one thread at a time.
+     */
+    @VisibleForTesting
+    void adjustRate(long elapsedMs) {
+      double actualRate = _numMsgsSinceLastAdjustment.sumThenReset() * 1000.0 / Math.max(elapsedMs, 1);
+      int resourcePressure = _resourcePressureSupplier.getAsInt();
+      double rate = _rate;
+      double newRate;
+      if (resourcePressure != 0) {
+        newRate = Math.max(Math.min(rate, actualRate) * _decreaseFactor, _minRate);
+      } else {
+        newRate = Math.min(rate + _increaseStep, _maxRate);
+      }
+      if (newRate != rate) {
+        LOGGER.info("Adjusting server consumption rate limit from: {} to: {} with resource pressure: {}, "
+            + "actual rate: {}", rate, newRate, resourcePressure, actualRate);
+        _rateLimiter.setRate(newRate);
+        _rate = newRate;
+      }
+      _resourcePressure = resourcePressure;
+      emitAdaptiveMetrics();
+    }
+
+    private void emitAdaptiveMetrics() {
+      if (_serverMetrics != null) {
+        _serverMetrics.setValueOfGlobalGauge(ServerGauge.ADAPTIVE_CONSUMPTION_RATE_LIMIT, (long) _rate);
+        _serverMetrics.setValueOfGlobalGauge(ServerGauge.ADAPTIVE_CONSUMPTION_RESOURCE_PRESSURE, _resourcePressure);
+      }
+    }
+
+    @VisibleForTesting
+    double getRate() {
+      return _rate;
+    }
+
+    @VisibleForTesting
+    double getMaxRate() {
+      return _maxRate;
+    }
+
+    @VisibleForTesting
+    double getMinRate() {
+      return _minRate;
+    }
+
+    @VisibleForTesting
+    int getResourcePressure() {
+      return _resourcePressure;
+    }
+  }
+
+  /**
+   * Samples the resource pressure signals of the server, and returns them as a bitmask of the signals above their
+   * thresholds (0 means no pressure). A signal with non-positive threshold is disabled. The query latency signal is the
+   * average query latency since the previous sample, so this class should be sampled by one thread at a time.
+   */
+  @VisibleForTesting
+  static class ResourcePressureSampler implements IntSupplier {
+    static final int QUERY_LATENCY_PRESSURE = 1;
+    static final int HEAP_USAGE_PRESSURE = 1 << 1;
+    static final int DIRECT_MEMORY_PRESSURE = 1 << 2;
+
+    private final long _queryLatencyThresholdMs;
+    private final QueryLatencyTracker _queryLatencyTracker;
+    private final double _heapUsageRatioThreshold;
+    private final DoubleSupplier _heapUsageRatioSupplier;
+    private final long _directMemoryThresholdBytes;
+    private final LongSupplier _directMemoryUsageSupplier;
+
+    private long _lastNumQueries;
+    private long _lastTotalQueryTimeMs;
+
+    ResourcePressureSampler(long queryLatencyThresholdMs, QueryLatencyTracker queryLatencyTracker,
+        double heapUsageRatioThreshold, DoubleSupplier heapUsageRatioSupplier, long directMemoryThresholdBytes,
+        LongSupplier directMemoryUsageSupplier) {
+      _queryLatencyThresholdMs = queryLatencyThresholdMs;
+      _queryLatencyTracker = queryLatencyTracker;
+      _heapUsageRatioThreshold = heapUsageRatioThreshold;
+      _heapUsageRatioSupplier = heapUsageRatioSupplier;
+      _directMemoryThresholdBytes = directMemoryThresholdBytes;
+      _directMemoryUsageSupplier = directMemoryUsageSupplier;
+      _lastNumQueries = queryLatencyTracker.getNumQueries();
+      _lastTotalQueryTimeMs = queryLatencyTracker.getTotalQueryTimeMs();
+    }
+
+    @Override
+    public int getAsInt() {
+      int resourcePressure = 0;
+      if (_queryLatencyThresholdMs > 0) {
+        long numQueries = _queryLatencyTracker.getNumQueries();
+        long totalQueryTimeMs = _queryLatencyTracker.getTotalQueryTimeMs();
+        long numNewQueries = numQueries - _lastNumQueries;
+        long newQueryTimeMs = totalQueryTimeMs - _lastTotalQueryTimeMs;
+        if (numNewQueries > 0 && newQueryTimeMs / numNewQueries > _queryLatencyThresholdMs) {
+          resourcePressure |= QUERY_LATENCY_PRESSURE;
+        }
+        _lastNumQueries = numQueries;
+        _lastTotalQueryTimeMs = totalQueryTimeMs;
+      }
+      if (_heapUsageRatioThreshold > 0 && _heapUsageRatioSupplier.getAsDouble() > _heapUsageRatioThreshold) {
+        resourcePressure |= HEAP_USAGE_PRESSURE;
+      }
+      if (_directMemoryThresholdBytes > 0 && _directMemoryUsageSupplier.getAsLong() > _directMemoryThresholdBytes) {
+        resourcePressure |= DIRECT_MEMORY_PRESSURE;
+      }
+      return resourcePressure;
+    }
+  }
+
   @VisibleForTesting
   @FunctionalInterface
   interface PartitionCountFetcher {
@@ -63,6 +63,7 @@ import org.apache.pinot.segment.local.segment.creator.TransformPipeline;
 import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
 import org.apache.pinot.segment.local.upsert.PartitionUpsertMetadataManager;
 import org.apache.pinot.segment.local.utils.IngestionUtils;
+import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.MutableSegment;
 import org.apache.pinot.segment.spi.V1Constants;
 import org.apache.pinot.segment.spi.creator.SegmentVersion;
@@ -179,15 +180,24 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     final long _waitTimeMillis;
     final long _buildTimeMillis;
     final long _segmentSizeBytes;
+    // Sealed segment memory mapped from the index dir, which can be swapped in for the consuming segment
+    ImmutableSegment _sealedSegment;
 
     public SegmentBuildDescriptor(@Nullable File segmentTarFile, @Nullable Map<String, File> metadataFileMap,
         StreamPartitionMsgOffset offset, long buildTimeMillis, long waitTimeMillis, long segmentSizeBytes) {
+      this(segmentTarFile, metadataFileMap, offset, buildTimeMillis, waitTimeMillis, segmentSizeBytes, null);
+    }
+
+    public SegmentBuildDescriptor(@Nullable File segmentTarFile, @Nullable Map<String, File> metadataFileMap,
+        StreamPartitionMsgOffset offset, long buildTimeMillis, long waitTimeMillis, long segmentSizeBytes,
+        @Nullable ImmutableSegment sealedSegment) {
       _segmentTarFile = segmentTarFile;
       _metadataFileMap = metadataFileMap;
       _offset = _streamPartitionMsgOffsetFactory.create(offset);
       _buildTimeMillis = buildTimeMillis;
       _waitTimeMillis = waitTimeMillis;
       _segmentSizeBytes = segmentSizeBytes;
+      _sealedSegment = sealedSegment;
     }
 
     public StreamPartitionMsgOffset getOffset() {
@@ -216,10 +226,25 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       return _segmentSizeBytes;
     }
 
+    /**
+     * Returns the memory mapped sealed segment if available, and transfers its ownership to the caller.
+     */
+    @Nullable
+    public synchronized ImmutableSegment takeSealedSegment() {
+      ImmutableSegment sealedSegment = _sealedSegment;
+      _sealedSegment = null;
+      return sealedSegment;
+    }
+
     public void deleteSegmentFile() {
       if (_segmentTarFile != null) {
         FileUtils.deleteQuietly(_segmentTarFile);
       }
+      // Release the sealed segment if it is not swapped in
+      ImmutableSegment sealedSegment = takeSealedSegment();
+      if (sealedSegment != null) {
+        sealedSegment.destroy();
+      }
     }
   }
 
@@ -235,7 +260,6 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
   private final SegmentZKMetadata _segmentZKMetadata;
   private final TableConfig _tableConfig;
   private final RealtimeTableDataManager _realtimeTableDataManager;
-  private final StreamDataDecoder _streamDataDecoder;
   private final int _segmentMaxRowCount;
   private final String _resourceDataDir;
   private final Schema _schema;
@@ -292,7 +316,12 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
   private final int _streamPatitionGroupId;
   private final PartitionGroupConsumptionStatus _partitionGroupConsumptionStatus;
   final String _clientId;
-  private final TransformPipeline _transformPipeline;
+  // Decodes and transforms the messages on the consumer thread when they are not processed in parallel
+  private final ParallelMessageBatchProcessor.MessageProcessor _messageProcessor;
+  // Only set when the messages are decoded and transformed in parallel
+  private final ParallelMessageBatchProcessor _parallelMessageBatchProcessor;
+  // Max number of records indexed together, or 0 when the records are indexed one by one
+  private final int _indexBatchSize;
   private PartitionGroupConsumer _partitionGroupConsumer = null;
   private StreamMetadataProvider _partitionMetadataProvider = null;
   private final File _resourceTmpDir;
@@ -570,8 +599,17 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     int streamMessageCount = 0;
     boolean canTakeMore = true;
 
-    TransformPipeline.Result reusedResult = new TransformPipeline.Result();
     boolean prematureExit = false;
+    // Records buffered to be indexed together, along with the total serialized size and the last message of them
+    List<GenericRow> batchRows = _indexBatchSize > 0 ? new ArrayList<>(_indexBatchSize) : null;
+    long batchSizeInBytes = 0;
+    StreamMessageMetadata batchMetadata = null;
+    StreamPartitionMsgOffset batchOffset = null;
+    ParallelMessageBatchProcessor.ProcessedMessageBatch processedMessageBatch =
+        _parallelMessageBatchProcessor != null ? _parallelMessageBatchProcessor.submit(messageBatch) : null;
+    // Messages decoded and transformed together on the consumer thread, starting from the given index
+    ParallelMessageBatchProcessor.ProcessedMessage[] processedMessages = null;
+    int processedMessagesStartIndex = 0;
 
     for (int index = 0; index < messageCount; index++) {
       prematureExit = _shouldStop || endCriteriaReached();
@@ -603,9 +641,22 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         throw new RuntimeException("Realtime segment full");
       }
 
-      // Decode message
+      // Decode and transform message
       StreamMessage streamMessage = messageBatch.getStreamMessage(index);
-      StreamDataDecoderResult decodedRow = _streamDataDecoder.decode(streamMessage);
+      ParallelMessageBatchProcessor.ProcessedMessage processedMessage;
+      if (processedMessageBatch != null) {
+        processedMessage = processedMessageBatch.getProcessedMessage(index);
+      } else {
+        if (processedMessages == null || index >= processedMessagesStartIndex + processedMessages.length) {
+          processedMessagesStartIndex = index;
+          processedMessages = _messageProcessor.process(messageBatch, index,
+              Math.min(index + ParallelMessageBatchProcessor.MAX_MESSAGES_PER_TRANSFORM_BATCH, messageCount));
+        }
+        processedMessage = processedMessages[index - processedMessagesStartIndex];
+      }
+      StreamDataDecoderResult decodedRow = processedMessage.getDecodedRow();
+      TransformPipeline.Result transformResult = processedMessage.getTransformResult();
+      Exception transformException = processedMessage.getTransformException();
       StreamMessageMetadata metadata = streamMessage.getMetadata();
       StreamPartitionMsgOffset offset = null;
       StreamPartitionMsgOffset nextOffset = null;
@@ -627,36 +678,53 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         _numRowsErrored++;
         _numBytesDropped += rowSizeInBytes;
       } else {
-        try {
-          _transformPipeline.processRow(decodedRow.getResult(), reusedResult);
-        } catch (Exception e) {
+        if (transformException != null) {
           _numRowsErrored++;
           _numBytesDropped += rowSizeInBytes;
           // when exception happens we prefer abandoning the whole batch and not partially indexing some rows
-          reusedResult.getTransformedRows().clear();
+          transformResult.getTransformedRows().clear();
           String errorMessage = "Caught exception while transforming the record at offset: " + offset + " , row: "
               + decodedRow.getResult();
-          _segmentLogger.error(errorMessage, e);
-          _realtimeTableDataManager.addSegmentError(_segmentNameStr, new SegmentErrorInfo(now(), errorMessage, e));
+          _segmentLogger.error(errorMessage, transformException);
+          _realtimeTableDataManager.addSegmentError(_segmentNameStr,
+              new SegmentErrorInfo(now(), errorMessage, transformException));
         }
-        if (reusedResult.getSkippedRowCount() > 0) {
+        if (transformResult.getSkippedRowCount() > 0) {
           realtimeRowsDroppedMeter = _serverMetrics.addMeteredTableValue(_clientId, ServerMeter.REALTIME_ROWS_FILTERED,
-              reusedResult.getSkippedRowCount(), realtimeRowsDroppedMeter);
+              transformResult.getSkippedRowCount(), realtimeRowsDroppedMeter);
           if (_trackFilteredMessageOffsets) {
             _filteredMessageOffsets.add(offset.toString());
           }
         }
-        if (reusedResult.getIncompleteRowCount() > 0) {
+        if (transformResult.getIncompleteRowCount() > 0) {
           realtimeIncompleteRowsConsumedMeter =
               _serverMetrics.addMeteredTableValue(_clientId, ServerMeter.INCOMPLETE_REALTIME_ROWS_CONSUMED,
-                  reusedResult.getIncompleteRowCount(), realtimeIncompleteRowsConsumedMeter);
+                  transformResult.getIncompleteRowCount(), realtimeIncompleteRowsConsumedMeter);
         }
-        if (reusedResult.getSanitizedRowCount() > 0) {
+        if (transformResult.getSanitizedRowCount() > 0) {
           realtimeRowsSanitizedMeter =
               _serverMetrics.addMeteredTableValue(_clientId, ServerMeter.REALTIME_ROWS_SANITIZED,
-                  reusedResult.getSanitizedRowCount(), realtimeRowsSanitizedMeter);
+                  transformResult.getSanitizedRowCount(), realtimeRowsSanitizedMeter);
+        }
+        List<GenericRow> transformedRows = transformResult.getTransformedRows();
+        if (batchRows != null) {
+          for (GenericRow transformedRow : transformedRows) {
+            batchRows.add(transformedRow);
+            batchSizeInBytes += rowSizeInBytes;
+            batchMetadata = metadata;
+            batchOffset = offset;
+            // Cap the batch at the remaining rows of the segment so that the row limit is checked as if the records
+            // were indexed one by one
+            int numDocsIndexed = _realtimeSegment.getNumDocsIndexed();
+            if (batchRows.size() >= Math.max(Math.min(_indexBatchSize, _segmentMaxRowCount - numDocsIndexed), 1)) {
+              canTakeMore = indexBatch(batchRows, batchSizeInBytes, batchMetadata, batchOffset);
+              indexedMessageCount += _realtimeSegment.getNumDocsIndexed() - numDocsIndexed;
+              batchRows.clear();
+              batchSizeInBytes = 0;
+            }
+          }
+          transformedRows = Collections.emptyList();
         }
-        List<GenericRow> transformedRows = reusedResult.getTransformedRows();
         for (GenericRow transformedRow : transformedRows) {
           try {
             canTakeMore = _realtimeSegment.index(transformedRow, metadata);
@@ -687,6 +755,16 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       _numRowsConsumed++;
       streamMessageCount++;
     }
+    // Index the remaining records before returning, because the offsets of their messages are already consumed
+    if (batchRows != null && !batchRows.isEmpty()) {
+      int numDocsIndexed = _realtimeSegment.getNumDocsIndexed();
+      indexBatch(batchRows, batchSizeInBytes, batchMetadata, batchOffset);
+      indexedMessageCount += _realtimeSegment.getNumDocsIndexed() - numDocsIndexed;
+      _numRowsIndexed = _realtimeSegment.getNumDocsIndexed();
+    }
+    if (processedMessageBatch != null && prematureExit) {
+      processedMessageBatch.cancel();
+    }
 
     updateCurrentDocumentCountMetrics();
     if (messageBatch.getUnfilteredMessageCount() > 0) {
@@ -708,6 +786,36 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     return prematureExit;
   }
 
+  /**
+   * Indexes the buffered records together into the consuming segment. The records of the batch are published together,
+   * and are all dropped if the batch fails to be indexed.
+   *
+   * @return Whether the segment can index more records
+   */
+  private boolean indexBatch(List<GenericRow> rows, long sizeInBytes, @Nullable StreamMessageMetadata metadata,
+      @Nullable StreamPartitionMsgOffset offset) {
+    int numRows = rows.size();
+    try {
+      boolean canTakeMore = _realtimeSegment.indexBatch(rows, metadata);
+      if (metadata != null) {
+        _lastRowMetadata = metadata;
+      }
+      _lastConsumedTimestampMs = System.currentTimeMillis();
+      _serverMetrics.addMeteredTableValue(_clientId, ServerMeter.REALTIME_ROWS_CONSUMED, numRows);
+      _serverMetrics.addMeteredGlobalValue(ServerMeter.REALTIME_ROWS_CONSUMED, numRows);
+      _serverMetrics.addMeteredTableValue(_clientId, ServerMeter.REALTIME_BYTES_CONSUMED, sizeInBytes);
+      return canTakeMore;
+    } catch (Exception e) {
+      _numRowsErrored += numRows;
+      _numBytesDropped += sizeInBytes;
+      String errorMessage =
+          "Caught exception while indexing a batch of " + numRows + " records ending at offset: " + offset;
+      _segmentLogger.error(errorMessage, e);
+      _realtimeTableDataManager.addSegmentError(_segmentNameStr, new SegmentErrorInfo(now(), errorMessage, e));
+      return _realtimeSegment.canAddMore();
+    }
+  }
+
   @VisibleForTesting
   boolean canAddMore() {
     return _realtimeSegment.canAddMore();
@@ -1144,11 +1252,13 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         metadataFiles.put(V1Constants.MetadataKeys.METADATA_FILE_NAME, metadataFile);
         metadataFiles.put(V1Constants.SEGMENT_CREATION_META, creationMetaFile);
 
+        // Memory map the sealed segment only after it is tarred, and without modifying the index dir, so that the
+        // committed copy is exactly the built one
         return new SegmentBuildDescriptor(segmentTarFile, metadataFiles, _currentOffset, buildTimeMillis,
-            waitTimeMillis, segmentSizeBytes);
+            waitTimeMillis, segmentSizeBytes, loadSealedSegment(indexDir));
       } else {
         return new SegmentBuildDescriptor(null, null, _currentOffset, buildTimeMillis, waitTimeMillis,
-            segmentSizeBytes);
+            segmentSizeBytes, loadSealedSegment(indexDir));
       }
     } finally {
       if (_segBuildSemaphore != null) {
@@ -1160,6 +1270,22 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     }
   }
 
+  /**
+   * Memory maps the sealed segment right after it is built, so that it can be swapped in for the consuming segment
+   * without a second load pass once the local build is the committed one. Returns {@code null} if the segment cannot be
+   * loaded as is, in which case it is loaded from the index dir when swapped in.
+   */
+  @Nullable
+  private ImmutableSegment loadSealedSegment(File indexDir) {
+    try {
+      return _realtimeTableDataManager.loadSealedSegment(_segmentNameStr);
+    } catch (Exception e) {
+      _segmentLogger.warn("Caught exception while loading sealed segment from index directory: {}, will load it again "
+          + "when replacing the consuming segment", indexDir, e);
+      return null;
+    }
+  }
+
   @VisibleForTesting
   boolean commitSegment(String controllerVipUrl)
       throws Exception {
@@ -1172,7 +1298,7 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
           SegmentCompletionProtocol.ControllerResponseStatus.COMMIT_SUCCESS);
       return false;
     }
-    _realtimeTableDataManager.replaceConsumingSegment(_segmentNameStr);
+    replaceConsumingSegment(_segmentBuildDescriptor);
     removeSegmentFile();
     return true;
   }
@@ -1206,10 +1332,24 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     if (descriptor == null) {
       return false;
     }
-    _realtimeTableDataManager.replaceConsumingSegment(_segmentNameStr);
+    replaceConsumingSegment(descriptor);
     return true;
   }
 
+  /**
+   * Swaps in the sealed segment memory mapped when building the segment, or loads it from the index dir if not
+   * available.
+   */
+  private void replaceConsumingSegment(SegmentBuildDescriptor descriptor)
+      throws Exception {
+    ImmutableSegment sealedSegment = descriptor.takeSealedSegment();
+    if (sealedSegment != null) {
+      _realtimeTableDataManager.replaceConsumingSegment(sealedSegment);
+    } else {
+      _realtimeTableDataManager.replaceConsumingSegment(_segmentNameStr);
+    }
+  }
+
   private void closeStreamConsumers() {
     closePartitionGroupConsumer();
     closePartitionMetadataProvider();
@@ -1437,6 +1577,9 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       _segmentLogger.error("Caught exception while stopping the consumer thread", e);
     }
     closeStreamConsumers();
+    if (_parallelMessageBatchProcessor != null) {
+      _parallelMessageBatchProcessor.shutDown();
+    }
     cleanupMetrics();
     _realtimeSegment.offload();
   }
@@ -1544,10 +1687,23 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         .createRateLimiter(_streamConfig, _tableNameWithType, _serverMetrics, _clientId);
     _serverRateLimiter = RealtimeConsumptionRateManager.getInstance().getServerRateLimiter();
 
+    int numDecodeAndTransformThreads = 0;
+    int indexBatchSize = 0;
     if (tableConfig.getIngestionConfig() != null
         && tableConfig.getIngestionConfig().getStreamIngestionConfig() != null) {
       _trackFilteredMessageOffsets =
           tableConfig.getIngestionConfig().getStreamIngestionConfig().isTrackFilteredMessageOffsets();
+      numDecodeAndTransformThreads =
+          tableConfig.getIngestionConfig().getStreamIngestionConfig().getNumDecodeAndTransformThreads();
+      indexBatchSize = tableConfig.getIngestionConfig().getStreamIngestionConfig().getIndexBatchSize();
+    }
+    // Upsert, dedup and metrics aggregation index each record based on the previous ones, so the records are always
+    // indexed one by one
+    if (indexBatchSize > 1 && !tableConfig.isUpsertEnabled() && !tableConfig.isDedupEnabled()
+        && !indexingConfig.isAggregateMetrics() && IngestionConfigUtils.getAggregationConfigs(tableConfig) == null) {
+      _indexBatchSize = indexBatchSize;
+    } else {
+      _indexBatchSize = 0;
     }
 
     // Read the max number of rows
@@ -1595,7 +1751,8 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       retryPolicy.attempt(() -> {
         try {
           StreamMessageDecoder streamMessageDecoder = createMessageDecoder(fieldsToRead);
-          localStreamDataDecoder.set(new StreamDataDecoderImpl(streamMessageDecoder));
+          // The decoded rows are buffered before being transformed and indexed in batches, so they cannot be reused
+          localStreamDataDecoder.set(new StreamDataDecoderImpl(streamMessageDecoder, false));
           return true;
         } catch (Exception e) {
           _segmentLogger.warn("Failed to initialize the StreamMessageDecoder: ", e);
@@ -1607,16 +1764,34 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
           new SegmentErrorInfo(now(), "Failed to initialize the StreamMessageDecoder", e));
       throw e;
     }
-    _streamDataDecoder = localStreamDataDecoder.get();
-
     try {
-      _transformPipeline = new TransformPipeline(tableConfig, schema);
+      _messageProcessor = new ParallelMessageBatchProcessor.MessageProcessor(localStreamDataDecoder.get(),
+          new TransformPipeline(tableConfig, schema));
     } catch (Exception e) {
       _realtimeTableDataManager.addSegmentError(_segmentNameStr,
           new SegmentErrorInfo(now(), "Failed to initialize the TransformPipeline", e));
       throw e;
     }
 
+    if (numDecodeAndTransformThreads > 0) {
+      // Each thread decodes and transforms the messages with its own decoder and transform pipeline. The decoded rows
+      // are buffered before being indexed, so they cannot be reused.
+      try {
+        _parallelMessageBatchProcessor =
+            new ParallelMessageBatchProcessor(numDecodeAndTransformThreads,
+                _realtimeTableDataManager.getDecodeAndTransformExecutor(numDecodeAndTransformThreads),
+                () -> new StreamDataDecoderImpl(createMessageDecoder(fieldsToRead), false),
+                () -> new TransformPipeline(tableConfig, schema));
+      } catch (Exception e) {
+        _realtimeTableDataManager.addSegmentError(_segmentNameStr,
+            new SegmentErrorInfo(now(), "Failed to initialize the ParallelMessageBatchProcessor", e));
+        throw e;
+      }
+      _segmentLogger.info("Decoding and transforming stream messages with {} threads", numDecodeAndTransformThreads);
+    } else {
+      _parallelMessageBatchProcessor = null;
+    }
+
     // Acquire semaphore to create stream consumers
     try {
       _partitionGroupConsumerSemaphore.acquire();
@@ -1624,6 +1799,9 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     } catch (InterruptedException e) {
       String errorMsg = "InterruptedException when acquiring the partitionConsumerSemaphore";
       _segmentLogger.error(errorMsg);
+      if (_parallelMessageBatchProcessor != null) {
+        _parallelMessageBatchProcessor.shutDown();
+      }
       throw new RuntimeException(errorMsg + " for segment: " + _segmentNameStr);
     }
 
@@ -1654,6 +1832,9 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       // ERROR -> OFFLINE -> CONSUMING via Helix Admin fails because the semaphore is acquired, but not released.
       // Hence releasing the semaphore here to unblock reset operation via Helix Admin.
       _partitionGroupConsumerSemaphore.release();
+      if (_parallelMessageBatchProcessor != null) {
+        _parallelMessageBatchProcessor.shutDown();
+      }
       _realtimeTableDataManager.addSegmentError(_segmentNameStr, new SegmentErrorInfo(now(),
           "Failed to initialize segment data manager", e));
       _segmentLogger.warn(
@@ -20,6 +20,7 @@ package org.apache.pinot.core.data.manager.realtime;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -30,7 +31,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.function.BooleanSupplier;
@@ -68,6 +72,8 @@ import org.apache.pinot.segment.local.utils.tablestate.TableStateUtils;
 import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.IndexSegment;
 import org.apache.pinot.segment.spi.SegmentContext;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
 import org.apache.pinot.spi.config.table.DedupConfig;
 import org.apache.pinot.spi.config.table.IndexingConfig;
 import org.apache.pinot.spi.config.table.TableConfig;
@@ -129,6 +135,10 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
   private TableUpsertMetadataManager _tableUpsertMetadataManager;
   private BooleanSupplier _isTableReadyToConsumeData;
 
+  // Thread pool shared by the consuming segments to decode and transform the stream messages in parallel, created on
+  // first use
+  private ThreadPoolExecutor _decodeAndTransformExecutor;
+
   public RealtimeTableDataManager(Semaphore segmentBuildSemaphore) {
     this(segmentBuildSemaphore, () -> true);
   }
@@ -274,6 +284,34 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     if (_leaseExtender != null) {
       _leaseExtender.shutDown();
     }
+    synchronized (this) {
+      if (_decodeAndTransformExecutor != null) {
+        _decodeAndTransformExecutor.shutdownNow();
+        _decodeAndTransformExecutor = null;
+      }
+    }
+  }
+
+  /**
+   * Returns the thread pool shared by the consuming segments of the table to decode and transform the stream messages
+   * in parallel, which is bounded to the given number of threads. The pool is resized when the number of threads is
+   * changed in the table config.
+   */
+  public synchronized ExecutorService getDecodeAndTransformExecutor(int numThreads) {
+    Preconditions.checkArgument(numThreads > 0, "Number of threads must be positive, got: %s", numThreads);
+    if (_decodeAndTransformExecutor == null) {
+      _decodeAndTransformExecutor =
+          new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+              new ThreadFactoryBuilder().setNameFormat(_tableNameWithType + "-decode-transform-%d").setDaemon(true)
+                  .build());
+    } else if (_decodeAndTransformExecutor.getMaximumPoolSize() < numThreads) {
+      _decodeAndTransformExecutor.setMaximumPoolSize(numThreads);
+      _decodeAndTransformExecutor.setCorePoolSize(numThreads);
+    } else if (_decodeAndTransformExecutor.getMaximumPoolSize() > numThreads) {
+      _decodeAndTransformExecutor.setCorePoolSize(numThreads);
+      _decodeAndTransformExecutor.setMaximumPoolSize(numThreads);
+    }
+    return _decodeAndTransformExecutor;
   }
 
   /**
@@ -726,6 +764,46 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     _logger.info("Replaced CONSUMING segment: {}", segmentName);
   }
 
+  /**
+   * Replaces the CONSUMING segment with the one sealed locally, which is already memory mapped with
+   * {@link #loadSealedSegment(String)}.
+   */
+  public void replaceConsumingSegment(ImmutableSegment sealedSegment) {
+    String segmentName = sealedSegment.getSegmentName();
+    _logger.info("Replacing CONSUMING segment: {} with the one sealed and loaded locally", segmentName);
+    addSegment(sealedSegment);
+    _logger.info("Replaced CONSUMING segment: {}", segmentName);
+  }
+
+  /**
+   * Memory maps the segment sealed locally in the table index dir as is, so that it can be swapped in for the CONSUMING
+   * segment as soon as it is committed without being loaded again. The index dir is not modified, so it can still be
+   * committed. Returns {@code null} if the segment needs to be preprocessed with the latest table config and schema, in
+   * which case it should be loaded with {@link #replaceConsumingSegment(String)} once committed.
+   */
+  @Nullable
+  public ImmutableSegment loadSealedSegment(String segmentName)
+      throws Exception {
+    File indexDir = new File(_indexDir, segmentName);
+    // Get a new index loading config with latest table config and schema to load the segment
+    IndexLoadingConfig indexLoadingConfig = fetchIndexLoadingConfig();
+    Schema schema = indexLoadingConfig.getSchema();
+    SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(indexDir);
+    SegmentDirectory segmentDirectory =
+        initSegmentDirectory(segmentName, segmentMetadata.getCrc(), indexLoadingConfig);
+    try {
+      if (ImmutableSegmentLoader.needPreprocess(segmentDirectory, indexLoadingConfig, schema)) {
+        _logger.info("Sealed segment: {} needs reprocess to reflect latest table config and schema", segmentName);
+        closeSegmentDirectoryQuietly(segmentDirectory);
+        return null;
+      }
+      return ImmutableSegmentLoader.load(segmentDirectory, indexLoadingConfig, schema);
+    } catch (Exception e) {
+      closeSegmentDirectoryQuietly(segmentDirectory);
+      throw e;
+    }
+  }
+
   public String getServerInstance() {
     return _instanceId;
   }
@@ -133,7 +133,13 @@ public abstract class IndexedTable extends BaseTable {
     assert _hasOrderBy;
     long startTimeNs = System.nanoTime();
     _tableResizer.resizeRecordsMap(_lookupMap, _trimSize);
-    long resizeTimeNs = System.nanoTime() - startTimeNs;
+    recordResize(System.nanoTime() - startTimeNs);
+  }
+
+  /**
+   * Records a resize done without the lookup map.
+   */
+  protected void recordResize(long resizeTimeNs) {
     _numResizes++;
     _resizeTimeNs += resizeTimeNs;
   }
@@ -0,0 +1,658 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.table;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+
+
+/**
+ * Thread safe {@link IndexedTable} for the server combine phase that keeps the groups in off-heap open-addressing hash
+ * tables instead of a {@link java.util.concurrent.ConcurrentHashMap} of {@link Key} and {@link Record} objects.
+ *
+ * <p>Only queries with primitive (INT, LONG, FLOAT, DOUBLE) group-by columns are supported (see
+ * {@link #isSupported(DataSchema, QueryContext)}). Each group is stored as a fixed-width row of 8-byte words in direct
+ * memory: the group-by values followed by the intermediate results of COUNT, SUM, MIN and MAX, which are merged in
+ * place without boxing. Intermediate results of other aggregation functions are kept on-heap next to the row and merged
+ * with {@link AggregationFunction#merge(Object, Object)}.
+ *
+ * <p>The groups are striped across partitions (by the upper bits of the key hash) with one lock per partition. The
+ * table is trimmed within the partitions by selecting the order-by values of the last group to retain, and the
+ * {@link Record}s are only materialized into the lookup map when the table is finished. The direct memory is allocated
+ * through {@link PinotDataBuffer} and released when the table is finished or closed (when the query is terminated
+ * before finishing the table); the records upserted after that are dropped.
+ */
+@ThreadSafe
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class OffHeapIndexedTable extends IndexedTable implements Closeable {
+  // Number of rows per off-heap page, must be a power of 2
+  private static final int ROWS_PER_PAGE_SHIFT = 12;
+  private static final int ROWS_PER_PAGE = 1 << ROWS_PER_PAGE_SHIFT;
+  private static final int ROW_IN_PAGE_MASK = ROWS_PER_PAGE - 1;
+  private static final int MIN_SLOT_CAPACITY = 16;
+  private static final int MAX_SLOT_CAPACITY = 1 << 28;
+  private static final int MAX_NUM_PARTITIONS = 64;
+  private static final double LOAD_FACTOR = 0.75;
+
+  private static final byte AGGREGATION_COUNT = 0;
+  private static final byte AGGREGATION_SUM = 1;
+  private static final byte AGGREGATION_MIN = 2;
+  private static final byte AGGREGATION_MAX = 3;
+  private static final byte AGGREGATION_OBJECT = 4;
+
+  private final ColumnDataType[] _keyColumnTypes;
+  private final byte[] _aggregationTypes;
+  // For each aggregation, the word index within the row for primitive aggregations, or the index within the on-heap
+  // object array for the others
+  private final int[] _aggregationIndexes;
+  private final int _numObjectAggregations;
+  private final int _rowSizeInBytes;
+  private final Partition[] _partitions;
+  private final int _partitionMask;
+  private final boolean _trimEnabled;
+
+  private final AtomicInteger _numRecords = new AtomicInteger();
+  private final AtomicBoolean _noMoreNewRecords = new AtomicBoolean();
+  private final ReentrantReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+  private boolean _released;
+
+  public OffHeapIndexedTable(DataSchema dataSchema, QueryContext queryContext, int resultSize, int trimSize,
+      int trimThreshold, int initialCapacity, int numThreads) {
+    // NOTE: The lookup map is only populated when trimming or finishing the table
+    super(dataSchema, false, queryContext, resultSize, trimSize, trimThreshold, new HashMap<>());
+    assert isSupported(dataSchema, queryContext);
+
+    ColumnDataType[] columnDataTypes = dataSchema.getColumnDataTypes();
+    _keyColumnTypes = Arrays.copyOf(columnDataTypes, _numKeyColumns);
+    int numAggregations = _aggregationFunctions != null ? _aggregationFunctions.length : 0;
+    _aggregationTypes = new byte[numAggregations];
+    _aggregationIndexes = new int[numAggregations];
+    int numWords = _numKeyColumns;
+    int numObjectAggregations = 0;
+    for (int i = 0; i < numAggregations; i++) {
+      byte aggregationType = getPrimitiveAggregationType(_aggregationFunctions[i], columnDataTypes[_numKeyColumns + i]);
+      _aggregationTypes[i] = aggregationType;
+      _aggregationIndexes[i] = aggregationType != AGGREGATION_OBJECT ? numWords++ : numObjectAggregations++;
+    }
+    _numObjectAggregations = numObjectAggregations;
+    _rowSizeInBytes = numWords * Long.BYTES;
+    _trimEnabled = _hasOrderBy && trimThreshold != Integer.MAX_VALUE;
+
+    int numPartitions = Math.min(Integer.highestOneBit(Math.max(numThreads, 1) * 2 - 1), MAX_NUM_PARTITIONS);
+    _partitions = new Partition[numPartitions];
+    _partitionMask = numPartitions - 1;
+    int slotCapacity = getSlotCapacity(Math.max(initialCapacity / numPartitions, 1));
+    for (int i = 0; i < numPartitions; i++) {
+      _partitions[i] = new Partition(slotCapacity);
+    }
+  }
+
+  /**
+   * Returns whether the off-heap indexed table can be used for the given data schema (of the segment results) and
+   * query.
+   */
+  public static boolean isSupported(DataSchema dataSchema, QueryContext queryContext) {
+    if (queryContext.isNullHandlingEnabled()) {
+      return false;
+    }
+    List<ExpressionContext> groupByExpressions = queryContext.getGroupByExpressions();
+    if (groupByExpressions == null) {
+      return false;
+    }
+    ColumnDataType[] columnDataTypes = dataSchema.getColumnDataTypes();
+    int numKeyColumns = groupByExpressions.size();
+    for (int i = 0; i < numKeyColumns; i++) {
+      switch (columnDataTypes[i]) {
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+          break;
+        default:
+          return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte getPrimitiveAggregationType(AggregationFunction aggregationFunction,
+      ColumnDataType intermediateResultType) {
+    switch (aggregationFunction.getType()) {
+      case COUNT:
+        return intermediateResultType == ColumnDataType.LONG ? AGGREGATION_COUNT : AGGREGATION_OBJECT;
+      case SUM:
+        return intermediateResultType == ColumnDataType.DOUBLE ? AGGREGATION_SUM : AGGREGATION_OBJECT;
+      case MIN:
+        return intermediateResultType == ColumnDataType.DOUBLE ? AGGREGATION_MIN : AGGREGATION_OBJECT;
+      case MAX:
+        return intermediateResultType == ColumnDataType.DOUBLE ? AGGREGATION_MAX : AGGREGATION_OBJECT;
+      default:
+        return AGGREGATION_OBJECT;
+    }
+  }
+
+  private static int getSlotCapacity(int numRows) {
+    long minCapacity = (long) Math.ceil(numRows / LOAD_FACTOR);
+    if (minCapacity >= MAX_SLOT_CAPACITY) {
+      return MAX_SLOT_CAPACITY;
+    }
+    return Math.max(Integer.highestOneBit((int) minCapacity * 2 - 1), MIN_SLOT_CAPACITY);
+  }
+
+  @Override
+  public boolean upsert(Key key, Record record) {
+    Object[] keyValues = key.getValues();
+    long hash = hash(keyValues);
+    Partition partition = _partitions[(int) (hash >>> 32) & _partitionMask];
+    Object[] values = record.getValues();
+    if (!_hasOrderBy) {
+      if (_noMoreNewRecords.get()) {
+        partition.addOrUpdate(hash, keyValues, values, false);
+      } else if (partition.addOrUpdate(hash, keyValues, values, true)) {
+        if (_numRecords.incrementAndGet() >= _resultSize) {
+          _noMoreNewRecords.set(true);
+        }
+      }
+      return true;
+    }
+    if (!_trimEnabled) {
+      if (partition.addOrUpdate(hash, keyValues, values, true)) {
+        _numRecords.incrementAndGet();
+      }
+      return true;
+    }
+
+    _readWriteLock.readLock().lock();
+    try {
+      if (partition.addOrUpdate(hash, keyValues, values, true)) {
+        _numRecords.incrementAndGet();
+      }
+    } finally {
+      _readWriteLock.readLock().unlock();
+    }
+    if (_numRecords.get() >= _trimThreshold) {
+      _readWriteLock.writeLock().lock();
+      try {
+        if (_numRecords.get() >= _trimThreshold) {
+          trim();
+        }
+      } finally {
+        _readWriteLock.writeLock().unlock();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Trims the table to the trim size without materializing the groups: selects the order-by values of the last group to
+   * retain with a heap of the top groups, then compacts each partition to the groups ordered before it (and the ties up
+   * to the trim size). Should be called while holding the write lock.
+   */
+  private void trim() {
+    if (_numRecords.get() <= _trimSize) {
+      return;
+    }
+    long startTimeNs = System.nanoTime();
+    Comparator<IntermediateRecord> comparator = _tableResizer.getIntermediateRecordComparator().reversed();
+    Object[] values = new Object[_numColumns];
+    Record record = new Record(values);
+
+    // Select the order-by values of the last group to retain (top of the heap)
+    IntermediateRecord[] heap = new IntermediateRecord[_trimSize];
+    int heapSize = 0;
+    for (Partition partition : _partitions) {
+      for (int rowId = 0; rowId < partition._numRows; rowId++) {
+        partition.readRow(rowId, values);
+        IntermediateRecord intermediateRecord = _tableResizer.getOrderByValues(record);
+        if (heapSize < _trimSize) {
+          heap[heapSize++] = intermediateRecord;
+          if (heapSize == _trimSize) {
+            TableResizer.makeHeap(heap, heapSize, comparator);
+          }
+        } else if (comparator.compare(intermediateRecord, heap[0]) > 0) {
+          heap[0] = intermediateRecord;
+          TableResizer.downHeap(heap, heapSize, 0, comparator);
+        }
+      }
+    }
+    IntermediateRecord lastRecordToRetain = heapSize > 0 ? heap[0] : null;
+    int numTiesToRetain = heapSize;
+    for (int i = 0; i < heapSize; i++) {
+      if (comparator.compare(heap[i], lastRecordToRetain) > 0) {
+        numTiesToRetain--;
+      }
+    }
+
+    // Compact the partitions to the groups to retain
+    int numRetainedRecords = 0;
+    for (Partition partition : _partitions) {
+      int numRetainedRows = 0;
+      if (lastRecordToRetain != null) {
+        for (int rowId = 0; rowId < partition._numRows; rowId++) {
+          partition.readRow(rowId, values);
+          int result = comparator.compare(_tableResizer.getOrderByValues(record), lastRecordToRetain);
+          if (result > 0 || (result == 0 && numTiesToRetain > 0)) {
+            if (result == 0) {
+              numTiesToRetain--;
+            }
+            partition.moveRow(rowId, numRetainedRows++);
+          }
+        }
+      }
+      partition.truncate(numRetainedRows);
+      numRetainedRecords += numRetainedRows;
+    }
+    _numRecords.set(numRetainedRecords);
+    recordResize(System.nanoTime() - startTimeNs);
+  }
+
+  @Override
+  public void finish(boolean sort, boolean storeFinalResult) {
+    _readWriteLock.writeLock().lock();
+    try {
+      if (!_released) {
+        for (Partition partition : _partitions) {
+          partition.drainTo(_lookupMap);
+        }
+        releasePartitions();
+      }
+    } finally {
+      _readWriteLock.writeLock().unlock();
+    }
+    super.finish(sort, storeFinalResult);
+  }
+
+  /**
+   * Releases the off-heap memory when the query is terminated before finishing the table. The records upserted after
+   * the table is closed are dropped.
+   */
+  @Override
+  public void close() {
+    _readWriteLock.writeLock().lock();
+    try {
+      if (!_released) {
+        releasePartitions();
+      }
+    } finally {
+      _readWriteLock.writeLock().unlock();
+    }
+  }
+
+  private void releasePartitions() {
+    for (Partition partition : _partitions) {
+      partition.release();
+    }
+    _released = true;
+  }
+
+  @Override
+  public int size() {
+    return _topRecords != null ? _topRecords.size() : _numRecords.get();
+  }
+
+  private long hash(Object[] keyValues) {
+    long hash = 0;
+    for (int i = 0; i < _numKeyColumns; i++) {
+      hash = (hash ^ mix(toWord(keyValues[i], _keyColumnTypes[i]))) * 0x9E3779B97F4A7C15L;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * Encodes a group-by value into a word. FLOAT and DOUBLE values are encoded with their canonical bits to match the
+   * equality semantics of {@link Key}.
+   */
+  private static long toWord(Object value, ColumnDataType columnDataType) {
+    switch (columnDataType) {
+      case INT:
+        return (Integer) value;
+      case LONG:
+        return (Long) value;
+      case FLOAT:
+        return Float.floatToIntBits((Float) value);
+      case DOUBLE:
+        return Double.doubleToLongBits((Double) value);
+      default:
+        throw new IllegalStateException("Unsupported group-by column type: " + columnDataType);
+    }
+  }
+
+  private static Object fromWord(long word, ColumnDataType columnDataType) {
+    switch (columnDataType) {
+      case INT:
+        return (int) word;
+      case LONG:
+        return word;
+      case FLOAT:
+        return Float.intBitsToFloat((int) word);
+      case DOUBLE:
+        return Double.longBitsToDouble(word);
+      default:
+        throw new IllegalStateException("Unsupported group-by column type: " + columnDataType);
+    }
+  }
+
+  /**
+   * A single-lock open-addressing hash table with linear probing. The slots store (row id + 1) so that 0 marks an empty
+   * slot, and the rows are appended to fixed-size off-heap pages so that growing the table never copies the rows.
+   */
+  private final class Partition {
+    final List<PinotDataBuffer> _pages = new ArrayList<>();
+    final List<Object[]> _objectValues = _numObjectAggregations > 0 ? new ArrayList<>() : null;
+    PinotDataBuffer _slots;
+    int _slotMask;
+    int _numRows;
+    boolean _released;
+
+    Partition(int slotCapacity) {
+      _slots = allocateSlots(slotCapacity);
+      _slotMask = slotCapacity - 1;
+    }
+
+    /**
+     * Adds a new group or merges into an existing group. Returns {@code true} if a new group is added.
+     */
+    synchronized boolean addOrUpdate(long hash, Object[] keyValues, Object[] values, boolean allowNewGroup) {
+      if (_released) {
+        // The table is already finished or closed
+        return false;
+      }
+      int slot = (int) hash & _slotMask;
+      while (true) {
+        int rowIdPlusOne = _slots.getInt(slot << 2);
+        if (rowIdPlusOne == 0) {
+          break;
+        }
+        int rowId = rowIdPlusOne - 1;
+        PinotDataBuffer page = _pages.get(rowId >>> ROWS_PER_PAGE_SHIFT);
+        int rowOffset = (rowId & ROW_IN_PAGE_MASK) * _rowSizeInBytes;
+        if (keyEquals(page, rowOffset, keyValues)) {
+          mergeRow(page, rowOffset, rowId, values);
+          return false;
+        }
+        slot = (slot + 1) & _slotMask;
+      }
+      if (!allowNewGroup) {
+        return false;
+      }
+      if (_numRows >= (_slotMask + 1) * LOAD_FACTOR) {
+        if (_slotMask + 1 >= MAX_SLOT_CAPACITY) {
+          throw new IllegalStateException("Too many groups in the off-heap indexed table partition: " + _numRows);
+        }
+        rehash((_slotMask + 1) << 1);
+        slot = findEmptySlot(hash);
+      }
+      int rowId = _numRows++;
+      _slots.putInt(slot << 2, rowId + 1);
+      appendRow(rowId, keyValues, values);
+      return true;
+    }
+
+    private boolean keyEquals(PinotDataBuffer page, int rowOffset, Object[] keyValues) {
+      for (int i = 0; i < _numKeyColumns; i++) {
+        if (page.getLong(rowOffset + (i << 3)) != toWord(keyValues[i], _keyColumnTypes[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void mergeRow(PinotDataBuffer page, int rowOffset, int rowId, Object[] values) {
+      int numAggregations = _aggregationTypes.length;
+      for (int i = 0; i < numAggregations; i++) {
+        Object value = values[_numKeyColumns + i];
+        int index = _aggregationIndexes[i];
+        int wordOffset = rowOffset + (index << 3);
+        switch (_aggregationTypes[i]) {
+          case AGGREGATION_COUNT:
+            page.putLong(wordOffset, page.getLong(wordOffset) + (Long) value);
+            break;
+          case AGGREGATION_SUM:
+            page.putDouble(wordOffset, page.getDouble(wordOffset) + (Double) value);
+            break;
+          // NOTE: Keep the same comparison as MinAggregationFunction.merge() and MaxAggregationFunction.merge()
+          case AGGREGATION_MIN:
+            if (!(page.getDouble(wordOffset) < (Double) value)) {
+              page.putDouble(wordOffset, (Double) value);
+            }
+            break;
+          case AGGREGATION_MAX:
+            if (!(page.getDouble(wordOffset) > (Double) value)) {
+              page.putDouble(wordOffset, (Double) value);
+            }
+            break;
+          default: {
+            Object[] objectValues = _objectValues.get(rowId);
+            objectValues[index] = _aggregationFunctions[i].merge(objectValues[index], value);
+            break;
+          }
+        }
+      }
+    }
+
+    private void appendRow(int rowId, Object[] keyValues, Object[] values) {
+      int pageId = rowId >>> ROWS_PER_PAGE_SHIFT;
+      if (pageId == _pages.size()) {
+        _pages.add(PinotDataBuffer.allocateDirect((long) ROWS_PER_PAGE * _rowSizeInBytes, PinotDataBuffer.NATIVE_ORDER,
+            "OffHeapIndexedTable page"));
+      }
+      PinotDataBuffer page = _pages.get(pageId);
+      int rowOffset = (rowId & ROW_IN_PAGE_MASK) * _rowSizeInBytes;
+      for (int i = 0; i < _numKeyColumns; i++) {
+        page.putLong(rowOffset + (i << 3), toWord(keyValues[i], _keyColumnTypes[i]));
+      }
+      Object[] objectValues = _numObjectAggregations > 0 ? new Object[_numObjectAggregations] : null;
+      int numAggregations = _aggregationTypes.length;
+      for (int i = 0; i < numAggregations; i++) {
+        Object value = values[_numKeyColumns + i];
+        int index = _aggregationIndexes[i];
+        switch (_aggregationTypes[i]) {
+          case AGGREGATION_COUNT:
+            page.putLong(rowOffset + (index << 3), (Long) value);
+            break;
+          case AGGREGATION_SUM:
+          case AGGREGATION_MIN:
+          case AGGREGATION_MAX:
+            page.putDouble(rowOffset + (index << 3), (Double) value);
+            break;
+          default:
+            objectValues[index] = value;
+            break;
+        }
+      }
+      if (objectValues != null) {
+        _objectValues.add(objectValues);
+      }
+    }
+
+    private int findEmptySlot(long hash) {
+      int slot = (int) hash & _slotMask;
+      while (_slots.getInt(slot << 2) != 0) {
+        slot = (slot + 1) & _slotMask;
+      }
+      return slot;
+    }
+
+    private void rehash(int newSlotCapacity) {
+      PinotDataBuffer oldSlots = _slots;
+      _slots = allocateSlots(newSlotCapacity);
+      _slotMask = newSlotCapacity - 1;
+      closeBuffer(oldSlots);
+      insertRows();
+    }
+
+    /**
+     * Inserts all the rows into the empty slots.
+     */
+    private void insertRows() {
+      Object[] keyValues = new Object[_numKeyColumns];
+      for (int rowId = 0; rowId < _numRows; rowId++) {
+        PinotDataBuffer page = _pages.get(rowId >>> ROWS_PER_PAGE_SHIFT);
+        int rowOffset = (rowId & ROW_IN_PAGE_MASK) * _rowSizeInBytes;
+        for (int i = 0; i < _numKeyColumns; i++) {
+          keyValues[i] = fromWord(page.getLong(rowOffset + (i << 3)), _keyColumnTypes[i]);
+        }
+        _slots.putInt(findEmptySlot(hash(keyValues)) << 2, rowId + 1);
+      }
+    }
+
+    /**
+     * Reads the group-by values and the intermediate results of the given row into the values array.
+     */
+    void readRow(int rowId, Object[] values) {
+      PinotDataBuffer page = _pages.get(rowId >>> ROWS_PER_PAGE_SHIFT);
+      int rowOffset = (rowId & ROW_IN_PAGE_MASK) * _rowSizeInBytes;
+      for (int i = 0; i < _numKeyColumns; i++) {
+        values[i] = fromWord(page.getLong(rowOffset + (i << 3)), _keyColumnTypes[i]);
+      }
+      int numAggregations = _aggregationTypes.length;
+      for (int i = 0; i < numAggregations; i++) {
+        int index = _aggregationIndexes[i];
+        switch (_aggregationTypes[i]) {
+          case AGGREGATION_COUNT:
+            values[_numKeyColumns + i] = page.getLong(rowOffset + (index << 3));
+            break;
+          case AGGREGATION_SUM:
+          case AGGREGATION_MIN:
+          case AGGREGATION_MAX:
+            values[_numKeyColumns + i] = page.getDouble(rowOffset + (index << 3));
+            break;
+          default:
+            values[_numKeyColumns + i] = _objectValues.get(rowId)[index];
+            break;
+        }
+      }
+    }
+
+    /**
+     * Moves a row to a lower row id when compacting the partition. Should be called while holding the write lock of the
+     * table.
+     */
+    void moveRow(int fromRowId, int toRowId) {
+      if (fromRowId == toRowId) {
+        return;
+      }
+      PinotDataBuffer fromPage = _pages.get(fromRowId >>> ROWS_PER_PAGE_SHIFT);
+      int fromRowOffset = (fromRowId & ROW_IN_PAGE_MASK) * _rowSizeInBytes;
+      PinotDataBuffer toPage = _pages.get(toRowId >>> ROWS_PER_PAGE_SHIFT);
+      int toRowOffset = (toRowId & ROW_IN_PAGE_MASK) * _rowSizeInBytes;
+      for (int offset = 0; offset < _rowSizeInBytes; offset += Long.BYTES) {
+        toPage.putLong(toRowOffset + offset, fromPage.getLong(fromRowOffset + offset));
+      }
+      if (_objectValues != null) {
+        _objectValues.set(toRowId, _objectValues.get(fromRowId));
+      }
+    }
+
+    /**
+     * Keeps the first rows of the partition, closes the pages no longer used and rebuilds the slots. Should be called
+     * while holding the write lock of the table.
+     */
+    void truncate(int numRows) {
+      _numRows = numRows;
+      int numPages = (numRows + ROWS_PER_PAGE - 1) >>> ROWS_PER_PAGE_SHIFT;
+      while (_pages.size() > numPages) {
+        closeBuffer(_pages.remove(_pages.size() - 1));
+      }
+      if (_objectValues != null) {
+        _objectValues.subList(numRows, _objectValues.size()).clear();
+      }
+      clearSlots(_slots);
+      insertRows();
+    }
+
+    /**
+     * Materializes all the rows into the given map.
+     */
+    synchronized void drainTo(Map<Key, Record> lookupMap) {
+      for (int rowId = 0; rowId < _numRows; rowId++) {
+        Object[] values = new Object[_numColumns];
+        readRow(rowId, values);
+        lookupMap.put(new Key(Arrays.copyOf(values, _numKeyColumns)), new Record(values));
+      }
+    }
+
+    /**
+     * Closes the off-heap buffers. The rows added after the partition is released are dropped.
+     */
+    synchronized void release() {
+      for (PinotDataBuffer page : _pages) {
+        closeBuffer(page);
+      }
+      _pages.clear();
+      closeBuffer(_slots);
+      _numRows = 0;
+      if (_objectValues != null) {
+        _objectValues.clear();
+      }
+      _released = true;
+    }
+  }
+
+  private static PinotDataBuffer allocateSlots(int slotCapacity) {
+    PinotDataBuffer slots = PinotDataBuffer.allocateDirect((long) slotCapacity * Integer.BYTES,
+        PinotDataBuffer.NATIVE_ORDER, "OffHeapIndexedTable slots");
+    clearSlots(slots);
+    return slots;
+  }
+
+  /**
+   * Zeroes the slots, which is required because the content of a newly allocated buffer is not defined.
+   */
+  private static void clearSlots(PinotDataBuffer slots) {
+    long numSlotBytes = slots.size();
+    for (long offset = 0; offset < numSlotBytes; offset += Long.BYTES) {
+      slots.putLong(offset, 0L);
+    }
+  }
+
+  private static void closeBuffer(PinotDataBuffer buffer) {
+    try {
+      buffer.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Caught exception while closing the off-heap indexed table buffer", e);
+    }
+  }
+}
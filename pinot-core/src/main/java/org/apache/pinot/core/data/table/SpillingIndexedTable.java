@@ -0,0 +1,317 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.table;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.datatable.DataTableFactory;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.util.DataTableRowUtils;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Thread safe {@link IndexedTable} for the server combine phase of GROUP BY with ORDER BY queries, which spills the
+ * groups to local disk instead of trimming them when the number of groups in memory reaches the spill threshold.
+ *
+ * <p>Each spill writes one file with the intermediate records hash-partitioned on the group key, one serialized
+ * {@link DataTable} per partition. When finishing the table, the partitions are merge-read (memory mapped) one at a
+ * time together with the groups still in memory. Because all the records of a group are within the same partition,
+ * each partition holds the complete groups after merging and can be trimmed without losing accuracy, so the heap usage
+ * is bounded by the spill threshold, the partition size and the result size instead of the total number of groups.
+ *
+ * <p>{@link #close()} should be called if the table is not finished (e.g. query timed out) to clean up the spill files.
+ */
+@ThreadSafe
+public class SpillingIndexedTable extends IndexedTable implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpillingIndexedTable.class);
+  // Number of hash partitions within each spill file, must be a power of 2
+  private static final int NUM_PARTITIONS = 16;
+  private static final String SPILL_FILE_PREFIX = "groupby_";
+  private static final String SPILL_FILE_SUFFIX = ".spill";
+
+  private final ReentrantReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+  private final int _spillThreshold;
+  private final File _spillDir;
+
+  // NOTE: The following fields are guarded by the write lock
+  private final List<SpillFile> _spillFiles = new ArrayList<>();
+  private boolean _closed;
+  private int _numSpills;
+  private long _spilledBytes;
+
+  public SpillingIndexedTable(DataSchema dataSchema, QueryContext queryContext, int resultSize, int trimSize,
+      int spillThreshold, int initialCapacity, File spillDir) {
+    // NOTE: On-the-fly trim is replaced by spilling
+    super(dataSchema, false, queryContext, resultSize, trimSize, Integer.MAX_VALUE,
+        new ConcurrentHashMap<>(initialCapacity));
+    Preconditions.checkArgument(_hasOrderBy, "Spilling is only supported for GROUP BY with ORDER BY");
+    Preconditions.checkArgument(spillThreshold > 0, "Spill threshold must be positive, got: %s", spillThreshold);
+    _spillThreshold = spillThreshold;
+    _spillDir = spillDir;
+  }
+
+  /**
+   * Deletes the spill files left in the spill directory by a previous server process (e.g. crashed while executing a
+   * query). The spill directory must be owned by the current server instance (not shared with other servers), and this
+   * method should be invoked before any query is executed.
+   */
+  public static void deleteOrphanSpillFiles(File spillDir) {
+    File[] spillFiles =
+        spillDir.listFiles((dir, name) -> name.startsWith(SPILL_FILE_PREFIX) && name.endsWith(SPILL_FILE_SUFFIX));
+    if (spillFiles == null) {
+      return;
+    }
+    int numDeletedFiles = 0;
+    for (File spillFile : spillFiles) {
+      if (FileUtils.deleteQuietly(spillFile)) {
+        numDeletedFiles++;
+      }
+    }
+    if (numDeletedFiles > 0) {
+      LOGGER.info("Deleted {} orphan group-by spill files from: {}", numDeletedFiles, spillDir);
+    }
+  }
+
+  /**
+   * Returns whether the records of the given data schema can be spilled.
+   */
+  public static boolean isSupported(DataSchema dataSchema) {
+    for (ColumnDataType storedColumnDataType : dataSchema.getStoredColumnDataTypes()) {
+      if (storedColumnDataType.isArray()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean upsert(Key key, Record record) {
+    _readWriteLock.readLock().lock();
+    try {
+      addOrUpdateRecord(key, record);
+    } finally {
+      _readWriteLock.readLock().unlock();
+    }
+
+    if (_lookupMap.size() >= _spillThreshold) {
+      _readWriteLock.writeLock().lock();
+      try {
+        if (_lookupMap.size() >= _spillThreshold) {
+          spill();
+        }
+      } finally {
+        _readWriteLock.writeLock().unlock();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes all the records in memory into a new spill file and clears the lookup map. Should be called while holding
+   * the write lock.
+   */
+  private void spill() {
+    if (_closed) {
+      // The query is already terminated, simply drop the records
+      _lookupMap.clear();
+      return;
+    }
+    List<Object[]>[] partitions = partition(_lookupMap);
+    if (!_spillDir.exists() && !_spillDir.mkdirs() && !_spillDir.isDirectory()) {
+      throw new IllegalStateException("Failed to create group-by spill directory: " + _spillDir);
+    }
+    File file = new File(_spillDir, SPILL_FILE_PREFIX + UUID.randomUUID() + SPILL_FILE_SUFFIX);
+    long[] partitionOffsets = new long[NUM_PARTITIONS + 1];
+    long offset = 0;
+    try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+      for (int i = 0; i < NUM_PARTITIONS; i++) {
+        partitionOffsets[i] = offset;
+        if (!partitions[i].isEmpty()) {
+          DataTable dataTable = DataTableRowUtils.buildDataTable(_dataSchema, partitions[i].iterator());
+          assert dataTable != null;
+          byte[] bytes = dataTable.toBytes();
+          outputStream.write(bytes);
+          offset += bytes.length;
+        }
+      }
+      partitionOffsets[NUM_PARTITIONS] = offset;
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(file);
+      throw new RuntimeException("Caught exception while spilling groups to file: " + file, e);
+    }
+    _spillFiles.add(new SpillFile(file, partitionOffsets));
+    _numSpills++;
+    _spilledBytes += offset;
+    LOGGER.debug("Spilled {} groups ({} bytes) to file: {}", _lookupMap.size(), offset, file);
+    _lookupMap.clear();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object[]>[] partition(Map<Key, Record> recordsMap) {
+    List<Object[]>[] partitions = new List[NUM_PARTITIONS];
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      partitions[i] = new ArrayList<>();
+    }
+    for (Map.Entry<Key, Record> entry : recordsMap.entrySet()) {
+      partitions[getPartitionId(entry.getKey())].add(entry.getValue().getValues());
+    }
+    return partitions;
+  }
+
+  private static int getPartitionId(Key key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (NUM_PARTITIONS - 1);
+  }
+
+  @Override
+  public void finish(boolean sort, boolean storeFinalResult) {
+    _readWriteLock.writeLock().lock();
+    try {
+      if (!_spillFiles.isEmpty()) {
+        mergeSpillFiles();
+      }
+    } finally {
+      _readWriteLock.writeLock().unlock();
+    }
+    super.finish(sort, storeFinalResult);
+  }
+
+  /**
+   * Merges the records in memory and in the spill files partition by partition, and keeps the top records in the lookup
+   * map. Should be called while holding the write lock.
+   */
+  private void mergeSpillFiles() {
+    List<Object[]>[] inMemoryPartitions = partition(_lookupMap);
+    _lookupMap.clear();
+    Map<Key, Record> mergedRecordsMap = new HashMap<>();
+    int numSpillFiles = _spillFiles.size();
+    PinotDataBuffer[] dataBuffers = new PinotDataBuffer[numSpillFiles];
+    try {
+      for (int i = 0; i < numSpillFiles; i++) {
+        dataBuffers[i] = PinotDataBuffer.mapReadOnlyBigEndianFile(_spillFiles.get(i)._file);
+      }
+      for (int partitionId = 0; partitionId < NUM_PARTITIONS; partitionId++) {
+        // Reuse the lookup map to merge all the records within the partition
+        for (Object[] values : inMemoryPartitions[partitionId]) {
+          addOrUpdateRecord(new Key(Arrays.copyOf(values, _numKeyColumns)), new Record(values));
+        }
+        inMemoryPartitions[partitionId] = null;
+        for (int i = 0; i < numSpillFiles; i++) {
+          long[] partitionOffsets = _spillFiles.get(i)._partitionOffsets;
+          long startOffset = partitionOffsets[partitionId];
+          int size = (int) (partitionOffsets[partitionId + 1] - startOffset);
+          if (size > 0) {
+            DataTable dataTable = DataTableFactory.getDataTable(dataBuffers[i].toDirectByteBuffer(startOffset, size));
+            for (Object[] values : DataTableRowUtils.extractRows(dataTable)) {
+              addOrUpdateRecord(new Key(Arrays.copyOf(values, _numKeyColumns)), new Record(values));
+            }
+          }
+        }
+        // All the records of the groups within the partition are merged, so the groups can be trimmed accurately
+        mergedRecordsMap.putAll(_lookupMap);
+        _lookupMap.clear();
+        if (mergedRecordsMap.size() > 2L * _resultSize) {
+          _tableResizer.resizeRecordsMap(mergedRecordsMap, _resultSize);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Caught exception while merging spilled groups", e);
+    } finally {
+      for (PinotDataBuffer dataBuffer : dataBuffers) {
+        if (dataBuffer != null) {
+          try {
+            dataBuffer.close();
+          } catch (IOException e) {
+            LOGGER.warn("Caught exception while closing spill file buffer", e);
+          }
+        }
+      }
+      deleteSpillFiles();
+    }
+    _lookupMap.putAll(mergedRecordsMap);
+  }
+
+  private void deleteSpillFiles() {
+    for (SpillFile spillFile : _spillFiles) {
+      FileUtils.deleteQuietly(spillFile._file);
+    }
+    _spillFiles.clear();
+  }
+
+  /**
+   * Returns the number of times the groups are spilled to disk.
+   */
+  public int getNumSpills() {
+    return _numSpills;
+  }
+
+  /**
+   * Returns the total number of bytes spilled to disk.
+   */
+  public long getSpilledBytes() {
+    return _spilledBytes;
+  }
+
+  /**
+   * Deletes the spill files. The records upserted after the table is closed are dropped when reaching the spill
+   * threshold.
+   */
+  @Override
+  public void close() {
+    _readWriteLock.writeLock().lock();
+    try {
+      _closed = true;
+      deleteSpillFiles();
+    } finally {
+      _readWriteLock.writeLock().unlock();
+    }
+  }
+
+  private static class SpillFile {
+    final File _file;
+    // Start offset of each partition, followed by the end offset of the last partition
+    final long[] _partitionOffsets;
+
+    SpillFile(File file, long[] partitionOffsets) {
+      _file = file;
+      _partitionOffsets = partitionOffsets;
+    }
+  }
+}
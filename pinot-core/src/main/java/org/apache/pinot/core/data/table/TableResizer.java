@@ -177,6 +177,25 @@ public class TableResizer {
     return new IntermediateRecord(key, record, orderByValues);
   }
 
+  /**
+   * Constructs an IntermediateRecord with only the order-by values extracted from the record, for the tables that
+   * select the records to retain without materializing them.
+   */
+  IntermediateRecord getOrderByValues(Record record) {
+    Comparable[] orderByValues = new Comparable[_numOrderByExpressions];
+    for (int i = 0; i < _numOrderByExpressions; i++) {
+      orderByValues[i] = _orderByValueExtractors[i].extract(record);
+    }
+    return new IntermediateRecord(null, null, orderByValues);
+  }
+
+  /**
+   * Returns the comparator of the IntermediateRecords on the order-by values.
+   */
+  Comparator<IntermediateRecord> getIntermediateRecordComparator() {
+    return _intermediateRecordComparator;
+  }
+
   /**
    * Resizes the recordsMap to the given size.
    */
@@ -236,7 +255,7 @@ public class TableResizer {
   /**
    * Borrowed from {@link it.unimi.dsi.fastutil.objects.ObjectHeaps}.
    */
-  private static void makeHeap(IntermediateRecord[] heap, int size, Comparator<IntermediateRecord> c) {
+  static void makeHeap(IntermediateRecord[] heap, int size, Comparator<IntermediateRecord> c) {
     int i = size >>> 1;
     while (i-- != 0) {
       downHeap(heap, size, i, c);
@@ -246,7 +265,7 @@ public class TableResizer {
   /**
    * Borrowed from {@link it.unimi.dsi.fastutil.objects.ObjectHeaps} without the redundant checks.
    */
-  private static void downHeap(IntermediateRecord[] heap, int size, int i, Comparator<IntermediateRecord> c) {
+  static void downHeap(IntermediateRecord[] heap, int size, int i, Comparator<IntermediateRecord> c) {
     IntermediateRecord e = heap[i];
     int child;
     while ((child = (i << 1) + 1) < size) {
@@ -61,6 +61,8 @@ public class GroupByResultsBlock extends BaseResultsBlock {
   private boolean _numGroupsLimitReached;
   private int _numResizes;
   private long _resizeTimeMs;
+  private int _numSpills;
+  private long _spilledBytes;
 
   /**
    * For segment level group-by results.
@@ -154,6 +156,22 @@ public class GroupByResultsBlock extends BaseResultsBlock {
     _resizeTimeMs = resizeTimeMs;
   }
 
+  public int getNumSpills() {
+    return _numSpills;
+  }
+
+  public void setNumSpills(int numSpills) {
+    _numSpills = numSpills;
+  }
+
+  public long getSpilledBytes() {
+    return _spilledBytes;
+  }
+
+  public void setSpilledBytes(long spilledBytes) {
+    _spilledBytes = spilledBytes;
+  }
+
   @Override
   public int getNumRows() {
     return _table == null ? 0 : _table.size();
@@ -312,6 +330,10 @@ public class GroupByResultsBlock extends BaseResultsBlock {
     }
     metadata.put(MetadataKey.NUM_RESIZES.getName(), Integer.toString(_numResizes));
     metadata.put(MetadataKey.RESIZE_TIME_MS.getName(), Long.toString(_resizeTimeMs));
+    if (_numSpills > 0) {
+      metadata.put(MetadataKey.NUM_GROUP_BY_SPILLS.getName(), Integer.toString(_numSpills));
+      metadata.put(MetadataKey.GROUP_BY_SPILLED_BYTES.getName(), Long.toString(_spilledBytes));
+    }
     return metadata;
   }
 }
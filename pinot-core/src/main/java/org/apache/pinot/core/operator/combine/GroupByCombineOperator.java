@@ -30,7 +30,9 @@ import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.data.table.IndexedTable;
 import org.apache.pinot.core.data.table.IntermediateRecord;
 import org.apache.pinot.core.data.table.Key;
+import org.apache.pinot.core.data.table.OffHeapIndexedTable;
 import org.apache.pinot.core.data.table.Record;
+import org.apache.pinot.core.data.table.SpillingIndexedTable;
 import org.apache.pinot.core.operator.AcquireReleaseColumnsSegmentOperator;
 import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
 import org.apache.pinot.core.operator.blocks.results.ExceptionResultsBlock;
@@ -198,11 +200,13 @@ public class GroupByCombineOperator extends BaseSingleBlockCombineOperator<Group
           String.format("Timed out while combining group-by order-by results after %dms, queryContext = %s", timeoutMs,
               _queryContext);
       LOGGER.error(errorMessage);
+      closeIndexedTable();
       return new ExceptionResultsBlock(new TimeoutException(errorMessage));
     }
 
     Throwable processingException = _processingException.get();
     if (processingException != null) {
+      closeIndexedTable();
       return new ExceptionResultsBlock(processingException);
     }
 
@@ -218,6 +222,23 @@ public class GroupByCombineOperator extends BaseSingleBlockCombineOperator<Group
     mergedBlock.setNumGroupsLimitReached(_numGroupsLimitReached);
     mergedBlock.setNumResizes(indexedTable.getNumResizes());
     mergedBlock.setResizeTimeMs(indexedTable.getResizeTimeMs());
+    if (indexedTable instanceof SpillingIndexedTable) {
+      SpillingIndexedTable spillingIndexedTable = (SpillingIndexedTable) indexedTable;
+      mergedBlock.setNumSpills(spillingIndexedTable.getNumSpills());
+      mergedBlock.setSpilledBytes(spillingIndexedTable.getSpilledBytes());
+    }
     return mergedBlock;
   }
+
+  /**
+   * Cleans up the spill files or the off-heap memory when the query is terminated before finishing the indexed table.
+   */
+  private void closeIndexedTable() {
+    IndexedTable indexedTable = _indexedTable;
+    if (indexedTable instanceof SpillingIndexedTable) {
+      ((SpillingIndexedTable) indexedTable).close();
+    } else if (indexedTable instanceof OffHeapIndexedTable) {
+      ((OffHeapIndexedTable) indexedTable).close();
+    }
+  }
 }
@@ -19,6 +19,7 @@
 package org.apache.pinot.core.operator.docidsets;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -32,8 +33,10 @@ import org.apache.pinot.core.operator.dociditerators.BitmapBasedDocIdIterator;
 import org.apache.pinot.core.operator.dociditerators.RangelessBitmapDocIdIterator;
 import org.apache.pinot.core.operator.dociditerators.ScanBasedDocIdIterator;
 import org.apache.pinot.core.operator.dociditerators.SortedDocIdIterator;
+import org.apache.pinot.core.operator.filter.FilterSelectivityStats;
 import org.apache.pinot.core.util.SortedRangeIntersection;
 import org.apache.pinot.spi.utils.Pairs.IntPair;
+import org.roaringbitmap.PeekableIntIterator;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
@@ -56,23 +59,48 @@ import org.roaringbitmap.buffer.MutableRoaringBitmap;
  * </ul>
  */
 public final class AndDocIdSet implements BlockDocIdSet {
+  // Number of documents sampled to estimate the selectivity of the scan based BlockDocIdSets
+  public static final int SELECTIVITY_SAMPLE_SIZE = 4096;
+
   // Keep the scan based BlockDocIdSets to be accessed when collecting query execution stats
   private final AtomicReference<List<BlockDocIdSet>> _scanBasedDocIdSets = new AtomicReference<>();
   private final boolean _cardinalityBasedRankingForScan;
+  // Keys of the FilterSelectivityStats for each BlockDocIdSet (null for the ones without stats), only set when adaptive
+  // reordering of the scan based BlockDocIdSets is enabled
+  private final List<String> _selectivityStatsKeys;
+  private final int _numDocs;
   private List<BlockDocIdSet> _docIdSets;
   private volatile long _numEntriesScannedInFilter;
+  // Entries scanned by the scan based BlockDocIdSets to sample their selectivity, which are excluded from the entries
+  // scanned in filter
+  private volatile long _numEntriesScannedForSampling;
 
   public AndDocIdSet(List<BlockDocIdSet> docIdSets, @Nullable Map<String, String> queryOptions) {
+    this(docIdSets, queryOptions, null, 0);
+  }
+
+  /**
+   * Constructs an AndDocIdSet that adaptively reorders the scan based BlockDocIdSets based on the selectivity sampled
+   * at runtime or learned from the previous evaluations (see {@link FilterSelectivityStats}).
+   *
+   * @param selectivityStatsKeys Keys of the selectivity stats for each BlockDocIdSet, or {@code null} to disable
+   *                             adaptive reordering
+   * @param numDocs Number of documents in the segment
+   */
+  public AndDocIdSet(List<BlockDocIdSet> docIdSets, @Nullable Map<String, String> queryOptions,
+      @Nullable List<String> selectivityStatsKeys, int numDocs) {
     _docIdSets = docIdSets;
     _cardinalityBasedRankingForScan =
         queryOptions != null && QueryOptionsUtils.isAndScanReorderingEnabled(queryOptions);
+    _selectivityStatsKeys = selectivityStatsKeys;
+    _numDocs = numDocs;
   }
 
   @Override
   public BlockDocIdIterator iterator() {
     int numDocIdSets = _docIdSets.size();
-    // NOTE: Keep the order of BlockDocIdSets to preserve the order decided within FilterOperatorUtils.
-    // TODO: Consider deciding the order based on the stats of BlockDocIdIterators
+    // NOTE: Keep the order of BlockDocIdSets to preserve the order decided within FilterOperatorUtils, except for the
+    //       scan based ones when adaptive reordering is enabled.
     BlockDocIdIterator[] allDocIdIterators = new BlockDocIdIterator[numDocIdSets];
     List<SortedDocIdIterator> sortedDocIdIterators = new ArrayList<>();
     List<BitmapBasedDocIdIterator> bitmapBasedDocIdIterators = new ArrayList<>();
@@ -80,6 +108,7 @@ public final class AndDocIdSet implements BlockDocIdSet {
     List<BlockDocIdIterator> remainingDocIdIterators = new ArrayList<>();
     long numEntriesScannedForNonScanBasedDocIdSets = 0L;
     List<BlockDocIdSet> scanBasedDocIdSets = new ArrayList<>();
+    List<String> scanBasedStatsKeys = new ArrayList<>();
 
     for (int i = 0; i < numDocIdSets; i++) {
       BlockDocIdSet docIdSet = _docIdSets.get(i);
@@ -94,6 +123,7 @@ public final class AndDocIdSet implements BlockDocIdSet {
       } else if (docIdIterator instanceof ScanBasedDocIdIterator) {
         scanBasedDocIdIterators.add((ScanBasedDocIdIterator) docIdIterator);
         scanBasedDocIdSets.add(docIdSet);
+        scanBasedStatsKeys.add(_selectivityStatsKeys != null ? _selectivityStatsKeys.get(i) : null);
       } else {
         remainingDocIdIterators.add(docIdIterator);
         scanBasedDocIdSets.add(docIdSet);
@@ -115,7 +145,8 @@ public final class AndDocIdSet implements BlockDocIdSet {
     // TODO: 1. remainingDocIdIterators currently doesn't report cardinality; therefore, it cannot be
     //          prioritized even if it provides high effective cardinality, one way to do this is to let AND/OR
     //          DocIdIterators bubble up cardinality for the sort to happen recursively for nested AND-OR predicates
-    if (_cardinalityBasedRankingForScan) {
+    boolean adaptiveRankingForScan = _selectivityStatsKeys != null && scanBasedDocIdIterators.size() > 1;
+    if (_cardinalityBasedRankingForScan && !adaptiveRankingForScan) {
       scanBasedDocIdIterators.sort(Comparator.comparing(x -> (-x.getEstimatedCardinality(true))));
     }
 
@@ -164,6 +195,16 @@ public final class AndDocIdSet implements BlockDocIdSet {
           docIds = mutableDocIds;
         }
       }
+      if (adaptiveRankingForScan) {
+        // Sample the leading document ids that match the index-based BlockDocIdIterators
+        MutableRoaringBitmap sampleDocIds = new MutableRoaringBitmap();
+        PeekableIntIterator intIterator = docIds.getIntIterator();
+        for (int i = 0; i < SELECTIVITY_SAMPLE_SIZE && intIterator.hasNext(); i++) {
+          sampleDocIds.add(intIterator.next());
+        }
+        scanBasedDocIdIterators = rankScanBasedDocIdIterators(scanBasedDocIdIterators, scanBasedStatsKeys,
+            sampleDocIds);
+      }
       for (ScanBasedDocIdIterator scanBasedDocIdIterator : scanBasedDocIdIterators) {
         docIds = scanBasedDocIdIterator.applyAnd(docIds);
       }
@@ -181,10 +222,73 @@ public final class AndDocIdSet implements BlockDocIdSet {
     } else {
       // Otherwise, construct and return an AndDocIdIterator with all BlockDocIdIterators.
 
+      if (adaptiveRankingForScan && _numDocs > 0) {
+        // The first BlockDocIdIterator drives the iteration, so put the scan based BlockDocIdIterators in the order of
+        // their rank (keep the positions of the other BlockDocIdIterators)
+        MutableRoaringBitmap sampleDocIds = new MutableRoaringBitmap();
+        sampleDocIds.add(0L, Math.min(_numDocs, SELECTIVITY_SAMPLE_SIZE));
+        List<ScanBasedDocIdIterator> rankedDocIdIterators =
+            rankScanBasedDocIdIterators(scanBasedDocIdIterators, scanBasedStatsKeys, sampleDocIds);
+        int index = 0;
+        for (int i = 0; i < numDocIdSets; i++) {
+          if (allDocIdIterators[i] instanceof ScanBasedDocIdIterator) {
+            allDocIdIterators[i] = rankedDocIdIterators.get(index++);
+          }
+        }
+      }
       return new AndDocIdIterator(allDocIdIterators);
     }
   }
 
+  /**
+   * Ranks the scan based BlockDocIdIterators so that the cheapest and most selective ones are evaluated first. The
+   * selectivity and cost of each BlockDocIdIterator are read from the {@link FilterSelectivityStats} when available,
+   * or sampled by applying it on the given sample document ids (and recorded into the stats).
+   */
+  private List<ScanBasedDocIdIterator> rankScanBasedDocIdIterators(
+      List<ScanBasedDocIdIterator> scanBasedDocIdIterators, List<String> statsKeys,
+      ImmutableRoaringBitmap sampleDocIds) {
+    int numSampleDocs = sampleDocIds.getCardinality();
+    if (numSampleDocs == 0) {
+      return scanBasedDocIdIterators;
+    }
+    FilterSelectivityStats selectivityStats = FilterSelectivityStats.getInstance();
+    int numDocIdIterators = scanBasedDocIdIterators.size();
+    double[] ranks = new double[numDocIdIterators];
+    long numEntriesScannedForSampling = 0L;
+    for (int i = 0; i < numDocIdIterators; i++) {
+      String statsKey = statsKeys.get(i);
+      FilterSelectivityStats.Stats stats = statsKey != null ? selectivityStats.get(statsKey) : null;
+      if (stats == null) {
+        ScanBasedDocIdIterator docIdIterator = scanBasedDocIdIterators.get(i);
+        long numEntriesScannedBefore = docIdIterator.getNumEntriesScanned();
+        int numMatchingDocs = docIdIterator.applyAnd(sampleDocIds).getCardinality();
+        long numEntriesScanned = docIdIterator.getNumEntriesScanned() - numEntriesScannedBefore;
+        numEntriesScannedForSampling += numEntriesScanned;
+        double selectivity = (double) numMatchingDocs / numSampleDocs;
+        double cost = (double) Math.max(numEntriesScanned, numSampleDocs) / numSampleDocs;
+        if (statsKey != null) {
+          selectivityStats.record(statsKey, selectivity, cost);
+        }
+        ranks[i] = selectivity >= 1 ? Double.POSITIVE_INFINITY : cost / (1 - selectivity);
+      } else {
+        ranks[i] = stats.getRank();
+      }
+    }
+    _numEntriesScannedForSampling = numEntriesScannedForSampling;
+    Integer[] order = new Integer[numDocIdIterators];
+    for (int i = 0; i < numDocIdIterators; i++) {
+      order[i] = i;
+    }
+    // NOTE: Arrays.sort() on objects is stable, which keeps the original order for the ones with the same rank
+    Arrays.sort(order, Comparator.comparingDouble(i -> ranks[i]));
+    List<ScanBasedDocIdIterator> rankedDocIdIterators = new ArrayList<>(numDocIdIterators);
+    for (int i : order) {
+      rankedDocIdIterators.add(scanBasedDocIdIterators.get(i));
+    }
+    return rankedDocIdIterators;
+  }
+
   @Override
   public long getNumEntriesScannedInFilter() {
     List<BlockDocIdSet> scanBasedDocIdSets = _scanBasedDocIdSets.get();
@@ -194,6 +298,6 @@ public final class AndDocIdSet implements BlockDocIdSet {
         numEntriesScannedForScanBasedDocIdSets += scanBasedDocIdSet.getNumEntriesScannedInFilter();
       }
     }
-    return _numEntriesScannedInFilter + numEntriesScannedForScanBasedDocIdSets;
+    return _numEntriesScannedInFilter + numEntriesScannedForScanBasedDocIdSets - _numEntriesScannedForSampling;
   }
 }
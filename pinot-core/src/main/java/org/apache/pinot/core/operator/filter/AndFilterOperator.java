@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
 import org.apache.pinot.core.common.BlockDocIdSet;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.operator.docidsets.AndDocIdSet;
@@ -55,6 +56,14 @@ public class AndFilterOperator extends BaseFilterOperator {
     for (BaseFilterOperator filterOperator : _filterOperators) {
       blockDocIdSets.add(filterOperator.getTrues());
     }
+    if (_queryOptions != null && QueryOptionsUtils.isAdaptiveAndScanReorderingEnabled(_queryOptions)) {
+      List<String> selectivityStatsKeys = new ArrayList<>(_filterOperators.size());
+      for (BaseFilterOperator filterOperator : _filterOperators) {
+        selectivityStatsKeys.add(filterOperator instanceof ScanBasedFilterOperator
+            ? ((ScanBasedFilterOperator) filterOperator).getSelectivityStatsKey() : null);
+      }
+      return new AndDocIdSet(blockDocIdSets, _queryOptions, selectivityStatsKeys, _numDocs);
+    }
     return new AndDocIdSet(blockDocIdSets, _queryOptions);
   }
 
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.filter;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * Bounded cache of the selectivity (fraction of the scanned documents matching the predicate) and the cost (entries
+ * scanned per document) of the scan-based filter predicates, learned at runtime by sampling within
+ * {@link org.apache.pinot.core.operator.docidsets.AndDocIdSet}.
+ * <p>The stats are keyed by the table name and the predicate (which contains the column), and are used to decide the
+ * evaluation order of the scan-based predicates within AND for the following segments and queries without sampling
+ * again. Stats older than the expiration time are ignored so that they are refreshed as the data changes, and the least
+ * recently used stats are evicted when the cache is full.
+ * <p>The stats are looked up for every AND evaluation on the query path, so they are kept in a concurrent cache instead
+ * of behind a global lock.
+ */
+@ThreadSafe
+public class FilterSelectivityStats {
+  public static final int DEFAULT_MAX_NUM_ENTRIES = 10_000;
+  public static final long DEFAULT_EXPIRATION_MS = 5 * 60 * 1000L;
+
+  private static final FilterSelectivityStats INSTANCE =
+      new FilterSelectivityStats(DEFAULT_MAX_NUM_ENTRIES, DEFAULT_EXPIRATION_MS);
+
+  private final Cache<String, Stats> _statsCache;
+
+  @VisibleForTesting
+  FilterSelectivityStats(int maxNumEntries, long expirationMs) {
+    _statsCache = CacheBuilder.newBuilder().maximumSize(maxNumEntries)
+        .expireAfterWrite(expirationMs, TimeUnit.MILLISECONDS).build();
+  }
+
+  /**
+   * Returns the server level stats instance.
+   */
+  public static FilterSelectivityStats getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the stats key for the given table and predicate.
+   */
+  public static String getKey(String tableName, String predicate) {
+    return tableName + '|' + predicate;
+  }
+
+  /**
+   * Returns the stats for the given key, or {@code null} if there is no stats or the stats are expired.
+   */
+  @Nullable
+  public Stats get(String key) {
+    return _statsCache.getIfPresent(key);
+  }
+
+  /**
+   * Records the stats sampled for the given key.
+   */
+  public void record(String key, double selectivity, double cost) {
+    _statsCache.put(key, new Stats(selectivity, cost));
+  }
+
+  @VisibleForTesting
+  long size() {
+    return _statsCache.size();
+  }
+
+  public static class Stats {
+    private final double _selectivity;
+    private final double _cost;
+
+    Stats(double selectivity, double cost) {
+      _selectivity = selectivity;
+      _cost = cost;
+    }
+
+    public double getSelectivity() {
+      return _selectivity;
+    }
+
+    public double getCost() {
+      return _cost;
+    }
+
+    /**
+     * Returns the rank of the predicate for AND evaluation, where the predicate with lower rank should be evaluated
+     * first. The rank of {@code cost / (1 - selectivity)} minimizes the expected cost of evaluating independent
+     * conjunctive predicates.
+     */
+    public double getRank() {
+      return _selectivity >= 1 ? Double.POSITIVE_INFINITY : _cost / (1 - _selectivity);
+    }
+  }
+}
@@ -65,6 +65,12 @@ public class ScanBasedFilterOperator extends BaseColumnFilterOperator {
     }
   }
 
+  /**
+   * Returns the key of the {@link FilterSelectivityStats} for this filter.
+   */
+  public String getSelectivityStatsKey() {
+    return FilterSelectivityStats.getKey(_queryContext.getTableName(), _predicateEvaluator.getPredicate().toString());
+  }
 
   @Override
   public List<Operator> getChildOperators() {
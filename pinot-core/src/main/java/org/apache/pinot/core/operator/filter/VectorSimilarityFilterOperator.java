@@ -22,6 +22,7 @@ import com.google.common.base.CaseFormat;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.request.context.predicate.VectorSimilarityPredicate;
 import org.apache.pinot.core.common.BlockDocIdSet;
 import org.apache.pinot.core.common.Operator;
@@ -52,20 +53,31 @@ public class VectorSimilarityFilterOperator extends BaseFilterOperator {
 
   private final VectorIndexReader _vectorIndexReader;
   private final VectorSimilarityPredicate _predicate;
+  private final Integer _numProbes;
   private ImmutableRoaringBitmap _matches;
 
   public VectorSimilarityFilterOperator(VectorIndexReader vectorIndexReader, VectorSimilarityPredicate predicate,
       int numDocs) {
+    this(vectorIndexReader, predicate, numDocs, null);
+  }
+
+  /**
+   * @param numProbes number of clusters to probe for the clustered vector indexes, or {@code null} to use the value
+   *                  configured in the index
+   */
+  public VectorSimilarityFilterOperator(VectorIndexReader vectorIndexReader, VectorSimilarityPredicate predicate,
+      int numDocs, @Nullable Integer numProbes) {
     super(numDocs, false);
     _vectorIndexReader = vectorIndexReader;
     _predicate = predicate;
+    _numProbes = numProbes;
     _matches = null;
   }
 
   @Override
   protected BlockDocIdSet getTrues() {
     if (_matches == null) {
-      _matches = _vectorIndexReader.getDocIds(_predicate.getValue(), _predicate.getTopK());
+      _matches = getMatches();
     }
     return new BitmapDocIdSet(_matches, _numDocs);
   }
@@ -73,7 +85,7 @@ public class VectorSimilarityFilterOperator extends BaseFilterOperator {
   @Override
   public int getNumMatchingDocs() {
     if (_matches == null) {
-      _matches = _vectorIndexReader.getDocIds(_predicate.getValue(), _predicate.getTopK());
+      _matches = getMatches();
     }
     return _matches.getCardinality();
   }
@@ -86,12 +98,17 @@ public class VectorSimilarityFilterOperator extends BaseFilterOperator {
   @Override
   public BitmapCollection getBitmaps() {
     if (_matches == null) {
-      _matches = _vectorIndexReader.getDocIds(_predicate.getValue(), _predicate.getTopK());
+      _matches = getMatches();
     }
     record(_matches);
     return new BitmapCollection(_numDocs, false, _matches);
   }
 
+  private ImmutableRoaringBitmap getMatches() {
+    return _numProbes != null ? _vectorIndexReader.getDocIds(_predicate.getValue(), _predicate.getTopK(), _numProbes)
+        : _vectorIndexReader.getDocIds(_predicate.getValue(), _predicate.getTopK());
+  }
+
   @Override
   public List<Operator> getChildOperators() {
     return Collections.emptyList();
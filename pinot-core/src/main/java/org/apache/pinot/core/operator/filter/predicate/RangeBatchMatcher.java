@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.filter.predicate;
+
+/**
+ * Branch-free batch evaluation of range predicates over a block of dictionary ids or raw values.
+ * <p>The per-value evaluation loop used by the predicate evaluators compacts the matching doc ids with a conditional
+ * branch, which is unpredictable when the selectivity is neither close to 0 nor to 1. The methods in this class always
+ * write the current doc id into the compaction slot and advance the slot by the result of the comparison, so that the
+ * loop body contains no data dependent branch, and both bounds are checked with a single comparison for integral
+ * types. All the bounds are inclusive.
+ */
+public class RangeBatchMatcher {
+  private RangeBatchMatcher() {
+  }
+
+  /**
+   * Compacts the doc ids with values within [lowerBound, upperBound] into the prefix of the doc ids array, and returns
+   * the number of matching doc ids.
+   */
+  public static int match(int limit, int[] docIds, int[] values, int lowerBound, int upperBound) {
+    if (lowerBound > upperBound) {
+      return 0;
+    }
+    // Check both bounds with a single unsigned comparison: value - lowerBound <= upperBound - lowerBound (unsigned),
+    // where unsigned comparison is done by flipping the sign bit
+    int flippedRange = (upperBound - lowerBound) ^ Integer.MIN_VALUE;
+    int matches = 0;
+    for (int i = 0; i < limit; i++) {
+      docIds[matches] = docIds[i];
+      matches += ((values[i] - lowerBound) ^ Integer.MIN_VALUE) <= flippedRange ? 1 : 0;
+    }
+    return matches;
+  }
+
+  /**
+   * Compacts the doc ids with values within [lowerBound, upperBound] into the prefix of the doc ids array, and returns
+   * the number of matching doc ids.
+   */
+  public static int match(int limit, int[] docIds, long[] values, long lowerBound, long upperBound) {
+    if (lowerBound > upperBound) {
+      return 0;
+    }
+    long flippedRange = (upperBound - lowerBound) ^ Long.MIN_VALUE;
+    int matches = 0;
+    for (int i = 0; i < limit; i++) {
+      docIds[matches] = docIds[i];
+      matches += ((values[i] - lowerBound) ^ Long.MIN_VALUE) <= flippedRange ? 1 : 0;
+    }
+    return matches;
+  }
+
+  /**
+   * Compacts the doc ids with values within [lowerBound, upperBound] into the prefix of the doc ids array, and returns
+   * the number of matching doc ids. NaN never matches.
+   */
+  public static int match(int limit, int[] docIds, float[] values, float lowerBound, float upperBound) {
+    int matches = 0;
+    for (int i = 0; i < limit; i++) {
+      float value = values[i];
+      docIds[matches] = docIds[i];
+      // Use non-short-circuit AND to avoid the branch
+      matches += (value >= lowerBound) & (value <= upperBound) ? 1 : 0;
+    }
+    return matches;
+  }
+
+  /**
+   * Compacts the doc ids with values within [lowerBound, upperBound] into the prefix of the doc ids array, and returns
+   * the number of matching doc ids. NaN never matches.
+   */
+  public static int match(int limit, int[] docIds, double[] values, double lowerBound, double upperBound) {
+    int matches = 0;
+    for (int i = 0; i < limit; i++) {
+      double value = values[i];
+      docIds[matches] = docIds[i];
+      // Use non-short-circuit AND to avoid the branch
+      matches += (value >= lowerBound) & (value <= upperBound) ? 1 : 0;
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.query;
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.BaseOperator;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
+import org.apache.pinot.core.plan.PlanNode;
+import org.apache.pinot.core.query.executor.SegmentResultsCache;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.IndexSegment;
+
+
+/**
+ * The {@code SegmentResultsCacheOperator} serves the segment-level results from the {@link SegmentResultsCache}.
+ * When the results are cached, the childPlanNode is not run, and the execution statistics recorded when the results
+ * were computed are returned. Otherwise, it runs the childPlanNode to get the childOperator, executes it, and caches
+ * the results before returning them (the combine operator can modify the intermediate results in place).
+ */
+@SuppressWarnings("unchecked")
+public class SegmentResultsCacheOperator extends BaseOperator<BaseResultsBlock> {
+  private static final String EXPLAIN_NAME = "SEGMENT_RESULTS_CACHE";
+
+  private final PlanNode _planNode;
+  private final IndexSegment _indexSegment;
+  private final QueryContext _queryContext;
+  private final SegmentResultsCache _segmentResultsCache;
+  private final SegmentResultsCache.CacheKey _cacheKey;
+
+  private Operator<BaseResultsBlock> _childOperator;
+  private ExecutionStatistics _cachedExecutionStatistics;
+
+  public SegmentResultsCacheOperator(PlanNode planNode, IndexSegment indexSegment, QueryContext queryContext,
+      SegmentResultsCache segmentResultsCache, SegmentResultsCache.CacheKey cacheKey) {
+    _planNode = planNode;
+    _indexSegment = indexSegment;
+    _queryContext = queryContext;
+    _segmentResultsCache = segmentResultsCache;
+    _cacheKey = cacheKey;
+  }
+
+  @Override
+  protected BaseResultsBlock getNextBlock() {
+    SegmentResultsCache.CachedResults cachedResults = _segmentResultsCache.get(_cacheKey, _queryContext);
+    if (cachedResults != null) {
+      _cachedExecutionStatistics = cachedResults.getExecutionStatistics();
+      return cachedResults.getResultsBlock();
+    }
+    _childOperator = (Operator<BaseResultsBlock>) _planNode.run();
+    BaseResultsBlock resultsBlock = _childOperator.nextBlock();
+    _segmentResultsCache.put(_cacheKey, resultsBlock, _childOperator.getExecutionStatistics());
+    return resultsBlock;
+  }
+
+  @Override
+  public String toExplainString() {
+    return EXPLAIN_NAME;
+  }
+
+  @Override
+  public List<Operator> getChildOperators() {
+    // The child operator is not built when the results are served from the cache
+    return _childOperator != null ? Collections.singletonList(_childOperator) : Collections.emptyList();
+  }
+
+  @Override
+  public IndexSegment getIndexSegment() {
+    return _indexSegment;
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    if (_cachedExecutionStatistics != null) {
+      return _cachedExecutionStatistics;
+    }
+    return _childOperator == null ? new ExecutionStatistics(0, 0, 0, 0) : _childOperator.getExecutionStatistics();
+  }
+}
@@ -27,6 +27,7 @@ import org.apache.pinot.common.function.JsonPathCache;
 import org.apache.pinot.core.operator.ColumnContext;
 import org.apache.pinot.core.operator.blocks.ValueBlock;
 import org.apache.pinot.core.operator.transform.TransformResultMetadata;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.segment.spi.index.reader.JsonIndexReader;
 import org.apache.pinot.spi.data.FieldSpec.DataType;
 import org.apache.pinot.spi.utils.JsonUtils;
@@ -38,6 +39,8 @@ import org.roaringbitmap.RoaringBitmap;
  * implementation changed to read values from the JSON index. For large JSON blobs this can be faster than parsing
  * GBs of JSON at query time. For small JSON blobs/highly filtered input this is generally slower than the *scalar
  * implementation. The inflection point is highly dependent on the number of docs remaining post filter.
+ * <p>For the single-value paths configured as typed paths in the JSON index with the same type as the result type, the
+ * values are read from the typed dictionary and forward index stored in the index instead of the posting lists.
  */
 public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
   public static final String FUNCTION_NAME = "jsonExtractIndex";
@@ -50,6 +53,8 @@ public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
   private Map<String, RoaringBitmap> _valueToMatchingDocsMap;
   private boolean _isSingleValue;
   private String _filterJsonPath;
+  private Dictionary _typedValueDictionary;
+  private int[] _typedValueDictIds;
 
   @Override
   public String getName() {
@@ -135,6 +140,13 @@ public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
     }
 
     _resultMetadata = new TransformResultMetadata(dataType, _isSingleValue, false);
+
+    if (_isSingleValue && _filterJsonPath == null) {
+      Dictionary typedValueDictionary = _jsonIndexReader.getTypedValueDictionary(_jsonPathString);
+      if (typedValueDictionary != null && typedValueDictionary.getValueType() == dataType) {
+        _typedValueDictionary = typedValueDictionary;
+      }
+    }
   }
 
   @Override
@@ -147,6 +159,10 @@ public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
     int numDocs = valueBlock.getNumDocs();
     int[] inputDocIds = valueBlock.getDocIds();
     initIntValuesSV(numDocs);
+    if (_typedValueDictionary != null) {
+      readTypedValues(valueBlock, DataType.INT, _intValuesSV);
+      return _intValuesSV;
+    }
     String[] valuesFromIndex = _jsonIndexReader.getValuesSV(valueBlock.getDocIds(), valueBlock.getNumDocs(),
         getValueToMatchingDocsMap(), false);
     for (int i = 0; i < numDocs; i++) {
@@ -169,6 +185,10 @@ public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
     int numDocs = valueBlock.getNumDocs();
     int[] inputDocIds = valueBlock.getDocIds();
     initLongValuesSV(numDocs);
+    if (_typedValueDictionary != null) {
+      readTypedValues(valueBlock, DataType.LONG, _longValuesSV);
+      return _longValuesSV;
+    }
     String[] valuesFromIndex = _jsonIndexReader.getValuesSV(valueBlock.getDocIds(), valueBlock.getNumDocs(),
         getValueToMatchingDocsMap(), false);
     for (int i = 0; i < numDocs; i++) {
@@ -191,6 +211,10 @@ public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
     int numDocs = valueBlock.getNumDocs();
     int[] inputDocIds = valueBlock.getDocIds();
     initFloatValuesSV(numDocs);
+    if (_typedValueDictionary != null) {
+      readTypedValues(valueBlock, DataType.FLOAT, _floatValuesSV);
+      return _floatValuesSV;
+    }
     String[] valuesFromIndex = _jsonIndexReader.getValuesSV(valueBlock.getDocIds(), valueBlock.getNumDocs(),
         getValueToMatchingDocsMap(), false);
     for (int i = 0; i < numDocs; i++) {
@@ -213,6 +237,10 @@ public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
     int numDocs = valueBlock.getNumDocs();
     int[] inputDocIds = valueBlock.getDocIds();
     initDoubleValuesSV(numDocs);
+    if (_typedValueDictionary != null) {
+      readTypedValues(valueBlock, DataType.DOUBLE, _doubleValuesSV);
+      return _doubleValuesSV;
+    }
     String[] valuesFromIndex = _jsonIndexReader.getValuesSV(valueBlock.getDocIds(), valueBlock.getNumDocs(),
         getValueToMatchingDocsMap(), false);
     for (int i = 0; i < numDocs; i++) {
@@ -257,6 +285,10 @@ public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
     int numDocs = valueBlock.getNumDocs();
     int[] inputDocIds = valueBlock.getDocIds();
     initStringValuesSV(numDocs);
+    if (_typedValueDictionary != null) {
+      readTypedValues(valueBlock, DataType.STRING, _stringValuesSV);
+      return _stringValuesSV;
+    }
     String[] valuesFromIndex = _jsonIndexReader.getValuesSV(valueBlock.getDocIds(), valueBlock.getNumDocs(),
         getValueToMatchingDocsMap(), false);
     for (int i = 0; i < numDocs; i++) {
@@ -408,6 +440,70 @@ public class JsonExtractIndexTransformFunction extends BaseTransformFunction {
     return _stringValuesMV;
   }
 
+  /**
+   * Reads the values of the typed path from the typed dictionary and forward index stored in the JSON index into the
+   * given values array of the given stored type, and replaces the missing values with the default value.
+   */
+  private void readTypedValues(ValueBlock valueBlock, DataType storedType, Object values) {
+    int numDocs = valueBlock.getNumDocs();
+    int[] inputDocIds = valueBlock.getDocIds();
+    if (_typedValueDictIds == null || _typedValueDictIds.length < numDocs) {
+      _typedValueDictIds = new int[numDocs];
+    }
+    int[] dictIds = _typedValueDictIds;
+    _jsonIndexReader.readTypedValueDictIds(_jsonPathString, inputDocIds, numDocs, dictIds);
+    for (int i = 0; i < numDocs; i++) {
+      if (dictIds[i] < 0 && _defaultValue == null) {
+        throw new RuntimeException(
+            String.format("Illegal Json Path: [%s], for docId [%s]", _jsonPathString, inputDocIds[i]));
+      }
+    }
+    switch (storedType) {
+      case INT: {
+        int[] intValues = (int[]) values;
+        for (int i = 0; i < numDocs; i++) {
+          int dictId = dictIds[i];
+          intValues[i] = dictId >= 0 ? _typedValueDictionary.getIntValue(dictId) : (int) _defaultValue;
+        }
+        break;
+      }
+      case LONG: {
+        long[] longValues = (long[]) values;
+        for (int i = 0; i < numDocs; i++) {
+          int dictId = dictIds[i];
+          longValues[i] = dictId >= 0 ? _typedValueDictionary.getLongValue(dictId) : (long) _defaultValue;
+        }
+        break;
+      }
+      case FLOAT: {
+        float[] floatValues = (float[]) values;
+        for (int i = 0; i < numDocs; i++) {
+          int dictId = dictIds[i];
+          floatValues[i] = dictId >= 0 ? _typedValueDictionary.getFloatValue(dictId) : (float) _defaultValue;
+        }
+        break;
+      }
+      case DOUBLE: {
+        double[] doubleValues = (double[]) values;
+        for (int i = 0; i < numDocs; i++) {
+          int dictId = dictIds[i];
+          doubleValues[i] = dictId >= 0 ? _typedValueDictionary.getDoubleValue(dictId) : (double) _defaultValue;
+        }
+        break;
+      }
+      case STRING: {
+        String[] stringValues = (String[]) values;
+        for (int i = 0; i < numDocs; i++) {
+          int dictId = dictIds[i];
+          stringValues[i] = dictId >= 0 ? _typedValueDictionary.getStringValue(dictId) : (String) _defaultValue;
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported stored type for typed JSON path: " + storedType);
+    }
+  }
+
   /**
    * Lazily initialize _valueToMatchingDocsMap, so that map generation is skipped when filtering excludes all values
    */
@@ -33,6 +33,7 @@ import org.apache.pinot.common.request.context.predicate.RegexpLikePredicate;
 import org.apache.pinot.common.request.context.predicate.TextContainsPredicate;
 import org.apache.pinot.common.request.context.predicate.TextMatchPredicate;
 import org.apache.pinot.common.request.context.predicate.VectorSimilarityPredicate;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
 import org.apache.pinot.core.geospatial.transform.function.StDistanceFunction;
 import org.apache.pinot.core.operator.filter.BaseFilterOperator;
 import org.apache.pinot.core.operator.filter.BitmapBasedFilterOperator;
@@ -49,12 +50,14 @@ import org.apache.pinot.core.operator.filter.VectorSimilarityFilterOperator;
 import org.apache.pinot.core.operator.filter.predicate.FSTBasedRegexpPredicateEvaluatorFactory;
 import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
 import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
+import org.apache.pinot.core.operator.transform.function.ItemTransformFunction;
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.segment.local.realtime.impl.invertedindex.NativeMutableTextIndex;
 import org.apache.pinot.segment.local.segment.index.readers.text.NativeTextIndexReader;
 import org.apache.pinot.segment.spi.IndexSegment;
 import org.apache.pinot.segment.spi.SegmentContext;
 import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.segment.spi.datasource.MapDataSource;
 import org.apache.pinot.segment.spi.index.reader.JsonIndexReader;
 import org.apache.pinot.segment.spi.index.reader.NullValueVectorReader;
 import org.apache.pinot.segment.spi.index.reader.TextIndexReader;
@@ -189,6 +192,46 @@ public class FilterPlanNode implements PlanNode {
     }
   }
 
+  /**
+   * Returns the data source of the map key when the predicate can be evaluated directly on it, or {@code null}
+   * otherwise. This is the case iff:
+   * <ul>
+   *   <li>Predicate is of type EQ, NOT_EQ, IN, NOT_IN or RANGE</li>
+   *   <li>Left-hand-side of the predicate is an ITEM function on a map column identifier and a key literal</li>
+   *   <li>The key is stored as a dictionary-encoded sub-column in the map index of the segment</li>
+   * </ul>
+   * The documents without the key hold the default null value of the value type in the sub-column, same as the value
+   * returned by the ITEM function for them, so NOT_EQ and NOT_IN also match these documents.
+   */
+  @Nullable
+  private DataSource getDictionaryEncodedMapKeyDataSource(Predicate predicate, FunctionContext function) {
+    switch (predicate.getType()) {
+      case EQ:
+      case NOT_EQ:
+      case IN:
+      case NOT_IN:
+      case RANGE:
+        break;
+      default:
+        return null;
+    }
+    if (!function.getFunctionName().equals(ItemTransformFunction.FUNCTION_NAME)) {
+      return null;
+    }
+    List<ExpressionContext> arguments = function.getArguments();
+    if (arguments.size() != 2 || arguments.get(0).getType() != ExpressionContext.Type.IDENTIFIER
+        || arguments.get(1).getType() != ExpressionContext.Type.LITERAL) {
+      return null;
+    }
+    DataSource dataSource = _indexSegment.getDataSource(arguments.get(0).getIdentifier());
+    if (!(dataSource instanceof MapDataSource)) {
+      return null;
+    }
+    DataSource keyDataSource =
+        ((MapDataSource) dataSource).getKeyDataSource(arguments.get(1).getLiteral().getStringValue());
+    return keyDataSource != null && keyDataSource.getDictionary() != null ? keyDataSource : null;
+  }
+
   /**
    * Helper method to build the operator tree from the filter.
    */
@@ -235,10 +278,17 @@ public class FilterPlanNode implements PlanNode {
             return new H3IndexFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
           } else if (canApplyH3IndexForInclusionCheck(predicate, lhs.getFunction())) {
             return new H3InclusionIndexFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
-          } else {
-            // TODO: ExpressionFilterOperator does not support predicate types without PredicateEvaluator (TEXT_MATCH)
-            return new ExpressionFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
           }
+          DataSource mapKeyDataSource = getDictionaryEncodedMapKeyDataSource(predicate, lhs.getFunction());
+          if (mapKeyDataSource != null) {
+            PredicateEvaluator predicateEvaluator =
+                PredicateEvaluatorProvider.getPredicateEvaluator(predicate, mapKeyDataSource, _queryContext);
+            _predicateEvaluators.add(Pair.of(predicate, predicateEvaluator));
+            return FilterOperatorUtils.getLeafFilterOperator(_queryContext, predicateEvaluator, mapKeyDataSource,
+                numDocs);
+          }
+          // TODO: ExpressionFilterOperator does not support predicate types without PredicateEvaluator (TEXT_MATCH)
+          return new ExpressionFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
         } else {
           String column = lhs.getIdentifier();
           DataSource dataSource = _indexSegment.getDataSource(column);
@@ -290,7 +340,8 @@ public class FilterPlanNode implements PlanNode {
               VectorIndexReader vectorIndex = dataSource.getVectorIndex();
               Preconditions.checkState(vectorIndex != null,
                   "Cannot apply VECTOR_SIMILARITY on column: %s without vector index", column);
-              return new VectorSimilarityFilterOperator(vectorIndex, (VectorSimilarityPredicate) predicate, numDocs);
+              return new VectorSimilarityFilterOperator(vectorIndex, (VectorSimilarityPredicate) predicate, numDocs,
+                  QueryOptionsUtils.getVectorNprobe(_queryContext.getQueryOptions()));
             case IS_NULL:
               NullValueVectorReader nullValueVector = dataSource.getNullValueVector();
               if (nullValueVector != null) {
@@ -20,19 +20,23 @@ package org.apache.pinot.core.plan.maker;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.common.request.context.ExpressionContext;
 import org.apache.pinot.common.request.context.FilterContext;
 import org.apache.pinot.common.request.context.OrderByExpressionContext;
 import org.apache.pinot.common.request.context.predicate.Predicate;
 import org.apache.pinot.common.utils.config.QueryOptionsUtils;
+import org.apache.pinot.core.data.table.SpillingIndexedTable;
 import org.apache.pinot.core.plan.AcquireReleaseColumnsSegmentPlanNode;
 import org.apache.pinot.core.plan.AggregationPlanNode;
 import org.apache.pinot.core.plan.CombinePlanNode;
@@ -42,11 +46,13 @@ import org.apache.pinot.core.plan.GroupByPlanNode;
 import org.apache.pinot.core.plan.InstanceResponsePlanNode;
 import org.apache.pinot.core.plan.Plan;
 import org.apache.pinot.core.plan.PlanNode;
+import org.apache.pinot.core.plan.SegmentResultsCachePlanNode;
 import org.apache.pinot.core.plan.SelectionPlanNode;
 import org.apache.pinot.core.plan.StreamingInstanceResponsePlanNode;
 import org.apache.pinot.core.plan.StreamingSelectionPlanNode;
 import org.apache.pinot.core.plan.TimeSeriesPlanNode;
 import org.apache.pinot.core.query.executor.ResultsBlockStreamer;
+import org.apache.pinot.core.query.executor.SegmentResultsCache;
 import org.apache.pinot.core.query.prefetch.FetchPlanner;
 import org.apache.pinot.core.query.prefetch.FetchPlannerRegistry;
 import org.apache.pinot.core.query.request.context.QueryContext;
@@ -89,6 +95,12 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   // set as pinot.server.query.executor.groupby.trim.threshold
   public static final String GROUPBY_TRIM_THRESHOLD_KEY = "groupby.trim.threshold";
   public static final int DEFAULT_GROUPBY_TRIM_THRESHOLD = 1_000_000;
+  // Instance config key for the directory to spill the groups for server combine when enabled with query option
+  // Set as pinot.server.query.executor.groupby.spill.dir
+  public static final String GROUPBY_SPILL_DIR_KEY = "groupby.spill.dir";
+  // Id of the server instance, used to scope the spill files to the instance because the spill directory can be shared
+  // by multiple servers on the same host. Set by the query executor.
+  public static final String INSTANCE_ID_KEY = "instance.id";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(InstancePlanMakerImplV2.class);
 
@@ -102,6 +114,7 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   private int _minSegmentGroupTrimSize = DEFAULT_MIN_SEGMENT_GROUP_TRIM_SIZE;
   private int _minServerGroupTrimSize = DEFAULT_MIN_SERVER_GROUP_TRIM_SIZE;
   private int _groupByTrimThreshold = DEFAULT_GROUPBY_TRIM_THRESHOLD;
+  private File _groupBySpillDir = getDefaultGroupBySpillDir();
 
   public InstancePlanMakerImplV2() {
   }
@@ -127,6 +140,14 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     _groupByTrimThreshold = queryExecutorConfig.getProperty(GROUPBY_TRIM_THRESHOLD_KEY, DEFAULT_GROUPBY_TRIM_THRESHOLD);
     Preconditions.checkState(_groupByTrimThreshold > 0,
         "Invalid configurable: groupByTrimThreshold: %d must be positive", _groupByTrimThreshold);
+    String groupBySpillDir = queryExecutorConfig.getProperty(GROUPBY_SPILL_DIR_KEY);
+    _groupBySpillDir = groupBySpillDir != null ? new File(groupBySpillDir) : getDefaultGroupBySpillDir();
+    String instanceId = queryExecutorConfig.getProperty(INSTANCE_ID_KEY);
+    if (instanceId != null) {
+      // Only the spill directory owned by this instance can be cleaned up, other instances might still be using theirs
+      _groupBySpillDir = new File(_groupBySpillDir, instanceId);
+      SpillingIndexedTable.deleteOrphanSpillFiles(_groupBySpillDir);
+    }
     LOGGER.info("Initialized plan maker with maxExecutionThreads: {}, maxInitialResultHolderCapacity: {}, "
             + "numGroupsLimit: {}, minSegmentGroupTrimSize: {}, minServerGroupTrimSize: {}, groupByTrimThreshold: {}",
         _maxExecutionThreads, _maxInitialResultHolderCapacity, _numGroupsLimit, _minSegmentGroupTrimSize,
@@ -167,6 +188,11 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
       ExecutorService executorService, ServerMetrics serverMetrics) {
     applyQueryOptions(queryContext);
 
+    // Segment-level results cache is only used when it is enabled on the server and requested by the query
+    SegmentResultsCache segmentResultsCache = SegmentResultsCache.get();
+    String queryFingerprint =
+        segmentResultsCache != null ? SegmentResultsCache.getQueryFingerprint(queryContext) : null;
+
     int numSegments = segmentContexts.size();
     List<PlanNode> planNodes = new ArrayList<>(numSegments);
     List<FetchContext> fetchContexts;
@@ -176,14 +202,14 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
         FetchContext fetchContext =
             _fetchPlanner.planFetchForProcessing(segmentContext.getIndexSegment(), queryContext);
         fetchContexts.add(fetchContext);
-        planNodes.add(
-            new AcquireReleaseColumnsSegmentPlanNode(makeSegmentPlanNode(segmentContext, queryContext), segmentContext,
-                fetchContext));
+        planNodes.add(new AcquireReleaseColumnsSegmentPlanNode(
+            makeCachedSegmentPlanNode(segmentContext, queryContext, segmentResultsCache, queryFingerprint),
+            segmentContext, fetchContext));
       }
     } else {
       fetchContexts = Collections.emptyList();
       for (SegmentContext segmentContext : segmentContexts) {
-        planNodes.add(makeSegmentPlanNode(segmentContext, queryContext));
+        planNodes.add(makeCachedSegmentPlanNode(segmentContext, queryContext, segmentResultsCache, queryFingerprint));
       }
     }
 
@@ -192,6 +218,21 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
         new InstanceResponsePlanNode(combinePlanNode, segmentContexts, fetchContexts, queryContext));
   }
 
+  private PlanNode makeCachedSegmentPlanNode(SegmentContext segmentContext, QueryContext queryContext,
+      @Nullable SegmentResultsCache segmentResultsCache, @Nullable String queryFingerprint) {
+    PlanNode segmentPlanNode = makeSegmentPlanNode(segmentContext, queryContext);
+    if (queryFingerprint == null) {
+      return segmentPlanNode;
+    }
+    SegmentResultsCache.CacheKey cacheKey =
+        SegmentResultsCache.getCacheKey(queryContext.getTableName(), queryFingerprint, segmentContext);
+    if (cacheKey == null) {
+      return segmentPlanNode;
+    }
+    return new SegmentResultsCachePlanNode(segmentPlanNode, segmentContext, queryContext, segmentResultsCache,
+        cacheKey);
+  }
+
   private void applyQueryOptions(QueryContext queryContext) {
     Map<String, String> queryOptions = queryContext.getQueryOptions();
 
@@ -263,9 +304,19 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
       } else {
         queryContext.setGroupTrimThreshold(_groupByTrimThreshold);
       }
+      // Set groupBySpillThreshold
+      Integer groupBySpillThreshold = QueryOptionsUtils.getGroupBySpillThreshold(queryOptions);
+      if (groupBySpillThreshold != null) {
+        queryContext.setGroupBySpillThreshold(groupBySpillThreshold);
+        queryContext.setGroupBySpillDir(_groupBySpillDir);
+      }
     }
   }
 
+  private static File getDefaultGroupBySpillDir() {
+    return new File(FileUtils.getTempDirectory(), "pinot-groupby-spill");
+  }
+
   @Override
   public PlanNode makeSegmentPlanNode(SegmentContext segmentContext, QueryContext queryContext) {
     rewriteQueryContextWithHints(queryContext, segmentContext.getIndexSegment());
@@ -0,0 +1,502 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.executor;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.datatable.DataTableFactory;
+import org.apache.pinot.common.metrics.ServerGauge;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.data.table.IntermediateRecord;
+import org.apache.pinot.core.data.table.Key;
+import org.apache.pinot.core.data.table.Record;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.results.AggregationResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.GroupByResultsBlock;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
+import org.apache.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
+import org.apache.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.query.request.context.utils.QueryContextUtils;
+import org.apache.pinot.core.util.DataTableRowUtils;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.SegmentContext;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The {@code SegmentResultsCache} caches the segment level {@link AggregationResultsBlock} and
+ * {@link GroupByResultsBlock} for immutable segments, so that repeated queries can skip executing the segment plan.
+ * <p>Each entry is keyed by the table name, the segment name, the segment CRC and the canonicalized
+ * {@link QueryContext}. The results are serialized into a {@link DataTable} with intermediate results, and stored in
+ * off-heap memory. The cache is bounded by the total size of the serialized results and evicts the least recently used
+ * entries first. Entries for a segment are invalidated when the segment is replaced or offloaded.
+ * <p>The cache is opt-in: it is enabled with the server config
+ * {@link ServerQueryExecutorV1Impl#SEGMENT_RESULTS_CACHE_MAX_SIZE_BYTES}, and queries should set the
+ * {@link QueryOptionKey#USE_RESULT_CACHE} query option to use it.
+ */
+@ThreadSafe
+public class SegmentResultsCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultsCache.class);
+
+  // Query options that do not affect the segment level results
+  private static final Set<String> VOLATILE_QUERY_OPTIONS =
+      Set.of(QueryOptionKey.TIMEOUT_MS, QueryOptionKey.USE_RESULT_CACHE, Request.TRACE,
+          QueryOptionKey.MAX_EXECUTION_THREADS, QueryOptionKey.MAX_SERVER_RESPONSE_SIZE_BYTES,
+          QueryOptionKey.MAX_QUERY_RESPONSE_SIZE_BYTES, QueryOptionKey.SKIP_UNAVAILABLE_SERVERS,
+          QueryOptionKey.IS_SECONDARY_WORKLOAD, QueryOptionKey.APPLICATION_NAME,
+          QueryOptionKey.SERVER_RETURN_FINAL_RESULT, QueryOptionKey.SERVER_RETURN_FINAL_RESULT_KEY_UNPARTITIONED);
+
+  private static volatile SegmentResultsCache _instance;
+
+  private final long _maxSizeInBytes;
+  private final ServerMetrics _serverMetrics;
+
+  // NOTE: All the following fields are guarded by the lock of this object
+  private final LinkedHashMap<CacheKey, CacheEntry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+  // Map from table name with type to segment name to the cache keys for the segment
+  private final Map<String, Map<String, Set<CacheKey>>> _segmentToKeysMap = new HashMap<>();
+  private long _sizeInBytes;
+
+  public SegmentResultsCache(long maxSizeInBytes, ServerMetrics serverMetrics) {
+    _maxSizeInBytes = maxSizeInBytes;
+    _serverMetrics = serverMetrics;
+    _serverMetrics.setOrUpdateGlobalGauge(ServerGauge.SEGMENT_RESULTS_CACHE_SIZE_BYTES, this::getSizeInBytes);
+  }
+
+  /**
+   * Registers the server level cache instance. Pass {@code null} to disable the cache.
+   */
+  public static void register(@Nullable SegmentResultsCache segmentResultsCache) {
+    SegmentResultsCache previousInstance = _instance;
+    _instance = segmentResultsCache;
+    if (previousInstance != null && previousInstance != segmentResultsCache) {
+      previousInstance.clear();
+    }
+  }
+
+  /**
+   * Returns the server level cache instance, or {@code null} if the cache is not enabled.
+   */
+  @Nullable
+  public static SegmentResultsCache get() {
+    return _instance;
+  }
+
+  /**
+   * Returns the canonicalized query fingerprint if the segment level results of the query can be cached, or
+   * {@code null} otherwise. Only aggregation (with or without group-by) queries are cached.
+   * <p>NOTE: This method should be called after the query options are applied to the query context.
+   */
+  @Nullable
+  public static String getQueryFingerprint(QueryContext queryContext) {
+    Map<String, String> queryOptions = queryContext.getQueryOptions();
+    if (queryOptions == null || !Boolean.parseBoolean(queryOptions.get(QueryOptionKey.USE_RESULT_CACHE))
+        || queryContext.isExplain() || !QueryContextUtils.isAggregationQuery(queryContext)
+        || QueryContextUtils.isTimeSeriesQuery(queryContext)) {
+      return null;
+    }
+    Map<String, String> sortedQueryOptions = new TreeMap<>(queryOptions);
+    sortedQueryOptions.keySet().removeAll(VOLATILE_QUERY_OPTIONS);
+    StringBuilder stringBuilder = new StringBuilder();
+    stringBuilder.append("select:").append(queryContext.getSelectExpressions());
+    stringBuilder.append("|filter:").append(queryContext.getFilter());
+    stringBuilder.append("|groupBy:").append(queryContext.getGroupByExpressions());
+    stringBuilder.append("|orderBy:").append(queryContext.getOrderByExpressions());
+    stringBuilder.append("|limit:").append(queryContext.getLimit());
+    stringBuilder.append("|numGroupsLimit:").append(queryContext.getNumGroupsLimit());
+    stringBuilder.append("|minSegmentGroupTrimSize:").append(queryContext.getMinSegmentGroupTrimSize());
+    stringBuilder.append("|nullHandling:").append(queryContext.isNullHandlingEnabled());
+    stringBuilder.append("|hints:").append(queryContext.getExpressionOverrideHints());
+    stringBuilder.append("|options:").append(sortedQueryOptions);
+    return stringBuilder.toString();
+  }
+
+  /**
+   * Returns the cache key for the given segment, or {@code null} if the results of the segment cannot be cached (only
+   * immutable segments without valid doc ids (upsert/dedup) are cached).
+   */
+  @Nullable
+  public static CacheKey getCacheKey(String tableNameWithType, String queryFingerprint,
+      SegmentContext segmentContext) {
+    IndexSegment indexSegment = segmentContext.getIndexSegment();
+    if (!(indexSegment instanceof ImmutableSegment) || indexSegment.getValidDocIds() != null
+        || indexSegment.getQueryableDocIds() != null || segmentContext.getQueryableDocIdsSnapshot() != null) {
+      return null;
+    }
+    String crc = indexSegment.getSegmentMetadata().getCrc();
+    if (crc == null) {
+      return null;
+    }
+    return new CacheKey(tableNameWithType, indexSegment.getSegmentName(), crc, queryFingerprint);
+  }
+
+  /**
+   * Returns the cached results for the given key, or {@code null} if it is not cached.
+   */
+  @Nullable
+  public CachedResults get(CacheKey key, QueryContext queryContext) {
+    byte[] bytes;
+    ExecutionStatistics executionStatistics;
+    synchronized (this) {
+      CacheEntry entry = _entries.get(key);
+      if (entry == null) {
+        _serverMetrics.addMeteredGlobalValue(ServerMeter.SEGMENT_RESULTS_CACHE_MISSES, 1);
+        return null;
+      }
+      // Copy the bytes to heap within the lock so that the off-heap buffer won't be released during the copy
+      bytes = new byte[(int) entry._dataBuffer.size()];
+      entry._dataBuffer.copyTo(0, bytes);
+      executionStatistics = entry._executionStatistics;
+    }
+    try {
+      BaseResultsBlock resultsBlock = deserialize(DataTableFactory.getDataTable(bytes), queryContext);
+      _serverMetrics.addMeteredGlobalValue(ServerMeter.SEGMENT_RESULTS_CACHE_HITS, 1);
+      return new CachedResults(resultsBlock, executionStatistics);
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while deserializing cached results for segment: {} of table: {}, invalidating "
+          + "the entry", key._segmentName, key._tableNameWithType, e);
+      synchronized (this) {
+        removeEntry(key);
+      }
+      _serverMetrics.addMeteredGlobalValue(ServerMeter.SEGMENT_RESULTS_CACHE_MISSES, 1);
+      return null;
+    }
+  }
+
+  /**
+   * Caches the results for the given key. Results that cannot be serialized or are larger than the cache size are not
+   * cached.
+   * <p>NOTE: This method must be called before the results block is merged by the combine operator because the merge
+   *          can modify the intermediate results in place.
+   */
+  public void put(CacheKey key, BaseResultsBlock resultsBlock, ExecutionStatistics executionStatistics) {
+    byte[] bytes;
+    try {
+      DataTable dataTable = serialize(resultsBlock);
+      if (dataTable == null) {
+        return;
+      }
+      bytes = dataTable.toBytes();
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while serializing results for segment: {} of table: {}, skipping caching it",
+          key._segmentName, key._tableNameWithType, e);
+      return;
+    }
+    if (bytes.length > _maxSizeInBytes) {
+      return;
+    }
+    PinotDataBuffer dataBuffer = PinotDataBuffer.allocateDirect(bytes.length, ByteOrder.BIG_ENDIAN,
+        "SegmentResultsCache: " + key._tableNameWithType + "." + key._segmentName);
+    dataBuffer.readFrom(0, bytes);
+    CacheEntry entry = new CacheEntry(dataBuffer, executionStatistics);
+    synchronized (this) {
+      removeEntry(key);
+      _entries.put(key, entry);
+      _sizeInBytes += bytes.length;
+      _segmentToKeysMap.computeIfAbsent(key._tableNameWithType, k -> new HashMap<>())
+          .computeIfAbsent(key._segmentName, k -> new HashSet<>()).add(key);
+      int numEvicted = 0;
+      Iterator<Map.Entry<CacheKey, CacheEntry>> iterator = _entries.entrySet().iterator();
+      while (_sizeInBytes > _maxSizeInBytes && iterator.hasNext()) {
+        Map.Entry<CacheKey, CacheEntry> eldestEntry = iterator.next();
+        iterator.remove();
+        onEntryRemoved(eldestEntry.getKey(), eldestEntry.getValue());
+        numEvicted++;
+      }
+      if (numEvicted > 0) {
+        _serverMetrics.addMeteredGlobalValue(ServerMeter.SEGMENT_RESULTS_CACHE_EVICTIONS, numEvicted);
+      }
+    }
+  }
+
+  /**
+   * Invalidates all the entries for the given segment (called when the segment is replaced or offloaded).
+   */
+  public synchronized void invalidateSegment(String tableNameWithType, String segmentName) {
+    Map<String, Set<CacheKey>> segmentToKeys = _segmentToKeysMap.get(tableNameWithType);
+    if (segmentToKeys == null) {
+      return;
+    }
+    Set<CacheKey> keys = segmentToKeys.get(segmentName);
+    if (keys != null) {
+      for (CacheKey key : new ArrayList<>(keys)) {
+        removeEntry(key);
+      }
+    }
+  }
+
+  /**
+   * Removes all the entries and releases the off-heap memory.
+   */
+  public synchronized void clear() {
+    for (CacheEntry entry : _entries.values()) {
+      closeQuietly(entry._dataBuffer);
+    }
+    _entries.clear();
+    _segmentToKeysMap.clear();
+    _sizeInBytes = 0;
+  }
+
+  @VisibleForTesting
+  public synchronized int getNumEntries() {
+    return _entries.size();
+  }
+
+  public synchronized long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  private void removeEntry(CacheKey key) {
+    CacheEntry entry = _entries.remove(key);
+    if (entry != null) {
+      onEntryRemoved(key, entry);
+    }
+  }
+
+  /**
+   * Releases the off-heap memory and updates the segment index after the entry is removed from the entries map.
+   */
+  private void onEntryRemoved(CacheKey key, CacheEntry entry) {
+    _sizeInBytes -= entry._dataBuffer.size();
+    closeQuietly(entry._dataBuffer);
+    Map<String, Set<CacheKey>> segmentToKeys = _segmentToKeysMap.get(key._tableNameWithType);
+    if (segmentToKeys != null) {
+      Set<CacheKey> keys = segmentToKeys.get(key._segmentName);
+      if (keys != null) {
+        keys.remove(key);
+        if (keys.isEmpty()) {
+          segmentToKeys.remove(key._segmentName);
+          if (segmentToKeys.isEmpty()) {
+            _segmentToKeysMap.remove(key._tableNameWithType);
+          }
+        }
+      }
+    }
+  }
+
+  private static void closeQuietly(PinotDataBuffer dataBuffer) {
+    try {
+      dataBuffer.close();
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while closing the cached results buffer", e);
+    }
+  }
+
+  /**
+   * Serializes the segment level results block into a data table with intermediate results, or returns {@code null}
+   * if the results block is not supported.
+   */
+  @VisibleForTesting
+  @Nullable
+  static DataTable serialize(BaseResultsBlock resultsBlock)
+      throws IOException {
+    if (resultsBlock instanceof AggregationResultsBlock) {
+      AggregationResultsBlock aggregationResultsBlock = (AggregationResultsBlock) resultsBlock;
+      AggregationFunction[] aggregationFunctions = aggregationResultsBlock.getAggregationFunctions();
+      int numColumns = aggregationFunctions.length;
+      String[] columnNames = new String[numColumns];
+      ColumnDataType[] columnDataTypes = new ColumnDataType[numColumns];
+      for (int i = 0; i < numColumns; i++) {
+        columnNames[i] = aggregationFunctions[i].getResultColumnName();
+        columnDataTypes[i] = aggregationFunctions[i].getIntermediateResultColumnType();
+      }
+      List<Object> results = aggregationResultsBlock.getResults();
+      List<Object[]> rows = results.isEmpty() ? List.of() : List.<Object[]>of(results.toArray());
+      return DataTableRowUtils.buildDataTable(new DataSchema(columnNames, columnDataTypes), rows.iterator());
+    }
+    if (resultsBlock instanceof GroupByResultsBlock) {
+      GroupByResultsBlock groupByResultsBlock = (GroupByResultsBlock) resultsBlock;
+      if (groupByResultsBlock.getTable() != null) {
+        // Instance level results are not expected from segment level operators
+        return null;
+      }
+      DataSchema dataSchema = groupByResultsBlock.getDataSchema();
+      int numColumns = dataSchema.size();
+      Iterator<Object[]> rowIterator;
+      if (groupByResultsBlock.getIntermediateRecords() != null) {
+        Iterator<IntermediateRecord> recordIterator = groupByResultsBlock.getIntermediateRecords().iterator();
+        rowIterator = new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return recordIterator.hasNext();
+          }
+
+          @Override
+          public Object[] next() {
+            return recordIterator.next()._record.getValues();
+          }
+        };
+      } else if (groupByResultsBlock.getAggregationGroupByResult() != null) {
+        AggregationGroupByResult aggregationGroupByResult = groupByResultsBlock.getAggregationGroupByResult();
+        Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = aggregationGroupByResult.getGroupKeyIterator();
+        rowIterator = new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return groupKeyIterator.hasNext();
+          }
+
+          @Override
+          public Object[] next() {
+            GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+            Object[] keys = groupKey._keys;
+            Object[] values = Arrays.copyOf(keys, numColumns);
+            for (int i = keys.length; i < numColumns; i++) {
+              values[i] = aggregationGroupByResult.getResultForGroupId(i - keys.length, groupKey._groupId);
+            }
+            return values;
+          }
+        };
+      } else {
+        rowIterator = List.<Object[]>of().iterator();
+      }
+      DataTable dataTable = DataTableRowUtils.buildDataTable(dataSchema, rowIterator);
+      if (dataTable != null && groupByResultsBlock.isNumGroupsLimitReached()) {
+        dataTable.getMetadata().put(DataTable.MetadataKey.NUM_GROUPS_LIMIT_REACHED.getName(), "true");
+      }
+      return dataTable;
+    }
+    return null;
+  }
+
+  /**
+   * Deserializes the data table back into a segment level results block for the given query.
+   */
+  @VisibleForTesting
+  static BaseResultsBlock deserialize(DataTable dataTable, QueryContext queryContext) {
+    DataSchema dataSchema = dataTable.getDataSchema();
+    List<Object[]> rows = DataTableRowUtils.extractRows(dataTable);
+    int numRows = rows.size();
+
+    if (queryContext.getGroupByExpressions() == null) {
+      AggregationFunction[] aggregationFunctions = queryContext.getAggregationFunctions();
+      assert aggregationFunctions != null;
+      List<Object> results = numRows == 0 ? new ArrayList<>() : new ArrayList<>(Arrays.asList(rows.get(0)));
+      return new AggregationResultsBlock(aggregationFunctions, results, queryContext);
+    } else {
+      int numGroupByExpressions = queryContext.getGroupByExpressions().size();
+      List<IntermediateRecord> intermediateRecords = new ArrayList<>(numRows);
+      for (Object[] values : rows) {
+        intermediateRecords.add(
+            IntermediateRecord.create(new Key(Arrays.copyOf(values, numGroupByExpressions)), new Record(values)));
+      }
+      GroupByResultsBlock resultsBlock = new GroupByResultsBlock(dataSchema, intermediateRecords, queryContext);
+      resultsBlock.setNumGroupsLimitReached(
+          Boolean.parseBoolean(dataTable.getMetadata().get(DataTable.MetadataKey.NUM_GROUPS_LIMIT_REACHED.getName())));
+      return resultsBlock;
+    }
+  }
+
+  /**
+   * Key of the cache entry.
+   */
+  public static class CacheKey {
+    private final String _tableNameWithType;
+    private final String _segmentName;
+    private final String _segmentCrc;
+    private final String _queryFingerprint;
+    private final int _hashCode;
+
+    CacheKey(String tableNameWithType, String segmentName, String segmentCrc, String queryFingerprint) {
+      _tableNameWithType = tableNameWithType;
+      _segmentName = segmentName;
+      _segmentCrc = segmentCrc;
+      _queryFingerprint = queryFingerprint;
+      _hashCode = Objects.hash(tableNameWithType, segmentName, segmentCrc, queryFingerprint);
+    }
+
+    public String getSegmentName() {
+      return _segmentName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey that = (CacheKey) o;
+      return _hashCode == that._hashCode && _tableNameWithType.equals(that._tableNameWithType)
+          && _segmentName.equals(that._segmentName) && _segmentCrc.equals(that._segmentCrc)
+          && _queryFingerprint.equals(that._queryFingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  /**
+   * The cached segment level results along with the execution statistics when the results were computed.
+   */
+  public static class CachedResults {
+    private final BaseResultsBlock _resultsBlock;
+    private final ExecutionStatistics _executionStatistics;
+
+    CachedResults(BaseResultsBlock resultsBlock, ExecutionStatistics executionStatistics) {
+      _resultsBlock = resultsBlock;
+      _executionStatistics = executionStatistics;
+    }
+
+    public BaseResultsBlock getResultsBlock() {
+      return _resultsBlock;
+    }
+
+    public ExecutionStatistics getExecutionStatistics() {
+      return _executionStatistics;
+    }
+  }
+
+  private static class CacheEntry {
+    final PinotDataBuffer _dataBuffer;
+    final ExecutionStatistics _executionStatistics;
+
+    CacheEntry(PinotDataBuffer dataBuffer, ExecutionStatistics executionStatistics) {
+      _dataBuffer = dataBuffer;
+      _executionStatistics = executionStatistics;
+    }
+  }
+}
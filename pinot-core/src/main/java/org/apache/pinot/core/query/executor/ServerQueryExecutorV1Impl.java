@@ -59,6 +59,7 @@ import org.apache.pinot.core.operator.blocks.results.ExplainV2ResultBlock;
 import org.apache.pinot.core.operator.blocks.results.ResultsBlockUtils;
 import org.apache.pinot.core.plan.ExplainInfo;
 import org.apache.pinot.core.plan.Plan;
+import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import org.apache.pinot.core.plan.maker.PlanMaker;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
 import org.apache.pinot.core.query.config.QueryExecutorConfig;
@@ -93,6 +94,8 @@ import org.slf4j.LoggerFactory;
 @ThreadSafe
 public class ServerQueryExecutorV1Impl implements QueryExecutor {
   public static final String ENABLE_PREFETCH = "enable.prefetch";
+  // Max size of the off-heap segment-level results cache, 0 (default) to disable the cache
+  public static final String SEGMENT_RESULTS_CACHE_MAX_SIZE_BYTES = "segment.results.cache.max.size.bytes";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ServerQueryExecutorV1Impl.class);
   private static final String IN_PARTITIONED_SUBQUERY = "inPartitionedSubquery";
@@ -120,11 +123,20 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     } catch (Exception e) {
       throw new RuntimeException("Caught exception while creating PlanMaker with class: " + planMakerClass);
     }
+    // Scope the plan maker resources (e.g. group-by spill files) to this instance
+    String instanceId = instanceDataManager != null ? instanceDataManager.getInstanceId() : null;
+    if (instanceId != null && !config.containsKey(InstancePlanMakerImplV2.INSTANCE_ID_KEY)) {
+      config.setProperty(InstancePlanMakerImplV2.INSTANCE_ID_KEY, instanceId);
+    }
     _planMaker.init(config);
     _defaultTimeoutMs = queryExecutorConfig.getTimeOut();
     _enablePrefetch = Boolean.parseBoolean(config.getProperty(ENABLE_PREFETCH));
-    LOGGER.info("Initialized query executor with defaultTimeoutMs: {}, enablePrefetch: {}", _defaultTimeoutMs,
-        _enablePrefetch);
+    long segmentResultsCacheMaxSizeBytes = config.getProperty(SEGMENT_RESULTS_CACHE_MAX_SIZE_BYTES, 0L);
+    SegmentResultsCache.register(
+        segmentResultsCacheMaxSizeBytes > 0 ? new SegmentResultsCache(segmentResultsCacheMaxSizeBytes, serverMetrics)
+            : null);
+    LOGGER.info("Initialized query executor with defaultTimeoutMs: {}, enablePrefetch: {}, "
+        + "segmentResultsCacheMaxSizeBytes: {}", _defaultTimeoutMs, _enablePrefetch, segmentResultsCacheMaxSizeBytes);
   }
 
   @Override
@@ -134,6 +146,7 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
 
   @Override
   public synchronized void shutDown() {
+    SegmentResultsCache.register(null);
     LOGGER.info("Query executor shut down");
   }
 
@@ -123,6 +123,12 @@ public class ServerQueryLogger {
     long resizeTimeMs = getLongValue(responseMetadata, MetadataKey.RESIZE_TIME_MS.getName(), -1);
     addToTableMeter(tableNameWithType, ServerMeter.RESIZE_TIME_MS, resizeTimeMs);
 
+    long numGroupBySpills = getLongValue(responseMetadata, MetadataKey.NUM_GROUP_BY_SPILLS.getName(), -1);
+    addToTableMeter(tableNameWithType, ServerMeter.NUM_GROUP_BY_SPILLS, numGroupBySpills);
+
+    long groupBySpilledBytes = getLongValue(responseMetadata, MetadataKey.GROUP_BY_SPILLED_BYTES.getName(), -1);
+    addToTableMeter(tableNameWithType, ServerMeter.GROUP_BY_SPILLED_BYTES, groupBySpilledBytes);
+
     long threadCpuTimeNs = getLongValue(responseMetadata, MetadataKey.THREAD_CPU_TIME_NS.getName(), 0);
     if (threadCpuTimeNs > 0) {
       _serverMetrics.addTimedTableValue(tableNameWithType, ServerTimer.EXECUTION_THREAD_CPU_TIME_NS, threadCpuTimeNs,
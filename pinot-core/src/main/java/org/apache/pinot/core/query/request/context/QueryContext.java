@@ -19,6 +19,7 @@
 package org.apache.pinot.core.query.request.context;
 
 import com.google.common.base.Preconditions;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -124,6 +125,10 @@ public class QueryContext {
   private int _minServerGroupTrimSize = InstancePlanMakerImplV2.DEFAULT_MIN_SERVER_GROUP_TRIM_SIZE;
   // Trim threshold to use for server combine for SQL GROUP BY
   private int _groupTrimThreshold = InstancePlanMakerImplV2.DEFAULT_GROUPBY_TRIM_THRESHOLD;
+  // Number of groups to keep in memory for server combine before spilling them to disk, non-positive means disabled
+  private int _groupBySpillThreshold;
+  // Directory to spill the groups for server combine
+  private File _groupBySpillDir;
   // Whether null handling is enabled
   private boolean _nullHandlingEnabled;
   // Whether server returns the final result
@@ -410,6 +415,22 @@ public class QueryContext {
     _groupTrimThreshold = groupTrimThreshold;
   }
 
+  public int getGroupBySpillThreshold() {
+    return _groupBySpillThreshold;
+  }
+
+  public void setGroupBySpillThreshold(int groupBySpillThreshold) {
+    _groupBySpillThreshold = groupBySpillThreshold;
+  }
+
+  public File getGroupBySpillDir() {
+    return _groupBySpillDir;
+  }
+
+  public void setGroupBySpillDir(File groupBySpillDir) {
+    _groupBySpillDir = groupBySpillDir;
+  }
+
   public boolean isNullHandlingEnabled() {
     return _nullHandlingEnabled;
   }
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.scheduler;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Tracks the total query time of all the queries served by the server, so that other components (e.g. the adaptive
+ * consumption rate limiter) can derive the average query latency over their own sampling interval from the difference
+ * of two samples.
+ */
+public class QueryLatencyTracker {
+  private static final QueryLatencyTracker INSTANCE = new QueryLatencyTracker();
+
+  private final LongAdder _numQueries = new LongAdder();
+  private final LongAdder _totalQueryTimeMs = new LongAdder();
+
+  public static QueryLatencyTracker getInstance() {
+    return INSTANCE;
+  }
+
+  public void record(long queryTimeMs) {
+    _numQueries.increment();
+    _totalQueryTimeMs.add(queryTimeMs);
+  }
+
+  public long getNumQueries() {
+    return _numQueries.sum();
+  }
+
+  public long getTotalQueryTimeMs() {
+    return _totalQueryTimeMs.sum();
+  }
+}
@@ -234,8 +234,10 @@ public abstract class QueryScheduler {
     }
 
     responseSerializationTimer.stopAndRecord();
-    timerContext.startNewPhaseTimer(ServerQueryPhase.TOTAL_QUERY_TIME, timerContext.getQueryArrivalTimeMs())
-        .stopAndRecord();
+    TimerContext.Timer totalQueryTimer =
+        timerContext.startNewPhaseTimer(ServerQueryPhase.TOTAL_QUERY_TIME, timerContext.getQueryArrivalTimeMs());
+    totalQueryTimer.stopAndRecord();
+    QueryLatencyTracker.getInstance().record(totalQueryTimer.getDurationMs());
 
     return responseByte;
   }
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.common.ObjectSerDeUtils;
+import org.apache.pinot.core.common.datatable.DataTableBuilder;
+import org.apache.pinot.core.common.datatable.DataTableBuilderFactory;
+import org.apache.pinot.spi.utils.ByteArray;
+import org.roaringbitmap.RoaringBitmap;
+
+
+/**
+ * Utils to convert rows of intermediate results (group-by keys and intermediate aggregation results) to and from
+ * {@link DataTable}, used when the rows need to be stored outside of the heap (e.g. cached or spilled to disk).
+ */
+public class DataTableRowUtils {
+  private DataTableRowUtils() {
+  }
+
+  /**
+   * Builds a data table from the given rows, or returns {@code null} if the data schema contains array columns, which
+   * are not supported. {@code null} values are stored with the null placeholder and tracked in the null bitmaps.
+   */
+  @Nullable
+  public static DataTable buildDataTable(DataSchema dataSchema, Iterator<Object[]> rowIterator)
+      throws IOException {
+    ColumnDataType[] storedColumnDataTypes = dataSchema.getStoredColumnDataTypes();
+    int numColumns = storedColumnDataTypes.length;
+    for (ColumnDataType storedColumnDataType : storedColumnDataTypes) {
+      if (storedColumnDataType.isArray()) {
+        return null;
+      }
+    }
+    DataTableBuilder dataTableBuilder = DataTableBuilderFactory.getDataTableBuilder(dataSchema);
+    RoaringBitmap[] nullBitmaps = new RoaringBitmap[numColumns];
+    for (int colId = 0; colId < numColumns; colId++) {
+      nullBitmaps[colId] = new RoaringBitmap();
+    }
+    int rowId = 0;
+    while (rowIterator.hasNext()) {
+      Object[] values = rowIterator.next();
+      dataTableBuilder.startRow();
+      for (int colId = 0; colId < numColumns; colId++) {
+        ColumnDataType storedColumnDataType = storedColumnDataTypes[colId];
+        Object value = values[colId];
+        if (value == null && storedColumnDataType != ColumnDataType.OBJECT) {
+          value = storedColumnDataType.getNullPlaceholder();
+          nullBitmaps[colId].add(rowId);
+        }
+        switch (storedColumnDataType) {
+          case INT:
+            dataTableBuilder.setColumn(colId, ((Number) value).intValue());
+            break;
+          case LONG:
+            dataTableBuilder.setColumn(colId, ((Number) value).longValue());
+            break;
+          case FLOAT:
+            dataTableBuilder.setColumn(colId, ((Number) value).floatValue());
+            break;
+          case DOUBLE:
+            dataTableBuilder.setColumn(colId, ((Number) value).doubleValue());
+            break;
+          case BIG_DECIMAL:
+            dataTableBuilder.setColumn(colId, (BigDecimal) value);
+            break;
+          case STRING:
+            dataTableBuilder.setColumn(colId, value.toString());
+            break;
+          case BYTES:
+            dataTableBuilder.setColumn(colId, (ByteArray) value);
+            break;
+          case OBJECT:
+            dataTableBuilder.setColumn(colId, value);
+            break;
+          default:
+            return null;
+        }
+      }
+      dataTableBuilder.finishRow();
+      rowId++;
+    }
+    for (RoaringBitmap nullBitmap : nullBitmaps) {
+      dataTableBuilder.setNullRowIds(nullBitmap);
+    }
+    return dataTableBuilder.build();
+  }
+
+  /**
+   * Extracts the rows from the given data table built with {@link #buildDataTable(DataSchema, Iterator)}.
+   */
+  public static List<Object[]> extractRows(DataTable dataTable) {
+    DataSchema dataSchema = dataTable.getDataSchema();
+    ColumnDataType[] storedColumnDataTypes = dataSchema.getStoredColumnDataTypes();
+    int numColumns = storedColumnDataTypes.length;
+    int numRows = dataTable.getNumberOfRows();
+    RoaringBitmap[] nullBitmaps = new RoaringBitmap[numColumns];
+    for (int colId = 0; colId < numColumns; colId++) {
+      nullBitmaps[colId] = dataTable.getNullRowIds(colId);
+    }
+    List<Object[]> rows = new ArrayList<>(numRows);
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      Object[] values = new Object[numColumns];
+      for (int colId = 0; colId < numColumns; colId++) {
+        if (nullBitmaps[colId] != null && nullBitmaps[colId].contains(rowId)) {
+          continue;
+        }
+        switch (storedColumnDataTypes[colId]) {
+          case INT:
+            values[colId] = dataTable.getInt(rowId, colId);
+            break;
+          case LONG:
+            values[colId] = dataTable.getLong(rowId, colId);
+            break;
+          case FLOAT:
+            values[colId] = dataTable.getFloat(rowId, colId);
+            break;
+          case DOUBLE:
+            values[colId] = dataTable.getDouble(rowId, colId);
+            break;
+          case BIG_DECIMAL:
+            values[colId] = dataTable.getBigDecimal(rowId, colId);
+            break;
+          case STRING:
+            values[colId] = dataTable.getString(rowId, colId);
+            break;
+          case BYTES:
+            values[colId] = dataTable.getBytes(rowId, colId);
+            break;
+          case OBJECT:
+            DataTable.CustomObject customObject = dataTable.getCustomObject(rowId, colId);
+            values[colId] = customObject != null ? ObjectSerDeUtils.deserialize(customObject) : null;
+            break;
+          default:
+            throw new IllegalStateException("Unsupported stored type: " + storedColumnDataTypes[colId]);
+        }
+      }
+      rows.add(values);
+    }
+    return rows;
+  }
+}
@@ -19,12 +19,16 @@
 package org.apache.pinot.core.util;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
 import org.apache.pinot.common.datatable.DataTable;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.HashUtil;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
 import org.apache.pinot.core.data.table.ConcurrentIndexedTable;
 import org.apache.pinot.core.data.table.IndexedTable;
+import org.apache.pinot.core.data.table.OffHeapIndexedTable;
 import org.apache.pinot.core.data.table.SimpleIndexedTable;
+import org.apache.pinot.core.data.table.SpillingIndexedTable;
 import org.apache.pinot.core.data.table.UnboundedConcurrentIndexedTable;
 import org.apache.pinot.core.operator.blocks.results.GroupByResultsBlock;
 import org.apache.pinot.core.query.reduce.DataTableReducerContext;
@@ -101,6 +105,8 @@ public final class GroupByUtils {
     boolean hasHaving = queryContext.getHavingFilter() != null;
     int minTrimSize = queryContext.getMinServerGroupTrimSize();
     int minInitialIndexedTableCapacity = queryContext.getMinInitialIndexedTableCapacity();
+    boolean useOffHeapIndexedTable = QueryOptionsUtils.isUseOffHeapIndexedTable(queryContext.getQueryOptions())
+        && OffHeapIndexedTable.isSupported(dataSchema, queryContext);
 
     // Disable trim when min trim size is non-positive
     int trimSize = minTrimSize > 0 ? getTableCapacity(limit, minTrimSize) : Integer.MAX_VALUE;
@@ -118,6 +124,10 @@ public final class GroupByUtils {
         resultSize = limit;
       }
       int initialCapacity = getIndexedTableInitialCapacity(resultSize, numGroups, minInitialIndexedTableCapacity);
+      if (useOffHeapIndexedTable) {
+        return new OffHeapIndexedTable(dataSchema, queryContext, resultSize, Integer.MAX_VALUE, Integer.MAX_VALUE,
+            initialCapacity, numThreads);
+      }
       return getTrimDisabledIndexedTable(dataSchema, false, queryContext, resultSize, initialCapacity, numThreads);
     }
 
@@ -128,8 +138,20 @@ public final class GroupByUtils {
     } else {
       resultSize = trimSize;
     }
+    int groupBySpillThreshold = queryContext.getGroupBySpillThreshold();
+    File groupBySpillDir = queryContext.getGroupBySpillDir();
+    if (groupBySpillThreshold > 0 && groupBySpillDir != null && SpillingIndexedTable.isSupported(dataSchema)) {
+      int initialCapacity =
+          getIndexedTableInitialCapacity(groupBySpillThreshold, numGroups, minInitialIndexedTableCapacity);
+      return new SpillingIndexedTable(dataSchema, queryContext, resultSize, trimSize, groupBySpillThreshold,
+          initialCapacity, groupBySpillDir);
+    }
     int trimThreshold = getIndexedTableTrimThreshold(trimSize, queryContext.getGroupTrimThreshold());
     int initialCapacity = getIndexedTableInitialCapacity(trimThreshold, numGroups, minInitialIndexedTableCapacity);
+    if (useOffHeapIndexedTable) {
+      return new OffHeapIndexedTable(dataSchema, queryContext, resultSize, trimSize, trimThreshold, initialCapacity,
+          numThreads);
+    }
     if (trimThreshold == Integer.MAX_VALUE) {
       return getTrimDisabledIndexedTable(dataSchema, false, queryContext, resultSize, initialCapacity, numThreads);
     } else {
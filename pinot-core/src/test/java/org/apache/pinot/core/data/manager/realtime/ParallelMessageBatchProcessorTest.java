@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.manager.realtime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.pinot.segment.local.segment.creator.TransformPipeline;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.recordtransformer.RecordTransformer;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.StreamDataDecoder;
+import org.apache.pinot.spi.stream.StreamDataDecoderResult;
+import org.apache.pinot.spi.stream.StreamMessage;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class ParallelMessageBatchProcessorTest {
+  private static final int NUM_THREADS = 4;
+
+  private final ExecutorService _executorService = Executors.newFixedThreadPool(NUM_THREADS);
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdownNow();
+  }
+
+  @Test
+  public void testProcessInOffsetOrder() {
+    int numMessages = 1000;
+    ParallelMessageBatchProcessor processor = new ParallelMessageBatchProcessor(NUM_THREADS, _executorService,
+        ParallelMessageBatchProcessorTest::createDecoder, TransformPipeline::getPassThroughPipeline);
+    try {
+      ParallelMessageBatchProcessor.ProcessedMessageBatch processedMessageBatch =
+          processor.submit(createMessageBatch(numMessages));
+      assertNotNull(processedMessageBatch);
+      for (int i = 0; i < numMessages; i++) {
+        ParallelMessageBatchProcessor.ProcessedMessage processedMessage = processedMessageBatch.getProcessedMessage(i);
+        if (i % 7 == 0) {
+          // Decode error
+          assertNotNull(processedMessage.getDecodedRow().getException());
+          assertNull(processedMessage.getTransformResult());
+          continue;
+        }
+        assertNull(processedMessage.getTransformException());
+        List<GenericRow> transformedRows = processedMessage.getTransformResult().getTransformedRows();
+        assertEquals(transformedRows.size(), 1);
+        assertEquals(transformedRows.get(0).getValue("value"), i);
+      }
+    } finally {
+      processor.shutDown();
+    }
+  }
+
+  @Test
+  public void testTransformFailureOnlyAbandonsItsOwnMessage() {
+    int numMessages = 1000;
+    // Fail the transformation of the values divisible by 11, which fails the transform batches containing them
+    RecordTransformer recordTransformer = record -> {
+      if ((int) record.getValue("value") % 11 == 0) {
+        throw new IllegalStateException("Failed to transform: " + record);
+      }
+      return record;
+    };
+    ParallelMessageBatchProcessor processor = new ParallelMessageBatchProcessor(NUM_THREADS, _executorService,
+        ParallelMessageBatchProcessorTest::createDecoder, () -> new TransformPipeline(recordTransformer, null));
+    try {
+      ParallelMessageBatchProcessor.ProcessedMessageBatch processedMessageBatch =
+          processor.submit(createMessageBatch(numMessages));
+      assertNotNull(processedMessageBatch);
+      for (int i = 0; i < numMessages; i++) {
+        ParallelMessageBatchProcessor.ProcessedMessage processedMessage = processedMessageBatch.getProcessedMessage(i);
+        if (i % 7 == 0) {
+          assertNotNull(processedMessage.getDecodedRow().getException());
+        } else if (i % 11 == 0) {
+          assertNotNull(processedMessage.getTransformException());
+        } else {
+          assertNull(processedMessage.getTransformException());
+          List<GenericRow> transformedRows = processedMessage.getTransformResult().getTransformedRows();
+          assertEquals(transformedRows.size(), 1);
+          assertEquals(transformedRows.get(0).getValue("value"), i);
+        }
+      }
+    } finally {
+      processor.shutDown();
+    }
+  }
+
+  @Test
+  public void testSmallBatchNotProcessedInParallel() {
+    ParallelMessageBatchProcessor processor = new ParallelMessageBatchProcessor(NUM_THREADS, _executorService,
+        ParallelMessageBatchProcessorTest::createDecoder, TransformPipeline::getPassThroughPipeline);
+    try {
+      assertNull(processor.submit(createMessageBatch(ParallelMessageBatchProcessor.MIN_MESSAGES_PER_SLICE)));
+    } finally {
+      processor.shutDown();
+    }
+  }
+
+  @Test
+  public void testCancelRunningSlices()
+      throws Exception {
+    int numMessages = 1000;
+    // Block the decoders on the first message of each slice until the batch is cancelled
+    CountDownLatch slicesStarted = new CountDownLatch(NUM_THREADS);
+    CountDownLatch batchCancelled = new CountDownLatch(1);
+    AtomicInteger numDecodedMessages = new AtomicInteger();
+    ParallelMessageBatchProcessor processor = new ParallelMessageBatchProcessor(NUM_THREADS, _executorService, () -> {
+      StreamDataDecoder decoder = createDecoder();
+      return message -> {
+        if (numDecodedMessages.getAndIncrement() < NUM_THREADS) {
+          slicesStarted.countDown();
+          try {
+            batchCancelled.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return decoder.decode(message);
+      };
+    }, TransformPipeline::getPassThroughPipeline);
+    try {
+      ParallelMessageBatchProcessor.ProcessedMessageBatch processedMessageBatch =
+          processor.submit(createMessageBatch(numMessages));
+      assertNotNull(processedMessageBatch);
+      assertTrue(slicesStarted.await(10, TimeUnit.SECONDS));
+      processedMessageBatch.cancel();
+      batchCancelled.countDown();
+
+      // The running slices should stop after the current transform batch, and free the message processors for the next
+      // batch
+      processedMessageBatch = processor.submit(createMessageBatch(numMessages));
+      assertNotNull(processedMessageBatch);
+      for (int i = 0; i < numMessages; i++) {
+        assertNotNull(processedMessageBatch.getProcessedMessage(i));
+      }
+      assertEquals(numDecodedMessages.get(),
+          NUM_THREADS * ParallelMessageBatchProcessor.MAX_MESSAGES_PER_TRANSFORM_BATCH + numMessages);
+    } finally {
+      processor.shutDown();
+    }
+  }
+
+  private static MessageBatch<byte[]> createMessageBatch(int numMessages) {
+    MessageBatch<byte[]> messageBatch = mock(MessageBatch.class);
+    when(messageBatch.getMessageCount()).thenReturn(numMessages);
+    when(messageBatch.getStreamMessage(anyInt())).thenAnswer(invocation -> {
+      byte[] value = Integer.toString(invocation.<Integer>getArgument(0)).getBytes(StandardCharsets.UTF_8);
+      return new StreamMessage<>(value, value.length);
+    });
+    return messageBatch;
+  }
+
+  private static StreamDataDecoder createDecoder() {
+    return message -> {
+      int value = Integer.parseInt(new String((byte[]) message.getValue(), StandardCharsets.UTF_8));
+      if (value % 7 == 0) {
+        return new StreamDataDecoderResult(null, new RuntimeException("Failed to decode: " + value));
+      }
+      // A new row is created for each message
+      GenericRow row = new GenericRow();
+      row.putValue("value", value);
+      return new StreamDataDecoderResult(row, null);
+    };
+  }
+}
@@ -23,10 +23,17 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.pinot.common.metrics.ServerGauge;
 import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.core.query.scheduler.QueryLatencyTracker;
 import org.apache.pinot.spi.env.PinotConfiguration;
 import org.apache.pinot.spi.stream.StreamConfig;
 import org.apache.pinot.spi.utils.CommonConstants;
@@ -208,6 +215,94 @@ public class RealtimeConsumptionRateManagerTest {
     assertEquals(metricEmitter.emitMetric(numMsgs[0], rateLimit, now), expectedRatio);
   }
 
+  @Test
+  public void testCreateAdaptiveServerRateLimiter() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT, 1000.0);
+    properties.put(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ENABLED, true);
+    properties.put(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_MIN_RATIO, 0.2);
+    ConsumptionRateLimiter rateLimiter =
+        _consumptionRateManager.createServerRateLimiter(new PinotConfiguration(properties), null);
+    AdaptiveRateLimiterImpl adaptiveRateLimiter = (AdaptiveRateLimiterImpl) rateLimiter;
+    assertEquals(adaptiveRateLimiter.getMaxRate(), 1000.0, DELTA);
+    assertEquals(adaptiveRateLimiter.getMinRate(), 200.0, DELTA);
+    assertEquals(adaptiveRateLimiter.getRate(), 1000.0, DELTA);
+  }
+
+  @Test
+  public void testAdaptiveRateLimiter() {
+    AtomicInteger resourcePressure = new AtomicInteger(ResourcePressureSampler.HEAP_USAGE_PRESSURE);
+    ServerMetrics serverMetrics = mock(ServerMetrics.class);
+    AdaptiveRateLimiterImpl rateLimiter =
+        new AdaptiveRateLimiterImpl(1000, 100, 0.5, 100, 1000, resourcePressure::get, serverMetrics,
+            new MetricEmitter(serverMetrics, "server"));
+    assertEquals(rateLimiter.getRate(), 1000, DELTA);
+
+    // Under pressure, the rate should be decreased multiplicatively from the lower of the rate and the actual rate
+    rateLimiter.throttle(2000);
+    rateLimiter.adjustRate(1000);
+    assertEquals(rateLimiter.getRate(), 500, DELTA);
+    assertEquals(rateLimiter.getResourcePressure(), ResourcePressureSampler.HEAP_USAGE_PRESSURE);
+    verify(serverMetrics).setValueOfGlobalGauge(ServerGauge.ADAPTIVE_CONSUMPTION_RATE_LIMIT, 500L);
+    verify(serverMetrics).setValueOfGlobalGauge(ServerGauge.ADAPTIVE_CONSUMPTION_RESOURCE_PRESSURE,
+        ResourcePressureSampler.HEAP_USAGE_PRESSURE);
+    rateLimiter.throttle(300);
+    rateLimiter.adjustRate(1000);
+    assertEquals(rateLimiter.getRate(), 150, DELTA);
+
+    // The rate should not go below the min rate
+    rateLimiter.adjustRate(1000);
+    assertEquals(rateLimiter.getRate(), 100, DELTA);
+    rateLimiter.adjustRate(1000);
+    assertEquals(rateLimiter.getRate(), 100, DELTA);
+
+    // Without pressure, the rate should be increased additively up to the max rate
+    resourcePressure.set(0);
+    for (int i = 2; i <= 10; i++) {
+      rateLimiter.adjustRate(1000);
+      assertEquals(rateLimiter.getRate(), i * 100, DELTA);
+    }
+    assertEquals(rateLimiter.getResourcePressure(), 0);
+    rateLimiter.adjustRate(1000);
+    assertEquals(rateLimiter.getRate(), 1000, DELTA);
+  }
+
+  @Test
+  public void testResourcePressureSampler() {
+    QueryLatencyTracker queryLatencyTracker = new QueryLatencyTracker();
+    queryLatencyTracker.record(1000);
+    AtomicReference<Double> heapUsageRatio = new AtomicReference<>(0.5);
+    AtomicLong directMemoryUsage = new AtomicLong(100);
+    ResourcePressureSampler sampler =
+        new ResourcePressureSampler(100, queryLatencyTracker, 0.75, heapUsageRatio::get, 1000, directMemoryUsage::get);
+    // Queries before the sampler is created should be ignored
+    assertEquals(sampler.getAsInt(), 0);
+
+    // The average query latency since the last sample is above the threshold
+    queryLatencyTracker.record(50);
+    queryLatencyTracker.record(250);
+    assertEquals(sampler.getAsInt(), ResourcePressureSampler.QUERY_LATENCY_PRESSURE);
+    // No query since the last sample
+    assertEquals(sampler.getAsInt(), 0);
+    queryLatencyTracker.record(50);
+    queryLatencyTracker.record(100);
+    assertEquals(sampler.getAsInt(), 0);
+
+    heapUsageRatio.set(0.8);
+    assertEquals(sampler.getAsInt(), ResourcePressureSampler.HEAP_USAGE_PRESSURE);
+    directMemoryUsage.set(2000);
+    assertEquals(sampler.getAsInt(),
+        ResourcePressureSampler.HEAP_USAGE_PRESSURE | ResourcePressureSampler.DIRECT_MEMORY_PRESSURE);
+    heapUsageRatio.set(0.7);
+    directMemoryUsage.set(500);
+    assertEquals(sampler.getAsInt(), 0);
+
+    // Signals with non-positive threshold are disabled
+    sampler = new ResourcePressureSampler(0, queryLatencyTracker, 0, () -> 1.0, 0, () -> Long.MAX_VALUE);
+    queryLatencyTracker.record(10000);
+    assertEquals(sampler.getAsInt(), 0);
+  }
+
   private int calcExpectedRatio(double rateLimitInMinutes, int sumOfMsgsInPrevMinute) {
     return (int) Math.round(sumOfMsgsInPrevMinute / rateLimitInMinutes * 100);
   }
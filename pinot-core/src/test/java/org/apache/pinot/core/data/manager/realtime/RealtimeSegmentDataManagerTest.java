@@ -53,6 +53,7 @@ import org.apache.pinot.segment.local.realtime.impl.RealtimeSegmentStatsHistory;
 import org.apache.pinot.segment.local.segment.creator.Fixtures;
 import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
 import org.apache.pinot.segment.local.utils.SegmentLocks;
+import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.spi.config.instance.InstanceDataManagerConfig;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.data.Schema;
@@ -75,6 +76,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -682,6 +685,8 @@ public class RealtimeSegmentDataManagerTest {
     Assert.assertTrue(segmentDataManager._buildSegmentCalled);
     Assert.assertFalse(segmentDataManager.invokeCommit());
     Assert.assertTrue(segmentTarFile.exists());
+    // The sealed segment should not be swapped in before the commit succeeds
+    verify(segmentDataManager._realtimeTableDataManager, never()).replaceConsumingSegment(anyString());
 
     segmentDataManager._buildSegmentCalled = false;
 
@@ -692,6 +697,48 @@ public class RealtimeSegmentDataManagerTest {
     Assert.assertTrue(segmentTarFile.exists());
     Assert.assertTrue(segmentDataManager.invokeCommit());
     Assert.assertFalse(segmentTarFile.exists());
+    verify(segmentDataManager._realtimeTableDataManager).replaceConsumingSegment(segmentDataManager.getSegmentName());
+    segmentDataManager.close();
+  }
+
+  // The sealed segment memory mapped when building the segment should be swapped in without loading it again after the
+  // commit succeeds, and should be released if it is not swapped in.
+  @Test
+  public void testSwapInSealedSegment()
+      throws Exception {
+    FakeRealtimeSegmentDataManager segmentDataManager = createFakeSegmentManager();
+
+    SegmentCompletionProtocol.Response.Params params = new SegmentCompletionProtocol.Response.Params();
+    params.withStatus(SegmentCompletionProtocol.ControllerResponseStatus.COMMIT_SUCCESS);
+    SegmentCompletionProtocol.Response commitSuccess = new SegmentCompletionProtocol.Response(params);
+    params.withStatus(SegmentCompletionProtocol.ControllerResponseStatus.FAILED);
+    SegmentCompletionProtocol.Response commitFailed = new SegmentCompletionProtocol.Response(params);
+    segmentDataManager._responses.add(commitFailed);
+    segmentDataManager._responses.add(commitSuccess);
+    final long leaseTime = 50000L;
+
+    // The sealed segment should be kept when the commit fails, and swapped in when the commit succeeds
+    ImmutableSegment sealedSegment = mock(ImmutableSegment.class);
+    segmentDataManager._sealedSegment = sealedSegment;
+    segmentDataManager.invokeBuildForCommit(leaseTime);
+    Assert.assertFalse(segmentDataManager.invokeCommit());
+    verify(segmentDataManager._realtimeTableDataManager, never()).replaceConsumingSegment(any(ImmutableSegment.class));
+    verify(sealedSegment, never()).destroy();
+    Assert.assertTrue(segmentDataManager.invokeCommit());
+    verify(segmentDataManager._realtimeTableDataManager).replaceConsumingSegment(sealedSegment);
+    verify(segmentDataManager._realtimeTableDataManager, never()).replaceConsumingSegment(anyString());
+    verify(sealedSegment, never()).destroy();
+    segmentDataManager.close();
+
+    // The sealed segment should be released when the built segment is dropped without being swapped in
+    segmentDataManager = createFakeSegmentManager();
+    sealedSegment = mock(ImmutableSegment.class);
+    segmentDataManager._sealedSegment = sealedSegment;
+    RealtimeSegmentDataManager.SegmentBuildDescriptor segmentBuildDescriptor =
+        segmentDataManager.invokeBuildForCommit(leaseTime);
+    segmentBuildDescriptor.deleteSegmentFile();
+    verify(sealedSegment).destroy();
+    Assert.assertNull(segmentBuildDescriptor.takeSealedSegment());
     segmentDataManager.close();
   }
 
@@ -919,6 +966,8 @@ public class RealtimeSegmentDataManagerTest {
     public boolean _postConsumeStoppedCalled = false;
     public Map<Integer, Semaphore> _semaphoreMap;
     public boolean _stubConsumeLoop = true;
+    public RealtimeTableDataManager _realtimeTableDataManager;
+    public ImmutableSegment _sealedSegment;
     private TimeSupplier _timeSupplier;
     private boolean _indexCapacityThresholdBreached;
 
@@ -951,6 +1000,7 @@ public class RealtimeSegmentDataManagerTest {
       _streamMsgOffsetFactory.setAccessible(true);
       _streamMsgOffsetFactory.set(this, new LongMsgOffsetFactory());
       _timeSupplier = timeSupplier;
+      _realtimeTableDataManager = realtimeTableDataManager;
     }
 
     public String getStopReason() {
@@ -1062,7 +1112,7 @@ public class RealtimeSegmentDataManagerTest {
       } catch (IOException e) {
         Assert.fail("Could not create file " + segmentTarFile);
       }
-      return new SegmentBuildDescriptor(segmentTarFile, null, getCurrentOffset(), 0, 0, -1);
+      return new SegmentBuildDescriptor(segmentTarFile, null, getCurrentOffset(), 0, 0, -1, _sealedSegment);
     }
 
     @Override
@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.query.request.context.utils.QueryContextConverterUtils;
+import org.apache.pinot.segment.local.customobject.AvgPair;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class OffHeapIndexedTableTest {
+  private static final String QUERY_PREFIX =
+      "SELECT SUM(m1), MAX(m2), COUNT(*), MIN(m3), AVG(m4) FROM testTable GROUP BY d1, d2, d3, d4";
+  private static final int NUM_RECORDS = 10_000;
+
+  @Test
+  public void testIsSupported() {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(QUERY_PREFIX);
+    assertTrue(OffHeapIndexedTable.isSupported(getDataSchema(), queryContext));
+
+    DataSchema stringKeyDataSchema = new DataSchema(new String[]{"d1", "sum(m1)"},
+        new ColumnDataType[]{ColumnDataType.STRING, ColumnDataType.DOUBLE});
+    assertFalse(OffHeapIndexedTable.isSupported(stringKeyDataSchema,
+        QueryContextConverterUtils.getQueryContext("SELECT SUM(m1) FROM testTable GROUP BY d1")));
+
+    queryContext.setNullHandlingEnabled(true);
+    assertFalse(OffHeapIndexedTable.isSupported(getDataSchema(), queryContext));
+  }
+
+  @DataProvider
+  public static Object[][] numThreads() {
+    return new Object[][]{{1}, {4}};
+  }
+
+  @Test(dataProvider = "numThreads")
+  public void testOrderByWithTrim(int numThreads) {
+    // NOTE: Order on all the group-by columns as well to get a deterministic result after trimming
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(
+        QUERY_PREFIX + " ORDER BY SUM(m1) DESC, d1, d2, d3, d4 LIMIT 10");
+    IndexedTable expectedTable = new SimpleIndexedTable(getDataSchema(), false, queryContext, 20, 20, 50, 16);
+    IndexedTable actualTable = new OffHeapIndexedTable(getDataSchema(), queryContext, 20, 20, 50, 16, numThreads);
+    for (Record record : getRecords(new Random(0))) {
+      expectedTable.upsert(copy(record));
+      actualTable.upsert(copy(record));
+    }
+    assertTrue(actualTable.getNumResizes() > 0);
+    expectedTable.finish(true, true);
+    actualTable.finish(true, true);
+
+    assertEquals(actualTable.size(), expectedTable.size());
+    List<Record> expectedRecords = new ArrayList<>();
+    expectedTable.iterator().forEachRemaining(expectedRecords::add);
+    List<Record> actualRecords = new ArrayList<>();
+    actualTable.iterator().forEachRemaining(actualRecords::add);
+    for (int i = 0; i < expectedRecords.size(); i++) {
+      assertEquals(actualRecords.get(i).getValues(), expectedRecords.get(i).getValues());
+    }
+  }
+
+  @Test
+  public void testWithoutOrderBy() {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(QUERY_PREFIX + " LIMIT 10");
+
+    // Stops accepting new groups once the result size is reached
+    IndexedTable indexedTable = new OffHeapIndexedTable(getDataSchema(), queryContext, 10, Integer.MAX_VALUE,
+        Integer.MAX_VALUE, 16, 1);
+    for (Record record : getRecords(new Random(0))) {
+      indexedTable.upsert(record);
+    }
+    assertEquals(indexedTable.size(), 10);
+    indexedTable.finish(false);
+    assertEquals(indexedTable.size(), 10);
+
+    // Keeps all the groups when the result size is large enough
+    List<Record> records = getRecords(new Random(1));
+    IndexedTable expectedTable =
+        new SimpleIndexedTable(getDataSchema(), false, queryContext, 1000, Integer.MAX_VALUE, Integer.MAX_VALUE, 16);
+    IndexedTable actualTable = new OffHeapIndexedTable(getDataSchema(), queryContext, 1000, Integer.MAX_VALUE,
+        Integer.MAX_VALUE, 16, 1);
+    for (Record record : records) {
+      expectedTable.upsert(copy(record));
+      actualTable.upsert(copy(record));
+    }
+    expectedTable.finish(false, true);
+    actualTable.finish(false, true);
+    assertEquals(toMap(actualTable), toMap(expectedTable));
+  }
+
+  @Test
+  public void testConcurrentUpsert()
+      throws Exception {
+    QueryContext queryContext =
+        QueryContextConverterUtils.getQueryContext(QUERY_PREFIX + " ORDER BY SUM(m1) DESC LIMIT 1000");
+    int numThreads = 4;
+    IndexedTable expectedTable =
+        new SimpleIndexedTable(getDataSchema(), false, queryContext, 1000, Integer.MAX_VALUE, Integer.MAX_VALUE, 16);
+    IndexedTable actualTable = new OffHeapIndexedTable(getDataSchema(), queryContext, 1000, Integer.MAX_VALUE,
+        Integer.MAX_VALUE, 16, numThreads);
+    List<List<Record>> recordsPerThread = new ArrayList<>(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      List<Record> records = getRecords(new Random(i));
+      for (Record record : records) {
+        expectedTable.upsert(copy(record));
+      }
+      recordsPerThread.add(records);
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<?>> futures = new ArrayList<>(numThreads);
+      for (List<Record> records : recordsPerThread) {
+        futures.add(executorService.submit(() -> {
+          for (Record record : records) {
+            actualTable.upsert(record);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+
+    expectedTable.finish(false, true);
+    actualTable.finish(false, true);
+    assertEquals(toMap(actualTable), toMap(expectedTable));
+  }
+
+  @Test
+  public void testClose() {
+    QueryContext queryContext =
+        QueryContextConverterUtils.getQueryContext(QUERY_PREFIX + " ORDER BY SUM(m1) DESC LIMIT 10");
+    long numDirectBuffers = PinotDataBuffer.getDirectBufferCount();
+    OffHeapIndexedTable indexedTable = new OffHeapIndexedTable(getDataSchema(), queryContext, 10, 10, 50, 16, 4);
+    List<Record> records = getRecords(new Random(0));
+    for (Record record : records) {
+      indexedTable.upsert(record);
+    }
+    assertTrue(PinotDataBuffer.getDirectBufferCount() > numDirectBuffers);
+
+    // The off-heap memory is released on close, and the records upserted after that are dropped
+    indexedTable.close();
+    assertEquals(PinotDataBuffer.getDirectBufferCount(), numDirectBuffers);
+    for (Record record : records) {
+      indexedTable.upsert(record);
+    }
+    indexedTable.finish(false);
+    assertEquals(indexedTable.size(), 0);
+  }
+
+  @Test
+  public void testFinishReleasesMemory() {
+    QueryContext queryContext =
+        QueryContextConverterUtils.getQueryContext(QUERY_PREFIX + " ORDER BY SUM(m1) DESC LIMIT 10");
+    long numDirectBuffers = PinotDataBuffer.getDirectBufferCount();
+    IndexedTable indexedTable = new OffHeapIndexedTable(getDataSchema(), queryContext, 10, 10, 50, 16, 4);
+    for (Record record : getRecords(new Random(0))) {
+      indexedTable.upsert(record);
+    }
+    indexedTable.finish(true);
+    assertEquals(PinotDataBuffer.getDirectBufferCount(), numDirectBuffers);
+    assertEquals(indexedTable.size(), 10);
+  }
+
+  /**
+   * Returns a new data schema for each table because finishing the table with final result modifies the data schema.
+   */
+  private static DataSchema getDataSchema() {
+    return new DataSchema(new String[]{"d1", "d2", "d3", "d4", "sum(m1)", "max(m2)", "count(*)", "min(m3)", "avg(m4)"},
+        new ColumnDataType[]{
+            ColumnDataType.INT, ColumnDataType.LONG, ColumnDataType.FLOAT, ColumnDataType.DOUBLE,
+            ColumnDataType.DOUBLE, ColumnDataType.DOUBLE, ColumnDataType.LONG, ColumnDataType.DOUBLE,
+            ColumnDataType.OBJECT
+        });
+  }
+
+  /**
+   * Generates records with integral metric values so that the merged results do not depend on the merge order.
+   */
+  private static List<Record> getRecords(Random random) {
+    List<Record> records = new ArrayList<>(NUM_RECORDS);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      double m4 = random.nextInt(100);
+      records.add(new Record(new Object[]{
+          random.nextInt(10), (long) random.nextInt(5), random.nextBoolean() ? 1.5f : -0.0f,
+          random.nextBoolean() ? 2.0 : Double.NaN, (double) random.nextInt(1000), (double) random.nextInt(1000), 1L,
+          (double) random.nextInt(1000), new AvgPair(m4, 1L)
+      }));
+    }
+    return records;
+  }
+
+  /**
+   * Copies the record because the indexed tables can merge into the values of the first record of each group.
+   */
+  private static Record copy(Record record) {
+    Object[] values = record.getValues().clone();
+    AvgPair avgPair = (AvgPair) values[8];
+    values[8] = new AvgPair(avgPair.getSum(), avgPair.getCount());
+    return new Record(values);
+  }
+
+  private static Map<Key, List<Object>> toMap(IndexedTable indexedTable) {
+    Map<Key, List<Object>> map = new HashMap<>();
+    indexedTable.iterator().forEachRemaining(record -> {
+      Object[] values = record.getValues();
+      map.put(new Key(Arrays.copyOf(values, 4)), Arrays.asList(values));
+    });
+    return map;
+  }
+}
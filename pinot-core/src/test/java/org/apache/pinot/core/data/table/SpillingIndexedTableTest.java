@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.table;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.query.request.context.utils.QueryContextConverterUtils;
+import org.apache.pinot.segment.local.customobject.AvgPair;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class SpillingIndexedTableTest {
+  private static final File SPILL_DIR = new File(FileUtils.getTempDirectory(), "SpillingIndexedTableTest");
+  // NOTE: Order on all the group-by columns as well to get a deterministic result
+  private static final String QUERY =
+      "SELECT SUM(m1), AVG(m2) FROM testTable GROUP BY d1, d2 ORDER BY SUM(m1) DESC, d1, d2 LIMIT 10";
+  private static final int NUM_RECORDS = 10_000;
+  private static final int SPILL_THRESHOLD = 100;
+
+  @BeforeClass
+  public void setUp()
+      throws IOException {
+    FileUtils.deleteDirectory(SPILL_DIR);
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws IOException {
+    FileUtils.deleteDirectory(SPILL_DIR);
+  }
+
+  @Test
+  public void testSpillAndMerge() {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(QUERY);
+    List<Record> records = getRecords(new Random(0));
+
+    // Trimmed groups should be the same as the groups computed without trimming
+    IndexedTable expectedTable = new SimpleIndexedTable(getDataSchema(), false, queryContext, 20, Integer.MAX_VALUE,
+        Integer.MAX_VALUE, 16);
+    SpillingIndexedTable actualTable =
+        new SpillingIndexedTable(getDataSchema(), queryContext, 20, 20, SPILL_THRESHOLD, 16, SPILL_DIR);
+    for (Record record : records) {
+      expectedTable.upsert(copy(record));
+      actualTable.upsert(copy(record));
+    }
+    assertTrue(actualTable.getNumSpills() > 0);
+    assertTrue(actualTable.getSpilledBytes() > 0);
+    assertTrue(actualTable.size() < SPILL_THRESHOLD);
+    assertTrue(SPILL_DIR.list().length > 0);
+
+    expectedTable.finish(true, true);
+    actualTable.finish(true, true);
+    assertEquals(getRows(actualTable), getRows(expectedTable));
+    assertEquals(SPILL_DIR.list().length, 0);
+  }
+
+  @Test
+  public void testClose() {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(QUERY);
+    SpillingIndexedTable indexedTable =
+        new SpillingIndexedTable(getDataSchema(), queryContext, 20, 20, SPILL_THRESHOLD, 16, SPILL_DIR);
+    for (Record record : getRecords(new Random(1))) {
+      indexedTable.upsert(record);
+    }
+    int numSpills = indexedTable.getNumSpills();
+    assertTrue(numSpills > 0);
+    assertTrue(SPILL_DIR.list().length > 0);
+
+    indexedTable.close();
+    assertEquals(SPILL_DIR.list().length, 0);
+
+    // Should not spill after the table is closed
+    for (Record record : getRecords(new Random(2))) {
+      indexedTable.upsert(record);
+    }
+    assertEquals(indexedTable.getNumSpills(), numSpills);
+    assertEquals(SPILL_DIR.list().length, 0);
+  }
+
+  @Test
+  public void testDeleteOrphanSpillFiles()
+      throws IOException {
+    File spillDir = new File(SPILL_DIR, "orphan");
+    FileUtils.forceMkdir(spillDir);
+    File orphanSpillFile = new File(spillDir, "groupby_orphan.spill");
+    FileUtils.touch(orphanSpillFile);
+    File otherFile = new File(spillDir, "other.txt");
+    FileUtils.touch(otherFile);
+
+    SpillingIndexedTable.deleteOrphanSpillFiles(spillDir);
+    assertFalse(orphanSpillFile.exists());
+    assertTrue(otherFile.exists());
+
+    // Should not fail when the spill directory does not exist
+    SpillingIndexedTable.deleteOrphanSpillFiles(new File(SPILL_DIR, "nonExisting"));
+    FileUtils.deleteDirectory(spillDir);
+  }
+
+  @Test
+  public void testIsSupported() {
+    assertTrue(SpillingIndexedTable.isSupported(getDataSchema()));
+    assertFalse(SpillingIndexedTable.isSupported(new DataSchema(new String[]{"d1", "sum(m1)"},
+        new ColumnDataType[]{ColumnDataType.INT_ARRAY, ColumnDataType.DOUBLE})));
+  }
+
+  /**
+   * Returns a new data schema for each table because finishing the table with final result modifies the data schema.
+   */
+  private static DataSchema getDataSchema() {
+    return new DataSchema(new String[]{"d1", "d2", "sum(m1)", "avg(m2)"}, new ColumnDataType[]{
+        ColumnDataType.STRING, ColumnDataType.INT, ColumnDataType.DOUBLE, ColumnDataType.OBJECT
+    });
+  }
+
+  /**
+   * Generates records with integral metric values so that the merged results do not depend on the merge order.
+   */
+  private static List<Record> getRecords(Random random) {
+    List<Record> records = new ArrayList<>(NUM_RECORDS);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      records.add(new Record(new Object[]{
+          "d1_" + random.nextInt(50), random.nextInt(20), (double) random.nextInt(1000),
+          new AvgPair(random.nextInt(100), 1L)
+      }));
+    }
+    return records;
+  }
+
+  /**
+   * Copies the record because the indexed tables can merge into the values of the first record of each group.
+   */
+  private static Record copy(Record record) {
+    Object[] values = record.getValues().clone();
+    AvgPair avgPair = (AvgPair) values[3];
+    values[3] = new AvgPair(avgPair.getSum(), avgPair.getCount());
+    return new Record(values);
+  }
+
+  private static List<List<Object>> getRows(IndexedTable indexedTable) {
+    List<List<Object>> rows = new ArrayList<>();
+    indexedTable.iterator().forEachRemaining(record -> rows.add(List.of(record.getValues())));
+    return rows;
+  }
+}
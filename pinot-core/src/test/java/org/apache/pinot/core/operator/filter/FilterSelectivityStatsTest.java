@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+import org.apache.pinot.core.common.BlockDocIdIterator;
+import org.apache.pinot.core.common.BlockDocIdSet;
+import org.apache.pinot.core.operator.dociditerators.ScanBasedDocIdIterator;
+import org.apache.pinot.core.operator.docidsets.AndDocIdSet;
+import org.apache.pinot.core.operator.docidsets.BitmapDocIdSet;
+import org.apache.pinot.segment.spi.Constants;
+import org.roaringbitmap.BatchIterator;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class FilterSelectivityStatsTest {
+  private static final int NUM_DOCS = 1000;
+
+  @Test
+  public void testStats()
+      throws Exception {
+    FilterSelectivityStats stats = new FilterSelectivityStats(2, 100L);
+    stats.record("k1", 0.5, 1.0);
+    stats.record("k2", 0.1, 1.0);
+    assertNotNull(stats.get("k1"));
+    // k2 is the least recently used entry, and should be evicted
+    stats.record("k3", 0.9, 1.0);
+    assertEquals(stats.size(), 2L);
+    assertNull(stats.get("k2"));
+
+    FilterSelectivityStats.Stats k1Stats = stats.get("k1");
+    assertNotNull(k1Stats);
+    assertEquals(k1Stats.getRank(), 2.0);
+    FilterSelectivityStats.Stats k3Stats = stats.get("k3");
+    assertNotNull(k3Stats);
+    assertTrue(k3Stats.getRank() > k1Stats.getRank());
+
+    // Expired stats should be ignored
+    Thread.sleep(200L);
+    assertNull(stats.get("k1"));
+  }
+
+  @Test
+  public void testAdaptiveScanReordering() {
+    List<String> evaluationOrder = new ArrayList<>();
+    MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    bitmap.add(0L, NUM_DOCS);
+    List<BlockDocIdSet> docIdSets =
+        Arrays.asList(new BitmapDocIdSet(bitmap, NUM_DOCS), new TestScanDocIdSet("A", 2, evaluationOrder),
+            new TestScanDocIdSet("B", 10, evaluationOrder));
+    String keyA = FilterSelectivityStats.getKey("testAdaptiveScanReordering", "A");
+    String keyB = FilterSelectivityStats.getKey("testAdaptiveScanReordering", "B");
+    List<String> statsKeys = Arrays.asList(null, keyA, keyB);
+
+    // First evaluation samples both predicates, then evaluates the more selective one first
+    AndDocIdSet andDocIdSet = new AndDocIdSet(docIdSets, null, statsKeys, NUM_DOCS);
+    List<Integer> docIds = TestUtils.getDocIds(andDocIdSet);
+    assertEquals(evaluationOrder, Arrays.asList("A", "B", "B", "A"));
+    // The entries scanned for sampling should not be counted: B scans all the documents, then A scans the ones matching
+    // B
+    assertEquals(andDocIdSet.getNumEntriesScannedInFilter(), NUM_DOCS + NUM_DOCS / 10);
+    assertEquals(docIds.size(), NUM_DOCS / 10);
+    for (int docId : docIds) {
+      assertEquals(docId % 10, 0);
+    }
+    FilterSelectivityStats.Stats statsA = FilterSelectivityStats.getInstance().get(keyA);
+    assertNotNull(statsA);
+    assertEquals(statsA.getSelectivity(), 0.5);
+
+    // Following evaluation should use the learned stats without sampling
+    evaluationOrder.clear();
+    docIdSets = Arrays.asList(new BitmapDocIdSet(bitmap, NUM_DOCS), new TestScanDocIdSet("A", 2, evaluationOrder),
+        new TestScanDocIdSet("B", 10, evaluationOrder));
+    TestUtils.getDocIds(new AndDocIdSet(docIdSets, null, statsKeys, NUM_DOCS));
+    assertEquals(evaluationOrder, Arrays.asList("B", "A"));
+  }
+
+  /**
+   * Scan based BlockDocIdSet matching the document ids divisible by the given divisor, which records the order of the
+   * applyAnd() calls.
+   */
+  private static class TestScanDocIdSet implements BlockDocIdSet {
+    final String _name;
+    final int _divisor;
+    final List<String> _evaluationOrder;
+    ScanBasedDocIdIterator _docIdIterator;
+
+    TestScanDocIdSet(String name, int divisor, List<String> evaluationOrder) {
+      _name = name;
+      _divisor = divisor;
+      _evaluationOrder = evaluationOrder;
+    }
+
+    @Override
+    public BlockDocIdIterator iterator() {
+      _docIdIterator = new ScanBasedDocIdIterator() {
+        int _nextDocId = 0;
+        long _numEntriesScanned = 0;
+
+        @Override
+        public MutableRoaringBitmap applyAnd(BatchIterator batchIterator, OptionalInt firstDoc,
+            OptionalInt lastDoc) {
+          _evaluationOrder.add(_name);
+          MutableRoaringBitmap result = new MutableRoaringBitmap();
+          int[] buffer = new int[256];
+          int numDocs;
+          while ((numDocs = batchIterator.nextBatch(buffer)) > 0) {
+            for (int i = 0; i < numDocs; i++) {
+              if (buffer[i] % _divisor == 0) {
+                result.add(buffer[i]);
+              }
+            }
+            _numEntriesScanned += numDocs;
+          }
+          return result;
+        }
+
+        @Override
+        public long getNumEntriesScanned() {
+          return _numEntriesScanned;
+        }
+
+        @Override
+        public int next() {
+          while (_nextDocId < NUM_DOCS) {
+            int docId = _nextDocId++;
+            _numEntriesScanned++;
+            if (docId % _divisor == 0) {
+              return docId;
+            }
+          }
+          return Constants.EOF;
+        }
+
+        @Override
+        public int advance(int targetDocId) {
+          _nextDocId = targetDocId;
+          return next();
+        }
+      };
+      return _docIdIterator;
+    }
+
+    @Override
+    public long getNumEntriesScannedInFilter() {
+      return _docIdIterator != null ? _docIdIterator.getNumEntriesScanned() : 0;
+    }
+  }
+}
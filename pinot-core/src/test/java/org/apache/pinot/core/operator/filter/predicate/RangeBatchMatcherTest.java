@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.filter.predicate;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+public class RangeBatchMatcherTest {
+  private static final int NUM_VALUES = 1000;
+  private static final Random RANDOM = new Random();
+
+  @Test
+  public void testIntRange() {
+    int[] values = new int[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      values[i] = RANDOM.nextInt(200) - 100;
+    }
+    values[0] = Integer.MIN_VALUE;
+    values[1] = Integer.MAX_VALUE;
+    int[][] bounds = {
+        {-10, 10}, {0, 0}, {10, -10}, {Integer.MIN_VALUE, 0}, {0, Integer.MAX_VALUE},
+        {Integer.MIN_VALUE, Integer.MAX_VALUE}
+    };
+    for (int[] bound : bounds) {
+      int lower = bound[0];
+      int upper = bound[1];
+      int[] docIds = getDocIds();
+      int numMatches = RangeBatchMatcher.match(NUM_VALUES, docIds, values, lower, upper);
+      int[] expected = new int[NUM_VALUES];
+      int numExpected = 0;
+      for (int i = 0; i < NUM_VALUES; i++) {
+        if (values[i] >= lower && values[i] <= upper) {
+          expected[numExpected++] = i;
+        }
+      }
+      assertEquals(Arrays.copyOf(docIds, numMatches), Arrays.copyOf(expected, numExpected));
+    }
+  }
+
+  @Test
+  public void testLongRange() {
+    long[] values = new long[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      values[i] = RANDOM.nextInt(200) - 100;
+    }
+    values[0] = Long.MIN_VALUE;
+    values[1] = Long.MAX_VALUE;
+    long[][] bounds = {
+        {-10, 10}, {0, 0}, {10, -10}, {Long.MIN_VALUE, 0}, {0, Long.MAX_VALUE}, {Long.MIN_VALUE, Long.MAX_VALUE}
+    };
+    for (long[] bound : bounds) {
+      long lower = bound[0];
+      long upper = bound[1];
+      int[] docIds = getDocIds();
+      int numMatches = RangeBatchMatcher.match(NUM_VALUES, docIds, values, lower, upper);
+      int[] expected = new int[NUM_VALUES];
+      int numExpected = 0;
+      for (int i = 0; i < NUM_VALUES; i++) {
+        if (values[i] >= lower && values[i] <= upper) {
+          expected[numExpected++] = i;
+        }
+      }
+      assertEquals(Arrays.copyOf(docIds, numMatches), Arrays.copyOf(expected, numExpected));
+    }
+  }
+
+  @Test
+  public void testFloatAndDoubleRange() {
+    float[] floatValues = new float[NUM_VALUES];
+    double[] doubleValues = new double[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      floatValues[i] = RANDOM.nextFloat() * 200 - 100;
+      doubleValues[i] = floatValues[i];
+    }
+    floatValues[0] = Float.NaN;
+    doubleValues[0] = Double.NaN;
+    floatValues[1] = Float.NEGATIVE_INFINITY;
+    doubleValues[1] = Double.NEGATIVE_INFINITY;
+    float[][] bounds = {{-10, 10}, {10, -10}, {Float.NEGATIVE_INFINITY, 0}, {0, Float.POSITIVE_INFINITY}};
+    for (float[] bound : bounds) {
+      float lower = bound[0];
+      float upper = bound[1];
+      int[] expected = new int[NUM_VALUES];
+      int numExpected = 0;
+      for (int i = 0; i < NUM_VALUES; i++) {
+        if (floatValues[i] >= lower && floatValues[i] <= upper) {
+          expected[numExpected++] = i;
+        }
+      }
+      int[] docIds = getDocIds();
+      int numMatches = RangeBatchMatcher.match(NUM_VALUES, docIds, floatValues, lower, upper);
+      assertEquals(Arrays.copyOf(docIds, numMatches), Arrays.copyOf(expected, numExpected));
+      docIds = getDocIds();
+      numMatches = RangeBatchMatcher.match(NUM_VALUES, docIds, doubleValues, lower, upper);
+      assertEquals(Arrays.copyOf(docIds, numMatches), Arrays.copyOf(expected, numExpected));
+    }
+  }
+
+  private static int[] getDocIds() {
+    int[] docIds = new int[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      docIds[i] = i;
+    }
+    return docIds;
+  }
+}
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.data.table.IntermediateRecord;
+import org.apache.pinot.core.data.table.Key;
+import org.apache.pinot.core.data.table.Record;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.results.AggregationResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.GroupByResultsBlock;
+import org.apache.pinot.core.operator.query.SegmentResultsCacheOperator;
+import org.apache.pinot.core.plan.PlanNode;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.query.request.context.utils.QueryContextConverterUtils;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class SegmentResultsCacheTest {
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+
+  @Test
+  public void testQueryFingerprint() {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(
+        "SET useResultCache = true; SET timeoutMs = 1000; SELECT COUNT(*), SUM(a) FROM testTable WHERE b = 'foo'");
+    String fingerprint = SegmentResultsCache.getQueryFingerprint(queryContext);
+    assertNotNull(fingerprint);
+
+    // Volatile query options should not affect the fingerprint
+    QueryContext otherQueryContext = QueryContextConverterUtils.getQueryContext(
+        "SET useResultCache = true; SET timeoutMs = 2000; SELECT COUNT(*), SUM(a) FROM testTable WHERE b = 'foo'");
+    assertEquals(SegmentResultsCache.getQueryFingerprint(otherQueryContext), fingerprint);
+
+    // Different filter should result in different fingerprint
+    otherQueryContext = QueryContextConverterUtils.getQueryContext(
+        "SET useResultCache = true; SELECT COUNT(*), SUM(a) FROM testTable WHERE b = 'bar'");
+    assertNotEquals(SegmentResultsCache.getQueryFingerprint(otherQueryContext), fingerprint);
+
+    // Query without the query option or non-aggregation query should not be cached
+    assertNull(SegmentResultsCache.getQueryFingerprint(
+        QueryContextConverterUtils.getQueryContext("SELECT COUNT(*) FROM testTable")));
+    assertNull(SegmentResultsCache.getQueryFingerprint(
+        QueryContextConverterUtils.getQueryContext("SET useResultCache = true; SELECT * FROM testTable")));
+  }
+
+  @Test
+  public void testAggregationSerDe()
+      throws Exception {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext("SELECT COUNT(*), SUM(a) FROM testTable");
+    List<Object> results = new ArrayList<>(List.of(5L, 3.0));
+    AggregationResultsBlock resultsBlock =
+        new AggregationResultsBlock(queryContext.getAggregationFunctions(), results, queryContext);
+    AggregationResultsBlock deserialized = (AggregationResultsBlock) SegmentResultsCache.deserialize(
+        SegmentResultsCache.serialize(resultsBlock), queryContext);
+    assertEquals(deserialized.getResults(), results);
+  }
+
+  @Test
+  public void testGroupBySerDe()
+      throws Exception {
+    QueryContext queryContext =
+        QueryContextConverterUtils.getQueryContext("SELECT b, COUNT(*) FROM testTable GROUP BY b");
+    DataSchema dataSchema =
+        new DataSchema(new String[]{"b", "count(*)"}, new ColumnDataType[]{ColumnDataType.STRING, ColumnDataType.LONG});
+    List<IntermediateRecord> intermediateRecords = new ArrayList<>();
+    intermediateRecords.add(
+        IntermediateRecord.create(new Key(new Object[]{"foo"}), new Record(new Object[]{"foo", 2L})));
+    intermediateRecords.add(
+        IntermediateRecord.create(new Key(new Object[]{"bar"}), new Record(new Object[]{"bar", 3L})));
+    GroupByResultsBlock resultsBlock = new GroupByResultsBlock(dataSchema, intermediateRecords, queryContext);
+    resultsBlock.setNumGroupsLimitReached(true);
+
+    GroupByResultsBlock deserialized = (GroupByResultsBlock) SegmentResultsCache.deserialize(
+        SegmentResultsCache.serialize(resultsBlock), queryContext);
+    assertTrue(deserialized.isNumGroupsLimitReached());
+    List<IntermediateRecord> deserializedRecords = new ArrayList<>(deserialized.getIntermediateRecords());
+    assertEquals(deserializedRecords.size(), 2);
+    for (int i = 0; i < 2; i++) {
+      assertEquals(deserializedRecords.get(i)._key, intermediateRecords.get(i)._key);
+      assertEquals(deserializedRecords.get(i)._record, intermediateRecords.get(i)._record);
+    }
+  }
+
+  @Test
+  public void testPutGetAndInvalidate()
+      throws Exception {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext("SELECT COUNT(*) FROM testTable");
+    AggregationResultsBlock resultsBlock =
+        new AggregationResultsBlock(queryContext.getAggregationFunctions(), new ArrayList<>(List.of(5L)),
+            queryContext);
+    int entrySize = SegmentResultsCache.serialize(resultsBlock).toBytes().length;
+    ExecutionStatistics executionStatistics = new ExecutionStatistics(5, 10, 0, 100);
+    SegmentResultsCache cache = new SegmentResultsCache(2L * entrySize, mock(ServerMetrics.class));
+    try {
+      SegmentResultsCache.CacheKey key1 = new SegmentResultsCache.CacheKey(TABLE_NAME, "s1", "1", "q");
+      SegmentResultsCache.CacheKey key2 = new SegmentResultsCache.CacheKey(TABLE_NAME, "s2", "2", "q");
+      SegmentResultsCache.CacheKey key3 = new SegmentResultsCache.CacheKey(TABLE_NAME, "s3", "3", "q");
+      // Same segment with different CRC should not share the entry
+      assertNotEquals(new SegmentResultsCache.CacheKey(TABLE_NAME, "s1", "2", "q"), key1);
+
+      assertNull(cache.get(key1, queryContext));
+      cache.put(key1, resultsBlock, executionStatistics);
+      cache.put(key2, resultsBlock, executionStatistics);
+      assertEquals(cache.getNumEntries(), 2);
+      assertEquals(cache.getSizeInBytes(), 2L * entrySize);
+      SegmentResultsCache.CachedResults cachedResults = cache.get(key1, queryContext);
+      assertNotNull(cachedResults);
+      assertEquals(((AggregationResultsBlock) cachedResults.getResultsBlock()).getResults(), List.of(5L));
+      assertEquals(cachedResults.getExecutionStatistics().getNumDocsScanned(), 5);
+
+      // key2 is the least recently used entry, and should be evicted
+      cache.put(key3, resultsBlock, executionStatistics);
+      assertEquals(cache.getNumEntries(), 2);
+      assertNull(cache.get(key2, queryContext));
+      assertNotNull(cache.get(key1, queryContext));
+      assertNotNull(cache.get(key3, queryContext));
+
+      cache.invalidateSegment(TABLE_NAME, "s1");
+      assertNull(cache.get(key1, queryContext));
+      assertEquals(cache.getNumEntries(), 1);
+      assertEquals(cache.getSizeInBytes(), entrySize);
+    } finally {
+      cache.clear();
+    }
+    assertEquals(cache.getNumEntries(), 0);
+    assertEquals(cache.getSizeInBytes(), 0);
+  }
+
+  @Test
+  public void testCacheHitOperatorHasNoChild()
+      throws Exception {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext("SELECT COUNT(*) FROM testTable");
+    AggregationResultsBlock resultsBlock =
+        new AggregationResultsBlock(queryContext.getAggregationFunctions(), new ArrayList<>(List.of(5L)),
+            queryContext);
+    SegmentResultsCache cache = new SegmentResultsCache(1024 * 1024, mock(ServerMetrics.class));
+    try {
+      SegmentResultsCache.CacheKey key = new SegmentResultsCache.CacheKey(TABLE_NAME, "s1", "1", "q");
+      cache.put(key, resultsBlock, new ExecutionStatistics(5, 10, 0, 100));
+      PlanNode planNode = mock(PlanNode.class);
+      SegmentResultsCacheOperator operator =
+          new SegmentResultsCacheOperator(planNode, mock(IndexSegment.class), queryContext, cache, key);
+      assertEquals(((AggregationResultsBlock) operator.nextBlock()).getResults(), List.of(5L));
+      verify(planNode, never()).run();
+      // The child operator is not built on cache hit
+      assertTrue(operator.getChildOperators().isEmpty());
+    } finally {
+      cache.clear();
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.queries;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.creator.impl.map.ColumnarMapIndexCreator;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.segment.spi.datasource.MapDataSource;
+import org.apache.pinot.spi.config.table.MapIndexConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.ComplexFieldSpec;
+import org.apache.pinot.spi.data.DimensionFieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+/**
+ * Queries test for the map keys stored as dense dictionary-encoded sub-columns in the map index.
+ */
+public class MapDenseKeyQueriesTest extends BaseQueriesTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "MapDenseKeyQueriesTest");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final String MAP_COLUMN = "intMap";
+  private static final int NUM_RECORDS = 1000;
+  // Each query is executed on 4 segments (2 servers with 2 segments each)
+  private static final int NUM_SEGMENTS = 4;
+
+  //@formatter:off
+  private static final Schema SCHEMA = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+      .addField(new ComplexFieldSpec(MAP_COLUMN, DataType.MAP, true, Map.of(
+          ComplexFieldSpec.KEY_FIELD, new DimensionFieldSpec(ComplexFieldSpec.KEY_FIELD, DataType.STRING, true),
+          ComplexFieldSpec.VALUE_FIELD, new DimensionFieldSpec(ComplexFieldSpec.VALUE_FIELD, DataType.INT, true))))
+      .build();
+  //@formatter:on
+  private static final TableConfig TABLE_CONFIG =
+      new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+
+  static {
+    TABLE_CONFIG.getIndexingConfig().setMapIndexConfigs(Map.of(MAP_COLUMN, new MapIndexConfig(false,
+        Map.of(ColumnarMapIndexCreator.INVERTED_INDEX_KEYS_KEY, "a", ColumnarMapIndexCreator.RANGE_INDEX_KEYS_KEY,
+            "b"))));
+  }
+
+  private IndexSegment _indexSegment;
+  private List<IndexSegment> _indexSegments;
+
+  @Override
+  protected String getFilter() {
+    return "";
+  }
+
+  @Override
+  protected IndexSegment getIndexSegment() {
+    return _indexSegment;
+  }
+
+  @Override
+  protected List<IndexSegment> getIndexSegments() {
+    return _indexSegments;
+  }
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteDirectory(INDEX_DIR);
+
+    List<GenericRow> records = new ArrayList<>(NUM_RECORDS);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      Map<String, Object> map = new HashMap<>();
+      // Dense key present in all the docs, with values of different classes
+      map.put("a", i % 2 == 0 ? (Object) (long) (i % 10) : (Object) (i % 10));
+      // Dense key present in half of the docs
+      if (i % 2 == 0) {
+        map.put("b", i % 3);
+      }
+      // Sparse key
+      if (i % 100 == 0) {
+        map.put("rare", i);
+      }
+      GenericRow record = new GenericRow();
+      record.putValue(MAP_COLUMN, map);
+      records.add(record);
+    }
+
+    SegmentGeneratorConfig segmentGeneratorConfig = new SegmentGeneratorConfig(TABLE_CONFIG, SCHEMA);
+    segmentGeneratorConfig.setOutDir(INDEX_DIR.getPath());
+    segmentGeneratorConfig.setSegmentName(SEGMENT_NAME);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(segmentGeneratorConfig, new GenericRowRecordReader(records));
+    driver.build();
+
+    ImmutableSegment segment = ImmutableSegmentLoader.load(new File(INDEX_DIR, SEGMENT_NAME),
+        new IndexLoadingConfig(TABLE_CONFIG, SCHEMA));
+    _indexSegment = segment;
+    _indexSegments = List.of(segment, segment);
+  }
+
+  @Test
+  public void testKeyDataSources() {
+    MapDataSource dataSource = (MapDataSource) _indexSegment.getDataSource(MAP_COLUMN);
+    assertNotNull(dataSource.getKeyDataSource("a").getDictionary());
+    assertEquals(dataSource.getKeyDataSource("a").getDataSourceMetadata().getDataType(), DataType.INT);
+    assertNotNull(dataSource.getKeyDataSource("a").getInvertedIndex());
+    assertNotNull(dataSource.getKeyDataSource("b").getDictionary());
+    assertNotNull(dataSource.getKeyDataSource("b").getRangeIndex());
+    assertNull(dataSource.getKeyDataSource("rare").getDictionary());
+  }
+
+  @Test
+  public void testFilterOnDenseKey() {
+    // Evaluated with the inverted index of the key
+    testCount("intMap['a'] = 3", i -> i % 10 == 3, true);
+    testCount("intMap['a'] IN (1, 2)", i -> i % 10 == 1 || i % 10 == 2, true);
+    // Evaluated with the range index of the key, where the docs without the key are not matched
+    testCount("intMap['b'] BETWEEN 1 AND 2", i -> i % 2 == 0 && i % 3 != 0, true);
+    testCount("intMap['b'] > 0", i -> i % 2 == 0 && i % 3 != 0, true);
+    testCount("intMap['b'] = 1", i -> i % 2 == 0 && i % 3 == 1, true);
+    // Evaluated by scanning the dictionary-encoded forward index of the key
+    testCount("intMap['b'] IN (1, 2)", i -> i % 2 == 0 && i % 3 != 0, false);
+  }
+
+  @Test
+  public void testNotEqAndNotInOnDenseKey() {
+    // The docs without the key hold the default null value of the value type, so they match NOT_EQ and NOT_IN the
+    // same way as for the keys not stored as dense sub-columns
+    testCount("intMap['b'] != 0", i -> i % 2 != 0 || i % 3 != 0, false);
+    testCount("intMap['b'] NOT IN (0, 1)", i -> i % 2 != 0 || i % 3 == 2, false);
+    testCount("intMap['a'] != 3", i -> i % 10 != 3, true);
+    testCount("intMap['rare'] != 100", i -> i != 100, false);
+  }
+
+  @Test
+  public void testFilterOnSparseKey() {
+    testCount("intMap['rare'] = 100", i -> i == 100, false);
+    testCount("intMap['rare'] IN (0, 200)", i -> i == 0 || i == 200, false);
+  }
+
+  @Test
+  public void testGroupByDenseKey() {
+    // Grouped on the dictionary ids of the key
+    BrokerResponseNative brokerResponse =
+        getBrokerResponse("SELECT intMap['b'], COUNT(*) FROM testTable GROUP BY intMap['b'] ORDER BY intMap['b']");
+    assertTrue(brokerResponse.getExceptions().isEmpty());
+    List<Object[]> rows = brokerResponse.getResultTable().getRows();
+    assertEquals(rows.size(), 4);
+    assertEquals(rows.get(0), new Object[]{Integer.MIN_VALUE, (long) count(i -> i % 2 != 0) * NUM_SEGMENTS});
+    for (int value = 0; value < 3; value++) {
+      int expectedValue = value;
+      assertEquals(rows.get(value + 1),
+          new Object[]{value, (long) count(i -> i % 2 == 0 && i % 3 == expectedValue) * NUM_SEGMENTS});
+    }
+  }
+
+  /**
+   * Runs a COUNT(*) query with the given filter, and checks whether the filter was evaluated with an index only.
+   */
+  private void testCount(String filter, IntPredicate expectedMatch, boolean indexOnly) {
+    BrokerResponseNative brokerResponse = getBrokerResponse("SELECT COUNT(*) FROM testTable WHERE " + filter);
+    assertTrue(brokerResponse.getExceptions().isEmpty(), filter);
+    assertEquals(brokerResponse.getResultTable().getRows().get(0)[0], (long) count(expectedMatch) * NUM_SEGMENTS,
+        filter);
+    if (indexOnly) {
+      assertEquals(brokerResponse.getNumEntriesScannedInFilter(), 0, filter);
+    } else {
+      assertTrue(brokerResponse.getNumEntriesScannedInFilter() > 0, filter);
+    }
+  }
+
+  private static int count(IntPredicate predicate) {
+    int count = 0;
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      if (predicate.test(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws Exception {
+    _indexSegment.destroy();
+    FileUtils.deleteDirectory(INDEX_DIR);
+  }
+}
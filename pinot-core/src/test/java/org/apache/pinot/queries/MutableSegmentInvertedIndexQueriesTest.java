@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.queries;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.blocks.results.SelectionResultsBlock;
+import org.apache.pinot.segment.local.indexsegment.mutable.MutableSegmentImpl;
+import org.apache.pinot.segment.local.indexsegment.mutable.MutableSegmentImplTestUtils;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+/**
+ * Queries test for the inverted index of the mutable segment, whose posting lists are shared by the queries and must
+ * not be modified by the filter operators.
+ */
+public class MutableSegmentInvertedIndexQueriesTest extends BaseQueriesTest {
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final int NUM_RECORDS = 1000;
+  private static final int NUM_VALUES = 4;
+  private static final String INT_COLUMN = "intColumn";
+  private static final String STRING_COLUMN = "stringColumn";
+  private static final Schema SCHEMA = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+      .addSingleValueDimension(INT_COLUMN, DataType.INT)
+      .addSingleValueDimension(STRING_COLUMN, DataType.STRING)
+      .build();
+
+  private MutableSegmentImpl _mutableSegment;
+
+  @Override
+  protected String getFilter() {
+    return "";
+  }
+
+  @Override
+  protected IndexSegment getIndexSegment() {
+    return _mutableSegment;
+  }
+
+  @Override
+  protected List<IndexSegment> getIndexSegments() {
+    return List.of(_mutableSegment, _mutableSegment);
+  }
+
+  @BeforeClass
+  public void setUp() {
+    _mutableSegment = MutableSegmentImplTestUtils.createMutableSegmentImpl(SCHEMA, Collections.emptySet(),
+        Collections.emptySet(), Set.of(STRING_COLUMN), false);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      GenericRow record = new GenericRow();
+      record.putValue(INT_COLUMN, i);
+      record.putValue(STRING_COLUMN, "v" + (i % NUM_VALUES));
+      _mutableSegment.index(record, null);
+    }
+  }
+
+  @Test
+  public void testExclusivePredicate() {
+    int numMatchingDocs = NUM_RECORDS / NUM_VALUES;
+    // Run the exclusive predicate multiple times to ensure the posting list is not flipped in place
+    for (int i = 0; i < 2; i++) {
+      assertEquals(getNumRows("SELECT intColumn FROM testTable WHERE stringColumn <> 'v0' LIMIT 10000"),
+          NUM_RECORDS - numMatchingDocs);
+      assertEquals(getNumRows("SELECT intColumn FROM testTable WHERE stringColumn NOT IN ('v0', 'v1') LIMIT 10000"),
+          NUM_RECORDS - 2 * numMatchingDocs);
+      assertEquals(getNumRows("SELECT intColumn FROM testTable WHERE stringColumn = 'v0' LIMIT 10000"),
+          numMatchingDocs);
+    }
+    DataSource dataSource = _mutableSegment.getDataSource(STRING_COLUMN);
+    int dictId = dataSource.getDictionary().indexOf("v0");
+    ImmutableRoaringBitmap docIds = (ImmutableRoaringBitmap) dataSource.getInvertedIndex().getDocIds(dictId);
+    assertEquals(docIds.getCardinality(), numMatchingDocs);
+    assertEquals(docIds.first(), 0);
+  }
+
+  private int getNumRows(String query) {
+    Operator<SelectionResultsBlock> operator = getOperator(query);
+    return operator.nextBlock().getRows().size();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _mutableSegment.destroy();
+  }
+}
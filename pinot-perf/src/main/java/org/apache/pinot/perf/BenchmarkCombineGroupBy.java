@@ -34,6 +34,7 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.data.table.ConcurrentIndexedTable;
 import org.apache.pinot.core.data.table.IndexedTable;
+import org.apache.pinot.core.data.table.OffHeapIndexedTable;
 import org.apache.pinot.core.data.table.Record;
 import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import org.apache.pinot.core.query.request.context.QueryContext;
@@ -65,6 +66,9 @@ public class BenchmarkCombineGroupBy {
 
   private QueryContext _queryContext;
   private DataSchema _dataSchema;
+  // Same query on primitive group-by columns, which is supported by the off-heap indexed table
+  private QueryContext _numericQueryContext;
+  private DataSchema _numericDataSchema;
 
   private List<String> _d1;
   private List<Integer> _d2;
@@ -93,6 +97,13 @@ public class BenchmarkCombineGroupBy {
         DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.DOUBLE,
         DataSchema.ColumnDataType.DOUBLE
     });
+    _numericQueryContext = QueryContextConverterUtils.getQueryContext(
+        "SELECT sum(m1), max(m2) FROM testTable GROUP BY d3, d2 ORDER BY sum(m1) LIMIT 500");
+    _numericDataSchema = new DataSchema(new String[]{"d3", "d2", "sum(m1)", "max(m2)"},
+        new DataSchema.ColumnDataType[]{
+            DataSchema.ColumnDataType.LONG, DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.DOUBLE,
+            DataSchema.ColumnDataType.DOUBLE
+        });
 
     _executorService = Executors.newFixedThreadPool(10);
   }
@@ -110,6 +121,14 @@ public class BenchmarkCombineGroupBy {
     return new Record(columns);
   }
 
+  private Record getNumericRecord() {
+    Object[] columns = new Object[]{
+        (long) RANDOM.nextInt(CARDINALITY_D1), _d2.get(RANDOM.nextInt(_d2.size())), (double) RANDOM.nextInt(1000),
+        (double) RANDOM.nextInt(1000)
+    };
+    return new Record(columns);
+  }
+
   @Benchmark
   @BenchmarkMode(Mode.AverageTime)
   @OutputTimeUnit(TimeUnit.MICROSECONDS)
@@ -147,6 +166,50 @@ public class BenchmarkCombineGroupBy {
     concurrentIndexedTable.finish(false);
   }
 
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void concurrentIndexedTableForNumericCombineGroupBy()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    int trimSize = GroupByUtils.getTableCapacity(_numericQueryContext.getLimit());
+    IndexedTable indexedTable =
+        new ConcurrentIndexedTable(_numericDataSchema, false, _numericQueryContext, trimSize, trimSize,
+            InstancePlanMakerImplV2.DEFAULT_GROUPBY_TRIM_THRESHOLD,
+            InstancePlanMakerImplV2.DEFAULT_MIN_INITIAL_INDEXED_TABLE_CAPACITY);
+    upsertNumericRecords(indexedTable);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void offHeapIndexedTableForNumericCombineGroupBy()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    int trimSize = GroupByUtils.getTableCapacity(_numericQueryContext.getLimit());
+    IndexedTable indexedTable =
+        new OffHeapIndexedTable(_numericDataSchema, _numericQueryContext, trimSize, trimSize,
+            InstancePlanMakerImplV2.DEFAULT_GROUPBY_TRIM_THRESHOLD,
+            InstancePlanMakerImplV2.DEFAULT_MIN_INITIAL_INDEXED_TABLE_CAPACITY, NUM_SEGMENTS);
+    upsertNumericRecords(indexedTable);
+  }
+
+  private void upsertNumericRecords(IndexedTable indexedTable)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    List<Callable<Void>> innerSegmentCallables = new ArrayList<>(NUM_SEGMENTS);
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      innerSegmentCallables.add(() -> {
+        for (int r = 0; r < NUM_RECORDS_PER_SEGMENT; r++) {
+          indexedTable.upsert(getNumericRecord());
+        }
+        return null;
+      });
+    }
+    List<Future<Void>> futures = _executorService.invokeAll(innerSegmentCallables);
+    for (Future<Void> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    indexedTable.finish(false);
+  }
+
   public static void main(String[] args)
       throws Exception {
     ChainedOptionsBuilder opt =
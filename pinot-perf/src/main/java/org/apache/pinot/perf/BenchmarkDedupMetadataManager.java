@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.dedup.DedupRecordInfo;
+import org.apache.pinot.segment.local.dedup.OffHeapTableDedupMetadataManager;
+import org.apache.pinot.segment.local.dedup.PartitionDedupMetadataManager;
+import org.apache.pinot.segment.local.dedup.TableDedupMetadataManager;
+import org.apache.pinot.segment.local.dedup.TableDedupMetadataManagerFactory;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.spi.config.table.DedupConfig;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Compares the insert and lookup throughput of the default (concurrent map based) dedup metadata manager with the
+ * off-heap one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkDedupMetadataManager {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkDedupMetadataManager");
+  private static final String TABLE_NAME = "testTable";
+  private static final String PRIMARY_KEY_COLUMN = "pk";
+  private static final int NUM_KEYS = 1_000_000;
+
+  @Param({"ConcurrentMap", "OffHeap"})
+  private String _metadataManager;
+
+  @Param({"NONE", "MURMUR3"})
+  private String _hashFunction;
+
+  private TableConfig _tableConfig;
+  private Schema _schema;
+  private TableDataManager _tableDataManager;
+  private MutableSegment _segment;
+  private DedupRecordInfo[] _dedupRecordInfos;
+  private TableDedupMetadataManager _populatedTableMetadataManager;
+  private PartitionDedupMetadataManager _populatedPartitionMetadataManager;
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt = new OptionsBuilder().include(BenchmarkDedupMetadataManager.class.getSimpleName());
+    new Runner(opt.build()).run();
+  }
+
+  @Setup
+  public void setUp()
+      throws IOException {
+    FileUtils.forceMkdir(TEMP_DIR);
+    String metadataManagerClass =
+        _metadataManager.equals("OffHeap") ? OffHeapTableDedupMetadataManager.class.getName() : null;
+    DedupConfig dedupConfig =
+        new DedupConfig(true, HashFunction.valueOf(_hashFunction), metadataManagerClass, Collections.emptyMap(), 0,
+            null, false);
+    _tableConfig = new TableConfigBuilder(TableType.REALTIME).setTableName(TABLE_NAME).setDedupConfig(dedupConfig)
+        .build();
+    _schema = new Schema.SchemaBuilder().setSchemaName(TABLE_NAME)
+        .addSingleValueDimension(PRIMARY_KEY_COLUMN, FieldSpec.DataType.STRING)
+        .setPrimaryKeyColumns(List.of(PRIMARY_KEY_COLUMN)).build();
+    _tableDataManager = mock(TableDataManager.class);
+    when(_tableDataManager.getTableDataDir()).thenReturn(TEMP_DIR);
+    _segment = mock(MutableSegment.class);
+
+    Random random = new Random(0);
+    _dedupRecordInfos = new DedupRecordInfo[NUM_KEYS];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      _dedupRecordInfos[i] =
+          new DedupRecordInfo(new PrimaryKey(new Object[]{Long.toHexString(random.nextLong())}));
+    }
+
+    _populatedTableMetadataManager = createTableMetadataManager();
+    _populatedPartitionMetadataManager = _populatedTableMetadataManager.getOrCreatePartitionManager(0);
+    for (DedupRecordInfo dedupRecordInfo : _dedupRecordInfos) {
+      _populatedPartitionMetadataManager.checkRecordPresentOrUpdate(dedupRecordInfo, _segment);
+    }
+  }
+
+  @TearDown
+  public void tearDown()
+      throws IOException {
+    _populatedTableMetadataManager.stop();
+    _populatedTableMetadataManager.close();
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Benchmark
+  public int insert()
+      throws IOException {
+    int numDuplicates = 0;
+    TableDedupMetadataManager tableMetadataManager = createTableMetadataManager();
+    PartitionDedupMetadataManager partitionMetadataManager = tableMetadataManager.getOrCreatePartitionManager(0);
+    for (DedupRecordInfo dedupRecordInfo : _dedupRecordInfos) {
+      if (partitionMetadataManager.checkRecordPresentOrUpdate(dedupRecordInfo, _segment)) {
+        numDuplicates++;
+      }
+    }
+    tableMetadataManager.stop();
+    tableMetadataManager.close();
+    return numDuplicates;
+  }
+
+  @Benchmark
+  public int lookup() {
+    int numDuplicates = 0;
+    for (DedupRecordInfo dedupRecordInfo : _dedupRecordInfos) {
+      if (_populatedPartitionMetadataManager.checkRecordPresentOrUpdate(dedupRecordInfo, _segment)) {
+        numDuplicates++;
+      }
+    }
+    return numDuplicates;
+  }
+
+  private TableDedupMetadataManager createTableMetadataManager() {
+    return TableDedupMetadataManagerFactory.create(_tableConfig, _schema, _tableDataManager, null, null);
+  }
+}
@@ -35,6 +35,7 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.data.table.ConcurrentIndexedTable;
 import org.apache.pinot.core.data.table.IndexedTable;
+import org.apache.pinot.core.data.table.OffHeapIndexedTable;
 import org.apache.pinot.core.data.table.Record;
 import org.apache.pinot.core.data.table.SimpleIndexedTable;
 import org.apache.pinot.core.query.request.context.QueryContext;
@@ -63,6 +64,8 @@ public class BenchmarkIndexedTable {
 
   private QueryContext _queryContext;
   private DataSchema _dataSchema;
+  private QueryContext _numericQueryContext;
+  private DataSchema _numericDataSchema;
 
   private List<String> _d1;
   private List<Integer> _d2;
@@ -92,6 +95,13 @@ public class BenchmarkIndexedTable {
         DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.DOUBLE,
         DataSchema.ColumnDataType.DOUBLE
     });
+    _numericQueryContext = QueryContextConverterUtils.getQueryContext(
+        "SELECT sum(m1), max(m2) FROM testTable GROUP BY d3, d2 ORDER BY sum(m1) LIMIT 500");
+    _numericDataSchema = new DataSchema(new String[]{"d3", "d2", "sum(m1)", "max(m2)"},
+        new DataSchema.ColumnDataType[]{
+            DataSchema.ColumnDataType.LONG, DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.DOUBLE,
+            DataSchema.ColumnDataType.DOUBLE
+        });
 
     _executorService = Executors.newFixedThreadPool(10);
   }
@@ -109,6 +119,14 @@ public class BenchmarkIndexedTable {
     return new Record(columns);
   }
 
+  private Record getNewNumericRecord() {
+    Object[] columns = new Object[]{
+        (long) RANDOM.nextInt(_d1.size()), _d2.get(RANDOM.nextInt(_d2.size())), (double) RANDOM.nextInt(1000),
+        (double) RANDOM.nextInt(1000)
+    };
+    return new Record(columns);
+  }
+
   @Benchmark
   @BenchmarkMode(Mode.AverageTime)
   @OutputTimeUnit(TimeUnit.MICROSECONDS)
@@ -154,6 +172,44 @@ public class BenchmarkIndexedTable {
     }
   }
 
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void concurrentIndexedTableNumericKeys()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    upsertNumericRecordsInParallel(
+        new ConcurrentIndexedTable(_numericDataSchema, false, _numericQueryContext, TRIM_SIZE, TRIM_SIZE,
+            TRIM_THRESHOLD, TRIM_THRESHOLD));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void offHeapIndexedTableNumericKeys()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    upsertNumericRecordsInParallel(
+        new OffHeapIndexedTable(_numericDataSchema, _numericQueryContext, TRIM_SIZE, TRIM_SIZE, TRIM_THRESHOLD,
+            TRIM_THRESHOLD, 10));
+  }
+
+  private void upsertNumericRecordsInParallel(IndexedTable indexedTable)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    int numSegments = 10;
+    List<Callable<Void>> callables = new ArrayList<>(numSegments);
+    for (int i = 0; i < numSegments; i++) {
+      callables.add(() -> {
+        for (int r = 0; r < NUM_RECORDS; r++) {
+          indexedTable.upsert(getNewNumericRecord());
+        }
+        return null;
+      });
+    }
+    for (Future<Void> future : _executorService.invokeAll(callables)) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    indexedTable.finish(false);
+  }
+
   @Benchmark
   @BenchmarkMode(Mode.AverageTime)
   @OutputTimeUnit(TimeUnit.MICROSECONDS)
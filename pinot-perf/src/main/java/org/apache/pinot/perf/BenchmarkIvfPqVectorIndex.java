@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.realtime.impl.vector.MutableFlatVectorIndex;
+import org.apache.pinot.segment.local.segment.creator.impl.vector.IvfPqVectorIndexCreator;
+import org.apache.pinot.segment.local.segment.index.readers.vector.IvfPqVectorIndexReader;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.index.creator.VectorIndexConfig;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+
+/**
+ * Benchmarks the latency of the IVF-PQ vector index against the brute force search, and prints the recall of the
+ * IVF-PQ index (fraction of the exact top k returned) for each setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class BenchmarkIvfPqVectorIndex {
+  private static final String COLUMN_NAME = "vector";
+  private static final int NUM_CLUSTERS = 100;
+  private static final int NUM_QUERIES = 100;
+
+  @Param({"100000"})
+  private int _numDocs;
+  @Param({"128"})
+  private int _dimension;
+  @Param({"EUCLIDEAN", "COSINE"})
+  private String _distanceFunction;
+  @Param({"4", "16", "64"})
+  private int _numProbes;
+  @Param({"0", "4"})
+  private int _rerankFactor;
+  @Param({"10"})
+  private int _topK;
+
+  private File _indexDir;
+  private float[][] _queries;
+  private MutableFlatVectorIndex _flatIndex;
+  private IvfPqVectorIndexReader _ivfPqIndex;
+  private int _nextQuery;
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt = new OptionsBuilder().include(BenchmarkIvfPqVectorIndex.class.getSimpleName());
+    new Runner(opt.build()).run();
+  }
+
+  @Setup
+  public void setUp()
+      throws IOException {
+    _indexDir = Files.createTempDirectory("BenchmarkIvfPqVectorIndex").toFile();
+    Random random = new Random(42);
+    float[][] centers = new float[NUM_CLUSTERS][];
+    for (int i = 0; i < NUM_CLUSTERS; i++) {
+      centers[i] = new float[_dimension];
+      for (int j = 0; j < _dimension; j++) {
+        centers[i][j] = random.nextFloat() * 6 - 3;
+      }
+    }
+    float[][] vectors = new float[_numDocs][];
+    for (int i = 0; i < _numDocs; i++) {
+      vectors[i] = randomVector(centers[random.nextInt(NUM_CLUSTERS)], random);
+    }
+    _queries = new float[NUM_QUERIES][];
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      _queries[i] = randomVector(centers[random.nextInt(NUM_CLUSTERS)], random);
+    }
+
+    Map<String, String> properties = new HashMap<>();
+    properties.put("vectorIndexType", "IVF_PQ");
+    properties.put("vectorDimension", String.valueOf(_dimension));
+    properties.put("vectorDistanceFunction", _distanceFunction);
+    properties.put(IvfPqVectorIndexReader.NUM_PROBES_KEY, String.valueOf(_numProbes));
+    properties.put(IvfPqVectorIndexReader.RERANK_FACTOR_KEY, String.valueOf(_rerankFactor));
+    VectorIndexConfig config = new VectorIndexConfig(properties);
+    try (IvfPqVectorIndexCreator creator = new IvfPqVectorIndexCreator(COLUMN_NAME, _indexDir, config)) {
+      for (float[] vector : vectors) {
+        creator.add(vector);
+      }
+      creator.seal();
+    }
+    File indexFile = new File(_indexDir, COLUMN_NAME + V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION);
+    _ivfPqIndex = new IvfPqVectorIndexReader(COLUMN_NAME, PinotDataBuffer.mapReadOnlyBigEndianFile(indexFile), config,
+        new VectorForwardIndexReader(vectors), null);
+
+    _flatIndex = new MutableFlatVectorIndex(config);
+    for (int docId = 0; docId < _numDocs; docId++) {
+      Object[] values = new Object[_dimension];
+      for (int i = 0; i < _dimension; i++) {
+        values[i] = vectors[docId][i];
+      }
+      _flatIndex.add(values, null, docId);
+    }
+
+    int numMatches = 0;
+    for (float[] query : _queries) {
+      numMatches += ImmutableRoaringBitmap.andCardinality(_ivfPqIndex.getDocIds(query, _topK),
+          _flatIndex.getDocIds(query, _topK));
+    }
+    System.out.printf("Recall@%d: %.3f, index size: %d bytes, raw vectors size: %d bytes%n", _topK,
+        (double) numMatches / (NUM_QUERIES * _topK), indexFile.length(), (long) _numDocs * _dimension * Float.BYTES);
+  }
+
+  private float[] randomVector(float[] center, Random random) {
+    float[] vector = new float[_dimension];
+    for (int i = 0; i < _dimension; i++) {
+      vector[i] = center[i] + (float) random.nextGaussian();
+    }
+    return vector;
+  }
+
+  @TearDown
+  public void tearDown()
+      throws IOException {
+    _ivfPqIndex.close();
+    _flatIndex.close();
+    FileUtils.deleteQuietly(_indexDir);
+  }
+
+  @Benchmark
+  public void ivfPqSearch(Blackhole bh) {
+    bh.consume(_ivfPqIndex.getDocIds(nextQuery(), _topK));
+  }
+
+  @Benchmark
+  public void bruteForceSearch(Blackhole bh) {
+    bh.consume(_flatIndex.getDocIds(nextQuery(), _topK));
+  }
+
+  private float[] nextQuery() {
+    float[] query = _queries[_nextQuery];
+    _nextQuery = (_nextQuery + 1) % NUM_QUERIES;
+    return query;
+  }
+
+  /**
+   * Raw forward index on the vectors to re-rank the candidates.
+   */
+  private static class VectorForwardIndexReader implements ForwardIndexReader<ForwardIndexReaderContext> {
+    private final float[][] _vectors;
+
+    VectorForwardIndexReader(float[][] vectors) {
+      _vectors = vectors;
+    }
+
+    @Override
+    public boolean isDictionaryEncoded() {
+      return false;
+    }
+
+    @Override
+    public boolean isSingleValue() {
+      return false;
+    }
+
+    @Override
+    public DataType getStoredType() {
+      return DataType.FLOAT;
+    }
+
+    @Override
+    public int getFloatMV(int docId, float[] valueBuffer, ForwardIndexReaderContext context) {
+      float[] vector = _vectors[docId];
+      System.arraycopy(vector, 0, valueBuffer, 0, vector.length);
+      return vector.length;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.datablock.DataBlock;
+import org.apache.pinot.common.datablock.DataBlockUtils;
+import org.apache.pinot.common.proto.Mailbox.MailboxContent;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.query.mailbox.channel.MailboxContentMarshaller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmarks the exchange of a data block through the gRPC mailbox, from the block serialization on the sender side
+ * to the block deserialization on the receiver side, with the default protobuf marshaller and the
+ * {@link MailboxContentMarshaller} used by the mailbox server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class BenchmarkMailboxExchange {
+  private static final MethodDescriptor.Marshaller<MailboxContent> DEFAULT_MARSHALLER =
+      ProtoUtils.marshaller(MailboxContent.getDefaultInstance());
+  private static final DataSchema DATA_SCHEMA = new DataSchema(new String[]{"intCol", "longCol", "stringCol"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.LONG, ColumnDataType.STRING});
+
+  public static void main(String[] args)
+      throws RunnerException {
+    ChainedOptionsBuilder opt = new OptionsBuilder().include(BenchmarkMailboxExchange.class.getSimpleName())
+        .addProfiler(GCProfiler.class);
+    new Runner(opt.build()).run();
+  }
+
+  @Param(value = {"default", "mailbox"})
+  String _marshaller;
+
+  @Param(value = {"10000", "100000"})
+  int _numRows;
+
+  private DataBlock _dataBlock;
+
+  @Setup(Level.Trial)
+  public void setUp()
+      throws IOException {
+    Random random = new Random(42);
+    List<Object[]> rows = new ArrayList<>(_numRows);
+    for (int i = 0; i < _numRows; i++) {
+      rows.add(new Object[]{random.nextInt(), random.nextLong(), "value_" + random.nextInt(1000)});
+    }
+    _dataBlock = DataBlockBuilder.buildFromRows(rows, DATA_SCHEMA);
+  }
+
+  @Benchmark
+  public DataBlock exchange()
+      throws IOException {
+    // Sender side
+    MailboxContent sentContent =
+        MailboxContent.newBuilder().setMailboxId("mailbox").setPayload(DataBlockUtils.toByteString(_dataBlock)).build();
+    byte[] wireBytes;
+    try (InputStream inputStream = DEFAULT_MARSHALLER.stream(sentContent)) {
+      wireBytes = ByteStreams.toByteArray(inputStream);
+    }
+
+    // Receiver side
+    MethodDescriptor.Marshaller<MailboxContent> marshaller =
+        _marshaller.equals("mailbox") ? MailboxContentMarshaller.INSTANCE : DEFAULT_MARSHALLER;
+    MailboxContent receivedContent = marshaller.parse(new KnownLengthInputStream(wireBytes));
+    return DataBlockUtils.readFrom(receivedContent.getPayload().asReadOnlyByteBuffer().slice());
+  }
+
+  /**
+   * Mimics the stream of a message received by gRPC, which has a known length.
+   */
+  private static class KnownLengthInputStream extends ByteArrayInputStream implements KnownLength {
+    KnownLengthInputStream(byte[] bytes) {
+      super(bytes);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.segment.local.indexsegment.mutable.MutableSegmentImpl;
+import org.apache.pinot.segment.local.indexsegment.mutable.MutableSegmentImplTestUtils;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Compares the rows per second of indexing records into a {@link MutableSegmentImpl} row by row with indexing them in
+ * columnar batches, on schemas of different widths. The schema cycles through dictionary encoded INT columns with
+ * inverted index, raw LONG columns and dictionary encoded STRING columns.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkMutableSegmentIndexBatch {
+  private static final int NUM_ROWS = 50_000;
+  private static final int CARDINALITY = 1_000;
+
+  @Param({"10", "100"})
+  private int _numColumns;
+
+  // 0 means indexing the records row by row
+  @Param({"0", "100", "1000"})
+  private int _batchSize;
+
+  private Schema _schema;
+  private Set<String> _noDictionaryColumns;
+  private Set<String> _invertedIndexColumns;
+  private List<GenericRow> _rows;
+  private MutableSegmentImpl _mutableSegment;
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt = new OptionsBuilder().include(BenchmarkMutableSegmentIndexBatch.class.getSimpleName());
+    new Runner(opt.build()).run();
+  }
+
+  @Setup
+  public void setUp() {
+    Schema.SchemaBuilder schemaBuilder = new Schema.SchemaBuilder().setSchemaName("testTable");
+    _noDictionaryColumns = new HashSet<>();
+    _invertedIndexColumns = new HashSet<>();
+    for (int i = 0; i < _numColumns; i++) {
+      String column = "col" + i;
+      switch (i % 3) {
+        case 0:
+          schemaBuilder.addSingleValueDimension(column, DataType.INT);
+          _invertedIndexColumns.add(column);
+          break;
+        case 1:
+          schemaBuilder.addMetric(column, DataType.LONG);
+          _noDictionaryColumns.add(column);
+          break;
+        default:
+          schemaBuilder.addSingleValueDimension(column, DataType.STRING);
+          break;
+      }
+    }
+    _schema = schemaBuilder.build();
+
+    Random random = new Random(0);
+    _rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      for (int j = 0; j < _numColumns; j++) {
+        String column = "col" + j;
+        switch (j % 3) {
+          case 0:
+            row.putValue(column, random.nextInt(CARDINALITY));
+            break;
+          case 1:
+            row.putValue(column, random.nextLong());
+            break;
+          default:
+            row.putValue(column, "value" + random.nextInt(CARDINALITY));
+            break;
+        }
+      }
+      _rows.add(row);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void createMutableSegment() {
+    _mutableSegment =
+        MutableSegmentImplTestUtils.createMutableSegmentImpl(_schema, _noDictionaryColumns, Collections.emptySet(),
+            _invertedIndexColumns, false);
+  }
+
+  @TearDown(Level.Invocation)
+  public void destroyMutableSegment() {
+    _mutableSegment.destroy();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public int index()
+      throws IOException {
+    if (_batchSize == 0) {
+      for (GenericRow row : _rows) {
+        _mutableSegment.index(row, null);
+      }
+    } else {
+      for (int i = 0; i < NUM_ROWS; i += _batchSize) {
+        _mutableSegment.indexBatch(_rows.subList(i, Math.min(i + _batchSize, NUM_ROWS)), null);
+      }
+    }
+    return _mutableSegment.getNumDocsIndexed();
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.predicate.RangePredicate;
+import org.apache.pinot.core.operator.dociditerators.SVScanDocIdIterator;
+import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import org.apache.pinot.core.operator.filter.predicate.RangePredicateEvaluatorFactory;
+import org.apache.pinot.segment.local.io.writer.impl.FixedBitSVForwardIndexWriter;
+import org.apache.pinot.segment.local.segment.index.readers.forward.FixedBitSVForwardIndexReaderV2;
+import org.apache.pinot.segment.spi.Constants;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Compares the per-value (branching) batch evaluation with the branch-free range batch evaluation when fully scanning
+ * a bit-packed forward index with a range predicate of different selectivity.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class BenchmarkRangePredicateBatchEvaluation {
+
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory(), "BenchmarkRangePredicateBatchEvaluation");
+
+  @Param("10000000")
+  int _numDocs;
+
+  // how selective the predicate evaluator is (out of 10)
+  @Param({"1", "5", "9"})
+  private int _thresholdQuantile;
+
+  @Param("42")
+  long _seed;
+
+  @Param({"UNIFORM(0,10000000)"})
+  String _distribution;
+
+  private PredicateEvaluator _scalarPredicateEvaluator;
+  private PredicateEvaluator _batchPredicateEvaluator;
+  private FixedBitSVForwardIndexReaderV2 _reader;
+  private PinotDataBuffer _dataBuffer;
+
+  public static void main(String[] args)
+      throws Exception {
+    new Runner(new OptionsBuilder().include(BenchmarkRangePredicateBatchEvaluation.class.getSimpleName()).build())
+        .run();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteDirectory(INDEX_DIR);
+    FileUtils.forceMkdir(INDEX_DIR);
+    File indexFile = new File(INDEX_DIR, "index-file");
+    LongSupplier supplier = Distribution.createSupplier(_seed, _distribution);
+    int[] values = new int[_numDocs];
+    int max = Integer.MIN_VALUE;
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (int) supplier.getAsLong();
+      max = Math.max(values[i], max);
+    }
+    int numBits = 32 - Integer.numberOfLeadingZeros(max);
+    int[] sorted = Arrays.copyOf(values, values.length);
+    Arrays.sort(sorted);
+    try (FixedBitSVForwardIndexWriter indexWriter = new FixedBitSVForwardIndexWriter(indexFile, _numDocs, numBits)) {
+      for (int i = 0; i < _numDocs; i++) {
+        indexWriter.putDictId(values[i]);
+      }
+    }
+    _dataBuffer = PinotDataBuffer.mapReadOnlyBigEndianFile(indexFile);
+    _reader = new FixedBitSVForwardIndexReaderV2(_dataBuffer, values.length, numBits);
+    int threshold = sorted[_thresholdQuantile * sorted.length / 10];
+    // Both evaluators match values in [0, threshold)
+    _scalarPredicateEvaluator = new BenchmarkScanDocIdIterators.DummyPredicateEvaluator(threshold);
+    _batchPredicateEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(ExpressionContext.forIdentifier("column"), true, "0", false, Integer.toString(threshold),
+            DataType.INT), DataType.INT);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+      throws Exception {
+    _dataBuffer.close();
+    FileUtils.deleteDirectory(INDEX_DIR);
+  }
+
+  @Benchmark
+  public int scalarRangeScan() {
+    return scan(_scalarPredicateEvaluator);
+  }
+
+  @Benchmark
+  public int batchRangeScan() {
+    return scan(_batchPredicateEvaluator);
+  }
+
+  private int scan(PredicateEvaluator predicateEvaluator) {
+    SVScanDocIdIterator docIdIterator = new SVScanDocIdIterator(predicateEvaluator, _reader, _numDocs);
+    int numMatches = 0;
+    while (docIdIterator.next() != Constants.EOF) {
+      numMatches++;
+    }
+    return numMatches;
+  }
+}
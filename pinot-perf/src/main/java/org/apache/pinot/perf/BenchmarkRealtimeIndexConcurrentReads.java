@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.pinot.segment.local.realtime.impl.invertedindex.RealtimeInvertedIndex;
+import org.apache.pinot.segment.local.realtime.impl.json.MutableJsonIndexImpl;
+import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.spi.config.table.JsonIndexConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Measures the query throughput of the realtime inverted index and json index while a single thread keeps ingesting
+ * into them, which is the access pattern of a consuming segment under heavy query concurrency. LOCKED_INVERTED is the
+ * read/write lock based inverted index with a bitmap copy per read, kept here as the baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Group)
+public class BenchmarkRealtimeIndexConcurrentReads {
+  private static final int CARDINALITY = 1_000;
+  private static final int MAX_NUM_DOCS = 10_000_000;
+  private static final int NUM_JSON_VALUES = 1_000;
+
+  @Param({"LOCKED_INVERTED", "INVERTED", "JSON"})
+  private String _index;
+
+  private LockedInvertedIndex _lockedInvertedIndex;
+  private RealtimeInvertedIndex _invertedIndex;
+  private MutableJsonIndexImpl _jsonIndex;
+  private String[] _jsonValues;
+  private String[] _jsonFilters;
+  private int _nextDocId;
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt =
+        new OptionsBuilder().include(BenchmarkRealtimeIndexConcurrentReads.class.getSimpleName());
+    new Runner(opt.build()).run();
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp()
+      throws IOException {
+    _jsonValues = new String[NUM_JSON_VALUES];
+    _jsonFilters = new String[NUM_JSON_VALUES];
+    for (int i = 0; i < NUM_JSON_VALUES; i++) {
+      _jsonValues[i] = "{\"name\":\"name" + i % CARDINALITY + "\",\"tags\":[\"tag" + i % 10 + "\",\"tag" + i % 7
+          + "\"]}";
+      _jsonFilters[i] = "\"$.name\"='name" + i % CARDINALITY + "'";
+    }
+
+    _lockedInvertedIndex = new LockedInvertedIndex();
+    _invertedIndex = new RealtimeInvertedIndex();
+    _jsonIndex = new MutableJsonIndexImpl(new JsonIndexConfig());
+    // Add all the dictionary ids upfront so that the writer can pick them randomly
+    for (int dictId = 0; dictId < CARDINALITY; dictId++) {
+      _lockedInvertedIndex.add(dictId, dictId);
+      _invertedIndex.add(dictId, dictId);
+      _jsonIndex.add(_jsonValues[dictId % NUM_JSON_VALUES]);
+    }
+    _nextDocId = CARDINALITY;
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(1)
+  public void write()
+      throws IOException {
+    if (_nextDocId >= MAX_NUM_DOCS) {
+      return;
+    }
+    int docId = _nextDocId++;
+    int dictId = ThreadLocalRandom.current().nextInt(CARDINALITY);
+    switch (_index) {
+      case "LOCKED_INVERTED":
+        _lockedInvertedIndex.add(dictId, docId);
+        break;
+      case "INVERTED":
+        _invertedIndex.add(dictId, docId);
+        break;
+      default:
+        _jsonIndex.add(_jsonValues[dictId % NUM_JSON_VALUES]);
+        break;
+    }
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(7)
+  public int read() {
+    int dictId = ThreadLocalRandom.current().nextInt(CARDINALITY);
+    switch (_index) {
+      case "LOCKED_INVERTED":
+        return _lockedInvertedIndex.getDocIds(dictId).getCardinality();
+      case "INVERTED":
+        return _invertedIndex.getDocIds(dictId).getCardinality();
+      default:
+        return _jsonIndex.getMatchingDocIds(_jsonFilters[dictId % NUM_JSON_VALUES]).getCardinality();
+    }
+  }
+
+  /**
+   * The previous realtime inverted index, which guards the bitmaps with a read/write lock and copies them on read.
+   */
+  private static class LockedInvertedIndex {
+    private final List<ThreadSafeMutableRoaringBitmap> _bitmaps = new ArrayList<>();
+    private final ReentrantReadWriteLock.ReadLock _readLock;
+    private final ReentrantReadWriteLock.WriteLock _writeLock;
+
+    LockedInvertedIndex() {
+      ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+      _readLock = readWriteLock.readLock();
+      _writeLock = readWriteLock.writeLock();
+    }
+
+    void add(int dictId, int docId) {
+      if (_bitmaps.size() == dictId) {
+        ThreadSafeMutableRoaringBitmap bitmap = new ThreadSafeMutableRoaringBitmap(docId);
+        try {
+          _writeLock.lock();
+          _bitmaps.add(bitmap);
+        } finally {
+          _writeLock.unlock();
+        }
+      } else {
+        _bitmaps.get(dictId).add(docId);
+      }
+    }
+
+    MutableRoaringBitmap getDocIds(int dictId) {
+      ThreadSafeMutableRoaringBitmap bitmap;
+      try {
+        _readLock.lock();
+        if (_bitmaps.size() <= dictId) {
+          return new MutableRoaringBitmap();
+        }
+        bitmap = _bitmaps.get(dictId);
+      } finally {
+        _readLock.unlock();
+      }
+      return bitmap.getMutableRoaringBitmap();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.segment.local.recordtransformer.CompositeTransformer;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.config.table.ingestion.IngestionConfig;
+import org.apache.pinot.spi.config.table.ingestion.TransformConfig;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Compares the rows per second of the default record transformers with ingestion transform functions, when applied
+ * row by row and when applied to batches of rows.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkRecordTransformBatch {
+  private static final int NUM_ROWS = 10_000;
+  private static final int CARDINALITY = 1_000;
+
+  // 0 means transforming the records row by row
+  @Param({"0", "256"})
+  private int _batchSize;
+
+  private CompositeTransformer _transformer;
+  private List<GenericRow> _rows;
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt = new OptionsBuilder().include(BenchmarkRecordTransformBatch.class.getSimpleName());
+    new Runner(opt.build()).run();
+  }
+
+  @Setup
+  public void setUp() {
+    Schema schema = new Schema.SchemaBuilder().setSchemaName("testTable")
+        .addSingleValueDimension("intCol", DataType.INT)
+        .addSingleValueDimension("longCol", DataType.LONG)
+        .addSingleValueDimension("stringCol", DataType.STRING)
+        .addSingleValueDimension("timeCol", DataType.LONG)
+        .addSingleValueDimension("sumCol", DataType.DOUBLE)
+        .addSingleValueDimension("productCol", DataType.DOUBLE)
+        .addSingleValueDimension("upperCol", DataType.STRING)
+        .addSingleValueDimension("lengthCol", DataType.INT)
+        .addSingleValueDimension("timeSecondsCol", DataType.LONG)
+        .build();
+    IngestionConfig ingestionConfig = new IngestionConfig();
+    ingestionConfig.setTransformConfigs(List.of(
+        new TransformConfig("sumCol", "plus(intCol, longCol)"),
+        new TransformConfig("productCol", "times(intCol, longCol)"),
+        new TransformConfig("upperCol", "upper(stringCol)"),
+        new TransformConfig("lengthCol", "length(upperCol)"),
+        new TransformConfig("timeSecondsCol", "toEpochSeconds(timeCol)")));
+    TableConfig tableConfig =
+        new TableConfigBuilder(TableType.OFFLINE).setTableName("testTable").setIngestionConfig(ingestionConfig).build();
+    _transformer = CompositeTransformer.getDefaultTransformer(tableConfig, schema);
+  }
+
+  @Setup(Level.Invocation)
+  public void createRows() {
+    // Transformed values are not transformed again, so create new rows for each invocation
+    Random random = new Random(0);
+    _rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putValue("intCol", random.nextInt(CARDINALITY));
+      row.putValue("longCol", random.nextLong());
+      row.putValue("stringCol", "value" + random.nextInt(CARDINALITY));
+      row.putValue("timeCol", System.currentTimeMillis() - random.nextInt(CARDINALITY));
+      _rows.add(row);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public int transform() {
+    int numTransformedRows = 0;
+    if (_batchSize == 0) {
+      for (GenericRow row : _rows) {
+        if (_transformer.transform(row) != null) {
+          numTransformedRows++;
+        }
+      }
+    } else {
+      for (int i = 0; i < NUM_ROWS; i += _batchSize) {
+        numTransformedRows += _transformer.transform(_rows.subList(i, Math.min(i + _batchSize, NUM_ROWS))).size();
+      }
+    }
+    return numTransformedRows;
+  }
+}
@@ -47,6 +47,11 @@ public class PinotHintOptions {
 
     public static final String NUM_GROUPS_LIMIT = "num_groups_limit";
     public static final String MAX_INITIAL_RESULT_HOLDER_CAPACITY = "max_initial_result_holder_capacity";
+
+    /**
+     * Number of groups kept in memory before the rows of the new groups are spilled to local disk.
+     */
+    public static final String GROUP_BY_SPILL_THRESHOLD = "group_by_spill_threshold";
   }
 
   public static class WindowHintOptions {
@@ -70,6 +75,9 @@ public class PinotHintOptions {
     public static final String DYNAMIC_BROADCAST_JOIN_STRATEGY = "dynamic_broadcast";
     // "lookup" can be used when the right table is a dimension table replicated to all workers
     public static final String LOOKUP_JOIN_STRATEGY = "lookup";
+    // "sort_merge" can be used when the join is too large to build a hash table on the right side. Both sides are
+    // sorted on the join keys, then merged without materializing the right table.
+    public static final String SORT_MERGE_JOIN_STRATEGY = "sort_merge";
 
     /**
      * Max rows allowed to build the right table hash collection.
@@ -83,6 +91,12 @@ public class PinotHintOptions {
      */
     public static final String JOIN_OVERFLOW_MODE = "join_overflow_mode";
 
+    /**
+     * Number of rows of the right table kept in memory before both sides of the join are spilled to local disk and
+     * joined partition by partition.
+     */
+    public static final String JOIN_SPILL_THRESHOLD = "join_spill_threshold";
+
     /**
      * Indicates that the join operator(s) within a certain selection scope are colocated
      */
@@ -94,6 +108,12 @@ public class PinotHintOptions {
           PinotHintStrategyTable.getHintOption(join.getHints(), PinotHintOptions.JOIN_HINT_OPTIONS,
               PinotHintOptions.JoinHintOptions.JOIN_STRATEGY));
     }
+
+    public static boolean useSortMergeJoinStrategy(Join join) {
+      return SORT_MERGE_JOIN_STRATEGY.equalsIgnoreCase(
+          PinotHintStrategyTable.getHintOption(join.getHints(), PinotHintOptions.JOIN_HINT_OPTIONS,
+              PinotHintOptions.JoinHintOptions.JOIN_STRATEGY));
+    }
   }
 
   public static class TableHintOptions {
@@ -18,15 +18,21 @@
  */
 package org.apache.pinot.calcite.rel.rules;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
 import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.rel.core.JoinInfo;
 import org.apache.calcite.tools.RelBuilderFactory;
 import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
 import org.apache.pinot.calcite.rel.logical.PinotLogicalExchange;
+import org.apache.pinot.calcite.rel.logical.PinotLogicalSortExchange;
 
 
 /**
@@ -58,6 +64,13 @@ public class PinotJoinExchangeNodeInsertRule extends RelOptRule {
       // Lookup join - add local exchange on the left side
       newLeft = PinotLogicalExchange.create(left, RelDistributions.SINGLETON);
       newRight = right;
+    } else if (PinotHintOptions.JoinHintOptions.useSortMergeJoinStrategy(join) && !joinInfo.leftKeys.isEmpty()) {
+      // Sort merge join - add hash exchange on both sides, sorted on the join keys on the sender so that the receiver
+      // only needs to merge the sorted streams instead of collecting and sorting all the rows
+      newLeft = PinotLogicalSortExchange.create(left, RelDistributions.hash(joinInfo.leftKeys),
+          getJoinKeysCollation(joinInfo.leftKeys), true, true);
+      newRight = PinotLogicalSortExchange.create(right, RelDistributions.hash(joinInfo.rightKeys),
+          getJoinKeysCollation(joinInfo.rightKeys), true, true);
     } else {
       // Regular join - add exchange on both sides
       if (joinInfo.leftKeys.isEmpty()) {
@@ -75,4 +88,16 @@ public class PinotJoinExchangeNodeInsertRule extends RelOptRule {
     call.transformTo(join.copy(join.getTraitSet(), join.getCondition(), newLeft, newRight, join.getJoinType(),
         join.isSemiJoinDone()));
   }
+
+  /**
+   * Returns the ascending, nulls last collation on the join keys, which is the order expected by the sort merge join.
+   */
+  private static RelCollation getJoinKeysCollation(List<Integer> keys) {
+    List<RelFieldCollation> fieldCollations = new ArrayList<>(keys.size());
+    for (int key : keys) {
+      fieldCollations.add(
+          new RelFieldCollation(key, RelFieldCollation.Direction.ASCENDING, RelFieldCollation.NullDirection.LAST));
+    }
+    return RelCollations.of(fieldCollations);
+  }
 }
@@ -333,6 +333,9 @@ public final class RelToPlanNodeConverter {
       Preconditions.checkState(projectInput instanceof TableScan,
           "Right input for lookup join must be a Project over TableScan, got Project over: %s",
           projectInput.getClass().getSimpleName());
+    } else if (PinotHintOptions.JoinHintOptions.useSortMergeJoinStrategy(join)) {
+      joinStrategy = JoinNode.JoinStrategy.SORT_MERGE;
+      Preconditions.checkArgument(!joinInfo.leftKeys.isEmpty(), "Sort merge join requires join keys");
     } else {
       // TODO: Consider adding DYNAMIC_BROADCAST as a separate join strategy
       joinStrategy = JoinNode.JoinStrategy.HASH;
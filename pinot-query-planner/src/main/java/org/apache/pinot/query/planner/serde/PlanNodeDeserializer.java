@@ -285,6 +285,8 @@ public class PlanNodeDeserializer {
         return JoinNode.JoinStrategy.HASH;
       case LOOKUP:
         return JoinNode.JoinStrategy.LOOKUP;
+      case SORT_MERGE:
+        return JoinNode.JoinStrategy.SORT_MERGE;
       default:
         throw new IllegalStateException("Unsupported JoinStrategy: " + joinStrategy);
     }
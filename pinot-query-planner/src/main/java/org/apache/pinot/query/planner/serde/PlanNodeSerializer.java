@@ -292,6 +292,8 @@ public class PlanNodeSerializer {
           return Plan.JoinStrategy.HASH;
         case LOOKUP:
           return Plan.JoinStrategy.LOOKUP;
+        case SORT_MERGE:
+          return Plan.JoinStrategy.SORT_MERGE;
         default:
           throw new IllegalStateException("Unsupported JoinStrategy: " + joinStrategy);
       }
@@ -18,9 +18,13 @@
  */
 package org.apache.pinot.query.mailbox.channel;
 
+import io.grpc.MethodDescriptor;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
@@ -52,7 +56,7 @@ public class GrpcMailboxServer extends PinotMailboxGrpc.PinotMailboxImplBase {
     if (tlsConfig != null) {
       _server = NettyServerBuilder
           .forPort(port)
-          .addService(this)
+          .addService(bindServiceWithMailboxContentMarshaller())
           .sslContext(GrpcQueryServer.buildGrpcSslContext(tlsConfig))
           .maxInboundMessageSize(config.getProperty(
               CommonConstants.MultiStageQueryRunner.KEY_OF_MAX_INBOUND_QUERY_DATA_BLOCK_SIZE_BYTES,
@@ -61,7 +65,7 @@ public class GrpcMailboxServer extends PinotMailboxGrpc.PinotMailboxImplBase {
     } else {
       _server = ServerBuilder
           .forPort(port)
-          .addService(this)
+          .addService(bindServiceWithMailboxContentMarshaller())
           .maxInboundMessageSize(config.getProperty(
               CommonConstants.MultiStageQueryRunner.KEY_OF_MAX_INBOUND_QUERY_DATA_BLOCK_SIZE_BYTES,
               CommonConstants.MultiStageQueryRunner.DEFAULT_MAX_INBOUND_QUERY_DATA_BLOCK_SIZE_BYTES))
@@ -69,6 +73,24 @@ public class GrpcMailboxServer extends PinotMailboxGrpc.PinotMailboxImplBase {
     }
   }
 
+  /**
+   * Binds the service with {@link MailboxContentMarshaller} as the request marshaller to avoid copying the payload of
+   * the received mailbox content.
+   */
+  @SuppressWarnings("unchecked")
+  private ServerServiceDefinition bindServiceWithMailboxContentMarshaller() {
+    ServerServiceDefinition serviceDefinition = bindService();
+    MethodDescriptor<Mailbox.MailboxContent, Mailbox.MailboxStatus> openMethod = PinotMailboxGrpc.getOpenMethod()
+        .toBuilder(MailboxContentMarshaller.INSTANCE, ProtoUtils.marshaller(Mailbox.MailboxStatus.getDefaultInstance()))
+        .build();
+    ServerCallHandler<Mailbox.MailboxContent, Mailbox.MailboxStatus> openHandler =
+        (ServerCallHandler<Mailbox.MailboxContent, Mailbox.MailboxStatus>) serviceDefinition.getMethod(
+            openMethod.getFullMethodName()).getServerCallHandler();
+    return ServerServiceDefinition.builder(serviceDefinition.getServiceDescriptor().getName())
+        .addMethod(openMethod, openHandler)
+        .build();
+  }
+
   public void start() {
     try {
       _server.start();
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox.channel;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.protobuf.ProtoUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.pinot.common.proto.Mailbox.MailboxContent;
+
+
+/**
+ * {@code MailboxContentMarshaller} is the gRPC marshaller for {@link MailboxContent} used by the mailbox server.
+ *
+ * <p>The default protobuf marshaller reads the message into a reused buffer, then copies the payload into a new byte
+ * array when parsing the message. This marshaller reads the message into a dedicated byte array and parses it with
+ * aliasing enabled, so that the payload references the message bytes directly, and can be deserialized into a
+ * {@link org.apache.pinot.common.datablock.DataBlock} without another copy.
+ *
+ * <p>Serialization is delegated to the default protobuf marshaller, which already writes the payload buffers into the
+ * transport without copying them into an intermediate byte array.
+ */
+public class MailboxContentMarshaller implements MethodDescriptor.Marshaller<MailboxContent> {
+  public static final MailboxContentMarshaller INSTANCE = new MailboxContentMarshaller();
+
+  private static final MethodDescriptor.Marshaller<MailboxContent> DEFAULT_MARSHALLER =
+      ProtoUtils.marshaller(MailboxContent.getDefaultInstance());
+
+  private MailboxContentMarshaller() {
+  }
+
+  @Override
+  public InputStream stream(MailboxContent value) {
+    return DEFAULT_MARSHALLER.stream(value);
+  }
+
+  @Override
+  public MailboxContent parse(InputStream stream) {
+    try {
+      byte[] bytes;
+      if (stream instanceof KnownLength) {
+        bytes = new byte[stream.available()];
+        ByteStreams.readFully(stream, bytes);
+      } else {
+        bytes = ByteStreams.toByteArray(stream);
+      }
+      CodedInputStream codedInputStream = CodedInputStream.newInstance(bytes);
+      codedInputStream.enableAliasing(true);
+      // Message size is already limited by the max inbound message size of the server
+      codedInputStream.setSizeLimit(Integer.MAX_VALUE);
+      return MailboxContent.parseFrom(codedInputStream, ExtensionRegistryLite.getEmptyRegistry());
+    } catch (IOException e) {
+      throw Status.INTERNAL.withDescription("Invalid mailbox content").withCause(e).asRuntimeException();
+    }
+  }
+}
@@ -59,7 +59,9 @@ public class MailboxContentObserver implements StreamObserver<MailboxContent> {
     }
     try {
       long timeoutMs = Context.current().getDeadline().timeRemaining(TimeUnit.MILLISECONDS);
-      ByteBuffer buffer = mailboxContent.getPayload().asReadOnlyByteBuffer();
+      // NOTE: The payload might alias the bytes of the whole message (see MailboxContentMarshaller), so slice the
+      //       buffer to make the data block start at position 0
+      ByteBuffer buffer = mailboxContent.getPayload().asReadOnlyByteBuffer().slice();
       ReceivingMailbox.ReceivingMailboxStatus status = _mailbox.offerRaw(buffer, timeoutMs);
       switch (status) {
         case SUCCESS:
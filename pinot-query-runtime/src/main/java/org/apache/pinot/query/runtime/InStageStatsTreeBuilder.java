@@ -140,6 +140,8 @@ public class InStageStatsTreeBuilder implements PlanNodeVisitor<ObjectNode, Void
   public ObjectNode visitJoin(JoinNode node, Void context) {
     if (node.getJoinStrategy() == JoinNode.JoinStrategy.HASH) {
       return recursiveCase(node, MultiStageOperator.Type.HASH_JOIN);
+    } else if (node.getJoinStrategy() == JoinNode.JoinStrategy.SORT_MERGE) {
+      return recursiveCase(node, MultiStageOperator.Type.SORT_MERGE_JOIN);
     } else {
       assert node.getJoinStrategy() == JoinNode.JoinStrategy.LOOKUP;
       return recursiveCase(node, MultiStageOperator.Type.LOOKUP_JOIN);
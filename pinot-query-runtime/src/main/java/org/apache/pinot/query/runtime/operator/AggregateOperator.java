@@ -19,6 +19,7 @@
 package org.apache.pinot.query.runtime.operator;
 
 import com.google.common.base.Preconditions;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -65,6 +66,8 @@ public class AggregateOperator extends MultiStageOperator {
   private final MultistageAggregationExecutor _aggregationExecutor;
   private final MultistageGroupByExecutor _groupByExecutor;
   @Nullable
+  private TransferableBlock _upstreamEosBlock;
+  @Nullable
   private TransferableBlock _eosBlock;
   private final StatMap<StatKey> _statMap = new StatMap<>(StatKey.class);
 
@@ -100,7 +103,8 @@ public class AggregateOperator extends MultiStageOperator {
     } else {
       _groupByExecutor =
           new MultistageGroupByExecutor(getGroupKeyIds(groupKeys), aggFunctions, filterArgIds, maxFilterArgId, aggType,
-              leafReturnFinalResult, _resultSchema, context.getOpChainMetadata(), node.getNodeHint());
+              leafReturnFinalResult, _resultSchema, context.getOpChainMetadata(), node.getNodeHint(),
+              context.getSpillDir());
       _aggregationExecutor = null;
     }
   }
@@ -132,10 +136,18 @@ public class AggregateOperator extends MultiStageOperator {
   }
 
   @Override
-  protected TransferableBlock getNextBlock() {
+  public void close() {
+    if (_groupByExecutor != null) {
+      _groupByExecutor.close();
+    }
+    super.close();
+  }
+
+  @Override
+  protected TransferableBlock getNextBlock()
+      throws IOException {
     if (_hasConstructedAggregateBlock) {
-      assert _eosBlock != null;
-      return _eosBlock;
+      return produceSpilledOrEosBlock();
     }
     TransferableBlock finalBlock = _aggregationExecutor != null ? consumeAggregation() : consumeGroupBy();
     // returning upstream error block if finalBlock contains error.
@@ -143,18 +155,19 @@ public class AggregateOperator extends MultiStageOperator {
       return finalBlock;
     }
     assert finalBlock.isSuccessfulEndOfStreamBlock() : "Final block must be EOS block";
-    _eosBlock = updateEosBlock(finalBlock, _statMap);
+    _upstreamEosBlock = finalBlock;
     return produceAggregatedBlock();
   }
 
-  private TransferableBlock produceAggregatedBlock() {
+  private TransferableBlock produceAggregatedBlock()
+      throws IOException {
     _hasConstructedAggregateBlock = true;
     if (_aggregationExecutor != null) {
       return new TransferableBlock(_aggregationExecutor.getResult(), _resultSchema, DataBlock.Type.ROW);
     } else {
       List<Object[]> rows = _groupByExecutor.getResult();
       if (rows.isEmpty()) {
-        return _eosBlock;
+        return produceSpilledOrEosBlock();
       } else {
         TransferableBlock dataBlock = new TransferableBlock(rows, _resultSchema, DataBlock.Type.ROW);
         if (_groupByExecutor.isNumGroupsLimitReached()) {
@@ -166,18 +179,47 @@ public class AggregateOperator extends MultiStageOperator {
     }
   }
 
+  /**
+   * Returns the groups within the next spilled partition (after the groups in memory), or the EOS block once all the
+   * groups are returned. The stats are added to the EOS block only after all the spilled groups are returned so that
+   * they include the stats collected while returning them.
+   */
+  private TransferableBlock produceSpilledOrEosBlock()
+      throws IOException {
+    if (_eosBlock == null) {
+      if (_groupByExecutor != null && _groupByExecutor.hasSpilledRows()) {
+        List<Object[]> rows = _groupByExecutor.getNextSpilledPartitionResult();
+        if (rows != null) {
+          if (_groupByExecutor.isNumGroupsLimitReached()) {
+            _statMap.merge(StatKey.NUM_GROUPS_LIMIT_REACHED, true);
+          }
+          return new TransferableBlock(rows, _resultSchema, DataBlock.Type.ROW);
+        }
+      }
+      assert _upstreamEosBlock != null;
+      _eosBlock = updateEosBlock(_upstreamEosBlock, _statMap);
+    }
+    return _eosBlock;
+  }
+
   /**
    * Consumes the input blocks as a group by
    *
    * @return the last block, which must always be either an error or the end of the stream
    */
-  private TransferableBlock consumeGroupBy() {
+  private TransferableBlock consumeGroupBy()
+      throws IOException {
     TransferableBlock block = _input.nextBlock();
     while (block.isDataBlock()) {
       _groupByExecutor.processBlock(block);
       sampleAndCheckInterruption();
       block = _input.nextBlock();
     }
+    if (_groupByExecutor.hasSpilledRows()) {
+      _groupByExecutor.finishSpilling();
+      _statMap.merge(StatKey.SPILLED_ROWS, _groupByExecutor.getNumSpilledRows());
+      _statMap.merge(StatKey.SPILLED_BYTES, _groupByExecutor.getSpilledBytes());
+    }
     return block;
   }
 
@@ -370,7 +412,12 @@ public class AggregateOperator extends MultiStageOperator {
         return true;
       }
     },
-    NUM_GROUPS_LIMIT_REACHED(StatMap.Type.BOOLEAN);
+    NUM_GROUPS_LIMIT_REACHED(StatMap.Type.BOOLEAN),
+    /**
+     * Number of rows of the groups not in memory spilled to disk when the group-by spill threshold is reached.
+     */
+    SPILLED_ROWS(StatMap.Type.LONG),
+    SPILLED_BYTES(StatMap.Type.LONG);
     //@formatter:on
 
     private final StatMap.Type _type;
@@ -19,6 +19,8 @@
 package org.apache.pinot.query.runtime.operator;
 
 import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
@@ -43,6 +45,7 @@ import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 import org.apache.pinot.query.runtime.operator.operands.TransformOperand;
 import org.apache.pinot.query.runtime.operator.operands.TransformOperandFactory;
+import org.apache.pinot.query.runtime.operator.utils.SpilledRowPartitions;
 import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.spi.utils.BooleanUtils;
@@ -54,11 +57,14 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This {@code HashJoinOperator} implements the hash join algorithm.
- * <p>This algorithm assumes that the right table has to fit in memory since we are not supporting any spilling. It
- * reads the complete hash partitioned right table and materialize the data into a hash table. Then for each of the left
- * table row, it looks up for the corresponding row(s) from the hash table and create a joint row.
+ * <p>By default, this algorithm assumes that the right table has to fit in memory. It reads the complete hash
+ * partitioned right table and materialize the data into a hash table. Then for each of the left table row, it looks up
+ * for the corresponding row(s) from the hash table and create a joint row.
  * <p>For each of the data block received from the left table, it generates a joint data block. The output is in the
  * format of [left_row, right_row].
+ * <p>When the join spill threshold is enabled and the right table exceeds it, the join falls back to a grace hash
+ * join: both tables are hash partitioned on the join keys into local spill files, then the partitions are joined one
+ * at a time, so only one partition of the right table needs to fit in memory.
  */
 // TODO: Move inequi out of hashjoin. (https://github.com/apache/pinot/issues/9728)
 // TODO: Support memory size based resource limit.
@@ -84,6 +90,7 @@ public class HashJoinOperator extends MultiStageOperator {
   private final JoinRelType _joinType;
   private final KeySelector<?> _leftKeySelector;
   private final KeySelector<?> _rightKeySelector;
+  private final DataSchema _leftSchema;
   private final DataSchema _resultSchema;
   private final int _leftColumnSize;
   private final int _resultColumnSize;
@@ -104,6 +111,19 @@ public class HashJoinOperator extends MultiStageOperator {
    *   BREAK: Break right table build process, continue to perform JOIN operation, results might be partial.
    */
   private final JoinOverFlowMode _joinOverflowMode;
+  /**
+   * Number of rows of the right table kept in memory before spilling both tables to disk, non-positive means disabled.
+   */
+  private final int _spillThreshold;
+  private final File _spillDir;
+
+  // Used when the join is spilled to disk.
+  // The partitions of the right table are loaded into the hash table one at a time, and joined with the rows of the
+  // same partition of the left table.
+  private SpilledRowPartitions _rightSpilledPartitions;
+  private SpilledRowPartitions _leftSpilledPartitions;
+  private SpilledRowPartitions.BlockIterator _leftPartitionIterator;
+  private int _currentPartitionId;
 
   private boolean _isHashTableBuilt;
   private TransferableBlock _upstreamErrorBlock;
@@ -124,6 +144,7 @@ public class HashJoinOperator extends MultiStageOperator {
 
     _leftKeySelector = KeySelectorFactory.getKeySelector(node.getLeftKeys());
     _rightKeySelector = KeySelectorFactory.getKeySelector(node.getRightKeys());
+    _leftSchema = leftSchema;
     _leftColumnSize = leftSchema.size();
     _resultSchema = node.getDataSchema();
     _resultColumnSize = _resultSchema.size();
@@ -142,6 +163,8 @@ public class HashJoinOperator extends MultiStageOperator {
     PlanNode.NodeHint nodeHint = node.getNodeHint();
     _maxRowsInJoin = getMaxRowsInJoin(metadata, nodeHint);
     _joinOverflowMode = getJoinOverflowMode(metadata, nodeHint);
+    _spillThreshold = getSpillThreshold(metadata, nodeHint);
+    _spillDir = context.getSpillDir();
   }
 
   @Override
@@ -160,7 +183,7 @@ public class HashJoinOperator extends MultiStageOperator {
     return LOGGER;
   }
 
-  private int getMaxRowsInJoin(Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint) {
+  static int getMaxRowsInJoin(Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint) {
     if (nodeHint != null) {
       Map<String, String> joinOptions = nodeHint.getHintOptions().get(PinotHintOptions.JOIN_HINT_OPTIONS);
       if (joinOptions != null) {
@@ -174,7 +197,7 @@ public class HashJoinOperator extends MultiStageOperator {
     return maxRowsInJoin != null ? maxRowsInJoin : DEFAULT_MAX_ROWS_IN_JOIN;
   }
 
-  private JoinOverFlowMode getJoinOverflowMode(Map<String, String> contextMetadata,
+  static JoinOverFlowMode getJoinOverflowMode(Map<String, String> contextMetadata,
       @Nullable PlanNode.NodeHint nodeHint) {
     if (nodeHint != null) {
       Map<String, String> joinOptions = nodeHint.getHintOptions().get(PinotHintOptions.JOIN_HINT_OPTIONS);
@@ -189,6 +212,20 @@ public class HashJoinOperator extends MultiStageOperator {
     return joinOverflowMode != null ? joinOverflowMode : DEFAULT_JOIN_OVERFLOW_MODE;
   }
 
+  private int getSpillThreshold(Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint) {
+    if (nodeHint != null) {
+      Map<String, String> joinOptions = nodeHint.getHintOptions().get(PinotHintOptions.JOIN_HINT_OPTIONS);
+      if (joinOptions != null) {
+        String spillThresholdStr = joinOptions.get(PinotHintOptions.JoinHintOptions.JOIN_SPILL_THRESHOLD);
+        if (spillThresholdStr != null) {
+          return Integer.parseInt(spillThresholdStr);
+        }
+      }
+    }
+    Integer spillThreshold = QueryOptionsUtils.getJoinSpillThreshold(opChainMetadata);
+    return spillThreshold != null ? spillThreshold : 0;
+  }
+
   @Override
   public List<MultiStageOperator> getChildOperators() {
     return List.of(_leftInput, _rightInput);
@@ -201,7 +238,7 @@ public class HashJoinOperator extends MultiStageOperator {
 
   @Override
   protected TransferableBlock getNextBlock()
-      throws ProcessingException {
+      throws ProcessingException, IOException {
     if (!_isHashTableBuilt) {
       // Build JOIN hash table
       buildBroadcastHashTable();
@@ -209,16 +246,23 @@ public class HashJoinOperator extends MultiStageOperator {
     if (_upstreamErrorBlock != null) {
       return _upstreamErrorBlock;
     }
-    return buildJoinedDataBlock();
+    return _rightSpilledPartitions == null ? buildJoinedDataBlock() : buildSpilledJoinedDataBlock();
   }
 
   private void buildBroadcastHashTable()
-      throws ProcessingException {
+      throws ProcessingException, IOException {
     long startTime = System.currentTimeMillis();
     int numRowsInHashTable = 0;
     TransferableBlock rightBlock = _rightInput.nextBlock();
     while (!TransferableBlockUtils.isEndOfStream(rightBlock)) {
       List<Object[]> container = rightBlock.getContainer();
+      if (_rightSpilledPartitions != null) {
+        // Hash table already spilled, write the rows directly into the partitions
+        spillRows(_rightSpilledPartitions, _rightKeySelector, container);
+        sampleAndCheckInterruption();
+        rightBlock = _rightInput.nextBlock();
+        continue;
+      }
       // Row based overflow check.
       if (container.size() + numRowsInHashTable > _maxRowsInJoin) {
         if (_joinOverflowMode == JoinOverFlowMode.THROW) {
@@ -234,16 +278,11 @@ public class HashJoinOperator extends MultiStageOperator {
         }
       }
       // put all the rows into corresponding hash collections keyed by the key selector function.
-      for (Object[] row : container) {
-        ArrayList<Object[]> hashCollection = _broadcastRightTable.computeIfAbsent(_rightKeySelector.getKey(row),
-            k -> new ArrayList<>(INITIAL_HEURISTIC_SIZE));
-        int size = hashCollection.size();
-        if ((size & size - 1) == 0 && size < _maxRowsInJoin && size < Integer.MAX_VALUE / 2) { // is power of 2
-          hashCollection.ensureCapacity(Math.min(size << 1, _maxRowsInJoin));
-        }
-        hashCollection.add(row);
-      }
+      addRowsToHashTable(container);
       numRowsInHashTable += container.size();
+      if (_spillThreshold > 0 && numRowsInHashTable >= _spillThreshold) {
+        spillHashTable(rightBlock.getDataSchema());
+      }
       sampleAndCheckInterruption();
       rightBlock = _rightInput.nextBlock();
     }
@@ -253,10 +292,172 @@ public class HashJoinOperator extends MultiStageOperator {
       _isHashTableBuilt = true;
       _rightSideStats = rightBlock.getQueryStats();
       assert _rightSideStats != null;
+      if (_rightSpilledPartitions != null) {
+        _rightSpilledPartitions.finishWriting();
+        recordSpillStats(_rightSpilledPartitions);
+      }
     }
     _statMap.merge(StatKey.TIME_BUILDING_HASH_TABLE_MS, System.currentTimeMillis() - startTime);
   }
 
+  private void addRowsToHashTable(List<Object[]> rows) {
+    for (Object[] row : rows) {
+      ArrayList<Object[]> hashCollection = _broadcastRightTable.computeIfAbsent(_rightKeySelector.getKey(row),
+          k -> new ArrayList<>(INITIAL_HEURISTIC_SIZE));
+      int size = hashCollection.size();
+      if ((size & size - 1) == 0 && size < _maxRowsInJoin && size < Integer.MAX_VALUE / 2) { // is power of 2
+        hashCollection.ensureCapacity(Math.min(size << 1, _maxRowsInJoin));
+      }
+      hashCollection.add(row);
+    }
+  }
+
+  /**
+   * Moves the rows in the hash table into the right table spill partitions. All the following right rows are written
+   * directly into the partitions.
+   */
+  private void spillHashTable(DataSchema rightSchema)
+      throws IOException {
+    logger().info("Spilling join right table to disk as the number of rows reached the spill threshold: {}",
+        _spillThreshold);
+    _rightSpilledPartitions = new SpilledRowPartitions(_spillDir, "join_right", rightSchema);
+    for (Map.Entry<Object, ArrayList<Object[]>> entry : _broadcastRightTable.entrySet()) {
+      int partitionId = SpilledRowPartitions.getPartitionId(entry.getKey());
+      for (Object[] row : entry.getValue()) {
+        _rightSpilledPartitions.add(partitionId, row);
+      }
+    }
+    _broadcastRightTable.clear();
+  }
+
+  private static void spillRows(SpilledRowPartitions partitions, KeySelector<?> keySelector, List<Object[]> rows)
+      throws IOException {
+    for (Object[] row : rows) {
+      partitions.add(SpilledRowPartitions.getPartitionId(keySelector.getKey(row)), row);
+    }
+  }
+
+  private void recordSpillStats(SpilledRowPartitions partitions) {
+    _statMap.merge(StatKey.SPILLED_ROWS, partitions.getNumSpilledRows());
+    _statMap.merge(StatKey.SPILLED_BYTES, partitions.getSpilledBytes());
+  }
+
+  /**
+   * Joins the spilled tables partition by partition. The left table is fully consumed and spilled first, then for each
+   * partition, the right rows are loaded into the hash table and probed with the left rows of the same partition.
+   */
+  private TransferableBlock buildSpilledJoinedDataBlock()
+      throws ProcessingException, IOException {
+    if (_leftSpilledPartitions == null) {
+      spillLeftTable();
+    }
+    while (true) {
+      if (_upstreamErrorBlock != null) {
+        return _upstreamErrorBlock;
+      }
+      if (_isTerminated || _currentPartitionId == SpilledRowPartitions.NUM_PARTITIONS) {
+        closeSpilledPartitions();
+        assert _leftSideStats != null;
+        return TransferableBlockUtils.getEndOfStreamTransferableBlock(_leftSideStats);
+      }
+      if (_leftPartitionIterator == null) {
+        loadSpilledRightPartition(_currentPartitionId);
+        _leftPartitionIterator = _leftSpilledPartitions.read(_currentPartitionId);
+      }
+      if (_leftPartitionIterator.hasNext()) {
+        List<Object[]> rows = buildJoinedRows(_leftPartitionIterator.next());
+        sampleAndCheckInterruption();
+        if (!rows.isEmpty()) {
+          return new TransferableBlock(rows, _resultSchema, DataBlock.Type.ROW);
+        }
+        continue;
+      }
+      // All the left rows of the partition are processed, move on to the next partition
+      _leftPartitionIterator = null;
+      _currentPartitionId++;
+      if (needUnmatchedRightRows()) {
+        List<Object[]> rows = buildNonMatchRightRows();
+        if (!rows.isEmpty()) {
+          return new TransferableBlock(rows, _resultSchema, DataBlock.Type.ROW);
+        }
+      }
+    }
+  }
+
+  private void spillLeftTable()
+      throws IOException {
+    long startTime = System.currentTimeMillis();
+    _leftSpilledPartitions = new SpilledRowPartitions(_spillDir, "join_left", _leftSchema);
+    TransferableBlock leftBlock = _leftInput.nextBlock();
+    while (leftBlock.isDataBlock()) {
+      spillRows(_leftSpilledPartitions, _leftKeySelector, leftBlock.getContainer());
+      sampleAndCheckInterruption();
+      leftBlock = _leftInput.nextBlock();
+    }
+    if (leftBlock.isErrorBlock()) {
+      _upstreamErrorBlock = leftBlock;
+      return;
+    }
+    _leftSpilledPartitions.finishWriting();
+    recordSpillStats(_leftSpilledPartitions);
+    _statMap.merge(StatKey.TIME_SPILLING_MS, System.currentTimeMillis() - startTime);
+    assert _rightSideStats != null;
+    _leftSideStats = leftBlock.getQueryStats();
+    assert _leftSideStats != null;
+    _leftSideStats.mergeInOrder(_rightSideStats, getOperatorType(), _statMap);
+  }
+
+  private void loadSpilledRightPartition(int partitionId)
+      throws ProcessingException, IOException {
+    _broadcastRightTable.clear();
+    if (_matchedRightRows != null) {
+      _matchedRightRows.clear();
+    }
+    int numRowsInHashTable = 0;
+    try (SpilledRowPartitions.BlockIterator blockIterator = _rightSpilledPartitions.read(partitionId)) {
+      while (blockIterator.hasNext()) {
+        List<Object[]> rows = blockIterator.next();
+        // Row based overflow check on the partition.
+        if (rows.size() + numRowsInHashTable > _maxRowsInJoin) {
+          if (_joinOverflowMode == JoinOverFlowMode.THROW) {
+            throwProcessingExceptionForJoinRowLimitExceeded(
+                "Cannot build in memory hash table for spilled partition of join operator, reached number of rows "
+                    + "limit: " + _maxRowsInJoin);
+          } else {
+            addRowsToHashTable(rows.subList(0, _maxRowsInJoin - numRowsInHashTable));
+            _statMap.merge(StatKey.MAX_ROWS_IN_JOIN_REACHED, true);
+            break;
+          }
+        }
+        addRowsToHashTable(rows);
+        numRowsInHashTable += rows.size();
+      }
+    }
+  }
+
+  private void closeSpilledPartitions() {
+    if (_leftPartitionIterator != null) {
+      try {
+        _leftPartitionIterator.close();
+      } catch (IOException e) {
+        logger().warn("Caught exception while closing spilled partition", e);
+      }
+      _leftPartitionIterator = null;
+    }
+    if (_leftSpilledPartitions != null) {
+      _leftSpilledPartitions.close();
+    }
+    if (_rightSpilledPartitions != null) {
+      _rightSpilledPartitions.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    closeSpilledPartitions();
+    super.close();
+  }
+
   private TransferableBlock buildJoinedDataBlock()
       throws ProcessingException {
     // Keep reading the input blocks until we find a match row or all blocks are processed.
@@ -289,7 +490,7 @@ public class HashJoinOperator extends MultiStageOperator {
         return leftBlock;
       }
       assert leftBlock.isDataBlock();
-      List<Object[]> rows = buildJoinedRows(leftBlock);
+      List<Object[]> rows = buildJoinedRows(leftBlock.getContainer());
       sampleAndCheckInterruption();
       if (!rows.isEmpty()) {
         return new TransferableBlock(rows, _resultSchema, DataBlock.Type.ROW);
@@ -297,22 +498,21 @@ public class HashJoinOperator extends MultiStageOperator {
     }
   }
 
-  private List<Object[]> buildJoinedRows(TransferableBlock leftBlock)
+  private List<Object[]> buildJoinedRows(List<Object[]> container)
       throws ProcessingException {
     switch (_joinType) {
       case SEMI:
-        return buildJoinedDataBlockSemi(leftBlock);
+        return buildJoinedDataBlockSemi(container);
       case ANTI:
-        return buildJoinedDataBlockAnti(leftBlock);
+        return buildJoinedDataBlockAnti(container);
       default: { // INNER, LEFT, RIGHT, FULL
-        return buildJoinedDataBlockDefault(leftBlock);
+        return buildJoinedDataBlockDefault(container);
       }
     }
   }
 
-  private List<Object[]> buildJoinedDataBlockDefault(TransferableBlock leftBlock)
+  private List<Object[]> buildJoinedDataBlockDefault(List<Object[]> container)
       throws ProcessingException {
-    List<Object[]> container = leftBlock.getContainer();
     ArrayList<Object[]> rows = new ArrayList<>(container.size());
 
     for (Object[] leftRow : container) {
@@ -363,8 +563,7 @@ public class HashJoinOperator extends MultiStageOperator {
     return rows;
   }
 
-  private List<Object[]> buildJoinedDataBlockSemi(TransferableBlock leftBlock) {
-    List<Object[]> container = leftBlock.getContainer();
+  private List<Object[]> buildJoinedDataBlockSemi(List<Object[]> container) {
     List<Object[]> rows = new ArrayList<>(container.size());
 
     for (Object[] leftRow : container) {
@@ -378,8 +577,7 @@ public class HashJoinOperator extends MultiStageOperator {
     return rows;
   }
 
-  private List<Object[]> buildJoinedDataBlockAnti(TransferableBlock leftBlock) {
-    List<Object[]> container = leftBlock.getContainer();
+  private List<Object[]> buildJoinedDataBlockAnti(List<Object[]> container) {
     List<Object[]> rows = new ArrayList<>(container.size());
 
     for (Object[] leftRow : container) {
@@ -433,6 +631,11 @@ public class HashJoinOperator extends MultiStageOperator {
   }
 
   private void earlyTerminateLeftInput() {
+    if (_leftSpilledPartitions != null) {
+      // Left input is already fully consumed when the join is spilled
+      _isTerminated = true;
+      return;
+    }
     _leftInput.earlyTerminate();
     TransferableBlock leftBlock = _leftInput.nextBlock();
 
@@ -477,7 +680,7 @@ public class HashJoinOperator extends MultiStageOperator {
     return false;
   }
 
-  private void throwProcessingExceptionForJoinRowLimitExceeded(String reason)
+  static void throwProcessingExceptionForJoinRowLimitExceeded(String reason)
       throws ProcessingException {
     ProcessingException resourceLimitExceededException =
         new ProcessingException(QueryException.SERVER_RESOURCE_LIMIT_EXCEEDED_ERROR_CODE);
@@ -511,7 +714,16 @@ public class HashJoinOperator extends MultiStageOperator {
     /**
      * How long (CPU time) has been spent on building the hash table.
      */
-    TIME_BUILDING_HASH_TABLE_MS(StatMap.Type.LONG);
+    TIME_BUILDING_HASH_TABLE_MS(StatMap.Type.LONG),
+    /**
+     * Number of rows (from both tables) spilled to disk when the join spill threshold is reached.
+     */
+    SPILLED_ROWS(StatMap.Type.LONG),
+    SPILLED_BYTES(StatMap.Type.LONG),
+    /**
+     * How long has been spent on spilling the left table.
+     */
+    TIME_SPILLING_MS(StatMap.Type.LONG);
     //@formatter:on
 
     private final StatMap.Type _type;
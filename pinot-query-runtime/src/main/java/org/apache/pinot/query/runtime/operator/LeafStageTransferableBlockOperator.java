@@ -242,6 +242,12 @@ public class LeafStageTransferableBlockOperator extends MultiStageOperator {
           case RESIZE_TIME_MS:
             _statMap.merge(StatKey.RESIZE_TIME_MS, Long.parseLong(entry.getValue()));
             break;
+          case NUM_GROUP_BY_SPILLS:
+            _statMap.merge(StatKey.NUM_GROUP_BY_SPILLS, Integer.parseInt(entry.getValue()));
+            break;
+          case GROUP_BY_SPILLED_BYTES:
+            _statMap.merge(StatKey.GROUP_BY_SPILLED_BYTES, Long.parseLong(entry.getValue()));
+            break;
           case THREAD_CPU_TIME_NS:
             _statMap.merge(StatKey.THREAD_CPU_TIME_NS, Long.parseLong(entry.getValue()));
             break;
@@ -669,7 +675,9 @@ public class LeafStageTransferableBlockOperator extends MultiStageOperator {
       public String getStatName() {
         return "responseSerializationCpuTimeNs";
       }
-    };
+    },
+    NUM_GROUP_BY_SPILLS(StatMap.Type.INT, null),
+    GROUP_BY_SPILLED_BYTES(StatMap.Type.LONG, null);
 
     private final StatMap.Type _type;
     @Nullable
@@ -20,15 +20,19 @@ package org.apache.pinot.query.runtime.operator;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelDistribution;
+import org.apache.pinot.common.datablock.DataBlock;
 import org.apache.pinot.common.datatable.StatMap;
 import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.query.mailbox.MailboxService;
 import org.apache.pinot.query.mailbox.SendingMailbox;
 import org.apache.pinot.query.planner.physical.MailboxIdUtils;
@@ -38,6 +42,7 @@ import org.apache.pinot.query.routing.RoutingInfo;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 import org.apache.pinot.query.runtime.operator.exchange.BlockExchange;
+import org.apache.pinot.query.runtime.operator.utils.SortUtils;
 import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.spi.exception.QueryCancelledException;
@@ -48,7 +53,8 @@ import org.slf4j.LoggerFactory;
 /**
  * This {@code MailboxSendOperator} is created to send {@link TransferableBlock}s to the receiving end.
  *
- * TODO: Add support to sort the data prior to sending if sorting is enabled
+ * When sorting on the sender is enabled, all the rows are collected and sorted before being sent, so that each receiver
+ * gets a sorted stream from every sender and can merge them.
  */
 public class MailboxSendOperator extends MultiStageOperator {
   public static final EnumSet<RelDistribution.Type> SUPPORTED_EXCHANGE_TYPES =
@@ -61,12 +67,15 @@ public class MailboxSendOperator extends MultiStageOperator {
   private final MultiStageOperator _input;
   private final BlockExchange _exchange;
   private final StatMap<StatKey> _statMap = new StatMap<>(StatKey.class);
+  // Set when the rows should be sorted before being sent
+  private final SortUtils.SortComparator _sortComparator;
+
+  private TransferableBlock _sortedEosBlock;
 
-  // TODO: Support sort on sender
   public MailboxSendOperator(OpChainExecutionContext context, MultiStageOperator input, MailboxSendNode node) {
     this(context, input,
         statMap -> getBlockExchange(context, node.getReceiverStageId(), node.getDistributionType(), node.getKeys(),
-            statMap));
+            statMap), node.isSort() ? getSortComparator(node) : null);
     _statMap.merge(StatKey.STAGE, context.getStageId());
     _statMap.merge(StatKey.PARALLELISM, 1);
   }
@@ -74,9 +83,21 @@ public class MailboxSendOperator extends MultiStageOperator {
   @VisibleForTesting
   MailboxSendOperator(OpChainExecutionContext context, MultiStageOperator input,
       Function<StatMap<StatKey>, BlockExchange> exchangeFactory) {
+    this(context, input, exchangeFactory, null);
+  }
+
+  @VisibleForTesting
+  MailboxSendOperator(OpChainExecutionContext context, MultiStageOperator input,
+      Function<StatMap<StatKey>, BlockExchange> exchangeFactory, @Nullable SortUtils.SortComparator sortComparator) {
     super(context);
     _input = input;
     _exchange = exchangeFactory.apply(_statMap);
+    _sortComparator = sortComparator;
+  }
+
+  private static SortUtils.SortComparator getSortComparator(MailboxSendNode node) {
+    Preconditions.checkState(!node.getCollations().isEmpty(), "Field collations must be set to sort on sender");
+    return new SortUtils.SortComparator(node.getDataSchema(), node.getCollations(), false);
   }
 
   private static BlockExchange getBlockExchange(OpChainExecutionContext context, int receiverStageId,
@@ -128,7 +149,7 @@ public class MailboxSendOperator extends MultiStageOperator {
   @Override
   protected TransferableBlock getNextBlock() {
     try {
-      TransferableBlock block = _input.nextBlock();
+      TransferableBlock block = _sortComparator != null ? getNextSortedBlock() : _input.nextBlock();
       if (block.isSuccessfulEndOfStreamBlock()) {
         updateEosBlock(block, _statMap);
         // no need to check early terminate signal b/c the current block is already EOS
@@ -163,6 +184,34 @@ public class MailboxSendOperator extends MultiStageOperator {
     }
   }
 
+  /**
+   * Collects all the rows from the input, and returns them sorted in a single block followed by the EOS block.
+   */
+  private TransferableBlock getNextSortedBlock() {
+    if (_sortedEosBlock != null) {
+      return _sortedEosBlock;
+    }
+    DataSchema dataSchema = null;
+    List<Object[]> rows = new ArrayList<>();
+    while (true) {
+      TransferableBlock block = _input.nextBlock();
+      if (block.isDataBlock()) {
+        dataSchema = block.getDataSchema();
+        rows.addAll(block.getContainer());
+      } else if (block.isErrorBlock()) {
+        return block;
+      } else {
+        assert block.isSuccessfulEndOfStreamBlock();
+        if (rows.isEmpty()) {
+          return block;
+        }
+        _sortedEosBlock = block;
+        rows.sort(_sortComparator);
+        return new TransferableBlock(rows, dataSchema, DataBlock.Type.ROW);
+      }
+    }
+  }
+
   protected TransferableBlock createLeafBlock() {
     return TransferableBlockUtils.getEndOfStreamTransferableBlock(
         MultiStageQueryStats.createCancelledSend(_context.getStageId(), _statMap));
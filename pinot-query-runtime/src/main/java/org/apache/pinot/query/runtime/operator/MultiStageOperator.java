@@ -400,6 +400,15 @@ public abstract class MultiStageOperator
         StatMap<LookupJoinOperator.StatKey> stats = (StatMap<LookupJoinOperator.StatKey>) map;
         response.mergeMaxRowsInOperator(stats.getLong(LookupJoinOperator.StatKey.EMITTED_ROWS));
       }
+    },
+    SORT_MERGE_JOIN(SortMergeJoinOperator.StatKey.class) {
+      @Override
+      public void mergeInto(BrokerResponseNativeV2 response, StatMap<?> map) {
+        @SuppressWarnings("unchecked")
+        StatMap<SortMergeJoinOperator.StatKey> stats = (StatMap<SortMergeJoinOperator.StatKey>) map;
+        response.mergeMaxRowsInOperator(stats.getLong(SortMergeJoinOperator.StatKey.EMITTED_ROWS));
+        response.mergeMaxRowsInJoinReached(stats.getBoolean(SortMergeJoinOperator.StatKey.MAX_ROWS_IN_JOIN_REACHED));
+      }
     };
 
     private final Class _statKeyClass;
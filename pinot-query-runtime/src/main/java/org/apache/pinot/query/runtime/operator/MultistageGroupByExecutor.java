@@ -18,7 +18,10 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -41,6 +44,7 @@ import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.operator.groupby.GroupIdGenerator;
 import org.apache.pinot.query.runtime.operator.groupby.GroupIdGeneratorFactory;
+import org.apache.pinot.query.runtime.operator.utils.SpilledRowPartitions;
 import org.apache.pinot.query.runtime.operator.utils.TypeUtils;
 import org.roaringbitmap.PeekableIntIterator;
 import org.roaringbitmap.RoaringBitmap;
@@ -48,6 +52,9 @@ import org.roaringbitmap.RoaringBitmap;
 
 /**
  * Class that executes the group by aggregations for the multistage AggregateOperator.
+ * <p>When the group-by spill threshold is enabled and the number of groups reaches it, no new group is added in memory.
+ * The rows of the groups not in memory are hash partitioned on the group key into local spill files instead, and each
+ * partition is aggregated separately after the groups in memory are returned.
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class MultistageGroupByExecutor {
@@ -60,6 +67,12 @@ public class MultistageGroupByExecutor {
   private final DataSchema _resultSchema;
   private final int _numGroupsLimit;
   private final boolean _filteredAggregationsSkipEmptyGroups;
+  private final Map<String, String> _opChainMetadata;
+  @Nullable
+  private final PlanNode.NodeHint _nodeHint;
+  // Number of groups kept in memory before spilling the rows of the new groups, non-positive means disabled
+  private final int _spillThreshold;
+  private final File _spillDir;
 
   // Group By Result holders for each mode
   private final GroupByResultHolder[] _aggregateResultHolders;
@@ -69,9 +82,21 @@ public class MultistageGroupByExecutor {
   // because they use the zero based integer indexes to store results.
   private final GroupIdGenerator _groupIdGenerator;
 
+  // Used when the rows of the new groups are spilled to disk
+  private SpilledRowPartitions _spilledPartitions;
+  private int _currentPartitionId;
+  private boolean _spilledNumGroupsLimitReached;
+
   public MultistageGroupByExecutor(int[] groupKeyIds, AggregationFunction[] aggFunctions, int[] filterArgIds,
       int maxFilterArgId, AggType aggType, boolean leafReturnFinalResult, DataSchema resultSchema,
-      Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint) {
+      Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint, File spillDir) {
+    this(groupKeyIds, aggFunctions, filterArgIds, maxFilterArgId, aggType, leafReturnFinalResult, resultSchema,
+        opChainMetadata, nodeHint, getSpillThreshold(opChainMetadata, nodeHint), spillDir);
+  }
+
+  private MultistageGroupByExecutor(int[] groupKeyIds, AggregationFunction[] aggFunctions, int[] filterArgIds,
+      int maxFilterArgId, AggType aggType, boolean leafReturnFinalResult, DataSchema resultSchema,
+      Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint, int spillThreshold, File spillDir) {
     _groupKeyIds = groupKeyIds;
     _aggFunctions = aggFunctions;
     _filterArgIds = filterArgIds;
@@ -81,6 +106,12 @@ public class MultistageGroupByExecutor {
     _resultSchema = resultSchema;
     int maxInitialResultHolderCapacity = getMaxInitialResultHolderCapacity(opChainMetadata, nodeHint);
     _numGroupsLimit = getNumGroupsLimit(opChainMetadata, nodeHint);
+    _opChainMetadata = opChainMetadata;
+    _nodeHint = nodeHint;
+    // Spilling is only needed when the threshold is lower than the groups limit
+    _spillThreshold = spillThreshold < _numGroupsLimit ? spillThreshold : 0;
+    _spillDir = spillDir;
+    int numGroupsInMemoryLimit = _spillThreshold > 0 ? _spillThreshold : _numGroupsLimit;
 
     // By default, we compute all groups for SQL compliant results. However, we allow overriding this behavior via
     // query option for improved performance.
@@ -91,7 +122,7 @@ public class MultistageGroupByExecutor {
       _aggregateResultHolders = new GroupByResultHolder[numFunctions];
       for (int i = 0; i < numFunctions; i++) {
         _aggregateResultHolders[i] =
-            _aggFunctions[i].createGroupByResultHolder(maxInitialResultHolderCapacity, _numGroupsLimit);
+            _aggFunctions[i].createGroupByResultHolder(maxInitialResultHolderCapacity, numGroupsInMemoryLimit);
       }
       _mergeResultHolder = null;
     } else {
@@ -101,7 +132,21 @@ public class MultistageGroupByExecutor {
 
     _groupIdGenerator =
         GroupIdGeneratorFactory.getGroupIdGenerator(_resultSchema.getStoredColumnDataTypes(), groupKeyIds.length,
-            _numGroupsLimit);
+            numGroupsInMemoryLimit);
+  }
+
+  private static int getSpillThreshold(Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint) {
+    if (nodeHint != null) {
+      Map<String, String> aggregateOptions = nodeHint.getHintOptions().get(PinotHintOptions.AGGREGATE_HINT_OPTIONS);
+      if (aggregateOptions != null) {
+        String spillThresholdStr = aggregateOptions.get(PinotHintOptions.AggregateOptions.GROUP_BY_SPILL_THRESHOLD);
+        if (spillThresholdStr != null) {
+          return Integer.parseInt(spillThresholdStr);
+        }
+      }
+    }
+    Integer spillThreshold = QueryOptionsUtils.getGroupBySpillThreshold(opChainMetadata);
+    return spillThreshold != null ? spillThreshold : 0;
   }
 
   private int getNumGroupsLimit(Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint) {
@@ -142,12 +187,124 @@ public class MultistageGroupByExecutor {
   /**
    * Performs group-by aggregation for the data in the block.
    */
-  public void processBlock(TransferableBlock block) {
+  public void processBlock(TransferableBlock block)
+      throws IOException {
     if (!_aggType.isInputIntermediateFormat()) {
       processAggregate(block);
     } else {
       processMerge(block);
     }
+    if (_spillThreshold > 0 && _groupIdGenerator.getNumGroups() == _spillThreshold) {
+      spillNewGroups(block);
+    }
+  }
+
+  /**
+   * Spills the rows of the groups not in memory. Should be called after processing the block with all the groups in
+   * memory, where the rows of the new groups are skipped with {@link GroupIdGenerator#INVALID_ID}. No new group can be
+   * added once the groups in memory reach the spill threshold, so the rows of a group are either all aggregated in
+   * memory or all spilled.
+   */
+  private void spillNewGroups(TransferableBlock block)
+      throws IOException {
+    int[] groupIds = generateGroupByKeys(block);
+    List<Object[]> rows = null;
+    int numRows = groupIds.length;
+    for (int i = 0; i < numRows; i++) {
+      if (groupIds[i] == GroupKeyGenerator.INVALID_ID) {
+        if (rows == null) {
+          rows = block.getContainer();
+          if (_spilledPartitions == null) {
+            _spilledPartitions = new SpilledRowPartitions(_spillDir, "groupby", block.getDataSchema());
+          }
+        }
+        Object[] row = rows.get(i);
+        _spilledPartitions.add(SpilledRowPartitions.getPartitionId(getGroupKey(row)), row);
+      }
+    }
+  }
+
+  private Object getGroupKey(Object[] row) {
+    int numKeys = _groupKeyIds.length;
+    if (numKeys == 1) {
+      return row[_groupKeyIds[0]];
+    }
+    Object[] key = new Object[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      key[i] = row[_groupKeyIds[i]];
+    }
+    return Arrays.asList(key);
+  }
+
+  /**
+   * Returns whether some rows are spilled to disk.
+   */
+  public boolean hasSpilledRows() {
+    return _spilledPartitions != null;
+  }
+
+  public long getNumSpilledRows() {
+    return _spilledPartitions != null ? _spilledPartitions.getNumSpilledRows() : 0;
+  }
+
+  public long getSpilledBytes() {
+    return _spilledPartitions != null ? _spilledPartitions.getSpilledBytes() : 0;
+  }
+
+  /**
+   * Flushes the spilled rows to disk. Should be called after processing all the blocks.
+   */
+  public void finishSpilling()
+      throws IOException {
+    if (_spilledPartitions != null) {
+      _spilledPartitions.finishWriting();
+    }
+  }
+
+  /**
+   * Aggregates the next non-empty spilled partition and returns the result, or {@code null} when all the partitions
+   * are processed. Should be called after {@link #getResult()}.
+   */
+  @Nullable
+  public List<Object[]> getNextSpilledPartitionResult()
+      throws IOException {
+    if (_spilledPartitions == null) {
+      return null;
+    }
+    while (_currentPartitionId < SpilledRowPartitions.NUM_PARTITIONS) {
+      int partitionId = _currentPartitionId++;
+      if (_spilledPartitions.getNumRows(partitionId) == 0) {
+        continue;
+      }
+      // All the rows of a group are within the same partition, so each partition can be aggregated separately
+      MultistageGroupByExecutor partitionExecutor =
+          new MultistageGroupByExecutor(_groupKeyIds, _aggFunctions, _filterArgIds, _maxFilterArgId, _aggType,
+              _leafReturnFinalResult, _resultSchema, _opChainMetadata, _nodeHint, 0, _spillDir);
+      try (SpilledRowPartitions.BlockIterator blockIterator = _spilledPartitions.read(partitionId)) {
+        while (blockIterator.hasNext()) {
+          partitionExecutor.processBlock(
+              new TransferableBlock(blockIterator.next(), _spilledPartitions.getDataSchema(), DataBlock.Type.ROW));
+        }
+      }
+      if (partitionExecutor.isNumGroupsLimitReached()) {
+        _spilledNumGroupsLimitReached = true;
+      }
+      List<Object[]> rows = partitionExecutor.getResult();
+      if (!rows.isEmpty()) {
+        return rows;
+      }
+    }
+    close();
+    return null;
+  }
+
+  /**
+   * Deletes the spilled rows if any.
+   */
+  public void close() {
+    if (_spilledPartitions != null) {
+      _spilledPartitions.close();
+    }
   }
 
   /**
@@ -202,7 +359,7 @@ public class MultistageGroupByExecutor {
   }
 
   public boolean isNumGroupsLimitReached() {
-    return _groupIdGenerator.getNumGroups() == _numGroupsLimit;
+    return _groupIdGenerator.getNumGroups() == _numGroupsLimit || _spilledNumGroupsLimitReached;
   }
 
   private void processAggregate(TransferableBlock block) {
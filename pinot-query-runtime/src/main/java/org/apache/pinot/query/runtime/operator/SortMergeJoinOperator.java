@@ -0,0 +1,557 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.pinot.common.datablock.DataBlock;
+import org.apache.pinot.common.datatable.StatMap;
+import org.apache.pinot.common.response.ProcessingException;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.planner.plannode.JoinNode;
+import org.apache.pinot.query.planner.plannode.PlanNode;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.operands.TransformOperand;
+import org.apache.pinot.query.runtime.operator.operands.TransformOperandFactory;
+import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
+import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
+import org.apache.pinot.spi.utils.BooleanUtils;
+import org.apache.pinot.spi.utils.CommonConstants.MultiStageQueryRunner.JoinOverFlowMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * This {@code SortMergeJoinOperator} implements the sort merge join algorithm.
+ * <p>This algorithm assumes that both the left and the right table are sorted on the join keys in ascending order with
+ * nulls last, which is guaranteed by the sorted exchange the planner inserts below the join. Both tables are consumed
+ * in lockstep, and only the right rows sharing the current join key are kept in memory, so unlike the
+ * {@link HashJoinOperator}, the right table doesn't need to fit in memory.
+ * <p>For each of the data block received from the left table, it generates a joint data block. The output is in the
+ * format of [left_row, right_row].
+ * <p>Following the SQL semantics, rows with {@code null} in any of the join keys never match.
+ */
+public class SortMergeJoinOperator extends MultiStageOperator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SortMergeJoinOperator.class);
+  private static final String EXPLAIN_NAME = "SORT_MERGE_JOIN";
+
+  private static final Set<JoinRelType> SUPPORTED_JOIN_TYPES =
+      Set.of(JoinRelType.INNER, JoinRelType.LEFT, JoinRelType.RIGHT, JoinRelType.FULL, JoinRelType.SEMI,
+          JoinRelType.ANTI);
+
+  private final MultiStageOperator _leftInput;
+  private final MultiStageOperator _rightInput;
+  private final JoinRelType _joinType;
+  private final int[] _leftKeyIds;
+  private final int[] _rightKeyIds;
+  private final int _leftColumnSize;
+  private final DataSchema _resultSchema;
+  private final int _resultColumnSize;
+  private final List<TransformOperand> _nonEquiEvaluators;
+  private final StatMap<StatKey> _statMap = new StatMap<>(StatKey.class);
+
+  /**
+   * Max rows allowed in the right table group with the same join key. Also max rows emitted in each join with a block
+   * from the left table.
+   */
+  private final int _maxRowsInJoin;
+  /**
+   * Mode when join overflow happens, supported values: THROW or BREAK.
+   *   THROW(default): Throw exception when the limit is reached.
+   *   BREAK: Stop adding rows once the limit is reached, results might be partial.
+   */
+  private final JoinOverFlowMode _joinOverflowMode;
+
+  // Current block read from the right table, and the index of the next right row to be processed
+  private List<Object[]> _rightRows;
+  private int _rightRowId;
+  private boolean _isRightInputFinished;
+
+  // Right rows sharing the same join key, the first row is used as the key for comparison
+  private final List<Object[]> _rightGroup = new ArrayList<>();
+  // Used to track matched right rows in the current group.
+  // Only used for right join and full join to output non-matched right rows.
+  private final BitSet _matchedRightGroupRows;
+  private boolean _isRightGroupLoaded;
+
+  private boolean _isLeftInputFinished;
+  private TransferableBlock _upstreamErrorBlock;
+  private MultiStageQueryStats _leftSideStats;
+  private MultiStageQueryStats _rightSideStats;
+  // Needed to indicate we have finished processing all results after returning last block.
+  private boolean _isTerminated;
+
+  public SortMergeJoinOperator(OpChainExecutionContext context, MultiStageOperator leftInput, DataSchema leftSchema,
+      MultiStageOperator rightInput, JoinNode node) {
+    super(context);
+    _leftInput = leftInput;
+    _rightInput = rightInput;
+    _joinType = node.getJoinType();
+    Preconditions.checkState(SUPPORTED_JOIN_TYPES.contains(_joinType),
+        "Join type: %s is not supported for sort merge join", _joinType);
+
+    List<Integer> leftKeys = node.getLeftKeys();
+    List<Integer> rightKeys = node.getRightKeys();
+    Preconditions.checkState(!leftKeys.isEmpty() && leftKeys.size() == rightKeys.size(),
+        "Sort merge join requires the same number of non-empty join keys on both sides");
+    _leftKeyIds = leftKeys.stream().mapToInt(Integer::intValue).toArray();
+    _rightKeyIds = rightKeys.stream().mapToInt(Integer::intValue).toArray();
+    _leftColumnSize = leftSchema.size();
+    _resultSchema = node.getDataSchema();
+    _resultColumnSize = _resultSchema.size();
+    List<RexExpression> nonEquiConditions = node.getNonEquiConditions();
+    _nonEquiEvaluators = new ArrayList<>(nonEquiConditions.size());
+    for (RexExpression nonEquiCondition : nonEquiConditions) {
+      _nonEquiEvaluators.add(TransformOperandFactory.getTransformOperand(nonEquiCondition, _resultSchema));
+    }
+    _matchedRightGroupRows = needUnmatchedRightRows() ? new BitSet() : null;
+    Map<String, String> metadata = context.getOpChainMetadata();
+    PlanNode.NodeHint nodeHint = node.getNodeHint();
+    _maxRowsInJoin = HashJoinOperator.getMaxRowsInJoin(metadata, nodeHint);
+    _joinOverflowMode = HashJoinOperator.getJoinOverflowMode(metadata, nodeHint);
+  }
+
+  @Override
+  public void registerExecution(long time, int numRows) {
+    _statMap.merge(StatKey.EXECUTION_TIME_MS, time);
+    _statMap.merge(StatKey.EMITTED_ROWS, numRows);
+  }
+
+  @Override
+  public Type getOperatorType() {
+    return Type.SORT_MERGE_JOIN;
+  }
+
+  @Override
+  protected Logger logger() {
+    return LOGGER;
+  }
+
+  @Override
+  public List<MultiStageOperator> getChildOperators() {
+    return List.of(_leftInput, _rightInput);
+  }
+
+  @Override
+  public String toExplainString() {
+    return EXPLAIN_NAME;
+  }
+
+  @Override
+  protected TransferableBlock getNextBlock()
+      throws ProcessingException {
+    if (!_isRightGroupLoaded) {
+      loadNextRightGroup();
+      _isRightGroupLoaded = true;
+    }
+    // Keep reading the input blocks until we find a match row or all blocks are processed.
+    while (true) {
+      if (_upstreamErrorBlock != null) {
+        return _upstreamErrorBlock;
+      }
+      if (_isTerminated) {
+        return getEndOfStreamBlock();
+      }
+      if (_isLeftInputFinished) {
+        // Only reached for right join and full join
+        List<Object[]> rows = buildNonMatchRightRows();
+        if (!rows.isEmpty()) {
+          return new TransferableBlock(rows, _resultSchema, DataBlock.Type.ROW);
+        }
+        continue;
+      }
+
+      TransferableBlock leftBlock = _leftInput.nextBlock();
+      if (leftBlock.isErrorBlock()) {
+        return leftBlock;
+      }
+      if (leftBlock.isSuccessfulEndOfStreamBlock()) {
+        _leftSideStats = leftBlock.getQueryStats();
+        assert _leftSideStats != null;
+        _isLeftInputFinished = true;
+        if (!needUnmatchedRightRows()) {
+          earlyTerminateRightInput();
+        }
+        continue;
+      }
+      assert leftBlock.isDataBlock();
+      List<Object[]> rows = buildJoinedRows(leftBlock.getContainer());
+      sampleAndCheckInterruption();
+      if (!_isTerminated && _upstreamErrorBlock == null && _rightGroup.isEmpty() && !needUnmatchedLeftRows()
+          && _joinType != JoinRelType.ANTI) {
+        // Right table is exhausted, none of the remaining left rows can produce output
+        earlyTerminateLeftInput();
+      }
+      if (!rows.isEmpty()) {
+        return new TransferableBlock(rows, _resultSchema, DataBlock.Type.ROW);
+      }
+    }
+  }
+
+  private List<Object[]> buildJoinedRows(List<Object[]> container)
+      throws ProcessingException {
+    List<Object[]> rows = new ArrayList<>(container.size());
+    for (Object[] leftRow : container) {
+      boolean hasMatchedGroup = false;
+      if (!hasNullKey(leftRow, _leftKeyIds)) {
+        // Skip the right groups with smaller keys, which cannot match any of the remaining left rows
+        while (!_rightGroup.isEmpty() && compareKeys(leftRow, _leftKeyIds, _rightGroup.get(0), _rightKeyIds) > 0) {
+          if (needUnmatchedRightRows()) {
+            addNonMatchRightGroupRows(rows);
+          }
+          loadNextRightGroup();
+          if (_upstreamErrorBlock != null) {
+            return rows;
+          }
+        }
+        hasMatchedGroup =
+            !_rightGroup.isEmpty() && compareKeys(leftRow, _leftKeyIds, _rightGroup.get(0), _rightKeyIds) == 0;
+      }
+      switch (_joinType) {
+        case SEMI:
+          // SEMI-JOIN only checks existence of the key
+          if (hasMatchedGroup) {
+            rows.add(leftRow);
+          }
+          break;
+        case ANTI:
+          // ANTI-JOIN only checks non-existence of the key
+          if (!hasMatchedGroup) {
+            rows.add(leftRow);
+          }
+          break;
+        default: // INNER, LEFT, RIGHT, FULL
+          if (!joinLeftRow(leftRow, hasMatchedGroup, rows)) {
+            return rows;
+          }
+          break;
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Joins the left row with the current right group and adds the joined rows into the given list.
+   *
+   * @return {@code false} if the max rows limit has been reached, {@code true} otherwise.
+   */
+  private boolean joinLeftRow(Object[] leftRow, boolean hasMatchedGroup, List<Object[]> rows)
+      throws ProcessingException {
+    boolean hasMatchForLeftRow = false;
+    if (hasMatchedGroup) {
+      int numRightRows = _rightGroup.size();
+      for (int i = 0; i < numRightRows; i++) {
+        Object[] resultRow = joinRow(leftRow, _rightGroup.get(i));
+        if (_nonEquiEvaluators.isEmpty() || _nonEquiEvaluators.stream()
+            .allMatch(evaluator -> BooleanUtils.isTrueInternalValue(evaluator.apply(resultRow)))) {
+          if (isMaxRowsLimitReached(rows.size())) {
+            return false;
+          }
+          rows.add(resultRow);
+          hasMatchForLeftRow = true;
+          if (_matchedRightGroupRows != null) {
+            _matchedRightGroupRows.set(i);
+          }
+        }
+      }
+    }
+    if (!hasMatchForLeftRow && needUnmatchedLeftRows()) {
+      if (isMaxRowsLimitReached(rows.size())) {
+        return false;
+      }
+      rows.add(joinRow(leftRow, null));
+    }
+    return true;
+  }
+
+  /**
+   * Reads the next group of right rows sharing the same join key into {@link #_rightGroup}. The group is empty when the
+   * right table is exhausted.
+   */
+  private void loadNextRightGroup()
+      throws ProcessingException {
+    _rightGroup.clear();
+    if (_matchedRightGroupRows != null) {
+      _matchedRightGroupRows.clear();
+    }
+    Object[] firstRow = peekRightRow();
+    if (firstRow == null) {
+      return;
+    }
+    boolean maxRowsReached = false;
+    Object[] rightRow = firstRow;
+    do {
+      if (_rightGroup.size() == _maxRowsInJoin) {
+        if (_joinOverflowMode == JoinOverFlowMode.THROW) {
+          HashJoinOperator.throwProcessingExceptionForJoinRowLimitExceeded(
+              "Cannot build right table group with the same key for sort merge join operator, reached number of rows "
+                  + "limit: " + _maxRowsInJoin);
+        }
+        // Skip the remaining rows with the same key
+        maxRowsReached = true;
+      }
+      if (!maxRowsReached) {
+        _rightGroup.add(rightRow);
+      }
+      _rightRowId++;
+      rightRow = peekRightRow();
+    } while (rightRow != null && compareKeys(firstRow, _rightKeyIds, rightRow, _rightKeyIds) == 0);
+    if (maxRowsReached) {
+      _statMap.merge(StatKey.MAX_ROWS_IN_JOIN_REACHED, true);
+    }
+    _statMap.merge(StatKey.MAX_ROWS_IN_RIGHT_GROUP, _rightGroup.size());
+  }
+
+  /**
+   * Returns the next right row without consuming it, or {@code null} if the right table is exhausted or an error block
+   * is received.
+   */
+  @Nullable
+  private Object[] peekRightRow() {
+    while (_rightRows == null || _rightRowId == _rightRows.size()) {
+      if (_isRightInputFinished) {
+        return null;
+      }
+      TransferableBlock rightBlock = _rightInput.nextBlock();
+      if (rightBlock.isErrorBlock()) {
+        _upstreamErrorBlock = rightBlock;
+        _isRightInputFinished = true;
+        _rightRows = null;
+        return null;
+      }
+      if (rightBlock.isSuccessfulEndOfStreamBlock()) {
+        _rightSideStats = rightBlock.getQueryStats();
+        assert _rightSideStats != null;
+        _isRightInputFinished = true;
+        _rightRows = null;
+        return null;
+      }
+      _rightRows = rightBlock.getContainer();
+      _rightRowId = 0;
+    }
+    return _rightRows.get(_rightRowId);
+  }
+
+  private void addNonMatchRightGroupRows(List<Object[]> rows) {
+    int numRightRows = _rightGroup.size();
+    int unmatchedIndex = 0;
+    while ((unmatchedIndex = _matchedRightGroupRows.nextClearBit(unmatchedIndex)) < numRightRows) {
+      rows.add(joinRow(null, _rightGroup.get(unmatchedIndex++)));
+    }
+  }
+
+  /**
+   * Returns the non-matched rows of the current right group and the following group, and moves to the next group.
+   * Marks the operator as terminated once the right table is exhausted.
+   */
+  private List<Object[]> buildNonMatchRightRows()
+      throws ProcessingException {
+    List<Object[]> rows = new ArrayList<>();
+    addNonMatchRightGroupRows(rows);
+    loadNextRightGroup();
+    if (_rightGroup.isEmpty()) {
+      _isTerminated = true;
+    } else {
+      addNonMatchRightGroupRows(rows);
+      loadNextRightGroup();
+    }
+    return rows;
+  }
+
+  private Object[] joinRow(@Nullable Object[] leftRow, @Nullable Object[] rightRow) {
+    Object[] resultRow = new Object[_resultColumnSize];
+    if (leftRow != null) {
+      System.arraycopy(leftRow, 0, resultRow, 0, leftRow.length);
+    }
+    if (rightRow != null) {
+      System.arraycopy(rightRow, 0, resultRow, _leftColumnSize, rightRow.length);
+    }
+    return resultRow;
+  }
+
+  private static boolean hasNullKey(Object[] row, int[] keyIds) {
+    for (int keyId : keyIds) {
+      if (row[keyId] == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compares the join keys of the given rows in the same order as the sorted exchange, i.e. ascending with nulls last.
+   * Keys of the same class are compared exactly, and only numbers of different classes are compared as double.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static int compareKeys(Object[] row1, int[] keyIds1, Object[] row2, int[] keyIds2) {
+    int numKeys = keyIds1.length;
+    for (int i = 0; i < numKeys; i++) {
+      Object v1 = row1[keyIds1[i]];
+      Object v2 = row2[keyIds2[i]];
+      if (v1 == null) {
+        if (v2 == null) {
+          continue;
+        }
+        return 1;
+      }
+      if (v2 == null) {
+        return -1;
+      }
+      int result;
+      if (v1.getClass() != v2.getClass() && v1 instanceof Number && v2 instanceof Number) {
+        result = Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
+      } else {
+        result = ((Comparable) v1).compareTo(v2);
+      }
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  private boolean needUnmatchedRightRows() {
+    return _joinType == JoinRelType.RIGHT || _joinType == JoinRelType.FULL;
+  }
+
+  private boolean needUnmatchedLeftRows() {
+    return _joinType == JoinRelType.LEFT || _joinType == JoinRelType.FULL;
+  }
+
+  private void earlyTerminateLeftInput() {
+    _leftInput.earlyTerminate();
+    TransferableBlock leftBlock = _leftInput.nextBlock();
+    while (!leftBlock.isSuccessfulEndOfStreamBlock()) {
+      if (leftBlock.isErrorBlock()) {
+        _upstreamErrorBlock = leftBlock;
+        return;
+      }
+      leftBlock = _leftInput.nextBlock();
+    }
+    _leftSideStats = leftBlock.getQueryStats();
+    assert _leftSideStats != null;
+    _isLeftInputFinished = true;
+    if (needUnmatchedRightRows()) {
+      // Right table is already exhausted
+      _isTerminated = true;
+    } else {
+      earlyTerminateRightInput();
+    }
+  }
+
+  private void earlyTerminateRightInput() {
+    _rightGroup.clear();
+    _rightRows = null;
+    if (!_isRightInputFinished) {
+      _rightInput.earlyTerminate();
+      TransferableBlock rightBlock = _rightInput.nextBlock();
+      while (!rightBlock.isSuccessfulEndOfStreamBlock()) {
+        if (rightBlock.isErrorBlock()) {
+          _upstreamErrorBlock = rightBlock;
+          return;
+        }
+        rightBlock = _rightInput.nextBlock();
+      }
+      _rightSideStats = rightBlock.getQueryStats();
+      assert _rightSideStats != null;
+      _isRightInputFinished = true;
+    }
+    _isTerminated = true;
+  }
+
+  private TransferableBlock getEndOfStreamBlock() {
+    assert _leftSideStats != null && _rightSideStats != null;
+    _leftSideStats.mergeInOrder(_rightSideStats, getOperatorType(), _statMap);
+    return TransferableBlockUtils.getEndOfStreamTransferableBlock(_leftSideStats);
+  }
+
+  /**
+   * Checks if we have reached the rows limit for joined rows. If the limit has been reached, either an exception is
+   * thrown or both inputs are early terminated based on the {@link #_joinOverflowMode}.
+   *
+   * @return {@code true} if the limit has been reached, {@code false} otherwise.
+   */
+  private boolean isMaxRowsLimitReached(int numJoinedRows)
+      throws ProcessingException {
+    if (numJoinedRows == _maxRowsInJoin) {
+      if (_joinOverflowMode == JoinOverFlowMode.THROW) {
+        HashJoinOperator.throwProcessingExceptionForJoinRowLimitExceeded(
+            "Cannot process join, reached number of rows limit: " + _maxRowsInJoin);
+      } else {
+        // Skip over remaining blocks until we reach the end of stream since we already breached the rows limit.
+        logger().info("Terminating join operator early as the maximum number of rows limit was reached: {}",
+            _maxRowsInJoin);
+        _statMap.merge(StatKey.MAX_ROWS_IN_JOIN_REACHED, true);
+        earlyTerminateRightInput();
+        if (_upstreamErrorBlock == null) {
+          earlyTerminateLeftInput();
+        }
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  public enum StatKey implements StatMap.Key {
+    //@formatter:off
+    EXECUTION_TIME_MS(StatMap.Type.LONG) {
+      @Override
+      public boolean includeDefaultInJson() {
+        return true;
+      }
+    },
+    EMITTED_ROWS(StatMap.Type.LONG) {
+      @Override
+      public boolean includeDefaultInJson() {
+        return true;
+      }
+    },
+    MAX_ROWS_IN_JOIN_REACHED(StatMap.Type.BOOLEAN),
+    /**
+     * Max number of right rows sharing the same join key, which is the max number of right rows kept in memory.
+     */
+    MAX_ROWS_IN_RIGHT_GROUP(StatMap.Type.INT) {
+      @Override
+      public int merge(int value1, int value2) {
+        return Math.max(value1, value2);
+      }
+    };
+    //@formatter:on
+
+    private final StatMap.Type _type;
+
+    StatKey(StatMap.Type type) {
+      _type = type;
+    }
+
+    @Override
+    public StatMap.Type getType() {
+      return _type;
+    }
+  }
+}
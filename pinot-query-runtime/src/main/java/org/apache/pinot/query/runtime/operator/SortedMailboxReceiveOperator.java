@@ -21,6 +21,8 @@ package org.apache.pinot.query.runtime.operator;
 import com.google.common.base.Preconditions;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.pinot.common.datablock.DataBlock;
@@ -28,6 +30,7 @@ import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.query.mailbox.ReceivingMailbox;
 import org.apache.pinot.query.planner.plannode.MailboxReceiveNode;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.operator.utils.AsyncStream;
 import org.apache.pinot.query.runtime.operator.utils.SortUtils;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.slf4j.Logger;
@@ -38,26 +41,30 @@ import org.slf4j.LoggerFactory;
  * This {@code SortedMailboxReceiveOperator} receives data from a {@link ReceivingMailbox} and serve it out from the
  * {@link #nextBlock()} API in a sorted manner.
  *
- *  TODO: Once sorting on the {@code MailboxSendOperator} is available, modify this to use a k-way merge instead of
- *        resorting via the PriorityQueue.
+ * When the data is sorted on the sender side, the sorted streams of the mailboxes are merged (k-way merge), and only
+ * the current block of each mailbox is kept in memory. Otherwise, all the received rows are collected and sorted.
  */
 public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
   private static final Logger LOGGER = LoggerFactory.getLogger(SortedMailboxReceiveOperator.class);
 
   private static final String EXPLAIN_NAME = "SORTED_MAILBOX_RECEIVE";
+  private static final int MAX_ROWS_PER_MERGED_BLOCK = 10_000;
 
   private final DataSchema _dataSchema;
   private final List<RelFieldCollation> _collations;
+  private final boolean _sortedOnSender;
   private final List<Object[]> _rows = new ArrayList<>();
 
+  // Mailboxes with rows left to merge, ordered by their current row. Only used when the data is sorted on the sender.
+  private PriorityQueue<MailboxCursor> _mailboxCursors;
   private TransferableBlock _eosBlock;
 
-  // TODO: Support merge sort when sender side sort is supported.
   public SortedMailboxReceiveOperator(OpChainExecutionContext context, MailboxReceiveNode node) {
     super(context, node);
     Preconditions.checkState(!CollectionUtils.isEmpty(node.getCollations()), "Field collations must be set");
     _dataSchema = node.getDataSchema();
     _collations = node.getCollations();
+    _sortedOnSender = node.isSortedOnSender();
   }
 
   @Override
@@ -75,6 +82,9 @@ public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
     if (_eosBlock != null) {
       return _eosBlock;
     }
+    if (_sortedOnSender) {
+      return getNextMergedBlock();
+    }
     // Collect all the rows from the mailbox and sort them
     while (true) {
       TransferableBlock block = _multiConsumer.readBlockBlocking();
@@ -88,8 +98,6 @@ public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
         // specific stats.
         _eosBlock = updateEosBlock(block, _statMap);
         if (!_rows.isEmpty()) {
-          // TODO: This might not be efficient because we are sorting all the received rows. We should use a k-way merge
-          //       when sender side is sorted.
           _rows.sort(new SortUtils.SortComparator(_dataSchema, _collations, false));
           return new TransferableBlock(_rows, _dataSchema, DataBlock.Type.ROW);
         } else {
@@ -99,15 +107,93 @@ public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
     }
   }
 
+  /**
+   * Merges the sorted streams of the mailboxes, and returns the next block of merged rows.
+   */
+  private TransferableBlock getNextMergedBlock() {
+    if (_mailboxCursors == null) {
+      SortUtils.SortComparator comparator = new SortUtils.SortComparator(_dataSchema, _collations, false);
+      _mailboxCursors = new PriorityQueue<>((c1, c2) -> comparator.compare(c1.getRow(), c2.getRow()));
+      for (AsyncStream<TransferableBlock> mailbox : _multiConsumer.getMailboxes()) {
+        TransferableBlock errorBlock = advance(new MailboxCursor(mailbox));
+        if (errorBlock != null) {
+          return errorBlock;
+        }
+      }
+    }
+    List<Object[]> rows = new ArrayList<>();
+    while (!_mailboxCursors.isEmpty() && rows.size() < MAX_ROWS_PER_MERGED_BLOCK) {
+      MailboxCursor cursor = _mailboxCursors.poll();
+      rows.add(cursor.getRow());
+      cursor._rowId++;
+      TransferableBlock errorBlock = advance(cursor);
+      if (errorBlock != null) {
+        return errorBlock;
+      }
+    }
+    if (!rows.isEmpty()) {
+      return new TransferableBlock(rows, _dataSchema, DataBlock.Type.ROW);
+    }
+    // All the mailboxes have emitted EOS, the multi consumer returns the EOS with the stats merged from all of them
+    TransferableBlock block = _multiConsumer.readBlockBlocking();
+    if (block.isSuccessfulEndOfStreamBlock()) {
+      _eosBlock = updateEosBlock(block, _statMap);
+      return _eosBlock;
+    }
+    return block;
+  }
+
+  /**
+   * Adds the cursor back to the merge queue if it has rows left, reading the next block of the mailbox when the current
+   * one is exhausted. Returns the error block if the mailbox returns an error, {@code null} otherwise.
+   */
+  @Nullable
+  private TransferableBlock advance(MailboxCursor cursor) {
+    while (cursor._rows == null || cursor._rowId == cursor._rows.size()) {
+      TransferableBlock block = _multiConsumer.readBlockBlocking(cursor._mailbox);
+      if (block.isDataBlock()) {
+        cursor._rows = block.getContainer();
+        cursor._rowId = 0;
+      } else if (block.isErrorBlock()) {
+        return block;
+      } else {
+        assert block.isSuccessfulEndOfStreamBlock();
+        return null;
+      }
+    }
+    _mailboxCursors.offer(cursor);
+    return null;
+  }
+
   @Override
   public void close() {
     super.close();
     _rows.clear();
+    if (_mailboxCursors != null) {
+      _mailboxCursors.clear();
+    }
   }
 
   @Override
   public void cancel(Throwable t) {
     super.cancel(t);
     _rows.clear();
+    if (_mailboxCursors != null) {
+      _mailboxCursors.clear();
+    }
+  }
+
+  private static class MailboxCursor {
+    final AsyncStream<TransferableBlock> _mailbox;
+    List<Object[]> _rows;
+    int _rowId;
+
+    MailboxCursor(AsyncStream<TransferableBlock> mailbox) {
+      _mailbox = mailbox;
+    }
+
+    Object[] getRow() {
+      return _rows.get(_rowId);
+    }
   }
 }
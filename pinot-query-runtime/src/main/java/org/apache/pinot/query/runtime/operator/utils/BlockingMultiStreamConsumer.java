@@ -18,6 +18,7 @@
  */
 package org.apache.pinot.query.runtime.operator.utils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -155,6 +156,54 @@ public abstract class BlockingMultiStreamConsumer<E> implements AutoCloseable {
     }
   }
 
+  /**
+   * Returns the mailboxes that have not emitted EOS yet.
+   */
+  public List<AsyncStream<E>> getMailboxes() {
+    return new ArrayList<>(_mailboxes);
+  }
+
+  /**
+   * Reads the next block from the given mailbox or blocks until it is ready.
+   *
+   * Unlike {@link #readBlockBlocking()} which returns the block of any ready mailbox, this method can be used to merge
+   * the mailboxes in a specific order (e.g. when each mailbox is sorted). The successful EOS of the mailbox is returned
+   * to the caller and the mailbox is removed from this consumer. Once all the mailboxes emitted EOS,
+   * {@link #readBlockBlocking()} returns the EOS with the stats of all the mailboxes.
+   */
+  public E readBlockBlocking(AsyncStream<E> mailbox) {
+    try {
+      while (true) {
+        long timeoutMs = _deadlineMs - System.currentTimeMillis();
+        if (timeoutMs <= 0) {
+          _errorBlock = onTimeout();
+          return _errorBlock;
+        }
+        E block = mailbox.poll();
+        if (block != null) {
+          if (isEos(block)) {
+            int index = _mailboxes.indexOf(mailbox);
+            assert index >= 0 : "EOS should only be read once from each mailbox";
+            _mailboxes.remove(index);
+            // this is done in order to keep the invariant.
+            if (index <= _lastRead) {
+              _lastRead--;
+            }
+            onConsumerFinish(block);
+          } else if (isError(block)) {
+            LOGGER.info("==[RECEIVE]== Error block found from : " + _id + " in mailbox " + mailbox.getId());
+            _errorBlock = block;
+          }
+          return block;
+        }
+        // Notifications of any mailbox wake up this thread, so re-check the given mailbox after each of them
+        _newDataReady.poll(timeoutMs, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException ex) {
+      return onException(ex);
+    }
+  }
+
   /**
    * This is a utility method that reads tries to read from the different mailboxes in a circular manner.
    *
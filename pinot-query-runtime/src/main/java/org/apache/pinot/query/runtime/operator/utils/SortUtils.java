@@ -81,7 +81,9 @@ public class SortUtils {
           return -_nullsMultipliers[i];
         }
         int result;
-        if (_useDoubleComparison[i]) {
+        if (_useDoubleComparison[i] && v1.getClass() != v2.getClass()) {
+          // Compare numbers of different classes as double, and numbers of the same class exactly so that LONG values
+          // beyond the double precision are ordered
           result = Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
         } else {
           //noinspection rawtypes,unchecked
@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.datablock.DataBlock;
+import org.apache.pinot.common.datablock.DataBlockUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.core.util.DataBlockExtractUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Hash partitioned rows spilled to local disk by the multi-stage operators when their in-memory state exceeds the
+ * configured threshold.
+ *
+ * <p>Each partition is backed by one file containing a sequence of serialized row {@link DataBlock}s, each prefixed
+ * with its size. Rows are buffered per partition and flushed as a data block when the buffer is full. Once
+ * {@link #finishWriting()} is called, each partition can be read back one block at a time with
+ * {@link #read(int)}. The rows with the same key are always in the same partition, which allows the operators to
+ * process the partitions independently.
+ *
+ * <p>{@link #close()} must be called to delete the spill files.
+ */
+public class SpilledRowPartitions implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpilledRowPartitions.class);
+  // Number of partitions, must be a power of 2
+  public static final int NUM_PARTITIONS = 16;
+  // Number of rows buffered per partition before being flushed to the file
+  private static final int MAX_ROWS_PER_BLOCK = 1024;
+
+  private final DataSchema _dataSchema;
+  private final File[] _files = new File[NUM_PARTITIONS];
+  private final DataOutputStream[] _outputStreams = new DataOutputStream[NUM_PARTITIONS];
+  private final List<Object[]>[] _buffers;
+  private final int[] _numRows = new int[NUM_PARTITIONS];
+  private long _numSpilledRows;
+  private long _spilledBytes;
+  private boolean _writingFinished;
+
+  @SuppressWarnings("unchecked")
+  public SpilledRowPartitions(File spillDir, String prefix, DataSchema dataSchema) {
+    if (!spillDir.exists() && !spillDir.mkdirs() && !spillDir.isDirectory()) {
+      throw new IllegalStateException("Failed to create multi-stage spill directory: " + spillDir);
+    }
+    _dataSchema = dataSchema;
+    _buffers = new List[NUM_PARTITIONS];
+    String fileNamePrefix = prefix + "_" + UUID.randomUUID() + "_";
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      _files[i] = new File(spillDir, fileNamePrefix + i + ".spill");
+      _buffers[i] = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Returns the partition id for the given key. The key should have a hash code stable within the JVM.
+   */
+  public static int getPartitionId(@Nullable Object key) {
+    int hash = key != null ? key.hashCode() : 0;
+    return (hash ^ (hash >>> 16)) & (NUM_PARTITIONS - 1);
+  }
+
+  /**
+   * Adds a row to the given partition.
+   */
+  public void add(int partitionId, Object[] row)
+      throws IOException {
+    Preconditions.checkState(!_writingFinished, "Cannot add rows after finishing writing");
+    List<Object[]> buffer = _buffers[partitionId];
+    buffer.add(row);
+    _numRows[partitionId]++;
+    _numSpilledRows++;
+    if (buffer.size() == MAX_ROWS_PER_BLOCK) {
+      flush(partitionId);
+    }
+  }
+
+  private void flush(int partitionId)
+      throws IOException {
+    List<Object[]> buffer = _buffers[partitionId];
+    if (buffer.isEmpty()) {
+      return;
+    }
+    DataOutputStream outputStream = _outputStreams[partitionId];
+    if (outputStream == null) {
+      outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_files[partitionId])));
+      _outputStreams[partitionId] = outputStream;
+    }
+    List<ByteBuffer> byteBuffers = DataBlockUtils.serialize(DataBlockBuilder.buildFromRows(buffer, _dataSchema));
+    int size = 0;
+    for (ByteBuffer byteBuffer : byteBuffers) {
+      size += byteBuffer.remaining();
+    }
+    outputStream.writeInt(size);
+    for (ByteBuffer byteBuffer : byteBuffers) {
+      if (byteBuffer.hasArray()) {
+        outputStream.write(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(),
+            byteBuffer.remaining());
+      } else {
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(bytes);
+        outputStream.write(bytes);
+      }
+    }
+    _spilledBytes += Integer.BYTES + size;
+    buffer.clear();
+  }
+
+  /**
+   * Flushes the buffered rows and closes the files for writing. Should be called before reading the partitions.
+   */
+  public void finishWriting()
+      throws IOException {
+    if (_writingFinished) {
+      return;
+    }
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      flush(i);
+      if (_outputStreams[i] != null) {
+        _outputStreams[i].close();
+        _outputStreams[i] = null;
+      }
+      _buffers[i] = null;
+    }
+    _writingFinished = true;
+  }
+
+  public DataSchema getDataSchema() {
+    return _dataSchema;
+  }
+
+  /**
+   * Returns the number of rows in the given partition.
+   */
+  public int getNumRows(int partitionId) {
+    return _numRows[partitionId];
+  }
+
+  /**
+   * Returns the total number of rows spilled.
+   */
+  public long getNumSpilledRows() {
+    return _numSpilledRows;
+  }
+
+  /**
+   * Returns the total number of bytes spilled to disk.
+   */
+  public long getSpilledBytes() {
+    return _spilledBytes;
+  }
+
+  /**
+   * Returns an iterator over the row blocks of the given partition. The caller must fully consume or close the
+   * returned iterator to release the file handle.
+   */
+  public BlockIterator read(int partitionId)
+      throws IOException {
+    Preconditions.checkState(_writingFinished, "Cannot read partitions before finishing writing");
+    return new BlockIterator(_numRows[partitionId] > 0 ? _files[partitionId] : null);
+  }
+
+  /**
+   * Deletes the spill files.
+   */
+  @Override
+  public void close() {
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      if (_outputStreams[i] != null) {
+        try {
+          _outputStreams[i].close();
+        } catch (IOException e) {
+          LOGGER.warn("Caught exception while closing spill file: {}", _files[i], e);
+        }
+        _outputStreams[i] = null;
+      }
+      FileUtils.deleteQuietly(_files[i]);
+    }
+  }
+
+  /**
+   * Iterator over the row blocks of a partition.
+   */
+  public class BlockIterator implements Iterator<List<Object[]>>, Closeable {
+    private final DataInputStream _inputStream;
+    private List<Object[]> _next;
+
+    private BlockIterator(@Nullable File file)
+        throws IOException {
+      _inputStream = file != null ? new DataInputStream(new BufferedInputStream(new FileInputStream(file))) : null;
+      _next = readNext();
+    }
+
+    private List<Object[]> readNext()
+        throws IOException {
+      if (_inputStream == null) {
+        return null;
+      }
+      int size;
+      try {
+        size = _inputStream.readInt();
+      } catch (EOFException e) {
+        _inputStream.close();
+        return null;
+      }
+      byte[] bytes = new byte[size];
+      _inputStream.readFully(bytes);
+      return DataBlockExtractUtils.extractRows(DataBlockUtils.readFrom(ByteBuffer.wrap(bytes)));
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _next != null;
+    }
+
+    @Override
+    public List<Object[]> next() {
+      if (_next == null) {
+        throw new NoSuchElementException();
+      }
+      List<Object[]> rows = _next;
+      try {
+        _next = readNext();
+      } catch (IOException e) {
+        throw new RuntimeException("Caught exception while reading spilled rows", e);
+      }
+      return rows;
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      _next = null;
+      if (_inputStream != null) {
+        _inputStream.close();
+      }
+    }
+  }
+}
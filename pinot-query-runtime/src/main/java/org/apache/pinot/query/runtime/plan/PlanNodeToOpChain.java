@@ -50,6 +50,7 @@ import org.apache.pinot.query.runtime.operator.MinusAllOperator;
 import org.apache.pinot.query.runtime.operator.MinusOperator;
 import org.apache.pinot.query.runtime.operator.MultiStageOperator;
 import org.apache.pinot.query.runtime.operator.OpChain;
+import org.apache.pinot.query.runtime.operator.SortMergeJoinOperator;
 import org.apache.pinot.query.runtime.operator.SortOperator;
 import org.apache.pinot.query.runtime.operator.SortedMailboxReceiveOperator;
 import org.apache.pinot.query.runtime.operator.TransformOperator;
@@ -181,6 +182,8 @@ public class PlanNodeToOpChain {
       JoinNode.JoinStrategy joinStrategy = node.getJoinStrategy();
       if (joinStrategy == JoinNode.JoinStrategy.HASH) {
         return new HashJoinOperator(context, leftOperator, left.getDataSchema(), rightOperator, node);
+      } else if (joinStrategy == JoinNode.JoinStrategy.SORT_MERGE) {
+        return new SortMergeJoinOperator(context, leftOperator, left.getDataSchema(), rightOperator, node);
       } else {
         assert joinStrategy == JoinNode.JoinStrategy.LOOKUP;
         return new LookupJoinOperator(context, leftOperator, rightOperator, node);
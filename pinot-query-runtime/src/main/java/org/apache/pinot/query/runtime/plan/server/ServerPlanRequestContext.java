@@ -46,6 +46,7 @@ public class ServerPlanRequestContext {
   private final PinotQuery _pinotQuery;
   private PlanNode _leafStageBoundaryNode;
   private List<ServerQueryRequest> _serverQueryRequests;
+  private int _dynamicFilterMaxInListSize;
 
   public ServerPlanRequestContext(StagePlan stagePlan, QueryExecutor leafQueryExecutor,
       ExecutorService executorService, @Nullable PipelineBreakerResult pipelineBreakerResult) {
@@ -92,4 +93,12 @@ public class ServerPlanRequestContext {
   public void setServerQueryRequests(List<ServerQueryRequest> serverQueryRequests) {
     _serverQueryRequests = serverQueryRequests;
   }
+
+  public int getDynamicFilterMaxInListSize() {
+    return _dynamicFilterMaxInListSize;
+  }
+
+  public void setDynamicFilterMaxInListSize(int dynamicFilterMaxInListSize) {
+    _dynamicFilterMaxInListSize = dynamicFilterMaxInListSize;
+  }
 }
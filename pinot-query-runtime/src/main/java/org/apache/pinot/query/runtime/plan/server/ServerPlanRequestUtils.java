@@ -19,6 +19,8 @@
 package org.apache.pinot.query.runtime.plan.server;
 
 import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -30,6 +32,7 @@ import javax.annotation.Nullable;
 import org.apache.helix.HelixManager;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.common.function.TransformFunctionType;
 import org.apache.pinot.common.metadata.ZKMetadataProvider;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.common.request.BrokerRequest;
@@ -43,6 +46,8 @@ import org.apache.pinot.common.utils.request.RequestUtils;
 import org.apache.pinot.core.query.executor.QueryExecutor;
 import org.apache.pinot.core.query.optimizer.QueryOptimizer;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.utils.idset.IdSet;
+import org.apache.pinot.core.query.utils.idset.IdSets;
 import org.apache.pinot.core.routing.TimeBoundaryInfo;
 import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.routing.StageMetadata;
@@ -69,6 +74,7 @@ public class ServerPlanRequestUtils {
   }
 
   private static final int DEFAULT_LEAF_NODE_LIMIT = Integer.MAX_VALUE;
+  private static final int DEFAULT_DYNAMIC_FILTER_MAX_IN_LIST_SIZE = 10_000;
   private static final List<String> QUERY_REWRITERS_CLASS_NAMES =
       ImmutableList.of(PredicateComparisonRewriter.class.getName(),
           NonAggregationGroupByToDistinctQueryRewriter.class.getName());
@@ -129,6 +135,9 @@ public class ServerPlanRequestUtils {
     // attach leaf node limit it not set
     Integer leafNodeLimit = QueryOptionsUtils.getMultiStageLeafLimit(requestMetadata);
     pinotQuery.setLimit(leafNodeLimit != null ? leafNodeLimit : DEFAULT_LEAF_NODE_LIMIT);
+    Integer dynamicFilterMaxInListSize = QueryOptionsUtils.getDynamicFilterMaxInListSize(requestMetadata);
+    serverContext.setDynamicFilterMaxInListSize(
+        dynamicFilterMaxInListSize != null ? dynamicFilterMaxInListSize : DEFAULT_DYNAMIC_FILTER_MAX_IN_LIST_SIZE);
     // visit the plan and create PinotQuery and determine the leaf stage boundary PlanNode.
     ServerPlanRequestVisitor.walkPlanNode(stagePlan.getRootNode(), serverContext);
   }
@@ -262,9 +271,16 @@ public class ServerPlanRequestUtils {
 
   /**
    * attach the dynamic filter to the given PinotQuery.
+   * <p>When the number of distinct non-null join key values is within {@code maxInListSize}, an IN filter on the values
+   * is attached. Otherwise, a range filter on the min/max values (which allows the segments to be pruned with the
+   * column min/max metadata) is attached together with an exact filter on the values: an IN_ID_SET filter for INT and
+   * LONG keys, for which the IdSet is exact, or an IN filter for the other types.
+   * <p>The dynamic filter is only computed for the dynamic broadcast joins, where the build side is fully computed by
+   * the pipeline breaker before the leaf stage starts. The build side of a regular {@code HashJoinOperator} runs
+   * concurrently with the leaf stage of the probe side, so it does not produce a runtime filter.
    */
   static void attachDynamicFilter(PinotQuery pinotQuery, List<Integer> leftKeys, List<Integer> rightKeys,
-      List<Object[]> dataContainer, DataSchema dataSchema) {
+      List<Object[]> dataContainer, DataSchema dataSchema, int maxInListSize) {
     List<Expression> expressions = new ArrayList<>();
     for (int i = 0; i < leftKeys.size(); i++) {
       Expression leftExpr = pinotQuery.getSelectList().get(leftKeys.get(i));
@@ -272,11 +288,7 @@ public class ServerPlanRequestUtils {
         // put a constant false expression
         expressions.add(RequestUtils.getLiteralExpression(false));
       } else {
-        int rightIdx = rightKeys.get(i);
-        List<Expression> operands = new ArrayList<>(dataContainer.size() + 1);
-        operands.add(leftExpr);
-        operands.addAll(computeInOperands(dataContainer, dataSchema, rightIdx));
-        expressions.add(RequestUtils.getFunctionExpression(FilterKind.IN.name(), operands));
+        expressions.add(computeDynamicFilter(leftExpr, dataContainer, dataSchema, rightKeys.get(i), maxInListSize));
       }
     }
     Expression filterExpression = pinotQuery.getFilterExpression();
@@ -290,65 +302,77 @@ public class ServerPlanRequestUtils {
     }
   }
 
-  private static List<Expression> computeInOperands(List<Object[]> dataContainer, DataSchema dataSchema, int colIdx) {
+  @SuppressWarnings("rawtypes")
+  private static Expression computeDynamicFilter(Expression leftExpr, List<Object[]> dataContainer,
+      DataSchema dataSchema, int colIdx, int maxInListSize) {
     final DataSchema.ColumnDataType columnDataType = dataSchema.getColumnDataType(colIdx);
     final FieldSpec.DataType storedType = columnDataType.getStoredType().toDataType();
-    final int numRows = dataContainer.size();
-    List<Expression> expressions = new ArrayList<>();
     switch (storedType) {
       case INT:
-        int[] arrInt = new int[numRows];
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          arrInt[rowIdx] = (int) dataContainer.get(rowIdx)[colIdx];
-        }
-        Arrays.sort(arrInt);
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          expressions.add(RequestUtils.getLiteralExpression(arrInt[rowIdx]));
-        }
-        break;
       case LONG:
-        long[] arrLong = new long[numRows];
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          arrLong[rowIdx] = (long) dataContainer.get(rowIdx)[colIdx];
-        }
-        Arrays.sort(arrLong);
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          expressions.add(RequestUtils.getLiteralExpression(arrLong[rowIdx]));
-        }
-        break;
       case FLOAT:
-        float[] arrFloat = new float[numRows];
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          arrFloat[rowIdx] = (float) dataContainer.get(rowIdx)[colIdx];
-        }
-        Arrays.sort(arrFloat);
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          expressions.add(RequestUtils.getLiteralExpression(arrFloat[rowIdx]));
-        }
-        break;
       case DOUBLE:
-        double[] arrDouble = new double[numRows];
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          arrDouble[rowIdx] = (double) dataContainer.get(rowIdx)[colIdx];
-        }
-        Arrays.sort(arrDouble);
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          expressions.add(RequestUtils.getLiteralExpression(arrDouble[rowIdx]));
-        }
-        break;
       case STRING:
-        String[] arrString = new String[numRows];
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          arrString[rowIdx] = (String) dataContainer.get(rowIdx)[colIdx];
-        }
-        Arrays.sort(arrString);
-        for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          expressions.add(RequestUtils.getLiteralExpression(arrString[rowIdx]));
-        }
         break;
       default:
-        throw new IllegalStateException("Illegal SV data type for ID_SET aggregation function: " + storedType);
+        throw new IllegalStateException("Illegal SV data type for dynamic filter: " + storedType);
+    }
+    // NOTE: null never matches in join, so null values are skipped
+    ObjectOpenHashSet<Comparable> valueSet = new ObjectOpenHashSet<>();
+    for (Object[] row : dataContainer) {
+      Object value = row[colIdx];
+      if (value != null) {
+        valueSet.add((Comparable) value);
+      }
+    }
+    if (valueSet.isEmpty()) {
+      // All the values are null, put a constant false expression
+      return RequestUtils.getLiteralExpression(false);
+    }
+    Comparable[] values = valueSet.toArray(new Comparable[0]);
+    Arrays.sort(values);
+    if (values.length <= maxInListSize) {
+      return getInFilter(leftExpr, values);
+    }
+
+    Expression rangeFilter = RequestUtils.getFunctionExpression(FilterKind.BETWEEN.name(), leftExpr,
+        RequestUtils.getLiteralExpression(values[0]), RequestUtils.getLiteralExpression(values[values.length - 1]));
+    // NOTE: The dynamic filter replaces the semi join, so it must be exact. IdSet is only exact for INT and LONG (it is
+    //       a bloom filter for the other types), so an IN filter is used for the other types.
+    if (storedType != FieldSpec.DataType.INT && storedType != FieldSpec.DataType.LONG) {
+      return RequestUtils.getFunctionExpression(FilterKind.AND.name(), rangeFilter, getInFilter(leftExpr, values));
+    }
+    IdSet idSet = IdSets.create(storedType);
+    if (storedType == FieldSpec.DataType.INT) {
+      for (Comparable value : values) {
+        idSet.add((int) value);
+      }
+    } else {
+      for (Comparable value : values) {
+        idSet.add((long) value);
+      }
+    }
+    String serializedIdSet;
+    try {
+      serializedIdSet = idSet.toBase64String();
+    } catch (IOException e) {
+      throw new IllegalStateException("Caught exception while serializing IdSet for dynamic filter", e);
+    }
+    String inIdSetFunctionName = RequestUtils.canonicalizeFunctionName(TransformFunctionType.IN_ID_SET.name());
+    Expression inIdSetExpr = RequestUtils.getFunctionExpression(inIdSetFunctionName, leftExpr,
+        RequestUtils.getLiteralExpression(serializedIdSet));
+    Expression idSetFilter = RequestUtils.getFunctionExpression(FilterKind.EQUALS.name(), inIdSetExpr,
+        RequestUtils.getLiteralExpression(1));
+    return RequestUtils.getFunctionExpression(FilterKind.AND.name(), rangeFilter, idSetFilter);
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static Expression getInFilter(Expression leftExpr, Comparable[] values) {
+    List<Expression> operands = new ArrayList<>(values.length + 1);
+    operands.add(leftExpr);
+    for (Comparable value : values) {
+      operands.add(RequestUtils.getLiteralExpression(value));
     }
-    return expressions;
+    return RequestUtils.getFunctionExpression(FilterKind.IN.name(), operands);
   }
 }
@@ -160,7 +160,7 @@ public class ServerPlanRequestVisitor implements PlanNodeVisitor<Void, ServerPla
           }
         }
         ServerPlanRequestUtils.attachDynamicFilter(context.getPinotQuery(), node.getLeftKeys(), node.getRightKeys(),
-            resultDataContainer, dataSchema);
+            resultDataContainer, dataSchema, context.getDynamicFilterMaxInListSize());
       }
     } else {
       // For lookup join, visit the right child and set it as the leaf boundary.
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox.channel;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.KnownLength;
+import io.grpc.StatusRuntimeException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.common.datablock.DataBlock;
+import org.apache.pinot.common.datablock.DataBlockUtils;
+import org.apache.pinot.common.proto.Mailbox.MailboxContent;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+
+public class MailboxContentMarshallerTest {
+  private static final DataSchema DATA_SCHEMA = new DataSchema(new String[]{"intCol", "stringCol"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+  private static final int NUM_ROWS = 1000;
+
+  @DataProvider
+  public static Object[][] knownLength() {
+    return new Object[][]{{true}, {false}};
+  }
+
+  @Test(dataProvider = "knownLength")
+  public void testRoundTrip(boolean knownLength)
+      throws Exception {
+    List<Object[]> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      rows.add(new Object[]{i, "value_" + i});
+    }
+    DataBlock dataBlock = DataBlockBuilder.buildFromRows(rows, DATA_SCHEMA);
+    MailboxContent sentContent = MailboxContent.newBuilder().setMailboxId("123|0|0|1|0")
+        .setPayload(DataBlockUtils.toByteString(dataBlock)).putAllMetadata(Map.of("key", "value")).build();
+
+    MailboxContent receivedContent = MailboxContentMarshaller.INSTANCE.parse(toInputStream(sentContent, knownLength));
+    assertEquals(receivedContent, sentContent);
+
+    // The aliased payload does not start at the beginning of the message bytes
+    DataBlock receivedBlock = DataBlockUtils.readFrom(receivedContent.getPayload().asReadOnlyByteBuffer().slice());
+    assertEquals(receivedBlock.getNumberOfRows(), NUM_ROWS);
+    assertEquals(receivedBlock.getDataSchema(), DATA_SCHEMA);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      assertEquals(receivedBlock.getInt(i, 0), i);
+      assertEquals(receivedBlock.getString(i, 1), "value_" + i);
+    }
+  }
+
+  @Test(dataProvider = "knownLength")
+  public void testEmptyContent(boolean knownLength)
+      throws Exception {
+    MailboxContent sentContent = MailboxContent.getDefaultInstance();
+    assertEquals(MailboxContentMarshaller.INSTANCE.parse(toInputStream(sentContent, knownLength)), sentContent);
+  }
+
+  @Test
+  public void testInvalidContent() {
+    // Truncated varint
+    byte[] bytes = new byte[]{(byte) 0xFF};
+    assertThrows(StatusRuntimeException.class,
+        () -> MailboxContentMarshaller.INSTANCE.parse(new ByteArrayInputStream(bytes)));
+  }
+
+  private static InputStream toInputStream(MailboxContent content, boolean knownLength)
+      throws Exception {
+    byte[] bytes;
+    try (InputStream inputStream = MailboxContentMarshaller.INSTANCE.stream(content)) {
+      bytes = ByteStreams.toByteArray(inputStream);
+    }
+    return knownLength ? new KnownLengthInputStream(bytes) : new ByteArrayInputStream(bytes);
+  }
+
+  private static class KnownLengthInputStream extends ByteArrayInputStream implements KnownLength {
+    KnownLengthInputStream(byte[] bytes) {
+      super(bytes);
+    }
+  }
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import org.apache.calcite.sql.SqlKind;
@@ -265,6 +267,78 @@ public class AggregateOperatorTest {
         "num groups limit should be reached");
   }
 
+  @Test
+  public void shouldSpillNewGroupsWhenSpillThresholdReached() {
+    // Given:
+    List<RexExpression.FunctionCall> aggCalls = List.of(getSum(new RexExpression.InputRef(1)));
+    List<Integer> filterArgs = List.of(-1);
+    List<Integer> groupKeys = List.of(0);
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.AGGREGATE_HINT_OPTIONS,
+        Map.of(PinotHintOptions.AggregateOptions.GROUP_BY_SPILL_THRESHOLD, "1")));
+    DataSchema inSchema = new DataSchema(new String[]{"group", "arg"}, new ColumnDataType[]{INT, DOUBLE});
+    when(_input.nextBlock()).thenReturn(OperatorTestUtil.block(inSchema, new Object[]{2, 1.0}, new Object[]{3, 2.0}))
+        .thenReturn(OperatorTestUtil.block(inSchema, new Object[]{3, 3.0}, new Object[]{4, 4.0}, new Object[]{2, 5.0}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    DataSchema resultSchema = new DataSchema(new String[]{"group", "sum"}, new ColumnDataType[]{INT, DOUBLE});
+    AggregateOperator operator = getOperator(resultSchema, aggCalls, filterArgs, groupKeys, nodeHint);
+
+    // When:
+    List<Object[]> resultRows = new ArrayList<>();
+    TransferableBlock block = operator.nextBlock();
+    while (block.isDataBlock()) {
+      resultRows.addAll(block.getContainer());
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccessfulEndOfStreamBlock(), "Last block is EOS (done processing)");
+    assertEquals(resultRows.get(0), new Object[]{2, 6.0}, "Groups in memory should be returned first");
+    resultRows.sort(Comparator.comparingInt(row -> (int) row[0]));
+    assertEquals(resultRows.size(), 3);
+    assertEquals(resultRows.get(0), new Object[]{2, 6.0});
+    assertEquals(resultRows.get(1), new Object[]{3, 5.0});
+    assertEquals(resultRows.get(2), new Object[]{4, 4.0});
+    StatMap<AggregateOperator.StatKey> statMap = OperatorTestUtil.getStatMap(AggregateOperator.StatKey.class, block);
+    assertEquals(statMap.getLong(AggregateOperator.StatKey.SPILLED_ROWS), 3L);
+    operator.close();
+  }
+
+  @Test
+  public void shouldReportGroupLimitReachedWithinSpilledPartitions() {
+    // Given:
+    List<RexExpression.FunctionCall> aggCalls = List.of(getSum(new RexExpression.InputRef(1)));
+    List<Integer> filterArgs = List.of(-1);
+    List<Integer> groupKeys = List.of(0);
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.AGGREGATE_HINT_OPTIONS,
+        Map.of(PinotHintOptions.AggregateOptions.GROUP_BY_SPILL_THRESHOLD, "1",
+            PinotHintOptions.AggregateOptions.NUM_GROUPS_LIMIT, "2")));
+    DataSchema inSchema = new DataSchema(new String[]{"group", "arg"}, new ColumnDataType[]{INT, DOUBLE});
+    // Only 1 group is kept in memory, and there are more spilled groups than spill partitions so that the groups limit
+    // is reached within some spilled partition
+    Object[][] rows = new Object[100][];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = new Object[]{i, 1.0};
+    }
+    when(_input.nextBlock()).thenReturn(OperatorTestUtil.block(inSchema, rows))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    DataSchema resultSchema = new DataSchema(new String[]{"group", "sum"}, new ColumnDataType[]{INT, DOUBLE});
+    AggregateOperator operator = getOperator(resultSchema, aggCalls, filterArgs, groupKeys, nodeHint);
+
+    // When:
+    TransferableBlock block = operator.nextBlock();
+    assertEquals(block.getNumRows(), 1, "Groups in memory should be returned first");
+    while (block.isDataBlock()) {
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccessfulEndOfStreamBlock(), "Last block is EOS (done processing)");
+    StatMap<AggregateOperator.StatKey> statMap = OperatorTestUtil.getStatMap(AggregateOperator.StatKey.class, block);
+    assertTrue(statMap.getBoolean(AggregateOperator.StatKey.NUM_GROUPS_LIMIT_REACHED),
+        "num groups limit should be reached within the spilled partitions");
+    operator.close();
+  }
+
   private static RexExpression.FunctionCall getSum(RexExpression arg) {
     return new RexExpression.FunctionCall(ColumnDataType.INT, SqlKind.SUM.name(), List.of(arg));
   }
@@ -21,6 +21,7 @@ package org.apache.pinot.query.runtime.operator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.query.mailbox.MailboxService;
@@ -29,6 +30,7 @@ import org.apache.pinot.query.routing.WorkerMetadata;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 import org.apache.pinot.query.runtime.operator.exchange.BlockExchange;
+import org.apache.pinot.query.runtime.operator.utils.SortUtils;
 import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.mockito.ArgumentCaptor;
@@ -41,6 +43,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.openMocks;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
@@ -177,6 +180,39 @@ public class MailboxSendOperatorTest {
     assertNotNull(stageStats.getOperatorStats(0));
   }
 
+  @Test
+  public void shouldSortDataBlocksOnSender()
+      throws Exception {
+    // Given:
+    DataSchema dataSchema = new DataSchema(new String[]{"intCol"}, new ColumnDataType[]{ColumnDataType.INT});
+    TransferableBlock eosBlock =
+        TransferableBlockUtils.getEndOfStreamTransferableBlock(MultiStageQueryStats.emptyStats(SENDER_STAGE_ID));
+    when(_input.nextBlock()).thenReturn(OperatorTestUtil.block(dataSchema, new Object[]{3}, new Object[]{1}),
+        OperatorTestUtil.block(dataSchema, new Object[]{2}), eosBlock);
+    SortUtils.SortComparator sortComparator = new SortUtils.SortComparator(dataSchema,
+        List.of(new RelFieldCollation(0, RelFieldCollation.Direction.ASCENDING, RelFieldCollation.NullDirection.LAST)),
+        false);
+
+    // When:
+    MailboxSendOperator mailboxSendOperator = getOperator(sortComparator);
+    TransferableBlock block = mailboxSendOperator.nextBlock();
+    // Then:
+    assertEquals(block.getContainer(), List.of(new Object[]{1}, new Object[]{2}, new Object[]{3}),
+        "expected all the rows to be sorted in a single block");
+
+    // When:
+    block = mailboxSendOperator.nextBlock();
+    // Then:
+    assertSame(block, eosBlock, "expected EOS block to propagate");
+
+    ArgumentCaptor<TransferableBlock> captor = ArgumentCaptor.forClass(TransferableBlock.class);
+    verify(_exchange, times(2)).send(captor.capture());
+    List<TransferableBlock> blocks = captor.getAllValues();
+    assertEquals(blocks.get(0).getContainer(), List.of(new Object[]{1}, new Object[]{2}, new Object[]{3}),
+        "expected to send the sorted rows to exchange on first call");
+    assertTrue(blocks.get(1).isSuccessfulEndOfStreamBlock(), "expected to send EOS block to exchange on second call");
+  }
+
   @Test
   public void shouldEarlyTerminateWhenUpstreamWhenIndicated()
       throws Exception {
@@ -193,12 +229,16 @@ public class MailboxSendOperatorTest {
   }
 
   private MailboxSendOperator getOperator() {
+    return getOperator(null);
+  }
+
+  private MailboxSendOperator getOperator(SortUtils.SortComparator sortComparator) {
     WorkerMetadata workerMetadata = new WorkerMetadata(0, Map.of(), Map.of());
     StageMetadata stageMetadata = new StageMetadata(SENDER_STAGE_ID, List.of(workerMetadata), Map.of());
     OpChainExecutionContext context =
         new OpChainExecutionContext(_mailboxService, 123L, Long.MAX_VALUE, Map.of(), stageMetadata, workerMetadata,
             null, null);
-    return new MailboxSendOperator(context, _input, statMap -> _exchange);
+    return new MailboxSendOperator(context, _input, statMap -> _exchange, sortComparator);
   }
 
   private static TransferableBlock getDummyDataBlock() {
@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.common.datatable.StatMap;
+import org.apache.pinot.common.exception.QueryException;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.planner.plannode.JoinNode;
+import org.apache.pinot.query.planner.plannode.PlanNode;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockTestUtils;
+import org.mockito.Mock;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class SortMergeJoinOperatorTest {
+  private static final DataSchema INPUT_SCHEMA = new DataSchema(new String[]{"int_col", "string_col"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+  private static final DataSchema RESULT_SCHEMA =
+      new DataSchema(new String[]{"int_col1", "string_col1", "int_col2", "string_col2"}, new ColumnDataType[]{
+          ColumnDataType.INT, ColumnDataType.STRING, ColumnDataType.INT, ColumnDataType.STRING
+      });
+
+  private AutoCloseable _mocks;
+  @Mock
+  private MultiStageOperator _leftInput;
+  @Mock
+  private MultiStageOperator _rightInput;
+
+  @BeforeMethod
+  public void setUp() {
+    _mocks = openMocks(this);
+  }
+
+  @AfterMethod
+  public void tearDown()
+      throws Exception {
+    _mocks.close();
+  }
+
+  @Test
+  public void shouldHandleInnerJoinAcrossBlocks() {
+    when(_leftInput.nextBlock()).thenReturn(
+            OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{1, "Aa"}, new Object[]{2, "BB"}))
+        .thenReturn(OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{2, "CC"}, new Object[]{4, "DD"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    when(_rightInput.nextBlock()).thenReturn(OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{2, "xx"}))
+        .thenReturn(OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{2, "yy"}, new Object[]{3, "zz"}))
+        .thenReturn(OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{4, "ww"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    SortMergeJoinOperator operator = getOperator(RESULT_SCHEMA, JoinRelType.INNER, List.of());
+    List<Object[]> resultRows1 = operator.nextBlock().getContainer();
+    assertEquals(resultRows1.size(), 2);
+    assertEquals(resultRows1.get(0), new Object[]{2, "BB", 2, "xx"});
+    assertEquals(resultRows1.get(1), new Object[]{2, "BB", 2, "yy"});
+    List<Object[]> resultRows2 = operator.nextBlock().getContainer();
+    assertEquals(resultRows2.size(), 3);
+    assertEquals(resultRows2.get(0), new Object[]{2, "CC", 2, "xx"});
+    assertEquals(resultRows2.get(1), new Object[]{2, "CC", 2, "yy"});
+    assertEquals(resultRows2.get(2), new Object[]{4, "DD", 4, "ww"});
+    TransferableBlock block = operator.nextBlock();
+    assertTrue(block.isSuccessfulEndOfStreamBlock());
+    StatMap<SortMergeJoinOperator.StatKey> statMap =
+        OperatorTestUtil.getStatMap(SortMergeJoinOperator.StatKey.class, block);
+    assertEquals(statMap.getInt(SortMergeJoinOperator.StatKey.MAX_ROWS_IN_RIGHT_GROUP), 2);
+  }
+
+  @Test
+  public void shouldHandleFullJoinWithNullKeys() {
+    when(_leftInput.nextBlock()).thenReturn(OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{1, "Aa"},
+            new Object[]{3, "BB"}, new Object[]{null, "CC"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    when(_rightInput.nextBlock()).thenReturn(OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{2, "xx"},
+            new Object[]{3, "yy"}, new Object[]{null, "zz"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    SortMergeJoinOperator operator = getOperator(RESULT_SCHEMA, JoinRelType.FULL, List.of());
+    List<Object[]> resultRows = new ArrayList<>();
+    TransferableBlock block = operator.nextBlock();
+    while (block.isDataBlock()) {
+      resultRows.addAll(block.getContainer());
+      block = operator.nextBlock();
+    }
+    assertTrue(block.isSuccessfulEndOfStreamBlock());
+    assertEquals(resultRows.size(), 5);
+    assertEquals(resultRows.get(0), new Object[]{1, "Aa", null, null});
+    assertEquals(resultRows.get(1), new Object[]{null, null, 2, "xx"});
+    assertEquals(resultRows.get(2), new Object[]{3, "BB", 3, "yy"});
+    assertEquals(resultRows.get(3), new Object[]{null, "CC", null, null});
+    assertEquals(resultRows.get(4), new Object[]{null, null, null, "zz"});
+  }
+
+  @Test
+  public void shouldHandleSemiAndAntiJoin() {
+    when(_leftInput.nextBlock()).thenReturn(
+            OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{1, "Aa"}, new Object[]{2, "BB"}, new Object[]{3, "CC"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    when(_rightInput.nextBlock()).thenReturn(
+            OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{2, "xx"}, new Object[]{2, "yy"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    SortMergeJoinOperator operator = getOperator(INPUT_SCHEMA, JoinRelType.SEMI, List.of());
+    List<Object[]> resultRows = operator.nextBlock().getContainer();
+    assertEquals(resultRows.size(), 1);
+    assertEquals(resultRows.get(0), new Object[]{2, "BB"});
+    assertTrue(operator.nextBlock().isSuccessfulEndOfStreamBlock());
+
+    when(_leftInput.nextBlock()).thenReturn(
+            OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{1, "Aa"}, new Object[]{2, "BB"}, new Object[]{3, "CC"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    when(_rightInput.nextBlock()).thenReturn(
+            OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{2, "xx"}, new Object[]{2, "yy"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    operator = getOperator(INPUT_SCHEMA, JoinRelType.ANTI, List.of());
+    resultRows = operator.nextBlock().getContainer();
+    assertEquals(resultRows.size(), 2);
+    assertEquals(resultRows.get(0), new Object[]{1, "Aa"});
+    assertEquals(resultRows.get(1), new Object[]{3, "CC"});
+    assertTrue(operator.nextBlock().isSuccessfulEndOfStreamBlock());
+  }
+
+  @Test
+  public void shouldCompareLongKeysExactly() {
+    DataSchema inputSchema = new DataSchema(new String[]{"long_col", "string_col"},
+        new ColumnDataType[]{ColumnDataType.LONG, ColumnDataType.STRING});
+    DataSchema resultSchema =
+        new DataSchema(new String[]{"long_col1", "string_col1", "long_col2", "string_col2"}, new ColumnDataType[]{
+            ColumnDataType.LONG, ColumnDataType.STRING, ColumnDataType.LONG, ColumnDataType.STRING
+        });
+    // The keys are not distinguishable when compared as double
+    long key = 1L << 53;
+    when(_leftInput.nextBlock()).thenReturn(
+            OperatorTestUtil.block(inputSchema, new Object[]{key, "Aa"}, new Object[]{key + 1, "BB"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    when(_rightInput.nextBlock()).thenReturn(OperatorTestUtil.block(inputSchema, new Object[]{key + 1, "xx"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    SortMergeJoinOperator operator =
+        new SortMergeJoinOperator(OperatorTestUtil.getTracingContext(), _leftInput, inputSchema, _rightInput,
+            new JoinNode(-1, resultSchema, PlanNode.NodeHint.EMPTY, List.of(), JoinRelType.INNER, List.of(0),
+                List.of(0), List.of(), JoinNode.JoinStrategy.SORT_MERGE));
+    List<Object[]> resultRows = operator.nextBlock().getContainer();
+    assertEquals(resultRows.size(), 1);
+    assertEquals(resultRows.get(0), new Object[]{key + 1, "BB", key + 1, "xx"});
+    assertTrue(operator.nextBlock().isSuccessfulEndOfStreamBlock());
+  }
+
+  @Test
+  public void shouldPropagateRightGroupJoinLimitError() {
+    when(_leftInput.nextBlock()).thenReturn(
+            OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{1, "Aa"}, new Object[]{2, "BB"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    when(_rightInput.nextBlock()).thenReturn(
+            OperatorTestUtil.block(INPUT_SCHEMA, new Object[]{2, "xx"}, new Object[]{2, "yy"}))
+        .thenReturn(TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.JOIN_HINT_OPTIONS,
+        Map.of(PinotHintOptions.JoinHintOptions.MAX_ROWS_IN_JOIN, "1")));
+    SortMergeJoinOperator operator = getOperator(RESULT_SCHEMA, JoinRelType.INNER, List.of(), nodeHint);
+    TransferableBlock block = operator.nextBlock();
+    assertTrue(block.isErrorBlock());
+    assertTrue(block.getExceptions().get(QueryException.SERVER_RESOURCE_LIMIT_EXCEEDED_ERROR_CODE)
+        .contains("reached number of rows limit"));
+  }
+
+  private SortMergeJoinOperator getOperator(DataSchema resultSchema, JoinRelType joinType,
+      List<RexExpression> nonEquiConditions, PlanNode.NodeHint nodeHint) {
+    return new SortMergeJoinOperator(OperatorTestUtil.getTracingContext(), _leftInput, INPUT_SCHEMA, _rightInput,
+        new JoinNode(-1, resultSchema, nodeHint, List.of(), joinType, List.of(0), List.of(0), nonEquiConditions,
+            JoinNode.JoinStrategy.SORT_MERGE));
+  }
+
+  private SortMergeJoinOperator getOperator(DataSchema resultSchema, JoinRelType joinType,
+      List<RexExpression> nonEquiConditions) {
+    return getOperator(resultSchema, joinType, nonEquiConditions, PlanNode.NodeHint.EMPTY);
+  }
+}
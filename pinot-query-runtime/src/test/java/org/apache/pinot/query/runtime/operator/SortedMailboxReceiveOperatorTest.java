@@ -242,14 +242,58 @@ public class SortedMailboxReceiveOperatorTest {
     }
   }
 
+  @Test
+  public void shouldMergeMailboxesSortedOnSender() {
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_1))).thenReturn(_mailbox1);
+    Object[] row1 = new Object[]{1, 1};
+    Object[] row2 = new Object[]{3, 3};
+    Object[] row3 = new Object[]{5, 5};
+    when(_mailbox1.poll()).thenReturn(OperatorTestUtil.block(DATA_SCHEMA, row1, row2),
+        OperatorTestUtil.block(DATA_SCHEMA, row3), TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_2))).thenReturn(_mailbox2);
+    Object[] row4 = new Object[]{-1, 95};
+    Object[] row5 = new Object[]{2, 4};
+    Object[] row6 = new Object[]{4, 2};
+    when(_mailbox2.poll()).thenReturn(OperatorTestUtil.block(DATA_SCHEMA, row4),
+        OperatorTestUtil.block(DATA_SCHEMA, row5, row6), TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    try (SortedMailboxReceiveOperator operator = getOperator(_stageMetadataBoth, RelDistribution.Type.HASH_DISTRIBUTED,
+        DATA_SCHEMA, FIELD_COLLATIONS, Long.MAX_VALUE, true)) {
+      assertEquals(operator.nextBlock().getContainer(), List.of(row4, row1, row5, row2, row6, row3));
+      assertTrue(operator.nextBlock().isSuccessfulEndOfStreamBlock());
+    }
+  }
+
+  @Test
+  public void shouldReceiveErrorWhenMergingMailboxesSortedOnSender() {
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_1))).thenReturn(_mailbox1);
+    when(_mailbox1.poll()).thenReturn(OperatorTestUtil.block(DATA_SCHEMA, new Object[]{1, 1}),
+        TransferableBlockTestUtils.getEndOfStreamTransferableBlock(0));
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_2))).thenReturn(_mailbox2);
+    String errorMessage = "TEST ERROR";
+    when(_mailbox2.poll()).thenReturn(
+        TransferableBlockUtils.getErrorTransferableBlock(new RuntimeException(errorMessage)));
+    try (SortedMailboxReceiveOperator operator = getOperator(_stageMetadataBoth, RelDistribution.Type.HASH_DISTRIBUTED,
+        DATA_SCHEMA, FIELD_COLLATIONS, Long.MAX_VALUE, true)) {
+      TransferableBlock block = operator.nextBlock();
+      assertTrue(block.isErrorBlock());
+      assertTrue(block.getExceptions().get(QueryException.UNKNOWN_ERROR_CODE).contains(errorMessage));
+    }
+  }
+
   private SortedMailboxReceiveOperator getOperator(StageMetadata stageMetadata, RelDistribution.Type distributionType,
       DataSchema resultSchema, List<RelFieldCollation> collations, long deadlineMs) {
+    return getOperator(stageMetadata, distributionType, resultSchema, collations, deadlineMs, false);
+  }
+
+  private SortedMailboxReceiveOperator getOperator(StageMetadata stageMetadata, RelDistribution.Type distributionType,
+      DataSchema resultSchema, List<RelFieldCollation> collations, long deadlineMs, boolean sortedOnSender) {
     OpChainExecutionContext context = OperatorTestUtil.getOpChainContext(_mailboxService, deadlineMs, stageMetadata);
     MailboxReceiveNode node = mock(MailboxReceiveNode.class);
     when(node.getDistributionType()).thenReturn(distributionType);
     when(node.getSenderStageId()).thenReturn(1);
     when(node.getDataSchema()).thenReturn(resultSchema);
     when(node.getCollations()).thenReturn(collations);
+    when(node.isSortedOnSender()).thenReturn(sortedOnSender);
     return new SortedMailboxReceiveOperator(context, node);
   }
 
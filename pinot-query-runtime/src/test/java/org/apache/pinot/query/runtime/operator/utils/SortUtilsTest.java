@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.RelFieldCollation.Direction;
+import org.apache.calcite.rel.RelFieldCollation.NullDirection;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class SortUtilsTest {
+  private static final List<RelFieldCollation> COLLATIONS =
+      List.of(new RelFieldCollation(0, Direction.ASCENDING, NullDirection.LAST));
+
+  @Test
+  public void testCompareLongValuesExactly() {
+    DataSchema dataSchema = new DataSchema(new String[]{"longCol"}, new ColumnDataType[]{ColumnDataType.LONG});
+    SortUtils.SortComparator comparator = new SortUtils.SortComparator(dataSchema, COLLATIONS, false);
+    // The values are not distinguishable when compared as double
+    long value = 1L << 53;
+    assertTrue(comparator.compare(new Object[]{value + 1}, new Object[]{value}) > 0);
+    assertTrue(comparator.compare(new Object[]{value}, new Object[]{value + 1}) < 0);
+    assertEquals(comparator.compare(new Object[]{value + 1}, new Object[]{value + 1}), 0);
+
+    List<Object[]> rows = new ArrayList<>(Arrays.asList(new Object[]{value + 2}, new Object[]{null},
+        new Object[]{value + 1}, new Object[]{value}));
+    rows.sort(comparator);
+    assertEquals(rows, List.of(new Object[]{value}, new Object[]{value + 1}, new Object[]{value + 2},
+        new Object[]{null}));
+  }
+
+  @Test
+  public void testCompareNumbersOfDifferentClasses() {
+    DataSchema dataSchema = new DataSchema(new String[]{"doubleCol"}, new ColumnDataType[]{ColumnDataType.DOUBLE});
+    SortUtils.SortComparator comparator = new SortUtils.SortComparator(dataSchema, COLLATIONS, false);
+    assertTrue(comparator.compare(new Object[]{1}, new Object[]{0.5}) > 0);
+    assertTrue(comparator.compare(new Object[]{0.5}, new Object[]{1L}) < 0);
+    assertEquals(comparator.compare(new Object[]{1}, new Object[]{1.0}), 0);
+
+    // The reversed comparator should use the opposite order
+    SortUtils.SortComparator reversedComparator = new SortUtils.SortComparator(dataSchema, COLLATIONS, true);
+    assertTrue(reversedComparator.compare(new Object[]{1}, new Object[]{0.5}) < 0);
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.plan.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pinot.common.request.Expression;
+import org.apache.pinot.common.request.Function;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.common.utils.request.RequestUtils;
+import org.apache.pinot.core.query.utils.idset.IdSet;
+import org.apache.pinot.core.query.utils.idset.IdSets;
+import org.apache.pinot.sql.FilterKind;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class ServerPlanRequestUtilsTest {
+  private static final DataSchema DATA_SCHEMA =
+      new DataSchema(new String[]{"col"}, new ColumnDataType[]{ColumnDataType.INT});
+  private static final List<Object[]> DATA_CONTAINER =
+      List.of(new Object[]{3}, new Object[]{1}, new Object[]{null}, new Object[]{3}, new Object[]{2});
+
+  @Test
+  public void testAttachDynamicInFilter() {
+    PinotQuery pinotQuery = getPinotQuery();
+    ServerPlanRequestUtils.attachDynamicFilter(pinotQuery, List.of(0), List.of(0), DATA_CONTAINER, DATA_SCHEMA, 3);
+    Function function = pinotQuery.getFilterExpression().getFunctionCall();
+    assertEquals(function.getOperator(), FilterKind.IN.name());
+    // Values should be distinct and sorted, and null should be skipped
+    List<Expression> operands = function.getOperands();
+    assertEquals(operands.size(), 4);
+    assertEquals(operands.get(0), RequestUtils.getIdentifierExpression("col"));
+    assertEquals(operands.get(1), RequestUtils.getLiteralExpression(1));
+    assertEquals(operands.get(2), RequestUtils.getLiteralExpression(2));
+    assertEquals(operands.get(3), RequestUtils.getLiteralExpression(3));
+  }
+
+  @Test
+  public void testAttachDynamicRangeAndIdSetFilter()
+      throws Exception {
+    PinotQuery pinotQuery = getPinotQuery();
+    ServerPlanRequestUtils.attachDynamicFilter(pinotQuery, List.of(0), List.of(0), DATA_CONTAINER, DATA_SCHEMA, 2);
+    Function function = pinotQuery.getFilterExpression().getFunctionCall();
+    assertEquals(function.getOperator(), FilterKind.AND.name());
+    List<Expression> children = function.getOperands();
+    assertEquals(children.size(), 2);
+
+    Function rangeFunction = children.get(0).getFunctionCall();
+    assertEquals(rangeFunction.getOperator(), FilterKind.BETWEEN.name());
+    assertEquals(rangeFunction.getOperands(),
+        List.of(RequestUtils.getIdentifierExpression("col"), RequestUtils.getLiteralExpression(1),
+            RequestUtils.getLiteralExpression(3)));
+
+    Function idSetFunction = children.get(1).getFunctionCall();
+    assertEquals(idSetFunction.getOperator(), FilterKind.EQUALS.name());
+    Function inIdSetFunction = idSetFunction.getOperands().get(0).getFunctionCall();
+    assertEquals(inIdSetFunction.getOperator(), "inidset");
+    IdSet idSet = IdSets.fromBase64String(inIdSetFunction.getOperands().get(1).getLiteral().getStringValue());
+    assertTrue(idSet.contains(1));
+    assertTrue(idSet.contains(2));
+    assertTrue(idSet.contains(3));
+    assertFalse(idSet.contains(4));
+  }
+
+  @Test
+  public void testAttachDynamicRangeAndInFilterForInexactIdSetTypes() {
+    // IdSet is a bloom filter for STRING values, so the exact IN filter should be kept beyond the max IN list size,
+    // together with the range filter for segment pruning
+    DataSchema dataSchema = new DataSchema(new String[]{"col"}, new ColumnDataType[]{ColumnDataType.STRING});
+    List<Object[]> dataContainer =
+        List.of(new Object[]{"c"}, new Object[]{"a"}, new Object[]{null}, new Object[]{"c"}, new Object[]{"b"});
+    PinotQuery pinotQuery = getPinotQuery();
+    ServerPlanRequestUtils.attachDynamicFilter(pinotQuery, List.of(0), List.of(0), dataContainer, dataSchema, 2);
+    Function function = pinotQuery.getFilterExpression().getFunctionCall();
+    assertEquals(function.getOperator(), FilterKind.AND.name());
+    List<Expression> children = function.getOperands();
+    assertEquals(children.size(), 2);
+
+    Function rangeFunction = children.get(0).getFunctionCall();
+    assertEquals(rangeFunction.getOperator(), FilterKind.BETWEEN.name());
+    assertEquals(rangeFunction.getOperands(),
+        List.of(RequestUtils.getIdentifierExpression("col"), RequestUtils.getLiteralExpression("a"),
+            RequestUtils.getLiteralExpression("c")));
+
+    Function inFunction = children.get(1).getFunctionCall();
+    assertEquals(inFunction.getOperator(), FilterKind.IN.name());
+    assertEquals(inFunction.getOperands(),
+        List.of(RequestUtils.getIdentifierExpression("col"), RequestUtils.getLiteralExpression("a"),
+            RequestUtils.getLiteralExpression("b"), RequestUtils.getLiteralExpression("c")));
+  }
+
+  @Test
+  public void testAttachDynamicFilterWithEmptyRightTable() {
+    PinotQuery pinotQuery = getPinotQuery();
+    ServerPlanRequestUtils.attachDynamicFilter(pinotQuery, List.of(0), List.of(0), List.of(), DATA_SCHEMA, 2);
+    assertEquals(pinotQuery.getFilterExpression(), RequestUtils.getLiteralExpression(false));
+  }
+
+  private static PinotQuery getPinotQuery() {
+    PinotQuery pinotQuery = new PinotQuery();
+    List<Expression> selectList = new ArrayList<>();
+    selectList.add(RequestUtils.getIdentifierExpression("col"));
+    pinotQuery.setSelectList(selectList);
+    return pinotQuery;
+  }
+}
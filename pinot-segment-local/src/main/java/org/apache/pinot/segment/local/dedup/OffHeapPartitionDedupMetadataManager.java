@@ -0,0 +1,683 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.dedup;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.helix.HelixManager;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.upsert.OffHeapRecordLocationMap;
+import org.apache.pinot.segment.local.utils.HashUtils;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+
+
+/**
+ * Implementation of {@link PartitionDedupMetadataManager} that keeps the dedup metadata off-heap, and persists it
+ * across restarts.
+ *
+ * <p>The primary keys are stored as their 128-bit murmur3 hash regardless of the configured hash function, along with
+ * the id of the segment and the dedup time, in {@link OffHeapRecordLocationMap}s. When metadataTTL is enabled, the keys
+ * are bucketed by dedup time into one map per time bucket, so that expired keys are removed by dropping whole buckets
+ * instead of scanning all the keys. A key is kept in a single bucket, and looking up a key probes the buckets from the
+ * newest to the oldest. Keys are updated while holding a striped key lock, so that the check and update across buckets
+ * is atomic.
+ *
+ * <p>When a checkpoint file is given, the metadata is written to it when the manager is closed, along with the name and
+ * CRC of the immutable segments. When preloading segments on restart, the checkpoint is loaded back, and the segments
+ * matching the checkpoint are added without reading their primary keys. Only the other segments are read.
+ *
+ * <p>The dedup logic is the same as {@link ConcurrentMapPartitionDedupMetadataManager}.
+ */
+@ThreadSafe
+class OffHeapPartitionDedupMetadataManager extends BasePartitionDedupMetadataManager {
+  private static final int NUM_KEY_LOCKS = 1024;
+  private static final int CHECKPOINT_MAGIC = 0x44445550;
+  private static final int CHECKPOINT_VERSION = 1;
+
+  private final int _initialCapacity;
+  private final int _numStripes;
+  private final double _timeBucketSize;
+  private final File _mmapDir;
+  private final File _checkpointFile;
+
+  // Time buckets from the newest to the oldest. Buckets are dropped while holding the write lock, and accessed while
+  // holding the read lock.
+  private final ConcurrentSkipListMap<Long, OffHeapRecordLocationMap> _buckets =
+      new ConcurrentSkipListMap<>(Collections.reverseOrder());
+  private final ReadWriteLock _bucketsLock = new ReentrantReadWriteLock();
+  private final Object[] _keyLocks = new Object[NUM_KEY_LOCKS];
+
+  // Segments are referenced by id from the maps. The id of a segment is released once the segment is replaced or
+  // removed, and the keys still referencing it are treated as keys from a removed segment.
+  private final ConcurrentHashMap<IndexSegment, Integer> _segmentToIdMap = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, IndexSegment> _idToSegmentMap = new ConcurrentHashMap<>();
+  private final AtomicInteger _nextSegmentId = new AtomicInteger(1);
+
+  // Segments loaded from the checkpoint that are not preloaded yet, keyed by segment name
+  private final ConcurrentHashMap<String, CheckpointSegment> _checkpointSegments = new ConcurrentHashMap<>();
+
+  /**
+   * @param initialCapacity Initial number of keys per time bucket
+   * @param numStripes Number of independently locked stripes per time bucket, must be a power of 2
+   * @param timeBucketSize Size of the time buckets in the unit of the dedup time, only used when metadataTTL is enabled
+   * @param mmapDir Directory to memory map the maps from, or {@code null} to allocate them from direct memory
+   * @param checkpointFile File to persist the metadata to, or {@code null} to not persist the metadata
+   */
+  OffHeapPartitionDedupMetadataManager(String tableNameWithType, int partitionId, DedupContext dedupContext,
+      int initialCapacity, int numStripes, double timeBucketSize, @Nullable File mmapDir,
+      @Nullable File checkpointFile) {
+    super(tableNameWithType, partitionId, dedupContext);
+    Preconditions.checkArgument(_metadataTTL <= 0 || timeBucketSize > 0,
+        "Time bucket size must be positive when metadataTTL is enabled for table: %s", tableNameWithType);
+    _initialCapacity = initialCapacity;
+    _numStripes = numStripes;
+    _timeBucketSize = timeBucketSize;
+    _mmapDir = mmapDir;
+    _checkpointFile = checkpointFile;
+    for (int i = 0; i < NUM_KEY_LOCKS; i++) {
+      _keyLocks[i] = new Object();
+    }
+    if (mmapDir != null) {
+      // Clean up the files left over from a previous run
+      FileUtils.deleteQuietly(mmapDir);
+    }
+  }
+
+  @Override
+  protected void doPreloadSegments(TableDataManager tableDataManager, IndexLoadingConfig indexLoadingConfig,
+      HelixManager helixManager, ExecutorService segmentPreloadExecutor)
+      throws Exception {
+    if (_checkpointFile != null) {
+      loadCheckpoint();
+    }
+    try {
+      super.doPreloadSegments(tableDataManager, indexLoadingConfig, helixManager, segmentPreloadExecutor);
+    } finally {
+      removeUnboundCheckpointSegments();
+    }
+  }
+
+  @Override
+  public void preloadSegment(ImmutableSegment segment) {
+    CheckpointSegment checkpointSegment =
+        _checkpointSegments.isEmpty() ? null : _checkpointSegments.remove(segment.getSegmentName());
+    if (checkpointSegment == null || !checkpointSegment._crc.equals(segment.getSegmentMetadata().getCrc())) {
+      super.preloadSegment(segment);
+      return;
+    }
+    String segmentName = segment.getSegmentName();
+    if (!startOperation()) {
+      _logger.info("Skip preloading segment: {} because dedup metadata manager is already stopped", segmentName);
+      return;
+    }
+    try {
+      // Keys of the segment out of TTL are removed along with the other unbound checkpoint segments
+      if (!skipSegmentOutOfTTL(segment, true)) {
+        _segmentToIdMap.put(segment, checkpointSegment._segmentId);
+        _idToSegmentMap.put(checkpointSegment._segmentId, segment);
+        _logger.info("Preloaded segment: {} from checkpoint", segmentName);
+      }
+    } finally {
+      finishOperation();
+    }
+  }
+
+  @Override
+  protected void doPreloadSegment(ImmutableSegment segment, Iterator<DedupRecordInfo> dedupRecordInfoIterator) {
+    int segmentId = getOrCreateSegmentId(segment);
+    _bucketsLock.readLock().lock();
+    try {
+      while (dedupRecordInfoIterator.hasNext()) {
+        DedupRecordInfo dedupRecordInfo = dedupRecordInfoIterator.next();
+        PrimaryKeyHash primaryKeyHash = new PrimaryKeyHash(dedupRecordInfo.getPrimaryKey());
+        synchronized (getKeyLock(primaryKeyHash)) {
+          put(primaryKeyHash, find(primaryKeyHash), segmentId, dedupRecordInfo.getDedupTime());
+        }
+      }
+    } finally {
+      _bucketsLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  protected void doAddOrReplaceSegment(@Nullable IndexSegment oldSegment, IndexSegment newSegment,
+      Iterator<DedupRecordInfo> dedupRecordInfoIteratorOfNewSegment) {
+    String segmentName = newSegment.getSegmentName();
+    int segmentId = getOrCreateSegmentId(newSegment);
+    Integer oldSegmentId = oldSegment != null ? _segmentToIdMap.get(oldSegment) : null;
+    _bucketsLock.readLock().lock();
+    try {
+      while (dedupRecordInfoIteratorOfNewSegment.hasNext()) {
+        DedupRecordInfo dedupRecordInfo = dedupRecordInfoIteratorOfNewSegment.next();
+        double dedupTime = dedupRecordInfo.getDedupTime();
+        PrimaryKeyHash primaryKeyHash = new PrimaryKeyHash(dedupRecordInfo.getPrimaryKey());
+        synchronized (getKeyLock(primaryKeyHash)) {
+          DedupRecord currentRecord = find(primaryKeyHash);
+          // Stale metadata is treated as not existing when checking for deduplicates.
+          if (currentRecord == null || isOutOfMetadataTTL(currentRecord._dedupTime)) {
+            put(primaryKeyHash, currentRecord, segmentId, dedupTime);
+            continue;
+          }
+          // when oldSegment is null, it means we are adding a new segment
+          // when oldSegment is not null, it means we are replacing an existing segment
+          if (oldSegment == null) {
+            _logger.warn("When adding a new segment: record in segment: {} with primary key: {} and dedup "
+                    + "time: {} already exists in segment: {} with dedup time: {}", segmentName,
+                dedupRecordInfo.getPrimaryKey(), dedupTime, getSegmentName(currentRecord._segmentId),
+                currentRecord._dedupTime);
+          } else if (oldSegmentId == null || currentRecord._segmentId != oldSegmentId) {
+            _logger.warn("When replacing a segment: record in segment: {} with primary key: {} and dedup "
+                    + "time: {} exists in segment: {} with dedup time: {} (but not the segment: {} to replace)",
+                segmentName, dedupRecordInfo.getPrimaryKey(), dedupTime, getSegmentName(currentRecord._segmentId),
+                currentRecord._dedupTime, oldSegment.getSegmentName());
+          }
+          // When dedup time is the same, we always keep the latest segment
+          // This will handle segment replacement case correctly - a typical case is when a mutable segment is
+          // replaced by an immutable segment
+          if (currentRecord._dedupTime <= dedupTime) {
+            put(primaryKeyHash, currentRecord, segmentId, dedupTime);
+          }
+        }
+      }
+    } finally {
+      _bucketsLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void replaceSegment(IndexSegment oldSegment, IndexSegment newSegment) {
+    super.replaceSegment(oldSegment, newSegment);
+    releaseSegment(oldSegment);
+  }
+
+  @Override
+  public void removeSegment(IndexSegment segment) {
+    super.removeSegment(segment);
+    releaseSegment(segment);
+  }
+
+  @Override
+  protected void doRemoveSegment(IndexSegment segment, Iterator<DedupRecordInfo> dedupRecordInfoIterator) {
+    Integer segmentId = _segmentToIdMap.get(segment);
+    if (segmentId == null) {
+      return;
+    }
+    _bucketsLock.readLock().lock();
+    try {
+      while (dedupRecordInfoIterator.hasNext()) {
+        PrimaryKeyHash primaryKeyHash = new PrimaryKeyHash(dedupRecordInfoIterator.next().getPrimaryKey());
+        synchronized (getKeyLock(primaryKeyHash)) {
+          DedupRecord currentRecord = find(primaryKeyHash);
+          // do not need to compare dedup time because we are removing the segment
+          if (currentRecord != null && currentRecord._segmentId == segmentId) {
+            currentRecord._bucket.remove(primaryKeyHash._high, primaryKeyHash._low);
+          }
+        }
+      }
+    } finally {
+      _bucketsLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  protected void doRemoveExpiredPrimaryKeys() {
+    double smallestTimeToKeep = _largestSeenTime.get() - _metadataTTL;
+    int numBucketsDropped = 0;
+    _bucketsLock.writeLock().lock();
+    try {
+      Iterator<Map.Entry<Long, OffHeapRecordLocationMap>> iterator = _buckets.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Long, OffHeapRecordLocationMap> entry = iterator.next();
+        long bucketId = entry.getKey();
+        OffHeapRecordLocationMap bucket = entry.getValue();
+        if ((bucketId + 1) * _timeBucketSize <= smallestTimeToKeep) {
+          // All the keys in the bucket are expired
+          iterator.remove();
+          closeBucket(bucket);
+          numBucketsDropped++;
+        } else if (bucketId * _timeBucketSize < smallestTimeToKeep) {
+          bucket.removeIf(location -> decodeDedupTime(location) < smallestTimeToKeep);
+        }
+      }
+    } finally {
+      _bucketsLock.writeLock().unlock();
+    }
+    if (numBucketsDropped > 0) {
+      _logger.info("Dropped {} expired time buckets", numBucketsDropped);
+    }
+    updatePrimaryKeyGauge();
+  }
+
+  @Override
+  public boolean checkRecordPresentOrUpdate(DedupRecordInfo dedupRecordInfo, IndexSegment indexSegment) {
+    if (!startOperation()) {
+      _logger.info("Skip adding record to {} because metadata manager is already stopped",
+          indexSegment.getSegmentName());
+      return true;
+    }
+    try {
+      double dedupTime = dedupRecordInfo.getDedupTime();
+      if (_metadataTTL > 0) {
+        _largestSeenTime.getAndUpdate(time -> Math.max(time, dedupTime));
+      }
+      int segmentId = getOrCreateSegmentId(indexSegment);
+      PrimaryKeyHash primaryKeyHash = new PrimaryKeyHash(dedupRecordInfo.getPrimaryKey());
+      boolean present;
+      _bucketsLock.readLock().lock();
+      try {
+        synchronized (getKeyLock(primaryKeyHash)) {
+          DedupRecord currentRecord = find(primaryKeyHash);
+          // The dedup metadata out of TTL is cleaned up when starting the next consuming segment, so it's possible
+          // when ingesting records into current segment, some dedup metadata is already becoming stale. The stale
+          // metadata is treated as not existing when checking for deduplicates.
+          present = currentRecord != null && !isOutOfMetadataTTL(currentRecord._dedupTime);
+          if (!present) {
+            put(primaryKeyHash, currentRecord, segmentId, dedupTime);
+          }
+        }
+      } finally {
+        _bucketsLock.readLock().unlock();
+      }
+      if (!present) {
+        updatePrimaryKeyGauge();
+      }
+      return present;
+    } finally {
+      finishOperation();
+    }
+  }
+
+  @Override
+  protected long getNumPrimaryKeys() {
+    long numPrimaryKeys = 0;
+    for (OffHeapRecordLocationMap bucket : _buckets.values()) {
+      numPrimaryKeys += bucket.size();
+    }
+    return numPrimaryKeys;
+  }
+
+  @Override
+  protected void doClose()
+      throws IOException {
+    if (_checkpointFile != null) {
+      try {
+        writeCheckpoint();
+      } catch (Exception e) {
+        _logger.warn("Caught exception while writing checkpoint: {}", _checkpointFile, e);
+      }
+    }
+    for (OffHeapRecordLocationMap bucket : _buckets.values()) {
+      closeBucket(bucket);
+    }
+    _buckets.clear();
+    if (_mmapDir != null) {
+      FileUtils.deleteQuietly(_mmapDir);
+    }
+  }
+
+  /**
+   * Returns the segment and dedup time of the given primary key, or {@code null} if the key does not exist.
+   */
+  @VisibleForTesting
+  @Nullable
+  Pair<IndexSegment, Double> getSegmentAndTime(PrimaryKey primaryKey) {
+    DedupRecord record = find(new PrimaryKeyHash(primaryKey));
+    return record != null ? Pair.of(_idToSegmentMap.get(record._segmentId), record._dedupTime) : null;
+  }
+
+  /**
+   * Returns the record of the given key from the newest bucket containing it. Should be invoked while holding the read
+   * lock of the buckets.
+   */
+  @Nullable
+  private DedupRecord find(PrimaryKeyHash primaryKeyHash) {
+    for (OffHeapRecordLocationMap bucket : _buckets.values()) {
+      OffHeapRecordLocationMap.RecordLocation location = bucket.get(primaryKeyHash._high, primaryKeyHash._low);
+      if (location != null) {
+        return new DedupRecord(bucket, location.getSegmentId(), decodeDedupTime(location));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Puts the key into the bucket of the dedup time, and removes it from the bucket of the current record if different.
+   * Should be invoked while holding the read lock of the buckets and the lock of the key.
+   */
+  private void put(PrimaryKeyHash primaryKeyHash, @Nullable DedupRecord currentRecord, int segmentId,
+      double dedupTime) {
+    OffHeapRecordLocationMap bucket = getOrCreateBucket(getBucketId(dedupTime));
+    if (currentRecord != null && currentRecord._bucket != bucket) {
+      currentRecord._bucket.remove(primaryKeyHash._high, primaryKeyHash._low);
+    }
+    bucket.put(primaryKeyHash._high, primaryKeyHash._low,
+        new OffHeapRecordLocationMap.RecordLocation(segmentId, 0, Double.doubleToRawLongBits(dedupTime)));
+  }
+
+  private long getBucketId(double dedupTime) {
+    return _metadataTTL > 0 ? (long) Math.floor(dedupTime / _timeBucketSize) : 0;
+  }
+
+  private OffHeapRecordLocationMap getOrCreateBucket(long bucketId) {
+    OffHeapRecordLocationMap bucket = _buckets.get(bucketId);
+    if (bucket != null) {
+      return bucket;
+    }
+    synchronized (_buckets) {
+      bucket = _buckets.get(bucketId);
+      if (bucket == null) {
+        bucket = createBucket(bucketId);
+        _buckets.put(bucketId, bucket);
+      }
+      return bucket;
+    }
+  }
+
+  private OffHeapRecordLocationMap createBucket(long bucketId) {
+    File mmapDir = _mmapDir != null ? new File(_mmapDir, "bucket_" + bucketId) : null;
+    return new OffHeapRecordLocationMap(_initialCapacity, _numStripes, mmapDir);
+  }
+
+  private void closeBucket(OffHeapRecordLocationMap bucket) {
+    try {
+      bucket.close();
+    } catch (IOException e) {
+      _logger.warn("Caught exception while closing time bucket", e);
+    }
+  }
+
+  private Object getKeyLock(PrimaryKeyHash primaryKeyHash) {
+    return _keyLocks[(int) primaryKeyHash._low & (NUM_KEY_LOCKS - 1)];
+  }
+
+  private static double decodeDedupTime(OffHeapRecordLocationMap.RecordLocation location) {
+    return Double.longBitsToDouble(location.getComparisonValue());
+  }
+
+  private int getOrCreateSegmentId(IndexSegment segment) {
+    return _segmentToIdMap.computeIfAbsent(segment, k -> {
+      int segmentId = _nextSegmentId.getAndIncrement();
+      _idToSegmentMap.put(segmentId, k);
+      return segmentId;
+    });
+  }
+
+  private void releaseSegment(IndexSegment segment) {
+    Integer segmentId = _segmentToIdMap.remove(segment);
+    if (segmentId != null) {
+      _idToSegmentMap.remove(segmentId);
+    }
+  }
+
+  private String getSegmentName(int segmentId) {
+    IndexSegment segment = _idToSegmentMap.get(segmentId);
+    return segment != null ? segment.getSegmentName() : "<removed segment " + segmentId + ">";
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file, then atomically renames it to the checkpoint file.
+   *
+   * <p>The checkpoint format (native byte order) is:
+   * <ul>
+   *   <li>Magic number (int), version (int), time bucket size (double), next segment id (int), number of segments
+   *   (int)</li>
+   *   <li>For each immutable segment: segment id (int), segment name and CRC (length-prefixed UTF-8 strings)</li>
+   *   <li>Number of time buckets (int), and for each bucket: bucket id (long) and the map as written by
+   *   {@link OffHeapRecordLocationMap#writeTo(FileChannel)}</li>
+   *   <li>Magic number (int)</li>
+   * </ul>
+   */
+  private void writeCheckpoint()
+      throws IOException {
+    long startTimeMs = System.currentTimeMillis();
+    List<byte[]> strings = new ArrayList<>();
+    List<Integer> segmentIds = new ArrayList<>();
+    int headerSize = 4 * Integer.BYTES + Double.BYTES;
+    for (Map.Entry<IndexSegment, Integer> entry : _segmentToIdMap.entrySet()) {
+      IndexSegment segment = entry.getKey();
+      // Keys of mutable segments are dropped when loading the checkpoint as the records are consumed again
+      if (!(segment instanceof ImmutableSegment)) {
+        continue;
+      }
+      String crc = segment.getSegmentMetadata().getCrc();
+      if (crc == null) {
+        continue;
+      }
+      byte[] segmentName = segment.getSegmentName().getBytes(StandardCharsets.UTF_8);
+      byte[] crcBytes = crc.getBytes(StandardCharsets.UTF_8);
+      segmentIds.add(entry.getValue());
+      strings.add(segmentName);
+      strings.add(crcBytes);
+      headerSize += 3 * Integer.BYTES + segmentName.length + crcBytes.length;
+    }
+    ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.nativeOrder());
+    header.putInt(CHECKPOINT_MAGIC).putInt(CHECKPOINT_VERSION).putDouble(_timeBucketSize)
+        .putInt(_nextSegmentId.get()).putInt(segmentIds.size());
+    for (int i = 0; i < segmentIds.size(); i++) {
+      header.putInt(segmentIds.get(i));
+      putString(header, strings.get(2 * i));
+      putString(header, strings.get(2 * i + 1));
+    }
+    header.flip();
+
+    File tempFile = new File(_checkpointFile.getPath() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writeFully(channel, header);
+      ByteBuffer numBuckets = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+      numBuckets.putInt(_buckets.size()).flip();
+      writeFully(channel, numBuckets);
+      for (Map.Entry<Long, OffHeapRecordLocationMap> entry : _buckets.entrySet()) {
+        ByteBuffer bucketId = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder());
+        bucketId.putLong(entry.getKey()).flip();
+        writeFully(channel, bucketId);
+        entry.getValue().writeTo(channel);
+      }
+      ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+      footer.putInt(CHECKPOINT_MAGIC).flip();
+      writeFully(channel, footer);
+      channel.force(true);
+    } catch (Exception e) {
+      FileUtils.deleteQuietly(tempFile);
+      throw e;
+    }
+    Files.move(tempFile.toPath(), _checkpointFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    _logger.info("Wrote checkpoint with {} primary keys for {} segments in {}ms", getNumPrimaryKeys(),
+        segmentIds.size(), System.currentTimeMillis() - startTimeMs);
+  }
+
+  /**
+   * Loads the time buckets from the checkpoint, and registers the checkpointed segments to be bound when preloading.
+   * The checkpoint is deleted after loading as the metadata starts diverging from it, and is written again when the
+   * manager is closed. No bucket is loaded if the checkpoint is missing or invalid.
+   */
+  @VisibleForTesting
+  void loadCheckpoint() {
+    if (!_checkpointFile.exists()) {
+      _logger.info("Skip loading checkpoint: {} as it does not exist", _checkpointFile);
+      return;
+    }
+    if (!_buckets.isEmpty() || !_segmentToIdMap.isEmpty()) {
+      _logger.warn("Skip loading checkpoint: {} as dedup metadata is not empty", _checkpointFile);
+      return;
+    }
+    long startTimeMs = System.currentTimeMillis();
+    List<CheckpointSegment> checkpointSegments = new ArrayList<>();
+    Map<Long, OffHeapRecordLocationMap> buckets = new ConcurrentSkipListMap<>(Collections.reverseOrder());
+    int nextSegmentId;
+    try (PinotDataBuffer buffer = PinotDataBuffer.mapFile(_checkpointFile, true, 0, _checkpointFile.length(),
+        ByteOrder.nativeOrder(), "Dedup metadata checkpoint for partition: " + _partitionId)) {
+      long size = buffer.size();
+      Preconditions.checkState(size >= 5 * Integer.BYTES + Double.BYTES && buffer.getInt(0) == CHECKPOINT_MAGIC
+          && buffer.getInt(size - Integer.BYTES) == CHECKPOINT_MAGIC, "Invalid checkpoint magic number");
+      int version = buffer.getInt(Integer.BYTES);
+      Preconditions.checkState(version == CHECKPOINT_VERSION, "Unsupported checkpoint version: %s", version);
+      double timeBucketSize = buffer.getDouble(2 * Integer.BYTES);
+      Preconditions.checkState(_metadataTTL <= 0 || timeBucketSize == _timeBucketSize,
+          "Time bucket size changed from: %s to: %s", timeBucketSize, _timeBucketSize);
+      long offset = 2 * Integer.BYTES + Double.BYTES;
+      nextSegmentId = buffer.getInt(offset);
+      int numSegments = buffer.getInt(offset + Integer.BYTES);
+      offset += 2 * Integer.BYTES;
+      for (int i = 0; i < numSegments; i++) {
+        Preconditions.checkState(offset + Integer.BYTES <= size, "Checkpoint is truncated");
+        int segmentId = buffer.getInt(offset);
+        offset += Integer.BYTES;
+        String segmentName = getString(buffer, offset);
+        offset += Integer.BYTES + buffer.getInt(offset);
+        String crc = getString(buffer, offset);
+        offset += Integer.BYTES + buffer.getInt(offset);
+        checkpointSegments.add(new CheckpointSegment(segmentId, segmentName, crc));
+      }
+      Preconditions.checkState(offset + Integer.BYTES <= size, "Checkpoint is truncated");
+      int numBuckets = buffer.getInt(offset);
+      offset += Integer.BYTES;
+      try {
+        for (int i = 0; i < numBuckets; i++) {
+          Preconditions.checkState(offset + Long.BYTES <= size, "Checkpoint is truncated");
+          long bucketId = buffer.getLong(offset);
+          OffHeapRecordLocationMap bucket = createBucket(bucketId);
+          buckets.put(bucketId, bucket);
+          offset = bucket.load(buffer, offset + Long.BYTES);
+        }
+        Preconditions.checkState(offset == size - Integer.BYTES, "Checkpoint size mismatch");
+      } catch (Exception e) {
+        buckets.values().forEach(this::closeBucket);
+        throw e;
+      }
+    } catch (Exception e) {
+      _logger.warn("Caught exception while loading checkpoint: {}, preloading all segments", _checkpointFile, e);
+      FileUtils.deleteQuietly(_checkpointFile);
+      return;
+    }
+    FileUtils.deleteQuietly(_checkpointFile);
+
+    _buckets.putAll(buckets);
+    _nextSegmentId.set(nextSegmentId);
+    for (CheckpointSegment checkpointSegment : checkpointSegments) {
+      _checkpointSegments.put(checkpointSegment._segmentName, checkpointSegment);
+    }
+    updatePrimaryKeyGauge();
+    _logger.info("Loaded checkpoint with {} primary keys for {} segments in {}ms", getNumPrimaryKeys(),
+        checkpointSegments.size(), System.currentTimeMillis() - startTimeMs);
+  }
+
+  /**
+   * Removes the keys of the segments not bound after preloading, including the checkpointed segments not preloaded and
+   * the mutable segments at the time of the checkpoint.
+   */
+  @VisibleForTesting
+  void removeUnboundCheckpointSegments() {
+    _checkpointSegments.clear();
+    _bucketsLock.writeLock().lock();
+    try {
+      for (OffHeapRecordLocationMap bucket : _buckets.values()) {
+        bucket.removeIf(location -> !_idToSegmentMap.containsKey(location.getSegmentId()));
+      }
+    } finally {
+      _bucketsLock.writeLock().unlock();
+    }
+    updatePrimaryKeyGauge();
+  }
+
+  private static void putString(ByteBuffer byteBuffer, byte[] bytes) {
+    byteBuffer.putInt(bytes.length).put(bytes);
+  }
+
+  private static String getString(PinotDataBuffer buffer, long offset) {
+    Preconditions.checkState(offset + Integer.BYTES <= buffer.size(), "Checkpoint is truncated");
+    int length = buffer.getInt(offset);
+    Preconditions.checkState(length >= 0 && offset + Integer.BYTES + length <= buffer.size(),
+        "Checkpoint is truncated");
+    byte[] bytes = new byte[length];
+    buffer.copyTo(offset + Integer.BYTES, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer byteBuffer)
+      throws IOException {
+    while (byteBuffer.hasRemaining()) {
+      channel.write(byteBuffer);
+    }
+  }
+
+  private static class PrimaryKeyHash {
+    final long _high;
+    final long _low;
+
+    PrimaryKeyHash(PrimaryKey primaryKey) {
+      ByteBuffer hash = ByteBuffer.wrap(HashUtils.hashMurmur3(primaryKey.asBytes()));
+      _high = hash.getLong(0);
+      _low = hash.getLong(8);
+    }
+  }
+
+  private static class DedupRecord {
+    final OffHeapRecordLocationMap _bucket;
+    final int _segmentId;
+    final double _dedupTime;
+
+    DedupRecord(OffHeapRecordLocationMap bucket, int segmentId, double dedupTime) {
+      _bucket = bucket;
+      _segmentId = segmentId;
+      _dedupTime = dedupTime;
+    }
+  }
+
+  private static class CheckpointSegment {
+    final int _segmentId;
+    final String _segmentName;
+    final String _crc;
+
+    CheckpointSegment(int segmentId, String segmentName, String crc) {
+      _segmentId = segmentId;
+      _segmentName = segmentName;
+      _crc = crc;
+    }
+  }
+}
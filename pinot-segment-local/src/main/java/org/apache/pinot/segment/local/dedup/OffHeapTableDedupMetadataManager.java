@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.dedup;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.util.Map;
+import org.apache.pinot.spi.config.table.DedupConfig;
+
+
+/**
+ * Implementation of {@link TableDedupMetadataManager} that keeps the dedup metadata off-heap with
+ * {@link OffHeapPartitionDedupMetadataManager}.
+ *
+ * <p>It can be enabled by setting {@code metadataManagerClass} in the {@link DedupConfig} to the name of this class,
+ * and can be tuned with the following {@code metadataManagerConfigs}:
+ * <ul>
+ *   <li>{@code initialCapacity}: initial number of primary keys per time bucket of each partition, 65536 by
+ *   default</li>
+ *   <li>{@code numStripes}: number of independently locked stripes per time bucket, must be a power of 2, 16 by
+ *   default</li>
+ *   <li>{@code timeBucketSize}: size of the time buckets used to expire the primary keys, in the unit of the dedup
+ *   time column, 1/8 of the metadataTTL by default</li>
+ *   <li>{@code useMmap}: whether to memory map the metadata from files under the table index dir instead of
+ *   allocating it from direct memory, false by default</li>
+ *   <li>{@code enablePersistence}: whether to persist the metadata to the table index dir when shutting down, so that
+ *   it can be loaded back when preloading segments on restart instead of being rebuilt from the segments, false by
+ *   default. Requires preload to be enabled.</li>
+ * </ul>
+ */
+public class OffHeapTableDedupMetadataManager extends BaseTableDedupMetadataManager {
+  public static final String INITIAL_CAPACITY = "initialCapacity";
+  public static final String NUM_STRIPES = "numStripes";
+  public static final String TIME_BUCKET_SIZE = "timeBucketSize";
+  public static final String USE_MMAP = "useMmap";
+  public static final String ENABLE_PERSISTENCE = "enablePersistence";
+
+  public static final int DEFAULT_INITIAL_CAPACITY = 1 << 16;
+  public static final int DEFAULT_NUM_STRIPES = 16;
+  public static final int DEFAULT_NUM_TIME_BUCKETS = 8;
+
+  private int _initialCapacity = DEFAULT_INITIAL_CAPACITY;
+  private int _numStripes = DEFAULT_NUM_STRIPES;
+  private double _timeBucketSize;
+  private boolean _useMmap;
+  private boolean _enablePersistence;
+
+  @Override
+  protected void initCustomVariables() {
+    double metadataTTL = _dedupContext.getMetadataTTL();
+    if (metadataTTL > 0) {
+      _timeBucketSize = metadataTTL / DEFAULT_NUM_TIME_BUCKETS;
+    }
+    Map<String, String> metadataManagerConfigs =
+        _dedupContext.getTableConfig().getDedupConfig().getMetadataManagerConfigs();
+    if (metadataManagerConfigs != null) {
+      String initialCapacity = metadataManagerConfigs.get(INITIAL_CAPACITY);
+      if (initialCapacity != null) {
+        _initialCapacity = Integer.parseInt(initialCapacity);
+      }
+      String numStripes = metadataManagerConfigs.get(NUM_STRIPES);
+      if (numStripes != null) {
+        _numStripes = Integer.parseInt(numStripes);
+      }
+      String timeBucketSize = metadataManagerConfigs.get(TIME_BUCKET_SIZE);
+      if (timeBucketSize != null) {
+        _timeBucketSize = Double.parseDouble(timeBucketSize);
+      }
+      _useMmap = Boolean.parseBoolean(metadataManagerConfigs.get(USE_MMAP));
+      _enablePersistence = Boolean.parseBoolean(metadataManagerConfigs.get(ENABLE_PERSISTENCE));
+    }
+    Preconditions.checkState(metadataTTL <= 0 || _timeBucketSize > 0,
+        "Time bucket size must be positive for table: %s", _tableNameWithType);
+    Preconditions.checkState(!_enablePersistence || isEnablePreload(),
+        "Preload must be enabled to persist the dedup metadata for table: %s", _tableNameWithType);
+  }
+
+  @Override
+  protected PartitionDedupMetadataManager createPartitionDedupMetadataManager(Integer partitionId) {
+    File tableIndexDir = _dedupContext.getTableIndexDir();
+    File mmapDir = _useMmap ? new File(tableIndexDir, "dedupRecordLocations_" + partitionId) : null;
+    File checkpointFile =
+        _enablePersistence ? new File(tableIndexDir, "dedupRecordLocations.checkpoint_" + partitionId) : null;
+    return new OffHeapPartitionDedupMetadataManager(_tableNameWithType, partitionId, _dedupContext, _initialCapacity,
+        _numStripes, _timeBucketSize, mmapDir, checkpointFile);
+  }
+}
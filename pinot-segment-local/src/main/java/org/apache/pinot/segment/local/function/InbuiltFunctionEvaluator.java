@@ -215,12 +215,14 @@ public class InbuiltFunctionEvaluator implements FunctionEvaluator {
     final FunctionInfo _functionInfo;
     final ExecutableNode[] _argumentNodes;
     final Object[] _arguments;
+    final boolean _isVarArgs;
 
     FunctionExecutionNode(FunctionInfo functionInfo, ExecutableNode[] argumentNodes) {
       _functionInvoker = new FunctionInvoker(functionInfo);
       _functionInfo = functionInfo;
       _argumentNodes = argumentNodes;
       _arguments = new Object[_argumentNodes.length];
+      _isVarArgs = functionInfo.getMethod().isVarArgs();
     }
 
     @Override
@@ -239,7 +241,7 @@ public class InbuiltFunctionEvaluator implements FunctionEvaluator {
             }
           }
         }
-        if (_functionInvoker.getMethod().isVarArgs()) {
+        if (_isVarArgs) {
           return _functionInvoker.invoke(new Object[]{_arguments});
         }
         _functionInvoker.convertTypes(_arguments);
@@ -265,7 +267,7 @@ public class InbuiltFunctionEvaluator implements FunctionEvaluator {
             }
           }
         }
-        if (_functionInvoker.getMethod().isVarArgs()) {
+        if (_isVarArgs) {
           return _functionInvoker.invoke(new Object[]{_arguments});
         }
         _functionInvoker.convertTypes(_arguments);
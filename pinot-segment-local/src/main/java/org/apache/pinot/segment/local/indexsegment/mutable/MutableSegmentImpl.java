@@ -598,6 +598,175 @@ public class MutableSegmentImpl implements MutableSegment {
     return canTakeMore;
   }
 
+  /**
+   * Indexes the records column by column: for each column, the dictionary is updated with the values of all the
+   * records first, then each index is updated for all the records. This keeps the working set of one column hot in the
+   * cache, and allows the indexes to amortize the per-value overhead with {@link MutableIndex#addBatch}.
+   *
+   * <p>The records become queryable together after all the columns are indexed. When upsert, dedup or metrics
+   * aggregation is enabled, each record depends on the previous ones, so the records are indexed one by one instead.
+   */
+  @Override
+  public boolean indexBatch(List<GenericRow> rows, @Nullable RowMetadata rowMetadata)
+      throws IOException {
+    if (isUpsertEnabled() || isDedupEnabled() || isAggregateMetricsEnabled()) {
+      return MutableSegment.super.indexBatch(rows, rowMetadata);
+    }
+    int numRows = rows.size();
+    if (numRows == 0) {
+      return true;
+    }
+    // Only index the records within the capacity together, and index the records beyond the capacity one by one the
+    // same way as when indexing a single record
+    int remainingCapacity = _capacity - _numDocsIndexed;
+    if (numRows > remainingCapacity) {
+      boolean canTakeMore = true;
+      if (remainingCapacity > 0) {
+        canTakeMore = indexBatch(rows.subList(0, remainingCapacity), rowMetadata);
+      }
+      for (GenericRow row : rows.subList(Math.max(remainingCapacity, 0), numRows)) {
+        canTakeMore = index(row, rowMetadata);
+      }
+      return canTakeMore;
+    }
+
+    // NOTE: We must do this before we index a single column to avoid partially indexing the records
+    for (GenericRow row : rows) {
+      validateLengthOfMVColumns(row);
+    }
+
+    int numDocsIndexed = _numDocsIndexed;
+    Object[] values = new Object[numRows];
+    for (Map.Entry<String, IndexContainer> entry : _indexContainerMap.entrySet()) {
+      String column = entry.getKey();
+      IndexContainer indexContainer = entry.getValue();
+      MutableNullValueVector nullValueVector = indexContainer._nullValueVector;
+      int numNullValues = 0;
+      for (int i = 0; i < numRows; i++) {
+        GenericRow row = rows.get(i);
+        // Update the null value vector even if a null value is somehow produced
+        if (nullValueVector != null && row.isNullValue(column)) {
+          nullValueVector.setNull(numDocsIndexed + i);
+        }
+        Object value = row.getValue(column);
+        if (value == null) {
+          numNullValues++;
+        }
+        values[i] = value;
+      }
+      if (indexContainer._fieldSpec.isSingleValueField()) {
+        indexSingleValueBatch(column, indexContainer, values, numNullValues, numDocsIndexed, numRows);
+      } else {
+        indexMultiValueBatch(column, indexContainer, values, numDocsIndexed, numRows);
+      }
+    }
+
+    // Update number of documents indexed at last to make the latest records queryable
+    boolean canTakeMore = numDocsIndexed + numRows - 1 < _capacity;
+    _numDocsIndexed = numDocsIndexed + numRows;
+
+    // Update last indexed time and latest ingestion time
+    _lastIndexedTimeMs = System.currentTimeMillis();
+    if (rowMetadata != null) {
+      _latestIngestionTimeMs = Math.max(_latestIngestionTimeMs, rowMetadata.getRecordIngestionTimeMs());
+    }
+
+    return canTakeMore;
+  }
+
+  private void indexSingleValueBatch(String column, IndexContainer indexContainer, Object[] values,
+      int numNullValues, int startDocId, int numDocs) {
+    MutableDictionary dictionary = indexContainer._dictionary;
+    if (numNullValues == numDocs) {
+      if (dictionary != null) {
+        for (int i = 0; i < numDocs; i++) {
+          recordIndexingError("DICTIONARY");
+        }
+      }
+      return;
+    }
+
+    int[] dictIds = null;
+    if (dictionary != null) {
+      dictIds = new int[numDocs];
+      for (int i = 0; i < numDocs; i++) {
+        Object value = values[i];
+        if (value == null) {
+          recordIndexingError("DICTIONARY");
+          dictIds[i] = -1;
+        } else {
+          dictIds[i] = dictionary.index(value);
+        }
+      }
+      // Update min/max value from dictionary
+      indexContainer._minValue = dictionary.getMinVal();
+      indexContainer._maxValue = dictionary.getMaxVal();
+    }
+
+    if (numNullValues > 0) {
+      // The value should not be null unless something is broken upstream. Skip the null values the same way as when
+      // indexing the records one by one.
+      for (int i = 0; i < numDocs; i++) {
+        Object value = values[i];
+        if (value != null) {
+          addSingleValue(column, indexContainer, value, dictIds != null ? dictIds[i] : -1, startDocId + i);
+        }
+      }
+      return;
+    }
+
+    // Check partitions
+    if (column.equals(_partitionColumn)) {
+      for (int i = 0; i < numDocs; i++) {
+        checkPartition(column, indexContainer, values[i]);
+      }
+    }
+
+    // Update numValues info
+    indexContainer._valuesInfo.updateSVNumValues(numDocs);
+
+    // Update indexes
+    for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
+      try {
+        indexEntry.getValue().addBatch(values, dictIds, startDocId, numDocs);
+      } catch (Exception e) {
+        recordIndexingError(indexEntry.getKey(), e);
+      }
+    }
+
+    if (dictIds == null) {
+      for (int i = 0; i < numDocs; i++) {
+        updateMinMaxValue(indexContainer, values[i]);
+      }
+    }
+  }
+
+  private void indexMultiValueBatch(String column, IndexContainer indexContainer, Object[] values, int startDocId,
+      int numDocs) {
+    MutableDictionary dictionary = indexContainer._dictionary;
+    boolean dictionaryUpdated = false;
+    for (int i = 0; i < numDocs; i++) {
+      Object[] value = (Object[]) values[i];
+      if (value == null) {
+        if (dictionary != null) {
+          recordIndexingError("DICTIONARY");
+        }
+        continue;
+      }
+      int[] dictIds = null;
+      if (dictionary != null) {
+        dictIds = dictionary.index(value);
+        dictionaryUpdated = true;
+      }
+      addMultiValue(column, indexContainer, value, dictIds, startDocId + i);
+    }
+    if (dictionaryUpdated) {
+      // Update min/max value from dictionary
+      indexContainer._minValue = dictionary.getMinVal();
+      indexContainer._maxValue = dictionary.getMaxVal();
+    }
+  }
+
   private boolean isUpsertEnabled() {
     return _partitionUpsertMetadataManager != null;
   }
@@ -762,92 +931,106 @@ public class MutableSegmentImpl implements MutableSegment {
         continue;
       }
 
-      FieldSpec fieldSpec = indexContainer._fieldSpec;
-      DataType dataType = fieldSpec.getDataType();
+      if (indexContainer._fieldSpec.isSingleValueField()) {
+        addSingleValue(column, indexContainer, value, indexContainer._dictId, docId);
+      } else {
+        addMultiValue(column, indexContainer, (Object[]) value, indexContainer._dictIds, docId);
+      }
+    }
+  }
 
-      if (fieldSpec.isSingleValueField()) {
-        // Check partitions
-        if (column.equals(_partitionColumn)) {
-          String stringValue = dataType.toString(value);
-          int partition = _partitionFunction.getPartition(stringValue);
-          if (partition != _mainPartitionId) {
-            if (indexContainer._partitions.add(partition)) {
-              // for every partition other than mainPartitionId, log a warning once
-              _logger.warn("Found new partition: {} from partition column: {}, value: {}", partition, column,
-                  stringValue);
-            }
-            // always emit a metric when a partition other than mainPartitionId is detected
-            if (_serverMetrics != null) {
-              _serverMetrics.addMeteredTableValue(_realtimeTableName, ServerMeter.REALTIME_PARTITION_MISMATCH, 1);
-            }
-          }
-        }
+  private void addSingleValue(String column, IndexContainer indexContainer, Object value, int dictId, int docId) {
+    // Check partitions
+    if (column.equals(_partitionColumn)) {
+      checkPartition(column, indexContainer, value);
+    }
 
-        // Update numValues info
-        indexContainer._valuesInfo.updateSVNumValues();
+    // Update numValues info
+    indexContainer._valuesInfo.updateSVNumValues();
 
-        // Update indexes
-        int dictId = indexContainer._dictId;
-        for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
-          try {
-            indexEntry.getValue().add(value, dictId, docId);
-          } catch (Exception e) {
-            recordIndexingError(indexEntry.getKey(), e);
-          }
-        }
+    // Update indexes
+    for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
+      try {
+        indexEntry.getValue().add(value, dictId, docId);
+      } catch (Exception e) {
+        recordIndexingError(indexEntry.getKey(), e);
+      }
+    }
 
-        if (dictId < 0) {
-          // Update min/max value from raw value
-          // NOTE: Skip updating min/max value for aggregated metrics because the value will change over time.
-          if (!isAggregateMetricsEnabled() || fieldSpec.getFieldType() != FieldSpec.FieldType.METRIC) {
-            Comparable comparable;
-            if (dataType == BYTES) {
-              comparable = new ByteArray((byte[]) value);
-            } else if (dataType == MAP) {
-              comparable = new ByteArray(MapUtils.serializeMap((Map) value));
-            } else {
-              comparable = (Comparable) value;
-            }
-            if (indexContainer._minValue == null) {
-              indexContainer._minValue = comparable;
-              indexContainer._maxValue = comparable;
-            } else {
-              if (comparable.compareTo(indexContainer._minValue) < 0) {
-                indexContainer._minValue = comparable;
-              }
-              if (comparable.compareTo(indexContainer._maxValue) > 0) {
-                indexContainer._maxValue = comparable;
-              }
-            }
-          }
-        }
-      } else {
-        // Multi-value column
-
-        int[] dictIds = indexContainer._dictIds;
-        indexContainer._valuesInfo.updateVarByteMVMaxRowLengthInBytes(value, dataType.getStoredType());
-        Object[] values = (Object[]) value;
-        for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
-          try {
-            MutableIndex mutableIndex = indexEntry.getValue();
-            mutableIndex.add(values, dictIds, docId);
-            // Few of the Immutable version of the mutable index are bounded by size like FixedBitMVForwardIndex.
-            // If num of values overflows or size is above limit, A mutable index is unable to convert to
-            // an immutable index and segment build fails causing the realtime consumption to stop.
-            // Hence, The below check is a temporary measure to avoid such scenarios until immutable index
-            // implementations are changed.
-            if (!_indexCapacityThresholdBreached && !mutableIndex.canAddMore()) {
-              _logger.info(
-                  "Index: {} for column: {} cannot consume more rows, marking _indexCapacityThresholdBreached as true",
-                  indexEntry.getKey(), column
-              );
-              _indexCapacityThresholdBreached = true;
-            }
-          } catch (Exception e) {
-            recordIndexingError(indexEntry.getKey(), e);
-          }
+    if (dictId < 0) {
+      updateMinMaxValue(indexContainer, value);
+    }
+  }
+
+  private void addMultiValue(String column, IndexContainer indexContainer, Object[] values, @Nullable int[] dictIds,
+      int docId) {
+    indexContainer._valuesInfo.updateVarByteMVMaxRowLengthInBytes(values,
+        indexContainer._fieldSpec.getDataType().getStoredType());
+    for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
+      try {
+        MutableIndex mutableIndex = indexEntry.getValue();
+        mutableIndex.add(values, dictIds, docId);
+        // Few of the Immutable version of the mutable index are bounded by size like FixedBitMVForwardIndex.
+        // If num of values overflows or size is above limit, A mutable index is unable to convert to
+        // an immutable index and segment build fails causing the realtime consumption to stop.
+        // Hence, The below check is a temporary measure to avoid such scenarios until immutable index
+        // implementations are changed.
+        if (!_indexCapacityThresholdBreached && !mutableIndex.canAddMore()) {
+          _logger.info(
+              "Index: {} for column: {} cannot consume more rows, marking _indexCapacityThresholdBreached as true",
+              indexEntry.getKey(), column
+          );
+          _indexCapacityThresholdBreached = true;
         }
-        indexContainer._valuesInfo.updateMVNumValues(values.length);
+      } catch (Exception e) {
+        recordIndexingError(indexEntry.getKey(), e);
+      }
+    }
+    indexContainer._valuesInfo.updateMVNumValues(values.length);
+  }
+
+  private void checkPartition(String column, IndexContainer indexContainer, Object value) {
+    String stringValue = indexContainer._fieldSpec.getDataType().toString(value);
+    int partition = _partitionFunction.getPartition(stringValue);
+    if (partition != _mainPartitionId) {
+      if (indexContainer._partitions.add(partition)) {
+        // for every partition other than mainPartitionId, log a warning once
+        _logger.warn("Found new partition: {} from partition column: {}, value: {}", partition, column, stringValue);
+      }
+      // always emit a metric when a partition other than mainPartitionId is detected
+      if (_serverMetrics != null) {
+        _serverMetrics.addMeteredTableValue(_realtimeTableName, ServerMeter.REALTIME_PARTITION_MISMATCH, 1);
+      }
+    }
+  }
+
+  /**
+   * Updates the min/max value of a raw (not dictionary encoded) single-value column.
+   */
+  private void updateMinMaxValue(IndexContainer indexContainer, Object value) {
+    FieldSpec fieldSpec = indexContainer._fieldSpec;
+    // NOTE: Skip updating min/max value for aggregated metrics because the value will change over time.
+    if (isAggregateMetricsEnabled() && fieldSpec.getFieldType() == FieldSpec.FieldType.METRIC) {
+      return;
+    }
+    DataType dataType = fieldSpec.getDataType();
+    Comparable comparable;
+    if (dataType == BYTES) {
+      comparable = new ByteArray((byte[]) value);
+    } else if (dataType == MAP) {
+      comparable = new ByteArray(MapUtils.serializeMap((Map) value));
+    } else {
+      comparable = (Comparable) value;
+    }
+    if (indexContainer._minValue == null) {
+      indexContainer._minValue = comparable;
+      indexContainer._maxValue = comparable;
+    } else {
+      if (comparable.compareTo(indexContainer._minValue) < 0) {
+        indexContainer._minValue = comparable;
+      }
+      if (comparable.compareTo(indexContainer._maxValue) > 0) {
+        indexContainer._maxValue = comparable;
       }
     }
   }
@@ -1294,6 +1477,10 @@ public class MutableSegmentImpl implements MutableSegment {
       _numValues++;
     }
 
+    void updateSVNumValues(int numValues) {
+      _numValues += numValues;
+    }
+
     void updateMVNumValues(int numValuesInMVEntry) {
       _numValues += numValuesInMVEntry;
       _maxNumValuesPerMVEntry = Math.max(_maxNumValuesPerMVEntry, numValuesInMVEntry);
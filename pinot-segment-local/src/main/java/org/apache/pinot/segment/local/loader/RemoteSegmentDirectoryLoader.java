@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.loader;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.net.URI;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.segment.store.RemoteIndexBufferCache;
+import org.apache.pinot.segment.local.segment.store.RemoteSegmentDirectory;
+import org.apache.pinot.segment.spi.loader.SegmentDirectoryLoader;
+import org.apache.pinot.segment.spi.loader.SegmentDirectoryLoaderContext;
+import org.apache.pinot.segment.spi.loader.SegmentLoader;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.DataSizeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implementation of {@link SegmentDirectoryLoader} which serves the segments from the deep store, with only the
+ * segment metadata kept in the local segment directory and the index buffers fetched on access into a size bounded
+ * local cache shared by all the segments. The segments must be kept untarred in V3 format under
+ * {@code <remote.segment.dir.uri>/<tableNameWithType>/<segmentName>} in the deep store.
+ */
+@SegmentLoader(name = "remote")
+public class RemoteSegmentDirectoryLoader implements SegmentDirectoryLoader {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RemoteSegmentDirectoryLoader.class);
+
+  public static final String REMOTE_SEGMENT_DIR_URI_KEY = "remote.segment.dir.uri";
+  public static final String CACHE_DIR_KEY = "remote.cache.dir";
+  public static final String CACHE_SIZE_KEY = "remote.cache.size";
+  public static final String DEFAULT_CACHE_SIZE = "10G";
+  public static final String NUM_FETCH_THREADS_KEY = "remote.cache.fetch.threads";
+  public static final int DEFAULT_NUM_FETCH_THREADS = 8;
+  public static final String DEFAULT_CACHE_DIR_NAME = "remoteIndexCache";
+
+  private volatile RemoteIndexBufferCache _cache;
+
+  /**
+   * Creates the {@link RemoteSegmentDirectory} for the segment, fetching its metadata into the local index directory.
+   * @param indexDir the local segment index directory
+   * @param segmentLoaderContext context for instantiation of the SegmentDirectory
+   * @return instance of {@link RemoteSegmentDirectory}
+   */
+  @Override
+  public SegmentDirectory load(URI indexDir, SegmentDirectoryLoaderContext segmentLoaderContext)
+      throws Exception {
+    String segmentName = segmentLoaderContext.getSegmentName();
+    URI remoteSegmentUri = getRemoteSegmentUri(segmentLoaderContext);
+    LOGGER.info("Loading segment: {} from: {} with metadata in: {}", segmentName, remoteSegmentUri, indexDir);
+    return new RemoteSegmentDirectory(new File(indexDir), remoteSegmentUri, getCache(segmentLoaderContext));
+  }
+
+  /**
+   * Deletes the local segment metadata, as well as the cached index buffers of the segment.
+   */
+  @Override
+  public void delete(SegmentDirectoryLoaderContext segmentLoaderContext)
+      throws Exception {
+    File indexDir = new File(segmentLoaderContext.getTableDataDir(), segmentLoaderContext.getSegmentName());
+    if (indexDir.exists()) {
+      FileUtils.deleteQuietly(indexDir);
+      LOGGER.info("Deleted segment directory {} for remote segment", indexDir);
+    }
+    RemoteIndexBufferCache cache = _cache;
+    if (cache != null) {
+      cache.invalidate(RemoteSegmentDirectory.getCacheKeyPrefix(getRemoteSegmentUri(segmentLoaderContext)));
+    }
+  }
+
+  private static URI getRemoteSegmentUri(SegmentDirectoryLoaderContext segmentLoaderContext) {
+    String remoteSegmentDirUri =
+        segmentLoaderContext.getSegmentDirectoryConfigs().getProperty(REMOTE_SEGMENT_DIR_URI_KEY);
+    Preconditions.checkState(remoteSegmentDirUri != null, "Missing config: %s for the remote segment directory loader",
+        REMOTE_SEGMENT_DIR_URI_KEY);
+    String tableNameWithType = segmentLoaderContext.getTableConfig().getTableName();
+    return URI.create((remoteSegmentDirUri.endsWith("/") ? remoteSegmentDirUri : remoteSegmentDirUri + "/")
+        + tableNameWithType + "/" + segmentLoaderContext.getSegmentName());
+  }
+
+  private RemoteIndexBufferCache getCache(SegmentDirectoryLoaderContext segmentLoaderContext)
+      throws Exception {
+    RemoteIndexBufferCache cache = _cache;
+    if (cache == null) {
+      synchronized (this) {
+        cache = _cache;
+        if (cache == null) {
+          PinotConfiguration segmentDirectoryConfigs = segmentLoaderContext.getSegmentDirectoryConfigs();
+          String cacheDir = segmentDirectoryConfigs.getProperty(CACHE_DIR_KEY);
+          File cacheDirFile = cacheDir != null ? new File(cacheDir)
+              : new File(new File(segmentLoaderContext.getTableDataDir()).getParentFile(), DEFAULT_CACHE_DIR_NAME);
+          long cacheSizeBytes =
+              DataSizeUtils.toBytes(segmentDirectoryConfigs.getProperty(CACHE_SIZE_KEY, DEFAULT_CACHE_SIZE));
+          int numFetchThreads = segmentDirectoryConfigs.getProperty(NUM_FETCH_THREADS_KEY, DEFAULT_NUM_FETCH_THREADS);
+          cache = new RemoteIndexBufferCache(cacheDirFile, cacheSizeBytes, numFetchThreads);
+          _cache = cache;
+        }
+      }
+    }
+    return cache;
+  }
+}
@@ -25,6 +25,7 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nullable;
 import org.apache.pinot.segment.local.io.reader.impl.FixedByteSingleValueMultiColReader;
 import org.apache.pinot.segment.local.io.writer.impl.FixedByteSingleValueMultiColWriter;
 import org.apache.pinot.segment.spi.index.mutable.MutableForwardIndex;
@@ -223,6 +224,59 @@ public class FixedByteSVMutableForwardIndex implements MutableForwardIndex {
     getWriterForRow(docId).setBytes(docId, value);
   }
 
+  /**
+   * Allocates the buffers for the whole batch upfront, then writes the values chunk by chunk so that the writer is
+   * looked up once per chunk instead of once per value.
+   */
+  @Override
+  public void addBatch(Object[] values, @Nullable int[] dictIds, int startDocId, int numDocs) {
+    if (numDocs == 0) {
+      return;
+    }
+    if (dictIds == null && !_storedType.isFixedWidth()) {
+      MutableForwardIndex.super.addBatch(values, dictIds, startDocId, numDocs);
+      return;
+    }
+    int endDocId = startDocId + numDocs;
+    addBufferIfNeeded(endDocId - 1);
+    int docId = startDocId;
+    while (docId < endDocId) {
+      WriterWithOffset writer = getWriterForRow(docId);
+      int chunkEndDocId = Math.min(writer._startRowId + _numRowsPerChunk, endDocId);
+      int valueOffset = docId - startDocId;
+      if (dictIds != null) {
+        for (int i = valueOffset; docId < chunkEndDocId; i++, docId++) {
+          writer.setInt(docId, dictIds[i]);
+        }
+        continue;
+      }
+      switch (_storedType) {
+        case INT:
+          for (int i = valueOffset; docId < chunkEndDocId; i++, docId++) {
+            writer.setInt(docId, (int) values[i]);
+          }
+          break;
+        case LONG:
+          for (int i = valueOffset; docId < chunkEndDocId; i++, docId++) {
+            writer.setLong(docId, (long) values[i]);
+          }
+          break;
+        case FLOAT:
+          for (int i = valueOffset; docId < chunkEndDocId; i++, docId++) {
+            writer.setFloat(docId, (float) values[i]);
+          }
+          break;
+        case DOUBLE:
+          for (int i = valueOffset; docId < chunkEndDocId; i++, docId++) {
+            writer.setDouble(docId, (double) values[i]);
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unsupported stored type: " + _storedType);
+      }
+    }
+  }
+
   private WriterWithOffset getWriterForRow(int row) {
     return _writers.get(getBufferId(row));
   }
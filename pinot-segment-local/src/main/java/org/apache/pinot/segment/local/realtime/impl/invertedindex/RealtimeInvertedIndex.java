@@ -18,66 +18,85 @@
  */
 package org.apache.pinot.segment.local.realtime.impl.invertedindex;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Arrays;
+import javax.annotation.Nullable;
 import org.apache.pinot.segment.spi.index.mutable.MutableInvertedIndex;
-import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 
 /**
  * Real-time bitmap based inverted index reader which allows adding values on the fly.
- * <p>This class is thread-safe for single writer multiple readers.
+ * <p>This class is thread-safe for single writer multiple readers. The readers don't take any lock: the posting lists
+ * are published through volatile fields, and each posting list returns a snapshot of the doc ids published so far (see
+ * {@link SnapshotPostingList}). The snapshots are shared and must not be modified.
  */
 public class RealtimeInvertedIndex implements MutableInvertedIndex {
-  private final List<ThreadSafeMutableRoaringBitmap> _bitmaps = new ArrayList<>();
-  private final ReentrantReadWriteLock.ReadLock _readLock;
-  private final ReentrantReadWriteLock.WriteLock _writeLock;
+  private static final int INITIAL_CAPACITY = 16;
 
-  public RealtimeInvertedIndex() {
-    ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-    _readLock = readWriteLock.readLock();
-    _writeLock = readWriteLock.writeLock();
-  }
+  // The posting list is stored into the array before the count is increased, and the readers read the count before the
+  // array, so that all the posting lists within the count are visible to the readers
+  private volatile SnapshotPostingList.ForMutableRoaringBitmap[] _postingLists =
+      new SnapshotPostingList.ForMutableRoaringBitmap[INITIAL_CAPACITY];
+  private volatile int _numPostingLists;
 
   /**
    * Adds the document id to the bitmap of the given dictionary id.
    */
   @Override
   public void add(int dictId, int docId) {
-    if (_bitmaps.size() == dictId) {
+    int numPostingLists = _numPostingLists;
+    if (numPostingLists == dictId) {
       // Bitmap for the dictionary id does not exist, add a new bitmap into the list
-      ThreadSafeMutableRoaringBitmap bitmap = new ThreadSafeMutableRoaringBitmap(docId);
-      try {
-        _writeLock.lock();
-        _bitmaps.add(bitmap);
-      } finally {
-        _writeLock.unlock();
+      storePostingList(dictId, new SnapshotPostingList.ForMutableRoaringBitmap(docId));
+      _numPostingLists = numPostingLists + 1;
+    } else {
+      // Bitmap for the dictionary id already exists, add document id into the bitmap
+      _postingLists[dictId].add(docId);
+    }
+  }
+
+  /**
+   * Adds the document ids of a batch of single-value cells. The dictionary ids are assigned sequentially, so the new
+   * dictionary ids first show up in increasing order within the batch. The count of the posting lists is published
+   * once for the batch.
+   */
+  @Override
+  public void addBatch(Object[] values, @Nullable int[] dictIds, int startDocId, int numDocs) {
+    int numPostingLists = _numPostingLists;
+    for (int i = 0; i < numDocs; i++) {
+      int dictId = dictIds[i];
+      int docId = startDocId + i;
+      if (dictId == numPostingLists) {
+        storePostingList(dictId, new SnapshotPostingList.ForMutableRoaringBitmap(docId));
+        numPostingLists++;
+      } else {
+        _postingLists[dictId].add(docId);
       }
+    }
+    _numPostingLists = numPostingLists;
+  }
+
+  private void storePostingList(int dictId, SnapshotPostingList.ForMutableRoaringBitmap postingList) {
+    SnapshotPostingList.ForMutableRoaringBitmap[] postingLists = _postingLists;
+    if (dictId == postingLists.length) {
+      postingLists = Arrays.copyOf(postingLists, dictId * 2);
+      postingLists[dictId] = postingList;
+      _postingLists = postingLists;
     } else {
-      // Bitmap for the dictionary id already exists, check and add document id into the bitmap
-      _bitmaps.get(dictId).add(docId);
+      postingLists[dictId] = postingList;
     }
   }
 
   @Override
   public MutableRoaringBitmap getDocIds(int dictId) {
-    ThreadSafeMutableRoaringBitmap bitmap;
-    try {
-      _readLock.lock();
-      // NOTE: the given dictionary id might not be added to the inverted index yet. We first add the value to the
-      // dictionary. Before the value is added to the inverted index, the query might have predicates that match the
-      // newly added value. In that case, the given dictionary id does not exist in the inverted index, and we return an
-      // empty bitmap. For multi-valued column, the dictionary id might be larger than the bitmap size (not equal).
-      if (_bitmaps.size() <= dictId) {
-        return new MutableRoaringBitmap();
-      }
-      bitmap = _bitmaps.get(dictId);
-    } finally {
-      _readLock.unlock();
+    // NOTE: the given dictionary id might not be added to the inverted index yet. We first add the value to the
+    // dictionary. Before the value is added to the inverted index, the query might have predicates that match the
+    // newly added value. In that case, the given dictionary id does not exist in the inverted index, and we return an
+    // empty bitmap. For multi-valued column, the dictionary id might be larger than the bitmap size (not equal).
+    if (_numPostingLists <= dictId) {
+      return new MutableRoaringBitmap();
     }
-    return bitmap.getMutableRoaringBitmap();
+    return _postingLists[dictId].getDocIds();
   }
 
   @Override
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.realtime.impl.invertedindex;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Arrays;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Posting list of a mutable index for a single writer and multiple readers, where the writer appends the doc ids in
+ * increasing order.
+ *
+ * <p>The doc ids are kept in a base bitmap which is never modified after being published, plus an append-only tail
+ * array. Readers never take a lock: they read the published base and the number of doc ids in the tail, and get a
+ * snapshot bitmap which is shared by all the readers until the writer appends more doc ids, at which point the cached
+ * snapshot is dropped so that at most one full bitmap copy is kept per posting list. When the tail grows beyond
+ * a fraction of the base, the writer merges it into a new base so that the merge cost is amortized over the appended
+ * doc ids.
+ *
+ * <p>The snapshots returned by {@link #getDocIds()} are shared and must not be modified.
+ *
+ * @param <T> Type of the bitmap
+ */
+public abstract class SnapshotPostingList<T> {
+  private static final int INITIAL_TAIL_CAPACITY = 4;
+  private static final int MIN_MERGE_THRESHOLD = 1024;
+
+  private volatile State<T> _state;
+  private volatile Snapshot<T> _snapshot;
+
+  // Only accessed by the writer
+  private int _lastDocId = -1;
+
+  protected SnapshotPostingList() {
+    _state = new State<>(createBitmap(), 0, new int[INITIAL_TAIL_CAPACITY], 0);
+  }
+
+  /**
+   * Appends a doc id. Must be called by the single writer, with doc ids in increasing order. Adding the same doc id as
+   * the last added one is a no-op.
+   */
+  public void add(int docId) {
+    if (docId == _lastDocId) {
+      return;
+    }
+    _lastDocId = docId;
+    publish(docId);
+    // The cached snapshot is stale after the doc id is published, so drop it instead of holding the copy until the next
+    // read
+    if (_snapshot != null) {
+      _snapshot = null;
+    }
+  }
+
+  private void publish(int docId) {
+    State<T> state = _state;
+    int numTailDocIds = state._numTailDocIds;
+    int[] tailDocIds = state._tailDocIds;
+    if (numTailDocIds < tailDocIds.length) {
+      tailDocIds[numTailDocIds] = docId;
+      // Publish the doc id
+      state._numTailDocIds = numTailDocIds + 1;
+      return;
+    }
+    State<T> newState;
+    if (numTailDocIds >= Math.max(MIN_MERGE_THRESHOLD, state._baseCardinality >>> 3)) {
+      newState = new State<>(merge(state._base, tailDocIds, numTailDocIds), state._baseCardinality + numTailDocIds,
+          new int[INITIAL_TAIL_CAPACITY], 0);
+    } else {
+      newState = new State<>(state._base, state._baseCardinality, Arrays.copyOf(tailDocIds, numTailDocIds * 2),
+          numTailDocIds);
+    }
+    newState._tailDocIds[newState._numTailDocIds] = docId;
+    newState._numTailDocIds++;
+    // Publish the new state, which is not visible to the readers before this point
+    _state = newState;
+  }
+
+  /**
+   * Returns a snapshot of the doc ids published so far. The snapshot is shared with the other readers and must not be
+   * modified.
+   */
+  public T getDocIds() {
+    State<T> state = _state;
+    int numTailDocIds = state._numTailDocIds;
+    if (numTailDocIds == 0) {
+      return state._base;
+    }
+    Snapshot<T> snapshot = _snapshot;
+    if (snapshot != null && snapshot._state == state && snapshot._numTailDocIds == numTailDocIds) {
+      return snapshot._docIds;
+    }
+    T docIds = merge(state._base, state._tailDocIds, numTailDocIds);
+    // Racing readers might overwrite each other's snapshot, which only causes a cache miss for the next reader
+    _snapshot = new Snapshot<>(state, numTailDocIds, docIds);
+    return docIds;
+  }
+
+  @VisibleForTesting
+  boolean hasSnapshot() {
+    return _snapshot != null;
+  }
+
+  private T merge(T base, int[] docIds, int numDocIds) {
+    T bitmap = cloneBitmap(base);
+    addDocIds(bitmap, docIds, numDocIds);
+    return bitmap;
+  }
+
+  protected abstract T createBitmap();
+
+  protected abstract T cloneBitmap(T bitmap);
+
+  protected abstract void addDocIds(T bitmap, int[] docIds, int numDocIds);
+
+  private static class State<T> {
+    final T _base;
+    final int _baseCardinality;
+    final int[] _tailDocIds;
+    // Written after the tail doc id so that the readers see the tail doc ids before this count
+    volatile int _numTailDocIds;
+
+    State(T base, int baseCardinality, int[] tailDocIds, int numTailDocIds) {
+      _base = base;
+      _baseCardinality = baseCardinality;
+      _tailDocIds = tailDocIds;
+      _numTailDocIds = numTailDocIds;
+    }
+  }
+
+  private static class Snapshot<T> {
+    final State<T> _state;
+    final int _numTailDocIds;
+    final T _docIds;
+
+    Snapshot(State<T> state, int numTailDocIds, T docIds) {
+      _state = state;
+      _numTailDocIds = numTailDocIds;
+      _docIds = docIds;
+    }
+  }
+
+  /**
+   * Posting list backed by {@link MutableRoaringBitmap}.
+   */
+  public static class ForMutableRoaringBitmap extends SnapshotPostingList<MutableRoaringBitmap> {
+
+    public ForMutableRoaringBitmap() {
+    }
+
+    public ForMutableRoaringBitmap(int firstDocId) {
+      add(firstDocId);
+    }
+
+    @Override
+    protected MutableRoaringBitmap createBitmap() {
+      return new MutableRoaringBitmap();
+    }
+
+    @Override
+    protected MutableRoaringBitmap cloneBitmap(MutableRoaringBitmap bitmap) {
+      return bitmap.clone();
+    }
+
+    @Override
+    protected void addDocIds(MutableRoaringBitmap bitmap, int[] docIds, int numDocIds) {
+      bitmap.addN(docIds, 0, numDocIds);
+    }
+  }
+
+  /**
+   * Posting list backed by {@link RoaringBitmap}.
+   */
+  public static class ForRoaringBitmap extends SnapshotPostingList<RoaringBitmap> {
+
+    @Override
+    protected RoaringBitmap createBitmap() {
+      return new RoaringBitmap();
+    }
+
+    @Override
+    protected RoaringBitmap cloneBitmap(RoaringBitmap bitmap) {
+      return bitmap.clone();
+    }
+
+    @Override
+    protected void addDocIds(RoaringBitmap bitmap, int[] docIds, int numDocIds) {
+      bitmap.addN(docIds, 0, numDocIds);
+    }
+  }
+}
@@ -20,8 +20,6 @@ package org.apache.pinot.segment.local.realtime.impl.json;
 
 import com.google.common.base.Preconditions;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,8 +28,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
-import java.util.TreeMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pinot.common.request.context.ExpressionContext;
@@ -45,6 +42,7 @@ import org.apache.pinot.common.request.context.predicate.Predicate;
 import org.apache.pinot.common.request.context.predicate.RangePredicate;
 import org.apache.pinot.common.request.context.predicate.RegexpLikePredicate;
 import org.apache.pinot.common.utils.regex.Pattern;
+import org.apache.pinot.segment.local.realtime.impl.invertedindex.SnapshotPostingList;
 import org.apache.pinot.segment.spi.index.creator.JsonIndexCreator;
 import org.apache.pinot.segment.spi.index.mutable.MutableJsonIndex;
 import org.apache.pinot.spi.config.table.JsonIndexConfig;
@@ -60,25 +58,23 @@ import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 /**
  * Json index for mutable segment.
+ * <p>This class is thread-safe for single writer multiple readers. The readers don't take any lock: each posting list
+ * returns a snapshot of the flattened doc ids published so far (see {@link SnapshotPostingList}), and the doc id
+ * mapping of a flattened doc id is always written before the flattened doc id is published. The doc counts are read
+ * before the posting lists so that they never cover a document whose flattened doc ids are not published yet.
  */
 public class MutableJsonIndexImpl implements MutableJsonIndex {
   private final JsonIndexConfig _jsonIndexConfig;
-  private final TreeMap<String, RoaringBitmap> _postingListMap;
-  private final IntList _docIdMapping;
-  private final ReentrantReadWriteLock.ReadLock _readLock;
-  private final ReentrantReadWriteLock.WriteLock _writeLock;
+  private final ConcurrentSkipListMap<String, SnapshotPostingList.ForRoaringBitmap> _postingListMap;
+  private final DocIdMapping _docIdMapping;
 
-  private int _nextDocId;
-  private int _nextFlattenedDocId;
+  private volatile int _nextDocId;
+  private volatile int _nextFlattenedDocId;
 
   public MutableJsonIndexImpl(JsonIndexConfig jsonIndexConfig) {
     _jsonIndexConfig = jsonIndexConfig;
-    _postingListMap = new TreeMap<>();
-    _docIdMapping = new IntArrayList();
-
-    ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-    _readLock = readWriteLock.readLock();
-    _writeLock = readWriteLock.writeLock();
+    _postingListMap = new ConcurrentSkipListMap<>();
+    _docIdMapping = new DocIdMapping();
   }
 
   /**
@@ -88,13 +84,7 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
   public void add(String jsonString)
       throws IOException {
     try {
-      List<Map<String, String>> flattenedRecords = JsonUtils.flatten(jsonString, _jsonIndexConfig);
-      _writeLock.lock();
-      try {
-        addFlattenedRecords(flattenedRecords);
-      } finally {
-        _writeLock.unlock();
-      }
+      addFlattenedRecords(JsonUtils.flatten(jsonString, _jsonIndexConfig));
     } finally {
       _nextDocId++;
     }
@@ -108,7 +98,7 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
     Preconditions.checkState(_nextFlattenedDocId + numRecords >= 0, "Got more than %s flattened records",
         Integer.MAX_VALUE);
     for (int i = 0; i < numRecords; i++) {
-      _docIdMapping.add(_nextDocId);
+      _docIdMapping.add(_nextFlattenedDocId + i, _nextDocId);
     }
     // TODO: Consider storing tuples as the key of the posting list so that the strings can be reused, and the hashcode
     //       can be cached.
@@ -116,9 +106,11 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       for (Map.Entry<String, String> entry : record.entrySet()) {
         // Put both key and key-value into the posting list. Key is useful for checking if a key exists in the json.
         String key = entry.getKey();
-        _postingListMap.computeIfAbsent(key, k -> new RoaringBitmap()).add(_nextFlattenedDocId);
+        _postingListMap.computeIfAbsent(key, k -> new SnapshotPostingList.ForRoaringBitmap())
+            .add(_nextFlattenedDocId);
         String keyValue = key + JsonIndexCreator.KEY_VALUE_SEPARATOR + entry.getValue();
-        _postingListMap.computeIfAbsent(keyValue, k -> new RoaringBitmap()).add(_nextFlattenedDocId);
+        _postingListMap.computeIfAbsent(keyValue, k -> new SnapshotPostingList.ForRoaringBitmap())
+            .add(_nextFlattenedDocId);
       }
       _nextFlattenedDocId++;
     }
@@ -134,26 +126,22 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       throw new BadQueryRequestException("Invalid json match filter: " + filterString);
     }
 
-    _readLock.lock();
-    try {
-      if (filter.getType() == FilterContext.Type.PREDICATE && isExclusive(filter.getPredicate().getType())) {
-        // Handle exclusive predicate separately because the flip can only be applied to the unflattened doc ids in
-        // order to get the correct result, and it cannot be nested
-        RoaringBitmap matchingFlattenedDocIds = getMatchingFlattenedDocIds(filter.getPredicate());
-        MutableRoaringBitmap matchingDocIds = new MutableRoaringBitmap();
-        matchingFlattenedDocIds.forEach(
-            (IntConsumer) flattenedDocId -> matchingDocIds.add(_docIdMapping.getInt(flattenedDocId)));
-        matchingDocIds.flip(0, (long) _nextDocId);
-        return matchingDocIds;
-      } else {
-        RoaringBitmap matchingFlattenedDocIds = getMatchingFlattenedDocIds(filter);
-        MutableRoaringBitmap matchingDocIds = new MutableRoaringBitmap();
-        matchingFlattenedDocIds.forEach(
-            (IntConsumer) flattenedDocId -> matchingDocIds.add(_docIdMapping.getInt(flattenedDocId)));
-        return matchingDocIds;
-      }
-    } finally {
-      _readLock.unlock();
+    if (filter.getType() == FilterContext.Type.PREDICATE && isExclusive(filter.getPredicate().getType())) {
+      // Handle exclusive predicate separately because the flip can only be applied to the unflattened doc ids in
+      // order to get the correct result, and it cannot be nested
+      int numDocs = _nextDocId;
+      RoaringBitmap matchingFlattenedDocIds = getMatchingFlattenedDocIds(filter.getPredicate());
+      MutableRoaringBitmap matchingDocIds = new MutableRoaringBitmap();
+      matchingFlattenedDocIds.forEach(
+          (IntConsumer) flattenedDocId -> matchingDocIds.add(_docIdMapping.getDocId(flattenedDocId)));
+      matchingDocIds.flip(0, (long) numDocs);
+      return matchingDocIds;
+    } else {
+      RoaringBitmap matchingFlattenedDocIds = getMatchingFlattenedDocIds(filter);
+      MutableRoaringBitmap matchingDocIds = new MutableRoaringBitmap();
+      matchingFlattenedDocIds.forEach(
+          (IntConsumer) flattenedDocId -> matchingDocIds.add(_docIdMapping.getDocId(flattenedDocId)));
+      return matchingDocIds;
     }
   }
 
@@ -230,7 +218,7 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       case EQ: {
         String value = ((EqPredicate) predicate).getValue();
         String keyValuePair = key + JsonIndexCreator.KEY_VALUE_SEPARATOR + value;
-        RoaringBitmap matchingDocIdsForKeyValuePair = _postingListMap.get(keyValuePair);
+        RoaringBitmap matchingDocIdsForKeyValuePair = getPostingList(keyValuePair);
         if (matchingDocIdsForKeyValuePair != null) {
           if (matchingDocIds == null) {
             return matchingDocIdsForKeyValuePair.clone();
@@ -244,21 +232,21 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       }
 
       case NOT_EQ: {
-        Map<String, RoaringBitmap> subMap = getMatchingKeysMap(key);
+        Map<String, SnapshotPostingList.ForRoaringBitmap> subMap = getMatchingKeysMap(key);
         if (subMap.isEmpty()) {
           return new RoaringBitmap();
         }
         String notEqualValue = ((NotEqPredicate) predicate).getValue();
         RoaringBitmap result = null;
 
-        for (Map.Entry<String, RoaringBitmap> entry : subMap.entrySet()) {
+        for (Map.Entry<String, SnapshotPostingList.ForRoaringBitmap> entry : subMap.entrySet()) {
           if (notEqualValue.equals(entry.getKey().substring(key.length() + 1))) {
             continue;
           }
           if (result == null) {
-            result = entry.getValue().clone();
+            result = entry.getValue().getDocIds().clone();
           } else {
-            result.or(entry.getValue());
+            result.or(entry.getValue().getDocIds());
           }
         }
 
@@ -279,7 +267,7 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
         RoaringBitmap matchingDocIdsForKeyValuePairs = new RoaringBitmap();
         for (String value : values) {
           String keyValuePair = key + JsonIndexCreator.KEY_VALUE_SEPARATOR + value;
-          RoaringBitmap matchingDocIdsForKeyValuePair = _postingListMap.get(keyValuePair);
+          RoaringBitmap matchingDocIdsForKeyValuePair = getPostingList(keyValuePair);
           if (matchingDocIdsForKeyValuePair != null) {
             matchingDocIdsForKeyValuePairs.or(matchingDocIdsForKeyValuePair);
           }
@@ -293,21 +281,21 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       }
 
       case NOT_IN: {
-        Map<String, RoaringBitmap> subMap = getMatchingKeysMap(key);
+        Map<String, SnapshotPostingList.ForRoaringBitmap> subMap = getMatchingKeysMap(key);
         if (subMap.isEmpty()) {
           return new RoaringBitmap();
         }
         List<String> notInValues = ((NotInPredicate) predicate).getValues();
         RoaringBitmap result = null;
 
-        for (Map.Entry<String, RoaringBitmap> entry : subMap.entrySet()) {
+        for (Map.Entry<String, SnapshotPostingList.ForRoaringBitmap> entry : subMap.entrySet()) {
           if (notInValues.contains(entry.getKey().substring(key.length() + 1))) {
             continue;
           }
           if (result == null) {
-            result = entry.getValue().clone();
+            result = entry.getValue().getDocIds().clone();
           } else {
-            result.or(entry.getValue());
+            result.or(entry.getValue().getDocIds());
           }
         }
 
@@ -325,7 +313,7 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
 
       case IS_NOT_NULL:
       case IS_NULL: {
-        RoaringBitmap matchingDocIdsForKey = _postingListMap.get(key);
+        RoaringBitmap matchingDocIdsForKey = getPostingList(key);
         if (matchingDocIdsForKey != null) {
           if (matchingDocIds == null) {
             return matchingDocIdsForKey.clone();
@@ -339,21 +327,21 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       }
 
       case REGEXP_LIKE: {
-        Map<String, RoaringBitmap> subMap = getMatchingKeysMap(key);
+        Map<String, SnapshotPostingList.ForRoaringBitmap> subMap = getMatchingKeysMap(key);
         if (subMap.isEmpty()) {
           return new RoaringBitmap();
         }
         Pattern pattern = ((RegexpLikePredicate) predicate).getPattern();
         RoaringBitmap result = null;
 
-        for (Map.Entry<String, RoaringBitmap> entry : subMap.entrySet()) {
+        for (Map.Entry<String, SnapshotPostingList.ForRoaringBitmap> entry : subMap.entrySet()) {
           if (!pattern.matcher(entry.getKey().substring(key.length() + 1)).matches()) {
             continue;
           }
           if (result == null) {
-            result = entry.getValue().clone();
+            result = entry.getValue().getDocIds().clone();
           } else {
-            result.or(entry.getValue());
+            result.or(entry.getValue().getDocIds());
           }
         }
 
@@ -370,7 +358,7 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       }
 
       case RANGE: {
-        Map<String, RoaringBitmap> subMap = getMatchingKeysMap(key);
+        Map<String, SnapshotPostingList.ForRoaringBitmap> subMap = getMatchingKeysMap(key);
         if (subMap.isEmpty()) {
           return new RoaringBitmap();
         }
@@ -392,7 +380,7 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
         Object lowerBound = lowerUnbounded ? null : rangeDataType.convert(rangePredicate.getLowerBound());
         Object upperBound = upperUnbounded ? null : rangeDataType.convert(rangePredicate.getUpperBound());
 
-        for (Map.Entry<String, RoaringBitmap> entry : subMap.entrySet()) {
+        for (Map.Entry<String, SnapshotPostingList.ForRoaringBitmap> entry : subMap.entrySet()) {
           Object valueObj = rangeDataType.convert(entry.getKey().substring(key.length() + 1));
           boolean lowerCompareResult =
               lowerUnbounded || (lowerInclusive ? rangeDataType.compare(valueObj, lowerBound) >= 0
@@ -402,9 +390,9 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
                   : rangeDataType.compare(valueObj, upperBound) < 0);
           if (lowerCompareResult && upperCompareResult) {
             if (result == null) {
-              result = entry.getValue().clone();
+              result = entry.getValue().getDocIds().clone();
             } else {
-              result.or(entry.getValue());
+              result.or(entry.getValue().getDocIds());
             }
           }
         }
@@ -427,70 +415,61 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
   }
 
   public void convertFlattenedDocIdsToDocIds(Map<String, RoaringBitmap> valueToFlattenedDocIds) {
-    _readLock.lock();
-    try {
-      valueToFlattenedDocIds.replaceAll((key, value) -> {
-        RoaringBitmap docIds = new RoaringBitmap();
-        value.forEach((IntConsumer) flattenedDocId -> docIds.add(_docIdMapping.getInt(flattenedDocId)));
-        return docIds;
-      });
-    } finally {
-      _readLock.unlock();
-    }
+    valueToFlattenedDocIds.replaceAll((key, value) -> {
+      RoaringBitmap docIds = new RoaringBitmap();
+      value.forEach((IntConsumer) flattenedDocId -> docIds.add(_docIdMapping.getDocId(flattenedDocId)));
+      return docIds;
+    });
   }
 
   @Override
   public Map<String, RoaringBitmap> getMatchingFlattenedDocsMap(String jsonPathKey, @Nullable String filterString) {
     Map<String, RoaringBitmap> valueToMatchingFlattenedDocIdsMap = new HashMap<>();
-    _readLock.lock();
-    try {
-      RoaringBitmap filteredFlattenedDocIds = null;
-      FilterContext filter;
-      if (filterString != null) {
-        filter = RequestContextUtils.getFilter(CalciteSqlParser.compileToExpression(filterString));
-        Preconditions.checkArgument(!filter.isConstant(), "Invalid json match filter: " + filterString);
-        if (filter.getType() == FilterContext.Type.PREDICATE && isExclusive(filter.getPredicate().getType())) {
-          // Handle exclusive predicate separately because the flip can only be applied to the
-          // unflattened doc ids in order to get the correct result, and it cannot be nested
-          filteredFlattenedDocIds = getMatchingFlattenedDocIds(filter.getPredicate());
-          filteredFlattenedDocIds.flip(0, (long) _nextFlattenedDocId);
-        } else {
-          filteredFlattenedDocIds = getMatchingFlattenedDocIds(filter);
-        }
-      }
-      // Support 2 formats:
-      // - JSONPath format (e.g. "$.a[1].b"='abc', "$[0]"=1, "$"='abc')
-      // - Legacy format (e.g. "a[1].b"='abc')
-      if (jsonPathKey.startsWith("$")) {
-        jsonPathKey = jsonPathKey.substring(1);
+    RoaringBitmap filteredFlattenedDocIds = null;
+    FilterContext filter;
+    if (filterString != null) {
+      filter = RequestContextUtils.getFilter(CalciteSqlParser.compileToExpression(filterString));
+      Preconditions.checkArgument(!filter.isConstant(), "Invalid json match filter: " + filterString);
+      if (filter.getType() == FilterContext.Type.PREDICATE && isExclusive(filter.getPredicate().getType())) {
+        // Handle exclusive predicate separately because the flip can only be applied to the
+        // unflattened doc ids in order to get the correct result, and it cannot be nested
+        int numFlattenedDocs = _nextFlattenedDocId;
+        filteredFlattenedDocIds = getMatchingFlattenedDocIds(filter.getPredicate());
+        filteredFlattenedDocIds.flip(0, (long) numFlattenedDocs);
       } else {
-        jsonPathKey = JsonUtils.KEY_SEPARATOR + jsonPathKey;
+        filteredFlattenedDocIds = getMatchingFlattenedDocIds(filter);
       }
-      Pair<String, RoaringBitmap> result = getKeyAndFlattenedDocIds(jsonPathKey);
-      jsonPathKey = result.getLeft();
-      RoaringBitmap arrayIndexFlattenDocIds = result.getRight();
-      if (arrayIndexFlattenDocIds != null && arrayIndexFlattenDocIds.isEmpty()) {
-        return valueToMatchingFlattenedDocIdsMap;
+    }
+    // Support 2 formats:
+    // - JSONPath format (e.g. "$.a[1].b"='abc', "$[0]"=1, "$"='abc')
+    // - Legacy format (e.g. "a[1].b"='abc')
+    if (jsonPathKey.startsWith("$")) {
+      jsonPathKey = jsonPathKey.substring(1);
+    } else {
+      jsonPathKey = JsonUtils.KEY_SEPARATOR + jsonPathKey;
+    }
+    Pair<String, RoaringBitmap> result = getKeyAndFlattenedDocIds(jsonPathKey);
+    jsonPathKey = result.getLeft();
+    RoaringBitmap arrayIndexFlattenDocIds = result.getRight();
+    if (arrayIndexFlattenDocIds != null && arrayIndexFlattenDocIds.isEmpty()) {
+      return valueToMatchingFlattenedDocIdsMap;
+    }
+    Map<String, SnapshotPostingList.ForRoaringBitmap> subMap = getMatchingKeysMap(jsonPathKey);
+    for (Map.Entry<String, SnapshotPostingList.ForRoaringBitmap> entry : subMap.entrySet()) {
+      RoaringBitmap flattenedDocIds = entry.getValue().getDocIds().clone();
+      if (filteredFlattenedDocIds != null) {
+        flattenedDocIds.and(filteredFlattenedDocIds);
       }
-      Map<String, RoaringBitmap> subMap = getMatchingKeysMap(jsonPathKey);
-      for (Map.Entry<String, RoaringBitmap> entry : subMap.entrySet()) {
-        RoaringBitmap flattenedDocIds = entry.getValue().clone();
-        if (filteredFlattenedDocIds != null) {
-          flattenedDocIds.and(filteredFlattenedDocIds);
-        }
-        if (arrayIndexFlattenDocIds != null) {
-          flattenedDocIds.and(arrayIndexFlattenDocIds);
-        }
-        if (!flattenedDocIds.isEmpty()) {
-          valueToMatchingFlattenedDocIdsMap.put(entry.getKey().substring(jsonPathKey.length() + 1), flattenedDocIds);
-          Tracing.ThreadAccountantOps.sampleAndCheckInterruptionPeriodically(valueToMatchingFlattenedDocIdsMap.size());
-        }
+      if (arrayIndexFlattenDocIds != null) {
+        flattenedDocIds.and(arrayIndexFlattenDocIds);
+      }
+      if (!flattenedDocIds.isEmpty()) {
+        valueToMatchingFlattenedDocIdsMap.put(entry.getKey().substring(jsonPathKey.length() + 1), flattenedDocIds);
+        Tracing.ThreadAccountantOps.sampleAndCheckInterruptionPeriodically(valueToMatchingFlattenedDocIdsMap.size());
       }
-
-      return valueToMatchingFlattenedDocIdsMap;
-    } finally {
-      _readLock.unlock();
     }
+
+    return valueToMatchingFlattenedDocIdsMap;
   }
 
   /**
@@ -521,7 +500,7 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
         // "[0]"=1 -> ".$index"='0' && "."='1'
         // ".foo[1].bar"='abc' -> ".foo.$index"=1 && ".foo..bar"='abc'
         String searchKey = leftPart + JsonUtils.ARRAY_INDEX_KEY + JsonIndexCreator.KEY_VALUE_SEPARATOR + arrayIndex;
-        RoaringBitmap docIds = _postingListMap.get(searchKey);
+        RoaringBitmap docIds = getPostingList(searchKey);
         if (docIds != null) {
           if (matchingDocIds == null) {
             matchingDocIds = docIds.clone();
@@ -538,7 +517,17 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
     return Pair.of(key, matchingDocIds);
   }
 
-  private Map<String, RoaringBitmap> getMatchingKeysMap(String key) {
+  /**
+   * Returns the snapshot of the posting list for the given key, or {@code null} if the key does not exist. The snapshot
+   * is shared and must not be modified.
+   */
+  @Nullable
+  private RoaringBitmap getPostingList(String key) {
+    SnapshotPostingList.ForRoaringBitmap postingList = _postingListMap.get(key);
+    return postingList != null ? postingList.getDocIds() : null;
+  }
+
+  private Map<String, SnapshotPostingList.ForRoaringBitmap> getMatchingKeysMap(String key) {
     return _postingListMap.subMap(key + JsonIndexCreator.KEY_VALUE_SEPARATOR, false,
         key + JsonIndexCreator.KEY_VALUE_SEPARATOR_NEXT_CHAR, false);
   }
@@ -557,20 +546,15 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       docIdToPos.put(docIds[i], i);
     }
 
-    _readLock.lock();
-    try {
-      for (Map.Entry<String, RoaringBitmap> entry : valueToMatchingFlattenedDocs.entrySet()) {
-        String value = entry.getKey();
-        RoaringBitmap matchingFlattenedDocIds = entry.getValue();
-        matchingFlattenedDocIds.forEach((IntConsumer) flattenedDocId -> {
-          int docId = _docIdMapping.getInt(flattenedDocId);
-          if (docIdToPos.containsKey(docId)) {
-            docIdToFlattenedDocIdsAndValues.get(docIdToPos.get(docId)).add(Pair.of(value, flattenedDocId));
-          }
-        });
-      }
-    } finally {
-      _readLock.unlock();
+    for (Map.Entry<String, RoaringBitmap> entry : valueToMatchingFlattenedDocs.entrySet()) {
+      String value = entry.getKey();
+      RoaringBitmap matchingFlattenedDocIds = entry.getValue();
+      matchingFlattenedDocIds.forEach((IntConsumer) flattenedDocId -> {
+        int docId = _docIdMapping.getDocId(flattenedDocId);
+        if (docIdToPos.containsKey(docId)) {
+          docIdToFlattenedDocIdsAndValues.get(docIdToPos.get(docId)).add(Pair.of(value, flattenedDocId));
+        }
+      });
     }
 
     for (int i = 0; i < length; i++) {
@@ -590,31 +574,26 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
       boolean isFlattenedDocIds) {
     Int2ObjectOpenHashMap<String> docIdToValues = new Int2ObjectOpenHashMap<>(length);
     RoaringBitmap docIdMask = RoaringBitmap.bitmapOf(Arrays.copyOfRange(docIds, 0, length));
-    _readLock.lock();
-    try {
-      for (Map.Entry<String, RoaringBitmap> entry : valueToMatchingFlattenedDocs.entrySet()) {
-        String value = entry.getKey();
-        RoaringBitmap matchingDocIds = entry.getValue();
-
-        if (isFlattenedDocIds) {
-          matchingDocIds.forEach((IntConsumer) flattenedDocId -> {
-            int docId = _docIdMapping.getInt(flattenedDocId);
-            if (docIdMask.contains(docId)) {
-              docIdToValues.put(docId, value);
-            }
-          });
-        } else {
-          RoaringBitmap intersection = RoaringBitmap.and(entry.getValue(), docIdMask);
-          if (intersection.isEmpty()) {
-            continue;
-          }
-          for (int docId : intersection) {
-            docIdToValues.put(docId, entry.getKey());
+    for (Map.Entry<String, RoaringBitmap> entry : valueToMatchingFlattenedDocs.entrySet()) {
+      String value = entry.getKey();
+      RoaringBitmap matchingDocIds = entry.getValue();
+
+      if (isFlattenedDocIds) {
+        matchingDocIds.forEach((IntConsumer) flattenedDocId -> {
+          int docId = _docIdMapping.getDocId(flattenedDocId);
+          if (docIdMask.contains(docId)) {
+            docIdToValues.put(docId, value);
           }
+        });
+      } else {
+        RoaringBitmap intersection = RoaringBitmap.and(entry.getValue(), docIdMask);
+        if (intersection.isEmpty()) {
+          continue;
+        }
+        for (int docId : intersection) {
+          docIdToValues.put(docId, entry.getKey());
         }
       }
-    } finally {
-      _readLock.unlock();
     }
 
     String[] values = new String[length];
@@ -627,4 +606,37 @@ public class MutableJsonIndexImpl implements MutableJsonIndex {
   @Override
   public void close() {
   }
+
+  /**
+   * Append-only mapping from flattened doc id to doc id for a single writer and multiple readers. The values are stored
+   * in fixed size chunks which are never moved once allocated. A flattened doc id is only published (through the
+   * posting lists) after its mapping is written, so the readers always see the mapping of the flattened doc ids they
+   * get from the posting lists.
+   */
+  private static class DocIdMapping {
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile int[][] _chunks = new int[16][];
+
+    void add(int flattenedDocId, int docId) {
+      int chunkId = flattenedDocId >>> CHUNK_SHIFT;
+      int[][] chunks = _chunks;
+      if (chunkId == chunks.length) {
+        chunks = Arrays.copyOf(chunks, chunkId * 2);
+      }
+      int[] chunk = chunks[chunkId];
+      if (chunk == null) {
+        chunk = new int[CHUNK_SIZE];
+        chunks[chunkId] = chunk;
+        _chunks = chunks;
+      }
+      chunk[flattenedDocId & CHUNK_MASK] = docId;
+    }
+
+    int getDocId(int flattenedDocId) {
+      return _chunks[flattenedDocId >>> CHUNK_SHIFT][flattenedDocId & CHUNK_MASK];
+    }
+  }
 }
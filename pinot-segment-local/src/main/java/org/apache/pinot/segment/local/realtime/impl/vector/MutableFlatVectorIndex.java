@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.realtime.impl.vector;
+
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.segment.index.vector.VectorSearchUtils;
+import org.apache.pinot.segment.local.segment.index.vector.VectorSearchUtils.NearestNeighbors;
+import org.apache.pinot.segment.spi.index.creator.VectorIndexConfig;
+import org.apache.pinot.segment.spi.index.mutable.MutableIndex;
+import org.apache.pinot.segment.spi.index.reader.VectorIndexReader;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Mutable vector index for the real-time segments of the columns with IVF-PQ index, which keeps the vectors on heap
+ * and returns the exact top k closest vectors with a brute force search. The clusters and codebooks of the IVF-PQ
+ * index are trained when the segment is sealed, and a consuming segment is small enough to be scanned.
+ * <p>This class is thread-safe for single writer multiple readers.
+ */
+public class MutableFlatVectorIndex implements VectorIndexReader, MutableIndex {
+  private static final int NUM_VECTORS_PER_CHUNK = 1024;
+
+  private final int _dimension;
+  private final boolean _innerProduct;
+  private final boolean _normalized;
+
+  private volatile float[][] _chunks = new float[16][];
+  private volatile int _numDocs;
+
+  public MutableFlatVectorIndex(VectorIndexConfig vectorIndexConfig) {
+    _dimension = vectorIndexConfig.getVectorDimension();
+    _innerProduct = VectorSearchUtils.isInnerProduct(vectorIndexConfig.getVectorDistanceFunction());
+    _normalized = VectorSearchUtils.isNormalized(vectorIndexConfig.getVectorDistanceFunction());
+  }
+
+  @Override
+  public void add(@Nonnull Object value, int dictId, int docId) {
+    throw new UnsupportedOperationException("Mutable Vector indexes are not supported for single-valued columns");
+  }
+
+  @Override
+  public void add(@Nonnull Object[] values, @Nullable int[] dictIds, int docId) {
+    float[] vector = new float[_dimension];
+    for (int i = 0; i < values.length; i++) {
+      vector[i] = (Float) values[i];
+    }
+    if (_normalized) {
+      VectorSearchUtils.normalize(vector);
+    }
+    int numDocs = _numDocs;
+    int chunkId = numDocs / NUM_VECTORS_PER_CHUNK;
+    float[][] chunks = _chunks;
+    if (chunkId == chunks.length) {
+      chunks = Arrays.copyOf(chunks, chunks.length * 2);
+    }
+    if (chunks[chunkId] == null) {
+      chunks[chunkId] = new float[NUM_VECTORS_PER_CHUNK * _dimension];
+    }
+    System.arraycopy(vector, 0, chunks[chunkId], (numDocs % NUM_VECTORS_PER_CHUNK) * _dimension, _dimension);
+    // Publish the chunks before the number of docs so that readers always see the vectors within the number of docs
+    _chunks = chunks;
+    _numDocs = numDocs + 1;
+  }
+
+  @Override
+  public MutableRoaringBitmap getDocIds(float[] vector, int topK) {
+    int numDocs = _numDocs;
+    float[][] chunks = _chunks;
+    if (topK <= 0) {
+      return new MutableRoaringBitmap();
+    }
+    float[] query = vector;
+    if (_normalized) {
+      query = vector.clone();
+      VectorSearchUtils.normalize(query);
+    }
+    NearestNeighbors nearestNeighbors = new NearestNeighbors(topK);
+    for (int docId = 0; docId < numDocs; docId++) {
+      float[] chunk = chunks[docId / NUM_VECTORS_PER_CHUNK];
+      int offset = (docId % NUM_VECTORS_PER_CHUNK) * _dimension;
+      float distance = _innerProduct ? -VectorSearchUtils.dotProduct(query, 0, chunk, offset, _dimension)
+          : VectorSearchUtils.squaredL2Distance(query, 0, chunk, offset, _dimension);
+      nearestNeighbors.offer(docId, distance);
+    }
+    return nearestNeighbors.toBitmap();
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -160,15 +160,52 @@ public class CompositeTransformer implements RecordTransformer {
   @Nullable
   @Override
   public GenericRow transform(GenericRow record) {
-    for (RecordTransformer transformer : _transformers) {
+    return transform(record, 0);
+  }
+
+  @Nullable
+  private GenericRow transform(GenericRow record, int fromTransformerId) {
+    int numTransformers = _transformers.size();
+    for (int i = fromTransformerId; i < numTransformers; i++) {
       if (!IngestionUtils.shouldIngestRow(record)) {
         return record;
       }
-      record = transformer.transform(record);
+      record = _transformers.get(i).transform(record);
       if (record == null) {
         return null;
       }
     }
     return record;
   }
+
+  /**
+   * Applies each transformer to the whole batch before moving to the next one, so that the transformers can process
+   * the batch column by column. Once some records in the batch should not be ingested, the remaining transformers are
+   * applied record by record, so that these records skip the remaining transformers and keep their position in the
+   * batch, same as {@link #transform(GenericRow)}.
+   */
+  @Override
+  public List<GenericRow> transform(List<GenericRow> records) {
+    int numTransformers = _transformers.size();
+    for (int i = 0; i < numTransformers; i++) {
+      for (GenericRow record : records) {
+        if (!IngestionUtils.shouldIngestRow(record)) {
+          return transform(records, i);
+        }
+      }
+      records = _transformers.get(i).transform(records);
+    }
+    return records;
+  }
+
+  private List<GenericRow> transform(List<GenericRow> records, int fromTransformerId) {
+    List<GenericRow> transformedRecords = new ArrayList<>(records.size());
+    for (GenericRow record : records) {
+      GenericRow transformedRecord = transform(record, fromTransformerId);
+      if (transformedRecord != null) {
+        transformedRecords.add(transformedRecord);
+      }
+    }
+    return transformedRecords;
+  }
 }
@@ -130,40 +130,58 @@ public class ExpressionTransformer implements RecordTransformer {
 
   @Override
   public GenericRow transform(GenericRow record) {
+    for (Map.Entry<String, FunctionEvaluator> entry : _expressionEvaluators.entrySet()) {
+      transform(record, entry.getKey(), entry.getValue());
+    }
+    return record;
+  }
+
+  /**
+   * Evaluates the expressions column by column over the batch. The expressions are sorted by their dependencies, so
+   * each record still sees the same evaluation order as in {@link #transform(GenericRow)}.
+   */
+  @Override
+  public List<GenericRow> transform(List<GenericRow> records) {
     for (Map.Entry<String, FunctionEvaluator> entry : _expressionEvaluators.entrySet()) {
       String column = entry.getKey();
       FunctionEvaluator transformFunctionEvaluator = entry.getValue();
-      Object existingValue = record.getValue(column);
-      if (existingValue == null) {
-        try {
-          // Skip transformation if column value already exists
-          // NOTE: column value might already exist for OFFLINE data,
-          // For backward compatibility, The only exception here is that we will override nested field like array,
-          // collection or map since they were not included in the record transformation before.
-          record.putValue(column, transformFunctionEvaluator.evaluate(record));
-        } catch (Exception e) {
-          if (!_continueOnError) {
-            throw new RuntimeException("Caught exception while evaluation transform function for column: " + column, e);
-          } else {
-            LOGGER.debug("Caught exception while evaluation transform function for column: {}", column, e);
-            record.putValue(GenericRow.INCOMPLETE_RECORD_KEY, true);
-          }
-        }
-      } else if (existingValue.getClass().isArray() || existingValue instanceof Collections
-          || existingValue instanceof Map) {
-        try {
-          Object transformedValue = transformFunctionEvaluator.evaluate(record);
-          // For backward compatibility, The only exception here is that we will override nested field like array,
-          // collection or map since they were not included in the record transformation before.
-          if (!isTypeCompatible(existingValue, transformedValue)) {
-            record.putValue(column, transformedValue);
-          }
-        } catch (Exception e) {
+      for (GenericRow record : records) {
+        transform(record, column, transformFunctionEvaluator);
+      }
+    }
+    return records;
+  }
+
+  private void transform(GenericRow record, String column, FunctionEvaluator transformFunctionEvaluator) {
+    Object existingValue = record.getValue(column);
+    if (existingValue == null) {
+      try {
+        // Skip transformation if column value already exists
+        // NOTE: column value might already exist for OFFLINE data,
+        // For backward compatibility, The only exception here is that we will override nested field like array,
+        // collection or map since they were not included in the record transformation before.
+        record.putValue(column, transformFunctionEvaluator.evaluate(record));
+      } catch (Exception e) {
+        if (!_continueOnError) {
+          throw new RuntimeException("Caught exception while evaluation transform function for column: " + column, e);
+        } else {
           LOGGER.debug("Caught exception while evaluation transform function for column: {}", column, e);
+          record.putValue(GenericRow.INCOMPLETE_RECORD_KEY, true);
         }
       }
+    } else if (existingValue.getClass().isArray() || existingValue instanceof Collections
+        || existingValue instanceof Map) {
+      try {
+        Object transformedValue = transformFunctionEvaluator.evaluate(record);
+        // For backward compatibility, The only exception here is that we will override nested field like array,
+        // collection or map since they were not included in the record transformation before.
+        if (!isTypeCompatible(existingValue, transformedValue)) {
+          record.putValue(column, transformedValue);
+        }
+      } catch (Exception e) {
+        LOGGER.debug("Caught exception while evaluation transform function for column: {}", column, e);
+      }
     }
-    return record;
   }
 
   private boolean isTypeCompatible(Object existingValue, Object transformedValue) {
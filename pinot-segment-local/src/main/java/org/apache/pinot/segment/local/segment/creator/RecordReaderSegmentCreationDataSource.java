@@ -18,6 +18,8 @@
  */
 package org.apache.pinot.segment.local.segment.creator;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.pinot.common.Utils;
 import org.apache.pinot.segment.local.segment.creator.impl.stats.SegmentPreIndexStatsCollectorImpl;
 import org.apache.pinot.segment.spi.creator.SegmentCreationDataSource;
@@ -36,6 +38,8 @@ import org.slf4j.LoggerFactory;
 // TODO: make it Closeable so that resource in record reader can be released
 public class RecordReaderSegmentCreationDataSource implements SegmentCreationDataSource {
   private static final Logger LOGGER = LoggerFactory.getLogger(RecordReaderSegmentCreationDataSource.class);
+  // Number of rows transformed at a time when a row failing the transformation fails the stats collection
+  private static final int TRANSFORM_BATCH_SIZE = 256;
 
   private final RecordReader _recordReader;
   private TransformPipeline _transformPipeline;
@@ -61,21 +65,43 @@ public class RecordReaderSegmentCreationDataSource implements SegmentCreationDat
       boolean continueOnError =
           statsCollectorConfig.getTableConfig().getIngestionConfig() != null && statsCollectorConfig.getTableConfig()
               .getIngestionConfig().isContinueOnError();
-      GenericRow reuse = new GenericRow();
       TransformPipeline.Result reusedResult = new TransformPipeline.Result();
-      while (_recordReader.hasNext()) {
-        reuse.clear();
-        try {
-          reuse = _recordReader.next(reuse);
-          transformPipeline.processRow(reuse, reusedResult);
-          for (GenericRow row : reusedResult.getTransformedRows()) {
-            collector.collectRow(row);
+      if (continueOnError) {
+        // Transform the rows one by one so that a row failing the transformation can be skipped on its own
+        GenericRow reuse = new GenericRow();
+        while (_recordReader.hasNext()) {
+          reuse.clear();
+          try {
+            reuse = _recordReader.next(reuse);
+            transformPipeline.processRow(reuse, reusedResult);
+            for (GenericRow row : reusedResult.getTransformedRows()) {
+              collector.collectRow(row);
+            }
+          } catch (Exception e) {
+            LOGGER.debug("Caught exception while reading data", e);
           }
-        } catch (Exception e) {
-          if (!continueOnError) {
+        }
+      } else {
+        // A row failing the transformation fails the stats collection, so the rows can be transformed in batches
+        GenericRow[] reusedRows = new GenericRow[TRANSFORM_BATCH_SIZE];
+        for (int i = 0; i < TRANSFORM_BATCH_SIZE; i++) {
+          reusedRows[i] = new GenericRow();
+        }
+        List<GenericRow> decodedRows = new ArrayList<>(TRANSFORM_BATCH_SIZE);
+        while (_recordReader.hasNext()) {
+          decodedRows.clear();
+          try {
+            while (decodedRows.size() < TRANSFORM_BATCH_SIZE && _recordReader.hasNext()) {
+              GenericRow reuse = reusedRows[decodedRows.size()];
+              reuse.clear();
+              decodedRows.add(_recordReader.next(reuse));
+            }
+            transformPipeline.processRows(decodedRows, reusedResult);
+            for (GenericRow row : reusedResult.getTransformedRows()) {
+              collector.collectRow(row);
+            }
+          } catch (Exception e) {
             throw new RuntimeException("Caught exception while reading data", e);
-          } else {
-            LOGGER.debug("Caught exception while reading data", e);
           }
         }
       }
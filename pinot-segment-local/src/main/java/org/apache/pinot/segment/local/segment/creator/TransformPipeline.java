@@ -109,8 +109,90 @@ public class TransformPipeline {
     }
   }
 
+  /**
+   * Process and validate a batch of decoded rows against schema. This is equivalent to processing the rows one by one
+   * with {@link #processRow(GenericRow, Result)}, except that the record transformers are applied to the whole batch
+   * (including the rows unnested from the decoded rows) at a time, so an exception fails the whole batch without any
+   * partial result. Process the rows one by one when a row failing the transformation should be skipped on its own.
+   * @param decodedRows the rows data to pass in
+   * @param reusedResult the reused result so we can reduce objects created for each row
+   * @throws Exception when data has issues like schema validation. Fetch the partialResult from Exception
+   */
+  public void processRows(List<GenericRow> decodedRows, Result reusedResult)
+      throws Exception {
+    reusedResult.reset();
+    List<GenericRow> plainRows = new ArrayList<>(decodedRows.size());
+    for (GenericRow decodedRow : decodedRows) {
+      if (_complexTypeTransformer != null) {
+        decodedRow = _complexTypeTransformer.transform(decodedRow);
+      }
+      Collection<GenericRow> rows = (Collection<GenericRow>) decodedRow.getValue(GenericRow.MULTIPLE_RECORDS_KEY);
+      if (CollectionUtils.isNotEmpty(rows)) {
+        plainRows.addAll(rows);
+      } else {
+        decodedRow.removeValue(GenericRow.MULTIPLE_RECORDS_KEY);
+        plainRows.add(decodedRow);
+      }
+    }
+    processPlainRows(plainRows, reusedResult);
+  }
+
+  /**
+   * Process and validate a batch of decoded rows against schema, and put the result of each decoded row into the
+   * results at the same index. The record transformers are applied to the whole batch at a time, same as
+   * {@link #processRows(List, Result)}, but the transformed rows are kept separate for each decoded row.
+   * <p>Returns {@code false} without setting the results when the transformed rows cannot be matched to the decoded
+   * rows, i.e. when a decoded row is unnested into multiple rows or transformed to {@code null}. The decoded rows might
+   * be partially transformed in that case, so they should be decoded again and processed one by one.
+   * @param decodedRows the rows data to pass in
+   * @param results the results for each decoded row
+   * @throws Exception when data has issues like schema validation, which fails the whole batch
+   */
+  public boolean processRows(List<GenericRow> decodedRows, Result[] results)
+      throws Exception {
+    int numRows = decodedRows.size();
+    List<GenericRow> plainRows = new ArrayList<>(numRows);
+    for (GenericRow decodedRow : decodedRows) {
+      if (_complexTypeTransformer != null) {
+        decodedRow = _complexTypeTransformer.transform(decodedRow);
+      }
+      Collection<GenericRow> rows = (Collection<GenericRow>) decodedRow.getValue(GenericRow.MULTIPLE_RECORDS_KEY);
+      if (CollectionUtils.isNotEmpty(rows)) {
+        return false;
+      }
+      decodedRow.removeValue(GenericRow.MULTIPLE_RECORDS_KEY);
+      plainRows.add(decodedRow);
+    }
+    // The transformers keep the order of the rows, and only remove the ones transformed to null
+    List<GenericRow> transformedRows = _recordTransformer.transform(plainRows);
+    if (transformedRows.size() != numRows) {
+      return false;
+    }
+    for (int i = 0; i < numRows; i++) {
+      Result result = new Result();
+      addTransformedRow(transformedRows.get(i), result);
+      results[i] = result;
+    }
+    return true;
+  }
+
   private void processPlainRow(GenericRow plainRow, Result reusedResult) {
-    GenericRow transformedRow = _recordTransformer.transform(plainRow);
+    addTransformedRow(_recordTransformer.transform(plainRow), reusedResult);
+  }
+
+  private void processPlainRows(List<GenericRow> plainRows, Result reusedResult) {
+    List<GenericRow> transformedRows = _recordTransformer.transform(plainRows);
+    // Rows transformed to null are removed from the batch
+    int numNullRows = plainRows.size() - transformedRows.size();
+    for (int i = 0; i < numNullRows; i++) {
+      reusedResult.incSkippedRowCount();
+    }
+    for (GenericRow transformedRow : transformedRows) {
+      addTransformedRow(transformedRow, reusedResult);
+    }
+  }
+
+  private void addTransformedRow(@Nullable GenericRow transformedRow, Result reusedResult) {
     if (transformedRow != null && IngestionUtils.shouldIngestRow(transformedRow)) {
       reusedResult.addTransformedRows(transformedRow);
       if (Boolean.TRUE.equals(transformedRow.getValue(GenericRow.INCOMPLETE_RECORD_KEY))) {
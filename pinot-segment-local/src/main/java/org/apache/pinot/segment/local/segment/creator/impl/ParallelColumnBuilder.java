@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.creator.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import javax.annotation.Nullable;
+import org.apache.pinot.segment.spi.creator.ColumnIndexCreationInfo;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+
+
+/**
+ * Runs the per-column steps of the segment creation (indexing the column values and sealing the indexes) for
+ * independent columns concurrently.
+ *
+ * <p>The columns of all the segments built in the process run on a shared thread pool bounded by the number of
+ * processors, and the total estimated memory of the columns being built concurrently is bounded by a process-wide
+ * memory budget (1/4 of the max heap size), so that building several segments at the same time doesn't multiply the
+ * threads and the memory. Each build is further bounded by its own parallelism and optional memory budget. The columns
+ * with the largest estimated memory are scheduled first so that they don't end up as stragglers, and a column larger
+ * than the budget is built alone. When the parallelism is not larger than 1, the columns are built one by one on the
+ * calling thread in the given order.
+ */
+public class ParallelColumnBuilder {
+  private static final MemoryBudget SHARED_MEMORY_BUDGET = new MemoryBudget(Runtime.getRuntime().maxMemory() / 4);
+  private static volatile ExecutorService _sharedExecutorService;
+
+  private final int _parallelism;
+  @Nullable
+  private final MemoryBudget _memoryBudget;
+  private final MemoryBudget _sharedMemoryBudget;
+
+  public ParallelColumnBuilder(SegmentGeneratorConfig config) {
+    this(config.getSegmentBuildParallelism(), config.getSegmentBuildMemoryBudgetBytes());
+  }
+
+  public ParallelColumnBuilder(int parallelism, long memoryBudgetBytes) {
+    this(parallelism, memoryBudgetBytes, SHARED_MEMORY_BUDGET);
+  }
+
+  @VisibleForTesting
+  ParallelColumnBuilder(int parallelism, long memoryBudgetBytes, MemoryBudget sharedMemoryBudget) {
+    _parallelism = parallelism;
+    _memoryBudget = memoryBudgetBytes > 0 ? new MemoryBudget(memoryBudgetBytes) : null;
+    _sharedMemoryBudget = sharedMemoryBudget;
+  }
+
+  private static ExecutorService getSharedExecutorService() {
+    ExecutorService executorService = _sharedExecutorService;
+    if (executorService == null) {
+      synchronized (ParallelColumnBuilder.class) {
+        executorService = _sharedExecutorService;
+        if (executorService == null) {
+          int numThreads = Runtime.getRuntime().availableProcessors();
+          ThreadPoolExecutor threadPoolExecutor =
+              new ThreadPoolExecutor(numThreads, numThreads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                  new ThreadFactoryBuilder().setNameFormat("segment-build-%d").setDaemon(true).build());
+          threadPoolExecutor.allowCoreThreadTimeOut(true);
+          executorService = threadPoolExecutor;
+          _sharedExecutorService = executorService;
+        }
+      }
+    }
+    return executorService;
+  }
+
+  /**
+   * Runs the task for each of the given columns, and returns after all the started tasks are finished. When a task
+   * fails, the columns not started yet are skipped and the first failure is thrown.
+   *
+   * <p>The parallelism and memory are acquired on the calling thread before submitting each column, so that the threads
+   * of the shared pool never wait on a build.
+   */
+  public void build(Collection<String> columns, ToLongFunction<String> memoryEstimator, ColumnTask task)
+      throws Exception {
+    if (_parallelism <= 1 || columns.size() <= 1) {
+      for (String column : columns) {
+        task.run(column);
+      }
+      return;
+    }
+
+    long maxMemoryBytes = _sharedMemoryBudget._capacityBytes;
+    if (_memoryBudget != null) {
+      maxMemoryBytes = Math.min(maxMemoryBytes, _memoryBudget._capacityBytes);
+    }
+    Map<String, Long> memoryEstimates = new HashMap<>();
+    for (String column : columns) {
+      memoryEstimates.put(column, Math.min(Math.max(memoryEstimator.applyAsLong(column), 0), maxMemoryBytes));
+    }
+    List<String> sortedColumns = new ArrayList<>(columns);
+    sortedColumns.sort(Comparator.comparingLong((String column) -> memoryEstimates.get(column)).reversed());
+
+    ExecutorService executorService = getSharedExecutorService();
+    Semaphore parallelism = new Semaphore(_parallelism);
+    Throwable[] failure = new Throwable[1];
+    List<Future<?>> futures = new ArrayList<>(sortedColumns.size());
+    try {
+      for (String column : sortedColumns) {
+        long memoryBytes = memoryEstimates.get(column);
+        acquire(parallelism, memoryBytes);
+        synchronized (failure) {
+          if (failure[0] != null) {
+            release(parallelism, memoryBytes);
+            break;
+          }
+        }
+        try {
+          futures.add(executorService.submit(() -> {
+            try {
+              task.run(column);
+            } catch (Throwable t) {
+              synchronized (failure) {
+                if (failure[0] == null) {
+                  failure[0] = t;
+                }
+              }
+            } finally {
+              release(parallelism, memoryBytes);
+            }
+          }));
+        } catch (RuntimeException e) {
+          release(parallelism, memoryBytes);
+          throw e;
+        }
+      }
+    } finally {
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // Not expected as the failures of the tasks are caught
+          throw new RuntimeException("Caught exception while building columns", e.getCause());
+        }
+      }
+    }
+    Throwable t = failure[0];
+    if (t != null) {
+      if (t instanceof Exception) {
+        throw (Exception) t;
+      }
+      throw (Error) t;
+    }
+  }
+
+  private void acquire(Semaphore parallelism, long memoryBytes)
+      throws InterruptedException {
+    parallelism.acquire();
+    try {
+      if (_memoryBudget != null) {
+        _memoryBudget.acquire(memoryBytes);
+      }
+      try {
+        _sharedMemoryBudget.acquire(memoryBytes);
+      } catch (InterruptedException e) {
+        if (_memoryBudget != null) {
+          _memoryBudget.release(memoryBytes);
+        }
+        throw e;
+      }
+    } catch (InterruptedException e) {
+      parallelism.release();
+      throw e;
+    }
+  }
+
+  private void release(Semaphore parallelism, long memoryBytes) {
+    _sharedMemoryBudget.release(memoryBytes);
+    if (_memoryBudget != null) {
+      _memoryBudget.release(memoryBytes);
+    }
+    parallelism.release();
+  }
+
+  /**
+   * Returns a rough estimate of the memory needed to build the indexes of a column: one dictionary id or one raw value
+   * per entry.
+   */
+  public static long estimateMemoryBytes(@Nullable ColumnIndexCreationInfo indexCreationInfo) {
+    if (indexCreationInfo == null) {
+      return 0;
+    }
+    int bytesPerEntry = indexCreationInfo.isCreateDictionary() ? Integer.BYTES
+        : Math.max(indexCreationInfo.getLengthOfLongestEntry(), Long.BYTES);
+    return (long) indexCreationInfo.getTotalNumberOfEntries() * bytesPerEntry;
+  }
+
+  public interface ColumnTask {
+    void run(String column)
+        throws Exception;
+  }
+
+  /**
+   * Upper bound of the estimated memory used by the columns being built concurrently.
+   */
+  @VisibleForTesting
+  static class MemoryBudget {
+    final long _capacityBytes;
+    private long _availableBytes;
+
+    MemoryBudget(long capacityBytes) {
+      _capacityBytes = capacityBytes;
+      _availableBytes = capacityBytes;
+    }
+
+    synchronized void acquire(long memoryBytes)
+        throws InterruptedException {
+      while (_availableBytes < memoryBytes) {
+        wait();
+      }
+      _availableBytes -= memoryBytes;
+    }
+
+    synchronized void release(long memoryBytes) {
+      _availableBytes += memoryBytes;
+      notifyAll();
+    }
+  }
+}
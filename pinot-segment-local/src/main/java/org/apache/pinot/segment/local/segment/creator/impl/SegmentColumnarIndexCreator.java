@@ -28,7 +28,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -461,18 +463,37 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
   @Override
   public void seal()
       throws ConfigurationException, IOException {
-    for (SegmentDictionaryCreator creator : _dictionaryCreatorMap.values()) {
-      creator.seal();
+    // The indexes of different columns are sealed independently, so they can be sealed concurrently
+    Set<String> columns = new TreeSet<>(_creatorsByColAndIndex.keySet());
+    columns.addAll(_dictionaryCreatorMap.keySet());
+    columns.addAll(_nullValueVectorCreatorMap.keySet());
+    try {
+      new ParallelColumnBuilder(_config).build(columns,
+          column -> ParallelColumnBuilder.estimateMemoryBytes(_indexCreationInfoMap.get(column)), this::sealColumn);
+    } catch (IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException("Caught exception while sealing segment: " + _segmentName, e);
     }
-    for (NullValueVectorCreator creator : _nullValueVectorCreatorMap.values()) {
-      creator.seal();
+    writeMetadata();
+  }
+
+  private void sealColumn(String columnName)
+      throws IOException {
+    SegmentDictionaryCreator dictionaryCreator = _dictionaryCreatorMap.get(columnName);
+    if (dictionaryCreator != null) {
+      dictionaryCreator.seal();
+    }
+    NullValueVectorCreator nullValueVectorCreator = _nullValueVectorCreatorMap.get(columnName);
+    if (nullValueVectorCreator != null) {
+      nullValueVectorCreator.seal();
     }
-    for (Map<IndexType<?, ?, ?>, IndexCreator> creatorsByType : _creatorsByColAndIndex.values()) {
-      for (IndexCreator creator : creatorsByType.values()) {
+    Map<IndexType<?, ?, ?>, IndexCreator> creatorsByIndex = _creatorsByColAndIndex.get(columnName);
+    if (creatorsByIndex != null) {
+      for (IndexCreator creator : creatorsByIndex.values()) {
         creator.seal();
       }
     }
-    writeMetadata();
   }
 
   private void writeMetadata()
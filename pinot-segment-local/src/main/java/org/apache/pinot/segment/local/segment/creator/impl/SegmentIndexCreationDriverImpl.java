@@ -23,6 +23,7 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -92,6 +93,8 @@ import org.slf4j.LoggerFactory;
 // TODO: Check resource leaks
 public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDriver {
   private static final Logger LOGGER = LoggerFactory.getLogger(SegmentIndexCreationDriverImpl.class);
+  // Number of rows transformed at a time when a row failing the transformation fails the segment creation
+  private static final int TRANSFORM_BATCH_SIZE = 256;
 
   private SegmentGeneratorConfig _config;
   private RecordReader _recordReader;
@@ -255,33 +258,63 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
       // Build the index
       _recordReader.rewind();
       LOGGER.info("Start building IndexCreator!");
-      GenericRow reuse = new GenericRow();
       TransformPipeline.Result reusedResult = new TransformPipeline.Result();
-      while (_recordReader.hasNext()) {
-        long recordReadStopTimeNs;
-        reuse.clear();
-
-        try {
-          GenericRow decodedRow = _recordReader.next(reuse);
-          long recordReadStartTimeNs = System.nanoTime();
-          _transformPipeline.processRow(decodedRow, reusedResult);
-          recordReadStopTimeNs = System.nanoTime();
-          _totalRecordReadTimeNs += (recordReadStopTimeNs - recordReadStartTimeNs);
-        } catch (Exception e) {
-          if (!_continueOnError) {
-            throw new RuntimeException("Error occurred while reading row during indexing", e);
-          } else {
+      if (_continueOnError) {
+        // Transform the rows one by one so that a row failing the transformation can be skipped on its own
+        GenericRow reuse = new GenericRow();
+        while (_recordReader.hasNext()) {
+          long recordReadStopTimeNs;
+          reuse.clear();
+
+          try {
+            GenericRow decodedRow = _recordReader.next(reuse);
+            long recordReadStartTimeNs = System.nanoTime();
+            _transformPipeline.processRow(decodedRow, reusedResult);
+            recordReadStopTimeNs = System.nanoTime();
+            _totalRecordReadTimeNs += (recordReadStopTimeNs - recordReadStartTimeNs);
+          } catch (Exception e) {
             incompleteRowsFound++;
             LOGGER.debug("Error occurred while reading row during indexing", e);
             continue;
           }
+
+          for (GenericRow row : reusedResult.getTransformedRows()) {
+            _indexCreator.indexRow(row);
+          }
+          _totalIndexTimeNs += (System.nanoTime() - recordReadStopTimeNs);
+          incompleteRowsFound += reusedResult.getIncompleteRowCount();
+        }
+      } else {
+        // A row failing the transformation fails the segment creation, so the rows can be transformed in batches
+        GenericRow[] reusedRows = new GenericRow[TRANSFORM_BATCH_SIZE];
+        for (int i = 0; i < TRANSFORM_BATCH_SIZE; i++) {
+          reusedRows[i] = new GenericRow();
         }
+        List<GenericRow> decodedRows = new ArrayList<>(TRANSFORM_BATCH_SIZE);
+        while (_recordReader.hasNext()) {
+          long recordReadStopTimeNs;
+          decodedRows.clear();
+
+          try {
+            while (decodedRows.size() < TRANSFORM_BATCH_SIZE && _recordReader.hasNext()) {
+              GenericRow reuse = reusedRows[decodedRows.size()];
+              reuse.clear();
+              decodedRows.add(_recordReader.next(reuse));
+            }
+            long recordReadStartTimeNs = System.nanoTime();
+            _transformPipeline.processRows(decodedRows, reusedResult);
+            recordReadStopTimeNs = System.nanoTime();
+            _totalRecordReadTimeNs += (recordReadStopTimeNs - recordReadStartTimeNs);
+          } catch (Exception e) {
+            throw new RuntimeException("Error occurred while reading row during indexing", e);
+          }
 
-        for (GenericRow row : reusedResult.getTransformedRows()) {
-          _indexCreator.indexRow(row);
+          for (GenericRow row : reusedResult.getTransformedRows()) {
+            _indexCreator.indexRow(row);
+          }
+          _totalIndexTimeNs += (System.nanoTime() - recordReadStopTimeNs);
+          incompleteRowsFound += reusedResult.getIncompleteRowCount();
         }
-        _totalIndexTimeNs += (System.nanoTime() - recordReadStopTimeNs);
-        incompleteRowsFound += reusedResult.getIncompleteRowCount();
       }
     } catch (Exception e) {
       _indexCreator.close();
@@ -325,9 +358,10 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
 
       TreeSet<String> columns = _dataSchema.getPhysicalColumnNames();
 
-      for (String col : columns) {
-        _indexCreator.indexColumn(col, sortedDocIds, indexSegment);
-      }
+      // Columns are indexed independently, so they can be indexed concurrently
+      new ParallelColumnBuilder(_config).build(columns,
+          column -> ParallelColumnBuilder.estimateMemoryBytes(_indexCreationInfoMap.get(column)),
+          column -> _indexCreator.indexColumn(column, sortedDocIds, indexSegment));
     } catch (Exception e) {
       _indexCreator.close();
       throw e;
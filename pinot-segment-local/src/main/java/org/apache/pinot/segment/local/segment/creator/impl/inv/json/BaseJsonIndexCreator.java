@@ -21,12 +21,16 @@ package org.apache.pinot.segment.local.segment.creator.impl.inv.json;
 import com.google.common.base.Preconditions;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -35,6 +39,7 @@ import org.apache.pinot.segment.spi.V1Constants;
 import org.apache.pinot.segment.spi.index.creator.JsonIndexCreator;
 import org.apache.pinot.segment.spi.memory.CleanerUtil;
 import org.apache.pinot.spi.config.table.JsonIndexConfig;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
 import org.apache.pinot.spi.utils.JsonUtils;
 import org.roaringbitmap.Container;
 import org.roaringbitmap.RoaringBitmap;
@@ -50,17 +55,30 @@ import org.roaringbitmap.RoaringBitmapWriter;
  *   <li>Dictionary file length (long)</li>
  *   <li>Inverted index file length (long)</li>
  *   <li>Doc id mapping file length (long)</li>
+ *   <li>Typed values length (long), only in V3</li>
+ * </ul>
+ * <p>V3 is only written when typed paths are configured, and appends the typed values after the doc id mapping:
+ * <ul>
+ *   <li>Typed values header length (int)</li>
+ *   <li>Typed values header: number of typed paths (int), and for each path the flattened key (string), data type
+ *   (string), cardinality (int), dictionary entry size (int), dictionary length (long) and forward index length (long)
+ *   </li>
+ *   <li>Dictionary and forward index of each path</li>
  * </ul>
  */
 public abstract class BaseJsonIndexCreator implements JsonIndexCreator {
   // NOTE: V1 is deprecated because it does not support top-level value, top-level array and nested array
   public static final int VERSION_1 = 1;
   public static final int VERSION_2 = 2;
+  // V2 with the typed values of the configured typed paths
+  public static final int VERSION_3 = 3;
   public static final int HEADER_LENGTH = 32;
+  public static final int HEADER_LENGTH_V3 = 40;
 
   static final String TEMP_DIR_SUFFIX = ".json.idx.tmp";
   static final String DICTIONARY_FILE_NAME = "dictionary.buf";
   static final String INVERTED_INDEX_FILE_NAME = "inverted.index.buf";
+  static final String TYPED_PATH_FILE_PREFIX = "typed.path.";
 
   final JsonIndexConfig _jsonIndexConfig;
   final File _indexFile;
@@ -70,6 +88,7 @@ public abstract class BaseJsonIndexCreator implements JsonIndexCreator {
   final IntList _numFlattenedRecordsList = new IntArrayList();
   final Map<String, RoaringBitmapWriter<RoaringBitmap>> _postingListMap = new TreeMap<>();
   final RoaringBitmapWriter.Wizard<Container, RoaringBitmap> _bitmapWriterWizard = RoaringBitmapWriter.writer();
+  final List<TypedPathValuesCreator> _typedPathValuesCreators = new ArrayList<>();
 
   int _nextFlattenedDocId;
   int _maxValueLength;
@@ -86,6 +105,12 @@ public abstract class BaseJsonIndexCreator implements JsonIndexCreator {
     }
     _dictionaryFile = new File(_tempDir, DICTIONARY_FILE_NAME);
     _invertedIndexFile = new File(_tempDir, INVERTED_INDEX_FILE_NAME);
+    Map<String, DataType> typedPaths = jsonIndexConfig.getTypedPaths();
+    if (typedPaths != null) {
+      for (Map.Entry<String, DataType> entry : new TreeMap<>(typedPaths).entrySet()) {
+        _typedPathValuesCreators.add(new TypedPathValuesCreator(entry.getKey(), entry.getValue()));
+      }
+    }
   }
 
   @Override
@@ -113,6 +138,18 @@ public abstract class BaseJsonIndexCreator implements JsonIndexCreator {
       }
       _nextFlattenedDocId++;
     }
+    for (TypedPathValuesCreator typedPathValuesCreator : _typedPathValuesCreators) {
+      // Typed paths are validated to be without array, and the array elements are flattened under different keys (e.g.
+      // ".a..b" for "$.a[*].b"), so the value of the path is the same in all the flattened records containing it
+      String value = null;
+      for (Map<String, String> record : records) {
+        value = record.get(typedPathValuesCreator.getKey());
+        if (value != null) {
+          break;
+        }
+      }
+      typedPathValuesCreator.add(value);
+    }
   }
 
   /**
@@ -133,8 +170,17 @@ public abstract class BaseJsonIndexCreator implements JsonIndexCreator {
    */
   void generateIndexFile()
       throws IOException {
-    ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_LENGTH);
-    headerBuffer.putInt(VERSION_2);
+    List<TypedPathValuesCreator> typedPathValuesCreators = new ArrayList<>();
+    for (int i = 0; i < _typedPathValuesCreators.size(); i++) {
+      TypedPathValuesCreator typedPathValuesCreator = _typedPathValuesCreators.get(i);
+      if (typedPathValuesCreator.seal(_tempDir, TYPED_PATH_FILE_PREFIX + i)) {
+        typedPathValuesCreators.add(typedPathValuesCreator);
+      }
+    }
+    byte[] typedValuesHeader = typedPathValuesCreators.isEmpty() ? null : getTypedValuesHeader(typedPathValuesCreators);
+
+    ByteBuffer headerBuffer = ByteBuffer.allocate(typedValuesHeader == null ? HEADER_LENGTH : HEADER_LENGTH_V3);
+    headerBuffer.putInt(typedValuesHeader == null ? VERSION_2 : VERSION_3);
     headerBuffer.putInt(_maxValueLength);
     long dictionaryFileLength = _dictionaryFile.length();
     long invertedIndexFileLength = _invertedIndexFile.length();
@@ -142,6 +188,14 @@ public abstract class BaseJsonIndexCreator implements JsonIndexCreator {
     headerBuffer.putLong(dictionaryFileLength);
     headerBuffer.putLong(invertedIndexFileLength);
     headerBuffer.putLong(docIdMappingFileLength);
+    if (typedValuesHeader != null) {
+      long typedValuesLength = Integer.BYTES + typedValuesHeader.length;
+      for (TypedPathValuesCreator typedPathValuesCreator : typedPathValuesCreators) {
+        typedValuesLength +=
+            typedPathValuesCreator.getDictionaryFile().length() + typedPathValuesCreator.getForwardIndexFile().length();
+      }
+      headerBuffer.putLong(typedValuesLength);
+    }
     headerBuffer.position(0);
 
     try (FileChannel indexFileChannel = new RandomAccessFile(_indexFile, "rw").getChannel();
@@ -168,10 +222,57 @@ public abstract class BaseJsonIndexCreator implements JsonIndexCreator {
         CleanerUtil.BufferCleaner cleaner = CleanerUtil.getCleaner();
         cleaner.freeBuffer(docIdMappingBuffer);
       }
+
+      // Write the typed values to the index file
+      if (typedValuesHeader != null) {
+        indexFileChannel.position(indexFileChannel.position() + docIdMappingFileLength);
+        ByteBuffer typedValuesHeaderBuffer = ByteBuffer.allocate(Integer.BYTES + typedValuesHeader.length);
+        typedValuesHeaderBuffer.putInt(typedValuesHeader.length);
+        typedValuesHeaderBuffer.put(typedValuesHeader);
+        typedValuesHeaderBuffer.flip();
+        while (typedValuesHeaderBuffer.hasRemaining()) {
+          indexFileChannel.write(typedValuesHeaderBuffer);
+        }
+        for (TypedPathValuesCreator typedPathValuesCreator : typedPathValuesCreators) {
+          transferFile(typedPathValuesCreator.getDictionaryFile(), indexFileChannel);
+          transferFile(typedPathValuesCreator.getForwardIndexFile(), indexFileChannel);
+        }
+      }
       indexFileChannel.force(true);
     }
   }
 
+  private static byte[] getTypedValuesHeader(List<TypedPathValuesCreator> typedPathValuesCreators)
+      throws IOException {
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    try (DataOutputStream header = new DataOutputStream(headerBytes)) {
+      header.writeInt(typedPathValuesCreators.size());
+      for (TypedPathValuesCreator typedPathValuesCreator : typedPathValuesCreators) {
+        writeString(header, typedPathValuesCreator.getKey());
+        writeString(header, typedPathValuesCreator.getDataType().name());
+        header.writeInt(typedPathValuesCreator.getCardinality());
+        header.writeInt(typedPathValuesCreator.getNumBytesPerEntry());
+        header.writeLong(typedPathValuesCreator.getDictionaryFile().length());
+        header.writeLong(typedPathValuesCreator.getForwardIndexFile().length());
+      }
+    }
+    return headerBytes.toByteArray();
+  }
+
+  private static void writeString(DataOutputStream output, String value)
+      throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static void transferFile(File file, FileChannel indexFileChannel)
+      throws IOException {
+    try (FileChannel fileChannel = new RandomAccessFile(file, "r").getChannel()) {
+      org.apache.pinot.common.utils.FileUtils.transferBytes(fileChannel, 0, file.length(), indexFileChannel);
+    }
+  }
+
   @Override
   public void close()
       throws IOException {
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.creator.impl.inv.json;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.io.util.PinotDataBitSet;
+import org.apache.pinot.segment.local.io.writer.impl.FixedBitSVForwardIndexWriter;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentDictionaryCreator;
+import org.apache.pinot.spi.config.table.JsonIndexConfig;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Collects the values of a typed JSON path (see {@link JsonIndexConfig#getTypedPaths()}) for each document, and writes
+ * them as a sorted dictionary and a dictionary-encoded forward index. The forward index stores {@code dictId + 1}, with
+ * {@code 0} for the documents without value for the path.
+ * <p>The path is dropped if any of its values cannot be converted to the configured data type, so that the typed values
+ * always match the string values converted at query time.
+ */
+class TypedPathValuesCreator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TypedPathValuesCreator.class);
+
+  private final String _jsonPath;
+  private final String _key;
+  private final DataType _dataType;
+  private final List<Object> _values = new ArrayList<>();
+  private final Set<Object> _uniqueValues = new HashSet<>();
+  private boolean _dropped;
+
+  private int _cardinality;
+  private int _numBytesPerEntry;
+  private File _dictionaryFile;
+  private File _forwardIndexFile;
+
+  TypedPathValuesCreator(String jsonPath, DataType dataType) {
+    Preconditions.checkArgument(
+        jsonPath.startsWith("$.") && jsonPath.indexOf('[') < 0 && jsonPath.indexOf('*') < 0 && !jsonPath.contains(".."),
+        "Typed path: %s must be a JSON path without array", jsonPath);
+    Preconditions.checkArgument(
+        dataType == DataType.INT || dataType == DataType.LONG || dataType == DataType.FLOAT
+            || dataType == DataType.DOUBLE || dataType == DataType.STRING,
+        "Unsupported data type: %s for typed path: %s", dataType, jsonPath);
+    _jsonPath = jsonPath;
+    // Flattened key of the path, e.g. "$.a.b" -> ".a.b"
+    _key = jsonPath.substring(1);
+    _dataType = dataType;
+  }
+
+  String getKey() {
+    return _key;
+  }
+
+  DataType getDataType() {
+    return _dataType;
+  }
+
+  int getCardinality() {
+    return _cardinality;
+  }
+
+  int getNumBytesPerEntry() {
+    return _numBytesPerEntry;
+  }
+
+  File getDictionaryFile() {
+    return _dictionaryFile;
+  }
+
+  File getForwardIndexFile() {
+    return _forwardIndexFile;
+  }
+
+  /**
+   * Adds the value of the path for the next document, or {@code null} if the document does not have the path.
+   */
+  void add(@Nullable String value) {
+    if (_dropped) {
+      return;
+    }
+    if (value == null) {
+      _values.add(null);
+      return;
+    }
+    // Values longer than the max value length are replaced in the index, and can only be kept for STRING type
+    if (_dataType != DataType.STRING && value.equals(JsonUtils.SKIPPED_VALUE_REPLACEMENT)) {
+      drop(value);
+      return;
+    }
+    Object typedValue;
+    try {
+      typedValue = _dataType.convert(value);
+    } catch (Exception e) {
+      drop(value);
+      return;
+    }
+    _values.add(typedValue);
+    _uniqueValues.add(typedValue);
+  }
+
+  private void drop(String value) {
+    LOGGER.warn("Dropping typed path: {} because value: {} cannot be converted to: {}", _jsonPath, value, _dataType);
+    _dropped = true;
+    _values.clear();
+    _uniqueValues.clear();
+  }
+
+  /**
+   * Writes the dictionary and the forward index into the given directory. Returns {@code false} if the path is dropped
+   * or does not have any value, in which case nothing is written.
+   */
+  boolean seal(File tempDir, String name)
+      throws IOException {
+    if (_dropped || _uniqueValues.isEmpty()) {
+      return false;
+    }
+    _cardinality = _uniqueValues.size();
+    _dictionaryFile = new File(tempDir, name + ".dict");
+    SegmentDictionaryCreator dictionaryCreator = new SegmentDictionaryCreator(name, _dataType, _dictionaryFile, false);
+    dictionaryCreator.build(getSortedValues());
+    _numBytesPerEntry = dictionaryCreator.getNumBytesPerEntry();
+    _forwardIndexFile = new File(tempDir, name + ".fwd");
+    try (FixedBitSVForwardIndexWriter writer = new FixedBitSVForwardIndexWriter(_forwardIndexFile, _values.size(),
+        PinotDataBitSet.getNumBitsPerValue(_cardinality))) {
+      for (Object value : _values) {
+        writer.putDictId(value != null ? dictionaryCreator.indexOfSV(value) + 1 : 0);
+      }
+    }
+    dictionaryCreator.close();
+    return true;
+  }
+
+  private Object getSortedValues() {
+    int index = 0;
+    switch (_dataType) {
+      case INT:
+        int[] intValues = new int[_cardinality];
+        for (Object value : _uniqueValues) {
+          intValues[index++] = (Integer) value;
+        }
+        Arrays.sort(intValues);
+        return intValues;
+      case LONG:
+        long[] longValues = new long[_cardinality];
+        for (Object value : _uniqueValues) {
+          longValues[index++] = (Long) value;
+        }
+        Arrays.sort(longValues);
+        return longValues;
+      case FLOAT:
+        float[] floatValues = new float[_cardinality];
+        for (Object value : _uniqueValues) {
+          floatValues[index++] = (Float) value;
+        }
+        Arrays.sort(floatValues);
+        return floatValues;
+      case DOUBLE:
+        double[] doubleValues = new double[_cardinality];
+        for (Object value : _uniqueValues) {
+          doubleValues[index++] = (Double) value;
+        }
+        Arrays.sort(doubleValues);
+        return doubleValues;
+      case STRING:
+        String[] stringValues = _uniqueValues.toArray(new String[0]);
+        Arrays.sort(stringValues);
+        return stringValues;
+      default:
+        throw new IllegalStateException("Unsupported data type: " + _dataType);
+    }
+  }
+}
@@ -0,0 +1,442 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.creator.impl.map;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.io.writer.impl.VarByteChunkForwardIndexWriterV4;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentDictionaryCreator;
+import org.apache.pinot.segment.local.segment.creator.impl.fwd.SingleValueUnsortedForwardIndexCreator;
+import org.apache.pinot.segment.local.segment.creator.impl.fwd.SingleValueVarByteRawIndexCreator;
+import org.apache.pinot.segment.local.segment.creator.impl.inv.BitSlicedRangeIndexCreator;
+import org.apache.pinot.segment.local.segment.creator.impl.inv.OnHeapBitmapInvertedIndexCreator;
+import org.apache.pinot.segment.local.segment.creator.impl.nullvalue.NullValueVectorCreator;
+import org.apache.pinot.segment.local.segment.creator.impl.stats.AbstractColumnStatisticsCollector;
+import org.apache.pinot.segment.local.segment.creator.impl.stats.MapColumnPreIndexStatsCollector;
+import org.apache.pinot.segment.local.segment.index.map.BaseMapIndexCreator;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.segment.spi.creator.ColumnStatistics;
+import org.apache.pinot.segment.spi.creator.IndexCreationContext;
+import org.apache.pinot.segment.spi.index.ForwardIndexConfig;
+import org.apache.pinot.spi.config.table.MapIndexConfig;
+import org.apache.pinot.spi.data.DimensionFieldSpec;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.utils.MapUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Map index creator which stores the frequently occurring keys of the map column as dense sub-columns, each with its
+ * own dictionary, dictionary-encoded forward index, null value vector for the documents without the key, and optional
+ * inverted and range indexes, so that the values of these keys can be read and filtered like regular columns. The
+ * remaining (sparse) keys of each document are stored as a serialized map in a raw forward index.
+ *
+ * <p>The dense keys are picked from the key level statistics of the map column: the keys configured with
+ * {@link #DENSE_KEYS_KEY}, {@link #INVERTED_INDEX_KEYS_KEY} or {@link #RANGE_INDEX_KEYS_KEY}, then the most frequent
+ * keys present in at least {@link #DENSE_KEY_MIN_FREQUENCY_KEY} of the documents, up to {@link #MAX_DENSE_KEYS_KEY}
+ * keys in total.
+ *
+ * <p>The sub-indexes are created in a temporary directory, and concatenated into the map index file on seal:
+ * <ul>
+ *   <li>Header: version, header length, number of docs, and for each dense key the key, data type, cardinality,
+ *   dictionary entry size and the offset/length of each sub-index, followed by the sparse keys and the offset/length
+ *   of the sparse forward index</li>
+ *   <li>Data: sub-index buffers, with offsets relative to the end of the header</li>
+ * </ul>
+ */
+public class ColumnarMapIndexCreator extends BaseMapIndexCreator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarMapIndexCreator.class);
+
+  public static final String MAX_DENSE_KEYS_KEY = "maxDenseKeys";
+  public static final int DEFAULT_MAX_DENSE_KEYS = 100;
+  public static final String DENSE_KEY_MIN_FREQUENCY_KEY = "denseKeyMinFrequency";
+  public static final double DEFAULT_DENSE_KEY_MIN_FREQUENCY = 0.1;
+  public static final String DENSE_KEYS_KEY = "denseKeys";
+  public static final String INVERTED_INDEX_KEYS_KEY = "invertedIndexKeys";
+  public static final String RANGE_INDEX_KEYS_KEY = "rangeIndexKeys";
+
+  // Order of the sub-indexes of a dense key in the header
+  public static final int DICTIONARY = 0;
+  public static final int FORWARD_INDEX = 1;
+  public static final int NULL_VALUE_VECTOR = 2;
+  public static final int INVERTED_INDEX = 3;
+  public static final int RANGE_INDEX = 4;
+  public static final int NUM_SUB_INDEXES = 5;
+
+  private static final String TEMP_DIR_SUFFIX = ".map.tmp";
+  private static final String SPARSE_COLUMN_NAME = "sparse";
+
+  private final String _columnName;
+  private final File _indexFile;
+  private final File _tempDir;
+  private final int _numDocs;
+  private final Map<String, DenseKeyCreator> _denseKeyCreators = new LinkedHashMap<>();
+  private final Set<String> _sparseKeys = new TreeSet<>();
+  private final SingleValueVarByteRawIndexCreator _sparseCreator;
+  private int _nextDocId;
+
+  public ColumnarMapIndexCreator(File indexDir, String columnName, IndexCreationContext context,
+      MapIndexConfig indexConfig)
+      throws IOException {
+    super(indexDir, columnName, indexConfig);
+    _columnName = columnName;
+    _indexFile = new File(indexDir, columnName + V1Constants.Indexes.MAP_INDEX_FILE_EXTENSION);
+    _tempDir = new File(indexDir, columnName + TEMP_DIR_SUFFIX);
+    FileUtils.deleteQuietly(_tempDir);
+    FileUtils.forceMkdir(_tempDir);
+    _numDocs = context.getTotalDocs();
+
+    ColumnStatistics columnStatistics = context.getColumnStatistics();
+    if (columnStatistics instanceof MapColumnPreIndexStatsCollector) {
+      MapColumnPreIndexStatsCollector mapStats = (MapColumnPreIndexStatsCollector) columnStatistics;
+      Set<String> invertedIndexKeys = getKeys(indexConfig, INVERTED_INDEX_KEYS_KEY);
+      Set<String> rangeIndexKeys = getKeys(indexConfig, RANGE_INDEX_KEYS_KEY);
+      List<String> denseKeys = pickDenseKeys(mapStats, indexConfig, invertedIndexKeys, rangeIndexKeys);
+      for (int i = 0; i < denseKeys.size(); i++) {
+        String key = denseKeys.get(i);
+        _denseKeyCreators.put(key,
+            new DenseKeyCreator(key, "key" + i, mapStats.getKeyDataType(key), mapStats.getKeyStatistics(key),
+                invertedIndexKeys.contains(key), rangeIndexKeys.contains(key)));
+      }
+    } else {
+      LOGGER.warn("Key statistics are not available for map column: {}, storing all keys as sparse keys", columnName);
+    }
+    _sparseCreator = new SingleValueVarByteRawIndexCreator(_tempDir, ChunkCompressionType.LZ4, SPARSE_COLUMN_NAME,
+        _numDocs, DataType.BYTES, context.getLengthOfLongestEntry(), false, VarByteChunkForwardIndexWriterV4.VERSION,
+        ForwardIndexConfig.DEFAULT_TARGET_MAX_CHUNK_SIZE_BYTES, ForwardIndexConfig.DEFAULT_TARGET_DOCS_PER_CHUNK);
+    LOGGER.info("Creating map index for column: {} with dense keys: {}", columnName, _denseKeyCreators.keySet());
+  }
+
+  private List<String> pickDenseKeys(MapColumnPreIndexStatsCollector mapStats, MapIndexConfig indexConfig,
+      Set<String> invertedIndexKeys, Set<String> rangeIndexKeys) {
+    Set<String> keys = mapStats.getKeys();
+    Set<String> denseKeys = new TreeSet<>(getKeys(indexConfig, DENSE_KEYS_KEY));
+    denseKeys.addAll(invertedIndexKeys);
+    denseKeys.addAll(rangeIndexKeys);
+    denseKeys.retainAll(keys);
+
+    int maxDenseKeys = getIntConfig(indexConfig, MAX_DENSE_KEYS_KEY, DEFAULT_MAX_DENSE_KEYS);
+    double minFrequency = getDoubleConfig(indexConfig, DENSE_KEY_MIN_FREQUENCY_KEY, DEFAULT_DENSE_KEY_MIN_FREQUENCY);
+    long minNumDocs = (long) Math.ceil(minFrequency * _numDocs);
+    List<String> frequentKeys = new ArrayList<>();
+    for (String key : keys) {
+      if (!denseKeys.contains(key) && mapStats.getKeyStatistics(key).getTotalNumberOfEntries() >= minNumDocs) {
+        frequentKeys.add(key);
+      }
+    }
+    // Most frequent keys first, then by key for deterministic order
+    frequentKeys.sort((key1, key2) -> {
+      int result = Integer.compare(mapStats.getKeyStatistics(key2).getTotalNumberOfEntries(),
+          mapStats.getKeyStatistics(key1).getTotalNumberOfEntries());
+      return result != 0 ? result : key1.compareTo(key2);
+    });
+    for (String key : frequentKeys) {
+      if (denseKeys.size() >= maxDenseKeys) {
+        break;
+      }
+      denseKeys.add(key);
+    }
+    return new ArrayList<>(denseKeys);
+  }
+
+  @Override
+  public boolean isDictionaryEncoded() {
+    return false;
+  }
+
+  @Override
+  public boolean isSingleValue() {
+    return true;
+  }
+
+  @Override
+  public DataType getValueType() {
+    return DataType.MAP;
+  }
+
+  @Override
+  public void add(Map<String, Object> mapValue) {
+    Map<String, Object> sparseMap = Collections.emptyMap();
+    for (Map.Entry<String, Object> entry : mapValue.entrySet()) {
+      String key = entry.getKey();
+      if (!_denseKeyCreators.containsKey(key) && entry.getValue() != null) {
+        if (sparseMap.isEmpty()) {
+          sparseMap = new HashMap<>();
+        }
+        sparseMap.put(key, entry.getValue());
+        _sparseKeys.add(key);
+      }
+    }
+    for (DenseKeyCreator denseKeyCreator : _denseKeyCreators.values()) {
+      denseKeyCreator.add(_nextDocId, mapValue.get(denseKeyCreator._key));
+    }
+    _sparseCreator.putBytes(MapUtils.serializeMap(sparseMap));
+    _nextDocId++;
+  }
+
+  @Override
+  public void seal()
+      throws IOException {
+    for (DenseKeyCreator denseKeyCreator : _denseKeyCreators.values()) {
+      denseKeyCreator.seal();
+    }
+    _sparseCreator.close();
+    File sparseFile = new File(_tempDir, SPARSE_COLUMN_NAME + V1Constants.Indexes.RAW_SV_FORWARD_INDEX_FILE_EXTENSION);
+
+    // Collect the sub-index files in the order they are written to the index file
+    List<File> dataFiles = new ArrayList<>();
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    try (DataOutputStream header = new DataOutputStream(headerBytes)) {
+      long offset = 0;
+      header.writeInt(_numDocs);
+      header.writeInt(_denseKeyCreators.size());
+      for (DenseKeyCreator denseKeyCreator : _denseKeyCreators.values()) {
+        writeString(header, denseKeyCreator._key);
+        writeString(header, denseKeyCreator._dataType.name());
+        header.writeInt(denseKeyCreator._cardinality);
+        header.writeInt(denseKeyCreator._dictionaryCreator.getNumBytesPerEntry());
+        for (File file : denseKeyCreator.getSubIndexFiles()) {
+          long length = file != null && file.exists() ? file.length() : 0;
+          header.writeLong(offset);
+          header.writeLong(length);
+          if (length > 0) {
+            dataFiles.add(file);
+            offset += length;
+          }
+        }
+      }
+      header.writeInt(_sparseKeys.size());
+      for (String sparseKey : _sparseKeys) {
+        writeString(header, sparseKey);
+      }
+      header.writeLong(offset);
+      header.writeLong(sparseFile.length());
+      dataFiles.add(sparseFile);
+    }
+
+    try (DataOutputStream output = new DataOutputStream(new FileOutputStream(_indexFile))) {
+      output.writeInt(VERSION_2);
+      output.writeInt(headerBytes.size());
+      headerBytes.writeTo(output);
+      for (File dataFile : dataFiles) {
+        FileUtils.copyFile(dataFile, (OutputStream) output);
+      }
+    }
+    LOGGER.info("Created map index for column: {} with {} dense keys and {} sparse keys", _columnName,
+        _denseKeyCreators.size(), _sparseKeys.size());
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    FileUtils.deleteDirectory(_tempDir);
+  }
+
+  private static void writeString(DataOutputStream output, String value)
+      throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static Set<String> getKeys(MapIndexConfig indexConfig, String configKey) {
+    Object value = indexConfig.getConfigs().get(configKey);
+    if (value == null) {
+      return Collections.emptySet();
+    }
+    Set<String> keys = new HashSet<>();
+    if (value instanceof Collection) {
+      for (Object key : (Collection<?>) value) {
+        keys.add(key.toString());
+      }
+    } else {
+      for (String key : value.toString().split(",")) {
+        if (!key.trim().isEmpty()) {
+          keys.add(key.trim());
+        }
+      }
+    }
+    return keys;
+  }
+
+  private static int getIntConfig(MapIndexConfig indexConfig, String configKey, int defaultValue) {
+    Object value = indexConfig.getConfigs().get(configKey);
+    return value != null ? Integer.parseInt(value.toString()) : defaultValue;
+  }
+
+  private static double getDoubleConfig(MapIndexConfig indexConfig, String configKey, double defaultValue) {
+    Object value = indexConfig.getConfigs().get(configKey);
+    return value != null ? Double.parseDouble(value.toString()) : defaultValue;
+  }
+
+  /**
+   * Creates the sub-indexes of a dense key. The documents without the key are stored with the default null value of
+   * the key data type in the forward index, and marked in the null value vector.
+   */
+  private class DenseKeyCreator {
+    final String _key;
+    final DataType _dataType;
+    final int _cardinality;
+    final Object _defaultNullValue;
+    final SegmentDictionaryCreator _dictionaryCreator;
+    final SingleValueUnsortedForwardIndexCreator _forwardIndexCreator;
+    final NullValueVectorCreator _nullValueVectorCreator;
+    final OnHeapBitmapInvertedIndexCreator _invertedIndexCreator;
+    final BitSlicedRangeIndexCreator _rangeIndexCreator;
+    final File _dictionaryFile;
+    final File _forwardIndexFile;
+    final File _nullValueVectorFile;
+    final File _invertedIndexFile;
+    final File _rangeIndexFile;
+
+    DenseKeyCreator(String key, String subColumnName, DataType dataType, AbstractColumnStatisticsCollector keyStats,
+        boolean createInvertedIndex, boolean createRangeIndex)
+        throws IOException {
+      _key = key;
+      _dataType = dataType;
+      FieldSpec fieldSpec = new DimensionFieldSpec(subColumnName, dataType, true);
+      _defaultNullValue = fieldSpec.getDefaultNullValue();
+      Object sortedValues = keyStats.getUniqueValuesSet();
+      if (keyStats.getTotalNumberOfEntries() < _numDocs) {
+        sortedValues = addSortedValue(sortedValues, _defaultNullValue);
+      }
+      _cardinality = Array.getLength(sortedValues);
+
+      _dictionaryCreator = new SegmentDictionaryCreator(fieldSpec, _tempDir, false);
+      _dictionaryCreator.build(sortedValues);
+      _dictionaryFile = new File(_tempDir, subColumnName + V1Constants.Dict.FILE_EXTENSION);
+      try {
+        _forwardIndexCreator = new SingleValueUnsortedForwardIndexCreator(_tempDir, subColumnName, _cardinality,
+            _numDocs);
+      } catch (Exception e) {
+        throw new IOException("Failed to create forward index for key: " + key + " of map column: " + _columnName, e);
+      }
+      _forwardIndexFile =
+          new File(_tempDir, subColumnName + V1Constants.Indexes.UNSORTED_SV_FORWARD_INDEX_FILE_EXTENSION);
+      _nullValueVectorCreator = new NullValueVectorCreator(_tempDir, subColumnName);
+      _nullValueVectorFile = new File(_tempDir, subColumnName + V1Constants.Indexes.NULLVALUE_VECTOR_FILE_EXTENSION);
+      if (createInvertedIndex) {
+        _invertedIndexCreator = new OnHeapBitmapInvertedIndexCreator(_tempDir, subColumnName, _cardinality);
+        _invertedIndexFile =
+            new File(_tempDir, subColumnName + V1Constants.Indexes.BITMAP_INVERTED_INDEX_FILE_EXTENSION);
+      } else {
+        _invertedIndexCreator = null;
+        _invertedIndexFile = null;
+      }
+      if (createRangeIndex) {
+        _rangeIndexCreator = new BitSlicedRangeIndexCreator(_tempDir, fieldSpec, _cardinality);
+        _rangeIndexFile = new File(_tempDir, subColumnName + V1Constants.Indexes.BITMAP_RANGE_INDEX_FILE_EXTENSION);
+      } else {
+        _rangeIndexCreator = null;
+        _rangeIndexFile = null;
+      }
+    }
+
+    void add(int docId, Object value) {
+      if (value == null) {
+        _nullValueVectorCreator.setNull(docId);
+        value = _defaultNullValue;
+      }
+      int dictId = _dictionaryCreator.indexOfSV(MapColumnPreIndexStatsCollector.convertValue(value, _dataType));
+      _forwardIndexCreator.putDictId(dictId);
+      if (_invertedIndexCreator != null) {
+        _invertedIndexCreator.add(dictId);
+      }
+      if (_rangeIndexCreator != null) {
+        _rangeIndexCreator.add(dictId);
+      }
+    }
+
+    void seal()
+        throws IOException {
+      _dictionaryCreator.seal();
+      _forwardIndexCreator.close();
+      _nullValueVectorCreator.seal();
+      if (_invertedIndexCreator != null) {
+        _invertedIndexCreator.seal();
+      }
+      if (_rangeIndexCreator != null) {
+        _rangeIndexCreator.seal();
+        _rangeIndexCreator.close();
+      }
+    }
+
+    /**
+     * Returns the sub-index files indexed by the sub-index ids, with {@code null} for the absent sub-indexes.
+     */
+    File[] getSubIndexFiles() {
+      File[] files = new File[NUM_SUB_INDEXES];
+      files[DICTIONARY] = _dictionaryFile;
+      files[FORWARD_INDEX] = _forwardIndexFile;
+      files[NULL_VALUE_VECTOR] = _nullValueVectorFile;
+      files[INVERTED_INDEX] = _invertedIndexFile;
+      files[RANGE_INDEX] = _rangeIndexFile;
+      return files;
+    }
+  }
+
+  /**
+   * Returns the sorted values with the given value inserted if not already present.
+   */
+  private static Object addSortedValue(Object sortedValues, Object value) {
+    int length = Array.getLength(sortedValues);
+    int index;
+    if (sortedValues instanceof int[]) {
+      index = Arrays.binarySearch((int[]) sortedValues, (int) value);
+    } else if (sortedValues instanceof long[]) {
+      index = Arrays.binarySearch((long[]) sortedValues, (long) value);
+    } else if (sortedValues instanceof float[]) {
+      index = Arrays.binarySearch((float[]) sortedValues, (float) value);
+    } else if (sortedValues instanceof double[]) {
+      index = Arrays.binarySearch((double[]) sortedValues, (double) value);
+    } else {
+      index = Arrays.binarySearch((Object[]) sortedValues, value);
+    }
+    if (index >= 0) {
+      return sortedValues;
+    }
+    int insertionIndex = -index - 1;
+    Object result = Array.newInstance(sortedValues.getClass().getComponentType(), length + 1);
+    System.arraycopy(sortedValues, 0, result, 0, insertionIndex);
+    Array.set(result, insertionIndex, value);
+    System.arraycopy(sortedValues, insertionIndex, result, insertionIndex + 1, length - insertionIndex);
+    return result;
+  }
+}
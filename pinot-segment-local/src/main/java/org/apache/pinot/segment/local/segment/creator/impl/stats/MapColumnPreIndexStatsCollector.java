@@ -19,12 +19,15 @@
 package org.apache.pinot.segment.local.segment.creator.impl.stats;
 
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 import org.apache.pinot.common.utils.PinotDataType;
 import org.apache.pinot.segment.spi.creator.StatsCollectorConfig;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.ComplexFieldSpec;
 import org.apache.pinot.spi.data.DimensionFieldSpec;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.Schema;
@@ -45,10 +48,14 @@ import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
  * 1. Each key has a single type for the value's associated with it across all documents.
  * 2. At this point in the  Pinot process, the type consistency of a key should already be enforced, so if a
  * heterogeneous value types for a key are encountered will construct the Map statistics it can be raised as a fault.
+ *
+ * When the value field of the map column is declared in the schema, all the keys take the declared value type, and the
+ * values are converted to it before being collected. Otherwise, the type of a key is derived from its first value.
  */
 public class MapColumnPreIndexStatsCollector extends AbstractColumnStatisticsCollector {
   private final Object2ObjectOpenHashMap<String, AbstractColumnStatisticsCollector> _keyStats =
       new Object2ObjectOpenHashMap<>(INITIAL_HASH_SET_SIZE);
+  private final FieldSpec.DataType _valueDataType;
   private String[] _sortedValues;
   private int _minLength = Integer.MAX_VALUE;
   private int _maxLength = 0;
@@ -57,12 +64,32 @@ public class MapColumnPreIndexStatsCollector extends AbstractColumnStatisticsCol
   public MapColumnPreIndexStatsCollector(String column, StatsCollectorConfig statsCollectorConfig) {
     super(column, statsCollectorConfig);
     _sorted = false;
+    FieldSpec valueFieldSpec = null;
+    if (_fieldSpec instanceof ComplexFieldSpec) {
+      valueFieldSpec = ((ComplexFieldSpec) _fieldSpec).getChildFieldSpec(ComplexFieldSpec.VALUE_FIELD);
+    }
+    _valueDataType = valueFieldSpec != null ? valueFieldSpec.getDataType() : null;
   }
 
   public AbstractColumnStatisticsCollector getKeyStatistics(String key) {
     return _keyStats.get(key);
   }
 
+  /**
+   * Returns all the keys encountered in the map values.
+   */
+  public Set<String> getKeys() {
+    return _keyStats.keySet();
+  }
+
+  /**
+   * Returns the data type of the values of the given key, which is the declared value type of the map column, or
+   * derived from the first value of the key when the value type is not declared.
+   */
+  public FieldSpec.DataType getKeyDataType(String key) {
+    return _keyStats.get(key)._fieldSpec.getDataType();
+  }
+
   @Override
   public void collect(Object entry) {
     assert !_sealed;
@@ -77,6 +104,9 @@ public class MapColumnPreIndexStatsCollector extends AbstractColumnStatisticsCol
       for (Map.Entry<String, Object> mapValueEntry : mapValue.entrySet()) {
         String key = mapValueEntry.getKey();
         Object value = mapValueEntry.getValue();
+        if (_valueDataType != null) {
+          value = convertValue(value, _valueDataType);
+        }
         AbstractColumnStatisticsCollector keyStats = _keyStats.get(key);
         if (keyStats == null) {
           keyStats = createKeyStatsCollector(key, value);
@@ -159,15 +189,16 @@ public class MapColumnPreIndexStatsCollector extends AbstractColumnStatisticsCol
    * So a less memory intensive option may be better for this.
    */
   private AbstractColumnStatisticsCollector createKeyStatsCollector(String key, Object value) {
-    // Get the type of the value
-    PinotDataType type = PinotDataType.getSingleValueType(value.getClass());
+    // Use the declared value type, or get the type of the value
+    FieldSpec.DataType dataType = _valueDataType != null ? _valueDataType
+        : convertToDataType(PinotDataType.getSingleValueType(value.getClass()));
     TableConfig tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName(key).build();
     Schema keySchema = new Schema.SchemaBuilder().setSchemaName(key)
-        .addField(new DimensionFieldSpec(key, convertToDataType(type), false)).build();
+        .addField(new DimensionFieldSpec(key, dataType, false)).build();
     StatsCollectorConfig config = new StatsCollectorConfig(tableConfig, keySchema, null);
 
-    switch (type) {
-      case INTEGER:
+    switch (dataType.getStoredType()) {
+      case INT:
         return new IntColumnPreIndexStatsCollector(key, config);
       case LONG:
         return new LongColumnPreIndexStatsCollector(key, config);
@@ -180,8 +211,31 @@ public class MapColumnPreIndexStatsCollector extends AbstractColumnStatisticsCol
       case STRING:
         return new StringColumnPreIndexStatsCollector(key, config);
       default:
-        throw new UnsupportedOperationException(String.format("MAP column does not yet support '%s'", type));
+        throw new UnsupportedOperationException(String.format("MAP column does not yet support '%s'", dataType));
+    }
+  }
+
+  /**
+   * Converts the value of a key to the stored type of the given data type.
+   */
+  public static Object convertValue(Object value, FieldSpec.DataType dataType) {
+    if (value instanceof Number) {
+      switch (dataType.getStoredType()) {
+        case INT:
+          return ((Number) value).intValue();
+        case LONG:
+          return ((Number) value).longValue();
+        case FLOAT:
+          return ((Number) value).floatValue();
+        case DOUBLE:
+          return ((Number) value).doubleValue();
+        case BIG_DECIMAL:
+          return value instanceof BigDecimal ? value : new BigDecimal(value.toString());
+        default:
+          break;
+      }
     }
+    return dataType.convert(value.toString());
   }
 
   static FieldSpec.DataType convertToDataType(PinotDataType ty) {
@@ -0,0 +1,360 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.creator.impl.vector;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.segment.index.vector.VectorSearchUtils;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.index.creator.VectorIndexConfig;
+import org.apache.pinot.segment.spi.index.creator.VectorIndexCreator;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Creator for the IVF-PQ vector index, which partitions the vectors into clusters with k-means (inverted file), and
+ * encodes the residual of each vector to its cluster centroid with product quantization, where each sub-vector is
+ * replaced by the 1-byte id of its closest centroid in the sub-space codebook.
+ * <p>The vectors are spilled into a temporary file while being added, and the index is trained and written when
+ * sealed. Index file format (big endian):
+ * <ul>
+ *   <li>Header: version, dimension, distance type (0: squared L2, 1: inner product), normalized, number of docs,
+ *   number of lists, number of sub-quantizers, sub-vector dimension, codebook size</li>
+ *   <li>Coarse centroids: numLists * dimension floats</li>
+ *   <li>Codebooks: numSubQuantizers * codebookSize * subDimension floats</li>
+ *   <li>List offsets: (numLists + 1) ints</li>
+ *   <li>Doc ids grouped by list: numDocs ints</li>
+ *   <li>Codes grouped by list: numDocs * numSubQuantizers bytes</li>
+ * </ul>
+ */
+public class IvfPqVectorIndexCreator implements VectorIndexCreator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IvfPqVectorIndexCreator.class);
+
+  public static final int VERSION = 1;
+  public static final int HEADER_LENGTH = 9 * Integer.BYTES;
+  public static final int DISTANCE_TYPE_L2 = 0;
+  public static final int DISTANCE_TYPE_INNER_PRODUCT = 1;
+  public static final int MAX_CODEBOOK_SIZE = 256;
+
+  // Number of lists (clusters), default to sqrt(numDocs)
+  public static final String NUM_LISTS_KEY = "nlist";
+  // Number of sub-quantizers, must divide the vector dimension
+  public static final String NUM_SUB_QUANTIZERS_KEY = "pqM";
+  public static final String TRAIN_SAMPLE_SIZE_KEY = "trainSampleSize";
+  public static final String NUM_TRAIN_ITERATIONS_KEY = "trainIterations";
+  public static final int DEFAULT_TRAIN_SAMPLE_SIZE = 16384;
+  public static final int DEFAULT_NUM_TRAIN_ITERATIONS = 10;
+  private static final long RANDOM_SEED = 0L;
+
+  private final String _column;
+  private final int _dimension;
+  private final boolean _innerProduct;
+  private final boolean _normalized;
+  private final int _numListsConfig;
+  private final int _numSubQuantizers;
+  private final int _trainSampleSize;
+  private final int _numTrainIterations;
+  private final File _indexFile;
+  private final File _vectorsFile;
+  private final DataOutputStream _vectorsOutputStream;
+  private final float[] _vector;
+
+  private int _nextDocId;
+
+  public IvfPqVectorIndexCreator(String column, File segmentIndexDir, VectorIndexConfig vectorIndexConfig)
+      throws IOException {
+    _column = column;
+    _dimension = vectorIndexConfig.getVectorDimension();
+    Preconditions.checkArgument(_dimension > 0, "Invalid vector dimension: %s for column: %s", _dimension, column);
+    _innerProduct = VectorSearchUtils.isInnerProduct(vectorIndexConfig.getVectorDistanceFunction());
+    _normalized = VectorSearchUtils.isNormalized(vectorIndexConfig.getVectorDistanceFunction());
+    Map<String, String> properties = vectorIndexConfig.getProperties();
+    _numListsConfig = Integer.parseInt(properties.getOrDefault(NUM_LISTS_KEY, "0"));
+    _numSubQuantizers = properties.containsKey(NUM_SUB_QUANTIZERS_KEY) ? Integer.parseInt(
+        properties.get(NUM_SUB_QUANTIZERS_KEY)) : getDefaultNumSubQuantizers(_dimension);
+    Preconditions.checkArgument(_numSubQuantizers > 0 && _dimension % _numSubQuantizers == 0,
+        "Number of sub-quantizers: %s must divide the vector dimension: %s for column: %s", _numSubQuantizers,
+        _dimension, column);
+    _trainSampleSize = Integer.parseInt(
+        properties.getOrDefault(TRAIN_SAMPLE_SIZE_KEY, String.valueOf(DEFAULT_TRAIN_SAMPLE_SIZE)));
+    _numTrainIterations = Integer.parseInt(
+        properties.getOrDefault(NUM_TRAIN_ITERATIONS_KEY, String.valueOf(DEFAULT_NUM_TRAIN_ITERATIONS)));
+    _indexFile = new File(segmentIndexDir, column + V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION);
+    _vectorsFile = new File(segmentIndexDir, column + V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION + ".tmp");
+    _vectorsOutputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_vectorsFile)));
+    _vector = new float[_dimension];
+    LOGGER.info("Creating IVF-PQ index for column: {} at path: {} with {}", column, _indexFile.getAbsolutePath(),
+        properties);
+  }
+
+  /**
+   * Uses 4 dimensions per sub-quantizer when possible, which compresses each sub-vector of 16 bytes into 1 byte.
+   */
+  private static int getDefaultNumSubQuantizers(int dimension) {
+    if (dimension % 4 == 0) {
+      return dimension / 4;
+    }
+    if (dimension % 2 == 0) {
+      return dimension / 2;
+    }
+    return dimension;
+  }
+
+  @Override
+  public void add(@Nonnull Object[] values, @Nullable int[] dictIds) {
+    float[] floatValues = new float[_dimension];
+    for (int i = 0; i < values.length; i++) {
+      floatValues[i] = (Float) values[i];
+    }
+    add(floatValues);
+  }
+
+  @Override
+  public void add(float[] document) {
+    Preconditions.checkArgument(document.length >= _dimension, "Vector of length: %s is shorter than dimension: %s",
+        document.length, _dimension);
+    System.arraycopy(document, 0, _vector, 0, _dimension);
+    if (_normalized) {
+      VectorSearchUtils.normalize(_vector);
+    }
+    try {
+      for (float value : _vector) {
+        _vectorsOutputStream.writeFloat(value);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Caught exception while adding a new document to the IVF-PQ index for column: " + _column, e);
+    }
+    _nextDocId++;
+  }
+
+  @Override
+  public void seal()
+      throws IOException {
+    LOGGER.info("Sealing IVF-PQ index for column: {} with {} docs", _column, _nextDocId);
+    _vectorsOutputStream.close();
+    int numDocs = _nextDocId;
+    try (PinotDataBuffer vectors = numDocs > 0 ? PinotDataBuffer.mapReadOnlyBigEndianFile(_vectorsFile) : null;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_indexFile)))) {
+      Random random = new Random(RANDOM_SEED);
+      int subDimension = _dimension / _numSubQuantizers;
+
+      // Train the coarse centroids on a sample of the vectors
+      int numLists = _numListsConfig > 0 ? _numListsConfig : (int) Math.sqrt(numDocs);
+      numLists = Math.max(Math.min(numLists, numDocs), numDocs > 0 ? 1 : 0);
+      int[] sampleDocIds = sampleDocIds(numDocs, Math.max(_trainSampleSize, numLists), random);
+      int numSamples = sampleDocIds.length;
+      float[] samples = new float[numSamples * _dimension];
+      for (int i = 0; i < numSamples; i++) {
+        readVector(vectors, sampleDocIds[i], samples, i * _dimension);
+      }
+      float[] centroids = trainKMeans(samples, numSamples, _dimension, 0, _dimension, numLists, random);
+
+      // Train the codebooks on the residuals of the sample
+      int codebookSize = Math.min(MAX_CODEBOOK_SIZE, numSamples);
+      for (int i = 0; i < numSamples; i++) {
+        int offset = i * _dimension;
+        int listId = findClosest(samples, offset, centroids, numLists, _dimension);
+        subtract(samples, offset, centroids, listId * _dimension, _dimension);
+      }
+      float[] codebooks = new float[_numSubQuantizers * codebookSize * subDimension];
+      for (int m = 0; m < _numSubQuantizers; m++) {
+        float[] codebook =
+            trainKMeans(samples, numSamples, _dimension, m * subDimension, subDimension, codebookSize, random);
+        System.arraycopy(codebook, 0, codebooks, m * codebookSize * subDimension, codebook.length);
+      }
+
+      // Assign each doc to its closest list
+      int[] listIds = new int[numDocs];
+      int[] listOffsets = new int[numLists + 1];
+      float[] vector = new float[_dimension];
+      for (int docId = 0; docId < numDocs; docId++) {
+        readVector(vectors, docId, vector, 0);
+        int listId = findClosest(vector, 0, centroids, numLists, _dimension);
+        listIds[docId] = listId;
+        listOffsets[listId + 1]++;
+      }
+      for (int i = 0; i < numLists; i++) {
+        listOffsets[i + 1] += listOffsets[i];
+      }
+      int[] docIds = new int[numDocs];
+      int[] nextPositions = new int[numLists];
+      System.arraycopy(listOffsets, 0, nextPositions, 0, numLists);
+      for (int docId = 0; docId < numDocs; docId++) {
+        docIds[nextPositions[listIds[docId]]++] = docId;
+      }
+
+      out.writeInt(VERSION);
+      out.writeInt(_dimension);
+      out.writeInt(_innerProduct ? DISTANCE_TYPE_INNER_PRODUCT : DISTANCE_TYPE_L2);
+      out.writeInt(_normalized ? 1 : 0);
+      out.writeInt(numDocs);
+      out.writeInt(numLists);
+      out.writeInt(_numSubQuantizers);
+      out.writeInt(subDimension);
+      out.writeInt(codebookSize);
+      for (float value : centroids) {
+        out.writeFloat(value);
+      }
+      for (float value : codebooks) {
+        out.writeFloat(value);
+      }
+      for (int listOffset : listOffsets) {
+        out.writeInt(listOffset);
+      }
+      for (int docId : docIds) {
+        out.writeInt(docId);
+      }
+      // Encode the residuals in the list order
+      for (int docId : docIds) {
+        readVector(vectors, docId, vector, 0);
+        subtract(vector, 0, centroids, listIds[docId] * _dimension, _dimension);
+        for (int m = 0; m < _numSubQuantizers; m++) {
+          int code = findClosest(vector, m * subDimension, codebooks, m * codebookSize, codebookSize, subDimension);
+          out.writeByte(code);
+        }
+      }
+    } finally {
+      FileUtils.deleteQuietly(_vectorsFile);
+    }
+  }
+
+  private void readVector(PinotDataBuffer vectors, int docId, float[] dest, int destOffset) {
+    long offset = (long) docId * _dimension * Float.BYTES;
+    for (int i = 0; i < _dimension; i++) {
+      dest[destOffset + i] = vectors.getFloat(offset + (long) i * Float.BYTES);
+    }
+  }
+
+  /**
+   * Returns the sorted ids of the sampled docs.
+   */
+  private static int[] sampleDocIds(int numDocs, int sampleSize, Random random) {
+    int[] docIds = new int[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      docIds[i] = i;
+    }
+    if (sampleSize >= numDocs) {
+      return docIds;
+    }
+    // Partial Fisher-Yates shuffle
+    for (int i = 0; i < sampleSize; i++) {
+      int j = i + random.nextInt(numDocs - i);
+      int docId = docIds[j];
+      docIds[j] = docIds[i];
+      docIds[i] = docId;
+    }
+    int[] sampleDocIds = new int[sampleSize];
+    System.arraycopy(docIds, 0, sampleDocIds, 0, sampleSize);
+    Arrays.sort(sampleDocIds);
+    return sampleDocIds;
+  }
+
+  /**
+   * Trains k centroids with Lloyd's k-means (squared L2 distance) on the sub-vectors of the given dimension at the
+   * given offset of the vectors. Empty clusters are re-seeded with a random vector.
+   */
+  private float[] trainKMeans(float[] vectors, int numVectors, int stride, int offset, int dimension, int k,
+      Random random) {
+    float[] centroids = new float[k * dimension];
+    if (k == 0) {
+      return centroids;
+    }
+    int[] seedIds = sampleDocIds(numVectors, k, random);
+    for (int i = 0; i < k; i++) {
+      System.arraycopy(vectors, seedIds[i] * stride + offset, centroids, i * dimension, dimension);
+    }
+    int[] assignments = new int[numVectors];
+    int[] counts = new int[k];
+    for (int iteration = 0; iteration < _numTrainIterations; iteration++) {
+      for (int i = 0; i < numVectors; i++) {
+        assignments[i] = findClosest(vectors, i * stride + offset, centroids, 0, k, dimension);
+      }
+      Arrays.fill(centroids, 0);
+      Arrays.fill(counts, 0);
+      for (int i = 0; i < numVectors; i++) {
+        int centroidOffset = assignments[i] * dimension;
+        int vectorOffset = i * stride + offset;
+        for (int j = 0; j < dimension; j++) {
+          centroids[centroidOffset + j] += vectors[vectorOffset + j];
+        }
+        counts[assignments[i]]++;
+      }
+      for (int c = 0; c < k; c++) {
+        int centroidOffset = c * dimension;
+        if (counts[c] > 0) {
+          for (int j = 0; j < dimension; j++) {
+            centroids[centroidOffset + j] /= counts[c];
+          }
+        } else {
+          System.arraycopy(vectors, random.nextInt(numVectors) * stride + offset, centroids, centroidOffset,
+              dimension);
+        }
+      }
+    }
+    return centroids;
+  }
+
+  private static int findClosest(float[] vector, int offset, float[] centroids, int numCentroids, int dimension) {
+    return findClosest(vector, offset, centroids, 0, numCentroids, dimension);
+  }
+
+  /**
+   * Returns the index (relative to the first centroid) of the closest centroid in squared L2 distance.
+   */
+  private static int findClosest(float[] vector, int offset, float[] centroids, int firstCentroid, int numCentroids,
+      int dimension) {
+    int closest = 0;
+    float minDistance = Float.MAX_VALUE;
+    for (int c = 0; c < numCentroids; c++) {
+      float distance =
+          VectorSearchUtils.squaredL2Distance(vector, offset, centroids, (firstCentroid + c) * dimension, dimension);
+      if (distance < minDistance) {
+        minDistance = distance;
+        closest = c;
+      }
+    }
+    return closest;
+  }
+
+  private static void subtract(float[] vector, int offset, float[] centroids, int centroidOffset, int dimension) {
+    for (int i = 0; i < dimension; i++) {
+      vector[offset + i] -= centroids[centroidOffset + i];
+    }
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    _vectorsOutputStream.close();
+    FileUtils.deleteQuietly(_vectorsFile);
+  }
+}
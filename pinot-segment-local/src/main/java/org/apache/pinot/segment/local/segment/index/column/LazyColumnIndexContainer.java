@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.index.column;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.spi.ColumnMetadata;
+import org.apache.pinot.segment.spi.index.IndexReader;
+import org.apache.pinot.segment.spi.index.IndexType;
+import org.apache.pinot.segment.spi.index.column.ColumnIndexContainer;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+
+
+/**
+ * Column index container which creates the index readers of the column on first access, for segment directories
+ * fetching the index buffers on access, so that the indexes of a column are only fetched when the column is queried.
+ */
+public final class LazyColumnIndexContainer implements ColumnIndexContainer {
+  private final SegmentDirectory.Reader _segmentReader;
+  private final ColumnMetadata _metadata;
+  private final IndexLoadingConfig _indexLoadingConfig;
+  private volatile PhysicalColumnIndexContainer _indexContainer;
+  // Guarded by this
+  private boolean _closed;
+
+  public LazyColumnIndexContainer(SegmentDirectory.Reader segmentReader, ColumnMetadata metadata,
+      IndexLoadingConfig indexLoadingConfig) {
+    _segmentReader = segmentReader;
+    _metadata = metadata;
+    _indexLoadingConfig = indexLoadingConfig;
+  }
+
+  @Nullable
+  @Override
+  public <I extends IndexReader, T extends IndexType<?, I, ?>> I getIndex(T indexType) {
+    return getIndexContainer().getIndex(indexType);
+  }
+
+  private PhysicalColumnIndexContainer getIndexContainer() {
+    PhysicalColumnIndexContainer indexContainer = _indexContainer;
+    if (indexContainer == null) {
+      synchronized (this) {
+        indexContainer = _indexContainer;
+        if (indexContainer == null) {
+          if (_closed) {
+            throw new IllegalStateException("Indexes for column: " + _metadata.getColumnName() + " are closed");
+          }
+          try {
+            indexContainer = new PhysicalColumnIndexContainer(_segmentReader, _metadata, _indexLoadingConfig);
+          } catch (IOException e) {
+            throw new RuntimeException("Failed to load indexes for column: " + _metadata.getColumnName(), e);
+          }
+          _indexContainer = indexContainer;
+        }
+      }
+    }
+    return indexContainer;
+  }
+
+  @Override
+  public synchronized void close()
+      throws IOException {
+    _closed = true;
+    if (_indexContainer != null) {
+      _indexContainer.close();
+    }
+  }
+}
@@ -272,6 +272,13 @@ public class SegmentV1V2ToV3FormatConverter implements SegmentFormatConverter {
         Files.copy(indexFile.toPath(), v3VectorIndexFile.toPath());
       }
     }
+    // IVF-PQ index is a single file
+    String ivfPqSuffix = V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION;
+    File[] ivfPqIndexFiles = segmentDirectory.listFiles((dir, name) -> name.endsWith(ivfPqSuffix));
+    for (File ivfPqIndexFile : ivfPqIndexFiles) {
+      File v3IvfPqIndexFile = new File(v3Dir, ivfPqIndexFile.getName());
+      Files.copy(ivfPqIndexFile.toPath(), v3IvfPqIndexFile.toPath());
+    }
   }
 
   private void copyNativeTextIndexIfExists(File segmentDirectory, File v3Dir) throws IOException {
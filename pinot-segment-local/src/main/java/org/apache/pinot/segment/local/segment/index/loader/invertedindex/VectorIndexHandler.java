@@ -27,6 +27,7 @@ import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
 import org.apache.pinot.segment.local.segment.index.forward.ForwardIndexType;
 import org.apache.pinot.segment.local.segment.index.loader.BaseIndexHandler;
+import org.apache.pinot.segment.local.segment.index.vector.VectorIndexType;
 import org.apache.pinot.segment.spi.ColumnMetadata;
 import org.apache.pinot.segment.spi.V1Constants;
 import org.apache.pinot.segment.spi.creator.IndexCreationContext;
@@ -61,13 +62,19 @@ public class VectorIndexHandler extends BaseIndexHandler {
   public boolean needUpdateIndices(SegmentDirectory.Reader segmentReader) {
     String segmentName = _segmentDirectory.getSegmentMetadata().getName();
     Set<String> columnsToAddIdx = new HashSet<>(_vectorConfigs.keySet());
-    Set<String> existingColumns = segmentReader.toSegmentDirectory().getColumnsWithIndex(StandardIndexes.vector());
-    // Check if any existing index need to be removed.
+    SegmentDirectory segmentDirectory = segmentReader.toSegmentDirectory();
+    Set<String> existingColumns = segmentDirectory.getColumnsWithIndex(StandardIndexes.vector());
+    // Check if any existing index need to be removed or rebuilt with another vector index type.
     for (String column : existingColumns) {
       if (!columnsToAddIdx.remove(column)) {
         LOGGER.info("Need to remove existing Vector index from segment: {}, column: {}", segmentName, column);
         return true;
       }
+      if (isVectorIndexTypeChanged(segmentDirectory, column)) {
+        LOGGER.info("Need to rebuild existing Vector index with new vector index type for segment: {}, column: {}",
+            segmentName, column);
+        return true;
+      }
     }
     // Check if any new index need to be added.
     for (String column : columnsToAddIdx) {
@@ -86,12 +93,19 @@ public class VectorIndexHandler extends BaseIndexHandler {
     Set<String> columnsToAddIdx = new HashSet<>(_vectorConfigs.keySet());
     // Remove indices not set in table config any more
     String segmentName = _segmentDirectory.getSegmentMetadata().getName();
-    Set<String> existingColumns = segmentWriter.toSegmentDirectory().getColumnsWithIndex(StandardIndexes.vector());
+    SegmentDirectory segmentDirectory = segmentWriter.toSegmentDirectory();
+    Set<String> existingColumns = segmentDirectory.getColumnsWithIndex(StandardIndexes.vector());
     for (String column : existingColumns) {
       if (!columnsToAddIdx.remove(column)) {
         LOGGER.info("Removing existing Vector index from segment: {}, column: {}", segmentName, column);
         segmentWriter.removeIndex(column, StandardIndexes.vector());
         LOGGER.info("Removed existing Vector index from segment: {}, column: {}", segmentName, column);
+      } else if (isVectorIndexTypeChanged(segmentDirectory, column)) {
+        // Remove the index of the previous type so that it is rebuilt with the configured type below
+        LOGGER.info("Removing existing Vector index with previous vector index type from segment: {}, column: {}",
+            segmentName, column);
+        segmentWriter.removeIndex(column, StandardIndexes.vector());
+        columnsToAddIdx.add(column);
       }
     }
     for (String column : columnsToAddIdx) {
@@ -106,6 +120,17 @@ public class VectorIndexHandler extends BaseIndexHandler {
     return columnMetadata != null;
   }
 
+  /**
+   * Returns whether the existing vector index of the column is of another vector index type than the configured one,
+   * e.g. HNSW changed to IVF_PQ. The existing type is identified by the IVF-PQ index file, as for the index readers.
+   */
+  private boolean isVectorIndexTypeChanged(SegmentDirectory segmentDirectory, String column) {
+    File ivfPqIndexFile = SegmentDirectoryPaths.findVectorIvfPqIndexFile(segmentDirectory.getPath().toFile(), column);
+    VectorIndexType.IndexType existingIndexType =
+        ivfPqIndexFile != null ? VectorIndexType.IndexType.IVF_PQ : VectorIndexType.IndexType.HNSW;
+    return existingIndexType != VectorIndexType.getIndexType(_vectorConfigs.get(column));
+  }
+
   private void createVectorIndexForColumn(SegmentDirectory.Writer segmentWriter, ColumnMetadata columnMetadata)
       throws Exception {
     File indexDir = _segmentDirectory.getSegmentMetadata().getIndexDir();
@@ -114,11 +139,12 @@ public class VectorIndexHandler extends BaseIndexHandler {
         _segmentDirectory.getSegmentMetadata().getVersion());
 
     String columnName = columnMetadata.getColumnName();
-    File inProgress =
-        new File(segmentDirectory, columnName
-            + V1Constants.Indexes.VECTOR_V912_HNSW_INDEX_FILE_EXTENSION + ".inprogress");
-    File vectorIndexFile =
-        new File(segmentDirectory, columnName + V1Constants.Indexes.VECTOR_V912_HNSW_INDEX_FILE_EXTENSION);
+    String indexFileExtension =
+        VectorIndexType.IndexType.IVF_PQ.name().equals(_vectorConfigs.get(columnName).getVectorIndexType())
+            ? V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION
+            : V1Constants.Indexes.VECTOR_V912_HNSW_INDEX_FILE_EXTENSION;
+    File inProgress = new File(segmentDirectory, columnName + indexFileExtension + ".inprogress");
+    File vectorIndexFile = new File(segmentDirectory, columnName + indexFileExtension);
 
     if (!inProgress.exists()) {
       // Marker file does not exist, which means last run ended normally.
@@ -209,6 +235,7 @@ public class VectorIndexHandler extends BaseIndexHandler {
       float[] vector = new float[columnMetadata.getMaxNumberOfMultiValues()];
       for (int i = 0; i < numDocs; i++) {
         forwardIndexReader.getFloatMV(i, vector, readerContext);
+        vectorIndexCreator.add(vector);
       }
       vectorIndexCreator.seal();
     }
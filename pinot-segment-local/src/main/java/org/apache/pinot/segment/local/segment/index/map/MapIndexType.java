@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.segment.creator.impl.map.ColumnarMapIndexCreator;
 import org.apache.pinot.segment.local.segment.index.readers.map.ImmutableMapIndexReader;
 import org.apache.pinot.segment.spi.ColumnMetadata;
 import org.apache.pinot.segment.spi.V1Constants;
@@ -103,7 +104,7 @@ public class MapIndexType extends AbstractIndexType<MapIndexConfig, MapIndexRead
           .getConstructor(File.class, String.class, IndexCreationContext.class, MapIndexConfig.class)
           .newInstance(context.getIndexDir(), context.getFieldSpec().getName(), context, indexConfig);
     }
-    throw new IllegalArgumentException("MapIndexCreator class name must be provided");
+    return new ColumnarMapIndexCreator(context.getIndexDir(), context.getFieldSpec().getName(), context, indexConfig);
   }
 
   @Override
@@ -135,7 +136,8 @@ public class MapIndexType extends AbstractIndexType<MapIndexConfig, MapIndexRead
 
     @Override
     protected MapIndexReader createIndexReader(PinotDataBuffer dataBuffer, ColumnMetadata metadata,
-        MapIndexConfig indexConfig) {
+        MapIndexConfig indexConfig)
+        throws IOException {
       if (indexConfig.isDisabled()) {
         return null;
       }
@@ -20,7 +20,9 @@ package org.apache.pinot.segment.local.segment.index.readers.json;
 
 import com.google.common.base.Preconditions;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -41,9 +43,16 @@ import org.apache.pinot.common.request.context.predicate.RangePredicate;
 import org.apache.pinot.common.request.context.predicate.RegexpLikePredicate;
 import org.apache.pinot.common.utils.regex.Pattern;
 import org.apache.pinot.segment.local.segment.creator.impl.inv.json.BaseJsonIndexCreator;
+import org.apache.pinot.segment.local.io.util.PinotDataBitSet;
 import org.apache.pinot.segment.local.segment.index.readers.BitmapInvertedIndexReader;
+import org.apache.pinot.segment.local.segment.index.readers.DoubleDictionary;
+import org.apache.pinot.segment.local.segment.index.readers.FloatDictionary;
+import org.apache.pinot.segment.local.segment.index.readers.IntDictionary;
+import org.apache.pinot.segment.local.segment.index.readers.LongDictionary;
 import org.apache.pinot.segment.local.segment.index.readers.StringDictionary;
+import org.apache.pinot.segment.local.segment.index.readers.forward.FixedBitSVForwardIndexReaderV2;
 import org.apache.pinot.segment.spi.index.creator.JsonIndexCreator;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.segment.spi.index.reader.JsonIndexReader;
 import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 import org.apache.pinot.spi.data.FieldSpec;
@@ -69,19 +78,22 @@ public class ImmutableJsonIndexReader implements JsonIndexReader {
   private final BitmapInvertedIndexReader _invertedIndex;
   private final long _numFlattenedDocs;
   private final PinotDataBuffer _docIdMapping;
+  // Key is the flattened key of the typed path
+  private final Map<String, TypedPathValues> _typedPathValues;
 
   public ImmutableJsonIndexReader(PinotDataBuffer dataBuffer, int numDocs) {
     _numDocs = numDocs;
     _version = dataBuffer.getInt(0);
-    Preconditions.checkState(_version == BaseJsonIndexCreator.VERSION_1 || _version == BaseJsonIndexCreator.VERSION_2,
-        "Unsupported json index version: %s", _version);
+    Preconditions.checkState(_version == BaseJsonIndexCreator.VERSION_1 || _version == BaseJsonIndexCreator.VERSION_2
+        || _version == BaseJsonIndexCreator.VERSION_3, "Unsupported json index version: %s", _version);
 
     int maxValueLength = dataBuffer.getInt(4);
     long dictionaryLength = dataBuffer.getLong(8);
     long invertedIndexLength = dataBuffer.getLong(16);
     long docIdMappingLength = dataBuffer.getLong(24);
 
-    long dictionaryStartOffset = BaseJsonIndexCreator.HEADER_LENGTH;
+    long dictionaryStartOffset = _version == BaseJsonIndexCreator.VERSION_3 ? BaseJsonIndexCreator.HEADER_LENGTH_V3
+        : BaseJsonIndexCreator.HEADER_LENGTH;
     long dictionaryEndOffset = dictionaryStartOffset + dictionaryLength;
     _dictionary =
         new StringDictionary(dataBuffer.view(dictionaryStartOffset, dictionaryEndOffset, ByteOrder.BIG_ENDIAN), 0,
@@ -92,6 +104,63 @@ public class ImmutableJsonIndexReader implements JsonIndexReader {
     long docIdMappingEndOffset = invertedIndexEndOffset + docIdMappingLength;
     _numFlattenedDocs = (docIdMappingLength / Integer.BYTES);
     _docIdMapping = dataBuffer.view(invertedIndexEndOffset, docIdMappingEndOffset, ByteOrder.LITTLE_ENDIAN);
+    if (_version == BaseJsonIndexCreator.VERSION_3) {
+      _typedPathValues = readTypedPathValues(dataBuffer, docIdMappingEndOffset, numDocs);
+    } else {
+      _typedPathValues = Map.of();
+    }
+  }
+
+  private static Map<String, TypedPathValues> readTypedPathValues(PinotDataBuffer dataBuffer, long startOffset,
+      int numDocs) {
+    int headerLength = dataBuffer.getInt(startOffset);
+    ByteBuffer header = dataBuffer.toDirectByteBuffer(startOffset + Integer.BYTES, headerLength, ByteOrder.BIG_ENDIAN);
+    long offset = startOffset + Integer.BYTES + headerLength;
+    int numTypedPaths = header.getInt();
+    Map<String, TypedPathValues> typedPathValues = new HashMap<>(numTypedPaths);
+    for (int i = 0; i < numTypedPaths; i++) {
+      String key = readString(header);
+      FieldSpec.DataType dataType = FieldSpec.DataType.valueOf(readString(header));
+      int cardinality = header.getInt();
+      int numBytesPerEntry = header.getInt();
+      long dictionaryLength = header.getLong();
+      long forwardIndexLength = header.getLong();
+      PinotDataBuffer dictionaryBuffer = dataBuffer.view(offset, offset + dictionaryLength, ByteOrder.BIG_ENDIAN);
+      offset += dictionaryLength;
+      PinotDataBuffer forwardIndexBuffer = dataBuffer.view(offset, offset + forwardIndexLength, ByteOrder.BIG_ENDIAN);
+      offset += forwardIndexLength;
+      Dictionary dictionary;
+      switch (dataType) {
+        case INT:
+          dictionary = new IntDictionary(dictionaryBuffer, cardinality);
+          break;
+        case LONG:
+          dictionary = new LongDictionary(dictionaryBuffer, cardinality);
+          break;
+        case FLOAT:
+          dictionary = new FloatDictionary(dictionaryBuffer, cardinality);
+          break;
+        case DOUBLE:
+          dictionary = new DoubleDictionary(dictionaryBuffer, cardinality);
+          break;
+        case STRING:
+          dictionary = new StringDictionary(dictionaryBuffer, cardinality, numBytesPerEntry);
+          break;
+        default:
+          throw new IllegalStateException("Unsupported data type: " + dataType + " for typed path: " + key);
+      }
+      // Forward index stores dictId + 1, with 0 for the docs without value
+      FixedBitSVForwardIndexReaderV2 forwardIndex = new FixedBitSVForwardIndexReaderV2(forwardIndexBuffer, numDocs,
+          PinotDataBitSet.getNumBitsPerValue(cardinality));
+      typedPathValues.put(key, new TypedPathValues(dictionary, forwardIndex));
+    }
+    return typedPathValues;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
   }
 
   @Override
@@ -177,7 +246,7 @@ public class ImmutableJsonIndexReader implements JsonIndexReader {
     // Support 2 formats:
     // - JSONPath format (e.g. "$.a[1].b"='abc', "$[0]"=1, "$"='abc')
     // - Legacy format (e.g. "a[1].b"='abc')
-    if (_version == BaseJsonIndexCreator.VERSION_2) {
+    if (_version >= BaseJsonIndexCreator.VERSION_2) {
       if (key.startsWith("$")) {
         key = key.substring(1);
       } else {
@@ -422,7 +491,7 @@ public class ImmutableJsonIndexReader implements JsonIndexReader {
     // Support 2 formats:
     // - JSONPath format (e.g. "$.a[1].b"='abc', "$[0]"=1, "$"='abc')
     // - Legacy format (e.g. "a[1].b"='abc')
-    if (_version == BaseJsonIndexCreator.VERSION_2) {
+    if (_version >= BaseJsonIndexCreator.VERSION_2) {
       if (jsonPathKey.startsWith("$")) {
         jsonPathKey = jsonPathKey.substring(1);
       } else {
@@ -537,6 +606,33 @@ public class ImmutableJsonIndexReader implements JsonIndexReader {
     return values;
   }
 
+  @Nullable
+  @Override
+  public Dictionary getTypedValueDictionary(String jsonPathKey) {
+    TypedPathValues typedPathValues = getTypedPathValues(jsonPathKey);
+    return typedPathValues != null ? typedPathValues._dictionary : null;
+  }
+
+  @Override
+  public void readTypedValueDictIds(String jsonPathKey, int[] docIds, int length, int[] dictIdBuffer) {
+    TypedPathValues typedPathValues = getTypedPathValues(jsonPathKey);
+    Preconditions.checkState(typedPathValues != null, "Values of json path: %s are not stored", jsonPathKey);
+    typedPathValues._forwardIndex.readDictIds(docIds, length, dictIdBuffer, null);
+    for (int i = 0; i < length; i++) {
+      dictIdBuffer[i]--;
+    }
+  }
+
+  @Nullable
+  private TypedPathValues getTypedPathValues(String jsonPathKey) {
+    if (_typedPathValues.isEmpty()) {
+      return null;
+    }
+    // Typed paths are configured in JSONPath format, e.g. "$.a.b" is stored under flattened key ".a.b"
+    return _typedPathValues.get(
+        jsonPathKey.startsWith("$") ? jsonPathKey.substring(1) : JsonUtils.KEY_SEPARATOR + jsonPathKey);
+  }
+
   /**
    * For a JSON key path, returns an int array of the range [min, max] spanning all values for the JSON key path
    */
@@ -568,7 +664,7 @@ public class ImmutableJsonIndexReader implements JsonIndexReader {
    */
   private Pair<String, MutableRoaringBitmap> getKeyAndFlattenedDocIds(String key) {
     MutableRoaringBitmap matchingDocIds = null;
-    if (_version == BaseJsonIndexCreator.VERSION_2) {
+    if (_version >= BaseJsonIndexCreator.VERSION_2) {
       // Process the array index within the key if exists
       // E.g. "[*]"=1 -> "."='1'
       // E.g. "[0]"=1 -> ".$index"='0' && "."='1'
@@ -651,4 +747,17 @@ public class ImmutableJsonIndexReader implements JsonIndexReader {
     // NOTE: DO NOT close the PinotDataBuffer here because it is tracked by the caller and might be reused later. The
     // caller is responsible of closing the PinotDataBuffer.
   }
+
+  /**
+   * Sorted dictionary and dictionary-encoded forward index of the values of a typed path.
+   */
+  private static class TypedPathValues {
+    final Dictionary _dictionary;
+    final FixedBitSVForwardIndexReaderV2 _forwardIndex;
+
+    TypedPathValues(Dictionary dictionary, FixedBitSVForwardIndexReaderV2 forwardIndex) {
+      _dictionary = dictionary;
+      _forwardIndex = forwardIndex;
+    }
+  }
 }
@@ -19,24 +19,44 @@
 package org.apache.pinot.segment.local.segment.index.readers.map;
 
 import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.io.util.PinotDataBitSet;
+import org.apache.pinot.segment.local.segment.creator.impl.map.ColumnarMapIndexCreator;
+import org.apache.pinot.segment.local.segment.index.dictionary.DictionaryIndexType;
+import org.apache.pinot.segment.local.segment.index.map.MapKeyIndexReader;
+import org.apache.pinot.segment.local.segment.index.readers.BitSlicedRangeIndexReader;
+import org.apache.pinot.segment.local.segment.index.readers.BitmapInvertedIndexReader;
+import org.apache.pinot.segment.local.segment.index.readers.NullValueVectorReaderImpl;
+import org.apache.pinot.segment.local.segment.index.readers.forward.FixedBitSVForwardIndexReaderV2;
 import org.apache.pinot.segment.local.segment.index.readers.forward.VarByteChunkForwardIndexReaderV4;
 import org.apache.pinot.segment.spi.ColumnMetadata;
 import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.segment.spi.index.DictionaryIndexConfig;
 import org.apache.pinot.segment.spi.index.IndexReader;
 import org.apache.pinot.segment.spi.index.IndexType;
 import org.apache.pinot.segment.spi.index.StandardIndexes;
 import org.apache.pinot.segment.spi.index.creator.MapIndexCreator;
+import org.apache.pinot.segment.spi.index.metadata.ColumnMetadataImpl;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
 import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
 import org.apache.pinot.segment.spi.index.reader.MapIndexReader;
 import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 import org.apache.pinot.segment.spi.partition.PartitionFunction;
 import org.apache.pinot.spi.data.ComplexFieldSpec;
+import org.apache.pinot.spi.data.DimensionFieldSpec;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.utils.MapUtils;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,7 +64,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Reader for map index.
  * The v1 implementation is just bytes.
- *
+ * The v2 implementation (see {@link ColumnarMapIndexCreator}) stores the frequent keys as dense sub-columns, which are
+ * exposed as dictionary-encoded columns with their own indexes through {@link #getKeyIndexes(String)}, and the
+ * remaining keys as serialized maps.
  */
 public class ImmutableMapIndexReader implements MapIndexReader<ForwardIndexReaderContext, IndexReader> {
   private static final Logger LOGGER = LoggerFactory.getLogger(ImmutableMapIndexReader.class);
@@ -53,60 +75,140 @@ public class ImmutableMapIndexReader implements MapIndexReader<ForwardIndexReade
   private final ForwardIndexReader _forwardIndexReader;
   private final FieldSpec _valueFieldSpec;
   private final ColumnMetadata _columnMetadata;
+  private final int _version;
+  private final Map<String, DenseKey> _denseKeys = new LinkedHashMap<>();
+  private final Set<String> _sparseKeys = new HashSet<>();
 
-  public ImmutableMapIndexReader(PinotDataBuffer dataBuffer, ColumnMetadata columnMetadata) {
+  public ImmutableMapIndexReader(PinotDataBuffer dataBuffer, ColumnMetadata columnMetadata)
+      throws IOException {
     int version = dataBuffer.getInt(0);
-    Preconditions.checkState(version == MapIndexCreator.VERSION_1,
-        "Unsupported map index version: %s.  Valid versions are {}", version, MapIndexCreator.VERSION_1);
+    Preconditions.checkState(version == MapIndexCreator.VERSION_1 || version == MapIndexCreator.VERSION_2,
+        "Unsupported map index version: %s.  Valid versions are %s and %s", version, MapIndexCreator.VERSION_1,
+        MapIndexCreator.VERSION_2);
     _dataBuffer = dataBuffer;
     _columnMetadata = columnMetadata;
-    _forwardIndexReader =
-        new VarByteChunkForwardIndexReaderV4(_dataBuffer, FieldSpec.DataType.BYTES, true);
+    _version = version;
     ComplexFieldSpec complexFieldSpec = (ComplexFieldSpec) columnMetadata.getFieldSpec();
     Preconditions.checkState(
         complexFieldSpec.getChildFieldSpec(ComplexFieldSpec.KEY_FIELD).getDataType() == FieldSpec.DataType.STRING,
         "Only String key is supported in Map");
     _valueFieldSpec = complexFieldSpec.getChildFieldSpec(ComplexFieldSpec.VALUE_FIELD);
+    if (version == MapIndexCreator.VERSION_2) {
+      _forwardIndexReader = loadColumnarIndex();
+    } else {
+      _forwardIndexReader = new VarByteChunkForwardIndexReaderV4(_dataBuffer, FieldSpec.DataType.BYTES, true);
+    }
+  }
+
+  /**
+   * Loads the readers of the dense keys, and returns the forward index reader of the sparse keys.
+   */
+  private ForwardIndexReader loadColumnarIndex()
+      throws IOException {
+    int headerLength = _dataBuffer.getInt(Integer.BYTES);
+    long dataOffset = 2L * Integer.BYTES + headerLength;
+    ByteBuffer header = _dataBuffer.toDirectByteBuffer(2L * Integer.BYTES, headerLength, ByteOrder.BIG_ENDIAN);
+    int numDocs = header.getInt();
+    int numDenseKeys = header.getInt();
+    for (int i = 0; i < numDenseKeys; i++) {
+      String key = readString(header);
+      FieldSpec.DataType dataType = FieldSpec.DataType.valueOf(readString(header));
+      int cardinality = header.getInt();
+      int numBytesPerEntry = header.getInt();
+      PinotDataBuffer[] subIndexBuffers = new PinotDataBuffer[ColumnarMapIndexCreator.NUM_SUB_INDEXES];
+      for (int j = 0; j < ColumnarMapIndexCreator.NUM_SUB_INDEXES; j++) {
+        long offset = header.getLong();
+        long length = header.getLong();
+        if (length > 0) {
+          subIndexBuffers[j] = _dataBuffer.view(dataOffset + offset, dataOffset + offset + length);
+        }
+      }
+      _denseKeys.put(key, new DenseKey(key, dataType, numDocs, cardinality, numBytesPerEntry, subIndexBuffers));
+    }
+    int numSparseKeys = header.getInt();
+    for (int i = 0; i < numSparseKeys; i++) {
+      _sparseKeys.add(readString(header));
+    }
+    long sparseOffset = header.getLong();
+    long sparseLength = header.getLong();
+    LOGGER.debug("Loaded map index for column: {} with dense keys: {}", _columnMetadata.getColumnName(),
+        _denseKeys.keySet());
+    return new VarByteChunkForwardIndexReaderV4(
+        _dataBuffer.view(dataOffset + sparseOffset, dataOffset + sparseOffset + sparseLength),
+        FieldSpec.DataType.BYTES, true);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
   }
 
   @Override
-  public void close() {
+  public void close()
+      throws IOException {
     // NOTE: DO NOT close the PinotDataBuffer here because it is tracked by the caller and might be reused later. The
     // caller is responsible of closing the PinotDataBuffer.
+    for (DenseKey denseKey : _denseKeys.values()) {
+      for (IndexReader indexReader : denseKey._indexes.values()) {
+        indexReader.close();
+      }
+    }
+    _forwardIndexReader.close();
   }
 
+  @Nullable
   @Override
   public IndexReader getKeyReader(String key, IndexType type) {
-    throw new RuntimeException("Not implemented");
+    Map<IndexType, IndexReader> keyIndexes = getKeyIndexes(key);
+    return keyIndexes != null ? keyIndexes.get(type) : null;
   }
 
   @Override
   public Set<String> getKeys() {
-    return Set.of();
+    if (_version == MapIndexCreator.VERSION_1) {
+      return Set.of();
+    }
+    Set<String> keys = new HashSet<>(_denseKeys.keySet());
+    keys.addAll(_sparseKeys);
+    return keys;
   }
 
+  /**
+   * Returns the indexes of the dense key, or the forward index extracting the sparse key from the serialized maps, or
+   * {@code null} if the key does not exist in the segment.
+   */
+  @Nullable
   @Override
   public Map<IndexType, IndexReader> getKeyIndexes(String key) {
-    IndexReader fwdIdx = getKeyReader(key, StandardIndexes.forward());
-    if (fwdIdx != null) {
-      return Map.of(StandardIndexes.forward(), getKeyReader(key, StandardIndexes.forward()));
-    } else {
+    DenseKey denseKey = _denseKeys.get(key);
+    if (denseKey != null) {
+      return denseKey._indexes;
+    }
+    if (_version == MapIndexCreator.VERSION_2 && !_sparseKeys.contains(key)) {
       return null;
     }
+    return Map.of(StandardIndexes.forward(), new MapKeyIndexReader(_forwardIndexReader, key, _valueFieldSpec));
   }
 
   @Override
   public FieldSpec getKeyFieldSpec(String key) {
-    return _valueFieldSpec;
+    DenseKey denseKey = _denseKeys.get(key);
+    return denseKey != null ? denseKey._metadata.getFieldSpec() : _valueFieldSpec;
   }
 
   @Override
   public FieldSpec.DataType getKeyStoredType(String key) {
-    return _valueFieldSpec.getDataType();
+    DenseKey denseKey = _denseKeys.get(key);
+    return denseKey != null ? denseKey._forwardIndex.getStoredType() : _valueFieldSpec.getDataType();
   }
 
   @Override
   public ColumnMetadata getKeyMetadata(String key) {
+    DenseKey denseKey = _denseKeys.get(key);
+    if (denseKey != null) {
+      return denseKey._metadata;
+    }
     return new ColumnMetadata() {
       @Override
       public FieldSpec getFieldSpec() {
@@ -208,13 +310,75 @@ public class ImmutableMapIndexReader implements MapIndexReader<ForwardIndexReade
     return ChunkCompressionType.PASS_THROUGH;
   }
 
+  @Nullable
+  @Override
+  public ForwardIndexReaderContext createContext() {
+    return _forwardIndexReader.createContext();
+  }
+
   @Override
   public Map<String, Object> getMap(int docId, ForwardIndexReaderContext mapContext) {
-    return _forwardIndexReader.getMap(docId, mapContext);
+    Map<String, Object> map = _forwardIndexReader.getMap(docId, mapContext);
+    if (_denseKeys.isEmpty()) {
+      return map;
+    }
+    Map<String, Object> result = new HashMap<>(map);
+    for (DenseKey denseKey : _denseKeys.values()) {
+      if (denseKey._nullBitmap == null || !denseKey._nullBitmap.contains(docId)) {
+        result.put(denseKey._key, denseKey._dictionary.get(denseKey._forwardIndex.getDictId(docId, null)));
+      }
+    }
+    return result;
   }
 
   @Override
   public String getString(int docId, ForwardIndexReaderContext context) {
     return MapUtils.toString(getMap(docId, context));
   }
+
+  /**
+   * Readers of a key stored as a dense sub-column.
+   */
+  private static class DenseKey {
+    final String _key;
+    final ColumnMetadata _metadata;
+    final Dictionary _dictionary;
+    final ForwardIndexReader _forwardIndex;
+    final ImmutableRoaringBitmap _nullBitmap;
+    final Map<IndexType, IndexReader> _indexes = new HashMap<>();
+
+    DenseKey(String key, FieldSpec.DataType dataType, int numDocs, int cardinality, int numBytesPerEntry,
+        PinotDataBuffer[] subIndexBuffers)
+        throws IOException {
+      _key = key;
+      int numBitsPerValue = PinotDataBitSet.getNumBitsPerValue(cardinality - 1);
+      ColumnMetadataImpl.Builder metadataBuilder =
+          ColumnMetadataImpl.builder().setFieldSpec(new DimensionFieldSpec(key, dataType, true)).setTotalDocs(numDocs)
+              .setCardinality(cardinality).setHasDictionary(true).setColumnMaxLength(numBytesPerEntry)
+              .setBitsPerElement(numBitsPerValue).setTotalNumberOfEntries(numDocs);
+      _dictionary = DictionaryIndexType.read(subIndexBuffers[ColumnarMapIndexCreator.DICTIONARY],
+          metadataBuilder.build(), DictionaryIndexConfig.DEFAULT);
+      _metadata = metadataBuilder.setMinValue(_dictionary.getMinVal()).setMaxValue(_dictionary.getMaxVal()).build();
+      _forwardIndex = new FixedBitSVForwardIndexReaderV2(subIndexBuffers[ColumnarMapIndexCreator.FORWARD_INDEX],
+          numDocs, numBitsPerValue);
+      _indexes.put(StandardIndexes.dictionary(), _dictionary);
+      _indexes.put(StandardIndexes.forward(), _forwardIndex);
+      PinotDataBuffer nullValueVectorBuffer = subIndexBuffers[ColumnarMapIndexCreator.NULL_VALUE_VECTOR];
+      if (nullValueVectorBuffer != null) {
+        NullValueVectorReaderImpl nullValueVector = new NullValueVectorReaderImpl(nullValueVectorBuffer);
+        _nullBitmap = nullValueVector.getNullBitmap();
+        _indexes.put(StandardIndexes.nullValueVector(), nullValueVector);
+      } else {
+        _nullBitmap = null;
+      }
+      PinotDataBuffer invertedIndexBuffer = subIndexBuffers[ColumnarMapIndexCreator.INVERTED_INDEX];
+      if (invertedIndexBuffer != null) {
+        _indexes.put(StandardIndexes.inverted(), new BitmapInvertedIndexReader(invertedIndexBuffer, cardinality));
+      }
+      PinotDataBuffer rangeIndexBuffer = subIndexBuffers[ColumnarMapIndexCreator.RANGE_INDEX];
+      if (rangeIndexBuffer != null) {
+        _indexes.put(StandardIndexes.range(), new BitSlicedRangeIndexReader(rangeIndexBuffer, _metadata));
+      }
+    }
+  }
 }
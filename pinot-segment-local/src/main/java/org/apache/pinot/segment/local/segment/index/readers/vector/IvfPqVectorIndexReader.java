@@ -0,0 +1,243 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.index.readers.vector;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.segment.creator.impl.vector.IvfPqVectorIndexCreator;
+import org.apache.pinot.segment.local.segment.index.vector.VectorSearchUtils;
+import org.apache.pinot.segment.local.segment.index.vector.VectorSearchUtils.NearestNeighbors;
+import org.apache.pinot.segment.spi.index.creator.VectorIndexConfig;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
+import org.apache.pinot.segment.spi.index.reader.VectorIndexReader;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Reader for the IVF-PQ vector index created by {@link IvfPqVectorIndexCreator}.
+ * <p>The centroids and codebooks are loaded on heap, and the doc ids and codes are read from the memory-mapped buffer.
+ * A search probes the {@code nprobe} lists with the closest centroids, and ranks their docs with the distances
+ * approximated from the codes (asymmetric distance computation with per-query lookup tables). When the raw forward
+ * index is available, the top {@code topK * rerankFactor} candidates are re-ranked with the exact distances.
+ * <p>This class is thread-safe.
+ */
+public class IvfPqVectorIndexReader implements VectorIndexReader {
+  // Number of lists to probe, can be overridden per query
+  public static final String NUM_PROBES_KEY = "nprobe";
+  // Number of candidates to re-rank with the exact distance as a multiple of topK, 0 to disable re-ranking
+  public static final String RERANK_FACTOR_KEY = "rerankFactor";
+  public static final int DEFAULT_NUM_PROBES = 8;
+  public static final int DEFAULT_RERANK_FACTOR = 4;
+
+  private final String _column;
+  private final PinotDataBuffer _dataBuffer;
+  private final ForwardIndexReader _forwardIndexReader;
+  private final Dictionary _dictionary;
+  private final int _numProbes;
+  private final int _rerankFactor;
+
+  private final int _dimension;
+  private final boolean _innerProduct;
+  private final boolean _normalized;
+  private final int _numLists;
+  private final int _numSubQuantizers;
+  private final int _subDimension;
+  private final int _codebookSize;
+  private final float[] _centroids;
+  private final float[] _codebooks;
+  private final int[] _listOffsets;
+  private final long _docIdsOffset;
+  private final long _codesOffset;
+
+  /**
+   * @param dataBuffer buffer of the index file, closed with the reader
+   * @param forwardIndexReader raw forward index of the column to re-rank the candidates, closed with the reader
+   * @param dictionary dictionary of the column when the forward index is dictionary encoded, closed with the reader
+   */
+  public IvfPqVectorIndexReader(String column, PinotDataBuffer dataBuffer, VectorIndexConfig config,
+      @Nullable ForwardIndexReader forwardIndexReader, @Nullable Dictionary dictionary) {
+    _column = column;
+    _dataBuffer = dataBuffer;
+    Preconditions.checkArgument(forwardIndexReader == null || !forwardIndexReader.isDictionaryEncoded()
+        || dictionary != null, "Dictionary is required to re-rank with dictionary encoded forward index");
+    _forwardIndexReader = forwardIndexReader;
+    _dictionary = dictionary;
+    Map<String, String> properties = config.getProperties();
+    _numProbes = Integer.parseInt(properties.getOrDefault(NUM_PROBES_KEY, String.valueOf(DEFAULT_NUM_PROBES)));
+    _rerankFactor =
+        Integer.parseInt(properties.getOrDefault(RERANK_FACTOR_KEY, String.valueOf(DEFAULT_RERANK_FACTOR)));
+
+    int version = dataBuffer.getInt(0);
+    Preconditions.checkState(version == IvfPqVectorIndexCreator.VERSION, "Unsupported IVF-PQ index version: %s",
+        version);
+    _dimension = dataBuffer.getInt(4);
+    _innerProduct = dataBuffer.getInt(8) == IvfPqVectorIndexCreator.DISTANCE_TYPE_INNER_PRODUCT;
+    _normalized = dataBuffer.getInt(12) == 1;
+    int numDocs = dataBuffer.getInt(16);
+    _numLists = dataBuffer.getInt(20);
+    _numSubQuantizers = dataBuffer.getInt(24);
+    _subDimension = dataBuffer.getInt(28);
+    _codebookSize = dataBuffer.getInt(32);
+
+    long offset = IvfPqVectorIndexCreator.HEADER_LENGTH;
+    _centroids = new float[_numLists * _dimension];
+    for (int i = 0; i < _centroids.length; i++) {
+      _centroids[i] = dataBuffer.getFloat(offset);
+      offset += Float.BYTES;
+    }
+    _codebooks = new float[_numSubQuantizers * _codebookSize * _subDimension];
+    for (int i = 0; i < _codebooks.length; i++) {
+      _codebooks[i] = dataBuffer.getFloat(offset);
+      offset += Float.BYTES;
+    }
+    _listOffsets = new int[_numLists + 1];
+    for (int i = 0; i <= _numLists; i++) {
+      _listOffsets[i] = dataBuffer.getInt(offset);
+      offset += Integer.BYTES;
+    }
+    _docIdsOffset = offset;
+    _codesOffset = offset + (long) numDocs * Integer.BYTES;
+  }
+
+  @Override
+  public MutableRoaringBitmap getDocIds(float[] vector, int topK) {
+    return getDocIds(vector, topK, _numProbes);
+  }
+
+  @Override
+  public MutableRoaringBitmap getDocIds(float[] vector, int topK, int numProbes) {
+    Preconditions.checkArgument(vector.length == _dimension, "Query vector of length: %s does not match dimension: %s",
+        vector.length, _dimension);
+    if (_numLists == 0 || topK <= 0) {
+      return new MutableRoaringBitmap();
+    }
+    float[] query = vector;
+    if (_normalized) {
+      query = vector.clone();
+      VectorSearchUtils.normalize(query);
+    }
+
+    // Find the lists to probe
+    NearestNeighbors lists = new NearestNeighbors(Math.max(1, Math.min(numProbes, _numLists)));
+    for (int listId = 0; listId < _numLists; listId++) {
+      lists.offer(listId, centroidDistance(query, listId));
+    }
+
+    // Rank the docs within the lists with the approximate distances
+    boolean rerank = _forwardIndexReader != null && _rerankFactor > 0;
+    NearestNeighbors candidates = new NearestNeighbors(rerank ? topK * _rerankFactor : topK);
+    float[] distanceTable = new float[_numSubQuantizers * _codebookSize];
+    float[] residual = new float[_dimension];
+    if (_innerProduct) {
+      // The inner product with the residual does not depend on the list
+      computeDistanceTable(query, distanceTable);
+    }
+    for (int i = 0; i < lists.size(); i++) {
+      int listId = lists.getId(i);
+      float baseDistance;
+      if (_innerProduct) {
+        baseDistance = centroidDistance(query, listId);
+      } else {
+        int centroidOffset = listId * _dimension;
+        for (int j = 0; j < _dimension; j++) {
+          residual[j] = query[j] - _centroids[centroidOffset + j];
+        }
+        computeDistanceTable(residual, distanceTable);
+        baseDistance = 0;
+      }
+      int end = _listOffsets[listId + 1];
+      for (int position = _listOffsets[listId]; position < end; position++) {
+        long codeOffset = _codesOffset + (long) position * _numSubQuantizers;
+        float distance = baseDistance;
+        for (int m = 0; m < _numSubQuantizers; m++) {
+          distance += distanceTable[m * _codebookSize + (_dataBuffer.getByte(codeOffset + m) & 0xFF)];
+        }
+        candidates.offer(_dataBuffer.getInt(_docIdsOffset + (long) position * Integer.BYTES), distance);
+      }
+    }
+    if (!rerank) {
+      return candidates.toBitmap();
+    }
+    return rerank(query, candidates, topK);
+  }
+
+  private float centroidDistance(float[] query, int listId) {
+    int centroidOffset = listId * _dimension;
+    return _innerProduct ? -VectorSearchUtils.dotProduct(query, 0, _centroids, centroidOffset, _dimension)
+        : VectorSearchUtils.squaredL2Distance(query, 0, _centroids, centroidOffset, _dimension);
+  }
+
+  /**
+   * Computes the distance between each sub-vector of the query (or query residual) and each codeword.
+   */
+  private void computeDistanceTable(float[] query, float[] distanceTable) {
+    for (int m = 0; m < _numSubQuantizers; m++) {
+      int queryOffset = m * _subDimension;
+      for (int code = 0; code < _codebookSize; code++) {
+        int codewordOffset = (m * _codebookSize + code) * _subDimension;
+        distanceTable[m * _codebookSize + code] =
+            _innerProduct ? -VectorSearchUtils.dotProduct(query, queryOffset, _codebooks, codewordOffset, _subDimension)
+                : VectorSearchUtils.squaredL2Distance(query, queryOffset, _codebooks, codewordOffset, _subDimension);
+      }
+    }
+  }
+
+  private MutableRoaringBitmap rerank(float[] query, NearestNeighbors candidates, int topK) {
+    NearestNeighbors topKNeighbors = new NearestNeighbors(topK);
+    float[] vector = new float[_dimension];
+    int[] dictIds = _dictionary != null ? new int[_dimension] : null;
+    try (ForwardIndexReaderContext context = _forwardIndexReader.createContext()) {
+      for (int i = 0; i < candidates.size(); i++) {
+        int docId = candidates.getId(i);
+        if (_forwardIndexReader.isDictionaryEncoded()) {
+          _forwardIndexReader.getDictIdMV(docId, dictIds, context);
+          for (int j = 0; j < _dimension; j++) {
+            vector[j] = _dictionary.getFloatValue(dictIds[j]);
+          }
+        } else {
+          _forwardIndexReader.getFloatMV(docId, vector, context);
+        }
+        if (_normalized) {
+          VectorSearchUtils.normalize(vector);
+        }
+        topKNeighbors.offer(docId, VectorSearchUtils.distance(query, vector, _innerProduct));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Caught exception while re-ranking the IVF-PQ candidates for column: " + _column, e);
+    }
+    return topKNeighbors.toBitmap();
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    if (_forwardIndexReader != null) {
+      _forwardIndexReader.close();
+    }
+    if (_dictionary != null) {
+      _dictionary.close();
+    }
+    _dataBuffer.close();
+  }
+}
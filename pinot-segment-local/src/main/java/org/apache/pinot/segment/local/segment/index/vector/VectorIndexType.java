@@ -24,10 +24,15 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.realtime.impl.vector.MutableFlatVectorIndex;
 import org.apache.pinot.segment.local.realtime.impl.vector.MutableVectorIndex;
 import org.apache.pinot.segment.local.segment.creator.impl.vector.HnswVectorIndexCreator;
+import org.apache.pinot.segment.local.segment.creator.impl.vector.IvfPqVectorIndexCreator;
+import org.apache.pinot.segment.local.segment.index.dictionary.DictionaryIndexType;
+import org.apache.pinot.segment.local.segment.index.forward.ForwardIndexType;
 import org.apache.pinot.segment.local.segment.index.loader.invertedindex.VectorIndexHandler;
 import org.apache.pinot.segment.local.segment.index.readers.vector.HnswVectorIndexReader;
+import org.apache.pinot.segment.local.segment.index.readers.vector.IvfPqVectorIndexReader;
 import org.apache.pinot.segment.spi.ColumnMetadata;
 import org.apache.pinot.segment.spi.V1Constants;
 import org.apache.pinot.segment.spi.creator.IndexCreationContext;
@@ -43,8 +48,12 @@ import org.apache.pinot.segment.spi.index.creator.VectorIndexConfig;
 import org.apache.pinot.segment.spi.index.creator.VectorIndexCreator;
 import org.apache.pinot.segment.spi.index.mutable.MutableIndex;
 import org.apache.pinot.segment.spi.index.mutable.provider.MutableIndexContext;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
 import org.apache.pinot.segment.spi.index.reader.VectorIndexReader;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
 import org.apache.pinot.spi.config.table.FieldConfig;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.data.FieldSpec;
@@ -53,7 +62,11 @@ import org.apache.pinot.spi.data.Schema;
 
 /**
  * Index type for vector columns.
- * Currently only supports for float array columns and the supported vector index type is: HNSW.
+ * Currently only supports for float array columns and the supported vector index types are:
+ * <ul>
+ *   <li>HNSW: Lucene based graph index on the full precision vectors</li>
+ *   <li>IVF_PQ: native inverted file index on the product quantized vectors, with re-ranking on the forward index</li>
+ * </ul>
  *
  */
 public class VectorIndexType extends AbstractIndexType<VectorIndexConfig, VectorIndexReader, VectorIndexCreator> {
@@ -90,10 +103,22 @@ public class VectorIndexType extends AbstractIndexType<VectorIndexConfig, Vector
       throws IOException {
     Preconditions.checkState(context.getFieldSpec().getDataType() == FieldSpec.DataType.FLOAT && !context.getFieldSpec()
         .isSingleValueField(), "Vector index is currently only supported on float array columns");
-    // TODO: Support more vector index types.
-    Preconditions.checkState("HNSW".equals(indexConfig.getVectorIndexType()),
-        "Unsupported vector index type: %s, only 'HNSW' is support", indexConfig.getVectorIndexType());
-    return new HnswVectorIndexCreator(context.getFieldSpec().getName(), context.getIndexDir(), indexConfig);
+    String column = context.getFieldSpec().getName();
+    switch (getIndexType(indexConfig)) {
+      case HNSW:
+        return new HnswVectorIndexCreator(column, context.getIndexDir(), indexConfig);
+      case IVF_PQ:
+        return new IvfPqVectorIndexCreator(column, context.getIndexDir(), indexConfig);
+      default:
+        throw new IllegalStateException("Unsupported vector index type: " + indexConfig.getVectorIndexType());
+    }
+  }
+
+  public static IndexType getIndexType(VectorIndexConfig indexConfig) {
+    String vectorIndexType = indexConfig.getVectorIndexType();
+    Preconditions.checkState("HNSW".equals(vectorIndexType) || "IVF_PQ".equals(vectorIndexType),
+        "Unsupported vector index type: %s, only 'HNSW' and 'IVF_PQ' are supported", vectorIndexType);
+    return IndexType.valueOf(vectorIndexType);
   }
 
   @Override
@@ -111,7 +136,8 @@ public class VectorIndexType extends AbstractIndexType<VectorIndexConfig, Vector
   public List<String> getFileExtensions(@Nullable ColumnMetadata columnMetadata) {
     return List.of(V1Constants.Indexes.VECTOR_INDEX_FILE_EXTENSION,
         V1Constants.Indexes.VECTOR_V99_INDEX_FILE_EXTENSION,
-        V1Constants.Indexes.VECTOR_V912_INDEX_FILE_EXTENSION);
+        V1Constants.Indexes.VECTOR_V912_INDEX_FILE_EXTENSION,
+        V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION);
   }
 
   private static class ReaderFactory implements IndexReaderFactory<VectorIndexReader> {
@@ -132,8 +158,33 @@ public class VectorIndexType extends AbstractIndexType<VectorIndexConfig, Vector
       File segmentDir = segmentReader.toSegmentDirectory().getPath().toFile();
 
       VectorIndexConfig indexConfig = fieldIndexConfigs.getConfig(StandardIndexes.vector());
+      // Read the index type from the existing file so that the index keeps working until it is rebuilt
+      File ivfPqIndexFile = SegmentDirectoryPaths.findVectorIvfPqIndexFile(segmentDir, metadata.getColumnName());
+      if (ivfPqIndexFile != null) {
+        return createIvfPqVectorIndexReader(segmentReader, metadata, indexConfig, ivfPqIndexFile);
+      }
       return new HnswVectorIndexReader(metadata.getColumnName(), segmentDir, metadata.getTotalDocs(), indexConfig);
     }
+
+    private static IvfPqVectorIndexReader createIvfPqVectorIndexReader(SegmentDirectory.Reader segmentReader,
+        ColumnMetadata metadata, VectorIndexConfig indexConfig, File indexFile) {
+      String column = metadata.getColumnName();
+      try {
+        // Forward index (and dictionary) is used to re-rank the candidates with the exact distances
+        ForwardIndexReader<?> forwardIndexReader = null;
+        Dictionary dictionary = null;
+        if (segmentReader.hasIndexFor(column, StandardIndexes.forward())) {
+          forwardIndexReader = ForwardIndexType.read(segmentReader, metadata);
+          if (forwardIndexReader.isDictionaryEncoded()) {
+            dictionary = DictionaryIndexType.read(segmentReader, metadata);
+          }
+        }
+        return new IvfPqVectorIndexReader(column, PinotDataBuffer.mapReadOnlyBigEndianFile(indexFile), indexConfig,
+            forwardIndexReader, dictionary);
+      } catch (IOException e) {
+        throw new RuntimeException("Caught exception while loading the IVF-PQ index for column: " + column, e);
+      }
+    }
   }
 
   @Nullable
@@ -147,10 +198,13 @@ public class VectorIndexType extends AbstractIndexType<VectorIndexConfig, Vector
       return null;
     }
 
+    if (IndexType.IVF_PQ.name().equals(config.getVectorIndexType())) {
+      return new MutableFlatVectorIndex(config);
+    }
     return new MutableVectorIndex(context.getSegmentName(), context.getFieldSpec().getName(), config);
   }
 
   public enum IndexType {
-    HNSW
+    HNSW, IVF_PQ
   }
 }
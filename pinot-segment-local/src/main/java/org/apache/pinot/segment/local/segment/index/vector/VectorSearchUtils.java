@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.index.vector;
+
+import org.apache.pinot.segment.spi.index.creator.VectorIndexConfig.VectorDistanceFunction;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Utils for the native (non-Lucene) vector indexes.
+ * <p>All the distances are computed such that lower distance means closer vectors: squared L2 distance for EUCLIDEAN,
+ * and negative inner product for INNER_PRODUCT, DOT_PRODUCT and COSINE (on normalized vectors).
+ */
+public class VectorSearchUtils {
+  private VectorSearchUtils() {
+  }
+
+  /**
+   * Returns whether the distance is computed as negative inner product (instead of squared L2 distance).
+   */
+  public static boolean isInnerProduct(VectorDistanceFunction distanceFunction) {
+    return distanceFunction != VectorDistanceFunction.EUCLIDEAN;
+  }
+
+  /**
+   * Returns whether the vectors should be normalized before computing the distance.
+   */
+  public static boolean isNormalized(VectorDistanceFunction distanceFunction) {
+    return distanceFunction == VectorDistanceFunction.COSINE;
+  }
+
+  /**
+   * Normalizes the vector in place. Zero vector is kept as is.
+   */
+  public static void normalize(float[] vector) {
+    float norm = (float) Math.sqrt(dotProduct(vector, 0, vector, 0, vector.length));
+    if (norm > 0) {
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] /= norm;
+      }
+    }
+  }
+
+  public static float squaredL2Distance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+    float distance = 0;
+    for (int i = 0; i < length; i++) {
+      float diff = a[aOffset + i] - b[bOffset + i];
+      distance += diff * diff;
+    }
+    return distance;
+  }
+
+  public static float dotProduct(float[] a, int aOffset, float[] b, int bOffset, int length) {
+    float dotProduct = 0;
+    for (int i = 0; i < length; i++) {
+      dotProduct += a[aOffset + i] * b[bOffset + i];
+    }
+    return dotProduct;
+  }
+
+  public static float distance(float[] a, float[] b, boolean innerProduct) {
+    return innerProduct ? -dotProduct(a, 0, b, 0, a.length) : squaredL2Distance(a, 0, b, 0, a.length);
+  }
+
+  /**
+   * Bounded max-heap on the distance to keep the given number of closest neighbors.
+   */
+  public static class NearestNeighbors {
+    private final int _capacity;
+    private final int[] _ids;
+    private final float[] _distances;
+    private int _size;
+
+    public NearestNeighbors(int capacity) {
+      _capacity = capacity;
+      _ids = new int[capacity];
+      _distances = new float[capacity];
+    }
+
+    public int size() {
+      return _size;
+    }
+
+    /**
+     * Returns the id at the given position of the heap. The ids are not sorted by distance.
+     */
+    public int getId(int index) {
+      return _ids[index];
+    }
+
+    /**
+     * Adds the neighbor if it is closer than the farthest neighbor kept.
+     */
+    public void offer(int id, float distance) {
+      if (_size < _capacity) {
+        // Sift up
+        int index = _size++;
+        while (index > 0) {
+          int parent = (index - 1) >>> 1;
+          if (_distances[parent] >= distance) {
+            break;
+          }
+          _ids[index] = _ids[parent];
+          _distances[index] = _distances[parent];
+          index = parent;
+        }
+        _ids[index] = id;
+        _distances[index] = distance;
+      } else if (_capacity > 0 && distance < _distances[0]) {
+        // Replace the root and sift down
+        int index = 0;
+        while (true) {
+          int child = 2 * index + 1;
+          if (child >= _size) {
+            break;
+          }
+          if (child + 1 < _size && _distances[child + 1] > _distances[child]) {
+            child++;
+          }
+          if (_distances[child] <= distance) {
+            break;
+          }
+          _ids[index] = _ids[child];
+          _distances[index] = _distances[child];
+          index = child;
+        }
+        _ids[index] = id;
+        _distances[index] = distance;
+      }
+    }
+
+    public MutableRoaringBitmap toBitmap() {
+      MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+      for (int i = 0; i < _size; i++) {
+        bitmap.add(_ids[i]);
+      }
+      return bitmap;
+    }
+  }
+}
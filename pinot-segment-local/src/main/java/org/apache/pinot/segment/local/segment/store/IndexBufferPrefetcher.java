@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+
+
+/**
+ * Asynchronous read-ahead of the mmapped index buffers of a segment, which implements the prefetch hooks of the
+ * {@link org.apache.pinot.segment.spi.FetchContext} for the local segment directories. The pages of the buffers are
+ * touched on a bounded thread pool shared by all the segments, so that the page faults are taken off the query threads
+ * while the segments are still being pruned. Prefetching is best-effort: the requests beyond the capacity of the pool
+ * are dropped, and the pending requests are cancelled when the fetch context is released.
+ *
+ * <p>The buffers are unmapped when the segment directory is closed, so {@link #close()} must be called before that to
+ * stop and wait for the in-flight read-ahead of the segment.
+ */
+class IndexBufferPrefetcher implements Closeable {
+  private static final int PAGE_SIZE_BYTES = 4096;
+  private static final int NUM_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+  private static final int MAX_PENDING_TASKS = 1024;
+  private static final ExecutorService EXECUTOR =
+      new ThreadPoolExecutor(NUM_THREADS, NUM_THREADS, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(MAX_PENDING_TASKS),
+          new ThreadFactoryBuilder().setNameFormat("index-prefetch-%d").setDaemon(true).build(),
+          new ThreadPoolExecutor.AbortPolicy());
+
+  private final ExecutorService _executor;
+  private final Map<UUID, List<Future<?>>> _pendingFetches = new ConcurrentHashMap<>();
+  // Read lock is held while touching the buffers, write lock is taken on close to wait for the in-flight read-ahead
+  private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+  private volatile boolean _closed;
+
+  IndexBufferPrefetcher() {
+    this(EXECUTOR);
+  }
+
+  @VisibleForTesting
+  IndexBufferPrefetcher(ExecutorService executor) {
+    _executor = executor;
+  }
+
+  /**
+   * Schedules the read-ahead of the given buffers for the fetch.
+   */
+  void prefetch(UUID fetchId, List<PinotDataBuffer> buffers) {
+    if (_closed || buffers.isEmpty()) {
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<>(buffers.size());
+    for (PinotDataBuffer buffer : buffers) {
+      try {
+        futures.add(_executor.submit(() -> touchPages(buffer)));
+      } catch (RejectedExecutionException e) {
+        // The pool is saturated, and the remaining buffers will be paged in on access
+        break;
+      }
+    }
+    _pendingFetches.merge(fetchId, futures, (existing, added) -> {
+      List<Future<?>> merged = new ArrayList<>(existing);
+      merged.addAll(added);
+      return merged;
+    });
+  }
+
+  /**
+   * Cancels the read-ahead of the fetch which is not completed yet.
+   */
+  void release(UUID fetchId) {
+    List<Future<?>> futures = _pendingFetches.remove(fetchId);
+    if (futures != null) {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private void touchPages(PinotDataBuffer buffer) {
+    if (!_lock.readLock().tryLock()) {
+      // The segment is being closed
+      return;
+    }
+    long numBytesTouched = 0;
+    try {
+      long size = buffer.size();
+      for (long pos = 0; pos < size; pos += PAGE_SIZE_BYTES) {
+        if (_closed || Thread.currentThread().isInterrupted()) {
+          break;
+        }
+        buffer.getByte(pos);
+        numBytesTouched = Math.min(pos + PAGE_SIZE_BYTES, size);
+      }
+    } finally {
+      _lock.readLock().unlock();
+    }
+    if (numBytesTouched > 0) {
+      ServerMetrics.get().addMeteredGlobalValue(ServerMeter.INDEX_BUFFER_PREFETCHED_BYTES, numBytesTouched);
+    }
+  }
+
+  @VisibleForTesting
+  int getNumPendingFetches() {
+    return _pendingFetches.size();
+  }
+
+  @Override
+  public void close() {
+    _closed = true;
+    for (UUID fetchId : _pendingFetches.keySet()) {
+      release(fetchId);
+    }
+    // Wait for the in-flight read-ahead, which stops at the next page after seeing the closed flag
+    _lock.writeLock().lock();
+    _lock.writeLock().unlock();
+  }
+}
@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.filesystem.PinotFS;
+import org.apache.pinot.spi.filesystem.PinotFSFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Size bounded local disk cache for the index buffers fetched by byte range from the deep store, shared by all the
+ * {@link RemoteSegmentDirectory} on the server.
+ *
+ * <p>Each cached buffer is kept in its own file under the cache directory and memory mapped. An entry is pinned while
+ * it is in use, i.e. while an index reader refers to its buffer or while a query fetch context holds it, and only the
+ * unpinned entries are evicted, in least recently used order, once the cached bytes exceed the capacity. The capacity
+ * is thus a soft limit when the pinned entries alone exceed it.
+ *
+ * <p>The cache directory is cleaned up when the cache is created, as the cached files are not tracked across restarts.
+ */
+public class RemoteIndexBufferCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RemoteIndexBufferCache.class);
+  private static final String BUFFER_FILE_SUFFIX = ".buf";
+  private static final String TMP_FILE_SUFFIX = ".tmp";
+
+  private final File _cacheDir;
+  private final long _capacityBytes;
+  private final ExecutorService _fetchExecutor;
+  private final AtomicLong _nextFileId = new AtomicLong();
+  // Access ordered so that the iteration starts from the least recently used entry, guarded by this
+  private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long _sizeBytes;
+
+  public RemoteIndexBufferCache(File cacheDir, long capacityBytes, int numFetchThreads)
+      throws IOException {
+    Preconditions.checkArgument(capacityBytes > 0, "Cache capacity must be positive, got: %s", capacityBytes);
+    Preconditions.checkArgument(numFetchThreads > 0, "Number of fetch threads must be positive, got: %s",
+        numFetchThreads);
+    _cacheDir = cacheDir;
+    _capacityBytes = capacityBytes;
+    FileUtils.deleteQuietly(cacheDir);
+    FileUtils.forceMkdir(cacheDir);
+    _fetchExecutor = Executors.newFixedThreadPool(numFetchThreads,
+        new ThreadFactoryBuilder().setNameFormat("remote-index-fetch-%d").setDaemon(true).build());
+    LOGGER.info("Created remote index buffer cache in: {} with capacity: {} bytes", cacheDir, capacityBytes);
+  }
+
+  /**
+   * Pins the buffer for the given key, and blocks until it is fetched if it is not cached yet. The returned entry must
+   * be released with {@link #release(Entry)} once the buffer is no longer used.
+   */
+  Entry acquire(String key, URI uri, long offset, long size)
+      throws IOException {
+    Entry entry = pin(key, uri, offset, size, false);
+    try {
+      entry.getBuffer();
+    } catch (IOException e) {
+      release(entry);
+      throw e;
+    }
+    return entry;
+  }
+
+  /**
+   * Pins the buffer for the given key, and starts fetching it in the background if it is not cached yet. The returned
+   * entry must be released with {@link #release(Entry)} once the buffer is no longer needed.
+   */
+  Entry prefetch(String key, URI uri, long offset, long size) {
+    return pin(key, uri, offset, size, true);
+  }
+
+  /**
+   * Unpins the entry, which makes it evictable once it is not pinned by anyone else.
+   */
+  synchronized void release(Entry entry) {
+    Preconditions.checkState(entry._pinCount > 0, "Entry: %s is not pinned", entry._key);
+    entry._pinCount--;
+    evictIfNeeded();
+  }
+
+  /**
+   * Removes the unpinned entries with the given key prefix, e.g. when the segment is deleted from the server.
+   */
+  synchronized void invalidate(String keyPrefix) {
+    Iterator<Entry> iterator = _entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry._key.startsWith(keyPrefix) && entry._pinCount == 0 && entry._future.isDone()) {
+        iterator.remove();
+        removeEntry(entry);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getSizeBytes() {
+    return _sizeBytes;
+  }
+
+  @VisibleForTesting
+  synchronized boolean contains(String key) {
+    return _entries.containsKey(key);
+  }
+
+  private Entry pin(String key, URI uri, long offset, long size, boolean async) {
+    Entry entry;
+    boolean needFetch = false;
+    synchronized (this) {
+      entry = _entries.get(key);
+      if (entry == null) {
+        entry = new Entry(key, new File(_cacheDir, _nextFileId.getAndIncrement() + BUFFER_FILE_SUFFIX), size);
+        _entries.put(key, entry);
+        _sizeBytes += size;
+        needFetch = true;
+      }
+      entry._pinCount++;
+      if (needFetch) {
+        evictIfNeeded();
+      }
+    }
+    if (needFetch) {
+      Entry entryToFetch = entry;
+      if (async) {
+        _fetchExecutor.execute(() -> fetch(entryToFetch, uri, offset));
+      } else {
+        fetch(entryToFetch, uri, offset);
+      }
+    }
+    return entry;
+  }
+
+  private void fetch(Entry entry, URI uri, long offset) {
+    File tmpFile = new File(_cacheDir, entry._file.getName() + TMP_FILE_SUFFIX);
+    try {
+      String scheme = uri.getScheme() != null ? uri.getScheme() : PinotFSFactory.LOCAL_PINOT_FS_SCHEME;
+      PinotFS pinotFS = PinotFSFactory.create(scheme);
+      long startTimeMs = System.currentTimeMillis();
+      try (InputStream inputStream = pinotFS.open(uri, offset, entry._size);
+          OutputStream outputStream = new FileOutputStream(tmpFile)) {
+        long numBytesCopied = IOUtils.copyLarge(inputStream, outputStream);
+        if (numBytesCopied != entry._size) {
+          throw new IOException(
+              String.format("Fetched %d bytes instead of %d bytes from: %s at offset: %d", numBytesCopied,
+                  entry._size, uri, offset));
+        }
+      }
+      Files.move(tmpFile.toPath(), entry._file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      // Backward-compatible: index file is always big-endian
+      PinotDataBuffer buffer = PinotDataBuffer.mapFile(entry._file, true, 0, entry._size, ByteOrder.BIG_ENDIAN,
+          getClass().getSimpleName() + "." + entry._key);
+      LOGGER.debug("Fetched {} bytes for: {} from: {} at offset: {} in {}ms", entry._size, entry._key, uri, offset,
+          System.currentTimeMillis() - startTimeMs);
+      entry._future.complete(buffer);
+    } catch (Throwable t) {
+      LOGGER.error("Failed to fetch: {} from: {} at offset: {}", entry._key, uri, offset, t);
+      FileUtils.deleteQuietly(tmpFile);
+      FileUtils.deleteQuietly(entry._file);
+      synchronized (this) {
+        // Allow the next access to retry the fetch
+        if (_entries.remove(entry._key, entry)) {
+          _sizeBytes -= entry._size;
+        }
+      }
+      entry._future.completeExceptionally(t);
+    }
+  }
+
+  // Must be called while holding the lock
+  private void evictIfNeeded() {
+    Iterator<Entry> iterator = _entries.values().iterator();
+    while (_sizeBytes > _capacityBytes && iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry._pinCount == 0 && entry._future.isDone()) {
+        iterator.remove();
+        removeEntry(entry);
+      }
+    }
+  }
+
+  // Must be called while holding the lock, after removing the entry from the map
+  private void removeEntry(Entry entry) {
+    _sizeBytes -= entry._size;
+    PinotDataBuffer buffer = entry._future.getNow(null);
+    if (buffer != null) {
+      try {
+        buffer.close();
+      } catch (IOException e) {
+        LOGGER.warn("Failed to close the buffer for: {}", entry._key, e);
+      }
+    }
+    FileUtils.deleteQuietly(entry._file);
+  }
+
+  /**
+   * Stops the fetch threads and removes all the cached buffers which are not pinned.
+   */
+  public synchronized void close() {
+    _fetchExecutor.shutdownNow();
+    Iterator<Entry> iterator = _entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry._pinCount == 0 && entry._future.isDone()) {
+        iterator.remove();
+        removeEntry(entry);
+      } else {
+        LOGGER.warn("Closing the cache while: {} is still in use", entry._key);
+      }
+    }
+  }
+
+  /**
+   * Cache entry for a single index buffer.
+   */
+  static class Entry {
+    final String _key;
+    final File _file;
+    final long _size;
+    final CompletableFuture<PinotDataBuffer> _future = new CompletableFuture<>();
+    // Guarded by the cache
+    int _pinCount;
+
+    Entry(String key, File file, long size) {
+      _key = key;
+      _file = file;
+      _size = size;
+    }
+
+    /**
+     * Returns the fetched buffer, and blocks until the buffer is fetched.
+     */
+    PinotDataBuffer getBuffer()
+        throws IOException {
+      try {
+        return _future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while fetching: " + _key, e);
+      } catch (ExecutionException e) {
+        throw new IOException("Failed to fetch: " + _key, e.getCause());
+      }
+    }
+  }
+}
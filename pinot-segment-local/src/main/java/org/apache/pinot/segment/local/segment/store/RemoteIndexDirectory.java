@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.pinot.segment.spi.FetchContext;
+import org.apache.pinot.segment.spi.index.IndexType;
+import org.apache.pinot.segment.spi.index.StandardIndexes;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.segment.spi.store.ColumnIndexDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Read-only column index directory for a V3 segment whose index file is kept in the deep store. The index map is read
+ * from the local segment directory, and each index buffer is fetched by byte range from the remote index file into the
+ * {@link RemoteIndexBufferCache} on first access.
+ *
+ * <p>The buffers returned by {@link #getBuffer} are referred to by the index readers until the segment is unloaded, so
+ * they stay pinned in the cache until this directory is closed. The buffers fetched for a {@link FetchContext} are
+ * pinned until the context is released.
+ *
+ * <p>Text and vector indexes are kept in separate files instead of the index file, and are not supported.
+ */
+class RemoteIndexDirectory extends ColumnIndexDirectory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RemoteIndexDirectory.class);
+
+  private final File _segmentDirectory;
+  private final URI _remoteIndexFileUri;
+  private final RemoteIndexBufferCache _cache;
+  private final String _cacheKeyPrefix;
+  private final TreeMap<IndexKey, IndexEntry> _columnEntries;
+  private final Map<IndexKey, RemoteIndexBufferCache.Entry> _acquiredEntries = new ConcurrentHashMap<>();
+  private final Map<UUID, List<RemoteIndexBufferCache.Entry>> _fetchedEntries = new ConcurrentHashMap<>();
+  private SegmentMetadataImpl _segmentMetadata;
+
+  /**
+   * @param segmentDirectory local segment directory holding the index map
+   * @param segmentMetadata segment metadata
+   * @param remoteIndexFileUri URI of the index file in the deep store
+   * @param cache cache for the fetched index buffers
+   * @param cacheKeyPrefix prefix of the cache keys, unique for the segment
+   */
+  RemoteIndexDirectory(File segmentDirectory, SegmentMetadataImpl segmentMetadata, URI remoteIndexFileUri,
+      RemoteIndexBufferCache cache, String cacheKeyPrefix)
+      throws ConfigurationException {
+    _segmentDirectory = segmentDirectory;
+    _segmentMetadata = segmentMetadata;
+    _remoteIndexFileUri = remoteIndexFileUri;
+    _cache = cache;
+    _cacheKeyPrefix = cacheKeyPrefix;
+    _columnEntries = SingleFileIndexDirectory.loadIndexMap(segmentDirectory);
+  }
+
+  @Override
+  public void setSegmentMetadata(SegmentMetadataImpl segmentMetadata) {
+    _segmentMetadata = segmentMetadata;
+  }
+
+  @Override
+  public PinotDataBuffer getBuffer(String column, IndexType<?, ?, ?> type)
+      throws IOException {
+    IndexKey key = new IndexKey(column, type);
+    IndexEntry entry = getIndexEntry(key);
+    synchronized (entry) {
+      if (entry._buffer == null) {
+        RemoteIndexBufferCache.Entry cacheEntry =
+            _cache.acquire(getCacheKey(key), _remoteIndexFileUri, entry._startOffset, entry._size);
+        PinotDataBuffer buffer = cacheEntry.getBuffer();
+        long actualMarkerValue = buffer.getLong(0);
+        if (actualMarkerValue != SingleFileIndexDirectory.MAGIC_MARKER) {
+          _cache.release(cacheEntry);
+          LOGGER.error("Missing magic marker in index file: {} at position: {}", _remoteIndexFileUri,
+              entry._startOffset);
+          throw new RuntimeException(
+              "Inconsistent data read. Index data file " + _remoteIndexFileUri + " is possibly corrupted");
+        }
+        _acquiredEntries.put(key, cacheEntry);
+        entry._buffer = buffer.view(SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES, entry._size);
+      }
+      return entry._buffer;
+    }
+  }
+
+  @Override
+  public PinotDataBuffer newBuffer(String column, IndexType<?, ?, ?> type, long sizeBytes) {
+    throw new UnsupportedOperationException("Cannot create index in remote segment: " + _remoteIndexFileUri);
+  }
+
+  @Override
+  public boolean hasIndexFor(String column, IndexType<?, ?, ?> type) {
+    return _columnEntries.containsKey(new IndexKey(column, type));
+  }
+
+  @Override
+  public void removeIndex(String columnName, IndexType<?, ?, ?> indexType) {
+    throw new UnsupportedOperationException("Cannot remove index from remote segment: " + _remoteIndexFileUri);
+  }
+
+  @Override
+  public Set<String> getColumnsWithIndex(IndexType<?, ?, ?> type) {
+    Set<String> columns = new HashSet<>();
+    if (type == StandardIndexes.text() || type == StandardIndexes.vector()) {
+      return columns;
+    }
+    for (IndexKey indexKey : _columnEntries.keySet()) {
+      if (indexKey._type == type) {
+        columns.add(indexKey._name);
+      }
+    }
+    return columns;
+  }
+
+  @Override
+  public void prefetchBuffer(FetchContext fetchContext) {
+    fetchBuffers(fetchContext, true);
+  }
+
+  @Override
+  public void acquireBuffer(FetchContext fetchContext) {
+    fetchBuffers(fetchContext, false);
+  }
+
+  @Override
+  public void releaseBuffer(FetchContext fetchContext) {
+    List<RemoteIndexBufferCache.Entry> cacheEntries = _fetchedEntries.remove(fetchContext.getFetchId());
+    if (cacheEntries != null) {
+      for (RemoteIndexBufferCache.Entry cacheEntry : cacheEntries) {
+        _cache.release(cacheEntry);
+      }
+    }
+  }
+
+  /**
+   * Pins the buffers of the indexes listed in the fetch context, or of all the indexes of the column if no index is
+   * listed for it, and fetches the ones not cached yet either in the background or before returning.
+   */
+  private void fetchBuffers(FetchContext fetchContext, boolean async) {
+    List<RemoteIndexBufferCache.Entry> cacheEntries = new ArrayList<>();
+    for (Map.Entry<String, List<IndexType<?, ?, ?>>> columnEntry : fetchContext.getColumnToIndexList().entrySet()) {
+      String column = columnEntry.getKey();
+      List<IndexType<?, ?, ?>> indexTypes = columnEntry.getValue();
+      for (IndexEntry entry : _columnEntries.values()) {
+        if (!entry._key._name.equals(column) || (indexTypes != null && !indexTypes.contains(entry._key._type))) {
+          continue;
+        }
+        String cacheKey = getCacheKey(entry._key);
+        try {
+          if (async) {
+            cacheEntries.add(_cache.prefetch(cacheKey, _remoteIndexFileUri, entry._startOffset, entry._size));
+          } else {
+            cacheEntries.add(_cache.acquire(cacheKey, _remoteIndexFileUri, entry._startOffset, entry._size));
+          }
+        } catch (IOException e) {
+          // The buffer is fetched again on access, where the failure is surfaced to the query
+          LOGGER.warn("Failed to fetch index: {} of segment: {}", entry._key, fetchContext.getSegmentName(), e);
+        }
+      }
+    }
+    List<RemoteIndexBufferCache.Entry> previousEntries =
+        _fetchedEntries.putIfAbsent(fetchContext.getFetchId(), cacheEntries);
+    if (previousEntries != null) {
+      // The fetch context has already been prefetched or acquired, keep a single set of pinned buffers for it
+      for (RemoteIndexBufferCache.Entry cacheEntry : cacheEntries) {
+        _cache.release(cacheEntry);
+      }
+    }
+  }
+
+  private IndexEntry getIndexEntry(IndexKey key) {
+    IndexEntry entry = _columnEntries.get(key);
+    if (entry == null) {
+      throw new RuntimeException(
+          "Could not find index for column: " + key._name + ", type: " + key._type + ", segment: "
+              + _segmentDirectory);
+    }
+    return entry;
+  }
+
+  private String getCacheKey(IndexKey key) {
+    return _cacheKeyPrefix + key._name + "." + key._type.getId();
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    for (List<RemoteIndexBufferCache.Entry> cacheEntries : _fetchedEntries.values()) {
+      for (RemoteIndexBufferCache.Entry cacheEntry : cacheEntries) {
+        _cache.release(cacheEntry);
+      }
+    }
+    _fetchedEntries.clear();
+    for (RemoteIndexBufferCache.Entry cacheEntry : _acquiredEntries.values()) {
+      _cache.release(cacheEntry);
+    }
+    _acquiredEntries.clear();
+    for (IndexEntry entry : _columnEntries.values()) {
+      synchronized (entry) {
+        entry._buffer = null;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return _remoteIndexFileUri.toString();
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.spi.FetchContext;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.creator.SegmentVersion;
+import org.apache.pinot.segment.spi.index.IndexType;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
+import org.apache.pinot.spi.filesystem.PinotFS;
+import org.apache.pinot.spi.filesystem.PinotFSFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Read-only {@link SegmentDirectory} for a V3 segment kept untarred in the deep store, which keeps only the segment
+ * metadata and the index map locally. The index buffers are fetched by byte range from the remote index file through
+ * {@link PinotFS} on first access, or ahead of it through the {@link FetchContext} hooks, into the shared
+ * {@link RemoteIndexBufferCache}.
+ *
+ * <p>As the index readers of a column hold on to its buffers, the segment should be loaded with the readers created on
+ * first access of each column (see {@link #isIndexFetchedOnAccess()}), so that only the queried columns are fetched.
+ * Star-tree, text and vector indexes are kept in separate files in the segment directory, and are not supported.
+ */
+public class RemoteSegmentDirectory extends SegmentDirectory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RemoteSegmentDirectory.class);
+  private static final String[] LOCAL_FILE_NAMES = {
+      V1Constants.MetadataKeys.METADATA_FILE_NAME, V1Constants.SEGMENT_CREATION_META, V1Constants.INDEX_MAP_FILE_NAME
+  };
+
+  private final File _indexDir;
+  private final File _segmentDirectory;
+  private final URI _remoteSegmentUri;
+  private final RemoteIndexDirectory _columnIndexDirectory;
+  private SegmentMetadataImpl _segmentMetadata;
+  private String _tier;
+
+  /**
+   * @param indexDir local directory to keep the segment metadata
+   * @param remoteSegmentUri URI of the untarred segment directory in the deep store
+   * @param cache cache for the fetched index buffers
+   */
+  public RemoteSegmentDirectory(File indexDir, URI remoteSegmentUri, RemoteIndexBufferCache cache)
+      throws Exception {
+    _indexDir = indexDir;
+    _segmentDirectory = new File(indexDir, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    _remoteSegmentUri = remoteSegmentUri;
+    fetchMetadata();
+    _segmentMetadata = new SegmentMetadataImpl(indexDir);
+    Preconditions.checkState(_segmentMetadata.getVersion() == SegmentVersion.v3,
+        "Remote segment: %s must be in V3 format, got: %s", remoteSegmentUri, _segmentMetadata.getVersion());
+    _columnIndexDirectory = new RemoteIndexDirectory(_segmentDirectory, _segmentMetadata,
+        getRemoteFileUri(V1Constants.INDEX_FILE_NAME), cache, getCacheKeyPrefix(remoteSegmentUri));
+  }
+
+  /**
+   * Returns the prefix of the cache keys for the index buffers of the segment at the given remote location.
+   */
+  public static String getCacheKeyPrefix(URI remoteSegmentUri) {
+    String path = remoteSegmentUri.toString();
+    return path.endsWith("/") ? path : path + "/";
+  }
+
+  /**
+   * Fetches the metadata files from the deep store, which are small enough to be kept locally for the lifetime of the
+   * segment.
+   */
+  private void fetchMetadata()
+      throws Exception {
+    FileUtils.forceMkdir(_segmentDirectory);
+    PinotFS pinotFS = getPinotFS();
+    for (String fileName : LOCAL_FILE_NAMES) {
+      URI remoteFileUri = getRemoteFileUri(fileName);
+      if (pinotFS.exists(remoteFileUri)) {
+        pinotFS.copyToLocalFile(remoteFileUri, new File(_segmentDirectory, fileName));
+      } else {
+        Preconditions.checkState(!fileName.equals(V1Constants.MetadataKeys.METADATA_FILE_NAME),
+            "Missing metadata file for remote segment: %s", _remoteSegmentUri);
+      }
+    }
+    LOGGER.info("Fetched metadata of remote segment: {} into: {}", _remoteSegmentUri, _segmentDirectory);
+  }
+
+  private PinotFS getPinotFS() {
+    String scheme = _remoteSegmentUri.getScheme();
+    return PinotFSFactory.create(scheme != null ? scheme : PinotFSFactory.LOCAL_PINOT_FS_SCHEME);
+  }
+
+  private URI getRemoteFileUri(String fileName) {
+    return URI.create(
+        getCacheKeyPrefix(_remoteSegmentUri) + SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME + "/" + fileName);
+  }
+
+  public URI getRemoteSegmentUri() {
+    return _remoteSegmentUri;
+  }
+
+  @Override
+  public URI getIndexDir() {
+    return _indexDir.toURI();
+  }
+
+  @Override
+  public SegmentMetadataImpl getSegmentMetadata() {
+    return _segmentMetadata;
+  }
+
+  @Override
+  public void reloadMetadata()
+      throws Exception {
+    fetchMetadata();
+    _segmentMetadata = new SegmentMetadataImpl(_indexDir);
+    _columnIndexDirectory.setSegmentMetadata(_segmentMetadata);
+  }
+
+  @Override
+  public Path getPath() {
+    return _segmentDirectory.toPath();
+  }
+
+  /**
+   * Returns the size of the local metadata files only, as the index buffers are owned by the shared cache.
+   */
+  @Override
+  public long getDiskSizeBytes() {
+    return FileUtils.sizeOfDirectory(_indexDir);
+  }
+
+  @Override
+  public Set<String> getColumnsWithIndex(IndexType<?, ?, ?> type) {
+    return _columnIndexDirectory.getColumnsWithIndex(type);
+  }
+
+  @Override
+  public boolean isIndexFetchedOnAccess() {
+    return true;
+  }
+
+  @Override
+  public void prefetch(FetchContext fetchContext) {
+    _columnIndexDirectory.prefetchBuffer(fetchContext);
+  }
+
+  @Override
+  public void acquire(FetchContext fetchContext) {
+    _columnIndexDirectory.acquireBuffer(fetchContext);
+  }
+
+  @Override
+  public void release(FetchContext fetchContext) {
+    _columnIndexDirectory.releaseBuffer(fetchContext);
+  }
+
+  /**
+   * Downloads the whole segment into the destination directory, e.g. to reprocess it locally.
+   */
+  @Override
+  public void copyTo(File dest)
+      throws Exception {
+    File destSegmentDirectory = new File(dest, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    FileUtils.copyDirectory(_segmentDirectory, destSegmentDirectory);
+    getPinotFS().copyToLocalFile(getRemoteFileUri(V1Constants.INDEX_FILE_NAME),
+        new File(destSegmentDirectory, V1Constants.INDEX_FILE_NAME));
+  }
+
+  @Nullable
+  @Override
+  public String getTier() {
+    return _tier;
+  }
+
+  @Override
+  public void setTier(@Nullable String tier) {
+    _tier = tier;
+  }
+
+  @Override
+  public SegmentDirectory.Reader createReader()
+      throws IOException, ConfigurationException {
+    return new Reader();
+  }
+
+  @Override
+  public SegmentDirectory.Writer createWriter() {
+    throw new UnsupportedOperationException("Cannot modify remote segment: " + _remoteSegmentUri);
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    _columnIndexDirectory.close();
+  }
+
+  @Override
+  public String toString() {
+    return _remoteSegmentUri.toString();
+  }
+
+  public class Reader extends SegmentDirectory.Reader {
+
+    @Override
+    public PinotDataBuffer getIndexFor(String column, IndexType<?, ?, ?> type)
+        throws IOException {
+      return _columnIndexDirectory.getBuffer(column, type);
+    }
+
+    @Override
+    public boolean hasIndexFor(String column, IndexType<?, ?, ?> type) {
+      return _columnIndexDirectory.hasIndexFor(column, type);
+    }
+
+    @Override
+    public void close() {
+      // Noop as the buffers are owned by the segment directory
+    }
+
+    @Override
+    public String toString() {
+      return _remoteSegmentUri.toString();
+    }
+  }
+}
@@ -24,14 +24,20 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.spi.FetchContext;
 import org.apache.pinot.segment.spi.creator.SegmentVersion;
+import org.apache.pinot.segment.spi.index.IndexService;
 import org.apache.pinot.segment.spi.index.IndexType;
+import org.apache.pinot.segment.spi.index.StandardIndexes;
 import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
 import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 import org.apache.pinot.segment.spi.store.ColumnIndexDirectory;
@@ -61,6 +67,7 @@ public class SegmentLocalFSDirectory extends SegmentDirectory {
   private final File _segmentDirectory;
   private final SegmentLock _segmentLock;
   private final ReadMode _readMode;
+  private final IndexBufferPrefetcher _indexBufferPrefetcher = new IndexBufferPrefetcher();
   private SegmentMetadataImpl _segmentMetadata;
   private ColumnIndexDirectory _columnIndexDirectory;
   private StarTreeIndexReader _starTreeIndexReader;
@@ -276,10 +283,51 @@ public class SegmentLocalFSDirectory extends SegmentDirectory {
     }
   }
 
+  /**
+   * Schedules the asynchronous read-ahead of the index buffers in the fetch context when the segment is memory mapped,
+   * so that the pages are faulted in while the segment is still being pruned.
+   */
+  @Override
+  public void prefetch(FetchContext fetchContext) {
+    if (_readMode != ReadMode.mmap) {
+      return;
+    }
+    List<PinotDataBuffer> buffers = new ArrayList<>();
+    synchronized (this) {
+      if (_columnIndexDirectory == null) {
+        return;
+      }
+      for (Map.Entry<String, List<IndexType<?, ?, ?>>> entry : fetchContext.getColumnToIndexList().entrySet()) {
+        String column = entry.getKey();
+        List<IndexType<?, ?, ?>> indexTypes = entry.getValue();
+        for (IndexType<?, ?, ?> indexType : indexTypes != null ? indexTypes
+            : IndexService.getInstance().getAllIndexes()) {
+          // Text and vector indexes are kept in separate files managed by their own readers
+          if (indexType != StandardIndexes.text() && indexType != StandardIndexes.vector()
+              && _columnIndexDirectory.hasIndexFor(column, indexType)) {
+            try {
+              buffers.add(_columnIndexDirectory.getBuffer(column, indexType));
+            } catch (Exception e) {
+              LOGGER.warn("Failed to get index: {} of column: {} to prefetch in segment: {}", indexType.getId(),
+                  column, _segmentDirectory, e);
+            }
+          }
+        }
+      }
+    }
+    _indexBufferPrefetcher.prefetch(fetchContext.getFetchId(), buffers);
+  }
+
+  @Override
+  public void release(FetchContext fetchContext) {
+    _indexBufferPrefetcher.release(fetchContext.getFetchId());
+  }
+
   @Override
   public void close()
       throws IOException {
     _segmentLock.close();
+    _indexBufferPrefetcher.close();
     synchronized (this) {
       if (_columnIndexDirectory != null) {
         _columnIndexDirectory.close();
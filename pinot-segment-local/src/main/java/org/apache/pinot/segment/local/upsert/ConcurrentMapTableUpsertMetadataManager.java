@@ -47,9 +47,16 @@ public class ConcurrentMapTableUpsertMetadataManager extends BaseTableUpsertMeta
 
   @Override
   public BasePartitionUpsertMetadataManager getOrCreatePartitionManager(int partitionId) {
-    return _partitionMetadataManagerMap.computeIfAbsent(partitionId, k -> _enableDeletedKeysCompactionConsistency
-        ? new ConcurrentMapPartitionUpsertMetadataManagerForConsistentDeletes(_tableNameWithType, k, _context)
-        : new ConcurrentMapPartitionUpsertMetadataManager(_tableNameWithType, k, _context));
+    return _partitionMetadataManagerMap.computeIfAbsent(partitionId, this::createPartitionManager);
+  }
+
+  /**
+   * Can be overridden to create partition metadata managers with a different implementation.
+   */
+  protected BasePartitionUpsertMetadataManager createPartitionManager(int partitionId) {
+    return _enableDeletedKeysCompactionConsistency
+        ? new ConcurrentMapPartitionUpsertMetadataManagerForConsistentDeletes(_tableNameWithType, partitionId, _context)
+        : new ConcurrentMapPartitionUpsertMetadataManager(_tableNameWithType, partitionId, _context);
   }
 
   @Override
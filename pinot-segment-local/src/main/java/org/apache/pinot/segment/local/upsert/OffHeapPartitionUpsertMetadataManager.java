@@ -0,0 +1,835 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.helix.HelixManager;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.segment.readers.LazyRow;
+import org.apache.pinot.segment.local.utils.HashUtils;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Implementation of {@link PartitionUpsertMetadataManager} that is backed by an {@link OffHeapRecordLocationMap}, so
+ * that the primary key to record location map does not take any heap memory.
+ *
+ * <p>The primary keys are stored as their 128-bit murmur3 hash regardless of the configured hash function, the
+ * segments are stored as an integer id, and the comparison value is encoded as a long. Thus only a single comparison
+ * column of numeric type is supported.
+ *
+ * <p>The upsert logic is the same as {@link ConcurrentMapPartitionUpsertMetadataManager}.
+ *
+ * <p>When a checkpoint file is given, the record location map is checkpointed to it every time the validDocIds
+ * snapshots are taken, along with the name, CRC and number of valid docs of the segments with up-to-date snapshots.
+ * When preloading segments on restart, the checkpoint is loaded back, and the segments matching the checkpoint are
+ * added without reading their primary keys. Only the other segments are replayed from their validDocIds snapshots.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+@ThreadSafe
+public class OffHeapPartitionUpsertMetadataManager extends BasePartitionUpsertMetadataManager {
+  private static final int CHECKPOINT_MAGIC = 0x55505352;
+  private static final int CHECKPOINT_VERSION = 1;
+
+  // Used to initialize a reference to previous row for merging in partial upsert
+  private final LazyRow _reusePreviousRow = new LazyRow();
+  private final Map<String, Object> _reuseMergeResultHolder = new HashMap<>();
+
+  private final DataType _comparisonValueType;
+  @VisibleForTesting
+  final OffHeapRecordLocationMap _recordLocationMap;
+
+  // Segments are referenced by id from the record location map. The id of a segment is released once the segment is
+  // replaced or removed, and there is no key referencing it.
+  private final ConcurrentHashMap<IndexSegment, SegmentEntry> _segmentToEntryMap = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, SegmentEntry> _segmentIdToEntryMap = new ConcurrentHashMap<>();
+  private final AtomicInteger _nextSegmentId = new AtomicInteger(1);
+
+  // Segments loaded from the checkpoint that are not preloaded yet, keyed by segment name. Their record locations are
+  // referenced by placeholder segment entries without segment, which are removed after preloading.
+  private final File _checkpointFile;
+  private final ConcurrentHashMap<String, CheckpointSegment> _checkpointSegments = new ConcurrentHashMap<>();
+
+  public OffHeapPartitionUpsertMetadataManager(String tableNameWithType, int partitionId, UpsertContext context,
+      int initialCapacity, int numStripes, @Nullable File mmapDir, @Nullable File checkpointFile) {
+    super(tableNameWithType, partitionId, context);
+    Preconditions.checkState(checkpointFile == null || _enableSnapshot,
+        "Snapshot must be enabled to checkpoint the upsert metadata for table: %s", tableNameWithType);
+    _checkpointFile = checkpointFile;
+    Preconditions.checkState(_comparisonColumns.size() == 1,
+        "Off-heap upsert metadata manager does not support multiple comparison columns for table: %s",
+        tableNameWithType);
+    FieldSpec comparisonFieldSpec = context.getSchema().getFieldSpecFor(_comparisonColumns.get(0));
+    Preconditions.checkState(comparisonFieldSpec != null, "Failed to find comparison column: %s for table: %s",
+        _comparisonColumns.get(0), tableNameWithType);
+    _comparisonValueType = comparisonFieldSpec.getDataType().getStoredType();
+    Preconditions.checkState(_comparisonValueType == DataType.INT || _comparisonValueType == DataType.LONG
+            || _comparisonValueType == DataType.FLOAT || _comparisonValueType == DataType.DOUBLE,
+        "Off-heap upsert metadata manager does not support comparison column of type: %s for table: %s",
+        _comparisonValueType, tableNameWithType);
+    _recordLocationMap = new OffHeapRecordLocationMap(initialCapacity, numStripes, mmapDir);
+  }
+
+  @Override
+  protected long getNumPrimaryKeys() {
+    return _recordLocationMap.size();
+  }
+
+  @Override
+  protected void doAddOrReplaceSegment(ImmutableSegmentImpl segment, ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds, Iterator<RecordInfo> recordInfoIterator,
+      @Nullable IndexSegment oldSegment, @Nullable MutableRoaringBitmap validDocIdsForOldSegment) {
+    String segmentName = segment.getSegmentName();
+    segment.enableUpsert(this, validDocIds, queryableDocIds);
+    SegmentEntry segmentEntry = getOrCreateSegmentEntry(segment);
+
+    AtomicInteger numKeysInWrongSegment = new AtomicInteger();
+    while (recordInfoIterator.hasNext()) {
+      RecordInfo recordInfo = recordInfoIterator.next();
+      int newDocId = recordInfo.getDocId();
+      Comparable newComparisonValue = recordInfo.getComparisonValue();
+      compute(recordInfo.getPrimaryKey(), currentRecordLocation -> {
+        if (currentRecordLocation != null) {
+          // Existing primary key
+          IndexSegment currentSegment = currentRecordLocation.getSegment();
+          int currentDocId = currentRecordLocation.getDocId();
+          int comparisonResult = newComparisonValue.compareTo(currentRecordLocation.getComparisonValue());
+
+          // The current record is in the same segment
+          // Update the record location when there is a tie to keep the newer record. Note that the record info
+          // iterator will return records with incremental doc ids.
+          if (currentSegment == segment) {
+            if (comparisonResult >= 0) {
+              replaceDocId(segment, validDocIds, queryableDocIds, currentDocId, newDocId, recordInfo);
+              return new RecordLocation(segmentEntry, newDocId, newComparisonValue);
+            } else {
+              return currentRecordLocation;
+            }
+          }
+
+          // The current record is in an old segment being replaced
+          // This could happen when committing a consuming segment, or reloading a completed segment. In this case, we
+          // want to update the record location when there is a tie because the record locations should point to the
+          // new added segment instead of the old segment being replaced. Also, do not update the valid doc ids for the
+          // old segment because it has not been replaced yet. We pass in an optional valid doc ids snapshot for the old
+          // segment, which can be updated and used to track the docs not replaced yet.
+          if (currentSegment == oldSegment) {
+            if (comparisonResult >= 0) {
+              if (validDocIdsForOldSegment == null && oldSegment.getValidDocIds() != null) {
+                // Update the old segment's bitmap in place if a copy of the bitmap was not provided.
+                replaceDocId(segment, validDocIds, queryableDocIds, oldSegment, currentDocId, newDocId, recordInfo);
+              } else {
+                addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+                if (validDocIdsForOldSegment != null) {
+                  validDocIdsForOldSegment.remove(currentDocId);
+                }
+              }
+              return new RecordLocation(segmentEntry, newDocId, newComparisonValue);
+            } else {
+              return currentRecordLocation;
+            }
+          }
+
+          // This should not happen because the previously replaced segment should have all keys removed. We still
+          // handle it here, and also track the number of keys not properly replaced previously.
+          String currentSegmentName = currentSegment.getSegmentName();
+          if (currentSegmentName.equals(segmentName)) {
+            numKeysInWrongSegment.getAndIncrement();
+            if (comparisonResult >= 0) {
+              addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+              return new RecordLocation(segmentEntry, newDocId, newComparisonValue);
+            } else {
+              return currentRecordLocation;
+            }
+          }
+
+          // The current record is in a different segment
+          // Update the record location when getting a newer comparison value, or the value is the same as the
+          // current value, but the segment has a larger sequence number (the segment is newer than the current
+          // segment).
+          if (comparisonResult > 0 || (comparisonResult == 0 && shouldReplaceOnComparisonTie(segmentName,
+              currentSegmentName, segment.getSegmentMetadata().getIndexCreationTime(),
+              currentSegment.getSegmentMetadata().getIndexCreationTime()))) {
+            replaceDocId(segment, validDocIds, queryableDocIds, currentSegment, currentDocId, newDocId, recordInfo);
+            return new RecordLocation(segmentEntry, newDocId, newComparisonValue);
+          } else {
+            return currentRecordLocation;
+          }
+        } else {
+          // New primary key
+          addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+          return new RecordLocation(segmentEntry, newDocId, newComparisonValue);
+        }
+      }, false);
+    }
+    int numKeys = numKeysInWrongSegment.get();
+    if (numKeys > 0) {
+      _logger.warn("Found {} primary keys in the wrong segment when adding segment: {}", numKeys, segmentName);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.UPSERT_KEYS_IN_WRONG_SEGMENT, numKeys);
+    }
+  }
+
+  @Override
+  protected void addSegmentWithoutUpsert(ImmutableSegmentImpl segment, ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds, Iterator<RecordInfo> recordInfoIterator) {
+    segment.enableUpsert(this, validDocIds, queryableDocIds);
+    SegmentEntry segmentEntry = getOrCreateSegmentEntry(segment);
+    while (recordInfoIterator.hasNext()) {
+      RecordInfo recordInfo = recordInfoIterator.next();
+      int newDocId = recordInfo.getDocId();
+      Comparable newComparisonValue = recordInfo.getComparisonValue();
+      addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+      RecordLocation newRecordLocation = new RecordLocation(segmentEntry, newDocId, newComparisonValue);
+      compute(recordInfo.getPrimaryKey(), currentRecordLocation -> newRecordLocation, false);
+    }
+  }
+
+  @Override
+  protected void removeSegment(IndexSegment segment, Iterator<PrimaryKey> primaryKeyIterator) {
+    while (primaryKeyIterator.hasNext()) {
+      PrimaryKey primaryKey = primaryKeyIterator.next();
+      compute(primaryKey, recordLocation -> {
+        if (recordLocation.getSegment() == segment) {
+          return null;
+        }
+        return recordLocation;
+      }, true);
+    }
+  }
+
+  @Override
+  public void replaceSegment(ImmutableSegment segment, IndexSegment oldSegment) {
+    super.replaceSegment(segment, oldSegment);
+    releaseSegment(oldSegment);
+  }
+
+  @Override
+  public void removeSegment(IndexSegment segment) {
+    super.removeSegment(segment);
+    releaseSegment(segment);
+  }
+
+  @Override
+  public void doRemoveExpiredPrimaryKeys() {
+    AtomicInteger numMetadataTTLKeysRemoved = new AtomicInteger();
+    AtomicInteger numDeletedTTLKeysRemoved = new AtomicInteger();
+    AtomicInteger numTotalKeysMarkForDeletion = new AtomicInteger();
+    AtomicInteger numDeletedKeysWithinTTLWindow = new AtomicInteger();
+    double largestSeenComparisonValue = _largestSeenComparisonValue.get();
+    double metadataTTLKeysThreshold =
+        _metadataTTL > 0 ? largestSeenComparisonValue - _metadataTTL : Double.NEGATIVE_INFINITY;
+    double deletedKeysThreshold =
+        _deletedKeysTTL > 0 ? largestSeenComparisonValue - _deletedKeysTTL : Double.NEGATIVE_INFINITY;
+    _recordLocationMap.removeIf(location -> {
+      RecordLocation recordLocation = toRecordLocation(location);
+      double comparisonValue = ((Number) recordLocation.getComparisonValue()).doubleValue();
+      boolean remove = false;
+      if (_metadataTTL > 0 && comparisonValue < metadataTTLKeysThreshold) {
+        numMetadataTTLKeysRemoved.getAndIncrement();
+        remove = true;
+      } else if (_deletedKeysTTL > 0) {
+        ThreadSafeMutableRoaringBitmap currentQueryableDocIds = recordLocation.getSegment().getQueryableDocIds();
+        // if key not part of queryable doc id, it means it is deleted
+        if (currentQueryableDocIds != null && !currentQueryableDocIds.contains(recordLocation.getDocId())) {
+          numTotalKeysMarkForDeletion.getAndIncrement();
+          if (comparisonValue >= deletedKeysThreshold) {
+            // If key is within the TTL window, do not remove it from the primary hashmap
+            numDeletedKeysWithinTTLWindow.getAndIncrement();
+          } else {
+            // delete key from primary hashmap
+            removeDocId(recordLocation.getSegment(), recordLocation.getDocId());
+            numDeletedTTLKeysRemoved.getAndIncrement();
+            remove = true;
+          }
+        }
+      }
+      if (remove) {
+        recordLocation._segmentEntry.removeKey();
+      }
+      return remove;
+    });
+
+    // Update metrics
+    updatePrimaryKeyGauge();
+    int numMetadataTTLKeys = numMetadataTTLKeysRemoved.get();
+    if (numMetadataTTLKeys > 0) {
+      _logger.info("Deleted {} primary keys based on metadataTTL", numMetadataTTLKeys);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.METADATA_TTL_PRIMARY_KEYS_REMOVED,
+          numMetadataTTLKeys);
+    }
+    int numDeletedTTLKeys = numDeletedTTLKeysRemoved.get();
+    if (numDeletedTTLKeys > 0) {
+      _logger.info("Deleted {} primary keys based on deletedKeysTTL", numDeletedTTLKeys);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.DELETED_KEYS_TTL_PRIMARY_KEYS_REMOVED,
+          numDeletedTTLKeys);
+    }
+    int numTotalKeysMarkedForDeletion = numTotalKeysMarkForDeletion.get();
+    if (numTotalKeysMarkedForDeletion > 0) {
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.TOTAL_KEYS_MARKED_FOR_DELETION,
+          numTotalKeysMarkedForDeletion);
+    }
+    int numDeletedKeysWithinTTLWindowValue = numDeletedKeysWithinTTLWindow.get();
+    if (numDeletedKeysWithinTTLWindowValue > 0) {
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.DELETED_KEYS_WITHIN_TTL_WINDOW,
+          numDeletedKeysWithinTTLWindowValue);
+    }
+  }
+
+  @Override
+  protected boolean doAddRecord(MutableSegment segment, RecordInfo recordInfo) {
+    AtomicBoolean isOutOfOrderRecord = new AtomicBoolean(false);
+    ThreadSafeMutableRoaringBitmap validDocIds = Objects.requireNonNull(segment.getValidDocIds());
+    ThreadSafeMutableRoaringBitmap queryableDocIds = segment.getQueryableDocIds();
+    int newDocId = recordInfo.getDocId();
+    Comparable newComparisonValue = recordInfo.getComparisonValue();
+    SegmentEntry segmentEntry = getOrCreateSegmentEntry(segment);
+
+    // When TTL is enabled, update largestSeenComparisonValue when adding new record
+    if (isTTLEnabled()) {
+      double comparisonValue = ((Number) newComparisonValue).doubleValue();
+      _largestSeenComparisonValue.getAndUpdate(v -> Math.max(v, comparisonValue));
+    }
+
+    compute(recordInfo.getPrimaryKey(), currentRecordLocation -> {
+      if (currentRecordLocation != null) {
+        // Existing primary key
+
+        // Update the record location when the new comparison value is greater than or equal to the current value.
+        // Update the record location when there is a tie to keep the newer record.
+        if (newComparisonValue.compareTo(currentRecordLocation.getComparisonValue()) >= 0) {
+          IndexSegment currentSegment = currentRecordLocation.getSegment();
+          int currentDocId = currentRecordLocation.getDocId();
+          if (segment == currentSegment) {
+            replaceDocId(segment, validDocIds, queryableDocIds, currentDocId, newDocId, recordInfo);
+          } else {
+            replaceDocId(segment, validDocIds, queryableDocIds, currentSegment, currentDocId, newDocId, recordInfo);
+          }
+          return new RecordLocation(segmentEntry, newDocId, newComparisonValue);
+        } else {
+          // Out-of-order record
+          handleOutOfOrderEvent(currentRecordLocation.getComparisonValue(), recordInfo.getComparisonValue());
+          isOutOfOrderRecord.set(true);
+          return currentRecordLocation;
+        }
+      } else {
+        // New primary key
+        addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+        return new RecordLocation(segmentEntry, newDocId, newComparisonValue);
+      }
+    }, false);
+
+    updatePrimaryKeyGauge();
+    return !isOutOfOrderRecord.get();
+  }
+
+  @Override
+  protected GenericRow doUpdateRecord(GenericRow record, RecordInfo recordInfo) {
+    assert _partialUpsertHandler != null;
+    compute(recordInfo.getPrimaryKey(), recordLocation -> {
+      // Read the previous record if the following conditions are met:
+      // - New record is not a DELETE record
+      // - New record is not out-of-order
+      // - Previous record is not deleted
+      if (!recordInfo.isDeleteRecord()
+          && recordInfo.getComparisonValue().compareTo(recordLocation.getComparisonValue()) >= 0) {
+        IndexSegment currentSegment = recordLocation.getSegment();
+        ThreadSafeMutableRoaringBitmap currentQueryableDocIds = currentSegment.getQueryableDocIds();
+        int currentDocId = recordLocation.getDocId();
+        if (currentQueryableDocIds == null || currentQueryableDocIds.contains(currentDocId)) {
+          _reusePreviousRow.init(currentSegment, currentDocId);
+          _partialUpsertHandler.merge(_reusePreviousRow, record, _reuseMergeResultHolder);
+          _reuseMergeResultHolder.clear();
+        }
+      }
+      return recordLocation;
+    }, true);
+    return record;
+  }
+
+  @Override
+  protected void doPreloadSegments(TableDataManager tableDataManager, IndexLoadingConfig indexLoadingConfig,
+      HelixManager helixManager, ExecutorService segmentPreloadExecutor)
+      throws Exception {
+    if (_checkpointFile != null) {
+      loadCheckpoint();
+    }
+    try {
+      super.doPreloadSegments(tableDataManager, indexLoadingConfig, helixManager, segmentPreloadExecutor);
+    } finally {
+      removeUnboundCheckpointSegments();
+    }
+  }
+
+  @Override
+  protected void doPreloadSegment(ImmutableSegmentImpl segment) {
+    CheckpointSegment checkpointSegment =
+        _checkpointSegments.isEmpty() ? null : _checkpointSegments.remove(segment.getSegmentName());
+    if (checkpointSegment == null || !preloadSegmentFromCheckpoint(segment, checkpointSegment)) {
+      super.doPreloadSegment(segment);
+    }
+  }
+
+  @Override
+  protected void doTakeSnapshot() {
+    if (_checkpointFile == null) {
+      super.doTakeSnapshot();
+      return;
+    }
+    // Delete the checkpoint before updating the validDocIds snapshots, so that a stale checkpoint won't be loaded along
+    // with newer snapshots if the server crashes before the new checkpoint is written.
+    FileUtils.deleteQuietly(_checkpointFile);
+    super.doTakeSnapshot();
+    try {
+      writeCheckpoint();
+    } catch (Exception e) {
+      _logger.warn("Caught exception while writing checkpoint: {}", _checkpointFile, e);
+    }
+  }
+
+  @Override
+  protected void doClose()
+      throws IOException {
+    _recordLocationMap.close();
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file, then atomically renames it to the checkpoint file. This is invoked while
+   * holding the snapshot WLock, right after taking the validDocIds snapshots.
+   *
+   * <p>The checkpoint format (native byte order) is:
+   * <ul>
+   *   <li>Magic number (int), version (int), number of segments (int)</li>
+   *   <li>For each segment: segment id (int), number of keys (int), number of valid docs (int), segment name and CRC
+   *   (length-prefixed UTF-8 strings)</li>
+   *   <li>The record location map as written by {@link OffHeapRecordLocationMap#writeTo(FileChannel)}</li>
+   *   <li>Magic number (int)</li>
+   * </ul>
+   */
+  private void writeCheckpoint()
+      throws IOException {
+    long startTimeMs = System.currentTimeMillis();
+    // Only checkpoint the segments with up-to-date validDocIds snapshot, so that they can be validated against the
+    // snapshot when loading the checkpoint. The record locations of the other segments are dropped when loading.
+    List<CheckpointSegment> checkpointSegments = new ArrayList<>();
+    for (IndexSegment segment : _trackedSegments) {
+      if (!(segment instanceof ImmutableSegmentImpl) || _updatedSegmentsSinceLastSnapshot.contains(segment)) {
+        continue;
+      }
+      ImmutableSegmentImpl immutableSegment = (ImmutableSegmentImpl) segment;
+      SegmentEntry segmentEntry = _segmentToEntryMap.get(segment);
+      ThreadSafeMutableRoaringBitmap validDocIds = immutableSegment.getValidDocIds();
+      String crc = segment.getSegmentMetadata().getCrc();
+      if (segmentEntry == null || validDocIds == null || crc == null
+          || !immutableSegment.hasValidDocIdsSnapshotFile()) {
+        continue;
+      }
+      checkpointSegments.add(new CheckpointSegment(segmentEntry._segmentId, segmentEntry._numKeys.get(),
+          validDocIds.getMutableRoaringBitmap().getCardinality(), segment.getSegmentName(), crc));
+    }
+
+    File tempFile = new File(_checkpointFile.getPath() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      List<byte[]> strings = new ArrayList<>(2 * checkpointSegments.size());
+      int headerSize = 3 * Integer.BYTES;
+      for (CheckpointSegment checkpointSegment : checkpointSegments) {
+        byte[] segmentName = checkpointSegment._segmentName.getBytes(StandardCharsets.UTF_8);
+        byte[] crc = checkpointSegment._crc.getBytes(StandardCharsets.UTF_8);
+        strings.add(segmentName);
+        strings.add(crc);
+        headerSize += 5 * Integer.BYTES + segmentName.length + crc.length;
+      }
+      ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.nativeOrder());
+      header.putInt(CHECKPOINT_MAGIC).putInt(CHECKPOINT_VERSION).putInt(checkpointSegments.size());
+      for (int i = 0; i < checkpointSegments.size(); i++) {
+        CheckpointSegment checkpointSegment = checkpointSegments.get(i);
+        header.putInt(checkpointSegment._segmentId).putInt(checkpointSegment._numKeys)
+            .putInt(checkpointSegment._numValidDocs);
+        putString(header, strings.get(2 * i));
+        putString(header, strings.get(2 * i + 1));
+      }
+      header.flip();
+      writeFully(channel, header);
+      _recordLocationMap.writeTo(channel);
+      ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+      footer.putInt(CHECKPOINT_MAGIC).flip();
+      writeFully(channel, footer);
+      channel.force(true);
+    } catch (Exception e) {
+      FileUtils.deleteQuietly(tempFile);
+      throw e;
+    }
+    Files.move(tempFile.toPath(), _checkpointFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    _logger.info("Wrote checkpoint with {} primary keys for {} segments in {}ms", _recordLocationMap.size(),
+        checkpointSegments.size(), System.currentTimeMillis() - startTimeMs);
+  }
+
+  /**
+   * Loads the record location map from the checkpoint, and registers placeholder segment entries for the checkpointed
+   * segments. Record locations of segments not in the checkpoint (e.g. consuming segments) are removed. The map is left
+   * empty if the checkpoint is missing or invalid.
+   */
+  @VisibleForTesting
+  void loadCheckpoint() {
+    if (!_checkpointFile.exists()) {
+      _logger.info("Skip loading checkpoint: {} as it does not exist", _checkpointFile);
+      return;
+    }
+    if (_recordLocationMap.size() > 0 || !_segmentIdToEntryMap.isEmpty()) {
+      _logger.warn("Skip loading checkpoint: {} as upsert metadata is not empty", _checkpointFile);
+      return;
+    }
+    long startTimeMs = System.currentTimeMillis();
+    List<CheckpointSegment> checkpointSegments = new ArrayList<>();
+    try (PinotDataBuffer buffer = PinotDataBuffer.mapFile(_checkpointFile, true, 0, _checkpointFile.length(),
+        ByteOrder.nativeOrder(), "Upsert record locations checkpoint for partition: " + _partitionId)) {
+      long size = buffer.size();
+      Preconditions.checkState(size >= 4 * Integer.BYTES && buffer.getInt(0) == CHECKPOINT_MAGIC
+          && buffer.getInt(size - Integer.BYTES) == CHECKPOINT_MAGIC, "Invalid checkpoint magic number");
+      int version = buffer.getInt(Integer.BYTES);
+      Preconditions.checkState(version == CHECKPOINT_VERSION, "Unsupported checkpoint version: %s", version);
+      int numSegments = buffer.getInt(2 * Integer.BYTES);
+      long offset = 3 * Integer.BYTES;
+      for (int i = 0; i < numSegments; i++) {
+        Preconditions.checkState(offset + 5 * Integer.BYTES <= size, "Checkpoint is truncated");
+        int segmentId = buffer.getInt(offset);
+        int numKeys = buffer.getInt(offset + Integer.BYTES);
+        int numValidDocs = buffer.getInt(offset + 2 * Integer.BYTES);
+        offset += 3 * Integer.BYTES;
+        String segmentName = getString(buffer, offset);
+        offset += Integer.BYTES + buffer.getInt(offset);
+        String crc = getString(buffer, offset);
+        offset += Integer.BYTES + buffer.getInt(offset);
+        checkpointSegments.add(new CheckpointSegment(segmentId, numKeys, numValidDocs, segmentName, crc));
+      }
+      offset = _recordLocationMap.load(buffer, offset);
+      if (offset != size - Integer.BYTES) {
+        _recordLocationMap.removeIf(location -> true);
+        throw new IllegalStateException("Checkpoint size mismatch");
+      }
+    } catch (Exception e) {
+      _logger.warn("Caught exception while loading checkpoint: {}, preloading all segments", _checkpointFile, e);
+      return;
+    }
+
+    int maxSegmentId = 0;
+    for (CheckpointSegment checkpointSegment : checkpointSegments) {
+      SegmentEntry segmentEntry = new SegmentEntry(checkpointSegment._segmentId, null);
+      segmentEntry._numKeys.set(checkpointSegment._numKeys);
+      _segmentIdToEntryMap.put(checkpointSegment._segmentId, segmentEntry);
+      _checkpointSegments.put(checkpointSegment._segmentName, checkpointSegment);
+      maxSegmentId = Math.max(maxSegmentId, checkpointSegment._segmentId);
+    }
+    _nextSegmentId.set(maxSegmentId + 1);
+    _recordLocationMap.removeIf(location -> !_segmentIdToEntryMap.containsKey(location.getSegmentId()));
+    updatePrimaryKeyGauge();
+    _logger.info("Loaded checkpoint with {} primary keys for {} segments in {}ms", _recordLocationMap.size(),
+        checkpointSegments.size(), System.currentTimeMillis() - startTimeMs);
+  }
+
+  /**
+   * Preloads the segment by binding it to the record locations loaded from the checkpoint. Returns {@code false} if
+   * the segment does not match the checkpoint, in which case it should be replayed from its validDocIds snapshot.
+   */
+  private boolean preloadSegmentFromCheckpoint(ImmutableSegmentImpl segment, CheckpointSegment checkpointSegment) {
+    String segmentName = segment.getSegmentName();
+    if (!checkpointSegment._crc.equals(segment.getSegmentMetadata().getCrc())) {
+      _logger.info("Segment: {} has CRC: {} different from checkpoint: {}, replaying it", segmentName,
+          segment.getSegmentMetadata().getCrc(), checkpointSegment._crc);
+      return false;
+    }
+    MutableRoaringBitmap validDocIds = segment.loadValidDocIdsFromSnapshot();
+    if (validDocIds == null || validDocIds.getCardinality() != checkpointSegment._numValidDocs) {
+      _logger.info("Segment: {} has validDocIds snapshot different from checkpoint, replaying it", segmentName);
+      return false;
+    }
+    if (isTTLEnabled()) {
+      double maxComparisonValue = getMaxComparisonValue(segment);
+      _largestSeenComparisonValue.getAndUpdate(v -> Math.max(v, maxComparisonValue));
+      if (isOutOfMetadataTTL(maxComparisonValue) && skipPreloadSegmentOutOfTTL(segment, validDocIds)) {
+        // Record locations of the segment are removed along with the other unbound checkpoint segments
+        return true;
+      }
+    }
+    MutableRoaringBitmap queryableDocIds = getQueryableDocIds(segment, validDocIds);
+    segment.enableUpsert(this, new ThreadSafeMutableRoaringBitmap(validDocIds),
+        queryableDocIds != null ? new ThreadSafeMutableRoaringBitmap(queryableDocIds) : null);
+    SegmentEntry segmentEntry = _segmentIdToEntryMap.get(checkpointSegment._segmentId);
+    segmentEntry._segment = segment;
+    _segmentToEntryMap.put(segment, segmentEntry);
+    _logger.info("Preloaded segment: {} from checkpoint with {} primary keys", segmentName,
+        segmentEntry._numKeys.get());
+    return true;
+  }
+
+  @VisibleForTesting
+  void removeUnboundCheckpointSegments() {
+    _checkpointSegments.clear();
+    Set<Integer> unboundSegmentIds = new HashSet<>();
+    for (SegmentEntry segmentEntry : _segmentIdToEntryMap.values()) {
+      if (segmentEntry._segment == null) {
+        unboundSegmentIds.add(segmentEntry._segmentId);
+      }
+    }
+    if (unboundSegmentIds.isEmpty()) {
+      return;
+    }
+    _recordLocationMap.removeIf(location -> unboundSegmentIds.contains(location.getSegmentId()));
+    for (Integer segmentId : unboundSegmentIds) {
+      _segmentIdToEntryMap.remove(segmentId);
+    }
+    updatePrimaryKeyGauge();
+    _logger.info("Removed record locations of {} segments in checkpoint but not preloaded", unboundSegmentIds.size());
+  }
+
+  private static void putString(ByteBuffer byteBuffer, byte[] bytes) {
+    byteBuffer.putInt(bytes.length).put(bytes);
+  }
+
+  private static String getString(PinotDataBuffer buffer, long offset) {
+    int length = buffer.getInt(offset);
+    Preconditions.checkState(length >= 0 && offset + Integer.BYTES + length <= buffer.size(),
+        "Checkpoint is truncated");
+    byte[] bytes = new byte[length];
+    buffer.copyTo(offset + Integer.BYTES, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer byteBuffer)
+      throws IOException {
+    while (byteBuffer.hasRemaining()) {
+      channel.write(byteBuffer);
+    }
+  }
+
+  /**
+   * Computes the new record location for the given primary key with the given remapping function, which is invoked
+   * while holding the lock of the primary key.
+   */
+  private void compute(PrimaryKey primaryKey, UnaryOperator<RecordLocation> remappingFunction, boolean onlyIfPresent) {
+    ByteBuffer keyHash = ByteBuffer.wrap(HashUtils.hashMurmur3(primaryKey.asBytes()));
+    long keyHigh = keyHash.getLong(0);
+    long keyLow = keyHash.getLong(8);
+    OffHeapRecordLocationMap.RecordLocationRemapper remapper = currentLocation -> {
+      RecordLocation currentRecordLocation = currentLocation != null ? toRecordLocation(currentLocation) : null;
+      RecordLocation newRecordLocation = remappingFunction.apply(currentRecordLocation);
+      if (newRecordLocation == currentRecordLocation) {
+        return currentLocation;
+      }
+      if (newRecordLocation != null) {
+        newRecordLocation._segmentEntry.addKey();
+      }
+      if (currentRecordLocation != null) {
+        currentRecordLocation._segmentEntry.removeKey();
+      }
+      return newRecordLocation != null ? new OffHeapRecordLocationMap.RecordLocation(
+          newRecordLocation._segmentEntry._segmentId, newRecordLocation._docId,
+          encodeComparisonValue(newRecordLocation._comparisonValue)) : null;
+    };
+    if (onlyIfPresent) {
+      _recordLocationMap.computeIfPresent(keyHigh, keyLow, remapper);
+    } else {
+      _recordLocationMap.compute(keyHigh, keyLow, remapper);
+    }
+  }
+
+  @VisibleForTesting
+  @Nullable
+  RecordLocation getRecordLocation(PrimaryKey primaryKey) {
+    ByteBuffer keyHash = ByteBuffer.wrap(HashUtils.hashMurmur3(primaryKey.asBytes()));
+    OffHeapRecordLocationMap.RecordLocation location = _recordLocationMap.get(keyHash.getLong(0), keyHash.getLong(8));
+    return location != null ? toRecordLocation(location) : null;
+  }
+
+  private RecordLocation toRecordLocation(OffHeapRecordLocationMap.RecordLocation location) {
+    int segmentId = location.getSegmentId();
+    SegmentEntry segmentEntry = _segmentIdToEntryMap.get(segmentId);
+    if (segmentEntry == null) {
+      // Every segment id in the record location map must be tracked until no key references it
+      throw new IllegalStateException(
+          String.format("Failed to find segment with id: %d for table: %s, partition: %d", segmentId,
+              _tableNameWithType, _partitionId));
+    }
+    return new RecordLocation(segmentEntry, location.getDocId(), decodeComparisonValue(location.getComparisonValue()));
+  }
+
+  private long encodeComparisonValue(Comparable comparisonValue) {
+    switch (_comparisonValueType) {
+      case INT:
+      case LONG:
+        return ((Number) comparisonValue).longValue();
+      case FLOAT:
+      case DOUBLE:
+        return Double.doubleToRawLongBits(((Number) comparisonValue).doubleValue());
+      default:
+        throw new IllegalStateException("Unsupported comparison value type: " + _comparisonValueType);
+    }
+  }
+
+  private Comparable decodeComparisonValue(long encodedValue) {
+    switch (_comparisonValueType) {
+      case INT:
+        return (int) encodedValue;
+      case LONG:
+        return encodedValue;
+      case FLOAT:
+        return (float) Double.longBitsToDouble(encodedValue);
+      case DOUBLE:
+        return Double.longBitsToDouble(encodedValue);
+      default:
+        throw new IllegalStateException("Unsupported comparison value type: " + _comparisonValueType);
+    }
+  }
+
+  private SegmentEntry getOrCreateSegmentEntry(IndexSegment segment) {
+    return _segmentToEntryMap.computeIfAbsent(segment, k -> {
+      SegmentEntry segmentEntry = new SegmentEntry(_nextSegmentId.getAndIncrement(), k);
+      _segmentIdToEntryMap.put(segmentEntry._segmentId, segmentEntry);
+      return segmentEntry;
+    });
+  }
+
+  private void releaseSegment(IndexSegment segment) {
+    SegmentEntry segmentEntry = _segmentToEntryMap.get(segment);
+    if (segmentEntry != null) {
+      segmentEntry.markReleasable();
+    }
+  }
+
+  private class SegmentEntry {
+    final int _segmentId;
+    // Only null for the placeholder of a segment loaded from the checkpoint but not preloaded yet
+    volatile IndexSegment _segment;
+    final AtomicInteger _numKeys = new AtomicInteger();
+    volatile boolean _releasable;
+
+    SegmentEntry(int segmentId, IndexSegment segment) {
+      _segmentId = segmentId;
+      _segment = segment;
+    }
+
+    void addKey() {
+      _numKeys.getAndIncrement();
+    }
+
+    void removeKey() {
+      if (_numKeys.decrementAndGet() == 0 && _releasable) {
+        release();
+      }
+    }
+
+    /**
+     * Marks the segment as replaced or removed, so that it can be released once no key references it.
+     */
+    void markReleasable() {
+      _releasable = true;
+      if (_numKeys.get() == 0) {
+        release();
+      }
+    }
+
+    void release() {
+      IndexSegment segment = _segment;
+      if (segment != null) {
+        _segmentToEntryMap.remove(segment, this);
+      }
+      _segmentIdToEntryMap.remove(_segmentId, this);
+    }
+  }
+
+  private static class CheckpointSegment {
+    final int _segmentId;
+    final int _numKeys;
+    final int _numValidDocs;
+    final String _segmentName;
+    final String _crc;
+
+    CheckpointSegment(int segmentId, int numKeys, int numValidDocs, String segmentName, String crc) {
+      _segmentId = segmentId;
+      _numKeys = numKeys;
+      _numValidDocs = numValidDocs;
+      _segmentName = segmentName;
+      _crc = crc;
+    }
+  }
+
+  @VisibleForTesting
+  static class RecordLocation {
+    final SegmentEntry _segmentEntry;
+    final int _docId;
+    final Comparable _comparisonValue;
+
+    RecordLocation(SegmentEntry segmentEntry, int docId, Comparable comparisonValue) {
+      _segmentEntry = segmentEntry;
+      _docId = docId;
+      _comparisonValue = comparisonValue;
+    }
+
+    IndexSegment getSegment() {
+      return _segmentEntry._segment;
+    }
+
+    int getDocId() {
+      return _docId;
+    }
+
+    Comparable getComparisonValue() {
+      return _comparisonValue;
+    }
+  }
+}
@@ -0,0 +1,486 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+
+
+/**
+ * Open-addressing hash table that maps 128-bit primary key hashes to record locations, stored off-heap.
+ *
+ * <p>Each entry takes 32 bytes: the 2 longs of the primary key hash, the segment id, the doc id, and the comparison
+ * value encoded as a long. Segment id 0 is reserved to mark empty slots. Collisions are resolved with linear probing,
+ * and entries are removed with backward shift deletion so that no tombstone is needed.
+ *
+ * <p>The table is split into stripes selected by the high bits of the key hash. Each stripe has its own buffer and is
+ * guarded by its own lock, so that operations on different stripes do not block each other, and a stripe can be
+ * resized without blocking the other stripes. The buffers are either allocated from direct memory, or memory mapped
+ * from files under the given directory.
+ *
+ * <p>The table can be written to a file channel with {@link #writeTo(FileChannel)} and loaded back with
+ * {@link #load(PinotDataBuffer, long)}. The stripes are written as is in native byte order, so that loading the table
+ * is a bulk memory copy without re-hashing any key.
+ */
+@ThreadSafe
+public class OffHeapRecordLocationMap implements Closeable {
+  private static final int ENTRY_SIZE = 32;
+  private static final int KEY_HIGH_OFFSET = 0;
+  private static final int KEY_LOW_OFFSET = 8;
+  private static final int SEGMENT_ID_OFFSET = 16;
+  private static final int DOC_ID_OFFSET = 20;
+  private static final int COMPARISON_VALUE_OFFSET = 24;
+  private static final double LOAD_FACTOR = 0.6;
+  // Size of the per-stripe header in the serialized format: capacity and size
+  private static final int STRIPE_HEADER_SIZE = 8;
+  private static final int WRITE_CHUNK_SIZE = 1 << 20;
+
+  private final Stripe[] _stripes;
+  private final int _stripeShift;
+  private final File _mmapDir;
+
+  /**
+   * @param initialCapacity Initial number of entries for the whole table
+   * @param numStripes Number of stripes, must be a power of 2
+   * @param mmapDir Directory to memory map the buffers from, or {@code null} to allocate them from direct memory
+   */
+  public OffHeapRecordLocationMap(int initialCapacity, int numStripes, @Nullable File mmapDir) {
+    Preconditions.checkArgument(numStripes > 0 && Integer.bitCount(numStripes) == 1,
+        "Number of stripes must be a power of 2, got: %s", numStripes);
+    _mmapDir = mmapDir;
+    if (mmapDir != null) {
+      // Clean up the files left over from a previous run
+      FileUtils.deleteQuietly(mmapDir);
+      try {
+        FileUtils.forceMkdir(mmapDir);
+      } catch (IOException e) {
+        throw new RuntimeException("Caught exception while creating directory: " + mmapDir, e);
+      }
+    }
+    _stripes = new Stripe[numStripes];
+    _stripeShift = 64 - Integer.numberOfTrailingZeros(numStripes);
+    // Round up to the next power of 2
+    int numEntriesPerStripe = (int) Math.ceil(initialCapacity / (numStripes * LOAD_FACTOR));
+    int stripeCapacity = Math.max(16, Integer.highestOneBit(Math.max(numEntriesPerStripe - 1, 1)) << 1);
+    for (int i = 0; i < numStripes; i++) {
+      _stripes[i] = new Stripe(i, stripeCapacity);
+    }
+  }
+
+  /**
+   * Returns the number of entries in the table.
+   */
+  public long size() {
+    long size = 0;
+    for (Stripe stripe : _stripes) {
+      size += stripe._size;
+    }
+    return size;
+  }
+
+  /**
+   * Returns the location for the given key, or {@code null} if the key does not exist.
+   */
+  @Nullable
+  public RecordLocation get(long keyHigh, long keyLow) {
+    return getStripe(keyHigh).get(keyHigh, keyLow);
+  }
+
+  /**
+   * Removes the given key if it exists.
+   */
+  public void remove(long keyHigh, long keyLow) {
+    getStripe(keyHigh).computeIfPresent(keyHigh, keyLow, current -> null);
+  }
+
+  /**
+   * Computes the new location for the given key with the given remapper. The remapper is invoked while holding the
+   * lock of the stripe of the key, so it can perform updates that must be atomic with the update of the location.
+   */
+  public void compute(long keyHigh, long keyLow, RecordLocationRemapper remapper) {
+    getStripe(keyHigh).compute(keyHigh, keyLow, remapper);
+  }
+
+  /**
+   * Similar to {@link #compute(long, long, RecordLocationRemapper)}, but only invokes the remapper when the key exists.
+   */
+  public void computeIfPresent(long keyHigh, long keyLow, RecordLocationRemapper remapper) {
+    getStripe(keyHigh).computeIfPresent(keyHigh, keyLow, remapper);
+  }
+
+  /**
+   * Puts the given location for the given key, replacing the existing location if any.
+   */
+  public void put(long keyHigh, long keyLow, RecordLocation location) {
+    getStripe(keyHigh).compute(keyHigh, keyLow, current -> location);
+  }
+
+  /**
+   * Removes the entries matching the given predicate. The predicate is invoked while holding the lock of the stripe of
+   * the entry, and is invoked exactly once for each entry.
+   */
+  public void removeIf(RecordLocationPredicate predicate) {
+    for (Stripe stripe : _stripes) {
+      stripe.removeIf(predicate);
+    }
+  }
+
+  /**
+   * Writes the table to the given channel. Each stripe is written while holding its lock, but the stripes are not
+   * written atomically with each other, so the caller should block the updates to get a consistent view of the table.
+   *
+   * <p>The format is the number of stripes (int), followed by the capacity (int), the size (int) and the raw entries of
+   * each stripe, all in native byte order.
+   */
+  public void writeTo(FileChannel channel)
+      throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+    header.putInt(_stripes.length).flip();
+    writeFully(channel, header);
+    for (Stripe stripe : _stripes) {
+      stripe.writeTo(channel);
+    }
+  }
+
+  /**
+   * Replaces the content of the table with the one serialized at the given offset of the buffer by
+   * {@link #writeTo(FileChannel)}, and returns the offset right after the serialized table. The number of stripes must
+   * match the one of this table. The serialized table is validated before replacing any stripe, and this method should
+   * be called before the table is accessed by any other thread.
+   */
+  public long load(PinotDataBuffer buffer, long offset) {
+    Preconditions.checkState(offset + Integer.BYTES <= buffer.size(), "Buffer is too small to load the table");
+    int numStripes = buffer.getInt(offset);
+    Preconditions.checkState(numStripes == _stripes.length, "Number of stripes mismatch, expected: %s, got: %s",
+        _stripes.length, numStripes);
+    long startOffset = offset + Integer.BYTES;
+    long endOffset = startOffset;
+    for (int i = 0; i < numStripes; i++) {
+      Preconditions.checkState(endOffset + STRIPE_HEADER_SIZE <= buffer.size(),
+          "Buffer is too small to load stripe: %s", i);
+      int capacity = buffer.getInt(endOffset);
+      int size = buffer.getInt(endOffset + Integer.BYTES);
+      Preconditions.checkState(capacity >= 16 && Integer.bitCount(capacity) == 1 && size >= 0 && size < capacity,
+          "Invalid capacity: %s or size: %s for stripe: %s", capacity, size, i);
+      endOffset += STRIPE_HEADER_SIZE + (long) capacity * ENTRY_SIZE;
+      Preconditions.checkState(endOffset <= buffer.size(), "Buffer is too small to load stripe: %s", i);
+    }
+    long stripeOffset = startOffset;
+    for (Stripe stripe : _stripes) {
+      stripeOffset = stripe.load(buffer, stripeOffset);
+    }
+    return endOffset;
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    for (Stripe stripe : _stripes) {
+      stripe.close();
+    }
+    if (_mmapDir != null) {
+      FileUtils.deleteQuietly(_mmapDir);
+    }
+  }
+
+  private Stripe getStripe(long keyHigh) {
+    return _stripeShift == 64 ? _stripes[0] : _stripes[(int) (keyHigh >>> _stripeShift)];
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer byteBuffer)
+      throws IOException {
+    while (byteBuffer.hasRemaining()) {
+      channel.write(byteBuffer);
+    }
+  }
+
+  private class Stripe {
+    final int _stripeId;
+    PinotDataBuffer _buffer;
+    // Only set when the buffer is memory mapped
+    File _file;
+    int _capacity;
+    int _mask;
+    int _resizeThreshold;
+    int _numBuffersAllocated;
+    volatile int _size;
+
+    Stripe(int stripeId, int capacity) {
+      _stripeId = stripeId;
+      allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+      long bufferSize = (long) capacity * ENTRY_SIZE;
+      String description = "Upsert record locations stripe: " + _stripeId;
+      if (_mmapDir != null) {
+        _file = new File(_mmapDir, "stripe_" + _stripeId + "_" + _numBuffersAllocated);
+        try {
+          _buffer = PinotDataBuffer.mapFile(_file, false, 0, bufferSize, ByteOrder.nativeOrder(), description);
+        } catch (IOException e) {
+          throw new RuntimeException("Caught exception while memory mapping file: " + _file, e);
+        }
+      } else {
+        _buffer = PinotDataBuffer.allocateDirect(bufferSize, ByteOrder.nativeOrder(), description);
+      }
+      _numBuffersAllocated++;
+      // The content of the buffer is not defined, so explicitly mark all the slots as empty
+      for (int i = 0; i < capacity; i++) {
+        _buffer.putInt((long) i * ENTRY_SIZE + SEGMENT_ID_OFFSET, 0);
+      }
+      _capacity = capacity;
+      _mask = capacity - 1;
+      _resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    @Nullable
+    synchronized RecordLocation get(long keyHigh, long keyLow) {
+      long offset = (long) findSlot(keyHigh, keyLow) * ENTRY_SIZE;
+      return _buffer.getInt(offset + SEGMENT_ID_OFFSET) != 0 ? read(offset) : null;
+    }
+
+    synchronized void compute(long keyHigh, long keyLow, RecordLocationRemapper remapper) {
+      int slot = findSlot(keyHigh, keyLow);
+      long offset = (long) slot * ENTRY_SIZE;
+      if (_buffer.getInt(offset + SEGMENT_ID_OFFSET) != 0) {
+        remapExisting(slot, offset, remapper);
+        return;
+      }
+      RecordLocation newLocation = remapper.remap(null);
+      if (newLocation != null) {
+        _buffer.putLong(offset + KEY_HIGH_OFFSET, keyHigh);
+        _buffer.putLong(offset + KEY_LOW_OFFSET, keyLow);
+        write(offset, newLocation);
+        _size++;
+        if (_size > _resizeThreshold) {
+          resize();
+        }
+      }
+    }
+
+    synchronized void computeIfPresent(long keyHigh, long keyLow, RecordLocationRemapper remapper) {
+      int slot = findSlot(keyHigh, keyLow);
+      long offset = (long) slot * ENTRY_SIZE;
+      if (_buffer.getInt(offset + SEGMENT_ID_OFFSET) != 0) {
+        remapExisting(slot, offset, remapper);
+      }
+    }
+
+    private void remapExisting(int slot, long offset, RecordLocationRemapper remapper) {
+      RecordLocation currentLocation = read(offset);
+      RecordLocation newLocation = remapper.remap(currentLocation);
+      if (newLocation == null) {
+        delete(slot);
+      } else if (newLocation != currentLocation) {
+        write(offset, newLocation);
+      }
+    }
+
+    synchronized void removeIf(RecordLocationPredicate predicate) {
+      if (_size == 0) {
+        return;
+      }
+      // Start right after an empty slot. Backward shift deletion only moves entries within the same cluster towards
+      // their home slot, so each entry is visited exactly once.
+      int start = 0;
+      while (_buffer.getInt((long) start * ENTRY_SIZE + SEGMENT_ID_OFFSET) != 0) {
+        start++;
+      }
+      for (int i = 1; i <= _capacity; i++) {
+        int slot = (start + i) & _mask;
+        long offset = (long) slot * ENTRY_SIZE;
+        // Re-check the same slot after a removal because another entry might be shifted into it
+        while (_buffer.getInt(offset + SEGMENT_ID_OFFSET) != 0 && predicate.test(read(offset))) {
+          delete(slot);
+        }
+      }
+    }
+
+    /**
+     * Returns the slot of the given key if it exists, or the empty slot where it should be inserted otherwise.
+     */
+    private int findSlot(long keyHigh, long keyLow) {
+      int slot = (int) keyLow & _mask;
+      while (true) {
+        long offset = (long) slot * ENTRY_SIZE;
+        if (_buffer.getInt(offset + SEGMENT_ID_OFFSET) == 0 || (_buffer.getLong(offset + KEY_LOW_OFFSET) == keyLow
+            && _buffer.getLong(offset + KEY_HIGH_OFFSET) == keyHigh)) {
+          return slot;
+        }
+        slot = (slot + 1) & _mask;
+      }
+    }
+
+    private void delete(int slot) {
+      int emptySlot = slot;
+      int nextSlot = (slot + 1) & _mask;
+      while (true) {
+        long nextOffset = (long) nextSlot * ENTRY_SIZE;
+        if (_buffer.getInt(nextOffset + SEGMENT_ID_OFFSET) == 0) {
+          break;
+        }
+        int homeSlot = (int) _buffer.getLong(nextOffset + KEY_LOW_OFFSET) & _mask;
+        // Move the entry into the empty slot if its home slot is not in the cyclic range (emptySlot, nextSlot]
+        if (((nextSlot - homeSlot) & _mask) >= ((nextSlot - emptySlot) & _mask)) {
+          copyEntry(_buffer, nextOffset, _buffer, (long) emptySlot * ENTRY_SIZE);
+          emptySlot = nextSlot;
+        }
+        nextSlot = (nextSlot + 1) & _mask;
+      }
+      _buffer.putInt((long) emptySlot * ENTRY_SIZE + SEGMENT_ID_OFFSET, 0);
+      _size--;
+    }
+
+    private void resize() {
+      PinotDataBuffer oldBuffer = _buffer;
+      File oldFile = _file;
+      int oldCapacity = _capacity;
+      allocate(oldCapacity * 2);
+      for (int i = 0; i < oldCapacity; i++) {
+        long oldOffset = (long) i * ENTRY_SIZE;
+        if (oldBuffer.getInt(oldOffset + SEGMENT_ID_OFFSET) != 0) {
+          int slot =
+              findSlot(oldBuffer.getLong(oldOffset + KEY_HIGH_OFFSET), oldBuffer.getLong(oldOffset + KEY_LOW_OFFSET));
+          copyEntry(oldBuffer, oldOffset, _buffer, (long) slot * ENTRY_SIZE);
+        }
+      }
+      closeBuffer(oldBuffer);
+      if (oldFile != null) {
+        FileUtils.deleteQuietly(oldFile);
+      }
+    }
+
+    private RecordLocation read(long offset) {
+      return new RecordLocation(_buffer.getInt(offset + SEGMENT_ID_OFFSET), _buffer.getInt(offset + DOC_ID_OFFSET),
+          _buffer.getLong(offset + COMPARISON_VALUE_OFFSET));
+    }
+
+    private void write(long offset, RecordLocation location) {
+      Preconditions.checkArgument(location._segmentId != 0, "Segment id 0 is reserved");
+      _buffer.putInt(offset + SEGMENT_ID_OFFSET, location._segmentId);
+      _buffer.putInt(offset + DOC_ID_OFFSET, location._docId);
+      _buffer.putLong(offset + COMPARISON_VALUE_OFFSET, location._comparisonValue);
+    }
+
+    private void copyEntry(PinotDataBuffer from, long fromOffset, PinotDataBuffer to, long toOffset) {
+      to.putLong(toOffset + KEY_HIGH_OFFSET, from.getLong(fromOffset + KEY_HIGH_OFFSET));
+      to.putLong(toOffset + KEY_LOW_OFFSET, from.getLong(fromOffset + KEY_LOW_OFFSET));
+      to.putInt(toOffset + SEGMENT_ID_OFFSET, from.getInt(fromOffset + SEGMENT_ID_OFFSET));
+      to.putInt(toOffset + DOC_ID_OFFSET, from.getInt(fromOffset + DOC_ID_OFFSET));
+      to.putLong(toOffset + COMPARISON_VALUE_OFFSET, from.getLong(fromOffset + COMPARISON_VALUE_OFFSET));
+    }
+
+    synchronized void writeTo(FileChannel channel)
+        throws IOException {
+      ByteBuffer header = ByteBuffer.allocate(STRIPE_HEADER_SIZE).order(ByteOrder.nativeOrder());
+      header.putInt(_capacity).putInt(_size).flip();
+      writeFully(channel, header);
+      long bufferSize = (long) _capacity * ENTRY_SIZE;
+      for (long offset = 0; offset < bufferSize; offset += WRITE_CHUNK_SIZE) {
+        writeFully(channel, _buffer.toDirectByteBuffer(offset, (int) Math.min(WRITE_CHUNK_SIZE, bufferSize - offset)));
+      }
+    }
+
+    /**
+     * Loads the stripe serialized at the given offset of the buffer, and returns the offset right after it.
+     */
+    synchronized long load(PinotDataBuffer buffer, long offset) {
+      int capacity = buffer.getInt(offset);
+      int size = buffer.getInt(offset + Integer.BYTES);
+      PinotDataBuffer oldBuffer = _buffer;
+      File oldFile = _file;
+      allocate(capacity);
+      long bufferSize = (long) capacity * ENTRY_SIZE;
+      buffer.copyTo(offset + STRIPE_HEADER_SIZE, _buffer, 0, bufferSize);
+      _size = size;
+      closeBuffer(oldBuffer);
+      if (oldFile != null) {
+        FileUtils.deleteQuietly(oldFile);
+      }
+      return offset + STRIPE_HEADER_SIZE + bufferSize;
+    }
+
+    synchronized void close() {
+      closeBuffer(_buffer);
+    }
+
+    private void closeBuffer(PinotDataBuffer buffer) {
+      try {
+        buffer.close();
+      } catch (IOException e) {
+        throw new RuntimeException("Caught exception while closing buffer for stripe: " + _stripeId, e);
+      }
+    }
+  }
+
+  /**
+   * Location of a record: the id of the segment, the doc id within the segment, and the comparison value encoded as a
+   * long.
+   */
+  public static final class RecordLocation {
+    private final int _segmentId;
+    private final int _docId;
+    private final long _comparisonValue;
+
+    public RecordLocation(int segmentId, int docId, long comparisonValue) {
+      _segmentId = segmentId;
+      _docId = docId;
+      _comparisonValue = comparisonValue;
+    }
+
+    public int getSegmentId() {
+      return _segmentId;
+    }
+
+    public int getDocId() {
+      return _docId;
+    }
+
+    public long getComparisonValue() {
+      return _comparisonValue;
+    }
+  }
+
+  public interface RecordLocationRemapper {
+
+    /**
+     * Returns the new location given the current location ({@code null} if the key does not exist), or {@code null} to
+     * remove the key. Returning the current location leaves the entry unchanged.
+     */
+    @Nullable
+    RecordLocation remap(@Nullable RecordLocation currentLocation);
+  }
+
+  public interface RecordLocationPredicate {
+
+    /**
+     * Returns whether the entry with the given location should be removed.
+     */
+    boolean test(RecordLocation location);
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.util.Map;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.spi.config.table.UpsertConfig;
+
+
+/**
+ * Implementation of {@link TableUpsertMetadataManager} that keeps the primary key to record location map off-heap with
+ * {@link OffHeapPartitionUpsertMetadataManager}.
+ *
+ * <p>It can be enabled by setting {@code metadataManagerClass} in the {@link UpsertConfig} to the name of this class,
+ * and can be tuned with the following {@code metadataManagerConfigs}:
+ * <ul>
+ *   <li>{@code initialCapacity}: initial number of primary keys per partition, 65536 by default</li>
+ *   <li>{@code numStripes}: number of independently locked stripes per partition, must be a power of 2, 16 by
+ *   default</li>
+ *   <li>{@code useMmap}: whether to memory map the map from files under the table index dir instead of allocating it
+ *   from direct memory, false by default</li>
+ *   <li>{@code enableCheckpoint}: whether to checkpoint the map to the table index dir when taking the validDocIds
+ *   snapshots, so that it can be loaded back when preloading segments on restart instead of being rebuilt from the
+ *   segments, false by default. Requires preload to be enabled.</li>
+ * </ul>
+ */
+@ThreadSafe
+public class OffHeapTableUpsertMetadataManager extends ConcurrentMapTableUpsertMetadataManager {
+  public static final String INITIAL_CAPACITY = "initialCapacity";
+  public static final String NUM_STRIPES = "numStripes";
+  public static final String USE_MMAP = "useMmap";
+  public static final String ENABLE_CHECKPOINT = "enableCheckpoint";
+
+  public static final int DEFAULT_INITIAL_CAPACITY = 1 << 16;
+  public static final int DEFAULT_NUM_STRIPES = 16;
+
+  private int _initialCapacity = DEFAULT_INITIAL_CAPACITY;
+  private int _numStripes = DEFAULT_NUM_STRIPES;
+  private boolean _useMmap;
+  private boolean _enableCheckpoint;
+
+  @Override
+  protected void initCustomVariables() {
+    Preconditions.checkState(!_enableDeletedKeysCompactionConsistency,
+        "Off-heap upsert metadata manager does not support deleted keys compaction consistency for table: %s",
+        _tableNameWithType);
+    UpsertConfig upsertConfig = _context.getTableConfig().getUpsertConfig();
+    Map<String, String> metadataManagerConfigs = upsertConfig != null ? upsertConfig.getMetadataManagerConfigs() : null;
+    if (metadataManagerConfigs != null) {
+      String initialCapacity = metadataManagerConfigs.get(INITIAL_CAPACITY);
+      if (initialCapacity != null) {
+        _initialCapacity = Integer.parseInt(initialCapacity);
+      }
+      String numStripes = metadataManagerConfigs.get(NUM_STRIPES);
+      if (numStripes != null) {
+        _numStripes = Integer.parseInt(numStripes);
+      }
+      _useMmap = Boolean.parseBoolean(metadataManagerConfigs.get(USE_MMAP));
+      _enableCheckpoint = Boolean.parseBoolean(metadataManagerConfigs.get(ENABLE_CHECKPOINT));
+    }
+    Preconditions.checkState(!_useMmap || _context.getTableIndexDir() != null,
+        "Table index dir must be set to memory map the upsert metadata for table: %s", _tableNameWithType);
+    Preconditions.checkState(!_enableCheckpoint || (_context.isPreloadEnabled() && _context.getTableIndexDir() != null),
+        "Preload and table index dir must be enabled to checkpoint the upsert metadata for table: %s",
+        _tableNameWithType);
+  }
+
+  @Override
+  protected BasePartitionUpsertMetadataManager createPartitionManager(int partitionId) {
+    File mmapDir = _useMmap ? new File(_context.getTableIndexDir(), "upsertRecordLocations_" + partitionId) : null;
+    File checkpointFile =
+        _enableCheckpoint ? new File(_context.getTableIndexDir(), "upsertRecordLocations.checkpoint_" + partitionId)
+            : null;
+    return new OffHeapPartitionUpsertMetadataManager(_tableNameWithType, partitionId, _context, _initialCapacity,
+        _numStripes, mmapDir, checkpointFile);
+  }
+}
@@ -57,6 +57,7 @@ import org.apache.pinot.spi.config.table.FieldConfig;
 import org.apache.pinot.spi.config.table.FieldConfig.CompressionCodec;
 import org.apache.pinot.spi.config.table.FieldConfig.EncodingType;
 import org.apache.pinot.spi.config.table.IndexingConfig;
+import org.apache.pinot.spi.config.table.JsonIndexConfig;
 import org.apache.pinot.spi.config.table.QuotaConfig;
 import org.apache.pinot.spi.config.table.RoutingConfig;
 import org.apache.pinot.spi.config.table.SegmentsValidationAndRetentionConfig;
@@ -189,6 +190,9 @@ public final class TableConfigUtils {
       validateTierConfigList(tableConfig.getTierConfigsList());
       validateIndexingConfig(tableConfig.getIndexingConfig(), schema);
       validateFieldConfigList(tableConfig, schema);
+      if (schema != null) {
+        validateJsonIndexTypedPaths(tableConfig, schema);
+      }
       validateInstancePartitionsTypeMapConfig(tableConfig);
       validatePartitionedReplicaGroupInstance(tableConfig);
       if (!skipTypes.contains(ValidationType.UPSERT)) {
@@ -1195,6 +1199,33 @@ public final class TableConfigUtils {
    * Additional checks for TEXT and FST index types
    * Validates index compatibility for forward index disabled columns
    */
+  /**
+   * Validates that the typed paths of the json indexes are JSON paths without array, with a data type supported by the
+   * typed values.
+   */
+  private static void validateJsonIndexTypedPaths(TableConfig tableConfig, Schema schema) {
+    for (Map.Entry<String, JsonIndexConfig> entry : StandardIndexes.json().getConfig(tableConfig, schema).entrySet()) {
+      Map<String, DataType> typedPaths = entry.getValue().getTypedPaths();
+      if (typedPaths == null) {
+        continue;
+      }
+      String columnName = entry.getKey();
+      for (Map.Entry<String, DataType> typedPath : typedPaths.entrySet()) {
+        String jsonPath = typedPath.getKey();
+        Preconditions.checkState(
+            jsonPath.startsWith("$.") && jsonPath.indexOf('[') < 0 && jsonPath.indexOf('*') < 0 && !jsonPath.contains(
+                ".."), "Typed path: %s of json index on column: %s must be a JSON path without array", jsonPath,
+            columnName);
+        DataType dataType = typedPath.getValue();
+        Preconditions.checkState(
+            dataType == DataType.INT || dataType == DataType.LONG || dataType == DataType.FLOAT
+                || dataType == DataType.DOUBLE || dataType == DataType.STRING,
+            "Unsupported data type: %s for typed path: %s of json index on column: %s", dataType, jsonPath,
+            columnName);
+      }
+    }
+  }
+
   private static void validateFieldConfigList(TableConfig tableConfig, @Nullable Schema schema) {
     List<FieldConfig> fieldConfigList = tableConfig.getFieldConfigList();
     IndexingConfig indexingConfig = tableConfig.getIndexingConfig();
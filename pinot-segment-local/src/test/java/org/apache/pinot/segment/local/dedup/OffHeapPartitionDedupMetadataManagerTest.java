@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.dedup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.local.segment.readers.PinotSegmentColumnReader;
+import org.apache.pinot.segment.local.segment.readers.PrimaryKeyReader;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class OffHeapPartitionDedupMetadataManagerTest {
+  private static final File TEMP_DIR =
+      new File(FileUtils.getTempDirectory(), OffHeapPartitionDedupMetadataManagerTest.class.getSimpleName());
+  private static final int METADATA_TTL = 10000;
+  private static final double TIME_BUCKET_SIZE = 1000;
+  private static final String DEDUP_TIME_COLUMN_NAME = "dedupTimeColumn";
+
+  @BeforeMethod
+  public void setUp()
+      throws IOException {
+    FileUtils.forceMkdir(TEMP_DIR);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testAddReplaceRemoveSegment()
+      throws IOException {
+    OffHeapPartitionDedupMetadataManager metadataManager = createMetadataManager(METADATA_TTL, null, null);
+
+    ImmutableSegmentImpl segment1 = mockSegment(1, 10);
+    metadataManager.doAddOrReplaceSegment(null, segment1, getDedupRecordInfoIterator(10, 0));
+    verifyInMemoryState(metadataManager, 0, 10, segment1);
+
+    // Replace with a segment with the same primary keys
+    ImmutableSegmentImpl segment2 = mockSegment(2, 10);
+    metadataManager.doAddOrReplaceSegment(segment1, segment2, getDedupRecordInfoIterator(10, 0));
+    verifyInMemoryState(metadataManager, 0, 10, segment2);
+
+    // Removing another segment should not remove the primary keys
+    metadataManager.doRemoveSegment(segment1, getDedupRecordInfoIterator(10, 0));
+    verifyInMemoryState(metadataManager, 0, 10, segment2);
+
+    metadataManager.doRemoveSegment(segment2, getDedupRecordInfoIterator(10, 0));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 0);
+
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  @Test
+  public void testRemoveExpiredPrimaryKeys()
+      throws IOException {
+    OffHeapPartitionDedupMetadataManager metadataManager = createMetadataManager(METADATA_TTL, null, null);
+
+    // Use times not aligned with the time buckets to verify both dropping buckets and removing keys within a bucket
+    ImmutableSegmentImpl segment = mockSegment(1, 20);
+    metadataManager.doAddOrReplaceSegment(null, segment, getDedupRecordInfoIterator(20, 0, 1500));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 20);
+
+    // Keys with time >= 28500 - 10000 = 18500 are kept, i.e. keys [13, 19]
+    metadataManager._largestSeenTime.set(28500);
+    metadataManager.removeExpiredPrimaryKeys();
+    assertEquals(metadataManager.getNumPrimaryKeys(), 7);
+    for (int i = 0; i < 20; i++) {
+      Pair<IndexSegment, Double> segmentAndTime = metadataManager.getSegmentAndTime(DedupTestUtils.getPrimaryKey(i));
+      if (i < 13) {
+        assertNull(segmentAndTime);
+      } else {
+        assertEquals(segmentAndTime, Pair.of(segment, i * 1500.0));
+      }
+    }
+
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  @Test
+  public void testAddRow()
+      throws IOException {
+    OffHeapPartitionDedupMetadataManager metadataManager = createMetadataManager(METADATA_TTL, null, null);
+    metadataManager._largestSeenTime.set(20000);
+
+    PrimaryKey primaryKey = DedupTestUtils.getPrimaryKey(0);
+    ImmutableSegmentImpl segment = mockSegment(1, 1);
+    assertFalse(metadataManager.checkRecordPresentOrUpdate(new DedupRecordInfo(primaryKey, 1000), segment));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 1);
+
+    // The existing record is out of TTL, so the new record should replace it and move to another time bucket
+    assertFalse(metadataManager.checkRecordPresentOrUpdate(new DedupRecordInfo(primaryKey, 15000), segment));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 1);
+    assertEquals(metadataManager.getSegmentAndTime(primaryKey), Pair.of(segment, 15000.0));
+
+    assertTrue(metadataManager.checkRecordPresentOrUpdate(new DedupRecordInfo(primaryKey, 25000), segment));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 1);
+    assertEquals(metadataManager.getSegmentAndTime(primaryKey), Pair.of(segment, 15000.0));
+    assertEquals(metadataManager._largestSeenTime.get(), 25000);
+
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  @Test
+  public void testPersistAcrossRestart()
+      throws IOException {
+    File checkpointFile = new File(TEMP_DIR, "checkpoint");
+    File mmapDir = new File(TEMP_DIR, "mmap");
+    OffHeapPartitionDedupMetadataManager metadataManager = createMetadataManager(0, mmapDir, checkpointFile);
+    ImmutableSegmentImpl segment1 = mockSegment(1, 10);
+    metadataManager.doAddOrReplaceSegment(null, segment1, getDedupRecordInfoIterator(10, 0));
+    ImmutableSegmentImpl segment2 = mockSegment(2, 10);
+    metadataManager.doAddOrReplaceSegment(null, segment2, getDedupRecordInfoIterator(10, 10));
+    MutableSegment consumingSegment = mock(MutableSegment.class);
+    for (int i = 20; i < 30; i++) {
+      assertFalse(
+          metadataManager.checkRecordPresentOrUpdate(new DedupRecordInfo(DedupTestUtils.getPrimaryKey(i)),
+              consumingSegment));
+    }
+    assertEquals(metadataManager.getNumPrimaryKeys(), 30);
+    metadataManager.stop();
+    metadataManager.close();
+    assertTrue(checkpointFile.exists());
+    assertFalse(mmapDir.exists());
+
+    // Only the first segment is preloaded. Keys of the second segment and the consuming segment should be removed.
+    metadataManager = createMetadataManager(0, mmapDir, checkpointFile);
+    metadataManager.loadCheckpoint();
+    assertFalse(checkpointFile.exists());
+    assertEquals(metadataManager.getNumPrimaryKeys(), 30);
+    ImmutableSegmentImpl reloadedSegment1 = mockSegment(1, 10);
+    when(reloadedSegment1.getSegmentName()).thenReturn(segment1.getSegmentName());
+    metadataManager.preloadSegment(reloadedSegment1);
+    metadataManager.removeUnboundCheckpointSegments();
+    assertEquals(metadataManager.getNumPrimaryKeys(), 10);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(metadataManager.getSegmentAndTime(DedupTestUtils.getPrimaryKey(i)),
+          Pair.of(reloadedSegment1, i * 1000.0));
+    }
+    for (int i = 10; i < 30; i++) {
+      assertNull(metadataManager.getSegmentAndTime(DedupTestUtils.getPrimaryKey(i)));
+    }
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  private OffHeapPartitionDedupMetadataManager createMetadataManager(double metadataTTL, File mmapDir,
+      File checkpointFile) {
+    DedupContext.Builder dedupContextBuilder = new DedupContext.Builder();
+    dedupContextBuilder.setTableConfig(mock(TableConfig.class)).setSchema(mock(Schema.class))
+        .setPrimaryKeyColumns(List.of("primaryKeyColumn")).setHashFunction(HashFunction.NONE)
+        .setMetadataTTL(metadataTTL).setDedupTimeColumn(metadataTTL > 0 ? DEDUP_TIME_COLUMN_NAME : null)
+        .setTableIndexDir(TEMP_DIR).setTableDataManager(mock(TableDataManager.class));
+    return new OffHeapPartitionDedupMetadataManager(DedupTestUtils.REALTIME_TABLE_NAME, 0, dedupContextBuilder.build(),
+        16, 4, TIME_BUCKET_SIZE, mmapDir, checkpointFile);
+  }
+
+  private static ImmutableSegmentImpl mockSegment(int sequenceNumber, int totalDocs) {
+    ImmutableSegmentImpl segment = DedupTestUtils.mockSegment(sequenceNumber, totalDocs);
+    when(segment.getSegmentMetadata().getCrc()).thenReturn(Integer.toString(sequenceNumber));
+    return segment;
+  }
+
+  private static Iterator<DedupRecordInfo> getDedupRecordInfoIterator(int numRecords, int startPrimaryKeyId) {
+    return getDedupRecordInfoIterator(numRecords, startPrimaryKeyId, 1000);
+  }
+
+  private static Iterator<DedupRecordInfo> getDedupRecordInfoIterator(int numRecords, int startPrimaryKeyId,
+      double timeStep) {
+    PrimaryKeyReader primaryKeyReader = mock(PrimaryKeyReader.class);
+    PinotSegmentColumnReader dedupTimeColumnReader = mock(PinotSegmentColumnReader.class);
+    for (int i = 0; i < numRecords; i++) {
+      int primaryKeyId = startPrimaryKeyId + i;
+      when(primaryKeyReader.getPrimaryKey(i)).thenReturn(DedupTestUtils.getPrimaryKey(primaryKeyId));
+      when(dedupTimeColumnReader.getValue(i)).thenReturn(primaryKeyId * timeStep);
+    }
+    return DedupUtils.getDedupRecordInfoIterator(
+        new DedupUtils.DedupRecordInfoReader(primaryKeyReader, dedupTimeColumnReader), numRecords);
+  }
+
+  private static void verifyInMemoryState(OffHeapPartitionDedupMetadataManager metadataManager,
+      int startPrimaryKeyId, int recordCount, IndexSegment segment) {
+    assertEquals(metadataManager.getNumPrimaryKeys(), recordCount);
+    for (int primaryKeyId = startPrimaryKeyId; primaryKeyId < startPrimaryKeyId + recordCount; primaryKeyId++) {
+      assertEquals(metadataManager.getSegmentAndTime(DedupTestUtils.getPrimaryKey(primaryKeyId)),
+          Pair.of(segment, primaryKeyId * 1000.0));
+    }
+  }
+}
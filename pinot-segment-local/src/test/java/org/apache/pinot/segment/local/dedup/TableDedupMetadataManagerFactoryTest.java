@@ -20,6 +20,7 @@ package org.apache.pinot.segment.local.dedup;
 
 import com.google.common.collect.Lists;
 import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.concurrent.ExecutorService;
 import org.apache.pinot.segment.local.data.manager.TableDataManager;
@@ -36,6 +37,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 
 public class TableDedupMetadataManagerFactoryTest {
@@ -66,4 +68,26 @@ public class TableDedupMetadataManagerFactoryTest {
         null);
     assertNotNull(tableDedupMetadataManager);
   }
+
+  @Test
+  public void testCreateOffHeapMetadataManager()
+      throws IOException {
+    DedupConfig dedupConfig =
+        new DedupConfig(true, HashFunction.NONE, OffHeapTableDedupMetadataManager.class.getName(),
+            Collections.singletonMap(OffHeapTableDedupMetadataManager.NUM_STRIPES, "4"), 10, "timeCol", false);
+    Schema schema =
+        new Schema.SchemaBuilder().setSchemaName("mytable").addSingleValueDimension("myCol", FieldSpec.DataType.STRING)
+            .setPrimaryKeyColumns(Lists.newArrayList("myCol")).build();
+    TableConfig tableConfig =
+        new TableConfigBuilder(TableType.REALTIME).setTableName("mytable").setDedupConfig(dedupConfig).build();
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getTableDataDir()).thenReturn(new File("mytable"));
+    TableDedupMetadataManager tableDedupMetadataManager =
+        TableDedupMetadataManagerFactory.create(tableConfig, schema, tableDataManager, null, null);
+    assertTrue(tableDedupMetadataManager instanceof OffHeapTableDedupMetadataManager);
+    assertTrue(
+        tableDedupMetadataManager.getOrCreatePartitionManager(0) instanceof OffHeapPartitionDedupMetadataManager);
+    tableDedupMetadataManager.stop();
+    tableDedupMetadataManager.close();
+  }
 }
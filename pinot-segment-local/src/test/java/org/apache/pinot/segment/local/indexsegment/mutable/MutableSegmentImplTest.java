@@ -21,11 +21,15 @@ package org.apache.pinot.segment.local.indexsegment.mutable;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
 import org.apache.pinot.segment.local.segment.creator.SegmentTestUtils;
 import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.readers.PinotSegmentColumnReader;
 import org.apache.pinot.segment.local.segment.virtualcolumn.VirtualColumnProviderFactory;
 import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.SegmentMetadata;
@@ -36,6 +40,7 @@ import org.apache.pinot.segment.spi.datasource.DataSourceMetadata;
 import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
 import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
+import org.apache.pinot.segment.spi.index.reader.InvertedIndexReader;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.Schema;
 import org.apache.pinot.spi.data.readers.FileFormat;
@@ -51,15 +56,24 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class MutableSegmentImplTest {
   private static final String AVRO_FILE = "data/test_data-mv.avro";
   private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "MutableSegmentImplTest");
+  private static final int BATCH_SIZE = 100;
+  private static final Set<String> NO_DICTIONARY_COLUMNS = Set.of("column1", "column5", "column6");
+  private static final Set<String> INVERTED_INDEX_COLUMNS = Set.of("column3", "column7", "column8");
 
+  private File _avroFile;
   private Schema _schema;
   private MutableSegmentImpl _mutableSegmentImpl;
+  private MutableSegmentImpl _batchMutableSegmentImpl;
   private ImmutableSegment _immutableSegment;
   private long _lastIndexedTs;
   private long _lastIngestionTimeMs;
@@ -73,6 +87,7 @@ public class MutableSegmentImplTest {
     URL resourceUrl = MutableSegmentImplTest.class.getClassLoader().getResource(AVRO_FILE);
     Assert.assertNotNull(resourceUrl);
     File avroFile = new File(resourceUrl.getFile());
+    _avroFile = avroFile;
 
     SegmentGeneratorConfig config =
         SegmentTestUtils.getSegmentGeneratorConfigWithoutTimeColumn(avroFile, TEMP_DIR, "testTable");
@@ -98,6 +113,26 @@ public class MutableSegmentImplTest {
         _lastIndexedTs = System.currentTimeMillis();
       }
     }
+
+    _batchMutableSegmentImpl = MutableSegmentImplTestUtils
+        .createMutableSegmentImpl(_schema, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(),
+            false);
+    indexBatch(_batchMutableSegmentImpl, defaultMetadata);
+  }
+
+  private void indexBatch(MutableSegmentImpl mutableSegmentImpl, StreamMessageMetadata metadata)
+      throws Exception {
+    try (RecordReader recordReader = RecordReaderFactory
+        .getRecordReader(FileFormat.AVRO, _avroFile, _schema.getColumnNames(), null)) {
+      List<GenericRow> rows = new ArrayList<>(BATCH_SIZE);
+      while (recordReader.hasNext()) {
+        rows.add(recordReader.next());
+        if (rows.size() == BATCH_SIZE || !recordReader.hasNext()) {
+          mutableSegmentImpl.indexBatch(rows, metadata);
+          rows.clear();
+        }
+      }
+    }
   }
 
   @Test
@@ -202,6 +237,160 @@ public class MutableSegmentImplTest {
     }
   }
 
+  @Test
+  public void testIndexBatch()
+      throws IOException {
+    assertEquals(_batchMutableSegmentImpl.getNumDocsIndexed(), _mutableSegmentImpl.getNumDocsIndexed());
+    assertEquals(_batchMutableSegmentImpl.getSegmentMetadata().getLatestIngestionTimestamp(), _lastIngestionTimeMs);
+
+    for (FieldSpec fieldSpec : _schema.getAllFieldSpecs()) {
+      String column = fieldSpec.getName();
+      // Allow the segment name to be different
+      if (column.equals(CommonConstants.Segment.BuiltInVirtualColumn.SEGMENTNAME)) {
+        continue;
+      }
+      DataSource actualDataSource = _batchMutableSegmentImpl.getDataSource(column);
+      DataSource expectedDataSource = _mutableSegmentImpl.getDataSource(column);
+      DataSourceMetadata actualDataSourceMetadata = actualDataSource.getDataSourceMetadata();
+      DataSourceMetadata expectedDataSourceMetadata = expectedDataSource.getDataSourceMetadata();
+      assertEquals(actualDataSourceMetadata.getNumDocs(), expectedDataSourceMetadata.getNumDocs());
+      assertEquals(actualDataSourceMetadata.getNumValues(), expectedDataSourceMetadata.getNumValues());
+      assertEquals(actualDataSourceMetadata.getMinValue(), expectedDataSourceMetadata.getMinValue());
+      assertEquals(actualDataSourceMetadata.getMaxValue(), expectedDataSourceMetadata.getMaxValue());
+      assertEquals(actualDataSourceMetadata.getMaxNumValuesPerMVEntry(),
+          expectedDataSourceMetadata.getMaxNumValuesPerMVEntry());
+
+      // Both segments index the same records in the same order, so the dictionary ids should be the same
+      Dictionary actualDictionary = actualDataSource.getDictionary();
+      Dictionary expectedDictionary = expectedDataSource.getDictionary();
+      assertEquals(actualDictionary.length(), expectedDictionary.length());
+
+      int numDocs = expectedDataSourceMetadata.getNumDocs();
+      ForwardIndexReader actualReader = actualDataSource.getForwardIndex();
+      ForwardIndexReader expectedReader = expectedDataSource.getForwardIndex();
+      try (ForwardIndexReaderContext actualReaderContext = actualReader.createContext();
+          ForwardIndexReaderContext expectedReaderContext = expectedReader.createContext()) {
+        if (fieldSpec.isSingleValueField()) {
+          for (int docId = 0; docId < numDocs; docId++) {
+            assertEquals(actualReader.getDictId(docId, actualReaderContext),
+                expectedReader.getDictId(docId, expectedReaderContext));
+          }
+        } else {
+          int maxNumValuesPerMVEntry = expectedDataSourceMetadata.getMaxNumValuesPerMVEntry();
+          int[] actualDictIds = new int[maxNumValuesPerMVEntry];
+          int[] expectedDictIds = new int[maxNumValuesPerMVEntry];
+          for (int docId = 0; docId < numDocs; docId++) {
+            int actualLength = actualReader.getDictIdMV(docId, actualDictIds, actualReaderContext);
+            int expectedLength = expectedReader.getDictIdMV(docId, expectedDictIds, expectedReaderContext);
+            assertEquals(actualLength, expectedLength);
+            for (int i = 0; i < expectedLength; i++) {
+              assertEquals(actualDictIds[i], expectedDictIds[i]);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIndexBatchWithIndexes()
+      throws Exception {
+    StreamMessageMetadata defaultMetadata = new StreamMessageMetadata(_lastIngestionTimeMs, new GenericRow());
+    MutableSegmentImpl mutableSegmentImpl = MutableSegmentImplTestUtils.createMutableSegmentImpl(_schema,
+        NO_DICTIONARY_COLUMNS, Collections.emptySet(), INVERTED_INDEX_COLUMNS, false);
+    MutableSegmentImpl batchMutableSegmentImpl = MutableSegmentImplTestUtils.createMutableSegmentImpl(_schema,
+        NO_DICTIONARY_COLUMNS, Collections.emptySet(), INVERTED_INDEX_COLUMNS, false);
+    try {
+      try (RecordReader recordReader = RecordReaderFactory
+          .getRecordReader(FileFormat.AVRO, _avroFile, _schema.getColumnNames(), null)) {
+        GenericRow reuse = new GenericRow();
+        while (recordReader.hasNext()) {
+          mutableSegmentImpl.index(recordReader.next(reuse), defaultMetadata);
+        }
+      }
+      indexBatch(batchMutableSegmentImpl, defaultMetadata);
+
+      int numDocs = mutableSegmentImpl.getNumDocsIndexed();
+      assertEquals(batchMutableSegmentImpl.getNumDocsIndexed(), numDocs);
+      for (FieldSpec fieldSpec : _schema.getAllFieldSpecs()) {
+        String column = fieldSpec.getName();
+        // Allow the segment name to be different
+        if (column.equals(CommonConstants.Segment.BuiltInVirtualColumn.SEGMENTNAME)) {
+          continue;
+        }
+        DataSource actualDataSource = batchMutableSegmentImpl.getDataSource(column);
+        DataSource expectedDataSource = mutableSegmentImpl.getDataSource(column);
+        assertEquals(actualDataSource.getDictionary() == null, NO_DICTIONARY_COLUMNS.contains(column));
+        assertEquals(actualDataSource.getDataSourceMetadata().getMinValue(),
+            expectedDataSource.getDataSourceMetadata().getMinValue());
+        assertEquals(actualDataSource.getDataSourceMetadata().getMaxValue(),
+            expectedDataSource.getDataSourceMetadata().getMaxValue());
+
+        // Values of the raw and the dictionary encoded columns
+        try (PinotSegmentColumnReader actualReader = new PinotSegmentColumnReader(batchMutableSegmentImpl, column);
+            PinotSegmentColumnReader expectedReader = new PinotSegmentColumnReader(mutableSegmentImpl, column)) {
+          for (int docId = 0; docId < numDocs; docId++) {
+            assertEquals(actualReader.getValue(docId), expectedReader.getValue(docId));
+          }
+        }
+
+        // Both segments index the same records in the same order, so the inverted indexes should be the same
+        InvertedIndexReader<?> expectedInvertedIndex = expectedDataSource.getInvertedIndex();
+        if (INVERTED_INDEX_COLUMNS.contains(column)) {
+          InvertedIndexReader<?> actualInvertedIndex = actualDataSource.getInvertedIndex();
+          assertNotNull(actualInvertedIndex);
+          assertNotNull(expectedInvertedIndex);
+          int cardinality = expectedDataSource.getDictionary().length();
+          for (int dictId = 0; dictId < cardinality; dictId++) {
+            assertEquals(actualInvertedIndex.getDocIds(dictId), expectedInvertedIndex.getDocIds(dictId));
+          }
+        } else if (!fieldSpec.isVirtualColumn()) {
+          assertNull(expectedInvertedIndex);
+        }
+      }
+    } finally {
+      mutableSegmentImpl.destroy();
+      batchMutableSegmentImpl.destroy();
+    }
+  }
+
+  @Test
+  public void testIndexBatchBeyondCapacity()
+      throws Exception {
+    Schema schema = new Schema.SchemaBuilder().setSchemaName("testTable")
+        .addSingleValueDimension("intColumn", FieldSpec.DataType.INT).build();
+    MutableSegmentImpl mutableSegmentImpl = MutableSegmentImplTestUtils.createMutableSegmentImpl(schema,
+        Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), false);
+    try {
+      // The segment is created with a capacity of 100000 records
+      int capacity = 100000;
+      int numDocs = capacity - 10;
+      for (int i = 0; i < numDocs; i++) {
+        GenericRow row = new GenericRow();
+        row.putValue("intColumn", i);
+        assertTrue(mutableSegmentImpl.index(row, null));
+      }
+
+      // The records within the capacity are indexed together, and the records beyond it are indexed one by one
+      List<GenericRow> rows = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        GenericRow row = new GenericRow();
+        row.putValue("intColumn", numDocs + i);
+        rows.add(row);
+      }
+      assertTrue(mutableSegmentImpl.indexBatch(rows.subList(0, 5), null));
+      assertFalse(mutableSegmentImpl.indexBatch(rows.subList(5, 20), null));
+      assertEquals(mutableSegmentImpl.getNumDocsIndexed(), capacity + 10);
+      try (PinotSegmentColumnReader reader = new PinotSegmentColumnReader(mutableSegmentImpl, "intColumn")) {
+        for (int docId = numDocs; docId < capacity + 10; docId++) {
+          assertEquals(reader.getValue(docId), docId);
+        }
+      }
+    } finally {
+      mutableSegmentImpl.destroy();
+    }
+  }
+
   @AfterClass
   public void tearDown() {
     FileUtils.deleteQuietly(TEMP_DIR);
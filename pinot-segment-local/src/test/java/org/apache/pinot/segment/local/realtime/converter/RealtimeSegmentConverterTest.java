@@ -335,10 +335,15 @@ public class RealtimeSegmentConverterTest {
     assertEquals(segmentMetadata.getEndOffset(), "100");
   }
 
-  @Test
-  public void test10RecordsIndexedColumnMajorSegmentBuilder()
+  @DataProvider
+  public static Object[][] segmentBuildParallelism() {
+    return new Object[][]{{1}, {4}};
+  }
+
+  @Test(dataProvider = "segmentBuildParallelism")
+  public void test10RecordsIndexedColumnMajorSegmentBuilder(int segmentBuildParallelism)
       throws Exception {
-    File tmpDir = new File(TMP_DIR, "tmp_" + System.currentTimeMillis());
+    File tmpDir = new File(TMP_DIR, "tmp_" + segmentBuildParallelism + "_" + System.currentTimeMillis());
     TableConfig tableConfig =
         new TableConfigBuilder(TableType.REALTIME).setTableName("testTable")
             .setTimeColumnName(DATE_TIME_COLUMN)
@@ -350,6 +355,7 @@ public class RealtimeSegmentConverterTest {
             .setOnHeapDictionaryColumns(Lists.newArrayList(LONG_COLUMN3))
             .setColumnMajorSegmentBuilderEnabled(true)
             .build();
+    tableConfig.getIndexingConfig().setSegmentBuildParallelism(segmentBuildParallelism);
     Schema schema = new Schema.SchemaBuilder()
         .addSingleValueDimension(STRING_COLUMN1, FieldSpec.DataType.STRING)
         .addSingleValueDimension(STRING_COLUMN2, FieldSpec.DataType.STRING)
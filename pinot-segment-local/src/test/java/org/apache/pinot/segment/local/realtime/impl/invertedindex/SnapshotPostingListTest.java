@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.realtime.impl.invertedindex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class SnapshotPostingListTest {
+  private static final int NUM_DOCS = 100_000;
+
+  @Test
+  public void testAddAndGetDocIds() {
+    SnapshotPostingList.ForMutableRoaringBitmap postingList = new SnapshotPostingList.ForMutableRoaringBitmap();
+    assertTrue(postingList.getDocIds().isEmpty());
+
+    MutableRoaringBitmap expectedDocIds = new MutableRoaringBitmap();
+    for (int docId = 0; docId < NUM_DOCS; docId += 3) {
+      postingList.add(docId);
+      // Adding the same doc id again should be a no-op
+      postingList.add(docId);
+      expectedDocIds.add(docId);
+      if (docId % 999 == 0) {
+        assertEquals(postingList.getDocIds(), expectedDocIds);
+      }
+    }
+    MutableRoaringBitmap docIds = postingList.getDocIds();
+    assertEquals(docIds, expectedDocIds);
+    // The snapshot should be shared until more doc ids are added
+    assertSame(postingList.getDocIds(), docIds);
+    assertTrue(postingList.hasSnapshot());
+    // The stale snapshot should be dropped when more doc ids are added
+    postingList.add(NUM_DOCS);
+    assertFalse(postingList.hasSnapshot());
+    expectedDocIds.add(NUM_DOCS);
+    assertEquals(postingList.getDocIds(), expectedDocIds);
+  }
+
+  @Test
+  public void testConcurrentReadWrite()
+      throws Exception {
+    SnapshotPostingList.ForRoaringBitmap postingList = new SnapshotPostingList.ForRoaringBitmap();
+    AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        futures.add(executorService.submit(() -> {
+          int lastCardinality = 0;
+          while (!done.get()) {
+            // Each snapshot should contain a prefix of the added doc ids, and should never go backward
+            RoaringBitmap docIds = postingList.getDocIds();
+            int cardinality = docIds.getCardinality();
+            assertTrue(cardinality >= lastCardinality);
+            if (cardinality > 0) {
+              assertEquals(docIds.first(), 0);
+              assertEquals(docIds.last(), cardinality - 1);
+            }
+            lastCardinality = cardinality;
+          }
+        }));
+      }
+      futures.add(executorService.submit(() -> {
+        try {
+          for (int docId = 0; docId < NUM_DOCS; docId++) {
+            postingList.add(docId);
+          }
+        } finally {
+          done.set(true);
+        }
+      }));
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+    assertEquals(postingList.getDocIds().getCardinality(), NUM_DOCS);
+  }
+}
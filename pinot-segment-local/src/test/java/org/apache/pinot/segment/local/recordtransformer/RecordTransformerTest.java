@@ -901,4 +901,41 @@ public class RecordTransformerTest {
       assertNotNull(record);
     }
   }
+
+  @Test
+  public void testCompositeTransformerBatch() {
+    Schema schema = new Schema.SchemaBuilder().addSingleValueDimension("a", DataType.INT)
+        .addSingleValueDimension("b", DataType.LONG).build();
+    IngestionConfig ingestionConfig = new IngestionConfig();
+    ingestionConfig.setTransformConfigs(List.of(new TransformConfig("b", "plus(a, 10)")));
+    ingestionConfig.setFilterConfig(new FilterConfig("Groovy({a % 3 == 0}, a)"));
+    TableConfig tableConfig =
+        new TableConfigBuilder(TableType.OFFLINE).setTableName("testTable").setIngestionConfig(ingestionConfig).build();
+    CompositeTransformer transformer = CompositeTransformer.getDefaultTransformer(tableConfig, schema);
+
+    int numRecords = 10;
+    List<GenericRow> records = new ArrayList<>(numRecords);
+    for (int i = 0; i < numRecords; i++) {
+      GenericRow record = new GenericRow();
+      record.putValue("a", i);
+      records.add(record);
+    }
+    List<GenericRow> transformedRecords = transformer.transform(new ArrayList<>(records));
+
+    // The filtered records should be kept in place, and the batch should be transformed the same as record by record
+    assertEquals(transformedRecords.size(), numRecords);
+    for (int i = 0; i < numRecords; i++) {
+      GenericRow transformedRecord = transformedRecords.get(i);
+      assertSame(transformedRecord, records.get(i));
+      GenericRow expectedRecord = new GenericRow();
+      expectedRecord.putValue("a", i);
+      assertEquals(transformedRecord, transformer.transform(expectedRecord));
+      if (i % 3 == 0) {
+        assertTrue(transformedRecord.getFieldToValueMap().containsKey(GenericRow.SKIP_RECORD_KEY));
+      } else {
+        assertFalse(transformedRecord.getFieldToValueMap().containsKey(GenericRow.SKIP_RECORD_KEY));
+        assertEquals(transformedRecord.getValue("b"), i + 10L);
+      }
+    }
+  }
 }
@@ -18,7 +18,9 @@
  */
 package org.apache.pinot.segment.local.segment.creator;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.data.Schema;
@@ -108,6 +110,70 @@ public class TransformPipelineTest {
     Assert.assertEquals(result.getSkippedRowCount(), 0);
   }
 
+  @Test
+  public void testBatchRows()
+      throws Exception {
+    TableConfig config = createTestTableConfig();
+    Schema schema = Fixtures.createSchema();
+    TransformPipeline pipeline = new TransformPipeline(config, schema);
+    GenericRow simpleRow1 = Fixtures.createSingleRow(9527);
+    GenericRow multipleRow = Fixtures.createMultipleRow(9528);
+    List<GenericRow> rows = new ArrayList<>();
+    rows.add(simpleRow1);
+    rows.addAll((Collection<GenericRow>) multipleRow.getValue(GenericRow.MULTIPLE_RECORDS_KEY));
+    GenericRow simpleRow2 = Fixtures.createSingleRow(9529);
+    rows.add(simpleRow2);
+    TransformPipeline.Result result = new TransformPipeline.Result();
+    pipeline.processRows(List.of(simpleRow1, multipleRow, simpleRow2), result);
+
+    Assert.assertEquals(result.getTransformedRows(), rows);
+    Assert.assertEquals(result.getSkippedRowCount(), 0);
+  }
+
+  @Test
+  public void testBatchRowsPartialFailure()
+      throws Exception {
+    TableConfig config = createTestTableConfig();
+    Schema schema = Fixtures.createSchema();
+    TransformPipeline pipeline = new TransformPipeline(config, schema);
+    GenericRow multipleRow = Fixtures.createMultipleRowPartialFailure(9527);
+    TransformPipeline.Result result = new TransformPipeline.Result();
+    boolean exceptionThrown = false;
+    try {
+      pipeline.processRows(List.of(Fixtures.createSingleRow(9526), multipleRow), result);
+    } catch (Exception ex) {
+      exceptionThrown = true;
+    }
+
+    // The whole batch should fail without partial result
+    Assert.assertTrue(exceptionThrown);
+    Assert.assertEquals(result.getTransformedRows().size(), 0);
+    Assert.assertEquals(result.getSkippedRowCount(), 0);
+  }
+
+  @Test
+  public void testBatchRowsWithResultPerRow()
+      throws Exception {
+    TableConfig config = createTestTableConfig();
+    Schema schema = Fixtures.createSchema();
+    TransformPipeline pipeline = new TransformPipeline(config, schema);
+    GenericRow simpleRow1 = Fixtures.createSingleRow(9527);
+    GenericRow simpleRow2 = Fixtures.createSingleRow(9528);
+    TransformPipeline.Result[] results = new TransformPipeline.Result[2];
+    Assert.assertTrue(pipeline.processRows(List.of(simpleRow1, simpleRow2), results));
+    Assert.assertEquals(results[0].getTransformedRows(), List.of(simpleRow1));
+    Assert.assertEquals(results[0].getSkippedRowCount(), 0);
+    Assert.assertEquals(results[1].getTransformedRows(), List.of(simpleRow2));
+    Assert.assertEquals(results[1].getSkippedRowCount(), 0);
+
+    // The rows unnested from a decoded row cannot be matched to the decoded rows
+    results = new TransformPipeline.Result[2];
+    Assert.assertFalse(pipeline.processRows(List.of(Fixtures.createSingleRow(9529), Fixtures.createMultipleRow(9530)),
+        results));
+    Assert.assertNull(results[0]);
+    Assert.assertNull(results[1]);
+  }
+
   @Test
   public void testReuseResultSet()
       throws Exception {
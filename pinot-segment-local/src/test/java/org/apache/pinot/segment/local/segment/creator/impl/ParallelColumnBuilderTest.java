@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.creator.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+
+public class ParallelColumnBuilderTest {
+  private static final int NUM_COLUMNS = 20;
+
+  @Test
+  public void testSequentialBuild()
+      throws Exception {
+    List<String> columns = getColumns();
+    List<String> builtColumns = new ArrayList<>();
+    new ParallelColumnBuilder(1, 0).build(columns, column -> 1, builtColumns::add);
+    assertEquals(builtColumns, columns);
+  }
+
+  @Test
+  public void testParallelBuildWithinMemoryBudget()
+      throws Exception {
+    long memoryBudget = 100;
+    AtomicLong usedMemory = new AtomicLong();
+    AtomicLong maxUsedMemory = new AtomicLong();
+    AtomicInteger numConcurrentColumns = new AtomicInteger();
+    AtomicInteger maxNumConcurrentColumns = new AtomicInteger();
+    Set<String> builtColumns = ConcurrentHashMap.newKeySet();
+    // The last column is larger than the memory budget and should be built alone
+    new ParallelColumnBuilder(4, memoryBudget).build(getColumns(),
+        column -> column.equals("col" + (NUM_COLUMNS - 1)) ? 1000 : 30, column -> {
+          long memory = column.equals("col" + (NUM_COLUMNS - 1)) ? memoryBudget : 30;
+          maxUsedMemory.accumulateAndGet(usedMemory.addAndGet(memory), Math::max);
+          maxNumConcurrentColumns.accumulateAndGet(numConcurrentColumns.incrementAndGet(), Math::max);
+          Thread.sleep(10);
+          numConcurrentColumns.decrementAndGet();
+          usedMemory.addAndGet(-memory);
+          builtColumns.add(column);
+        });
+    assertEquals(builtColumns.size(), NUM_COLUMNS);
+    assertTrue(maxUsedMemory.get() <= memoryBudget);
+    assertTrue(maxNumConcurrentColumns.get() <= 3);
+  }
+
+  @Test
+  public void testSharedMemoryBudget()
+      throws Exception {
+    long sharedMemoryBudget = 100;
+    ParallelColumnBuilder.MemoryBudget memoryBudget = new ParallelColumnBuilder.MemoryBudget(sharedMemoryBudget);
+    AtomicLong usedMemory = new AtomicLong();
+    AtomicLong maxUsedMemory = new AtomicLong();
+    Set<String> builtColumns = ConcurrentHashMap.newKeySet();
+    // Each build is allowed to use the whole shared budget, but the concurrent builds should not exceed it together
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        String prefix = "segment" + i + "_";
+        futures.add(executorService.submit(() -> {
+          List<String> columns = new ArrayList<>(NUM_COLUMNS);
+          for (String column : getColumns()) {
+            columns.add(prefix + column);
+          }
+          new ParallelColumnBuilder(4, 0, memoryBudget).build(columns, column -> 30, column -> {
+            maxUsedMemory.accumulateAndGet(usedMemory.addAndGet(30), Math::max);
+            Thread.sleep(10);
+            usedMemory.addAndGet(-30);
+            builtColumns.add(column);
+          });
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+    assertEquals(builtColumns.size(), 2 * NUM_COLUMNS);
+    assertTrue(maxUsedMemory.get() <= sharedMemoryBudget);
+  }
+
+  @Test
+  public void testFailure()
+      throws Exception {
+    AtomicInteger numRunningColumns = new AtomicInteger();
+    try {
+      new ParallelColumnBuilder(4, 0).build(getColumns(), column -> 1, column -> {
+        numRunningColumns.incrementAndGet();
+        try {
+          Thread.sleep(10);
+          if (column.equals("col0")) {
+            throw new IOException("Failed to build column: " + column);
+          }
+        } finally {
+          numRunningColumns.decrementAndGet();
+        }
+      });
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals(e.getMessage(), "Failed to build column: col0");
+    }
+    // All the started columns should be finished before the failure is thrown
+    assertEquals(numRunningColumns.get(), 0);
+  }
+
+  private static List<String> getColumns() {
+    List<String> columns = new ArrayList<>(NUM_COLUMNS);
+    for (int i = 0; i < NUM_COLUMNS; i++) {
+      columns.add("col" + i);
+    }
+    return columns;
+  }
+}
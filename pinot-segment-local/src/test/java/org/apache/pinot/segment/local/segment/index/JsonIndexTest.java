@@ -35,10 +35,12 @@ import org.apache.pinot.segment.local.segment.index.json.JsonIndexType;
 import org.apache.pinot.segment.local.segment.index.readers.json.ImmutableJsonIndexReader;
 import org.apache.pinot.segment.spi.V1Constants;
 import org.apache.pinot.segment.spi.index.creator.JsonIndexCreator;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.segment.spi.index.reader.JsonIndexReader;
 import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 import org.apache.pinot.spi.config.table.FieldConfig;
 import org.apache.pinot.spi.config.table.JsonIndexConfig;
+import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.utils.JsonUtils;
 import org.roaringbitmap.RoaringBitmap;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
@@ -569,6 +571,69 @@ public class JsonIndexTest {
     }
   }
 
+  @Test
+  public void testTypedPaths()
+      throws Exception {
+    // @formatter: off
+    // CHECKSTYLE:OFF
+    String[] records = new String[]{
+        "{\"name\":\"adam\",\"age\":20,\"score\":1.25,\"zip\":\"123\",\"skills\":[\"english\",\"programming\"]}",
+        "{\"name\":\"bob\",\"age\":25,\"zip\":\"abc\",\"skills\":[]}",
+        "{\"name\":\"charles\",\"age\":20,\"score\":0.9,\"skills\":[\"japanese\",\"korean\",\"chinese\"]}"
+    };
+    //CHECKSTYLE:ON
+    // @formatter: on
+    JsonIndexConfig jsonIndexConfig = new JsonIndexConfig();
+    Map<String, FieldSpec.DataType> typedPaths = new HashMap<>();
+    typedPaths.put("$.name", FieldSpec.DataType.STRING);
+    typedPaths.put("$.age", FieldSpec.DataType.INT);
+    typedPaths.put("$.score", FieldSpec.DataType.DOUBLE);
+    // Dropped because "abc" is not an INT
+    typedPaths.put("$.zip", FieldSpec.DataType.INT);
+    jsonIndexConfig.setTypedPaths(typedPaths);
+
+    createIndex(true, jsonIndexConfig, records);
+    File onHeapIndexFile = new File(INDEX_DIR, ON_HEAP_COLUMN_NAME + V1Constants.Indexes.JSON_INDEX_FILE_EXTENSION);
+    createIndex(false, jsonIndexConfig, records);
+    File offHeapIndexFile = new File(INDEX_DIR, OFF_HEAP_COLUMN_NAME + V1Constants.Indexes.JSON_INDEX_FILE_EXTENSION);
+
+    try (PinotDataBuffer onHeapDataBuffer = PinotDataBuffer.mapReadOnlyBigEndianFile(onHeapIndexFile);
+        PinotDataBuffer offHeapDataBuffer = PinotDataBuffer.mapReadOnlyBigEndianFile(offHeapIndexFile);
+        JsonIndexReader onHeapIndexReader = new ImmutableJsonIndexReader(onHeapDataBuffer, records.length);
+        JsonIndexReader offHeapIndexReader = new ImmutableJsonIndexReader(offHeapDataBuffer, records.length)) {
+      int[] docIds = new int[]{0, 1, 2};
+      int[] dictIds = new int[docIds.length];
+      for (JsonIndexReader indexReader : new JsonIndexReader[]{onHeapIndexReader, offHeapIndexReader}) {
+        // Regular json index lookups should not be affected by the typed values
+        Assert.assertEquals(getMatchingDocIds(indexReader, "\"age\" > 20").toArray(), new int[]{1});
+        Assert.assertEquals(getMatchingDocIds(indexReader, "\"skills[*]\" = 'korean'").toArray(), new int[]{2});
+
+        Dictionary ageDictionary = indexReader.getTypedValueDictionary("$.age");
+        assertNotNull(ageDictionary);
+        Assert.assertEquals(ageDictionary.getValueType(), FieldSpec.DataType.INT);
+        Assert.assertEquals(ageDictionary.length(), 2);
+        indexReader.readTypedValueDictIds("$.age", docIds, docIds.length, dictIds);
+        Assert.assertEquals(dictIds, new int[]{0, 1, 0});
+        Assert.assertEquals(ageDictionary.getIntValue(dictIds[1]), 25);
+
+        // Legacy key format
+        Dictionary scoreDictionary = indexReader.getTypedValueDictionary("score");
+        assertNotNull(scoreDictionary);
+        indexReader.readTypedValueDictIds("score", docIds, docIds.length, dictIds);
+        Assert.assertEquals(dictIds, new int[]{1, -1, 0});
+        Assert.assertEquals(scoreDictionary.getDoubleValue(dictIds[0]), 1.25);
+
+        Dictionary nameDictionary = indexReader.getTypedValueDictionary("$.name");
+        assertNotNull(nameDictionary);
+        indexReader.readTypedValueDictIds("$.name", new int[]{2}, 1, dictIds);
+        Assert.assertEquals(nameDictionary.getStringValue(dictIds[0]), "charles");
+
+        assertNull(indexReader.getTypedValueDictionary("$.zip"));
+        assertNull(indexReader.getTypedValueDictionary("$.skills"));
+      }
+    }
+  }
+
   @Test
   public void testSkipInvalidJsonEnable() throws Exception {
     JsonIndexConfig jsonIndexConfig = new JsonIndexConfig();
@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.index.map;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.segment.creator.impl.map.ColumnarMapIndexCreator;
+import org.apache.pinot.segment.local.segment.creator.impl.stats.MapColumnPreIndexStatsCollector;
+import org.apache.pinot.segment.local.segment.index.readers.map.ImmutableMapIndexReader;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.creator.IndexCreationContext;
+import org.apache.pinot.segment.spi.creator.StatsCollectorConfig;
+import org.apache.pinot.segment.spi.index.IndexReader;
+import org.apache.pinot.segment.spi.index.IndexType;
+import org.apache.pinot.segment.spi.index.StandardIndexes;
+import org.apache.pinot.segment.spi.index.metadata.ColumnMetadataImpl;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
+import org.apache.pinot.segment.spi.index.reader.InvertedIndexReader;
+import org.apache.pinot.segment.spi.index.reader.NullValueVectorReader;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.config.table.MapIndexConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.ComplexFieldSpec;
+import org.apache.pinot.spi.data.DimensionFieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class ColumnarMapIndexTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "ColumnarMapIndexTest");
+  private static final String COLUMN_NAME = "mapColumn";
+  private static final int NUM_DOCS = 1000;
+
+  private final List<Map<String, Object>> _records = new ArrayList<>();
+
+  @BeforeClass
+  public void setUp() {
+    for (int i = 0; i < NUM_DOCS; i++) {
+      Map<String, Object> record = new HashMap<>();
+      // Present in all the docs
+      record.put("a", i % 10);
+      // Present in half of the docs
+      if (i % 2 == 0) {
+        record.put("b", "v" + (i % 3));
+      }
+      // Present in 1% of the docs, below the default dense key frequency
+      if (i % 100 == 0) {
+        record.put("rare", "r" + i);
+      }
+      _records.add(record);
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testDenseAndSparseKeys()
+      throws Exception {
+    ComplexFieldSpec fieldSpec = createFieldSpec(DataType.STRING);
+    MapIndexConfig indexConfig = new MapIndexConfig(false,
+        Map.of(ColumnarMapIndexCreator.INVERTED_INDEX_KEYS_KEY, "b", ColumnarMapIndexCreator.DENSE_KEYS_KEY,
+            List.of("a")));
+    File indexFile = createIndex(fieldSpec, _records, indexConfig);
+    try (PinotDataBuffer dataBuffer = PinotDataBuffer.mapReadOnlyBigEndianFile(indexFile);
+        ImmutableMapIndexReader reader = new ImmutableMapIndexReader(dataBuffer,
+            ColumnMetadataImpl.builder().setFieldSpec(fieldSpec).setTotalDocs(NUM_DOCS).build())) {
+      assertEquals(reader.getKeys(), Set.of("a", "b", "rare"));
+
+      // Dense key present in all the docs, where the INT values are stored as the declared STRING value type
+      Map<IndexType, IndexReader> aIndexes = reader.getKeyIndexes("a");
+      assertNotNull(aIndexes);
+      assertEquals(reader.getKeyStoredType("a"), DataType.STRING);
+      assertEquals(reader.getKeyFieldSpec("a").getDataType(), DataType.STRING);
+      assertEquals(reader.getKeyMetadata("a").getCardinality(), 10);
+      assertNull(aIndexes.get(StandardIndexes.range()));
+      assertNull(aIndexes.get(StandardIndexes.inverted()));
+      Dictionary aDictionary = (Dictionary) aIndexes.get(StandardIndexes.dictionary());
+      ForwardIndexReader aForwardIndex = (ForwardIndexReader) aIndexes.get(StandardIndexes.forward());
+      assertTrue(aForwardIndex.isDictionaryEncoded());
+      try (ForwardIndexReaderContext aContext = aForwardIndex.createContext()) {
+        for (int i = 0; i < NUM_DOCS; i++) {
+          assertEquals(aDictionary.getStringValue(aForwardIndex.getDictId(i, aContext)), Integer.toString(i % 10));
+        }
+      }
+
+      // Dense key present in half of the docs, with the default null value stored for the other docs
+      Map<IndexType, IndexReader> bIndexes = reader.getKeyIndexes("b");
+      assertNotNull(bIndexes);
+      Dictionary bDictionary = (Dictionary) bIndexes.get(StandardIndexes.dictionary());
+      assertEquals(bDictionary.length(), 4);
+      NullValueVectorReader bNullValueVector = (NullValueVectorReader) bIndexes.get(StandardIndexes.nullValueVector());
+      assertEquals(bNullValueVector.getNullBitmap().getCardinality(), NUM_DOCS / 2);
+      assertTrue(bNullValueVector.isNull(1));
+      assertFalse(bNullValueVector.isNull(0));
+      InvertedIndexReader<ImmutableRoaringBitmap> bInvertedIndex =
+          (InvertedIndexReader<ImmutableRoaringBitmap>) bIndexes.get(StandardIndexes.inverted());
+      ImmutableRoaringBitmap v0DocIds = bInvertedIndex.getDocIds(bDictionary.indexOf("v0"));
+      for (int i = 0; i < NUM_DOCS; i++) {
+        assertEquals(v0DocIds.contains(i), i % 6 == 0);
+      }
+
+      // Sparse key
+      assertNotNull(reader.getKeyIndexes("rare"));
+      ForwardIndexReader rareForwardIndex = (ForwardIndexReader) reader.getKeyReader("rare", StandardIndexes.forward());
+      try (ForwardIndexReaderContext rareContext = rareForwardIndex.createContext()) {
+        assertEquals(rareForwardIndex.getString(200, rareContext), "r200");
+      }
+
+      // Unknown key
+      assertNull(reader.getKeyIndexes("unknown"));
+
+      // Whole map
+      try (ForwardIndexReaderContext mapContext = reader.createContext()) {
+        for (int i = 0; i < NUM_DOCS; i++) {
+          Map<String, Object> expectedMap = new HashMap<>(_records.get(i));
+          expectedMap.put("a", Integer.toString(i % 10));
+          assertEquals(reader.getMap(i, mapContext), expectedMap);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDenseKeyValueConversion()
+      throws Exception {
+    // Values of different classes should all be stored as the declared INT value type, regardless of the class of the
+    // first value
+    List<Map<String, Object>> records = new ArrayList<>(NUM_DOCS);
+    for (int i = 0; i < NUM_DOCS; i++) {
+      int value = i % 10;
+      switch (i % 3) {
+        case 0:
+          records.add(Map.of("a", (long) value));
+          break;
+        case 1:
+          records.add(Map.of("a", Integer.toString(value)));
+          break;
+        default:
+          records.add(Map.of("a", value));
+          break;
+      }
+    }
+    ComplexFieldSpec fieldSpec = createFieldSpec(DataType.INT);
+    MapIndexConfig indexConfig =
+        new MapIndexConfig(false, Map.of(ColumnarMapIndexCreator.RANGE_INDEX_KEYS_KEY, List.of("a")));
+    File indexFile = createIndex(fieldSpec, records, indexConfig);
+    try (PinotDataBuffer dataBuffer = PinotDataBuffer.mapReadOnlyBigEndianFile(indexFile);
+        ImmutableMapIndexReader reader = new ImmutableMapIndexReader(dataBuffer,
+            ColumnMetadataImpl.builder().setFieldSpec(fieldSpec).setTotalDocs(NUM_DOCS).build())) {
+      Map<IndexType, IndexReader> aIndexes = reader.getKeyIndexes("a");
+      assertNotNull(aIndexes);
+      assertEquals(reader.getKeyStoredType("a"), DataType.INT);
+      assertEquals(reader.getKeyMetadata("a").getCardinality(), 10);
+      assertNotNull(aIndexes.get(StandardIndexes.range()));
+      Dictionary aDictionary = (Dictionary) aIndexes.get(StandardIndexes.dictionary());
+      ForwardIndexReader aForwardIndex = (ForwardIndexReader) aIndexes.get(StandardIndexes.forward());
+      try (ForwardIndexReaderContext aContext = aForwardIndex.createContext();
+          ForwardIndexReaderContext mapContext = reader.createContext()) {
+        for (int i = 0; i < NUM_DOCS; i++) {
+          assertEquals(aDictionary.getIntValue(aForwardIndex.getDictId(i, aContext)), i % 10);
+          assertEquals(reader.getMap(i, mapContext), Map.of("a", i % 10));
+        }
+      }
+    }
+  }
+
+  private static ComplexFieldSpec createFieldSpec(DataType valueType) {
+    return new ComplexFieldSpec(COLUMN_NAME, DataType.MAP, true,
+        Map.of(ComplexFieldSpec.KEY_FIELD, new DimensionFieldSpec(ComplexFieldSpec.KEY_FIELD, DataType.STRING, true),
+            ComplexFieldSpec.VALUE_FIELD, new DimensionFieldSpec(ComplexFieldSpec.VALUE_FIELD, valueType, true)));
+  }
+
+  private static File createIndex(ComplexFieldSpec fieldSpec, List<Map<String, Object>> records,
+      MapIndexConfig indexConfig)
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    FileUtils.forceMkdir(INDEX_DIR);
+    Schema schema = new Schema.SchemaBuilder().setSchemaName("testTable").addField(fieldSpec).build();
+    TableConfig tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName("testTable").build();
+    MapColumnPreIndexStatsCollector statsCollector =
+        new MapColumnPreIndexStatsCollector(COLUMN_NAME, new StatsCollectorConfig(tableConfig, schema, null));
+    for (Map<String, Object> record : records) {
+      statsCollector.collect(record);
+    }
+    statsCollector.seal();
+
+    IndexCreationContext context = IndexCreationContext.builder().withIndexDir(INDEX_DIR).withFieldSpec(fieldSpec)
+        .withTotalDocs(NUM_DOCS).withColumnStatistics(statsCollector)
+        .withLengthOfLongestEntry(statsCollector.getLengthOfLargestElement()).build();
+    try (ColumnarMapIndexCreator creator = new ColumnarMapIndexCreator(INDEX_DIR, COLUMN_NAME, context,
+        indexConfig)) {
+      for (Map<String, Object> record : records) {
+        creator.add(record);
+      }
+      creator.seal();
+    }
+    return new File(INDEX_DIR, COLUMN_NAME + V1Constants.Indexes.MAP_INDEX_FILE_EXTENSION);
+  }
+}
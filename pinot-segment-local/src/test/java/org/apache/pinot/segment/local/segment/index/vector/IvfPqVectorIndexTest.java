@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.index.vector;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.realtime.impl.vector.MutableFlatVectorIndex;
+import org.apache.pinot.segment.local.segment.creator.impl.vector.IvfPqVectorIndexCreator;
+import org.apache.pinot.segment.local.segment.index.readers.vector.IvfPqVectorIndexReader;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.index.creator.VectorIndexConfig;
+import org.apache.pinot.segment.spi.index.creator.VectorIndexConfig.VectorDistanceFunction;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class IvfPqVectorIndexTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "IvfPqVectorIndexTest");
+  private static final String COLUMN_NAME = "vectorColumn";
+  private static final int NUM_DOCS = 2000;
+  private static final int DIMENSION = 16;
+  private static final int NUM_CLUSTERS = 20;
+  private static final int NUM_QUERIES = 20;
+  private static final int TOP_K = 10;
+
+  private final float[][] _vectors = new float[NUM_DOCS][];
+  private final float[][] _queries = new float[NUM_QUERIES][];
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    FileUtils.forceMkdir(INDEX_DIR);
+    // Gaussian clusters around random centers
+    Random random = new Random(42);
+    float[][] centers = new float[NUM_CLUSTERS][DIMENSION];
+    for (float[] center : centers) {
+      for (int i = 0; i < DIMENSION; i++) {
+        center[i] = random.nextFloat() * 6 - 3;
+      }
+    }
+    for (int i = 0; i < NUM_DOCS; i++) {
+      _vectors[i] = randomVector(centers[i % NUM_CLUSTERS], random);
+    }
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      _queries[i] = randomVector(centers[random.nextInt(NUM_CLUSTERS)], random);
+    }
+  }
+
+  private static float[] randomVector(float[] center, Random random) {
+    float[] vector = new float[DIMENSION];
+    for (int i = 0; i < DIMENSION; i++) {
+      vector[i] = center[i] + (float) random.nextGaussian();
+    }
+    return vector;
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @DataProvider
+  public static Object[][] distanceFunctions() {
+    return new Object[][]{
+        {VectorDistanceFunction.EUCLIDEAN}, {VectorDistanceFunction.COSINE}, {VectorDistanceFunction.INNER_PRODUCT}
+    };
+  }
+
+  @Test(dataProvider = "distanceFunctions")
+  public void testRecall(VectorDistanceFunction distanceFunction)
+      throws Exception {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("vectorIndexType", "IVF_PQ");
+    properties.put("vectorDimension", String.valueOf(DIMENSION));
+    properties.put("vectorDistanceFunction", distanceFunction.name());
+    properties.put(IvfPqVectorIndexCreator.NUM_LISTS_KEY, "32");
+    properties.put(IvfPqVectorIndexReader.NUM_PROBES_KEY, "4");
+    VectorIndexConfig config = new VectorIndexConfig(properties);
+    try (IvfPqVectorIndexCreator creator = new IvfPqVectorIndexCreator(COLUMN_NAME, INDEX_DIR, config)) {
+      for (float[] vector : _vectors) {
+        creator.add(vector);
+      }
+      creator.seal();
+    }
+    assertFalse(new File(INDEX_DIR, COLUMN_NAME + V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION + ".tmp")
+        .exists());
+
+    // Exact top k from the brute force search
+    MutableFlatVectorIndex flatIndex = new MutableFlatVectorIndex(config);
+    for (int docId = 0; docId < NUM_DOCS; docId++) {
+      Object[] values = new Object[DIMENSION];
+      for (int i = 0; i < DIMENSION; i++) {
+        values[i] = _vectors[docId][i];
+      }
+      flatIndex.add(values, null, docId);
+    }
+    ImmutableRoaringBitmap[] expectedDocIds = new ImmutableRoaringBitmap[NUM_QUERIES];
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      expectedDocIds[i] = flatIndex.getDocIds(_queries[i], TOP_K);
+      assertEquals(expectedDocIds[i].getCardinality(), TOP_K);
+    }
+
+    File indexFile = new File(INDEX_DIR, COLUMN_NAME + V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION);
+    // Approximate distances only
+    try (IvfPqVectorIndexReader reader = new IvfPqVectorIndexReader(COLUMN_NAME,
+        PinotDataBuffer.mapReadOnlyBigEndianFile(indexFile), config, null, null)) {
+      double recall = getRecall(reader, expectedDocIds, 4);
+      assertTrue(recall >= 0.5, "Recall: " + recall);
+      // Probing more lists should not reduce the recall
+      assertTrue(getRecall(reader, expectedDocIds, 32) >= recall);
+    }
+    // Re-ranked with the exact distances
+    try (IvfPqVectorIndexReader reader = new IvfPqVectorIndexReader(COLUMN_NAME,
+        PinotDataBuffer.mapReadOnlyBigEndianFile(indexFile), config, new VectorForwardIndexReader(_vectors), null)) {
+      double recall = getRecall(reader, expectedDocIds, 32);
+      assertTrue(recall >= 0.9, "Recall: " + recall);
+      for (int i = 0; i < NUM_QUERIES; i++) {
+        assertEquals(reader.getDocIds(_queries[i], TOP_K).getCardinality(), TOP_K);
+      }
+    }
+  }
+
+  private double getRecall(IvfPqVectorIndexReader reader, ImmutableRoaringBitmap[] expectedDocIds, int numProbes) {
+    int numMatches = 0;
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      numMatches += ImmutableRoaringBitmap.andCardinality(reader.getDocIds(_queries[i], TOP_K, numProbes),
+          expectedDocIds[i]);
+    }
+    return (double) numMatches / (NUM_QUERIES * TOP_K);
+  }
+
+  @Test
+  public void testEmptyIndex()
+      throws Exception {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("vectorIndexType", "IVF_PQ");
+    properties.put("vectorDimension", String.valueOf(DIMENSION));
+    VectorIndexConfig config = new VectorIndexConfig(properties);
+    String column = "emptyColumn";
+    try (IvfPqVectorIndexCreator creator = new IvfPqVectorIndexCreator(column, INDEX_DIR, config)) {
+      creator.seal();
+    }
+    File indexFile = new File(INDEX_DIR, column + V1Constants.Indexes.VECTOR_IVF_PQ_INDEX_FILE_EXTENSION);
+    try (IvfPqVectorIndexReader reader = new IvfPqVectorIndexReader(column,
+        PinotDataBuffer.mapReadOnlyBigEndianFile(indexFile), config, null, null)) {
+      assertTrue(reader.getDocIds(_queries[0], TOP_K).isEmpty());
+    }
+  }
+
+  /**
+   * Raw forward index on the vectors to re-rank the candidates.
+   */
+  private static class VectorForwardIndexReader implements ForwardIndexReader<ForwardIndexReaderContext> {
+    private final float[][] _vectors;
+
+    VectorForwardIndexReader(float[][] vectors) {
+      _vectors = vectors;
+    }
+
+    @Override
+    public boolean isDictionaryEncoded() {
+      return false;
+    }
+
+    @Override
+    public boolean isSingleValue() {
+      return false;
+    }
+
+    @Override
+    public DataType getStoredType() {
+      return DataType.FLOAT;
+    }
+
+    @Override
+    public int getFloatMV(int docId, float[] valueBuffer, ForwardIndexReaderContext context) {
+      System.arraycopy(_vectors[docId], 0, valueBuffer, 0, DIMENSION);
+      return DIMENSION;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+public class IndexBufferPrefetcherTest {
+
+  @Test
+  public void testPrefetchAndRelease()
+      throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (PinotDataBuffer buffer1 = PinotDataBuffer.allocateDirect(10_000, ByteOrder.BIG_ENDIAN, "buffer1");
+        PinotDataBuffer buffer2 = PinotDataBuffer.allocateDirect(100, ByteOrder.BIG_ENDIAN, "buffer2")) {
+      IndexBufferPrefetcher prefetcher = new IndexBufferPrefetcher(executor);
+      UUID fetchId = UUID.randomUUID();
+      prefetcher.prefetch(fetchId, Arrays.asList(buffer1, buffer2));
+      // Prefetching again for the same fetch should be tracked under the same fetch
+      prefetcher.prefetch(fetchId, Collections.singletonList(buffer1));
+      assertEquals(prefetcher.getNumPendingFetches(), 1);
+      prefetcher.release(fetchId);
+      assertEquals(prefetcher.getNumPendingFetches(), 0);
+      // Releasing an unknown fetch should be a no-op
+      prefetcher.release(UUID.randomUUID());
+      prefetcher.close();
+      // Prefetching after close should be ignored
+      prefetcher.prefetch(fetchId, Collections.singletonList(buffer1));
+      assertEquals(prefetcher.getNumPendingFetches(), 0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.util.TestUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+
+public class RemoteIndexBufferCacheTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "RemoteIndexBufferCacheTest");
+  private static final File CACHE_DIR = new File(TEMP_DIR, "cache");
+  private static final int FILE_SIZE = 1000;
+  private static final int BUFFER_SIZE = 100;
+
+  private URI _remoteFileUri;
+  private byte[] _data;
+
+  @BeforeMethod
+  public void setUp()
+      throws IOException {
+    TestUtils.ensureDirectoriesExistAndEmpty(TEMP_DIR);
+    _data = new byte[FILE_SIZE];
+    for (int i = 0; i < FILE_SIZE; i++) {
+      _data[i] = (byte) i;
+    }
+    File remoteFile = new File(TEMP_DIR, "remote.psf");
+    FileUtils.writeByteArrayToFile(remoteFile, _data);
+    _remoteFileUri = remoteFile.toURI();
+  }
+
+  @AfterMethod
+  public void tearDown()
+      throws IOException {
+    FileUtils.deleteDirectory(TEMP_DIR);
+  }
+
+  @Test
+  public void testFetchAndEvict()
+      throws IOException {
+    RemoteIndexBufferCache cache = new RemoteIndexBufferCache(CACHE_DIR, 5 * BUFFER_SIZE / 2, 2);
+    try {
+      RemoteIndexBufferCache.Entry entry0 = cache.acquire("k0", _remoteFileUri, 0, BUFFER_SIZE);
+      RemoteIndexBufferCache.Entry entry1 = cache.acquire("k1", _remoteFileUri, BUFFER_SIZE, BUFFER_SIZE);
+      verifyBuffer(entry1.getBuffer(), BUFFER_SIZE);
+      // Acquiring the same key again should share the cached buffer
+      RemoteIndexBufferCache.Entry entry1Again = cache.acquire("k1", _remoteFileUri, BUFFER_SIZE, BUFFER_SIZE);
+      assertSame(entry1Again, entry1);
+      cache.release(entry1Again);
+
+      // Pinned entries cannot be evicted, so the cache goes beyond the capacity
+      RemoteIndexBufferCache.Entry entry2 = cache.acquire("k2", _remoteFileUri, 2 * BUFFER_SIZE, BUFFER_SIZE);
+      assertEquals(cache.getSizeBytes(), 3 * BUFFER_SIZE);
+
+      // Releasing an entry makes it evictable
+      cache.release(entry0);
+      assertFalse(cache.contains("k0"));
+      assertEquals(cache.getSizeBytes(), 2 * BUFFER_SIZE);
+      cache.release(entry1);
+      cache.release(entry2);
+      assertEquals(cache.getSizeBytes(), 2 * BUFFER_SIZE);
+
+      // Prefetching a new entry should evict the least recently used one
+      RemoteIndexBufferCache.Entry entry3 = cache.prefetch("k3", _remoteFileUri, 3 * BUFFER_SIZE, BUFFER_SIZE);
+      verifyBuffer(entry3.getBuffer(), 3 * BUFFER_SIZE);
+      assertFalse(cache.contains("k1"));
+      assertTrue(cache.contains("k2"));
+      assertTrue(cache.contains("k3"));
+      cache.release(entry3);
+
+      cache.invalidate("k");
+      assertEquals(cache.getSizeBytes(), 0);
+    } finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testFetchFailure()
+      throws IOException {
+    RemoteIndexBufferCache cache = new RemoteIndexBufferCache(CACHE_DIR, FILE_SIZE, 1);
+    try {
+      try {
+        cache.acquire("k0", _remoteFileUri, FILE_SIZE - BUFFER_SIZE / 2, BUFFER_SIZE);
+        fail("Expected IOException for reading beyond the end of the file");
+      } catch (IOException e) {
+        // Expected
+      }
+      // The failed fetch should not be cached
+      assertFalse(cache.contains("k0"));
+      assertEquals(cache.getSizeBytes(), 0);
+
+      RemoteIndexBufferCache.Entry entry = cache.acquire("k0", _remoteFileUri, 0, BUFFER_SIZE);
+      verifyBuffer(entry.getBuffer(), 0);
+      cache.release(entry);
+    } finally {
+      cache.close();
+    }
+  }
+
+  private void verifyBuffer(PinotDataBuffer buffer, int offset) {
+    assertEquals(buffer.size(), BUFFER_SIZE);
+    for (int i = 0; i < BUFFER_SIZE; i++) {
+      assertEquals(buffer.getByte(i), _data[offset + i]);
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.loader.RemoteSegmentDirectoryLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.spi.FetchContext;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
+import org.apache.pinot.segment.spi.loader.SegmentDirectoryLoaderContext;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.apache.pinot.util.TestUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class RemoteSegmentDirectoryTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "RemoteSegmentDirectoryTest");
+  private static final File REMOTE_DIR = new File(TEMP_DIR, "remote");
+  private static final File LOCAL_DIR = new File(TEMP_DIR, "local");
+  private static final File CACHE_DIR = new File(TEMP_DIR, "cache");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final String INT_COLUMN = "intColumn";
+  private static final String STRING_COLUMN = "stringColumn";
+  private static final int NUM_ROWS = 1000;
+
+  private TableConfig _tableConfig;
+  private Schema _schema;
+
+  @BeforeMethod
+  public void setUp()
+      throws Exception {
+    TestUtils.ensureDirectoriesExistAndEmpty(TEMP_DIR);
+    _tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+    _schema = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+        .addSingleValueDimension(INT_COLUMN, DataType.INT)
+        .addSingleValueDimension(STRING_COLUMN, DataType.STRING)
+        .build();
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putValue(INT_COLUMN, i % 100);
+      row.putValue(STRING_COLUMN, "value" + i % 10);
+      rows.add(row);
+    }
+    // Build the segment into the directory used as the deep store
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(_tableConfig, _schema);
+    config.setOutDir(new File(REMOTE_DIR, TABLE_NAME).getAbsolutePath());
+    config.setSegmentName(SEGMENT_NAME);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new GenericRowRecordReader(rows));
+    driver.build();
+  }
+
+  @AfterMethod
+  public void tearDown()
+      throws Exception {
+    FileUtils.deleteDirectory(TEMP_DIR);
+  }
+
+  private SegmentDirectoryLoaderContext getLoaderContext(String cacheSize) {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put(RemoteSegmentDirectoryLoader.REMOTE_SEGMENT_DIR_URI_KEY, REMOTE_DIR.toURI().toString());
+    properties.put(RemoteSegmentDirectoryLoader.CACHE_DIR_KEY, CACHE_DIR.getAbsolutePath());
+    properties.put(RemoteSegmentDirectoryLoader.CACHE_SIZE_KEY, cacheSize);
+    return new SegmentDirectoryLoaderContext.Builder().setTableConfig(_tableConfig).setSchema(_schema)
+        .setTableDataDir(new File(LOCAL_DIR, TABLE_NAME).getAbsolutePath()).setSegmentName(SEGMENT_NAME)
+        .setSegmentDirectoryConfigs(new PinotConfiguration(properties)).build();
+  }
+
+  @Test
+  public void testFetchOnAccess()
+      throws Exception {
+    SegmentDirectoryLoaderContext loaderContext = getLoaderContext("1M");
+    RemoteSegmentDirectoryLoader loader = new RemoteSegmentDirectoryLoader();
+    File indexDir = new File(new File(LOCAL_DIR, TABLE_NAME), SEGMENT_NAME);
+    SegmentDirectory segmentDirectory = loader.load(indexDir.toURI(), loaderContext);
+    assertTrue(segmentDirectory.isIndexFetchedOnAccess());
+
+    // Only the metadata should be kept locally, and nothing should be fetched when loading the segment
+    File localSegmentDir = new File(indexDir, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    assertTrue(new File(localSegmentDir, V1Constants.MetadataKeys.METADATA_FILE_NAME).exists());
+    assertTrue(new File(localSegmentDir, V1Constants.INDEX_MAP_FILE_NAME).exists());
+    assertFalse(new File(localSegmentDir, V1Constants.INDEX_FILE_NAME).exists());
+    ImmutableSegment segment =
+        ImmutableSegmentLoader.load(segmentDirectory, new IndexLoadingConfig(_tableConfig, _schema), _schema);
+    assertEquals(getNumCachedBuffers(), 0);
+
+    // Accessing a column should only fetch the indexes of that column
+    DataSource dataSource = segment.getDataSource(INT_COLUMN);
+    ForwardIndexReader forwardIndex = dataSource.getForwardIndex();
+    Dictionary dictionary = dataSource.getDictionary();
+    try (ForwardIndexReaderContext readerContext = forwardIndex.createContext()) {
+      for (int docId = 0; docId < NUM_ROWS; docId++) {
+        assertEquals(dictionary.getIntValue(forwardIndex.getDictId(docId, readerContext)), docId % 100);
+      }
+    }
+    int numIntColumnBuffers = getNumCachedBuffers();
+    assertTrue(numIntColumnBuffers > 0);
+
+    // Acquiring a fetch context should fetch the indexes of the columns in the context
+    FetchContext fetchContext =
+        new FetchContext(UUID.randomUUID(), SEGMENT_NAME, Collections.singleton(STRING_COLUMN));
+    segment.acquire(fetchContext);
+    assertTrue(getNumCachedBuffers() > numIntColumnBuffers);
+    segment.release(fetchContext);
+    // Releasing the context multiple times should be a no-op
+    segment.release(fetchContext);
+    dataSource = segment.getDataSource(STRING_COLUMN);
+    forwardIndex = dataSource.getForwardIndex();
+    dictionary = dataSource.getDictionary();
+    try (ForwardIndexReaderContext readerContext = forwardIndex.createContext()) {
+      for (int docId = 0; docId < NUM_ROWS; docId++) {
+        assertEquals(dictionary.getStringValue(forwardIndex.getDictId(docId, readerContext)), "value" + docId % 10);
+      }
+    }
+
+    // Deleting the segment should clean up the local metadata and the cached buffers
+    segment.destroy();
+    loader.delete(loaderContext);
+    assertFalse(indexDir.exists());
+    assertEquals(getNumCachedBuffers(), 0);
+  }
+
+  @Test
+  public void testEvictQueriedColumns()
+      throws Exception {
+    // The cache can not hold any buffer, so the buffers are evicted as soon as they are unpinned
+    SegmentDirectoryLoaderContext loaderContext = getLoaderContext("1B");
+    RemoteSegmentDirectoryLoader loader = new RemoteSegmentDirectoryLoader();
+    File indexDir = new File(new File(LOCAL_DIR, TABLE_NAME), SEGMENT_NAME);
+    SegmentDirectory segmentDirectory = loader.load(indexDir.toURI(), loaderContext);
+    ImmutableSegment segment =
+        ImmutableSegmentLoader.load(segmentDirectory, new IndexLoadingConfig(_tableConfig, _schema), _schema);
+    assertEquals(getNumCachedBuffers(), 0);
+
+    // The buffers of the queried columns are referred to by the index readers, so they should be kept after the fetch
+    // context is released
+    for (String column : new String[]{INT_COLUMN, STRING_COLUMN}) {
+      FetchContext fetchContext = new FetchContext(UUID.randomUUID(), SEGMENT_NAME, Collections.singleton(column));
+      segment.acquire(fetchContext);
+      assertTrue(getNumCachedBuffers() > 0);
+      DataSource dataSource = segment.getDataSource(column);
+      ForwardIndexReader forwardIndex = dataSource.getForwardIndex();
+      Dictionary dictionary = dataSource.getDictionary();
+      try (ForwardIndexReaderContext readerContext = forwardIndex.createContext()) {
+        for (int docId = 0; docId < NUM_ROWS; docId++) {
+          int dictId = forwardIndex.getDictId(docId, readerContext);
+          if (column.equals(INT_COLUMN)) {
+            assertEquals(dictionary.getIntValue(dictId), docId % 100);
+          } else {
+            assertEquals(dictionary.getStringValue(dictId), "value" + docId % 10);
+          }
+        }
+      }
+      segment.release(fetchContext);
+      assertTrue(getNumCachedBuffers() > 0);
+    }
+
+    // The buffers should be evicted once the segment is destroyed
+    segment.destroy();
+    assertEquals(getNumCachedBuffers(), 0);
+    loader.delete(loaderContext);
+    assertFalse(indexDir.exists());
+  }
+
+  private static int getNumCachedBuffers() {
+    File[] files = CACHE_DIR.listFiles();
+    return files != null ? files.length : 0;
+  }
+}
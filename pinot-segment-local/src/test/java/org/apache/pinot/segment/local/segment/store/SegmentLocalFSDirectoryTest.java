@@ -18,8 +18,20 @@
  */
 package org.apache.pinot.segment.local.segment.store;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.spi.FetchContext;
 import org.apache.pinot.segment.spi.creator.SegmentVersion;
 import org.apache.pinot.segment.spi.index.StandardIndexes;
 import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
@@ -27,11 +39,18 @@ import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 import org.apache.pinot.segment.spi.store.SegmentDirectory;
 import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
 import org.apache.pinot.spi.utils.ReadMode;
+import org.mockito.MockedConstruction;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.when;
+
 
 public class SegmentLocalFSDirectoryTest {
   private static final File TEST_DIRECTORY = new File(SingleFileIndexDirectoryTest.class.toString());
@@ -86,6 +105,57 @@ public class SegmentLocalFSDirectoryTest {
     reader2.close();
   }
 
+  @Test
+  public void testCloseWaitsForInFlightPrefetch()
+      throws Exception {
+    CountDownLatch touchStarted = new CountDownLatch(1);
+    CountDownLatch touchReleased = new CountDownLatch(1);
+    AtomicBoolean indexDirectoryClosed = new AtomicBoolean();
+    AtomicBoolean touchedAfterClose = new AtomicBoolean();
+    PinotDataBuffer buffer = mock(PinotDataBuffer.class);
+    when(buffer.size()).thenReturn(1024 * 1024L);
+    when(buffer.getByte(anyLong())).thenAnswer(invocation -> {
+      if (indexDirectoryClosed.get()) {
+        touchedAfterClose.set(true);
+      }
+      touchStarted.countDown();
+      // Page faults cannot be interrupted, so block the read-ahead until the test releases it
+      Uninterruptibles.awaitUninterruptibly(touchReleased);
+      return (byte) 0;
+    });
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try (MockedConstruction<FilePerIndexDirectory> ignored = mockConstruction(FilePerIndexDirectory.class,
+        (indexDirectory, context) -> {
+          when(indexDirectory.hasIndexFor("col", StandardIndexes.forward())).thenReturn(true);
+          when(indexDirectory.getBuffer("col", StandardIndexes.forward())).thenReturn(buffer);
+          doAnswer(invocation -> {
+            indexDirectoryClosed.set(true);
+            return null;
+          }).when(indexDirectory).close();
+        })) {
+      SegmentLocalFSDirectory segmentDirectory = new SegmentLocalFSDirectory(TEST_DIRECTORY, _metadata, ReadMode.mmap);
+      segmentDirectory.prefetch(
+          new FetchContext(UUID.randomUUID(), "testSegment", Map.of("col", List.of(StandardIndexes.forward()))));
+      Assert.assertTrue(touchStarted.await(10, TimeUnit.SECONDS));
+
+      // Close should wait for the in-flight read-ahead before unmapping the buffers
+      Future<?> closeFuture = executorService.submit(() -> {
+        segmentDirectory.close();
+        return null;
+      });
+      Assert.expectThrows(TimeoutException.class, () -> closeFuture.get(100, TimeUnit.MILLISECONDS));
+      Assert.assertFalse(indexDirectoryClosed.get());
+
+      touchReleased.countDown();
+      closeFuture.get(10, TimeUnit.SECONDS);
+      Assert.assertTrue(indexDirectoryClosed.get());
+      Assert.assertFalse(touchedAfterClose.get());
+    } finally {
+      touchReleased.countDown();
+      executorService.shutdownNow();
+    }
+  }
+
   private void loadData(PinotDataBuffer buffer) {
     int limit = (int) (buffer.size() / 4);
     for (int i = 0; i < limit; i++) {
@@ -0,0 +1,872 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.LLCSegmentName;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.local.segment.readers.LazyRow;
+import org.apache.pinot.segment.spi.ColumnMetadata;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.builder.TableNameBuilder;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+/**
+ * Mirrors the upsert semantics tests of {@link ConcurrentMapPartitionUpsertMetadataManagerTest} for the off-heap
+ * metadata manager, which only supports a single numeric comparison column.
+ */
+public class OffHeapPartitionUpsertMetadataManagerTest {
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String REALTIME_TABLE_NAME = TableNameBuilder.REALTIME.tableNameWithType(RAW_TABLE_NAME);
+  private static final List<String> PRIMARY_KEY_COLUMNS = Collections.singletonList("pk");
+  private static final List<String> COMPARISON_COLUMNS = Collections.singletonList("timeCol");
+  private static final String DELETE_RECORD_COLUMN = "deleteCol";
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory(), "OffHeapPartitionUpsertMetadataManagerTest");
+  // Use the smallest record location map
+  private static final int INITIAL_CAPACITY = 2;
+  private static final int NUM_STRIPES = 2;
+
+  // Segments of the checkpoint tests, which keep the same names across the metadata managers
+  private static final String CHECKPOINT_SEGMENT_NAME_1 = new LLCSegmentName(RAW_TABLE_NAME, 0, 1, 0L).toString();
+  private static final String CHECKPOINT_SEGMENT_NAME_2 = new LLCSegmentName(RAW_TABLE_NAME, 0, 2, 0L).toString();
+  private static final int[] SEGMENT1_PRIMARY_KEYS = new int[]{0, 1, 2};
+  private static final int[] SEGMENT1_TIMESTAMPS = new int[]{100, 120, 100};
+  private static final int[] SEGMENT2_PRIMARY_KEYS = new int[]{0, 3};
+  private static final int[] SEGMENT2_TIMESTAMPS = new int[]{150, 80};
+  private static final MutableRoaringBitmap VALID_DOC_IDS_1 = MutableRoaringBitmap.bitmapOf(1, 2);
+  private static final MutableRoaringBitmap VALID_DOC_IDS_2 = MutableRoaringBitmap.bitmapOf(0, 1);
+
+  private UpsertContext.Builder _contextBuilder;
+
+  @BeforeClass
+  public void setUp()
+      throws IOException {
+    FileUtils.forceMkdir(INDEX_DIR);
+    ServerMetrics.register(mock(ServerMetrics.class));
+  }
+
+  @BeforeMethod
+  public void setUpContextBuilder() {
+    Schema schema = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+        .addSingleValueDimension(PRIMARY_KEY_COLUMNS.get(0), DataType.INT)
+        .addMetric(COMPARISON_COLUMNS.get(0), DataType.INT).setPrimaryKeyColumns(PRIMARY_KEY_COLUMNS).build();
+    _contextBuilder = new UpsertContext.Builder().setTableConfig(mock(TableConfig.class)).setSchema(schema)
+        .setPrimaryKeyColumns(PRIMARY_KEY_COLUMNS).setComparisonColumns(COMPARISON_COLUMNS).setTableIndexDir(INDEX_DIR);
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws IOException {
+    FileUtils.forceDelete(INDEX_DIR);
+  }
+
+  private OffHeapPartitionUpsertMetadataManager createMetadataManager() {
+    return new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0, _contextBuilder.build(),
+        INITIAL_CAPACITY, NUM_STRIPES, null, null);
+  }
+
+  @Test
+  public void testAddReplaceRemoveSegment()
+      throws IOException {
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager();
+    OffHeapRecordLocationMap recordLocationMap = upsertMetadataManager._recordLocationMap;
+    Set<IndexSegment> trackedSegments = upsertMetadataManager._trackedSegments;
+
+    // Add the first segment
+    int numRecords = 6;
+    int[] primaryKeys = new int[]{0, 1, 2, 0, 1, 0};
+    int[] timestamps = new int[]{100, 100, 100, 80, 120, 100};
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    List<PrimaryKey> primaryKeys1 = getPrimaryKeyList(numRecords, primaryKeys);
+    ImmutableSegmentImpl segment1 = mockImmutableSegment(1, validDocIds1, null, primaryKeys1);
+    List<RecordInfo> recordInfoList1 = getRecordInfoList(numRecords, primaryKeys, timestamps, null);
+    upsertMetadataManager.addSegment(segment1, validDocIds1, null, recordInfoList1.iterator());
+    trackedSegments.add(segment1);
+    // segment1: 0 -> {5, 100}, 1 -> {4, 120}, 2 -> {2, 100}
+    assertEquals(recordLocationMap.size(), 3);
+    checkRecordLocation(upsertMetadataManager, 0, segment1, 5, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 4, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 100);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{2, 4, 5});
+
+    // Add the second segment
+    numRecords = 5;
+    primaryKeys = new int[]{0, 1, 2, 3, 0};
+    timestamps = new int[]{100, 100, 120, 80, 80};
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment2 =
+        mockImmutableSegment(2, validDocIds2, null, getPrimaryKeyList(numRecords, primaryKeys));
+    upsertMetadataManager.addSegment(segment2, validDocIds2, null,
+        getRecordInfoList(numRecords, primaryKeys, timestamps, null).iterator());
+    trackedSegments.add(segment2);
+    // segment1: 1 -> {4, 120}
+    // segment2: 0 -> {0, 100}, 2 -> {2, 120}, 3 -> {3, 80}
+    assertEquals(recordLocationMap.size(), 4);
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 4, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment2, 2, 120);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 3, 80);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{4});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 2, 3});
+
+    // Replace (reload) the first segment
+    ThreadSafeMutableRoaringBitmap newValidDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl newSegment1 = mockImmutableSegment(1, newValidDocIds1, null, primaryKeys1);
+    upsertMetadataManager.replaceSegment(newSegment1, newValidDocIds1, null, recordInfoList1.iterator(), segment1);
+    trackedSegments.add(newSegment1);
+    // original segment1: 1 -> {4, 120} (not in the map)
+    // segment2: 0 -> {0, 100}, 2 -> {2, 120}, 3 -> {3, 80}
+    // new segment1: 1 -> {4, 120}
+    assertEquals(recordLocationMap.size(), 4);
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, newSegment1, 4, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment2, 2, 120);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 3, 80);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{4});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 2, 3});
+    assertEquals(newValidDocIds1.getMutableRoaringBitmap().toArray(), new int[]{4});
+
+    // Remove the original segment1, which should not remove the keys of the new segment1
+    upsertMetadataManager.removeSegment(segment1);
+    assertEquals(recordLocationMap.size(), 4);
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, newSegment1, 4, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment2, 2, 120);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 3, 80);
+    assertEquals(newValidDocIds1.getMutableRoaringBitmap().toArray(), new int[]{4});
+
+    // Remove segment2
+    upsertMetadataManager.removeSegment(segment2);
+    // new segment1: 1 -> {4, 120}
+    assertEquals(recordLocationMap.size(), 1);
+    checkRecordLocation(upsertMetadataManager, 1, newSegment1, 4, 120);
+    assertNull(upsertMetadataManager.getRecordLocation(makePrimaryKey(0)));
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 2, 3});
+    assertEquals(newValidDocIds1.getMutableRoaringBitmap().toArray(), new int[]{4});
+    assertEquals(trackedSegments, Collections.singleton(newSegment1));
+
+    // Stop the metadata manager
+    upsertMetadataManager.stop();
+
+    // Remove new segment1, should be no-op
+    upsertMetadataManager.removeSegment(newSegment1);
+    assertEquals(recordLocationMap.size(), 1);
+    checkRecordLocation(upsertMetadataManager, 1, newSegment1, 4, 120);
+
+    // Close the metadata manager
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testAddRecord()
+      throws IOException {
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager();
+
+    // Add the first segment
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}, 2 -> {2, 100}
+    int numRecords = 3;
+    int[] primaryKeys = new int[]{0, 1, 2};
+    int[] timestamps = new int[]{100, 120, 100};
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment1 =
+        mockImmutableSegment(1, validDocIds1, null, getPrimaryKeyList(numRecords, primaryKeys));
+    upsertMetadataManager.addSegment(segment1, validDocIds1, null,
+        getRecordInfoList(numRecords, primaryKeys, timestamps, null).iterator());
+
+    // Update records from the second segment
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment2 = mockMutableSegment(2, validDocIds2, null);
+    assertTrue(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(3), 0, 100, false)));
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}, 2 -> {2, 100}
+    // segment2: 3 -> {0, 100}
+    checkRecordLocation(upsertMetadataManager, 0, segment1, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 100);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 0, 100);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0});
+
+    assertTrue(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(2), 1, 120, false)));
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}
+    // segment2: 2 -> {1, 120}, 3 -> {0, 100}
+    checkRecordLocation(upsertMetadataManager, 2, segment2, 1, 120);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+
+    // Tie on the comparison value should keep the newer record
+    assertTrue(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(0), 2, 100, false)));
+    // segment1: 1 -> {1, 120}
+    // segment2: 0 -> {2, 100}, 2 -> {1, 120}, 3 -> {0, 100}
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 2, 100);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{1});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2});
+
+    // Update within the same segment
+    assertTrue(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(3), 3, 150, false)));
+    // segment1: 1 -> {1, 120}
+    // segment2: 0 -> {2, 100}, 2 -> {1, 120}, 3 -> {3, 150}
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 3, 150);
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{1, 2, 3});
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 4);
+
+    // Stop the metadata manager
+    upsertMetadataManager.stop();
+
+    // Add record should be no-op
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(1), 4, 200, false));
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{1});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{1, 2, 3});
+
+    // Close the metadata manager
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testAddOutOfOrderRecord()
+      throws IOException {
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager();
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}, 2 -> {2, 100}
+    int numRecords = 3;
+    int[] primaryKeys = new int[]{0, 1, 2};
+    int[] timestamps = new int[]{100, 120, 100};
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment1 =
+        mockImmutableSegment(1, validDocIds1, null, getPrimaryKeyList(numRecords, primaryKeys));
+    upsertMetadataManager.addSegment(segment1, validDocIds1, null,
+        getRecordInfoList(numRecords, primaryKeys, timestamps, null).iterator());
+
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment2 = mockMutableSegment(2, validDocIds2, null);
+
+    // Out-of-order event should be rejected
+    assertFalse(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(2), 0, 80, false)));
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 100);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2});
+    assertTrue(validDocIds2.getMutableRoaringBitmap().isEmpty());
+
+    // Ordered event for an existing key
+    assertTrue(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(2), 1, 150, false)));
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}
+    // segment2: 2 -> {1, 150}
+    checkRecordLocation(upsertMetadataManager, 0, segment1, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment2, 1, 150);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{1});
+
+    // Close the metadata manager
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testAddRecordWithDeleteColumn()
+      throws IOException {
+    _contextBuilder.setDeleteRecordColumn(DELETE_RECORD_COLUMN);
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager();
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}, 2 -> {2, 100}
+    int numRecords = 3;
+    int[] primaryKeys = new int[]{0, 1, 2};
+    int[] timestamps = new int[]{100, 120, 100};
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ThreadSafeMutableRoaringBitmap queryableDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment1 =
+        mockImmutableSegment(1, validDocIds1, queryableDocIds1, getPrimaryKeyList(numRecords, primaryKeys));
+    upsertMetadataManager.addSegment(segment1, validDocIds1, queryableDocIds1,
+        getRecordInfoList(numRecords, primaryKeys, timestamps, null).iterator());
+    assertEquals(queryableDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2});
+
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    ThreadSafeMutableRoaringBitmap queryableDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment2 = mockMutableSegment(2, validDocIds2, queryableDocIds2);
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(3), 0, 100, false));
+
+    // Mark a record with latest value in segment1 as deleted
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(2), 1, 120, true));
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}
+    // segment2: 2 -> {1, 120}, 3 -> {0, 100}
+    checkRecordLocation(upsertMetadataManager, 2, segment2, 1, 120);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    assertEquals(queryableDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    assertEquals(queryableDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0});
+
+    // Mark a record with latest value in segment2 as deleted
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(3), 2, 150, true));
+    // segment2: 2 -> {1, 120}, 3 -> {2, 150}
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 2, 150);
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{1, 2});
+    assertTrue(queryableDocIds2.getMutableRoaringBitmap().isEmpty());
+
+    // Revive a deleted primary key (by providing a larger comparisonValue)
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(3), 3, 200, false));
+    // segment2: 2 -> {1, 120}, 3 -> {3, 200}
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 3, 200);
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{1, 3});
+    assertEquals(queryableDocIds2.getMutableRoaringBitmap().toArray(), new int[]{3});
+
+    // Close the metadata manager
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testRemoveExpiredPrimaryKeys()
+      throws IOException {
+    _contextBuilder.setEnableSnapshot(true).setMetadataTTL(30);
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager();
+
+    // Add record to update largestSeenTimestamp, largest seen timestamp: 80
+    ThreadSafeMutableRoaringBitmap validDocIds0 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment0 = mockMutableSegment(1, validDocIds0, null);
+    upsertMetadataManager.addRecord(segment0, new RecordInfo(makePrimaryKey(10), 1, 80, false));
+    checkRecordLocation(upsertMetadataManager, 10, segment0, 1, 80);
+    assertEquals(upsertMetadataManager.getWatermark(), 80);
+
+    // Add a segment with segmentEndTime = 80, so it will not be skipped
+    int numRecords = 4;
+    int[] primaryKeys = new int[]{0, 1, 2, 3};
+    int[] timestamps = new int[]{100, 100, 120, 80};
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment1 =
+        mockImmutableSegmentWithEndTime(2, validDocIds1, getPrimaryKeyList(numRecords, primaryKeys), 80);
+    upsertMetadataManager.addSegment(segment1, validDocIds1, null,
+        getRecordInfoList(numRecords, primaryKeys, timestamps, null).iterator());
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 5);
+
+    // Add record to update largestSeenTimestamp, largest seen timestamp: 120
+    upsertMetadataManager.addRecord(segment0, new RecordInfo(makePrimaryKey(10), 0, 120, false));
+    checkRecordLocation(upsertMetadataManager, 10, segment0, 0, 120);
+    assertEquals(upsertMetadataManager.getWatermark(), 120);
+
+    // Records before (largest seen timestamp - TTL) are expired and removed from the upsert metadata
+    upsertMetadataManager.removeExpiredPrimaryKeys();
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 4);
+    checkRecordLocation(upsertMetadataManager, 0, segment1, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 100);
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 120);
+    checkRecordLocation(upsertMetadataManager, 10, segment0, 0, 120);
+    assertNull(upsertMetadataManager.getRecordLocation(makePrimaryKey(3)));
+
+    // ValidDocIds for out-of-ttl records should not be removed
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2, 3});
+
+    // Close the metadata manager
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testRemoveExpiredDeletedKeys()
+      throws IOException {
+    _contextBuilder.setDeleteRecordColumn(DELETE_RECORD_COLUMN).setDeletedKeysTTL(20);
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager();
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}, 2 -> {2, 100}
+    int numRecords = 3;
+    int[] primaryKeys = new int[]{0, 1, 2};
+    int[] timestamps = new int[]{100, 120, 100};
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ThreadSafeMutableRoaringBitmap queryableDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment1 =
+        mockImmutableSegment(1, validDocIds1, queryableDocIds1, getPrimaryKeyList(numRecords, primaryKeys));
+    upsertMetadataManager.addSegment(segment1, validDocIds1, queryableDocIds1,
+        getRecordInfoList(numRecords, primaryKeys, timestamps, null).iterator());
+
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    ThreadSafeMutableRoaringBitmap queryableDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment2 = mockMutableSegment(2, validDocIds2, queryableDocIds2);
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(3), 0, 100, false));
+    // Mark a record with latest value in segment1 as deleted (outside TTL window)
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(2), 1, 120, true));
+    // Mark a record with latest value in segment2 as deleted (within TTL window)
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(3), 2, 150, true));
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}
+    // segment2: 2 -> {1, 120}, 3 -> {2, 150}
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 4);
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{1, 2});
+    assertTrue(queryableDocIds2.getMutableRoaringBitmap().isEmpty());
+
+    // delete-key segment2: 2 -> {1, 120}
+    upsertMetadataManager.removeExpiredPrimaryKeys();
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}
+    // segment2: 3 -> {2, 150}
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 3);
+    checkRecordLocation(upsertMetadataManager, 0, segment1, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 2, 150);
+    assertNull(upsertMetadataManager.getRecordLocation(makePrimaryKey(2)));
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{2});
+
+    // Close the metadata manager
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testPartialUpsert()
+      throws IOException {
+    PartialUpsertHandler partialUpsertHandler = mock(PartialUpsertHandler.class);
+    _contextBuilder.setPartialUpsertHandler(partialUpsertHandler);
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager();
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}
+    int numRecords = 2;
+    int[] primaryKeys = new int[]{0, 1};
+    int[] timestamps = new int[]{100, 120};
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment1 =
+        mockImmutableSegment(1, validDocIds1, null, getPrimaryKeyList(numRecords, primaryKeys));
+    upsertMetadataManager.addSegment(segment1, validDocIds1, null,
+        getRecordInfoList(numRecords, primaryKeys, timestamps, null).iterator());
+
+    // New record of an existing key should be merged with the previous record
+    GenericRow record = new GenericRow();
+    assertSame(upsertMetadataManager.updateRecord(record, new RecordInfo(makePrimaryKey(0), 0, 110, false)), record);
+    verify(partialUpsertHandler, times(1)).merge(any(LazyRow.class), same(record), anyMap());
+
+    // New key, out-of-order record and delete record should not be merged
+    GenericRow newKeyRecord = new GenericRow();
+    upsertMetadataManager.updateRecord(newKeyRecord, new RecordInfo(makePrimaryKey(2), 1, 110, false));
+    verify(partialUpsertHandler, never()).merge(any(LazyRow.class), same(newKeyRecord), anyMap());
+    GenericRow outOfOrderRecord = new GenericRow();
+    upsertMetadataManager.updateRecord(outOfOrderRecord, new RecordInfo(makePrimaryKey(1), 2, 110, false));
+    verify(partialUpsertHandler, never()).merge(any(LazyRow.class), same(outOfOrderRecord), anyMap());
+    GenericRow deleteRecord = new GenericRow();
+    upsertMetadataManager.updateRecord(deleteRecord, new RecordInfo(makePrimaryKey(1), 3, 130, true));
+    verify(partialUpsertHandler, never()).merge(any(LazyRow.class), same(deleteRecord), anyMap());
+
+    // Updating records should not change the record locations
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 2);
+    checkRecordLocation(upsertMetadataManager, 0, segment1, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+
+    // Close the metadata manager
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testTakeSnapshot()
+      throws IOException {
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getSegmentLock(anyString())).thenReturn(new ReentrantLock());
+    _contextBuilder.setEnableSnapshot(true).setTableDataManager(tableDataManager);
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager();
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}
+    int numRecords = 2;
+    int[] primaryKeys = new int[]{0, 1};
+    int[] timestamps = new int[]{100, 120};
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment1 =
+        mockImmutableSegment(1, validDocIds1, null, getPrimaryKeyList(numRecords, primaryKeys));
+    upsertMetadataManager.addSegment(segment1, validDocIds1, null,
+        getRecordInfoList(numRecords, primaryKeys, timestamps, null).iterator());
+    upsertMetadataManager._trackedSegments.add(segment1);
+    upsertMetadataManager._updatedSegmentsSinceLastSnapshot.add(segment1);
+
+    // Snapshot is skipped before getting the first consuming segment
+    upsertMetadataManager.takeSnapshot();
+    verify(segment1, never()).persistValidDocIdsSnapshot();
+
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment2 = mockMutableSegment(2, validDocIds2, null);
+    upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(0), 0, 150, false));
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 0, 150);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{1});
+
+    // Only the immutable segment takes the snapshot, and only once until it is updated again
+    upsertMetadataManager.takeSnapshot();
+    verify(segment1, times(1)).persistValidDocIdsSnapshot();
+    upsertMetadataManager.takeSnapshot();
+    verify(segment1, times(1)).persistValidDocIdsSnapshot();
+
+    // Close the metadata manager
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testCheckpointRoundTrip()
+      throws IOException {
+    File checkpointFile = new File(INDEX_DIR, "testCheckpointRoundTrip.checkpoint");
+    writeCheckpoint(checkpointFile);
+
+    // Reload the checkpoint, where the record locations of the consuming segment are dropped
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager(checkpointFile);
+    upsertMetadataManager.loadCheckpoint();
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 4);
+    assertNull(upsertMetadataManager.getRecordLocation(makePrimaryKey(4)));
+
+    // Segments matching the checkpoint are preloaded without reading their primary keys
+    ImmutableSegmentImpl segment1 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_1, "1", SEGMENT1_PRIMARY_KEYS, SEGMENT1_TIMESTAMPS,
+            VALID_DOC_IDS_1);
+    ImmutableSegmentImpl segment2 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_2, "2", SEGMENT2_PRIMARY_KEYS, SEGMENT2_TIMESTAMPS,
+            VALID_DOC_IDS_2);
+    upsertMetadataManager.preloadSegment(segment1);
+    upsertMetadataManager.preloadSegment(segment2);
+    upsertMetadataManager.removeUnboundCheckpointSegments();
+    verify(segment1, never()).getDataSource(anyString());
+    verify(segment2, never()).getDataSource(anyString());
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 4);
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 0, 150);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 100);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 1, 80);
+
+    // New records should be resolved against the record locations from the checkpoint
+    ThreadSafeMutableRoaringBitmap validDocIds3 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment3 = mockMutableSegment(3, validDocIds3, null);
+    assertFalse(upsertMetadataManager.addRecord(segment3, new RecordInfo(makePrimaryKey(0), 0, 120, false)));
+    assertTrue(upsertMetadataManager.addRecord(segment3, new RecordInfo(makePrimaryKey(2), 1, 120, false)));
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 0, 150);
+    checkRecordLocation(upsertMetadataManager, 2, segment3, 1, 120);
+    assertEquals(validDocIds3.getMutableRoaringBitmap().toArray(), new int[]{1});
+    assertEquals(segment1.getValidDocIds().getMutableRoaringBitmap().toArray(), new int[]{1});
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testCheckpointWithSegmentNotPreloaded()
+      throws IOException {
+    File checkpointFile = new File(INDEX_DIR, "testCheckpointWithSegmentNotPreloaded.checkpoint");
+    writeCheckpoint(checkpointFile);
+
+    // The record locations of the segments not preloaded (e.g. deleted while the server is down) are removed
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager(checkpointFile);
+    upsertMetadataManager.loadCheckpoint();
+    ImmutableSegmentImpl segment1 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_1, "1", SEGMENT1_PRIMARY_KEYS, SEGMENT1_TIMESTAMPS,
+            VALID_DOC_IDS_1);
+    upsertMetadataManager.preloadSegment(segment1);
+    upsertMetadataManager.removeUnboundCheckpointSegments();
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 2);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 100);
+    assertNull(upsertMetadataManager.getRecordLocation(makePrimaryKey(0)));
+    assertNull(upsertMetadataManager.getRecordLocation(makePrimaryKey(3)));
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testCheckpointWithCrcMismatch()
+      throws IOException {
+    File checkpointFile = new File(INDEX_DIR, "testCheckpointWithCrcMismatch.checkpoint");
+    writeCheckpoint(checkpointFile);
+
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager(checkpointFile);
+    upsertMetadataManager.loadCheckpoint();
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 4);
+
+    // Segment2 is replaced while the server is down, so it should be replayed from its validDocIds snapshot
+    ImmutableSegmentImpl segment1 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_1, "1", SEGMENT1_PRIMARY_KEYS, SEGMENT1_TIMESTAMPS,
+            VALID_DOC_IDS_1);
+    ImmutableSegmentImpl segment2 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_2, "22", SEGMENT2_PRIMARY_KEYS, SEGMENT2_TIMESTAMPS,
+            VALID_DOC_IDS_2);
+    upsertMetadataManager.preloadSegment(segment1);
+    upsertMetadataManager.preloadSegment(segment2);
+    upsertMetadataManager.removeUnboundCheckpointSegments();
+    verify(segment1, never()).getDataSource(anyString());
+    verify(segment2, times(1)).getDataSource(PRIMARY_KEY_COLUMNS.get(0));
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 4);
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 0, 150);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 100);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 1, 80);
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @DataProvider
+  public static Object[][] checkpointTruncations() {
+    // Number of bytes to keep: header only, partial segment entries, partial record locations, missing footer
+    return new Object[][]{{4}, {20}, {-100}, {-1}};
+  }
+
+  @Test(dataProvider = "checkpointTruncations")
+  public void testTruncatedCheckpoint(int numBytesToKeep)
+      throws IOException {
+    File checkpointFile = new File(INDEX_DIR, "testTruncatedCheckpoint.checkpoint");
+    writeCheckpoint(checkpointFile);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(checkpointFile, "rw")) {
+      long length = randomAccessFile.length();
+      randomAccessFile.setLength(numBytesToKeep > 0 ? numBytesToKeep : length + numBytesToKeep);
+    }
+
+    // Invalid checkpoint should be ignored, and all the segments should be replayed from their validDocIds snapshots
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager(checkpointFile);
+    upsertMetadataManager.loadCheckpoint();
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 0);
+    ImmutableSegmentImpl segment1 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_1, "1", SEGMENT1_PRIMARY_KEYS, SEGMENT1_TIMESTAMPS,
+            VALID_DOC_IDS_1);
+    ImmutableSegmentImpl segment2 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_2, "2", SEGMENT2_PRIMARY_KEYS, SEGMENT2_TIMESTAMPS,
+            VALID_DOC_IDS_2);
+    upsertMetadataManager.preloadSegment(segment1);
+    upsertMetadataManager.preloadSegment(segment2);
+    upsertMetadataManager.removeUnboundCheckpointSegments();
+    verify(segment1, times(1)).getDataSource(PRIMARY_KEY_COLUMNS.get(0));
+    verify(segment2, times(1)).getDataSource(PRIMARY_KEY_COLUMNS.get(0));
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 4);
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 0, 150);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 100);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 1, 80);
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testPartiallyWrittenCheckpoint()
+      throws IOException {
+    File checkpointFile = new File(INDEX_DIR, "testPartiallyWrittenCheckpoint.checkpoint");
+    writeCheckpoint(checkpointFile);
+    // Mimic a crash before the temporary checkpoint file is renamed
+    File tempFile = new File(checkpointFile.getPath() + ".tmp");
+    FileUtils.moveFile(checkpointFile, tempFile);
+
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager(checkpointFile);
+    upsertMetadataManager.loadCheckpoint();
+    assertEquals(upsertMetadataManager._recordLocationMap.size(), 0);
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+    FileUtils.deleteQuietly(tempFile);
+  }
+
+  private OffHeapPartitionUpsertMetadataManager createMetadataManager(File checkpointFile) {
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getSegmentLock(anyString())).thenReturn(new ReentrantLock());
+    _contextBuilder.setEnableSnapshot(true).setTableDataManager(tableDataManager);
+    return new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0, _contextBuilder.build(),
+        INITIAL_CAPACITY, NUM_STRIPES, null, checkpointFile);
+  }
+
+  /**
+   * Writes the checkpoint of 2 immutable segments and 1 consuming segment:
+   * <ul>
+   *   <li>segment1: 1 -> {1, 120}, 2 -> {2, 100}</li>
+   *   <li>segment2: 0 -> {0, 150}, 3 -> {1, 80}</li>
+   *   <li>consuming segment: 4 -> {0, 200}</li>
+   * </ul>
+   */
+  private void writeCheckpoint(File checkpointFile)
+      throws IOException {
+    FileUtils.deleteQuietly(checkpointFile);
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager = createMetadataManager(checkpointFile);
+    ImmutableSegmentImpl segment1 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_1, "1", SEGMENT1_PRIMARY_KEYS, SEGMENT1_TIMESTAMPS, null);
+    ImmutableSegmentImpl segment2 =
+        mockSegmentWithColumns(CHECKPOINT_SEGMENT_NAME_2, "2", SEGMENT2_PRIMARY_KEYS, SEGMENT2_TIMESTAMPS, null);
+    for (ImmutableSegmentImpl segment : new ImmutableSegmentImpl[]{segment1, segment2}) {
+      int[] primaryKeys = segment == segment1 ? SEGMENT1_PRIMARY_KEYS : SEGMENT2_PRIMARY_KEYS;
+      int[] timestamps = segment == segment1 ? SEGMENT1_TIMESTAMPS : SEGMENT2_TIMESTAMPS;
+      upsertMetadataManager.addSegment(segment, segment.getValidDocIds(), null,
+          getRecordInfoList(primaryKeys.length, primaryKeys, timestamps, null).iterator());
+      upsertMetadataManager._trackedSegments.add(segment);
+      upsertMetadataManager._updatedSegmentsSinceLastSnapshot.add(segment);
+    }
+    MutableSegment segment3 = mockMutableSegment(3, new ThreadSafeMutableRoaringBitmap(), null);
+    upsertMetadataManager.addRecord(segment3, new RecordInfo(makePrimaryKey(4), 0, 200, false));
+    assertEquals(segment1.getValidDocIds().getMutableRoaringBitmap(), VALID_DOC_IDS_1);
+    assertEquals(segment2.getValidDocIds().getMutableRoaringBitmap(), VALID_DOC_IDS_2);
+
+    upsertMetadataManager.takeSnapshot();
+    verify(segment1, times(1)).persistValidDocIdsSnapshot();
+    verify(segment2, times(1)).persistValidDocIdsSnapshot();
+    assertTrue(checkpointFile.exists());
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  /**
+   * Mocks a segment with readable primary key and comparison columns, and the given validDocIds snapshot. The
+   * validDocIds of the segment starts from the snapshot when given, or empty otherwise.
+   */
+  private static ImmutableSegmentImpl mockSegmentWithColumns(String segmentName, String crc, int[] primaryKeys,
+      int[] timestamps, @Nullable MutableRoaringBitmap validDocIdsSnapshot) {
+    ImmutableSegmentImpl segment = mock(ImmutableSegmentImpl.class);
+    when(segment.getSegmentName()).thenReturn(segmentName);
+    when(segment.getValidDocIds()).thenReturn(
+        validDocIdsSnapshot != null ? new ThreadSafeMutableRoaringBitmap(validDocIdsSnapshot.clone())
+            : new ThreadSafeMutableRoaringBitmap());
+    when(segment.hasValidDocIdsSnapshotFile()).thenReturn(true);
+    when(segment.loadValidDocIdsFromSnapshot()).thenAnswer(
+        invocation -> validDocIdsSnapshot != null ? validDocIdsSnapshot.clone() : null);
+    DataSource primaryKeyDataSource = mockIntDataSource(primaryKeys);
+    when(segment.getDataSource(PRIMARY_KEY_COLUMNS.get(0))).thenReturn(primaryKeyDataSource);
+    DataSource comparisonDataSource = mockIntDataSource(timestamps);
+    when(segment.getDataSource(COMPARISON_COLUMNS.get(0))).thenReturn(comparisonDataSource);
+    SegmentMetadataImpl segmentMetadata = mock(SegmentMetadataImpl.class);
+    when(segmentMetadata.getIndexCreationTime()).thenReturn(System.currentTimeMillis());
+    when(segmentMetadata.getCrc()).thenReturn(crc);
+    when(segment.getSegmentMetadata()).thenReturn(segmentMetadata);
+    return segment;
+  }
+
+  private static DataSource mockIntDataSource(int[] values) {
+    DataSource dataSource = mock(DataSource.class);
+    ForwardIndexReader forwardIndex = mock(ForwardIndexReader.class);
+    when(forwardIndex.isSingleValue()).thenReturn(true);
+    when(forwardIndex.getStoredType()).thenReturn(DataType.INT);
+    when(forwardIndex.getInt(anyInt(), any())).thenAnswer(invocation -> values[(int) invocation.getArgument(0)]);
+    when(dataSource.getForwardIndex()).thenReturn(forwardIndex);
+    return dataSource;
+  }
+
+  private static List<RecordInfo> getRecordInfoList(int numRecords, int[] primaryKeys, int[] timestamps,
+      @Nullable boolean[] deleteRecordFlags) {
+    List<RecordInfo> recordInfoList = new ArrayList<>();
+    for (int i = 0; i < numRecords; i++) {
+      recordInfoList.add(new RecordInfo(makePrimaryKey(primaryKeys[i]), i, timestamps[i],
+          deleteRecordFlags != null && deleteRecordFlags[i]));
+    }
+    return recordInfoList;
+  }
+
+  private static List<PrimaryKey> getPrimaryKeyList(int numRecords, int[] primaryKeys) {
+    List<PrimaryKey> primaryKeyList = new ArrayList<>();
+    for (int i = 0; i < numRecords; i++) {
+      primaryKeyList.add(makePrimaryKey(primaryKeys[i]));
+    }
+    return primaryKeyList;
+  }
+
+  static ImmutableSegmentImpl mockImmutableSegment(int sequenceNumber, ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds, List<PrimaryKey> primaryKeys) {
+    ImmutableSegmentImpl segment = mock(ImmutableSegmentImpl.class);
+    when(segment.getSegmentName()).thenReturn(getSegmentName(sequenceNumber));
+    when(segment.getValidDocIds()).thenReturn(validDocIds);
+    when(segment.getQueryableDocIds()).thenReturn(queryableDocIds);
+    DataSource dataSource = mock(DataSource.class);
+    when(segment.getDataSource(anyString())).thenReturn(dataSource);
+    ForwardIndexReader forwardIndex = mock(ForwardIndexReader.class);
+    when(forwardIndex.isSingleValue()).thenReturn(true);
+    when(forwardIndex.getStoredType()).thenReturn(DataType.INT);
+    when(forwardIndex.getInt(anyInt(), any())).thenAnswer(
+        invocation -> primaryKeys.get(invocation.getArgument(0)).getValues()[0]);
+    when(dataSource.getForwardIndex()).thenReturn(forwardIndex);
+    SegmentMetadataImpl segmentMetadata = mock(SegmentMetadataImpl.class);
+    when(segmentMetadata.getIndexCreationTime()).thenReturn(System.currentTimeMillis());
+    when(segment.getSegmentMetadata()).thenReturn(segmentMetadata);
+    return segment;
+  }
+
+  private static ImmutableSegmentImpl mockImmutableSegmentWithEndTime(int sequenceNumber,
+      ThreadSafeMutableRoaringBitmap validDocIds, List<PrimaryKey> primaryKeys, Comparable endTime) {
+    ImmutableSegmentImpl segment = mockImmutableSegment(sequenceNumber, validDocIds, null, primaryKeys);
+    SegmentMetadataImpl segmentMetadata = mock(SegmentMetadataImpl.class);
+    when(segment.getSegmentMetadata()).thenReturn(segmentMetadata);
+    ColumnMetadata columnMetadata = mock(ColumnMetadata.class);
+    TreeMap<String, ColumnMetadata> columnMetadataMap = new TreeMap<>();
+    columnMetadataMap.put(COMPARISON_COLUMNS.get(0), columnMetadata);
+    when(segmentMetadata.getColumnMetadataMap()).thenReturn(columnMetadataMap);
+    when(columnMetadata.getMaxValue()).thenReturn(endTime);
+    return segment;
+  }
+
+  static MutableSegment mockMutableSegment(int sequenceNumber, ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds) {
+    MutableSegment segment = mock(MutableSegment.class);
+    when(segment.getSegmentName()).thenReturn(getSegmentName(sequenceNumber));
+    when(segment.getQueryableDocIds()).thenReturn(queryableDocIds);
+    when(segment.getValidDocIds()).thenReturn(validDocIds);
+    return segment;
+  }
+
+  private static String getSegmentName(int sequenceNumber) {
+    return new LLCSegmentName(RAW_TABLE_NAME, 0, sequenceNumber, System.currentTimeMillis()).toString();
+  }
+
+  static PrimaryKey makePrimaryKey(int value) {
+    return new PrimaryKey(new Object[]{value});
+  }
+
+  static void checkRecordLocation(OffHeapPartitionUpsertMetadataManager upsertMetadataManager, int keyValue,
+      IndexSegment segment, int docId, int comparisonValue) {
+    OffHeapPartitionUpsertMetadataManager.RecordLocation recordLocation =
+        upsertMetadataManager.getRecordLocation(makePrimaryKey(keyValue));
+    assertNotNull(recordLocation);
+    assertSame(recordLocation.getSegment(), segment);
+    assertEquals(recordLocation.getDocId(), docId);
+    assertEquals(recordLocation.getComparisonValue(), comparisonValue);
+  }
+}
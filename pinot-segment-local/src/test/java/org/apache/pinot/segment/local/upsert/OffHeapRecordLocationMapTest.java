@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+
+public class OffHeapRecordLocationMapTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "OffHeapRecordLocationMapTest");
+  private static final int NUM_KEYS = 10_000;
+
+  @DataProvider
+  public Object[][] mmapDirs() {
+    return new Object[][]{{null}, {TEMP_DIR}};
+  }
+
+  @Test(dataProvider = "mmapDirs")
+  public void testRandomOperations(File mmapDir)
+      throws Exception {
+    Random random = new Random();
+    // Use small initial capacity and skewed keys to exercise resizing and collisions
+    Map<Long, OffHeapRecordLocationMap.RecordLocation> expected = new HashMap<>();
+    try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(16, 4, mmapDir)) {
+      for (int i = 0; i < 100_000; i++) {
+        long key = random.nextInt(NUM_KEYS);
+        long keyHigh = key << 60;
+        long keyLow = key * 16;
+        int operation = random.nextInt(3);
+        if (operation == 0) {
+          OffHeapRecordLocationMap.RecordLocation location =
+              new OffHeapRecordLocationMap.RecordLocation(random.nextInt(10) + 1, i, random.nextLong());
+          map.put(keyHigh, keyLow, location);
+          expected.put(key, location);
+        } else if (operation == 1) {
+          map.computeIfPresent(keyHigh, keyLow, currentLocation -> {
+            assertNotNull(currentLocation);
+            assertLocationEquals(currentLocation, expected.get(key));
+            return null;
+          });
+          expected.remove(key);
+        } else {
+          map.compute(keyHigh, keyLow, currentLocation -> {
+            OffHeapRecordLocationMap.RecordLocation expectedLocation = expected.get(key);
+            if (expectedLocation == null) {
+              assertNull(currentLocation);
+            } else {
+              assertLocationEquals(currentLocation, expectedLocation);
+            }
+            return currentLocation;
+          });
+        }
+        assertEquals(map.size(), expected.size());
+      }
+
+      // Remove the entries of odd segment ids
+      map.removeIf(location -> location.getSegmentId() % 2 == 1);
+      expected.values().removeIf(location -> location.getSegmentId() % 2 == 1);
+      assertEquals(map.size(), expected.size());
+      for (long key = 0; key < NUM_KEYS; key++) {
+        OffHeapRecordLocationMap.RecordLocation expectedLocation = expected.get(key);
+        map.compute(key << 60, key * 16, currentLocation -> {
+          if (expectedLocation == null) {
+            assertNull(currentLocation);
+          } else {
+            assertLocationEquals(currentLocation, expectedLocation);
+          }
+          return currentLocation;
+        });
+      }
+    }
+    if (mmapDir != null) {
+      assertFalse(mmapDir.exists());
+    }
+  }
+
+  @Test
+  public void testWriteAndLoad()
+      throws Exception {
+    FileUtils.forceMkdir(TEMP_DIR);
+    File file = new File(TEMP_DIR, "checkpoint");
+    Random random = new Random();
+    Map<Long, OffHeapRecordLocationMap.RecordLocation> expected = new HashMap<>();
+    try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(16, 4, null)) {
+      for (long key = 0; key < NUM_KEYS; key++) {
+        OffHeapRecordLocationMap.RecordLocation location =
+            new OffHeapRecordLocationMap.RecordLocation(random.nextInt(10) + 1, (int) key, random.nextLong());
+        map.put(key << 60, key * 16, location);
+        expected.put(key, location);
+      }
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        map.writeTo(channel);
+      }
+    }
+
+    try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(16, 4, null);
+        PinotDataBuffer buffer = PinotDataBuffer.mapFile(file, true, 0, file.length(), ByteOrder.nativeOrder(),
+            "test")) {
+      assertEquals(map.load(buffer, 0), file.length());
+      assertEquals(map.size(), NUM_KEYS);
+      for (long key = 0; key < NUM_KEYS; key++) {
+        OffHeapRecordLocationMap.RecordLocation expectedLocation = expected.get(key);
+        map.computeIfPresent(key << 60, key * 16, currentLocation -> {
+          assertLocationEquals(currentLocation, expectedLocation);
+          return null;
+        });
+      }
+      assertEquals(map.size(), 0);
+    } finally {
+      FileUtils.deleteQuietly(TEMP_DIR);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testLoadWithDifferentNumStripes()
+      throws Exception {
+    FileUtils.forceMkdir(TEMP_DIR);
+    File file = new File(TEMP_DIR, "checkpoint");
+    try {
+      try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(16, 4, null);
+          FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        map.writeTo(channel);
+      }
+      try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(16, 8, null);
+          PinotDataBuffer buffer = PinotDataBuffer.mapFile(file, true, 0, file.length(), ByteOrder.nativeOrder(),
+              "test")) {
+        map.load(buffer, 0);
+      }
+    } finally {
+      FileUtils.deleteQuietly(TEMP_DIR);
+    }
+  }
+
+  private static void assertLocationEquals(OffHeapRecordLocationMap.RecordLocation actual,
+      OffHeapRecordLocationMap.RecordLocation expected) {
+    assertEquals(actual.getSegmentId(), expected.getSegmentId());
+    assertEquals(actual.getDocId(), expected.getDocId());
+    assertEquals(actual.getComparisonValue(), expected.getComparisonValue());
+  }
+}
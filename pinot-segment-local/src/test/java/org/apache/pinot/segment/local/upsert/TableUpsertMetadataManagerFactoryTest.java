@@ -20,6 +20,7 @@ package org.apache.pinot.segment.local.upsert;
 
 import com.google.common.collect.Lists;
 import java.io.File;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import org.apache.pinot.segment.local.data.manager.TableDataManager;
 import org.apache.pinot.spi.config.table.HashFunction;
@@ -84,6 +85,30 @@ public class TableUpsertMetadataManagerFactoryTest {
         0) instanceof ConcurrentMapPartitionUpsertMetadataManagerForConsistentDeletes);
   }
 
+  @Test
+  public void testCreateForOffHeapManagerClass()
+      throws Exception {
+    UpsertConfig upsertConfig = new UpsertConfig(UpsertConfig.Mode.FULL);
+    upsertConfig.setMetadataManagerClass(OffHeapTableUpsertMetadataManager.class.getName());
+    upsertConfig.setMetadataManagerConfigs(Map.of(OffHeapTableUpsertMetadataManager.INITIAL_CAPACITY, "1024",
+        OffHeapTableUpsertMetadataManager.NUM_STRIPES, "4"));
+    Schema schema = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+        .addSingleValueDimension("myCol", FieldSpec.DataType.STRING)
+        .addDateTime("timeCol", FieldSpec.DataType.LONG, "1:MILLISECONDS:EPOCH", "1:MILLISECONDS")
+        .setPrimaryKeyColumns(Lists.newArrayList("myCol")).build();
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getTableDataDir()).thenReturn(new File(RAW_TABLE_NAME));
+    _tableConfig = new TableConfigBuilder(TableType.REALTIME).setTableName(RAW_TABLE_NAME).setTimeColumnName("timeCol")
+        .setUpsertConfig(upsertConfig).build();
+    TableUpsertMetadataManager tableUpsertMetadataManager =
+        TableUpsertMetadataManagerFactory.create(_tableConfig, null);
+    assertTrue(tableUpsertMetadataManager instanceof OffHeapTableUpsertMetadataManager);
+    tableUpsertMetadataManager.init(_tableConfig, schema, tableDataManager);
+    assertTrue(tableUpsertMetadataManager.getOrCreatePartitionManager(
+        0) instanceof OffHeapPartitionUpsertMetadataManager);
+    tableUpsertMetadataManager.close();
+  }
+
   @Test
   public void testEnablePreload() {
     UpsertConfig upsertConfig = new UpsertConfig(UpsertConfig.Mode.FULL);
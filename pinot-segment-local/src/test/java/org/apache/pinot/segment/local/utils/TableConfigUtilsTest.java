@@ -36,6 +36,7 @@ import org.apache.pinot.spi.config.table.FieldConfig;
 import org.apache.pinot.spi.config.table.FieldConfig.CompressionCodec;
 import org.apache.pinot.spi.config.table.HashFunction;
 import org.apache.pinot.spi.config.table.IndexingConfig;
+import org.apache.pinot.spi.config.table.JsonIndexConfig;
 import org.apache.pinot.spi.config.table.ReplicaGroupStrategyConfig;
 import org.apache.pinot.spi.config.table.RoutingConfig;
 import org.apache.pinot.spi.config.table.SegmentPartitionConfig;
@@ -1575,6 +1576,34 @@ public class TableConfigUtilsTest {
     } catch (Exception e) {
       // expected
     }
+
+    JsonIndexConfig jsonIndexConfig = new JsonIndexConfig();
+    jsonIndexConfig.setTypedPaths(Map.of("$.a.b", FieldSpec.DataType.LONG));
+    tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName(TABLE_NAME).build();
+    tableConfig.getIndexingConfig().setJsonIndexConfigs(Map.of("myCol", jsonIndexConfig));
+    TableConfigUtils.validate(tableConfig, schema);
+
+    for (String arrayPath : Arrays.asList("$.a[0].b", "$.a[*].b", "$.a.*", "$..b", "a.b")) {
+      jsonIndexConfig = new JsonIndexConfig();
+      jsonIndexConfig.setTypedPaths(Map.of(arrayPath, FieldSpec.DataType.LONG));
+      tableConfig.getIndexingConfig().setJsonIndexConfigs(Map.of("myCol", jsonIndexConfig));
+      try {
+        TableConfigUtils.validate(tableConfig, schema);
+        Assert.fail("Should fail for Json index typed path with array: " + arrayPath);
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    }
+
+    jsonIndexConfig = new JsonIndexConfig();
+    jsonIndexConfig.setTypedPaths(Map.of("$.a.b", FieldSpec.DataType.BYTES));
+    tableConfig.getIndexingConfig().setJsonIndexConfigs(Map.of("myCol", jsonIndexConfig));
+    try {
+      TableConfigUtils.validate(tableConfig, schema);
+      Assert.fail("Should fail for Json index typed path with unsupported data type");
+    } catch (IllegalStateException e) {
+      // expected
+    }
   }
 
   @Test
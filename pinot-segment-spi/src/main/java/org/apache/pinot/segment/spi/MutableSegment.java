@@ -20,6 +20,7 @@ package org.apache.pinot.segment.spi;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.pinot.spi.data.readers.GenericRow;
 import org.apache.pinot.spi.stream.RowMetadata;
@@ -37,6 +38,24 @@ public interface MutableSegment extends IndexSegment {
   boolean index(GenericRow row, @Nullable RowMetadata rowMetadata)
       throws IOException;
 
+  /**
+   * Indexes a batch of records into the segment with optionally provided metadata (typically the metadata of the last
+   * message in the batch). Implementations can index the records column by column to amortize the per-record overhead.
+   * All the records are indexed, so the caller should bound the batch size by the remaining capacity of the segment.
+   *
+   * @param rows Records represented as {@link GenericRow}s
+   * @param rowMetadata the metadata associated with the batch
+   * @return Whether the segment can index more records after this batch
+   */
+  default boolean indexBatch(List<GenericRow> rows, @Nullable RowMetadata rowMetadata)
+      throws IOException {
+    boolean canTakeMore = true;
+    for (GenericRow row : rows) {
+      canTakeMore = index(row, rowMetadata);
+    }
+    return canTakeMore;
+  }
+
   /**
    * Returns the number of records already indexed into the segment.
    *
@@ -118,6 +118,11 @@ public class SegmentGeneratorConfig implements Serializable {
   private boolean _realtimeConversion = false;
   // consumerDir contains data from the consuming segment, and is used during _realtimeConversion optimization
   private File _consumerDir;
+  // Number of threads used to build the indexes of independent columns concurrently
+  private int _segmentBuildParallelism = 1;
+  // Upper bound of the estimated memory used by the columns of this segment being built concurrently, no limit other
+  // than the process-wide budget (1/4 of the max heap size) if not positive
+  private long _segmentBuildMemoryBudgetBytes = 0;
   private final Map<String, FieldIndexConfigs> _indexConfigsByColName;
 
   // constructed from FieldConfig
@@ -172,6 +177,7 @@ public class SegmentGeneratorConfig implements Serializable {
     _optimizeDictionaryType = indexingConfig.isOptimizeDictionaryType();
     _noDictionarySizeRatioThreshold = indexingConfig.getNoDictionarySizeRatioThreshold();
     _noDictionaryCardinalityRatioThreshold = indexingConfig.getNoDictionaryCardinalityRatioThreshold();
+    _segmentBuildParallelism = indexingConfig.getSegmentBuildParallelism();
 
     // Star-tree configs
     setStarTreeIndexConfigs(indexingConfig.getStarTreeIndexConfigs());
@@ -677,6 +683,22 @@ public class SegmentGeneratorConfig implements Serializable {
     _realtimeConversion = realtimeConversion;
   }
 
+  public int getSegmentBuildParallelism() {
+    return _segmentBuildParallelism;
+  }
+
+  public void setSegmentBuildParallelism(int segmentBuildParallelism) {
+    _segmentBuildParallelism = segmentBuildParallelism;
+  }
+
+  public long getSegmentBuildMemoryBudgetBytes() {
+    return _segmentBuildMemoryBudgetBytes;
+  }
+
+  public void setSegmentBuildMemoryBudgetBytes(long segmentBuildMemoryBudgetBytes) {
+    _segmentBuildMemoryBudgetBytes = segmentBuildMemoryBudgetBytes;
+  }
+
   public File getConsumerDir() {
     return _consumerDir;
   }
@@ -28,6 +28,8 @@ import java.util.Map;
  */
 public interface MapIndexCreator extends ForwardIndexCreator {
   int VERSION_1 = 1;
+  // Frequent keys stored as dense dictionary-encoded sub-columns, and the remaining keys stored as serialized maps
+  int VERSION_2 = 2;
 
   /**
    *
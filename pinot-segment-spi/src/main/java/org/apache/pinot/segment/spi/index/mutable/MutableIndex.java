@@ -61,6 +61,21 @@ public interface MutableIndex extends IndexReader {
    */
   void add(@Nonnull Object[] values, @Nullable int[] dictIds, int docId);
 
+  /**
+   * Adds the given single value cells of {@code numDocs} consecutive documents starting from {@code startDocId} to the
+   * index. Implementations can override it to amortize the per-cell overhead over the batch.
+   *
+   * @param values The nonnull values of the cells, where the value of document {@code startDocId + i} is at index i
+   * @param dictIds An optional array of dictionary values of the cells. If there is no dictionary, null is received.
+   * @param startDocId The document id of the first cell. A non-negative value.
+   * @param numDocs The number of cells to add
+   */
+  default void addBatch(Object[] values, @Nullable int[] dictIds, int startDocId, int numDocs) {
+    for (int i = 0; i < numDocs; i++) {
+      add(values[i], dictIds != null ? dictIds[i] : -1, startDocId + i);
+    }
+  }
+
   /**
    * Commits the mutable index artifacts to disk. This is used in preparation for realtime segment conversion.
    * commit() should be implemented to perform any required actions before using mutable segment artifacts to
@@ -67,4 +67,27 @@ public interface JsonIndexReader extends IndexReader {
    * Converts the flattened docIds to real docIds using the map returned by getMatchingFlattenedDocsMap
    */
   void convertFlattenedDocIdsToDocIds(Map<String, RoaringBitmap> flattenedDocIdsMap);
+
+  /**
+   * For a JSON key configured as typed path in the index, returns the sorted dictionary of its typed values, or
+   * {@code null} if the values of the key are not stored in the index.
+   */
+  @Nullable
+  default Dictionary getTypedValueDictionary(String jsonPathKey) {
+    return null;
+  }
+
+  /**
+   * For a JSON key with typed values stored in the index, reads the dictionary ids of the values for an array of
+   * docIds, with -1 for the docIds without value for the key.
+   * @param jsonPathKey JSON key with non-null {@link #getTypedValueDictionary(String)}
+   * @param docIds array of docIds
+   * @param length length of the array
+   * @param dictIdBuffer buffer for the dictionary ids
+   * @throws IllegalStateException if the values of the key are not stored in the index
+   */
+  default void readTypedValueDictIds(String jsonPathKey, int[] docIds, int length, int[] dictIdBuffer) {
+    // Consistent with getTypedValueDictionary() returning null by default
+    throw new IllegalStateException("Values of json path: " + jsonPathKey + " are not stored");
+  }
 }
@@ -33,4 +33,16 @@ public interface VectorIndexReader extends IndexReader {
    * @return bitmap of top k closest vectors
    */
   ImmutableRoaringBitmap getDocIds(float[] vector, int topK);
+
+  /**
+   * Returns the bitmap of top k closest vectors from the given vector, probing the given number of clusters for the
+   * indexes partitioning the vectors into clusters (e.g. IVF). Other indexes ignore the number of clusters to probe.
+   * @param vector vector to search
+   * @param topK number of closest vectors to return
+   * @param numProbes number of closest clusters to search
+   * @return bitmap of top k closest vectors
+   */
+  default ImmutableRoaringBitmap getDocIds(float[] vector, int topK, int numProbes) {
+    return getDocIds(vector, topK);
+  }
 }
@@ -118,6 +118,15 @@ public abstract class SegmentDirectory implements Closeable {
    */
   public abstract Set<String> getColumnsWithIndex(IndexType<?, ?, ?> type);
 
+  /**
+   * Whether the index buffers are fetched on first access instead of being available locally, in which case the index
+   * readers of a column should only be created when the column is first accessed.
+   * @return false by default.
+   */
+  public boolean isIndexFetchedOnAccess() {
+    return false;
+  }
+
   /**
    * This is a hint to the segment directory, to begin prefetching buffers for given context.
    * Typically, this should be an async call made before operating on the segment.
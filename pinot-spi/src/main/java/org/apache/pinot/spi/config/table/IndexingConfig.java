@@ -67,6 +67,13 @@ public class IndexingConfig extends BaseJsonConfig {
   private boolean _nullHandlingEnabled;
   private boolean _columnMajorSegmentBuilderEnabled = true;
 
+  /**
+   * Number of threads used to build the indexes of independent columns concurrently when creating a segment (both
+   * when committing a consuming segment and when generating an offline segment). Columns are built one by one on the
+   * creating thread when it is not larger than 1.
+   */
+  private int _segmentBuildParallelism = 1;
+
   /**
    * If `optimizeDictionary` enabled, dictionary is not created for the high-cardinality
    * single-valued columns for which rawIndexSize / forwardIndexSize is less than the `noDictionarySizeRatioThreshold`.
@@ -361,6 +368,14 @@ public class IndexingConfig extends BaseJsonConfig {
     _columnMajorSegmentBuilderEnabled = columnMajorSegmentBuilderEnabled;
   }
 
+  public int getSegmentBuildParallelism() {
+    return _segmentBuildParallelism;
+  }
+
+  public void setSegmentBuildParallelism(int segmentBuildParallelism) {
+    _segmentBuildParallelism = segmentBuildParallelism;
+  }
+
   public boolean isOptimizeDictionary() {
     return _optimizeDictionary;
   }
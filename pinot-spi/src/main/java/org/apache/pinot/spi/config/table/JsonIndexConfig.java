@@ -21,9 +21,11 @@ package org.apache.pinot.spi.config.table;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import javax.annotation.Nullable;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
 
 
 /**
@@ -48,6 +50,10 @@ import javax.annotation.Nullable;
  *                   Excluded values will be replaced with JsonUtils.SKIPPED_VALUE_REPLACEMENT.
  * - skipInvalidJson: If the raw data is not a valid json string, then replace with {"":SKIPPED_VALUE_REPLACEMENT}
  *                    and continue indexing on following Json records.
+ * - typedPaths: Map from the JSON path of a single-value field without array (e.g. "$.a.b") to the data type (INT,
+ *               LONG, FLOAT, DOUBLE or STRING) of its values. The values of these paths are additionally stored in the
+ *               index as a sorted dictionary and a dictionary-encoded forward index, so that jsonExtractIndex can read
+ *               them without scanning the posting lists and converting the string values.
  */
 public class JsonIndexConfig extends IndexConfig {
   public static final JsonIndexConfig DEFAULT = new JsonIndexConfig();
@@ -62,6 +68,7 @@ public class JsonIndexConfig extends IndexConfig {
   private Set<String> _indexPaths;
   private int _maxValueLength = 0;
   private boolean _skipInvalidJson = false;
+  private Map<String, DataType> _typedPaths;
 
   public JsonIndexConfig() {
     super(false);
@@ -174,6 +181,15 @@ public class JsonIndexConfig extends IndexConfig {
     _skipInvalidJson = skipInvalidJson;
   }
 
+  @Nullable
+  public Map<String, DataType> getTypedPaths() {
+    return _typedPaths;
+  }
+
+  public void setTypedPaths(@Nullable Map<String, DataType> typedPaths) {
+    _typedPaths = typedPaths;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -190,12 +206,12 @@ public class JsonIndexConfig extends IndexConfig {
         && _disableCrossArrayUnnest == config._disableCrossArrayUnnest && Objects.equals(_includePaths,
         config._includePaths) && Objects.equals(_excludePaths, config._excludePaths) && Objects.equals(_excludeFields,
         config._excludeFields) && _maxValueLength == config._maxValueLength
-        && _skipInvalidJson == config._skipInvalidJson;
+        && _skipInvalidJson == config._skipInvalidJson && Objects.equals(_typedPaths, config._typedPaths);
   }
 
   @Override
   public int hashCode() {
     return Objects.hash(super.hashCode(), _maxLevels, _excludeArray, _disableCrossArrayUnnest, _includePaths,
-        _excludePaths, _excludeFields, _maxValueLength, _skipInvalidJson);
+        _excludePaths, _excludeFields, _maxValueLength, _skipInvalidJson, _typedPaths);
   }
 }
@@ -40,6 +40,14 @@ public class StreamIngestionConfig extends BaseJsonConfig {
   @JsonPropertyDescription("Whether to track offsets of the filtered stream messages during consumption.")
   private boolean _trackFilteredMessageOffsets = false;
 
+  @JsonPropertyDescription("Number of threads to decode and transform the stream messages in parallel before indexing "
+      + "them in offset order. Messages are decoded and transformed by the consumer thread when not positive.")
+  private int _numDecodeAndTransformThreads = 0;
+
+  @JsonPropertyDescription("Max number of records indexed together column by column into the consuming segment. "
+      + "Records are indexed one by one when not greater than 1.")
+  private int _indexBatchSize = 0;
+
   @JsonCreator
   public StreamIngestionConfig(@JsonProperty("streamConfigMaps") List<Map<String, String>> streamConfigMaps) {
     _streamConfigMaps = streamConfigMaps;
@@ -64,4 +72,20 @@ public class StreamIngestionConfig extends BaseJsonConfig {
   public boolean isTrackFilteredMessageOffsets() {
     return _trackFilteredMessageOffsets;
   }
+
+  public void setNumDecodeAndTransformThreads(int numDecodeAndTransformThreads) {
+    _numDecodeAndTransformThreads = numDecodeAndTransformThreads;
+  }
+
+  public int getNumDecodeAndTransformThreads() {
+    return _numDecodeAndTransformThreads;
+  }
+
+  public void setIndexBatchSize(int indexBatchSize) {
+    _indexBatchSize = indexBatchSize;
+  }
+
+  public int getIndexBatchSize() {
+    return _indexBatchSize;
+  }
 }
@@ -25,15 +25,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.pinot.spi.env.PinotConfiguration;
 
 
@@ -185,6 +189,22 @@ public class LocalPinotFS extends BasePinotFS {
     return new BufferedInputStream(new FileInputStream(toFile(uri)));
   }
 
+  @Override
+  public InputStream open(URI uri, long offset, long length)
+      throws IOException {
+    FileChannel fileChannel = FileChannel.open(toFile(uri).toPath(), StandardOpenOption.READ);
+    try {
+      fileChannel.position(offset);
+      return BoundedInputStream.builder()
+          .setInputStream(new BufferedInputStream(Channels.newInputStream(fileChannel)))
+          .setMaxCount(length)
+          .get();
+    } catch (IOException e) {
+      fileChannel.close();
+      throw e;
+    }
+  }
+
   private static File toFile(URI uri) {
     // NOTE: Do not use new File(uri) because scheme might not exist and it does not decode '+' to ' '
     //       Do not use uri.getPath() because it does not decode '+' to ' '
@@ -133,4 +133,10 @@ public class NoClosePinotFS implements PinotFS {
       throws IOException {
     return _delegate.open(uri);
   }
+
+  @Override
+  public InputStream open(URI uri, long offset, long length)
+      throws IOException {
+    return _delegate.open(uri, offset, length);
+  }
 }
@@ -19,6 +19,7 @@
 package org.apache.pinot.spi.recordtransformer;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
@@ -53,4 +54,24 @@ public interface RecordTransformer extends Serializable {
    */
   @Nullable
   GenericRow transform(GenericRow record);
+
+  /**
+   * Transforms a batch of records based on some custom rules. The records transformed to {@code null} are removed from
+   * the returned batch, and the other records keep their order. Override this method to transform the batch column by
+   * column instead of record by record.
+   * <p>NOTE: An exception fails the whole batch, and some records in the batch might be partially transformed.
+   *
+   * @param records Records to transform
+   * @return Transformed records
+   */
+  default List<GenericRow> transform(List<GenericRow> records) {
+    List<GenericRow> transformedRecords = new ArrayList<>(records.size());
+    for (GenericRow record : records) {
+      GenericRow transformedRecord = transform(record);
+      if (transformedRecord != null) {
+        transformedRecords.add(transformedRecord);
+      }
+    }
+    return transformedRecords;
+  }
 }
@@ -33,7 +33,7 @@ public class StreamDataDecoderImpl implements StreamDataDecoder {
   public static final String RECORD_SERIALIZED_VALUE_SIZE_KEY = METADATA_KEY_PREFIX + "recordSerializedValueSize";
 
   private final StreamMessageDecoder _valueDecoder;
-  private final GenericRow _reuse = new GenericRow();
+  private final GenericRow _reuse;
 
   /**
    * @return Whether the given key is one of the special types of keys (__key, __header$, etc.)
@@ -43,7 +43,17 @@ public class StreamDataDecoderImpl implements StreamDataDecoder {
   }
 
   public StreamDataDecoderImpl(StreamMessageDecoder valueDecoder) {
+    this(valueDecoder, true);
+  }
+
+  /**
+   * @param valueDecoder Decoder for the message value
+   * @param reuseRow Whether to decode all the messages into the same row. Should be disabled when the decoded rows are
+   *                 buffered before being consumed.
+   */
+  public StreamDataDecoderImpl(StreamMessageDecoder valueDecoder, boolean reuseRow) {
     _valueDecoder = valueDecoder;
+    _reuse = reuseRow ? new GenericRow() : null;
   }
 
   @Override
@@ -51,8 +61,14 @@ public class StreamDataDecoderImpl implements StreamDataDecoder {
     assert message.getValue() != null;
 
     try {
-      _reuse.clear();
-      GenericRow row = _valueDecoder.decode(message.getValue(), 0, message.getLength(), _reuse);
+      GenericRow reuse;
+      if (_reuse != null) {
+        reuse = _reuse;
+        reuse.clear();
+      } else {
+        reuse = new GenericRow();
+      }
+      GenericRow row = _valueDecoder.decode(message.getValue(), 0, message.getLength(), reuse);
       if (row != null) {
         if (message.getKey() != null) {
           row.putValue(KEY, new String(message.getKey(), StandardCharsets.UTF_8));
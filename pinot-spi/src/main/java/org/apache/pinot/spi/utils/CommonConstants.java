@@ -371,6 +371,12 @@ public class CommonConstants {
     public static final String CONFIG_OF_USE_FIXED_REPLICA = "pinot.broker.use.fixed.replica";
     public static final boolean DEFAULT_USE_FIXED_REPLICA = false;
 
+    // Maximum total size of the per-server partial results cached by the broker for immutable (OFFLINE) segments.
+    // The cache is disabled when the value is not positive. Queries opt in with the USE_RESULT_CACHE query option.
+    public static final String CONFIG_OF_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES =
+        "pinot.broker.segment.result.cache.max.size.bytes";
+    public static final long DEFAULT_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES = 0L;
+
     // Broker config indicating the maximum serialized response size across all servers for a query. This value is
     // equally divided across all servers processing the query.
     // The value can be in human readable format (e.g. '200K', '200KB', '0.2MB') or in raw bytes (e.g. '200000').
@@ -440,6 +446,9 @@ public class CommonConstants {
 
         // Reorder scan based predicates based on cardinality and number of selected values
         public static final String AND_SCAN_REORDERING = "AndScanReordering";
+        // Reorder scan based predicates within AND based on the selectivity and cost sampled at runtime, and reuse the
+        // learned stats for the following segments and queries. Takes precedence over AND_SCAN_REORDERING.
+        public static final String ADAPTIVE_AND_SCAN_REORDERING = "adaptiveAndScanReordering";
         public static final String SKIP_INDEXES = "skipIndexes";
 
         public static final String ORDER_BY_ALGORITHM = "orderByAlgorithm";
@@ -449,6 +458,13 @@ public class CommonConstants {
         public static final String MAX_INITIAL_RESULT_HOLDER_CAPACITY = "maxInitialResultHolderCapacity";
         public static final String MIN_INITIAL_INDEXED_TABLE_CAPACITY = "minInitialIndexedTableCapacity";
         public static final String GROUP_TRIM_THRESHOLD = "groupTrimThreshold";
+        // Use the off-heap open-addressing indexed table in the server combine phase when all the group-by columns are
+        // primitive numbers
+        public static final String USE_OFF_HEAP_INDEXED_TABLE = "useOffHeapIndexedTable";
+        // Number of groups to keep in memory in the server combine phase for GROUP BY with ORDER BY before spilling
+        // them to local disk. When enabled, groups are merged across the spilled partitions instead of being trimmed.
+        // Also applies to the multi-stage aggregate operator, where the rows of the new groups are spilled instead.
+        public static final String GROUP_BY_SPILL_THRESHOLD = "groupBySpillThreshold";
         public static final String STAGE_PARALLELISM = "stageParallelism";
 
         public static final String IN_PREDICATE_PRE_SORTED = "inPredicatePreSorted";
@@ -456,12 +472,21 @@ public class CommonConstants {
 
         public static final String DROP_RESULTS = "dropResults";
 
+        // Number of clusters to probe for the vector indexes partitioning the vectors into clusters (e.g. IVF_PQ)
+        public static final String VECTOR_NPROBE = "vectorNprobe";
+
         // Maximum number of pending results blocks allowed in the streaming operator
         public static final String MAX_STREAMING_PENDING_BLOCKS = "maxStreamingPendingBlocks";
 
         // Handle JOIN Overflow
         public static final String MAX_ROWS_IN_JOIN = "maxRowsInJoin";
         public static final String JOIN_OVERFLOW_MODE = "joinOverflowMode";
+        // Number of rows of the hash join right table to keep in memory before spilling both sides of the join to
+        // local disk and joining them partition by partition
+        public static final String JOIN_SPILL_THRESHOLD = "joinSpillThreshold";
+        // Max number of distinct join key values pushed into the leaf stage as an IN filter by the dynamic broadcast
+        // join. Beyond this, INT and LONG values are pushed as a min/max range plus an IN_ID_SET filter.
+        public static final String DYNAMIC_FILTER_MAX_IN_LIST_SIZE = "dynamicFilterMaxInListSize";
 
         // Handle WINDOW Overflow
         public static final String MAX_ROWS_IN_WINDOW = "maxRowsInWindow";
@@ -504,6 +529,10 @@ public class CommonConstants {
         public static final String GET_CURSOR = "getCursor";
         // Number of rows that the cursor should contain
         public static final String CURSOR_NUM_ROWS = "cursorNumRows";
+
+        // Set to true to serve the partial results of immutable segments from the broker segment result cache (when
+        // enabled on the broker), and only scatter the query to the servers whose results are not cached
+        public static final String USE_RESULT_CACHE = "useResultCache";
       }
 
       public static class QueryOptionValue {
@@ -781,6 +810,38 @@ public class CommonConstants {
     public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT = "pinot.server.consumption.rate.limit";
     // Default to 0.0 (no limit)
     public static final double DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT = 0.0;
+    // When enabled, the server consumption rate limit above is the max rate, and the effective rate is lowered when the
+    // server is under resource pressure (query latency, heap usage or direct memory usage above the thresholds), and
+    // raised back when the pressure is gone
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ENABLED =
+        "pinot.server.consumption.rate.limit.adaptive.enabled";
+    public static final boolean DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ENABLED = false;
+    // Lower bound of the effective rate, as a ratio of the max rate
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_MIN_RATIO =
+        "pinot.server.consumption.rate.limit.adaptive.min.ratio";
+    public static final double DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_MIN_RATIO = 0.1;
+    // Factor applied to the effective rate on each adjustment under pressure
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_DECREASE_FACTOR =
+        "pinot.server.consumption.rate.limit.adaptive.decrease.factor";
+    public static final double DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_DECREASE_FACTOR = 0.5;
+    // Step added to the effective rate on each adjustment without pressure, as a ratio of the max rate
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_INCREASE_RATIO =
+        "pinot.server.consumption.rate.limit.adaptive.increase.ratio";
+    public static final double DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_INCREASE_RATIO = 0.1;
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ADJUSTMENT_INTERVAL_MS =
+        "pinot.server.consumption.rate.limit.adaptive.adjustment.interval.ms";
+    public static final long DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_ADJUSTMENT_INTERVAL_MS = 5000L;
+    // Thresholds of the resource pressure signals, where non-positive value disables the signal
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_QUERY_LATENCY_THRESHOLD_MS =
+        "pinot.server.consumption.rate.limit.adaptive.query.latency.threshold.ms";
+    public static final long DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_QUERY_LATENCY_THRESHOLD_MS = 0L;
+    // The heap usage is the ratio of the old generation occupied after the last GC
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_HEAP_USAGE_RATIO_THRESHOLD =
+        "pinot.server.consumption.rate.limit.adaptive.heap.usage.ratio.threshold";
+    public static final double DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_HEAP_USAGE_RATIO_THRESHOLD = 0.75;
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_DIRECT_MEMORY_THRESHOLD_BYTES =
+        "pinot.server.consumption.rate.limit.adaptive.direct.memory.threshold.bytes";
+    public static final long DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT_ADAPTIVE_DIRECT_MEMORY_THRESHOLD_BYTES = 0L;
 
     public static final String CONFIG_OF_MMAP_DEFAULT_ADVICE = "pinot.server.mmap.advice.default";
     public static final String DEFAULT_QUERY_EXECUTOR_CLASS =
@@ -1283,6 +1344,11 @@ public class CommonConstants {
       THROW, BREAK
     }
 
+    /**
+     * Directory where the multi-stage operators spill their state when the spill threshold is enabled via query option.
+     */
+    public static final String KEY_OF_SPILL_DIR = "pinot.query.runner.spill.dir";
+
     /**
      * Configuration for window overflow.
      */